@@ -25,6 +25,23 @@ val apacheCommonsCollectionsVersion = "4.4"
 val jacksonDatabindVersion = "2.15.2"
 val lombokVersion = "1.18.28"
 val slf4jVersion = "2.0.7"
+val jmhVersion = "1.37"
+
+// jmh 基准测试单独放在 src/jmh 下，不影响 main 和 test
+// epoll 的系统调用用 JDK 21 的外部函数接口实现，放在 src/main/java21，打进 jar 的 META-INF/versions/21
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+    create("java21") {
+        java.setSrcDirs(listOf("src/main/java21"))
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    }
+}
+
+configurations["jmhImplementation"].extendsFrom(configurations.implementation.get())
+configurations["jmhRuntimeOnly"].extendsFrom(configurations.runtimeOnly.get())
 
 dependencies {
     // groovy
@@ -36,6 +53,7 @@ dependencies {
     testImplementation("org.spockframework:spock-core")
     testImplementation("org.spockframework:spock-junit4")
     testImplementation("junit:junit:4.13.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
     // apache utils
     implementation("org.apache.commons:commons-lang3:$apacheCommonsLangVersion")
@@ -53,10 +71,38 @@ dependencies {
 
     // slf4j
     implementation("org.slf4j:slf4j-simple:$slf4jVersion")
+
+    // jmh
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+    "jmhCompileOnly"("org.projectlombok:lombok:$lombokVersion")
+    "jmhAnnotationProcessor"("org.projectlombok:lombok:$lombokVersion")
+}
+
+// 外部函数接口在 JDK 21 还是预览特性，运行时同样要加 --enable-preview，否则 epoll 不可用，回退到 nio
+tasks.named<JavaCompile>("compileJava21Java") {
+    javaCompiler.set(javaToolchains.compilerFor {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    })
+    options.release.set(21)
+    options.compilerArgs.add("--enable-preview")
 }
 
+tasks.jar {
+    into("META-INF/versions/21") {
+        from(sourceSets["java21"].output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
+val epollJvmArgs = listOf("--enable-preview", "--enable-native-access=ALL-UNNAMED")
+
 tasks.withType<Test> {
     useJUnitPlatform()
+    // NioEventLoop 反射替换 selector 内部的 selectedKeys
+    jvmArgs("--add-opens", "java.base/sun.nio.ch=ALL-UNNAMED")
 
     testLogging {
         events = setOf(TestLogEvent.PASSED, TestLogEvent.SKIPPED, TestLogEvent.FAILED)
@@ -64,3 +110,85 @@ tasks.withType<Test> {
     }
 }
 
+
+// 本机回环压测: ./gradlew run --args="--mode=rpc --connections=64 --depth=8 --size=256 --threads=4 --rate=20000"
+// 在 JDK 21 上运行时默认用 epoll，可以加 --transport=nio 对比
+application {
+    mainClass.set("com.cc.cetty.loadtest.LoadTest")
+    applicationDefaultJvmArgs = listOf("--add-opens", "java.base/sun.nio.ch=ALL-UNNAMED", "--enable-preview")
+}
+
+tasks.named<JavaExec>("run") {
+    dependsOn(tasks.named("java21Classes"))
+    classpath = sourceSets["java21"].output + classpath
+}
+
+// ./gradlew jmh -Pjmh.includes=FastThreadLocal -Pjmh.threads=1,4,16
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks"
+    dependsOn(tasks.named("jmhClasses"))
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.cc.cetty.BenchmarkRunner")
+    listOf("jmh.includes", "jmh.threads", "jmh.forks", "jmh.iterations", "jmh.time").forEach {
+        if (project.hasProperty(it)) {
+            systemProperty(it, project.property(it)!!)
+        }
+    }
+    systemProperty("jmh.resultDir", layout.buildDirectory.dir("reports/jmh").get().asFile.path)
+}
+
+// epoll 和 nio 的回环对比: ./gradlew jmhEpoll
+// jmh fork 出来的 JVM 会继承这里的 JVM 参数
+tasks.register<JavaExec>("jmhEpoll") {
+    group = "benchmark"
+    description = "Runs the transport loopback benchmark on JDK 21 with the epoll transport available"
+    dependsOn(tasks.named("jmhClasses"), tasks.named("java21Classes"))
+    classpath = sourceSets["java21"].output + sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.cc.cetty.BenchmarkRunner")
+    javaLauncher.set(javaToolchains.launcherFor {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    })
+    jvmArgs(epollJvmArgs)
+    systemProperty("jmh.includes", project.findProperty("jmh.includes") ?: "TransportLoopbackBenchmark")
+    listOf("jmh.threads", "jmh.forks", "jmh.iterations", "jmh.time").forEach {
+        if (project.hasProperty(it)) {
+            systemProperty(it, project.property(it)!!)
+        }
+    }
+    systemProperty("jmh.resultDir", layout.buildDirectory.dir("reports/jmh-epoll").get().asFile.path)
+}
+
+// 虚拟线程相关的测试要在 JDK 21 上跑，并开启载体模式: ./gradlew virtualThreadTest
+// 平时的 test 任务也会跑这些用例，只是在 JDK 21 之前会跳过
+tasks.register<Test>("virtualThreadTest") {
+    group = "verification"
+    description = "Runs the virtual thread tests on JDK 21 with virtualThreadMode=carrier"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    javaLauncher.set(javaToolchains.launcherFor {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    })
+    filter {
+        includeTestsMatching("com.cc.cetty.local.VirtualThreadLocalMapTest")
+    }
+    jvmArgs("--add-opens", "java.base/java.lang=ALL-UNNAMED")
+    systemProperty("cetty.threadLocalMap.virtualThreadMode", "carrier")
+}
+
+// epoll 传输的测试要在 JDK 21 上开启预览特性: ./gradlew epollTest
+// 平时的 test 任务只跑其中回退到 nio 的用例
+tasks.register<Test>("epollTest") {
+    group = "verification"
+    description = "Runs the epoll transport tests on JDK 21 with preview features enabled"
+    dependsOn(tasks.named("java21Classes"))
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets["java21"].output + sourceSets.test.get().runtimeClasspath
+    javaLauncher.set(javaToolchains.launcherFor {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    })
+    filter {
+        includeTestsMatching("com.cc.cetty.channel.epoll.*")
+    }
+    jvmArgs(epollJvmArgs)
+}
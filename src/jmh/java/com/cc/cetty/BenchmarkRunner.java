@@ -0,0 +1,55 @@
+package com.cc.cetty;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+
+/**
+ * jmh 的启动入口
+ * jmh 自带的命令行一次只能指定一个线程数，这里按照 jmh.threads 依次跑一遍
+ * 每一轮都会挂上 GC profiler，这样结果里会同时有 ops/s 和 gc.alloc.rate
+ *
+ * @author: cc
+ * @date: 2023/11/21
+ **/
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String includes = System.getProperty("jmh.includes", ".*");
+        String[] threads = System.getProperty("jmh.threads", "1").split(",");
+        String resultDir = System.getProperty("jmh.resultDir", "build/reports/jmh");
+        // noinspection ResultOfMethodCallIgnored
+        new File(resultDir).mkdirs();
+
+        for (String t : threads) {
+            int threadCount = Integer.parseInt(t.trim());
+            ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .include(includes)
+                    .threads(threadCount)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDir + File.separator + "result-" + threadCount + "t.json");
+            String forks = System.getProperty("jmh.forks");
+            if (forks != null) {
+                builder.forks(Integer.parseInt(forks));
+            }
+            String iterations = System.getProperty("jmh.iterations");
+            if (iterations != null) {
+                builder.warmupIterations(Integer.parseInt(iterations))
+                        .measurementIterations(Integer.parseInt(iterations));
+            }
+            String time = System.getProperty("jmh.time");
+            if (time != null) {
+                builder.warmupTime(TimeValue.milliseconds(Long.parseLong(time)))
+                        .measurementTime(TimeValue.milliseconds(Long.parseLong(time)));
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.cc.cetty.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步调用链的开销对比：DefaultPromise 和 CompletableFuture
+ * 每次调用创建一条长度为 chainLength 的链，从基准测试线程完成第一个，等待最后一个完成
+ *
+ * @author: cc
+ * @date: 2023/11/27
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromiseBenchmark {
+
+    @Param({"5", "10"})
+    public int chainLength;
+
+    private DefaultEventExecutor executor;
+
+    private ExecutorService jdkExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = new DefaultEventExecutor();
+        jdkExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownGracefully();
+        jdkExecutor.shutdown();
+    }
+
+    /**
+     * 监听器在执行器线程上依次完成下一个promise，除了第一跳都是内联执行
+     */
+    @Benchmark
+    public Integer promiseChain() throws Exception {
+        Promise<Integer> head = executor.newPromise();
+        Promise<Integer> current = head;
+        for (int i = 0; i < chainLength; i++) {
+            Promise<Integer> next = executor.newPromise();
+            current.addListener((FutureListener<Integer>) f -> next.setSuccess(f.getNow() + 1));
+            current = next;
+        }
+        head.setSuccess(0);
+        return current.get();
+    }
+
+    /**
+     * 每一步都提交到单线程的jdk线程池
+     */
+    @Benchmark
+    public Integer completableFutureAsyncChain() {
+        CompletableFuture<Integer> head = new CompletableFuture<>();
+        CompletableFuture<Integer> current = head;
+        for (int i = 0; i < chainLength; i++) {
+            current = current.thenApplyAsync(v -> v + 1, jdkExecutor);
+        }
+        head.complete(0);
+        return current.join();
+    }
+
+    /**
+     * 在完成的线程上同步执行每一步，没有线程切换，作为下限参考
+     */
+    @Benchmark
+    public Integer completableFutureSyncChain() {
+        CompletableFuture<Integer> head = new CompletableFuture<>();
+        CompletableFuture<Integer> current = head;
+        for (int i = 0; i < chainLength; i++) {
+            current = current.thenApply(v -> v + 1);
+        }
+        head.complete(0);
+        return current.join();
+    }
+}
@@ -0,0 +1,81 @@
+package com.cc.cetty.attribute;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 每个请求读取会话、租户、trace三个属性的开销对比：DefaultAttributeMap 和每个连接一个 ConcurrentHashMap
+ * 连接上挂了 attributes 个属性，读取的三个是其中id最大的
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeMapBenchmark {
+
+    @Param({"4", "16"})
+    public int attributes;
+
+    private AttributeKey<Object>[] keys;
+
+    private DefaultAttributeMap attributeMap;
+
+    private ConcurrentHashMap<AttributeKey<Object>, AtomicReference<Object>> hashMap;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        keys = new AttributeKey[attributes];
+        attributeMap = new DefaultAttributeMap();
+        hashMap = new ConcurrentHashMap<>();
+        for (int i = 0; i < attributes; i++) {
+            keys[i] = AttributeKey.valueOf("benchmark.attr." + i);
+            attributeMap.attr(keys[i]).set(i);
+            hashMap.computeIfAbsent(keys[i], k -> new AtomicReference<>()).set(i);
+        }
+    }
+
+    @Benchmark
+    public void attributeMap(Blackhole bh) {
+        for (int i = attributes - 3; i < attributes; i++) {
+            bh.consume(attributeMap.attr(keys[i]).get());
+        }
+    }
+
+    @Benchmark
+    public void concurrentHashMap(Blackhole bh) {
+        for (int i = attributes - 3; i < attributes; i++) {
+            bh.consume(hashMap.get(keys[i]).get());
+        }
+    }
+
+    /**
+     * 新连接创建属性表并写入所有属性的开销
+     */
+    @Benchmark
+    public Object attributeMapCreate() {
+        DefaultAttributeMap map = new DefaultAttributeMap();
+        for (AttributeKey<Object> key : keys) {
+            map.attr(key).set(key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Object concurrentHashMapCreate() {
+        ConcurrentHashMap<AttributeKey<Object>, AtomicReference<Object>> map = new ConcurrentHashMap<>();
+        for (AttributeKey<Object> key : keys) {
+            map.computeIfAbsent(key, k -> new AtomicReference<>()).set(key);
+        }
+        return map;
+    }
+}
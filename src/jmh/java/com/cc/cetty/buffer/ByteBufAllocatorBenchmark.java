@@ -0,0 +1,74 @@
+package com.cc.cetty.buffer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 池化和非池化分配器的对比
+ * 每次调用分配一个buf，写入一个long后释放；burst一次分配多个再一起释放，模拟一次读事件中的多个buf
+ * 配合GCProfiler看gc.alloc.rate，池化之后每次分配只剩下ByteBuf对象本身
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Djmh.executor=CUSTOM",
+        "-Djmh.executor.class=com.cc.cetty.local.FastThreadLocalHarnessExecutor"
+})
+public class ByteBufAllocatorBenchmark {
+
+    private static final int BURST = 16;
+
+    @Param({"pooled", "unpooled"})
+    public String allocator;
+
+    @Param({"64", "1024", "8192", "65536"})
+    public int size;
+
+    private ByteBufAllocator alloc;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        alloc = "pooled".equals(allocator) ? new PooledByteBufAllocator(true) : new UnpooledByteBufAllocator(true);
+    }
+
+    @Benchmark
+    public long directAllocAndFree() {
+        ByteBuf buf = alloc.directBuffer(size);
+        buf.writeLong(size);
+        long v = buf.getLong(0);
+        buf.release();
+        return v;
+    }
+
+    @Benchmark
+    public long heapAllocAndFree() {
+        ByteBuf buf = alloc.heapBuffer(size);
+        buf.writeLong(size);
+        long v = buf.getLong(0);
+        buf.release();
+        return v;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long directBurst() {
+        ByteBuf[] bufs = new ByteBuf[BURST];
+        long v = 0;
+        for (int i = 0; i < BURST; i++) {
+            bufs[i] = alloc.directBuffer(size);
+            bufs[i].writeLong(i);
+        }
+        for (int i = 0; i < BURST; i++) {
+            v += bufs[i].getLong(0);
+            bufs[i].release();
+        }
+        return v;
+    }
+}
@@ -0,0 +1,68 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.SingleThreadEventExecutor;
+import com.cc.cetty.channel.nio.NioEventLoopGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 其他线程向空闲的NioEventLoop连续提交burst个任务，等最后一个执行完，结果按单个任务计算
+ * 线程阻塞在select上时只有第一个任务需要唤醒selector，之后线程醒着，提交任务不再产生系统调用
+ * selectWakeups是每个任务对应的select返回次数，越接近 1/burst 说明多余的唤醒越少
+ *
+ * @author: cc
+ * @date: 2023/12/16
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventLoopWakeupBenchmark {
+
+    private static final int BURST = 64;
+
+    private NioEventLoopGroup group;
+
+    private EventLoop loop;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new NioEventLoopGroup(1);
+        loop = group.next();
+        loop.submit(() -> null).sync();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        group.shutdownGracefully();
+        group.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burst(Wakeups wakeups) throws Exception {
+        long before = ((SingleThreadEventExecutor) loop).metrics().getSelectWakeups();
+        CountDownLatch latch = new CountDownLatch(BURST);
+        for (int i = 0; i < BURST; i++) {
+            loop.execute(latch::countDown);
+        }
+        latch.await();
+        wakeups.selectWakeups += ((SingleThreadEventExecutor) loop).metrics().getSelectWakeups() - before;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Wakeups {
+
+        public long selectWakeups;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            selectWakeups = 0;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.bootstrap.Bootstrap;
+import com.cc.cetty.bootstrap.ServerBootstrap;
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ReadOnlyMappedByteBuf;
+import com.cc.cetty.channel.nio.NioEventLoopGroup;
+import com.cc.cetty.channel.nio.NioServerSocketChannel;
+import com.cc.cetty.channel.nio.NioSocketChannel;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通过回环地址发送整个文件，读到用户态buf再写出、FileRegion和内存映射的对比
+ * copy每次把文件按块读进池化的堆外buf再写出，fileRegion用transferTo，mapped把整个文件映射成只读buf
+ * 每次调用发送一次文件，等对端全部收到为止，结果是每秒发送的文件数
+ * 辅助计数器bytes是每秒发送的字节数，cpuNanos是每秒整个进程消耗的CPU时间，1e9表示占满一个核
+ *
+ * @author: cc
+ * @date: 2023/12/10
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileServingBenchmark {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param({"copy", "fileRegion", "mapped"})
+    public String mode;
+
+    @Param({"1048576", "16777216"})
+    public int fileSize;
+
+    private NioEventLoopGroup group;
+
+    private Channel server;
+
+    private Channel client;
+
+    private Receiver receiver;
+
+    private Path file;
+
+    private FileChannel fileChannel;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        file = Files.createTempFile("cetty-bench", ".bin");
+        Files.write(file, content);
+        fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        group = new NioEventLoopGroup(2);
+        receiver = new Receiver();
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(receiver)
+                .bind("127.0.0.1", 0).sync().channel();
+        client = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(server.localAddress()).sync().channel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close().sync();
+        server.close().sync();
+        group.shutdownGracefully();
+        group.awaitTermination(5, TimeUnit.SECONDS);
+        fileChannel.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void serve(Cpu cpu) throws Exception {
+        long start = Cpu.processCpuTime();
+        CountDownLatch latch = receiver.expect(fileSize);
+        client.eventLoop().submit(() -> {
+            switch (mode) {
+                case "copy":
+                    writeCopies();
+                    break;
+                case "fileRegion":
+                    client.writeAndFlush(new DefaultFileRegion(file.toFile(), 0, fileSize));
+                    break;
+                default:
+                    client.writeAndFlush(ReadOnlyMappedByteBuf.map(file));
+                    break;
+            }
+            return null;
+        }).sync();
+        latch.await();
+        cpu.bytes += fileSize;
+        cpu.cpuNanos += Cpu.processCpuTime() - start;
+    }
+
+    /**
+     * 没有零拷贝时的做法，文件内容先读到用户态
+     */
+    private void writeCopies() throws IOException {
+        long position = 0;
+        while (position < fileSize) {
+            int length = (int) Math.min(CHUNK_SIZE, fileSize - position);
+            ByteBuf buf = client.alloc().directBuffer(length);
+            fileChannel.read(buf.internalNioBuffer(0, length), position);
+            buf.writerIndex(length);
+            client.write(buf);
+            position += length;
+        }
+        client.flush();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Cpu {
+
+        public long bytes;
+
+        public long cpuNanos;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            cpuNanos = 0;
+        }
+
+        static long processCpuTime() {
+            return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+        }
+    }
+
+    @ChannelHandler.Sharable
+    static final class Receiver extends ChannelInboundHandlerAdapter {
+
+        private final AtomicLong remaining = new AtomicLong();
+
+        private volatile CountDownLatch latch;
+
+        CountDownLatch expect(long bytes) {
+            CountDownLatch latch = new CountDownLatch(1);
+            this.latch = latch;
+            remaining.set(bytes);
+            return latch;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            if (remaining.addAndGet(-buf.readableBytes()) == 0) {
+                latch.countDown();
+            }
+            buf.release();
+        }
+    }
+}
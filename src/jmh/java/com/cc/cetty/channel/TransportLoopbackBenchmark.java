@@ -0,0 +1,155 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.SingleThreadEventExecutor;
+import com.cc.cetty.bootstrap.Bootstrap;
+import com.cc.cetty.bootstrap.ServerBootstrap;
+import com.cc.cetty.bootstrap.Transport;
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.channel.epoll.Epoll;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机回环上的一来一回，比较epoll和nio两种传输
+ * 基准线程把size字节交给客户端channel写出，服务端原样写回，客户端收齐之后算一次
+ * 每次都要跨线程提交写任务，所以loopWakeups是客户端和服务端事件循环每次一来一回的唤醒次数，nio是select返回，epoll是epoll_wait返回
+ * epoll要在JDK 21上开启预览特性，用 ./gradlew jmhEpoll 运行；epoll不可用时这一组参数直接报错，不会悄悄换成nio
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportLoopbackBenchmark {
+
+    @Param({"NIO", "EPOLL"})
+    public Transport transport;
+
+    @Param({"64", "4096"})
+    public int size;
+
+    private EventLoopGroup serverGroup;
+
+    private EventLoopGroup clientGroup;
+
+    private Channel server;
+
+    private Channel client;
+
+    private ReplyHandler reply;
+
+    @ChannelHandler.Sharable
+    static final class EchoHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.write(msg);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+
+    static final class ReplyHandler extends ChannelInboundHandlerAdapter {
+
+        private final int size;
+
+        private int received;
+
+        private volatile CountDownLatch latch;
+
+        ReplyHandler(int size) {
+            this.size = size;
+        }
+
+        CountDownLatch expect() {
+            CountDownLatch next = new CountDownLatch(1);
+            latch = next;
+            return next;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            received += buf.readableBytes();
+            buf.release();
+            if (received >= size) {
+                received -= size;
+                latch.countDown();
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if (!transport.isAvailable()) {
+            throw new IllegalStateException(transport + " is unavailable", Epoll.unavailabilityCause());
+        }
+        serverGroup = transport.newEventLoopGroup(1);
+        clientGroup = transport.newEventLoopGroup(1);
+        server = new ServerBootstrap()
+                .group(serverGroup, serverGroup)
+                .channel(transport.serverSocketChannelClass())
+                .childHandler(new EchoHandler())
+                .bind("127.0.0.1", 0)
+                .sync()
+                .channel();
+        reply = new ReplyHandler(size);
+        client = new Bootstrap()
+                .group(clientGroup)
+                .channel(transport.socketChannelClass())
+                .handler(reply)
+                .connect(server.localAddress())
+                .sync()
+                .channel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close().sync();
+        server.close().sync();
+        clientGroup.shutdownGracefully();
+        serverGroup.shutdownGracefully();
+        clientGroup.awaitTermination(5, TimeUnit.SECONDS);
+        serverGroup.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void pingPong(Wakeups wakeups) throws Exception {
+        long before = loopWakeups();
+        CountDownLatch latch = reply.expect();
+        ByteBuf buf = client.alloc().directBuffer(size);
+        buf.writerIndex(size);
+        client.writeAndFlush(buf);
+        latch.await();
+        wakeups.loopWakeups += loopWakeups() - before;
+    }
+
+    private long loopWakeups() {
+        return ((SingleThreadEventExecutor) client.eventLoop()).metrics().getSelectWakeups()
+                + ((SingleThreadEventExecutor) serverGroup.next()).metrics().getSelectWakeups();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Wakeups {
+
+        public long loopWakeups;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            loopWakeups = 0;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.bootstrap.Bootstrap;
+import com.cc.cetty.bootstrap.ServerBootstrap;
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.channel.nio.NioEventLoopGroup;
+import com.cc.cetty.channel.nio.NioServerSocketChannel;
+import com.cc.cetty.channel.nio.NioSocketChannel;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过回环地址发送大量小消息，每条消息都flush和攒一批再flush一次的对比
+ * flushEach每条消息一次write系统调用，batched把BATCH条消息交给一次gathering write
+ * 每次调用在事件循环中写BATCH条消息，等最后一条写完，结果按单条消息计算
+ *
+ * @author: cc
+ * @date: 2023/12/09
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBatchingBenchmark {
+
+    private static final int BATCH = 256;
+
+    @Param({"flushEach", "batched"})
+    public String mode;
+
+    @Param({"64"})
+    public int size;
+
+    private NioEventLoopGroup group;
+
+    private Channel server;
+
+    private Channel client;
+
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new NioEventLoopGroup(2);
+        payload = new byte[size];
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new Discard())
+                .bind("127.0.0.1", 0).sync().channel();
+        client = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(server.localAddress()).sync().channel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close().sync();
+        server.close().sync();
+        group.shutdownGracefully();
+        group.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void write() throws Exception {
+        boolean flushEach = "flushEach".equals(mode);
+        client.eventLoop().submit(() -> {
+            ChannelFuture last = null;
+            for (int i = 0; i < BATCH; i++) {
+                ByteBuf buf = client.alloc().directBuffer(size).writeBytes(payload);
+                last = flushEach ? client.writeAndFlush(buf) : client.write(buf);
+            }
+            if (!flushEach) {
+                client.flush();
+            }
+            return last;
+        }).sync().getNow().sync();
+    }
+
+    @ChannelHandler.Sharable
+    static final class Discard extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ((ByteBuf) msg).release();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.cc.cetty.event;
+
+import com.cc.cetty.async.DefaultEventExecutorGroup;
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.recycler.Recycler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个线程同时发布事件，每个事件循环上有SUBSCRIBERS个订阅者，每个线程发布burst个事件后等待全部投递完成，结果按单个事件计算
+ * eventBus：无锁发布，每个事件循环一批事件只提交一个任务
+ * synchronizedObservers：加锁遍历观察者列表，每个观察者每个事件提交一个任务
+ *
+ * @author: cc
+ * @date: 2023/12/18
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class EventBusBenchmark {
+
+    private static final int BURST = 64;
+
+    private static final int LOOPS = 2;
+
+    private static final int SUBSCRIBERS = 4;
+
+    private static final EventType<BenchmarkEvent> TYPE = EventType.valueOf(EventBusBenchmark.class, "benchmark");
+
+    private DefaultEventExecutorGroup group;
+
+    private EventBus bus;
+
+    private List<Observer> observers;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new DefaultEventExecutorGroup(LOOPS);
+        bus = new EventBus();
+        observers = new ArrayList<>();
+        for (int i = 0; i < LOOPS; i++) {
+            EventExecutor executor = group.next();
+            for (int j = 0; j < SUBSCRIBERS; j++) {
+                bus.subscribe(TYPE, executor, BenchmarkEvent::countDown);
+                observers.add(new Observer(executor));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        group.shutdownGracefully();
+        group.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void eventBus() throws Exception {
+        CountDownLatch latch = new CountDownLatch(BURST * LOOPS * SUBSCRIBERS);
+        for (int i = 0; i < BURST; i++) {
+            bus.publish(BenchmarkEvent.newInstance(latch));
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void synchronizedObservers() throws Exception {
+        CountDownLatch latch = new CountDownLatch(BURST * LOOPS * SUBSCRIBERS);
+        for (int i = 0; i < BURST; i++) {
+            synchronized (observers) {
+                for (Observer observer : observers) {
+                    observer.executor.execute(latch::countDown);
+                }
+            }
+        }
+        latch.await();
+    }
+
+    private static final class Observer {
+
+        private final EventExecutor executor;
+
+        private Observer(EventExecutor executor) {
+            this.executor = executor;
+        }
+    }
+
+    private static final class BenchmarkEvent extends Event {
+
+        private static final Recycler<BenchmarkEvent> RECYCLER = new Recycler<>() {
+            @Override
+            protected BenchmarkEvent newObject(Handle<BenchmarkEvent> handle) {
+                return new BenchmarkEvent(handle);
+            }
+        };
+
+        private final Recycler.Handle<BenchmarkEvent> handle;
+
+        private CountDownLatch latch;
+
+        private BenchmarkEvent(Recycler.Handle<BenchmarkEvent> handle) {
+            this.handle = handle;
+        }
+
+        static BenchmarkEvent newInstance(CountDownLatch latch) {
+            BenchmarkEvent event = RECYCLER.get();
+            event.init(TYPE);
+            event.latch = latch;
+            return event;
+        }
+
+        void countDown() {
+            latch.countDown();
+        }
+
+        @Override
+        protected void deallocate() {
+            latch = null;
+            handle.recycle(this);
+        }
+    }
+}
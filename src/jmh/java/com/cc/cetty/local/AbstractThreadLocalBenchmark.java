@@ -0,0 +1,134 @@
+package com.cc.cetty.local;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FastThreadLocal 和 ThreadLocal 的基准测试
+ * 具体走哪条 getMap 路径由子类的 fork 参数决定
+ * localCount 是同时存活的 thread local 个数，线程数通过 BenchmarkRunner 的 jmh.threads 控制
+ *
+ * @author: cc
+ * @date: 2023/11/21
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public abstract class AbstractThreadLocalBenchmark {
+
+    /**
+     * 提前装箱，避免把 Integer 的分配算到 thread local 头上
+     */
+    private static final Integer VALUE = 1024;
+
+    @Param({"1", "16", "256"})
+    public int localCount;
+
+    private FastThreadLocal<Integer>[] fastThreadLocals;
+
+    private ThreadLocal<Integer>[] threadLocals;
+
+    private FastThreadLocalLong[] fastThreadLocalLongs;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        fastThreadLocals = new FastThreadLocal[localCount];
+        threadLocals = new ThreadLocal[localCount];
+        fastThreadLocalLongs = new FastThreadLocalLong[localCount];
+        for (int i = 0; i < localCount; i++) {
+            fastThreadLocals[i] = new FastThreadLocal<>() {
+                @Override
+                protected Integer initialValue() {
+                    return VALUE;
+                }
+            };
+            threadLocals[i] = ThreadLocal.withInitial(() -> VALUE);
+            fastThreadLocalLongs[i] = new FastThreadLocalLong();
+        }
+    }
+
+    @Benchmark
+    public Object getMap() {
+        return InternalThreadLocalMap.getMap();
+    }
+
+    @Benchmark
+    public void fastGet(Blackhole bh) {
+        for (FastThreadLocal<Integer> local : fastThreadLocals) {
+            bh.consume(local.get());
+        }
+    }
+
+    @Benchmark
+    public void jdkGet(Blackhole bh) {
+        for (ThreadLocal<Integer> local : threadLocals) {
+            bh.consume(local.get());
+        }
+    }
+
+    @Benchmark
+    public void fastSet() {
+        for (FastThreadLocal<Integer> local : fastThreadLocals) {
+            local.set(VALUE);
+        }
+    }
+
+    @Benchmark
+    public void jdkSet() {
+        for (ThreadLocal<Integer> local : threadLocals) {
+            local.set(VALUE);
+        }
+    }
+
+    @Benchmark
+    public void fastSetAndRemove() {
+        for (FastThreadLocal<Integer> local : fastThreadLocals) {
+            local.set(VALUE);
+            local.remove();
+        }
+    }
+
+    @Benchmark
+    public void jdkSetAndRemove() {
+        for (ThreadLocal<Integer> local : threadLocals) {
+            local.set(VALUE);
+            local.remove();
+        }
+    }
+
+    /**
+     * 模拟池化任务：设置一批 thread local，结束时 removeAll
+     */
+    @Benchmark
+    public void fastSetAndRemoveAll() {
+        for (FastThreadLocal<Integer> local : fastThreadLocals) {
+            local.set(VALUE);
+        }
+        FastThreadLocal.removeAll();
+    }
+
+    /**
+     * 装箱的计数器，每次自增都会产生一个Integer
+     */
+    @Benchmark
+    public void fastBoxedIncrement() {
+        for (FastThreadLocal<Integer> local : fastThreadLocals) {
+            local.set(local.get() + 1);
+        }
+    }
+
+    /**
+     * 基本类型的计数器，不会产生对象
+     */
+    @Benchmark
+    public void fastPrimitiveIncrement() {
+        for (FastThreadLocalLong local : fastThreadLocalLongs) {
+            local.increment();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.cc.cetty.local;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * 工作线程是 FastThreadLocalThread，InternalThreadLocalMap 直接从线程的字段中取
+ *
+ * @author: cc
+ * @date: 2023/11/21
+ **/
+@Fork(value = 1, jvmArgsAppend = {
+        "-Djmh.executor=CUSTOM",
+        "-Djmh.executor.class=com.cc.cetty.local.FastThreadLocalHarnessExecutor"
+})
+public class FastPathThreadLocalBenchmark extends AbstractThreadLocalBenchmark {
+}
@@ -0,0 +1,68 @@
+package com.cc.cetty.local;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池任务之间清理fastThreadLocal的两种方式对比，工作线程是普通线程，和没有换线程工厂的线程池一样
+ * removeAll 是FastThreadLocalRunnable的做法，丢掉整个map，下一个任务重新创建map、重新扩容
+ * clearAll 是FastThreadLocalExecutors的做法，只清理任务新设置的下标，map和数组留给下一个任务
+ * 登记了 registered 个fastThreadLocal，每个任务设置最后 touched 个，下标越大丢掉map之后重新扩容的代价越大
+ *
+ * @author: cc
+ * @date: 2023/12/15
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastThreadLocalExecutorBenchmark {
+
+    @Param({"32", "512"})
+    private int registered;
+
+    @Param({"1", "8"})
+    private int touched;
+
+    private FastThreadLocal<Object>[] locals;
+
+    private Runnable removeAllTask;
+
+    private Runnable clearAllTask;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        locals = new FastThreadLocal[registered];
+        for (int i = 0; i < registered; i++) {
+            locals[i] = new FastThreadLocal<>();
+        }
+        Runnable task = () -> {
+            for (int i = registered - touched; i < registered; i++) {
+                locals[i].set(Boolean.TRUE);
+            }
+        };
+        removeAllTask = FastThreadLocalRunnable.wrap(task);
+        clearAllTask = FastThreadLocalExecutors.wrapTask(task);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (FastThreadLocal<Object> local : locals) {
+            local.destroy();
+        }
+    }
+
+    @Benchmark
+    public void removeAll() {
+        removeAllTask.run();
+    }
+
+    @Benchmark
+    public void clearAll() {
+        clearAllTask.run();
+    }
+}
@@ -0,0 +1,39 @@
+package com.cc.cetty.local;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * jmh 默认用普通线程执行基准测试，这样只能测到 slowThreadLocalMap 的路径
+ * 通过 -Djmh.executor=CUSTOM -Djmh.executor.class=本类 让 jmh 的工作线程变成 FastThreadLocalThread
+ * 构造方法的签名是 jmh 约定好的
+ *
+ * @author: cc
+ * @date: 2023/11/21
+ **/
+public class FastThreadLocalHarnessExecutor extends ThreadPoolExecutor {
+
+    public FastThreadLocalHarnessExecutor(int maxThreads, String prefix) {
+        super(maxThreads, maxThreads, 1, TimeUnit.DAYS, new LinkedBlockingQueue<>(), new ThreadFactory(prefix));
+    }
+
+    private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private final String prefix;
+
+        private ThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            FastThreadLocalThread thread = new FastThreadLocalThread(r, prefix + "-fast-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
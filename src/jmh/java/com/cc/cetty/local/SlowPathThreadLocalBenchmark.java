@@ -0,0 +1,13 @@
+package com.cc.cetty.local;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * 工作线程是普通线程，InternalThreadLocalMap 要先经过 slowThreadLocalMap 这个原生 ThreadLocal
+ *
+ * @author: cc
+ * @date: 2023/11/21
+ **/
+@Fork(1)
+public class SlowPathThreadLocalBenchmark extends AbstractThreadLocalBenchmark {
+}
@@ -0,0 +1,61 @@
+package com.cc.cetty.local;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThreadLocalCounter 和 LongAdder、AtomicLong 的写吞吐对比
+ * 所有线程写同一个计数器，线程数通过 BenchmarkRunner 的 jmh.threads 控制，例如 -Pjmh.threads=1,4,16,64
+ * 工作线程是 FastThreadLocalThread，走 InternalThreadLocalMap 的快路径
+ * sum 是写的同时读，看读的开销随线程数的变化
+ *
+ * @author: cc
+ * @date: 2023/12/14
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Djmh.executor=CUSTOM",
+        "-Djmh.executor.class=com.cc.cetty.local.FastThreadLocalHarnessExecutor"
+})
+public class ThreadLocalCounterBenchmark {
+
+    private final ThreadLocalCounter threadLocalCounter = new ThreadLocalCounter();
+
+    private final LongAdder longAdder = new LongAdder();
+
+    private final AtomicLong atomicLong = new AtomicLong();
+
+    @Benchmark
+    public void threadLocalCounter() {
+        threadLocalCounter.increment();
+    }
+
+    @Benchmark
+    public void longAdder() {
+        longAdder.increment();
+    }
+
+    @Benchmark
+    public void atomicLong() {
+        atomicLong.incrementAndGet();
+    }
+
+    @Benchmark
+    public long threadLocalCounterSum() {
+        threadLocalCounter.increment();
+        return threadLocalCounter.sum();
+    }
+
+    @Benchmark
+    public long longAdderSum() {
+        longAdder.increment();
+        return longAdder.sum();
+    }
+}
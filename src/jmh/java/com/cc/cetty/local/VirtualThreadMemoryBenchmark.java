@@ -0,0 +1,116 @@
+package com.cc.cetty.local;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 每个虚拟线程因为fastThreadLocal多占用的堆内存
+ * jmh 的 GC profiler 只能看到分配速率，看不到存活的对象，所以这里直接让一批虚拟线程带着 thread local 停住，比较 GC 之后的堆大小
+ * 要在 JDK 21 上运行，项目按 JDK 11 编译，通过反射创建虚拟线程，例如:
+ * <pre>
+ * java -cp build/classes/java/main:build/classes/java/jmh:... com.cc.cetty.local.VirtualThreadMemoryBenchmark
+ * java -Dcetty.threadLocalMap.virtualThreadInitialCapacity=32 ...   旧的行为，每个map一开始就是完整的数组
+ * java -Dcetty.threadLocalMap.virtualThreadMode=carrier --add-opens java.base/java.lang=ALL-UNNAMED ...
+ * </pre>
+ * 建议加上 -XX:+UseSerialGC，full GC 之后的堆大小比较准
+ * -Dthreads 是同时存活的虚拟线程数，-Dlocals 是先创建的fastThreadLocal个数，模拟应用里已经有很多fastThreadLocal，
+ * 每个虚拟线程设置最后一个fastThreadLocal的值，并写一个ThreadLocalCounter
+ *
+ * @author: cc
+ * @date: 2023/12/14
+ **/
+public class VirtualThreadMemoryBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("threads", 100_000);
+        int locals = Integer.getInteger("locals", 64);
+        Method startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+
+        List<FastThreadLocal<Object>> fastThreadLocals = new ArrayList<>(locals);
+        for (int i = 0; i < locals; i++) {
+            fastThreadLocals.add(new FastThreadLocal<>());
+        }
+        FastThreadLocal<Object> local = fastThreadLocals.get(locals - 1);
+        ThreadLocalCounter counter = new ThreadLocalCounter();
+
+        Runnable[] bodies = {
+                () -> {
+                },
+                () -> local.set(VALUE),
+                () -> {
+                    local.set(VALUE);
+                    counter.increment();
+                }
+        };
+        // 预热一轮，让类加载和调度器的线程都先准备好
+        run(startVirtualThread, threads / 10, bodies[0]);
+        // 虚拟线程的栈大小每次测都有波动，几种场景交替测几轮，取中位数
+        int rounds = Integer.getInteger("rounds", 5);
+        long[][] results = new long[bodies.length][rounds];
+        for (int r = 0; r < rounds; r++) {
+            for (int b = 0; b < bodies.length; b++) {
+                results[b][r] = run(startVirtualThread, threads, bodies[b]);
+            }
+        }
+        long bare = median(results[0]);
+        long withLocal = median(results[1]);
+        long withLocalAndCounter = median(results[2]);
+
+        System.out.printf("virtualThreadMode=%s, virtualThreadInitialCapacity=%s, threads=%d, locals=%d%n",
+                InternalThreadLocalMap.isCarrierMode() ? "carrier" : "thread",
+                System.getProperty("cetty.threadLocalMap.virtualThreadInitialCapacity", "0"), threads, locals);
+        System.out.printf("bare virtual thread:          %6d bytes%n", bare / threads);
+        System.out.printf("+ fastThreadLocal:            %6d bytes%n", (withLocal - bare) / threads);
+        System.out.printf("+ fastThreadLocal + counter:  %6d bytes%n", (withLocalAndCounter - bare) / threads);
+        System.out.printf("counter: %d, counter cells: %d%n", counter.sum(), counter.liveThreads());
+    }
+
+    /**
+     * @return 这批虚拟线程存活时比之前多占用的堆内存
+     */
+    private static long run(Method startVirtualThread, int threads, Runnable body) throws Exception {
+        long before = usedHeap();
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> threadList = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            threadList.add((Thread) startVirtualThread.invoke(null, (Runnable) () -> {
+                body.run();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        started.await();
+        long after = usedHeap();
+        release.countDown();
+        for (Thread thread : threadList) {
+            thread.join();
+        }
+        // 包含了虚拟线程本身，设置thread local的两轮减去空跑的一轮就是thread local的开销
+        return after - before;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,100 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.nio.NioEventLoopGroup;
+import com.cc.cetty.channel.nio.NioSocketChannel;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件经过一长串不关心它的处理器时，掩码跳过和逐个调用空方法的对比
+ * skipped的中间处理器没有重写channelRead，forwarding的中间处理器重写了channelRead但只是往后传递
+ * 每次调用在事件循环中连续触发BATCH次channelRead，结果按单个事件计算
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelPipelineBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private static final Object MSG = new Object();
+
+    @Param({"skipped", "forwarding"})
+    public String mode;
+
+    @Param({"4", "16"})
+    public int depth;
+
+    private NioEventLoopGroup group;
+
+    private Channel channel;
+
+    private Counter counter;
+
+    private Runnable fire;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new NioEventLoopGroup(1);
+        channel = new NioSocketChannel();
+        ChannelPipeline pipeline = channel.pipeline();
+        for (int i = 0; i < depth; i++) {
+            pipeline.addLast("skipped".equals(mode) ? new PassThrough() : new Forwarding());
+        }
+        counter = new Counter();
+        pipeline.addLast(counter);
+        group.register(channel).sync();
+        fire = () -> {
+            for (int i = 0; i < BATCH; i++) {
+                pipeline.fireChannelRead(MSG);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        channel.close().sync();
+        group.shutdownGracefully();
+        group.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long fireChannelRead() throws Exception {
+        channel.eventLoop().submit(() -> {
+            fire.run();
+            return null;
+        }).sync();
+        return counter.count;
+    }
+
+    static final class PassThrough extends ChannelInboundHandlerAdapter {
+    }
+
+    static final class Forwarding extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    static final class Counter extends ChannelInboundHandlerAdapter {
+
+        private long count;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cc.cetty.timer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轮和ScheduledThreadPoolExecutor的对比
+ * 每次调用提交100万个30秒后到期的任务，再把它们全部取消，模拟大量连接的读超时被不断重置
+ * 结果按单个任务计算，配合GCProfiler看每个任务占用的内存
+ *
+ * @author: cc
+ * @date: 2023/12/06
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HashedWheelTimerBenchmark {
+
+    private static final int TIMEOUTS = 1_000_000;
+
+    private static final long DELAY_SECONDS = 30;
+
+    private static final TimerTask TIMER_TASK = timeout -> {
+    };
+
+    private static final Runnable RUNNABLE = () -> {
+    };
+
+    private final Timeout[] timeouts = new Timeout[TIMEOUTS];
+
+    private final ScheduledFuture<?>[] futures = new ScheduledFuture[TIMEOUTS];
+
+    private HashedWheelTimer timer;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512);
+        timer.start();
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        timer.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TIMEOUTS)
+    public int hashedWheelTimer() {
+        int cancelled = 0;
+        for (int i = 0; i < TIMEOUTS; i++) {
+            timeouts[i] = timer.newTimeout(TIMER_TASK, DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < TIMEOUTS; i++) {
+            if (timeouts[i].cancel()) {
+                cancelled++;
+            }
+            timeouts[i] = null;
+        }
+        return cancelled;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TIMEOUTS)
+    public int scheduledThreadPoolExecutor() {
+        int cancelled = 0;
+        for (int i = 0; i < TIMEOUTS; i++) {
+            futures[i] = executor.schedule(RUNNABLE, DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < TIMEOUTS; i++) {
+            if (futures[i].cancel(false)) {
+                cancelled++;
+            }
+            futures[i] = null;
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,39 @@
+package com.cc.cetty.async;
+
+import com.cc.cetty.local.DefaultThreadFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * 默认的单线程执行器，只执行提交的任务和定时任务
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public final class DefaultEventExecutor extends SingleThreadEventExecutor {
+
+    public DefaultEventExecutor() {
+        this(null, new ThreadPerTaskExecutor(new DefaultThreadFactory(DefaultEventExecutor.class)));
+    }
+
+    public DefaultEventExecutor(EventExecutorGroup parent, Executor executor) {
+        super(parent, executor);
+    }
+
+    public DefaultEventExecutor(EventExecutorGroup parent, Executor executor, int maxPendingTasks) {
+        super(parent, executor, maxPendingTasks);
+    }
+
+    @Override
+    protected void run() {
+        while (!isShuttingDown()) {
+            Runnable task = takeTask();
+            if (Objects.nonNull(task)) {
+                runTask(task);
+            }
+            // 醒来一次就把到期的定时任务和积压的任务批量执行完
+            runAllTasks();
+        }
+    }
+}
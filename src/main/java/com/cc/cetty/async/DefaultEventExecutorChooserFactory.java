@@ -0,0 +1,69 @@
+package com.cc.cetty.async;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 默认的选择器工厂，执行器个数是2的幂次方时用位运算轮询，否则用取模轮询
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public final class DefaultEventExecutorChooserFactory implements EventExecutorChooserFactory {
+
+    public static final DefaultEventExecutorChooserFactory INSTANCE = new DefaultEventExecutorChooserFactory();
+
+    private DefaultEventExecutorChooserFactory() {
+    }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        if (isPowerOfTwo(executors.length)) {
+            return new PowerOfTwoEventExecutorChooser(executors);
+        } else {
+            return new GenericEventExecutorChooser(executors);
+        }
+    }
+
+    private static boolean isPowerOfTwo(int val) {
+        return (val & -val) == val;
+    }
+
+    /**
+     * 执行器个数是2的幂次方，取模可以换成与运算
+     */
+    private static final class PowerOfTwoEventExecutorChooser implements EventExecutorChooser {
+
+        private final AtomicInteger idx = new AtomicInteger();
+
+        private final EventExecutor[] executors;
+
+        PowerOfTwoEventExecutorChooser(EventExecutor[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public EventExecutor next() {
+            return executors[idx.getAndIncrement() & executors.length - 1];
+        }
+    }
+
+    /**
+     * 普通的轮询，下标用long避免溢出后取模得到负数
+     */
+    private static final class GenericEventExecutorChooser implements EventExecutorChooser {
+
+        private final AtomicLong idx = new AtomicLong();
+
+        private final EventExecutor[] executors;
+
+        GenericEventExecutorChooser(EventExecutor[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public EventExecutor next() {
+            return executors[(int) Math.abs(idx.getAndIncrement() % executors.length)];
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.cc.cetty.async;
+
+import com.cc.cetty.local.DefaultThreadFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 默认的执行器组，子执行器是DefaultEventExecutor
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public class DefaultEventExecutorGroup extends MultithreadEventExecutorGroup {
+
+    public DefaultEventExecutorGroup(int nThreads) {
+        this(nThreads, new DefaultThreadFactory(DefaultEventExecutorGroup.class));
+    }
+
+    public DefaultEventExecutorGroup(int nThreads, ThreadFactory threadFactory) {
+        this(nThreads, threadFactory, SingleThreadEventExecutor.DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    public DefaultEventExecutorGroup(int nThreads, ThreadFactory threadFactory, int maxPendingTasks) {
+        this(nThreads, threadFactory, DefaultEventExecutorChooserFactory.INSTANCE, maxPendingTasks);
+    }
+
+    public DefaultEventExecutorGroup(int nThreads, ThreadFactory threadFactory, EventExecutorChooserFactory chooserFactory, int maxPendingTasks) {
+        super(nThreads, new ThreadPerTaskExecutor(threadFactory), chooserFactory, maxPendingTasks);
+    }
+
+    @Override
+    protected EventExecutor newChild(Executor executor, Object... args) {
+        return new DefaultEventExecutor(this, executor, (int) args[0]);
+    }
+}
@@ -0,0 +1,512 @@
+package com.cc.cetty.async;
+
+import com.cc.cetty.local.InternalThreadLocalMap;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 默认的promise
+ * 结果只通过一次CAS设置，监听器和等待的线程分别放在两个无锁栈中，整个过程不加锁
+ * 监听器总是在所属的执行器线程上被通知，也只有执行器线程从栈中取走监听器，所以监听器按照添加的顺序被通知
+ * 如果完成promise的就是执行器线程，监听器直接在当前栈上执行，嵌套深度由InternalThreadLocalMap记录，超过上限改为提交任务
+ *
+ * @author: cc
+ * @date: 2023/11/27
+ **/
+@Slf4j
+public class DefaultPromise<V> implements Promise<V> {
+
+    /**
+     * 在同一个线程上嵌套通知监听器的最大深度
+     */
+    private static final int MAX_LISTENER_STACK_DEPTH = Math.min(8, Integer.getInteger("cetty.defaultPromise.maxListenerStackDepth", 8));
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, Object> RESULT_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Object.class, "result");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, Node> LISTENERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Node.class, "listeners");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, WaitNode> WAITERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, WaitNode.class, "waiters");
+
+    /**
+     * 成功但结果为null时的结果
+     */
+    private static final Object SUCCESS = new Object();
+
+    /**
+     * 不可取消时的结果
+     */
+    private static final Object UNCANCELLABLE = new Object();
+
+    /**
+     * 取消时的结果
+     */
+    private static final CauseHolder CANCELLATION_CAUSE_HOLDER = new CauseHolder(new CancellationException("Promise cancelled"));
+
+    private final EventExecutor executor;
+
+    /**
+     * null表示未完成，UNCANCELLABLE表示不可取消但未完成，其他值都表示已经完成
+     */
+    private volatile Object result;
+
+    /**
+     * 监听器组成的栈，后加入的在栈顶，只有执行器线程取走
+     */
+    private volatile Node listeners;
+
+    /**
+     * 等待线程组成的栈，完成的线程取走并唤醒，等待超时或者被中断的线程把自己的节点摘掉
+     */
+    private volatile WaitNode waiters;
+
+    /**
+     * 执行器线程是否正在通知监听器，只有执行器线程访问
+     * 监听器中再添加的监听器不嵌套通知，由外层接着通知，保证顺序
+     */
+    private boolean notifyingListeners;
+
+    /**
+     * @param executor 通知监听器的执行器
+     */
+    public DefaultPromise(EventExecutor executor) {
+        this.executor = AssertUtils.checkNotNull(executor, "Executor cannot be null");
+    }
+
+    /**
+     * 子类如果重写了executor方法，可以不传执行器
+     */
+    protected DefaultPromise() {
+        this.executor = null;
+    }
+
+    /**
+     * @return 通知监听器的执行器
+     */
+    protected EventExecutor executor() {
+        return executor;
+    }
+
+    @Override
+    public Promise<V> setSuccess(V result) {
+        if (setValue0(Objects.isNull(result) ? SUCCESS : result)) {
+            return this;
+        }
+        throw new IllegalStateException("Complete already: " + this);
+    }
+
+    @Override
+    public boolean trySuccess(V result) {
+        return setValue0(Objects.isNull(result) ? SUCCESS : result);
+    }
+
+    @Override
+    public Promise<V> setFailure(Throwable cause) {
+        if (setValue0(new CauseHolder(AssertUtils.checkNotNull(cause, "Cause cannot be null")))) {
+            return this;
+        }
+        throw new IllegalStateException("Complete already: " + this, cause);
+    }
+
+    @Override
+    public boolean tryFailure(Throwable cause) {
+        return setValue0(new CauseHolder(AssertUtils.checkNotNull(cause, "Cause cannot be null")));
+    }
+
+    @Override
+    public boolean setUncancellable() {
+        if (RESULT_UPDATER.compareAndSet(this, null, UNCANCELLABLE)) {
+            return true;
+        }
+        Object result = this.result;
+        return !isDone0(result) || !isCancelled0(result);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (RESULT_UPDATER.compareAndSet(this, null, CANCELLATION_CAUSE_HOLDER)) {
+            notifyAndWakeup();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled0(result);
+    }
+
+    @Override
+    public boolean isCancellable() {
+        return Objects.isNull(result);
+    }
+
+    @Override
+    public boolean isDone() {
+        return isDone0(result);
+    }
+
+    @Override
+    public boolean isSuccess() {
+        Object result = this.result;
+        return isDone0(result) && !(result instanceof CauseHolder);
+    }
+
+    @Override
+    public Throwable cause() {
+        Object result = this.result;
+        return result instanceof CauseHolder ? ((CauseHolder) result).cause : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getNow() {
+        Object result = this.result;
+        if (result instanceof CauseHolder || result == SUCCESS || result == UNCANCELLABLE) {
+            return null;
+        }
+        return (V) result;
+    }
+
+    @Override
+    public Promise<V> addListener(GenericFutureListener<? extends Future<? super V>> listener) {
+        AssertUtils.checkNotNull(listener, "Listener cannot be null");
+        for (; ; ) {
+            Node head = listeners;
+            Node node = new Node(listener, head);
+            if (LISTENERS_UPDATER.compareAndSet(this, head, node)) {
+                break;
+            }
+        }
+        if (isDone()) {
+            notifyListeners();
+        }
+        return this;
+    }
+
+    @Override
+    public Promise<V> removeListener(GenericFutureListener<? extends Future<? super V>> listener) {
+        AssertUtils.checkNotNull(listener, "Listener cannot be null");
+        // 无锁栈不方便从中间删除节点，这里只把节点置空，通知时跳过
+        for (Node node = listeners; Objects.nonNull(node); node = node.next) {
+            if (node.listener == listener) {
+                node.listener = null;
+                break;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Promise<V> await() throws InterruptedException {
+        if (isDone()) {
+            return this;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException(toString());
+        }
+        checkDeadLock();
+        WaitNode waiter = pushWaiter();
+        while (!isDone()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                removeWaiter(waiter);
+                throw new InterruptedException(toString());
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        if (isDone()) {
+            return true;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException(toString());
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        checkDeadLock();
+        WaitNode waiter = pushWaiter();
+        while (!isDone()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                // 长期不完成的promise上反复限时等待，节点不摘掉会一直堆积到完成
+                removeWaiter(waiter);
+                return false;
+            }
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                removeWaiter(waiter);
+                throw new InterruptedException(toString());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Promise<V> sync() throws InterruptedException {
+        await();
+        rethrowIfFailed();
+        return this;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        await();
+        return report();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    @Override
+    public String toString() {
+        Object result = this.result;
+        String state;
+        if (result == SUCCESS) {
+            state = "success";
+        } else if (result == UNCANCELLABLE) {
+            state = "uncancellable";
+        } else if (result instanceof CauseHolder) {
+            state = "failure(" + ((CauseHolder) result).cause + ')';
+        } else if (Objects.nonNull(result)) {
+            state = "success(" + result + ')';
+        } else {
+            state = "incomplete";
+        }
+        return getClass().getSimpleName() + '@' + Integer.toHexString(hashCode()) + '(' + state + ')';
+    }
+
+    /**
+     * 执行器线程上阻塞等待自己的promise会导致死锁
+     */
+    protected void checkDeadLock() {
+        EventExecutor e = executor();
+        if (Objects.nonNull(e) && e.inEventLoop()) {
+            throw new IllegalStateException("Blocking on the event loop would deadlock: " + this);
+        }
+    }
+
+    private boolean setValue0(Object value) {
+        // 只有未完成的promise才能设置结果，UNCANCELLABLE也算未完成
+        if (RESULT_UPDATER.compareAndSet(this, null, value) || RESULT_UPDATER.compareAndSet(this, UNCANCELLABLE, value)) {
+            notifyAndWakeup();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 先唤醒等待的线程，再通知监听器
+     */
+    private void notifyAndWakeup() {
+        for (WaitNode node = WAITERS_UPDATER.getAndSet(this, null); Objects.nonNull(node); node = node.next) {
+            Thread thread = node.thread;
+            if (Objects.nonNull(thread)) {
+                node.thread = null;
+                LockSupport.unpark(thread);
+            }
+        }
+        if (Objects.nonNull(listeners)) {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * 在执行器线程上通知监听器，不在执行器线程上时提交任务，由执行器线程去取
+     */
+    private void notifyListeners() {
+        EventExecutor executor = executor();
+        if (executor.inEventLoop()) {
+            InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+            int stackDepth = threadLocalMap.futureListenerStackDepth();
+            if (stackDepth < MAX_LISTENER_STACK_DEPTH) {
+                threadLocalMap.setFutureListenerStackDepth(stackDepth + 1);
+                try {
+                    notifyListenersNow();
+                } finally {
+                    threadLocalMap.setFutureListenerStackDepth(stackDepth);
+                }
+                return;
+            }
+        }
+        try {
+            executor.execute(this::notifyListenersNow);
+        } catch (Throwable t) {
+            log.error("Failed to submit a listener notification task. Event loop shut down?", t);
+        }
+    }
+
+    /**
+     * 只在执行器线程上调用，每次取走栈中所有的监听器，反转成添加的顺序后依次通知
+     * 通知过程中新加入的监听器在下一轮取走，排在这一轮之后
+     */
+    private void notifyListenersNow() {
+        if (notifyingListeners) {
+            return;
+        }
+        notifyingListeners = true;
+        try {
+            Node head;
+            while (Objects.nonNull(head = LISTENERS_UPDATER.getAndSet(this, null))) {
+                Node reversed = null;
+                for (Node node = head; Objects.nonNull(node); ) {
+                    Node next = node.next;
+                    node.next = reversed;
+                    reversed = node;
+                    node = next;
+                }
+                for (Node node = reversed; Objects.nonNull(node); node = node.next) {
+                    GenericFutureListener<?> listener = node.listener;
+                    if (Objects.nonNull(listener)) {
+                        notifyListener0(this, listener);
+                    }
+                }
+            }
+        } finally {
+            notifyingListeners = false;
+        }
+    }
+
+    private WaitNode pushWaiter() {
+        WaitNode node = new WaitNode(Thread.currentThread());
+        for (; ; ) {
+            WaitNode head = waiters;
+            node.next = head;
+            if (WAITERS_UPDATER.compareAndSet(this, head, node)) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * 等待超时或者被中断时摘掉自己的节点，同时摘掉遇到的其他失效节点
+     * 和FutureTask一样，先把线程置空，再从头遍历，前驱也失效了说明有并发的摘除，重新遍历
+     *
+     * @param node 自己的节点
+     */
+    private void removeWaiter(WaitNode node) {
+        node.thread = null;
+        retry:
+        for (; ; ) {
+            for (WaitNode pred = null, q = waiters, s; Objects.nonNull(q); q = s) {
+                s = q.next;
+                if (Objects.nonNull(q.thread)) {
+                    pred = q;
+                } else if (Objects.nonNull(pred)) {
+                    pred.next = s;
+                    if (Objects.isNull(pred.thread)) {
+                        continue retry;
+                    }
+                } else if (!WAITERS_UPDATER.compareAndSet(this, q, s)) {
+                    continue retry;
+                }
+            }
+            break;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void notifyListener0(Future future, GenericFutureListener l) {
+        try {
+            l.operationComplete(future);
+        } catch (Throwable t) {
+            log.warn("An exception was thrown by {}.operationComplete()", l.getClass().getName(), t);
+        }
+    }
+
+    private void rethrowIfFailed() {
+        Throwable cause = cause();
+        if (Objects.isNull(cause)) {
+            return;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V report() throws ExecutionException {
+        Object result = this.result;
+        if (result instanceof CauseHolder) {
+            Throwable cause = ((CauseHolder) result).cause;
+            if (cause instanceof CancellationException) {
+                throw (CancellationException) cause;
+            }
+            throw new ExecutionException(cause);
+        }
+        return result == SUCCESS ? null : (V) result;
+    }
+
+    private static boolean isDone0(Object result) {
+        return Objects.nonNull(result) && result != UNCANCELLABLE;
+    }
+
+    private static boolean isCancelled0(Object result) {
+        return result instanceof CauseHolder && ((CauseHolder) result).cause instanceof CancellationException;
+    }
+
+    /**
+     * 失败的结果
+     */
+    private static final class CauseHolder {
+
+        private final Throwable cause;
+
+        private CauseHolder(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * 监听器栈中的节点
+     */
+    private static final class Node {
+
+        private volatile GenericFutureListener<?> listener;
+
+        private Node next;
+
+        private Node(GenericFutureListener<?> listener, Node next) {
+            this.listener = listener;
+            this.next = next;
+        }
+    }
+
+    /**
+     * 等待线程栈中的节点，线程为null表示已经失效
+     */
+    private static final class WaitNode {
+
+        private volatile Thread thread;
+
+        private volatile WaitNode next;
+
+        private WaitNode(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
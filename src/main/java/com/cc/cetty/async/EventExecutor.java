@@ -0,0 +1,69 @@
+package com.cc.cetty.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件执行器，是只有自己一个执行器的执行器组
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public interface EventExecutor extends EventExecutorGroup {
+
+    /**
+     * @return 所属的执行器组
+     */
+    EventExecutorGroup parent();
+
+    /**
+     * @return 当前线程是否为执行器的线程
+     */
+    default boolean inEventLoop() {
+        return inEventLoop(Thread.currentThread());
+    }
+
+    /**
+     * @param thread thread
+     * @return 线程是否为执行器的线程
+     */
+    boolean inEventLoop(Thread thread);
+
+    @Override
+    default EventExecutor next() {
+        return this;
+    }
+
+    /**
+     * @param <V> V
+     * @return 由该执行器通知监听器的promise
+     */
+    default <V> Promise<V> newPromise() {
+        return new DefaultPromise<>(this);
+    }
+
+    @Override
+    default <V> Future<V> submit(Callable<V> task) {
+        Promise<V> promise = newPromise();
+        execute(() -> {
+            try {
+                promise.trySuccess(task.call());
+            } catch (Throwable t) {
+                promise.tryFailure(t);
+            }
+        });
+        return promise;
+    }
+
+    @Override
+    ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit);
+
+    @Override
+    <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit);
+
+    @Override
+    ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit);
+
+    @Override
+    ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit);
+}
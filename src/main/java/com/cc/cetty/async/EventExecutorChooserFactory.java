@@ -0,0 +1,27 @@
+package com.cc.cetty.async;
+
+/**
+ * 执行器选择器的工厂
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public interface EventExecutorChooserFactory {
+
+    /**
+     * @param executors 执行器
+     * @return 选择器
+     */
+    EventExecutorChooser newChooser(EventExecutor[] executors);
+
+    /**
+     * 执行器选择器
+     */
+    interface EventExecutorChooser {
+
+        /**
+         * @return 下一个执行器
+         */
+        EventExecutor next();
+    }
+}
@@ -0,0 +1,116 @@
+package com.cc.cetty.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件执行器组，管理一组EventExecutor，通过next方法选出一个执行器
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public interface EventExecutorGroup extends Executor, Iterable<EventExecutor> {
+
+    /**
+     * @return 选出的下一个执行器
+     */
+    EventExecutor next();
+
+    /**
+     * 优雅关闭，已经提交的任务会执行完
+     */
+    void shutdownGracefully();
+
+    /**
+     * @return 是否正在关闭或已经关闭
+     */
+    boolean isShuttingDown();
+
+    /**
+     * @return 是否已经关闭，不再接收任务
+     */
+    boolean isShutdown();
+
+    /**
+     * @return 是否已经终止，线程已经退出
+     */
+    boolean isTerminated();
+
+    /**
+     * 等待终止
+     *
+     * @param timeout timeout
+     * @param unit    unit
+     * @return 是否在超时前终止
+     * @throws InterruptedException 被中断
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 提交一个有返回值的任务
+     *
+     * @param task task
+     * @param <V>  V
+     * @return future
+     */
+    default <V> Future<V> submit(Callable<V> task) {
+        return next().submit(task);
+    }
+
+    /**
+     * 延迟执行一次
+     *
+     * @param command command
+     * @param delay   delay
+     * @param unit    unit
+     * @return future，取消后任务会从定时任务队列中删除
+     */
+    default ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return next().schedule(command, delay, unit);
+    }
+
+    /**
+     * 延迟执行一次有返回值的任务
+     *
+     * @param callable callable
+     * @param delay    delay
+     * @param unit     unit
+     * @param <V>      V
+     * @return future，取消后任务会从定时任务队列中删除
+     */
+    default <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return next().schedule(callable, delay, unit);
+    }
+
+    /**
+     * 按固定频率执行，下一次的截止时间从上一次的截止时间算起，任务抛出异常后不再执行
+     *
+     * @param command      command
+     * @param initialDelay 第一次执行的延迟
+     * @param period       period
+     * @param unit         unit
+     * @return future，取消后任务会从定时任务队列中删除
+     */
+    default ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return next().scheduleAtFixedRate(command, initialDelay, period, unit);
+    }
+
+    /**
+     * 按固定延迟执行，下一次的截止时间从这一次执行完算起，任务抛出异常后不再执行
+     *
+     * @param command      command
+     * @param initialDelay 第一次执行的延迟
+     * @param delay        delay
+     * @param unit         unit
+     * @return future，取消后任务会从定时任务队列中删除
+     */
+    default ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return next().scheduleWithFixedDelay(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    default void execute(Runnable command) {
+        next().execute(command);
+    }
+}
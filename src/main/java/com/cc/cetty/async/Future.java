@@ -0,0 +1,76 @@
+package com.cc.cetty.async;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在jdk的future上增加了监听器，完成后不需要阻塞等待结果
+ *
+ * @author: cc
+ * @date: 2023/11/27
+ **/
+public interface Future<V> extends java.util.concurrent.Future<V> {
+
+    /**
+     * @return 是否成功完成
+     */
+    boolean isSuccess();
+
+    /**
+     * @return 是否可以取消
+     */
+    boolean isCancellable();
+
+    /**
+     * @return 失败的原因，未完成或成功时返回null
+     */
+    Throwable cause();
+
+    /**
+     * 添加监听器，future已经完成时监听器会立刻被通知
+     *
+     * @param listener listener
+     * @return this
+     */
+    Future<V> addListener(GenericFutureListener<? extends Future<? super V>> listener);
+
+    /**
+     * 删除监听器，已经被通知的监听器删除没有效果
+     *
+     * @param listener listener
+     * @return this
+     */
+    Future<V> removeListener(GenericFutureListener<? extends Future<? super V>> listener);
+
+    /**
+     * 等待完成，失败时抛出失败的原因
+     *
+     * @return this
+     * @throws InterruptedException 被中断
+     */
+    Future<V> sync() throws InterruptedException;
+
+    /**
+     * 等待完成
+     *
+     * @return this
+     * @throws InterruptedException 被中断
+     */
+    Future<V> await() throws InterruptedException;
+
+    /**
+     * 等待完成
+     *
+     * @param timeout timeout
+     * @param unit    unit
+     * @return 是否在超时前完成
+     * @throws InterruptedException 被中断
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 不阻塞地获取结果
+     *
+     * @return 未完成或者失败时返回null
+     */
+    V getNow();
+}
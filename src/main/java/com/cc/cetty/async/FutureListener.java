@@ -0,0 +1,10 @@
+package com.cc.cetty.async;
+
+/**
+ * 简化泛型的future监听器
+ *
+ * @author: cc
+ * @date: 2023/11/27
+ **/
+public interface FutureListener<V> extends GenericFutureListener<Future<V>> {
+}
@@ -0,0 +1,20 @@
+package com.cc.cetty.async;
+
+import java.util.EventListener;
+
+/**
+ * future的监听器，future完成后在future所属的执行器线程上回调
+ *
+ * @author: cc
+ * @date: 2023/11/27
+ **/
+public interface GenericFutureListener<F extends Future<?>> extends EventListener {
+
+    /**
+     * future完成时调用
+     *
+     * @param future future
+     * @throws Exception 异常会被记录，不会影响其他监听器
+     */
+    void operationComplete(F future) throws Exception;
+}
@@ -0,0 +1,148 @@
+package com.cc.cetty.async;
+
+import com.cc.cetty.local.DefaultThreadFactory;
+import com.cc.cetty.metrics.EventLoopMetricsSnapshot;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程执行器组，内部是一组单线程执行器
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+@Slf4j
+public abstract class MultithreadEventExecutorGroup implements EventExecutorGroup {
+
+    private final EventExecutor[] children;
+
+    private final EventExecutorChooserFactory.EventExecutorChooser chooser;
+
+    protected MultithreadEventExecutorGroup(int nThreads, Executor executor, Object... args) {
+        this(nThreads, executor, DefaultEventExecutorChooserFactory.INSTANCE, args);
+    }
+
+    protected MultithreadEventExecutorGroup(int nThreads, Executor executor, EventExecutorChooserFactory chooserFactory, Object... args) {
+        assert nThreads > 0 : "nThreads must be positive";
+        AssertUtils.checkNotNull(chooserFactory, "Chooser factory cannot be null");
+        if (Objects.isNull(executor)) {
+            executor = new ThreadPerTaskExecutor(new DefaultThreadFactory(getClass()));
+        }
+        children = new EventExecutor[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            boolean success = false;
+            try {
+                children[i] = newChild(executor, args);
+                success = true;
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to create a child event executor", e);
+            } finally {
+                if (!success) {
+                    // 创建失败，把已经创建的关掉
+                    for (int j = 0; j < i; j++) {
+                        children[j].shutdownGracefully();
+                    }
+                }
+            }
+        }
+        chooser = chooserFactory.newChooser(children);
+    }
+
+    /**
+     * 创建子执行器
+     *
+     * @param executor 用来创建线程的executor
+     * @param args     args
+     * @return 子执行器
+     * @throws Exception 创建失败
+     */
+    protected abstract EventExecutor newChild(Executor executor, Object... args) throws Exception;
+
+    @Override
+    public EventExecutor next() {
+        return chooser.next();
+    }
+
+    /**
+     * @return 执行器个数
+     */
+    public final int executorCount() {
+        return children.length;
+    }
+
+    /**
+     * @return 每个执行器的指标快照，没有启动的执行器各项都是0
+     */
+    public List<EventLoopMetricsSnapshot> metrics() {
+        List<EventLoopMetricsSnapshot> metrics = new ArrayList<>(children.length);
+        for (EventExecutor child : children) {
+            if (child instanceof SingleThreadEventExecutor) {
+                metrics.add(((SingleThreadEventExecutor) child).metrics().snapshot());
+            }
+        }
+        return metrics;
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(children)).iterator();
+    }
+
+    @Override
+    public void shutdownGracefully() {
+        for (EventExecutor child : children) {
+            child.shutdownGracefully();
+        }
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        for (EventExecutor child : children) {
+            if (!child.isShuttingDown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (EventExecutor child : children) {
+            if (!child.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (EventExecutor child : children) {
+            if (!child.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (EventExecutor child : children) {
+            long timeLeft = deadline - System.nanoTime();
+            if (timeLeft <= 0 || !child.awaitTermination(timeLeft, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package com.cc.cetty.async;
+
+/**
+ * 可以由外部设置结果的future
+ *
+ * @author: cc
+ * @date: 2023/11/27
+ **/
+public interface Promise<V> extends Future<V> {
+
+    /**
+     * 设置成功，已经完成时抛出异常
+     *
+     * @param result result
+     * @return this
+     */
+    Promise<V> setSuccess(V result);
+
+    /**
+     * 尝试设置成功
+     *
+     * @param result result
+     * @return 是否设置成功
+     */
+    boolean trySuccess(V result);
+
+    /**
+     * 设置失败，已经完成时抛出异常
+     *
+     * @param cause cause
+     * @return this
+     */
+    Promise<V> setFailure(Throwable cause);
+
+    /**
+     * 尝试设置失败
+     *
+     * @param cause cause
+     * @return 是否设置成功
+     */
+    boolean tryFailure(Throwable cause);
+
+    /**
+     * 设置为不可取消
+     *
+     * @return 设置成功，或者已经是不可取消的状态时返回true，已经被取消时返回false
+     */
+    boolean setUncancellable();
+
+    @Override
+    Promise<V> addListener(GenericFutureListener<? extends Future<? super V>> listener);
+
+    @Override
+    Promise<V> removeListener(GenericFutureListener<? extends Future<? super V>> listener);
+
+    @Override
+    Promise<V> sync() throws InterruptedException;
+
+    @Override
+    Promise<V> await() throws InterruptedException;
+}
@@ -0,0 +1,10 @@
+package com.cc.cetty.async;
+
+/**
+ * 定时任务的future，取消后任务会立刻从执行器的定时任务队列中删除
+ *
+ * @author: cc
+ * @date: 2023/12/16
+ **/
+public interface ScheduledFuture<V> extends Future<V>, java.util.concurrent.ScheduledFuture<V> {
+}
@@ -0,0 +1,185 @@
+package com.cc.cetty.async;
+
+import com.cc.cetty.utils.IndexedPriorityQueue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时任务，放在执行器线程独占的小顶堆中，按截止时间排序，截止时间相同时按提交顺序
+ * 时间都是相对于START_TIME的纳秒数，不会因为System.nanoTime为负数或者延迟很大而溢出
+ * periodNanos大于0表示按固定频率执行，小于0表示按固定延迟执行，等于0只执行一次
+ *
+ * @author: cc
+ * @date: 2023/12/16
+ **/
+final class ScheduledFutureTask<V> extends DefaultPromise<V> implements ScheduledFuture<V>, Runnable, IndexedPriorityQueue.Node {
+
+    private static final long START_TIME = System.nanoTime();
+
+    private final Callable<V> task;
+
+    /**
+     * 入堆时由执行器分配，截止时间相同时先入堆的先执行
+     */
+    private long id;
+
+    private final long periodNanos;
+
+    private long deadlineNanos;
+
+    private int heapIndex = IndexedPriorityQueue.INDEX_NOT_IN_QUEUE;
+
+    ScheduledFutureTask(SingleThreadEventExecutor executor, Callable<V> task, long deadlineNanos, long periodNanos) {
+        super(executor);
+        this.task = task;
+        this.deadlineNanos = deadlineNanos;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * @return 相对于START_TIME的当前时间
+     */
+    static long nanoTime() {
+        return System.nanoTime() - START_TIME;
+    }
+
+    /**
+     * @param delayNanos 延迟
+     * @return 截止时间，溢出时取Long.MAX_VALUE
+     */
+    static long deadlineNanos(long delayNanos) {
+        long deadlineNanos = nanoTime() + Math.max(0, delayNanos);
+        return deadlineNanos < 0 ? Long.MAX_VALUE : deadlineNanos;
+    }
+
+    void setId(long id) {
+        this.id = id;
+    }
+
+    long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * @param currentTimeNanos 相对于START_TIME的当前时间
+     * @return 距离截止时间还有多久，已经过期返回0
+     */
+    long delayNanos(long currentTimeNanos) {
+        return Math.max(0, deadlineNanos - currentTimeNanos);
+    }
+
+    @Override
+    protected SingleThreadEventExecutor executor() {
+        return (SingleThreadEventExecutor) super.executor();
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(delayNanos(nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        if (this == o) {
+            return 0;
+        }
+        if (o instanceof ScheduledFutureTask) {
+            ScheduledFutureTask<?> that = (ScheduledFutureTask<?>) o;
+            int c = Long.compare(deadlineNanos, that.deadlineNanos);
+            return c != 0 ? c : Long.compare(id, that.id);
+        }
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public int heapIndex() {
+        return heapIndex;
+    }
+
+    @Override
+    public void heapIndex(int index) {
+        this.heapIndex = index;
+    }
+
+    @Override
+    public void run() {
+        assert executor().inEventLoop();
+        try {
+            if (periodNanos == 0) {
+                if (super.setUncancellable()) {
+                    super.trySuccess(task.call());
+                }
+                return;
+            }
+            if (isCancelled()) {
+                return;
+            }
+            task.call();
+            if (executor().isShutdown()) {
+                return;
+            }
+            // 固定频率从上一次的截止时间算起，固定延迟从这次执行完算起
+            if (periodNanos > 0) {
+                deadlineNanos = deadlineNanos + periodNanos < 0 ? Long.MAX_VALUE : deadlineNanos + periodNanos;
+            } else {
+                deadlineNanos = deadlineNanos(-periodNanos);
+            }
+            if (!isCancelled()) {
+                executor().scheduleFromEventLoop(this);
+            }
+        } catch (Throwable t) {
+            super.tryFailure(t);
+        }
+    }
+
+    /**
+     * 取消成功后从执行器的定时任务队列中删除，不在执行器线程时提交一个删除任务
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            executor().removeScheduled(this);
+        }
+        return cancelled;
+    }
+
+    /**
+     * 执行器关闭时取消，已经不在队列中，不需要再删除
+     */
+    void cancelWithoutRemove() {
+        super.cancel(false);
+    }
+
+    @Override
+    public Promise<V> setSuccess(V result) {
+        throw new IllegalStateException("Scheduled task completes itself: " + this);
+    }
+
+    @Override
+    public boolean trySuccess(V result) {
+        throw new IllegalStateException("Scheduled task completes itself: " + this);
+    }
+
+    @Override
+    public Promise<V> setFailure(Throwable cause) {
+        throw new IllegalStateException("Scheduled task completes itself: " + this);
+    }
+
+    @Override
+    public boolean tryFailure(Throwable cause) {
+        throw new IllegalStateException("Scheduled task completes itself: " + this);
+    }
+
+    @Override
+    public boolean setUncancellable() {
+        throw new IllegalStateException("Scheduled task completes itself: " + this);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "(deadline: " + deadlineNanos + ", period: " + periodNanos + ", task: " + task + ')';
+    }
+}
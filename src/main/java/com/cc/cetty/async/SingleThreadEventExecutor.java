@@ -0,0 +1,619 @@
+package com.cc.cetty.async;
+
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.metrics.EventLoopMetrics;
+import com.cc.cetty.utils.AssertUtils;
+import com.cc.cetty.utils.IndexedPriorityQueue;
+import com.cc.cetty.utils.MpscArrayQueue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 单线程执行器
+ * 一个执行器只有一个线程，线程在第一次提交任务时才启动
+ * 其他线程提交的任务进入有界的多生产者单消费者队列，由执行器的线程批量取出执行
+ * 定时任务放在执行器线程独占的小顶堆中，其他线程提交的定时任务经过任务队列入堆，堆不需要加锁
+ * 每次批量执行任务前，先把所有到期的定时任务执行完
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+@Slf4j
+public abstract class SingleThreadEventExecutor implements EventExecutor {
+
+    /**
+     * 任务队列默认的容量
+     */
+    protected static final int DEFAULT_MAX_PENDING_TASKS = Math.max(16, Integer.getInteger("cetty.eventexecutor.maxPendingTasks", 1 << 16));
+
+    /**
+     * runAllTasks()每次从队列中最多取出这么多个任务，取完一批接着取下一批，直到队列为空才回到run方法
+     * 需要在任务之间让出事件循环处理I/O的子类用runAllTasks(long)，它按时间而不是按批数返回
+     */
+    private static final int MAX_TASKS_PER_BATCH = 1024;
+
+    private static final int ST_NOT_STARTED = 1;
+
+    private static final int ST_STARTED = 2;
+
+    private static final int ST_SHUTTING_DOWN = 3;
+
+    private static final int ST_SHUTDOWN = 4;
+
+    private static final int ST_TERMINATED = 5;
+
+    private static final AtomicIntegerFieldUpdater<SingleThreadEventExecutor> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SingleThreadEventExecutor.class, "state");
+
+    private static final AtomicIntegerFieldUpdater<SingleThreadEventExecutor> ADDING_TASKS_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SingleThreadEventExecutor.class, "addingTasks");
+
+    /**
+     * 执行任务的动作，不捕获任何变量，只会创建一次
+     */
+    private static final Consumer<Runnable> TASK_RUNNER = SingleThreadEventExecutor::safeExecute;
+
+    private final EventExecutorGroup parent;
+
+    private final MpscArrayQueue<Runnable> taskQueue;
+
+    /**
+     * 用来创建执行器线程的executor
+     */
+    private final Executor executor;
+
+    private final CountDownLatch terminationLatch = new CountDownLatch(1);
+
+    /**
+     * 只有执行器线程写的指标
+     */
+    private final EventLoopMetrics metrics;
+
+    private volatile Thread thread;
+
+    private volatile int state = ST_NOT_STARTED;
+
+    /**
+     * 执行器线程是否在park中，其他线程提交任务后根据它决定是否需要唤醒
+     */
+    private volatile boolean sleeping;
+
+    /**
+     * 其他线程中已经通过了关闭检查、还没有入队的任务数，关闭流程等它归零后再执行最后一次runAllTasks
+     */
+    private volatile int addingTasks;
+
+    /**
+     * 定时任务队列，只有执行器线程访问，第一次添加定时任务时创建
+     */
+    private IndexedPriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue;
+
+    /**
+     * 一批中到期的定时任务，先全部取出再执行，周期任务重新入堆后不会在同一批中再执行一次
+     */
+    private final List<ScheduledFutureTask<?>> expiredTasks = new ArrayList<>();
+
+    /**
+     * 定时任务入堆的序号，截止时间相同时先入堆的先执行
+     */
+    private long nextScheduledTaskId;
+
+    protected SingleThreadEventExecutor(EventExecutorGroup parent, Executor executor) {
+        this(parent, executor, DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    protected SingleThreadEventExecutor(EventExecutorGroup parent, Executor executor, int maxPendingTasks) {
+        this.parent = parent;
+        this.executor = AssertUtils.checkNotNull(executor, "Executor cannot be null");
+        this.taskQueue = newTaskQueue(Math.max(16, maxPendingTasks));
+        this.metrics = new EventLoopMetrics(this::pendingTasks);
+    }
+
+    /**
+     * 子类可以重写该方法，使用自己的任务队列
+     *
+     * @param maxPendingTasks 队列容量
+     * @return task queue
+     */
+    protected MpscArrayQueue<Runnable> newTaskQueue(int maxPendingTasks) {
+        return new MpscArrayQueue<>(maxPendingTasks);
+    }
+
+    @Override
+    public EventExecutorGroup parent() {
+        return parent;
+    }
+
+    @Override
+    public boolean inEventLoop(Thread thread) {
+        return thread == this.thread;
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return Collections.<EventExecutor>singleton(this).iterator();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        AssertUtils.checkNotNull(task, "Task cannot be null");
+        boolean inEventLoop = inEventLoop();
+        addTask(task);
+        if (!inEventLoop) {
+            startThread();
+        }
+        wakeup(inEventLoop);
+    }
+
+    /**
+     * 把任务放入任务队列，队列满了或者执行器已经关闭会拒绝
+     *
+     * @param task task
+     */
+    protected void addTask(Runnable task) {
+        if (inEventLoop()) {
+            offerTask(task);
+            return;
+        }
+        // 先登记再检查状态，关闭流程先改状态再看登记数，两边至少有一边能看到对方
+        ADDING_TASKS_UPDATER.incrementAndGet(this);
+        try {
+            offerTask(task);
+        } finally {
+            ADDING_TASKS_UPDATER.decrementAndGet(this);
+        }
+    }
+
+    private void offerTask(Runnable task) {
+        if (isShutdown()) {
+            reject();
+        }
+        if (!taskQueue.offer(metrics.sample(task))) {
+            throw new RejectedExecutionException("Event executor task queue is full, capacity: " + taskQueue.capacity());
+        }
+    }
+
+    /**
+     * @return 任务队列中等待执行的任务数
+     */
+    public int pendingTasks() {
+        return taskQueue.size();
+    }
+
+    /**
+     * @return 这个执行器的指标
+     */
+    public EventLoopMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return 任务队列中是否有任务
+     */
+    protected boolean hasTasks() {
+        return !taskQueue.isEmpty();
+    }
+
+    /**
+     * 唤醒执行器线程，只有线程在park的时候才需要唤醒
+     * 子类如果阻塞在别的地方，比如selector上，需要重写该方法
+     *
+     * @param inEventLoop 是否在执行器线程中
+     */
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 从任务队列中取出一个任务，没有任务时park，直到有新任务、最近的定时任务到期或者执行器开始关闭
+     *
+     * @return task，执行器开始关闭或者有定时任务到期时返回null
+     */
+    protected Runnable takeTask() {
+        assert inEventLoop();
+        for (; ; ) {
+            Runnable task = taskQueue.poll();
+            if (Objects.nonNull(task)) {
+                return task;
+            }
+            long delayNanos = nextScheduledTaskDelayNanos(Long.MAX_VALUE);
+            if (delayNanos <= 0) {
+                return null;
+            }
+            // 先声明要睡眠，再检查一次队列，避免错过在这之间提交的任务
+            sleeping = true;
+            task = taskQueue.poll();
+            if (Objects.nonNull(task) || isShuttingDown()) {
+                sleeping = false;
+                return task;
+            }
+            if (delayNanos == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, delayNanos);
+            }
+            sleeping = false;
+        }
+    }
+
+    /**
+     * 子类根据它决定select或者park的超时时间
+     *
+     * @param maxDelayNanos 没有定时任务时返回的值，也是返回值的上限
+     * @return 距离最近的定时任务到期还有多久，已经到期返回0
+     */
+    protected long nextScheduledTaskDelayNanos(long maxDelayNanos) {
+        assert inEventLoop();
+        IndexedPriorityQueue<ScheduledFutureTask<?>> queue = scheduledTaskQueue;
+        ScheduledFutureTask<?> task = Objects.nonNull(queue) ? queue.peek() : null;
+        if (Objects.isNull(task)) {
+            return maxDelayNanos;
+        }
+        return Math.min(maxDelayNanos, task.delayNanos(ScheduledFutureTask.nanoTime()));
+    }
+
+    /**
+     * 子类用它判断最近的定时任务有没有变化，比如只在变化时重设timerfd
+     *
+     * @return 最近的定时任务的截止时间，和scheduleNanoTime是同一个时间基准，没有定时任务时返回-1
+     */
+    protected long nextScheduledTaskDeadlineNanos() {
+        assert inEventLoop();
+        IndexedPriorityQueue<ScheduledFutureTask<?>> queue = scheduledTaskQueue;
+        ScheduledFutureTask<?> task = Objects.nonNull(queue) ? queue.peek() : null;
+        return Objects.isNull(task) ? -1 : task.deadlineNanos();
+    }
+
+    /**
+     * @return 定时任务使用的当前时间
+     */
+    protected static long scheduleNanoTime() {
+        return ScheduledFutureTask.nanoTime();
+    }
+
+    /**
+     * 用同一个时间点取出所有到期的定时任务，再依次执行
+     *
+     * @return 执行的定时任务数
+     */
+    private int runScheduledTasks() {
+        IndexedPriorityQueue<ScheduledFutureTask<?>> queue = scheduledTaskQueue;
+        if (Objects.isNull(queue) || queue.isEmpty()) {
+            return 0;
+        }
+        final long now = ScheduledFutureTask.nanoTime();
+        ScheduledFutureTask<?> task;
+        while (Objects.nonNull(task = queue.peek()) && task.deadlineNanos() <= now) {
+            expiredTasks.add(queue.poll());
+        }
+        int ran = expiredTasks.size();
+        try {
+            for (int i = 0; i < ran; i++) {
+                safeExecute(expiredTasks.get(i));
+            }
+        } finally {
+            expiredTasks.clear();
+        }
+        return ran;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        AssertUtils.checkNotNull(command, "Command cannot be null");
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        AssertUtils.checkNotNull(callable, "Callable cannot be null");
+        AssertUtils.checkNotNull(unit, "Unit cannot be null");
+        return schedule(new ScheduledFutureTask<>(this, callable, ScheduledFutureTask.deadlineNanos(unit.toNanos(delay)), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        AssertUtils.checkNotNull(command, "Command cannot be null");
+        AssertUtils.checkNotNull(unit, "Unit cannot be null");
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return schedule(new ScheduledFutureTask<>(this, Executors.callable(command),
+                ScheduledFutureTask.deadlineNanos(unit.toNanos(initialDelay)), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        AssertUtils.checkNotNull(command, "Command cannot be null");
+        AssertUtils.checkNotNull(unit, "Unit cannot be null");
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive: " + delay);
+        }
+        return schedule(new ScheduledFutureTask<>(this, Executors.callable(command),
+                ScheduledFutureTask.deadlineNanos(unit.toNanos(initialDelay)), -unit.toNanos(delay)));
+    }
+
+    private <V> ScheduledFuture<V> schedule(ScheduledFutureTask<V> task) {
+        if (inEventLoop()) {
+            scheduleFromEventLoop(task);
+        } else {
+            // 经过任务队列交给执行器线程入堆，同时会唤醒执行器线程，重新计算超时时间
+            execute(() -> scheduleFromEventLoop(task));
+        }
+        return task;
+    }
+
+    /**
+     * 只能在执行器线程调用，已经取消的任务不入堆
+     *
+     * @param task task
+     */
+    void scheduleFromEventLoop(ScheduledFutureTask<?> task) {
+        assert inEventLoop();
+        if (task.isCancelled()) {
+            return;
+        }
+        if (Objects.isNull(scheduledTaskQueue)) {
+            scheduledTaskQueue = new IndexedPriorityQueue<>(16);
+        }
+        task.setId(nextScheduledTaskId++);
+        scheduledTaskQueue.offer(task);
+    }
+
+    /**
+     * 从定时任务队列中删除，不在执行器线程时提交一个删除任务
+     *
+     * @param task task
+     */
+    void removeScheduled(ScheduledFutureTask<?> task) {
+        if (inEventLoop()) {
+            if (Objects.nonNull(scheduledTaskQueue)) {
+                scheduledTaskQueue.remove(task);
+            }
+            return;
+        }
+        try {
+            execute(() -> removeScheduled(task));
+        } catch (RejectedExecutionException ignored) {
+            // 执行器已经关闭，线程退出前会清空定时任务队列
+        }
+    }
+
+    /**
+     * 执行器线程退出前取消所有还没到期的定时任务
+     */
+    private void cancelScheduledTasks() {
+        IndexedPriorityQueue<ScheduledFutureTask<?>> queue = scheduledTaskQueue;
+        if (Objects.nonNull(queue)) {
+            queue.drain(ScheduledFutureTask::cancelWithoutRemove);
+        }
+    }
+
+    /**
+     * 先执行到期的定时任务，再批量执行任务队列中的任务，直到队列为空
+     *
+     * @return 是否执行了任务
+     */
+    protected boolean runAllTasks() {
+        assert inEventLoop();
+        final long start = System.nanoTime();
+        int ran = runScheduledTasks();
+        int drained;
+        while ((drained = taskQueue.drain(TASK_RUNNER, MAX_TASKS_PER_BATCH)) > 0) {
+            ran += drained;
+        }
+        if (ran > 0) {
+            metrics.recordTasks(ran, System.nanoTime() - start);
+        }
+        return ran > 0;
+    }
+
+    /**
+     * 先执行到期的定时任务，再在给定的时间内执行任务队列中的任务
+     * 每执行一小批检查一次时间，超时就返回，剩下的任务留给下一轮
+     * 至少会执行一小批，避免任务饿死
+     *
+     * @param timeoutNanos 最多执行的时间
+     * @return 是否执行了任务
+     */
+    protected boolean runAllTasks(long timeoutNanos) {
+        assert inEventLoop();
+        final long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        int ran = runScheduledTasks();
+        int drained;
+        long now = ran > 0 ? System.nanoTime() : start;
+        // nanoTime本身也有开销，每64个任务检查一次
+        while ((drained = taskQueue.drain(TASK_RUNNER, 64)) > 0) {
+            ran += drained;
+            now = System.nanoTime();
+            if (now - deadline >= 0) {
+                break;
+            }
+        }
+        if (ran > 0) {
+            metrics.recordTasks(ran, now - start);
+        }
+        return ran > 0;
+    }
+
+    /**
+     * 在执行器线程执行单个任务，并计入指标
+     *
+     * @param task task
+     */
+    protected void runTask(Runnable task) {
+        assert inEventLoop();
+        final long start = System.nanoTime();
+        safeExecute(task);
+        metrics.recordTasks(1, System.nanoTime() - start);
+    }
+
+    /**
+     * 执行任务，任务抛出的异常不会影响执行器线程
+     *
+     * @param task task
+     */
+    protected static void safeExecute(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.warn("A task raised an exception. Task: {}", task, t);
+        }
+    }
+
+    /**
+     * 执行器线程的主循环，由子类实现，isShuttingDown为true时应当尽快返回
+     */
+    protected abstract void run();
+
+    /**
+     * 执行器线程启动后、进入run方法前调用，子类可以在这里初始化只属于执行器线程的状态
+     */
+    protected void startup() {
+        // do something
+    }
+
+    /**
+     * 执行器线程退出前调用，子类可以在这里释放资源
+     */
+    protected void cleanup() {
+        // do something
+    }
+
+    private void startThread() {
+        if (state == ST_NOT_STARTED && STATE_UPDATER.compareAndSet(this, ST_NOT_STARTED, ST_STARTED)) {
+            try {
+                doStartThread();
+            } catch (Throwable t) {
+                STATE_UPDATER.set(this, ST_TERMINATED);
+                terminationLatch.countDown();
+                throw t;
+            }
+        }
+    }
+
+    private void doStartThread() {
+        executor.execute(() -> {
+            thread = Thread.currentThread();
+            metrics.bind(thread.getName());
+            try {
+                startup();
+                SingleThreadEventExecutor.this.run();
+            } catch (Throwable t) {
+                log.warn("Unexpected exception from an event executor: ", t);
+            } finally {
+                // run方法异常退出时也要进入关闭流程
+                for (; ; ) {
+                    int oldState = state;
+                    if (oldState >= ST_SHUTTING_DOWN || STATE_UPDATER.compareAndSet(this, oldState, ST_SHUTTING_DOWN)) {
+                        break;
+                    }
+                }
+                try {
+                    // 关闭前提交的任务都要执行完，之后addTask会直接拒绝
+                    runAllTasks();
+                    STATE_UPDATER.set(this, ST_SHUTDOWN);
+                    // 在改状态之前通过检查的任务还在入队，等它们入队之后再执行最后一次，不会有被接受却不执行的任务
+                    while (addingTasks != 0) {
+                        Thread.onSpinWait();
+                    }
+                    runAllTasks();
+                    cancelScheduledTasks();
+                    cleanup();
+                } finally {
+                    metrics.unbind();
+                    // 执行器线程的thread local在这里统一清理
+                    FastThreadLocal.removeAll();
+                    STATE_UPDATER.set(this, ST_TERMINATED);
+                    terminationLatch.countDown();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void shutdownGracefully() {
+        for (; ; ) {
+            int oldState = state;
+            if (oldState >= ST_SHUTTING_DOWN) {
+                return;
+            }
+            if (oldState == ST_NOT_STARTED) {
+                // 线程还没有启动，先拒绝新任务，再看有没有已经被接受的任务
+                if (STATE_UPDATER.compareAndSet(this, ST_NOT_STARTED, ST_SHUTDOWN)) {
+                    terminateNotStarted();
+                    return;
+                }
+            } else if (STATE_UPDATER.compareAndSet(this, oldState, ST_SHUTTING_DOWN)) {
+                break;
+            }
+        }
+        wakeup(inEventLoop());
+        // 线程在park时sleeping可能还没置位，这里直接unpark一次，多余的unpark没有影响
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * 线程还没有启动就关闭，execute已经把任务放进队列、还没来得及启动线程时，由这里启动线程执行完这些任务
+     * 没有任务时不创建线程，直接终止
+     */
+    private void terminateNotStarted() {
+        while (addingTasks != 0) {
+            Thread.onSpinWait();
+        }
+        if (hasTasks()) {
+            try {
+                doStartThread();
+                return;
+            } catch (Throwable t) {
+                log.warn("Failed to start the thread to run the remaining tasks", t);
+            }
+        }
+        STATE_UPDATER.set(this, ST_TERMINATED);
+        terminationLatch.countDown();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return state >= ST_SHUTTING_DOWN;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state >= ST_SHUTDOWN;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return state == ST_TERMINATED;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        AssertUtils.checkNotNull(unit, "Unit cannot be null");
+        if (inEventLoop()) {
+            throw new IllegalStateException("Cannot await termination of the current thread");
+        }
+        return terminationLatch.await(timeout, unit);
+    }
+
+    protected static void reject() {
+        throw new RejectedExecutionException("Event executor terminated");
+    }
+}
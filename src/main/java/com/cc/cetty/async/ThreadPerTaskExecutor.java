@@ -0,0 +1,26 @@
+package com.cc.cetty.async;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 每个任务创建一个线程，单线程执行器用它来启动自己的线程
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public final class ThreadPerTaskExecutor implements Executor {
+
+    private final ThreadFactory threadFactory;
+
+    public ThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        this.threadFactory = AssertUtils.checkNotNull(threadFactory, "Thread factory cannot be null");
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        threadFactory.newThread(command).start();
+    }
+}
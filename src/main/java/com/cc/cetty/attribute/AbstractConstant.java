@@ -0,0 +1,49 @@
+package com.cc.cetty.attribute;
+
+/**
+ * 常量的骨架实现，相等就是同一个对象，按id排序
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public abstract class AbstractConstant<T extends AbstractConstant<T>> implements Constant<T> {
+
+    private final int id;
+
+    private final String name;
+
+    protected AbstractConstant(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public final int id() {
+        return id;
+    }
+
+    @Override
+    public final String name() {
+        return name;
+    }
+
+    @Override
+    public final int compareTo(T o) {
+        return Integer.compare(id, o.id());
+    }
+
+    @Override
+    public final boolean equals(Object obj) {
+        return super.equals(obj);
+    }
+
+    @Override
+    public final int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+}
@@ -0,0 +1,58 @@
+package com.cc.cetty.attribute;
+
+/**
+ * 保存在AttributeMap中的一个属性，所有操作都是原子的
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public interface Attribute<T> {
+
+    /**
+     * @return 属性的键
+     */
+    AttributeKey<T> key();
+
+    /**
+     * @return 当前值，可能为null
+     */
+    T get();
+
+    /**
+     * @param value 新的值
+     */
+    void set(T value);
+
+    /**
+     * @param value 新的值
+     * @return 旧的值
+     */
+    T getAndSet(T value);
+
+    /**
+     * 没有值时才设置
+     *
+     * @param value 新的值
+     * @return 已经存在的值，设置成功时返回null
+     */
+    T setIfAbsent(T value);
+
+    /**
+     * @param oldValue 期望的值
+     * @param newValue 新的值
+     * @return 是否设置成功
+     */
+    boolean compareAndSet(T oldValue, T newValue);
+
+    /**
+     * 从AttributeMap中删除这个属性，之后再通过attr获取的是一个新的属性
+     *
+     * @return 删除前的值
+     */
+    T getAndRemove();
+
+    /**
+     * 从AttributeMap中删除这个属性
+     */
+    void remove();
+}
@@ -0,0 +1,62 @@
+package com.cc.cetty.attribute;
+
+/**
+ * 属性的键，带有值的类型
+ * 同名的键是同一个对象，AttributeMap按键的id查找，不需要计算哈希
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+@SuppressWarnings("UnusedDeclaration")
+public final class AttributeKey<T> extends AbstractConstant<AttributeKey<T>> {
+
+    private static final ConstantPool<AttributeKey<Object>> POOL = new ConstantPool<AttributeKey<Object>>() {
+        @Override
+        protected AttributeKey<Object> newConstant(int id, String name) {
+            return new AttributeKey<>(id, name);
+        }
+    };
+
+    private AttributeKey(int id, String name) {
+        super(id, name);
+    }
+
+    /**
+     * @param name 名字
+     * @param <T>  值的类型
+     * @return 名字对应的键，不存在时创建
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> AttributeKey<T> valueOf(String name) {
+        return (AttributeKey<T>) POOL.valueOf(name);
+    }
+
+    /**
+     * @param firstNameComponent  类
+     * @param secondNameComponent 名字
+     * @param <T>                 值的类型
+     * @return 名字为 类名#secondNameComponent 的键
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> AttributeKey<T> valueOf(Class<?> firstNameComponent, String secondNameComponent) {
+        return (AttributeKey<T>) POOL.valueOf(firstNameComponent, secondNameComponent);
+    }
+
+    /**
+     * @param name 名字
+     * @return 键是否已经存在
+     */
+    public static boolean exists(String name) {
+        return POOL.exists(name);
+    }
+
+    /**
+     * @param name 名字
+     * @param <T>  值的类型
+     * @return 新的键，名字已存在时抛出异常
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> AttributeKey<T> newInstance(String name) {
+        return (AttributeKey<T>) POOL.newInstance(name);
+    }
+}
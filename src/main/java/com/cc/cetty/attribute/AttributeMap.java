@@ -0,0 +1,26 @@
+package com.cc.cetty.attribute;
+
+/**
+ * 可以挂属性的对象，例如channel
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public interface AttributeMap {
+
+    /**
+     * 获取属性，不存在时创建一个值为null的属性
+     *
+     * @param key 键
+     * @param <T> 值的类型
+     * @return 属性，不会为null
+     */
+    <T> Attribute<T> attr(AttributeKey<T> key);
+
+    /**
+     * @param key 键
+     * @param <T> 值的类型
+     * @return 属性是否存在
+     */
+    <T> boolean hasAttr(AttributeKey<T> key);
+}
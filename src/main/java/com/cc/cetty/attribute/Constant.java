@@ -0,0 +1,21 @@
+package com.cc.cetty.attribute;
+
+/**
+ * 常量，由ConstantPool按名字保证全局唯一，可以直接用==比较
+ * id在创建时按顺序分配，可以用来排序和做下标
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public interface Constant<T extends Constant<T>> extends Comparable<T> {
+
+    /**
+     * @return 常量在池中唯一的id
+     */
+    int id();
+
+    /**
+     * @return 常量的名字
+     */
+    String name();
+}
@@ -0,0 +1,96 @@
+package com.cc.cetty.attribute;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 常量池，同一个名字只会创建一个常量
+ * 只在定义常量的时候访问，常量一般是静态字段，运行时按id访问，不再走这里的哈希表
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public abstract class ConstantPool<T extends Constant<T>> {
+
+    private final ConcurrentMap<String, T> constants = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * 获取常量，不存在就创建
+     *
+     * @param name 名字
+     * @return 常量
+     */
+    public T valueOf(String name) {
+        return getOrCreate(checkName(name));
+    }
+
+    /**
+     * @param firstNameComponent  类，名字的前半部分
+     * @param secondNameComponent 名字的后半部分
+     * @return 名字为 类名#secondNameComponent 的常量
+     */
+    public T valueOf(Class<?> firstNameComponent, String secondNameComponent) {
+        AssertUtils.checkNotNull(firstNameComponent, "FirstNameComponent cannot be null");
+        return valueOf(firstNameComponent.getName() + '#' + checkName(secondNameComponent));
+    }
+
+    /**
+     * @param name 名字
+     * @return 常量是否已经存在
+     */
+    public boolean exists(String name) {
+        return constants.containsKey(checkName(name));
+    }
+
+    /**
+     * 创建常量，名字已经存在时抛出异常，防止不同模块无意中共用同一个常量
+     *
+     * @param name 名字
+     * @return 新的常量
+     */
+    public T newInstance(String name) {
+        checkName(name);
+        T constant = newConstant(nextId(), name);
+        T old = constants.putIfAbsent(name, constant);
+        if (Objects.nonNull(old)) {
+            throw new IllegalArgumentException(String.format("'%s' is already in use", name));
+        }
+        return constant;
+    }
+
+    private T getOrCreate(String name) {
+        T constant = constants.get(name);
+        if (Objects.isNull(constant)) {
+            T newConstant = newConstant(nextId(), name);
+            constant = constants.putIfAbsent(name, newConstant);
+            if (Objects.isNull(constant)) {
+                return newConstant;
+            }
+        }
+        return constant;
+    }
+
+    private int nextId() {
+        return nextId.getAndIncrement();
+    }
+
+    private static String checkName(String name) {
+        if (Objects.isNull(name) || name.isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be empty");
+        }
+        return name;
+    }
+
+    /**
+     * @param id   id
+     * @param name 名字
+     * @return 新的常量
+     */
+    protected abstract T newConstant(int id, String name);
+}
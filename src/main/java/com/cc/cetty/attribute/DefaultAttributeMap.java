@@ -0,0 +1,194 @@
+package com.cc.cetty.attribute;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 写时复制的AttributeMap
+ * 属性按键的id排好序放在数组里，读的时候二分查找，不加锁也不计算哈希
+ * 增删属性时复制一个新数组再CAS替换，属性的个数一般很少，而且大多在连接建立时一次写好
+ * 没有属性时只占一个指向共享空数组的引用，适合每个连接一个
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public class DefaultAttributeMap implements AttributeMap {
+
+    private static final AtomicReferenceFieldUpdater<DefaultAttributeMap, DefaultAttribute[]> ATTRIBUTES_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultAttributeMap.class, DefaultAttribute[].class, "attributes");
+
+    private static final DefaultAttribute[] EMPTY_ATTRIBUTES = new DefaultAttribute[0];
+
+    private volatile DefaultAttribute[] attributes = EMPTY_ATTRIBUTES;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Attribute<T> attr(AttributeKey<T> key) {
+        AssertUtils.checkNotNull(key, "Key cannot be null");
+        DefaultAttribute<T> newAttribute = null;
+        for (; ; ) {
+            final DefaultAttribute[] attributes = this.attributes;
+            final int index = searchAttributeByKey(attributes, key);
+            final DefaultAttribute[] newAttributes;
+            if (index >= 0) {
+                final DefaultAttribute attribute = attributes[index];
+                if (!attribute.isRemoved()) {
+                    return attribute;
+                }
+                // 已经删除但还没从数组里移走，原地换成新的
+                if (Objects.isNull(newAttribute)) {
+                    newAttribute = new DefaultAttribute<>(this, key);
+                }
+                newAttributes = Arrays.copyOf(attributes, attributes.length);
+                newAttributes[index] = newAttribute;
+            } else {
+                if (Objects.isNull(newAttribute)) {
+                    newAttribute = new DefaultAttribute<>(this, key);
+                }
+                newAttributes = new DefaultAttribute[attributes.length + 1];
+                orderedCopyOnInsert(attributes, newAttributes, newAttribute);
+            }
+            if (ATTRIBUTES_UPDATER.compareAndSet(this, attributes, newAttributes)) {
+                return newAttribute;
+            }
+        }
+    }
+
+    @Override
+    public <T> boolean hasAttr(AttributeKey<T> key) {
+        AssertUtils.checkNotNull(key, "Key cannot be null");
+        return searchAttributeByKey(attributes, key) >= 0;
+    }
+
+    /**
+     * 从数组中移走属性，只有数组里还是同一个属性时才移走
+     *
+     * @param key   键
+     * @param value 要移走的属性
+     */
+    private <T> void removeAttributeIfMatch(AttributeKey<T> key, DefaultAttribute<T> value) {
+        for (; ; ) {
+            final DefaultAttribute[] attributes = this.attributes;
+            final int index = searchAttributeByKey(attributes, key);
+            if (index < 0 || attributes[index] != value) {
+                return;
+            }
+            final int newCount = attributes.length - 1;
+            final DefaultAttribute[] newAttributes = newCount == 0 ? EMPTY_ATTRIBUTES : new DefaultAttribute[newCount];
+            System.arraycopy(attributes, 0, newAttributes, 0, index);
+            System.arraycopy(attributes, index + 1, newAttributes, index, newCount - index);
+            if (ATTRIBUTES_UPDATER.compareAndSet(this, attributes, newAttributes)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param sortedAttributes 按id排序的属性
+     * @param key              键
+     * @return 找到时返回下标，否则返回 -(插入位置 + 1)
+     */
+    private static int searchAttributeByKey(DefaultAttribute[] sortedAttributes, AttributeKey<?> key) {
+        int low = 0;
+        int high = sortedAttributes.length - 1;
+        final int keyId = key.id();
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            AttributeKey<?> midKey = sortedAttributes[mid].key;
+            if (midKey == key) {
+                return mid;
+            }
+            if (midKey.id() < keyId) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 插入后保持有序，键一般是按定义顺序使用的，新键通常排在最后，从后往前找插入位置
+     *
+     * @param sortedAttributes 原来的属性
+     * @param copy             长度多一的新数组
+     * @param toInsert         新的属性
+     */
+    private static void orderedCopyOnInsert(DefaultAttribute[] sortedAttributes, DefaultAttribute[] copy, DefaultAttribute toInsert) {
+        final int id = toInsert.key.id();
+        int i;
+        for (i = sortedAttributes.length - 1; i >= 0; i--) {
+            DefaultAttribute attribute = sortedAttributes[i];
+            if (attribute.key.id() < id) {
+                break;
+            }
+            copy[i + 1] = attribute;
+        }
+        copy[i + 1] = toInsert;
+        if (i >= 0) {
+            System.arraycopy(sortedAttributes, 0, copy, 0, i + 1);
+        }
+    }
+
+    /**
+     * 属性本身就是一个AtomicReference，读写值不经过map
+     */
+    @SuppressWarnings("serial")
+    private static final class DefaultAttribute<T> extends AtomicReference<T> implements Attribute<T> {
+
+        private static final AtomicReferenceFieldUpdater<DefaultAttribute, DefaultAttributeMap> MAP_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(DefaultAttribute.class, DefaultAttributeMap.class, "attributeMap");
+
+        /**
+         * 删除后置为null
+         */
+        private volatile DefaultAttributeMap attributeMap;
+
+        private final AttributeKey<T> key;
+
+        DefaultAttribute(DefaultAttributeMap attributeMap, AttributeKey<T> key) {
+            this.attributeMap = attributeMap;
+            this.key = key;
+        }
+
+        @Override
+        public AttributeKey<T> key() {
+            return key;
+        }
+
+        private boolean isRemoved() {
+            return Objects.isNull(attributeMap);
+        }
+
+        @Override
+        public T setIfAbsent(T value) {
+            while (!compareAndSet(null, value)) {
+                T old = get();
+                if (Objects.nonNull(old)) {
+                    return old;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public T getAndRemove() {
+            final DefaultAttributeMap attributeMap = this.attributeMap;
+            final boolean removed = Objects.nonNull(attributeMap) && MAP_UPDATER.compareAndSet(this, attributeMap, null);
+            T oldValue = getAndSet(null);
+            if (removed) {
+                attributeMap.removeAttributeIfMatch(key, this);
+            }
+            return oldValue;
+        }
+
+        @Override
+        public void remove() {
+            getAndRemove();
+        }
+    }
+}
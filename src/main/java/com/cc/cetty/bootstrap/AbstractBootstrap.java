@@ -0,0 +1,95 @@
+package com.cc.cetty.bootstrap;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelFuture;
+import com.cc.cetty.channel.EventLoopGroup;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.Objects;
+
+/**
+ * 启动类的骨架实现，负责创建channel并注册到事件循环组
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public abstract class AbstractBootstrap<B extends AbstractBootstrap<B, C>, C extends Channel> {
+
+    private volatile EventLoopGroup group;
+
+    private volatile ChannelFactory<? extends C> channelFactory;
+
+    private volatile ChannelHandler handler;
+
+    @SuppressWarnings("unchecked")
+    private B self() {
+        return (B) this;
+    }
+
+    public B group(EventLoopGroup group) {
+        AssertUtils.checkNotNull(group, "Group cannot be null");
+        if (Objects.nonNull(this.group)) {
+            throw new IllegalStateException("Group set already");
+        }
+        this.group = group;
+        return self();
+    }
+
+    public B channel(Class<? extends C> channelClass) {
+        return channelFactory(new ReflectiveChannelFactory<C>(channelClass));
+    }
+
+    public B channelFactory(ChannelFactory<? extends C> channelFactory) {
+        this.channelFactory = AssertUtils.checkNotNull(channelFactory, "Channel factory cannot be null");
+        return self();
+    }
+
+    public B handler(ChannelHandler handler) {
+        this.handler = AssertUtils.checkNotNull(handler, "Handler cannot be null");
+        return self();
+    }
+
+    public final EventLoopGroup group() {
+        return group;
+    }
+
+    protected final ChannelHandler handler() {
+        return handler;
+    }
+
+    /**
+     * 检查必要的参数
+     */
+    protected void validate() {
+        if (Objects.isNull(group)) {
+            throw new IllegalStateException("Group not set");
+        }
+        if (Objects.isNull(channelFactory)) {
+            throw new IllegalStateException("Channel or channelFactory not set");
+        }
+    }
+
+    /**
+     * 创建channel，初始化后注册到事件循环组
+     *
+     * @return 注册的future
+     */
+    protected final ChannelFuture initAndRegister() {
+        Channel channel = channelFactory.newChannel();
+        try {
+            init(channel);
+        } catch (Throwable t) {
+            channel.unsafe().closeForcibly();
+            throw t;
+        }
+        return group.register(channel);
+    }
+
+    /**
+     * 初始化channel
+     *
+     * @param channel channel
+     */
+    abstract void init(Channel channel);
+}
@@ -0,0 +1,56 @@
+package com.cc.cetty.bootstrap;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelFuture;
+import com.cc.cetty.channel.ChannelPromise;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Objects;
+
+/**
+ * 客户端启动类
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
+
+    @Override
+    protected void validate() {
+        super.validate();
+        if (Objects.isNull(handler())) {
+            throw new IllegalStateException("Handler not set");
+        }
+    }
+
+    @Override
+    void init(Channel channel) {
+        channel.pipeline().addLast(handler());
+    }
+
+    public ChannelFuture connect(String host, int port) {
+        return connect(new InetSocketAddress(host, port));
+    }
+
+    /**
+     * 创建channel，注册成功后发起连接
+     *
+     * @param remoteAddress 远端地址
+     * @return 连接的future
+     */
+    public ChannelFuture connect(SocketAddress remoteAddress) {
+        validate();
+        ChannelFuture regFuture = initAndRegister();
+        Channel channel = regFuture.channel();
+        ChannelPromise promise = channel.newPromise();
+        regFuture.addListener(future -> {
+            if (!future.isSuccess()) {
+                promise.tryFailure(future.cause());
+                return;
+            }
+            channel.connect(remoteAddress, null, promise);
+        });
+        return promise;
+    }
+}
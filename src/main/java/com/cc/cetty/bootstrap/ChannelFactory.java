@@ -0,0 +1,17 @@
+package com.cc.cetty.bootstrap;
+
+import com.cc.cetty.channel.Channel;
+
+/**
+ * channel工厂
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface ChannelFactory<T extends Channel> {
+
+    /**
+     * @return 新的channel
+     */
+    T newChannel();
+}
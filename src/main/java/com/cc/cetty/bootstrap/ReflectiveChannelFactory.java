@@ -0,0 +1,41 @@
+package com.cc.cetty.bootstrap;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * 通过无参构造器反射创建channel
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public class ReflectiveChannelFactory<T extends Channel> implements ChannelFactory<T> {
+
+    private final Constructor<? extends T> constructor;
+
+    public ReflectiveChannelFactory(Class<? extends T> clazz) {
+        AssertUtils.checkNotNull(clazz, "Channel class cannot be null");
+        try {
+            this.constructor = clazz.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Class " + clazz.getSimpleName() + " does not have a public non-arg constructor", e);
+        }
+    }
+
+    @Override
+    public T newChannel() {
+        try {
+            return constructor.newInstance();
+        } catch (Throwable t) {
+            throw new ChannelException("Unable to create Channel from class " + constructor.getDeclaringClass(), t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReflectiveChannelFactory(" + constructor.getDeclaringClass().getSimpleName() + ".class)";
+    }
+}
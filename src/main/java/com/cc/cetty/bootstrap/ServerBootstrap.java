@@ -0,0 +1,145 @@
+package com.cc.cetty.bootstrap;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelFuture;
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.channel.EventLoopGroup;
+import com.cc.cetty.channel.ServerChannel;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import com.cc.cetty.handler.ChannelInitializer;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import com.cc.cetty.pipeline.ChannelPipeline;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Objects;
+
+/**
+ * 服务端启动类
+ * boss事件循环组负责接收连接，worker事件循环组负责连接上的读写
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+@Slf4j
+public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerChannel> {
+
+    private volatile EventLoopGroup childGroup;
+
+    private volatile ChannelHandler childHandler;
+
+    public ServerBootstrap group(EventLoopGroup parentGroup, EventLoopGroup childGroup) {
+        super.group(parentGroup);
+        AssertUtils.checkNotNull(childGroup, "Child group cannot be null");
+        if (Objects.nonNull(this.childGroup)) {
+            throw new IllegalStateException("Child group set already");
+        }
+        this.childGroup = childGroup;
+        return this;
+    }
+
+    @Override
+    public ServerBootstrap group(EventLoopGroup group) {
+        return group(group, group);
+    }
+
+    public ServerBootstrap childHandler(ChannelHandler childHandler) {
+        this.childHandler = AssertUtils.checkNotNull(childHandler, "Child handler cannot be null");
+        return this;
+    }
+
+    public EventLoopGroup childGroup() {
+        return childGroup;
+    }
+
+    @Override
+    protected void validate() {
+        super.validate();
+        if (Objects.isNull(childHandler)) {
+            throw new IllegalStateException("Child handler not set");
+        }
+    }
+
+    @Override
+    void init(Channel channel) {
+        ChannelHandler handler = handler();
+        EventLoopGroup currentChildGroup = childGroup;
+        ChannelHandler currentChildHandler = childHandler;
+        channel.pipeline().addLast(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ChannelPipeline pipeline = ch.pipeline();
+                if (Objects.nonNull(handler)) {
+                    pipeline.addLast(handler);
+                }
+                // 用户的handler可能也是ChannelInitializer，接收器要排在它添加的处理器后面
+                ch.eventLoop().execute(() -> pipeline.addLast(new ServerBootstrapAcceptor(currentChildGroup, currentChildHandler)));
+            }
+        });
+    }
+
+    public ChannelFuture bind(int port) {
+        return bind(new InetSocketAddress(port));
+    }
+
+    public ChannelFuture bind(String host, int port) {
+        return bind(new InetSocketAddress(host, port));
+    }
+
+    /**
+     * 创建服务端channel，注册成功后绑定端口
+     *
+     * @param localAddress 本地地址
+     * @return 绑定的future
+     */
+    public ChannelFuture bind(SocketAddress localAddress) {
+        validate();
+        ChannelFuture regFuture = initAndRegister();
+        Channel channel = regFuture.channel();
+        ChannelPromise promise = channel.newPromise();
+        regFuture.addListener(future -> {
+            if (!future.isSuccess()) {
+                promise.tryFailure(future.cause());
+                return;
+            }
+            // 注册成功的监听器在channel的事件循环上执行
+            channel.bind(localAddress, promise);
+        });
+        return promise;
+    }
+
+    /**
+     * 服务端channel的最后一个处理器，给接收到的连接添加childHandler，然后注册到worker事件循环组
+     */
+    private static final class ServerBootstrapAcceptor extends ChannelInboundHandlerAdapter {
+
+        private final EventLoopGroup childGroup;
+
+        private final ChannelHandler childHandler;
+
+        private ServerBootstrapAcceptor(EventLoopGroup childGroup, ChannelHandler childHandler) {
+            this.childGroup = childGroup;
+            this.childHandler = childHandler;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            final Channel child = (Channel) msg;
+            child.pipeline().addLast(childHandler);
+            try {
+                childGroup.register(child).addListener(future -> {
+                    if (!future.isSuccess()) {
+                        log.warn("Failed to register an accepted channel: {}", child, future.cause());
+                        child.unsafe().closeForcibly();
+                    }
+                });
+            } catch (Throwable t) {
+                log.warn("Failed to register an accepted channel: {}", child, t);
+                child.unsafe().closeForcibly();
+            }
+        }
+    }
+}
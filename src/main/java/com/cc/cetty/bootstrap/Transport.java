@@ -0,0 +1,107 @@
+package com.cc.cetty.bootstrap;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.EventLoopGroup;
+import com.cc.cetty.channel.ServerChannel;
+import com.cc.cetty.channel.epoll.Epoll;
+import com.cc.cetty.channel.epoll.EpollEventLoopGroup;
+import com.cc.cetty.channel.epoll.EpollServerSocketChannel;
+import com.cc.cetty.channel.epoll.EpollSocketChannel;
+import com.cc.cetty.channel.nio.NioEventLoopGroup;
+import com.cc.cetty.channel.nio.NioServerSocketChannel;
+import com.cc.cetty.channel.nio.NioSocketChannel;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * 传输层的实现，事件循环组和channel必须来自同一种
+ * preferred在epoll可用时选epoll，否则回退到nio，可以用 -Dcetty.transport=nio|epoll 指定
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+public enum Transport {
+
+    /**
+     * java nio的selector，所有平台都可用
+     */
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int nThreads) {
+            return new NioEventLoopGroup(nThreads);
+        }
+
+        @Override
+        public Class<? extends Channel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverSocketChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+    },
+
+    /**
+     * 边沿触发的epoll，只在Linux、JDK 21并开启 --enable-preview 时可用
+     */
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int nThreads) {
+            return new EpollEventLoopGroup(nThreads);
+        }
+
+        @Override
+        public Class<? extends Channel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverSocketChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+    };
+
+    /**
+     * @return 当前环境是否可用
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * @param nThreads 线程数，0表示默认值
+     * @return 新的事件循环组
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int nThreads);
+
+    /**
+     * @return 客户端channel的类型，给Bootstrap.channel用
+     */
+    public abstract Class<? extends Channel> socketChannelClass();
+
+    /**
+     * @return 服务端channel的类型，给ServerBootstrap.channel用
+     */
+    public abstract Class<? extends ServerChannel> serverSocketChannelClass();
+
+    /**
+     * @return -Dcetty.transport指定的实现，没有指定时epoll可用就用epoll，否则用nio
+     */
+    public static Transport preferred() {
+        String name = System.getProperty("cetty.transport");
+        if (StringUtils.isBlank(name) || "auto".equalsIgnoreCase(name)) {
+            return EPOLL.isAvailable() ? EPOLL : NIO;
+        }
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
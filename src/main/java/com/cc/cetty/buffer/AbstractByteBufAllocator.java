@@ -0,0 +1,150 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.utils.AssertUtils;
+
+/**
+ * 分配器的骨架实现，子类只需要实现创建堆内和堆外buf的方法
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+    static final int DEFAULT_MAX_CAPACITY = Integer.MAX_VALUE;
+
+    static final int DEFAULT_MAX_COMPONENTS = 16;
+
+    /**
+     * 扩容的阈值，小于它时翻倍扩容，大于它时每次增加这么多
+     */
+    static final int CALCULATE_THRESHOLD = 1048576 * 4;
+
+    private final boolean directByDefault;
+
+    protected AbstractByteBufAllocator(boolean preferDirect) {
+        this.directByDefault = preferDirect;
+    }
+
+    @Override
+    public ByteBuf buffer() {
+        return directByDefault ? directBuffer() : heapBuffer();
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity) {
+        return directByDefault ? directBuffer(initialCapacity) : heapBuffer(initialCapacity);
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity, int maxCapacity) {
+        return directByDefault ? directBuffer(initialCapacity, maxCapacity) : heapBuffer(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public ByteBuf ioBuffer() {
+        return directBuffer(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity) {
+        return directBuffer(initialCapacity);
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity, int maxCapacity) {
+        return directBuffer(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public ByteBuf heapBuffer() {
+        return heapBuffer(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity) {
+        return heapBuffer(initialCapacity, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity, int maxCapacity) {
+        validate(initialCapacity, maxCapacity);
+        return newHeapBuffer(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public ByteBuf directBuffer() {
+        return directBuffer(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity) {
+        return directBuffer(initialCapacity, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+        validate(initialCapacity, maxCapacity);
+        return newDirectBuffer(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public CompositeByteBuf compositeBuffer() {
+        return compositeBuffer(DEFAULT_MAX_COMPONENTS);
+    }
+
+    @Override
+    public CompositeByteBuf compositeBuffer(int maxNumComponents) {
+        return new CompositeByteBuf(this, directByDefault, maxNumComponents);
+    }
+
+    private static void validate(int initialCapacity, int maxCapacity) {
+        AssertUtils.checkZeroOrPositive(initialCapacity);
+        if (initialCapacity > maxCapacity) {
+            throw new IllegalArgumentException(String.format("initialCapacity: %d (expected: not greater than maxCapacity(%d)", initialCapacity, maxCapacity));
+        }
+    }
+
+    @Override
+    public int calculateNewCapacity(int minNewCapacity, int maxCapacity) {
+        AssertUtils.checkZeroOrPositive(minNewCapacity);
+        if (minNewCapacity > maxCapacity) {
+            throw new IllegalArgumentException(String.format("minNewCapacity: %d (expected: not greater than maxCapacity(%d)", minNewCapacity, maxCapacity));
+        }
+        final int threshold = CALCULATE_THRESHOLD;
+        if (minNewCapacity == threshold) {
+            return threshold;
+        }
+        // 超过阈值后不再翻倍，避免浪费太多内存
+        if (minNewCapacity > threshold) {
+            int newCapacity = minNewCapacity / threshold * threshold;
+            if (newCapacity > maxCapacity - threshold) {
+                newCapacity = maxCapacity;
+            } else {
+                newCapacity += threshold;
+            }
+            return newCapacity;
+        }
+        // 从64开始翻倍
+        int newCapacity = 64;
+        while (newCapacity < minNewCapacity) {
+            newCapacity <<= 1;
+        }
+        return Math.min(newCapacity, maxCapacity);
+    }
+
+    /**
+     * @param initialCapacity 初始容量
+     * @param maxCapacity     最大容量
+     * @return 堆内buf
+     */
+    protected abstract ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity);
+
+    /**
+     * @param initialCapacity 初始容量
+     * @param maxCapacity     最大容量
+     * @return 堆外buf
+     */
+    protected abstract ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity);
+}
@@ -0,0 +1,79 @@
+package com.cc.cetty.buffer;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 不是ByteBuf的引用计数对象的骨架实现，例如FileRegion
+ * 引用计数减到0时调用deallocate释放资源
+ *
+ * @author: cc
+ * @date: 2023/12/10
+ **/
+public abstract class AbstractReferenceCounted implements ReferenceCounted {
+
+    private static final AtomicIntegerFieldUpdater<AbstractReferenceCounted> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractReferenceCounted.class, "refCnt");
+
+    private volatile int refCnt = 1;
+
+    @Override
+    public int refCnt() {
+        return refCnt;
+    }
+
+    @Override
+    public ReferenceCounted retain() {
+        return retain0(1);
+    }
+
+    @Override
+    public ReferenceCounted retain(int increment) {
+        assert increment > 0 : "increment must be positive";
+        return retain0(increment);
+    }
+
+    private ReferenceCounted retain0(int increment) {
+        for (; ; ) {
+            int refCnt = this.refCnt;
+            final int nextCnt = refCnt + increment;
+            if (refCnt <= 0 || nextCnt <= increment) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, nextCnt)) {
+                return this;
+            }
+        }
+    }
+
+    @Override
+    public boolean release() {
+        return release0(1);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        assert decrement > 0 : "decrement must be positive";
+        return release0(decrement);
+    }
+
+    private boolean release0(int decrement) {
+        for (; ; ) {
+            int refCnt = this.refCnt;
+            if (refCnt < decrement) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt - decrement)) {
+                if (refCnt == decrement) {
+                    deallocate();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 引用计数减到0时调用，释放底层的资源
+     */
+    protected abstract void deallocate();
+}
@@ -0,0 +1,90 @@
+package com.cc.cetty.buffer;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 带引用计数的ByteBuf，引用计数减到0时调用deallocate释放内存
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public abstract class AbstractReferenceCountedByteBuf extends AbstractByteBuf {
+
+    private static final AtomicIntegerFieldUpdater<AbstractReferenceCountedByteBuf> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractReferenceCountedByteBuf.class, "refCnt");
+
+    private volatile int refCnt = 1;
+
+    protected AbstractReferenceCountedByteBuf(int maxCapacity) {
+        super(maxCapacity);
+    }
+
+    @Override
+    public int refCnt() {
+        return refCnt;
+    }
+
+    /**
+     * 池化的buf被复用时重置引用计数
+     */
+    protected final void resetRefCnt() {
+        REF_CNT_UPDATER.set(this, 1);
+    }
+
+    @Override
+    public ByteBuf retain() {
+        return retain0(1);
+    }
+
+    @Override
+    public ByteBuf retain(int increment) {
+        assert increment > 0 : "increment must be positive";
+        return retain0(increment);
+    }
+
+    private ByteBuf retain0(int increment) {
+        for (; ; ) {
+            int refCnt = this.refCnt;
+            final int nextCnt = refCnt + increment;
+            // 已经释放的不能再retain，同时处理溢出
+            if (refCnt <= 0 || nextCnt <= increment) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, nextCnt)) {
+                return this;
+            }
+        }
+    }
+
+    @Override
+    public boolean release() {
+        return release0(1);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        assert decrement > 0 : "decrement must be positive";
+        return release0(decrement);
+    }
+
+    private boolean release0(int decrement) {
+        for (; ; ) {
+            int refCnt = this.refCnt;
+            if (refCnt < decrement) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt - decrement)) {
+                if (refCnt == decrement) {
+                    deallocate();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 引用计数减到0时调用，释放底层的内存
+     */
+    protected abstract void deallocate();
+}
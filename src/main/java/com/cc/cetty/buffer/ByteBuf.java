@@ -0,0 +1,332 @@
+package com.cc.cetty.buffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * 字节容器，和ByteBuffer不同，读和写各有一个下标，不需要flip
+ * <pre>
+ *      +-------------------+------------------+------------------+
+ *      | discardable bytes |  readable bytes  |  writable bytes  |
+ *      +-------------------+------------------+------------------+
+ *      |                   |                  |                  |
+ *      0      <=      readerIndex   <=   writerIndex    <=    capacity
+ * </pre>
+ * 容量不够时会自动扩容，直到maxCapacity
+ * 所有的多字节读写都是大端序
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public abstract class ByteBuf implements ReferenceCounted {
+
+    /**
+     * @return 创建该buf的分配器
+     */
+    public abstract ByteBufAllocator alloc();
+
+    /**
+     * @return 当前容量
+     */
+    public abstract int capacity();
+
+    /**
+     * 调整容量，缩容时超出新容量的数据会被丢弃
+     *
+     * @param newCapacity 新容量
+     * @return this
+     */
+    public abstract ByteBuf capacity(int newCapacity);
+
+    /**
+     * @return 最大容量
+     */
+    public abstract int maxCapacity();
+
+    /**
+     * @return 是否是堆外内存
+     */
+    public abstract boolean isDirect();
+
+    /**
+     * @return 是否只读，只读的buf所有写操作都会抛出ReadOnlyBufferException
+     */
+    public abstract boolean isReadOnly();
+
+    public abstract int readerIndex();
+
+    public abstract ByteBuf readerIndex(int readerIndex);
+
+    public abstract int writerIndex();
+
+    public abstract ByteBuf writerIndex(int writerIndex);
+
+    public abstract ByteBuf setIndex(int readerIndex, int writerIndex);
+
+    /**
+     * @return writerIndex - readerIndex
+     */
+    public abstract int readableBytes();
+
+    /**
+     * @return capacity - writerIndex
+     */
+    public abstract int writableBytes();
+
+    /**
+     * @return maxCapacity - writerIndex
+     */
+    public abstract int maxWritableBytes();
+
+    public abstract boolean isReadable();
+
+    public abstract boolean isReadable(int size);
+
+    public abstract boolean isWritable();
+
+    public abstract boolean isWritable(int size);
+
+    /**
+     * 读写下标都置为0，不会清空数据
+     *
+     * @return this
+     */
+    public abstract ByteBuf clear();
+
+    /**
+     * 丢弃已经读过的数据，把可读的数据移动到开头
+     *
+     * @return this
+     */
+    public abstract ByteBuf discardReadBytes();
+
+    /**
+     * 保证至少还可以写入minWritableBytes个字节，不够时扩容
+     *
+     * @param minWritableBytes 需要写入的字节数
+     * @return this
+     */
+    public abstract ByteBuf ensureWritable(int minWritableBytes);
+
+    // 以下是绝对下标的读写，不会改变读写下标
+
+    public abstract byte getByte(int index);
+
+    public abstract short getShort(int index);
+
+    public abstract int getInt(int index);
+
+    public abstract long getLong(int index);
+
+    public abstract ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length);
+
+    public abstract ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length);
+
+    /**
+     * @param index index
+     * @param dst   读到dst剩余的空间满为止
+     * @return this
+     */
+    public abstract ByteBuf getBytes(int index, ByteBuffer dst);
+
+    /**
+     * @param index  index
+     * @param out    out
+     * @param length 最多写出的字节数
+     * @return 实际写出的字节数
+     * @throws IOException I/O异常
+     */
+    public abstract int getBytes(int index, GatheringByteChannel out, int length) throws IOException;
+
+    public abstract ByteBuf setByte(int index, int value);
+
+    public abstract ByteBuf setShort(int index, int value);
+
+    public abstract ByteBuf setInt(int index, int value);
+
+    public abstract ByteBuf setLong(int index, long value);
+
+    public abstract ByteBuf setBytes(int index, byte[] src, int srcIndex, int length);
+
+    public abstract ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length);
+
+    /**
+     * @param index index
+     * @param src   src剩余的全部数据
+     * @return this
+     */
+    public abstract ByteBuf setBytes(int index, ByteBuffer src);
+
+    /**
+     * @param index  index
+     * @param in     in
+     * @param length 最多读入的字节数
+     * @return 实际读入的字节数，-1表示已经读到了末尾
+     * @throws IOException I/O异常
+     */
+    public abstract int setBytes(int index, ScatteringByteChannel in, int length) throws IOException;
+
+    /**
+     * 从index开始写入length个0
+     *
+     * @param index  index
+     * @param length length
+     * @return this
+     */
+    public abstract ByteBuf setZero(int index, int length);
+
+    // 以下是相对下标的读写，读从readerIndex开始，写从writerIndex开始
+
+    public abstract byte readByte();
+
+    public abstract short readShort();
+
+    public abstract int readInt();
+
+    public abstract long readLong();
+
+    public abstract ByteBuf readBytes(byte[] dst);
+
+    public abstract ByteBuf readBytes(byte[] dst, int dstIndex, int length);
+
+    public abstract ByteBuf readBytes(ByteBuf dst, int length);
+
+    public abstract ByteBuf readBytes(ByteBuffer dst);
+
+    public abstract int readBytes(GatheringByteChannel out, int length) throws IOException;
+
+    public abstract ByteBuf skipBytes(int length);
+
+    /**
+     * 从readerIndex开始切出length个字节，并把readerIndex后移
+     *
+     * @param length length
+     * @return 见retainedSlice
+     */
+    public abstract ByteBuf readRetainedSlice(int length);
+
+    public abstract ByteBuf writeByte(int value);
+
+    public abstract ByteBuf writeShort(int value);
+
+    public abstract ByteBuf writeInt(int value);
+
+    public abstract ByteBuf writeLong(long value);
+
+    public abstract ByteBuf writeBytes(byte[] src);
+
+    public abstract ByteBuf writeBytes(byte[] src, int srcIndex, int length);
+
+    /**
+     * 写入src全部的可读数据，src的readerIndex会增加
+     *
+     * @param src src
+     * @return this
+     */
+    public abstract ByteBuf writeBytes(ByteBuf src);
+
+    public abstract ByteBuf writeBytes(ByteBuf src, int srcIndex, int length);
+
+    public abstract ByteBuf writeBytes(ByteBuffer src);
+
+    /**
+     * @param in     in
+     * @param length 最多读入的字节数
+     * @return 实际读入的字节数，-1表示已经读到了末尾
+     * @throws IOException I/O异常
+     */
+    public abstract int writeBytes(ScatteringByteChannel in, int length) throws IOException;
+
+    public abstract ByteBuf writeZero(int length);
+
+    /**
+     * 切出一段数据，不拷贝，和该buf共享内存
+     * 切片没有自己的引用计数，retain和release作用在该buf上，创建时已经retain了一次，用完之后要release
+     *
+     * @param index  index
+     * @param length length
+     * @return 读下标为0，写下标为length，容量固定的切片
+     */
+    public abstract ByteBuf retainedSlice(int index, int length);
+
+    /**
+     * @param fromIndex 开始位置，包含
+     * @param toIndex   结束位置，不包含
+     * @param value     要查找的字节
+     * @return 第一次出现的位置，没找到时返回-1
+     */
+    public abstract int indexOf(int fromIndex, int toIndex, byte value);
+
+    /**
+     * @param index  index
+     * @param length length
+     * @return 和这段数据共享内存的ByteBuffer，修改它的position和limit不影响该buf
+     */
+    public abstract ByteBuffer nioBuffer(int index, int length);
+
+    /**
+     * 返回buf内部缓存的ByteBuffer，不会创建新对象，下一次调用时会被修改
+     * 只能在当前线程临时使用，例如写socket，不能保存或者交给外部
+     *
+     * @param index  index
+     * @param length length
+     * @return 指向index开始length个字节的内部ByteBuffer
+     */
+    public abstract ByteBuffer internalNioBuffer(int index, int length);
+
+    /**
+     * @return 可读部分的ByteBuffer
+     */
+    public ByteBuffer nioBuffer() {
+        return nioBuffer(readerIndex(), readableBytes());
+    }
+
+    /**
+     * @return nioBuffers返回的ByteBuffer个数，组合buf可能大于1
+     */
+    public abstract int nioBufferCount();
+
+    /**
+     * 组合buf的每个组件各返回一个ByteBuffer，不拷贝，适合gathering write
+     *
+     * @param index  index
+     * @param length length
+     * @return 和这段数据共享内存的ByteBuffer
+     */
+    public abstract ByteBuffer[] nioBuffers(int index, int length);
+
+    /**
+     * @return 可读部分的ByteBuffer
+     */
+    public ByteBuffer[] nioBuffers() {
+        return nioBuffers(readerIndex(), readableBytes());
+    }
+
+    /**
+     * @return 底层是否是byte数组
+     */
+    public abstract boolean hasArray();
+
+    /**
+     * @return 底层的byte数组
+     */
+    public abstract byte[] array();
+
+    /**
+     * @return 该buf的第0个字节在数组中的位置
+     */
+    public abstract int arrayOffset();
+
+    public abstract String toString(Charset charset);
+
+    public abstract String toString(int index, int length, Charset charset);
+
+    @Override
+    public abstract ByteBuf retain();
+
+    @Override
+    public abstract ByteBuf retain(int increment);
+}
@@ -0,0 +1,71 @@
+package com.cc.cetty.buffer;
+
+/**
+ * ByteBuf的分配器
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public interface ByteBufAllocator {
+
+    /**
+     * 默认的分配器，通过 -Dcetty.allocator.type=unpooled 可以关闭池化
+     */
+    ByteBufAllocator DEFAULT = "unpooled".equalsIgnoreCase(System.getProperty("cetty.allocator.type", "pooled"))
+            ? UnpooledByteBufAllocator.DEFAULT : PooledByteBufAllocator.DEFAULT;
+
+    /**
+     * @return 默认类型的buf
+     */
+    ByteBuf buffer();
+
+    ByteBuf buffer(int initialCapacity);
+
+    ByteBuf buffer(int initialCapacity, int maxCapacity);
+
+    /**
+     * @return 适合做I/O的buf，能用堆外内存时优先用堆外内存，省掉一次拷贝
+     */
+    ByteBuf ioBuffer();
+
+    ByteBuf ioBuffer(int initialCapacity);
+
+    ByteBuf ioBuffer(int initialCapacity, int maxCapacity);
+
+    ByteBuf heapBuffer();
+
+    ByteBuf heapBuffer(int initialCapacity);
+
+    ByteBuf heapBuffer(int initialCapacity, int maxCapacity);
+
+    ByteBuf directBuffer();
+
+    ByteBuf directBuffer(int initialCapacity);
+
+    ByteBuf directBuffer(int initialCapacity, int maxCapacity);
+
+    /**
+     * @return 空的组合buf，扩容时按默认类型分配新组件
+     */
+    CompositeByteBuf compositeBuffer();
+
+    /**
+     * @param maxNumComponents 组件数超过它时合并成一个
+     * @return 空的组合buf
+     */
+    CompositeByteBuf compositeBuffer(int maxNumComponents);
+
+    /**
+     * @return 堆外内存是否池化
+     */
+    boolean isDirectBufferPooled();
+
+    /**
+     * 扩容时计算新的容量
+     *
+     * @param minNewCapacity 至少需要的容量
+     * @param maxCapacity    最大容量
+     * @return 新的容量
+     */
+    int calculateNewCapacity(int minNewCapacity, int maxCapacity);
+}
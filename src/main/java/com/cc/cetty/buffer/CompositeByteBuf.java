@@ -0,0 +1,690 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 把多个buf看成一个buf，不拷贝数据
+ * 例如协议的帧头和帧体分别分配，组合之后一起写出，写socket时每个组件各对应一个ByteBuffer，用gathering write发送
+ * 加入的buf归组合buf所有，组合buf释放时一起释放；组件数超过maxNumComponents时会合并成一个，避免查找变慢
+ * <pre>
+ *      +-----------+-----------+-----------+
+ *      | component | component | component |
+ *      +-----------+-----------+-----------+
+ *      0        offset     endOffset    capacity
+ * </pre>
+ *
+ * @author: cc
+ * @date: 2023/12/10
+ **/
+public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
+
+    private static final ByteBuffer EMPTY_NIO_BUFFER = ByteBuffer.allocateDirect(0);
+
+    private final ByteBufAllocator alloc;
+
+    /**
+     * 扩容和合并时新分配的buf是否用堆外内存
+     */
+    private final boolean direct;
+
+    private final int maxNumComponents;
+
+    private Component[] components;
+
+    private int componentCount;
+
+    /**
+     * 最近访问的组件，顺序读写时大多落在同一个组件里，不用每次二分查找
+     */
+    private Component lastAccessed;
+
+    public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents) {
+        super(Integer.MAX_VALUE);
+        this.alloc = AssertUtils.checkNotNull(alloc, "Alloc cannot be null");
+        if (maxNumComponents < 1) {
+            throw new IllegalArgumentException("maxNumComponents: " + maxNumComponents + " (expected: >= 1)");
+        }
+        this.direct = direct;
+        this.maxNumComponents = maxNumComponents;
+        this.components = new Component[Math.min(maxNumComponents, 16)];
+    }
+
+    /**
+     * 追加一个组件，不改变写下标
+     *
+     * @param buffer 组件，可读部分成为组合buf的一部分，之后归组合buf所有
+     * @return this
+     */
+    public CompositeByteBuf addComponent(ByteBuf buffer) {
+        return addComponent(false, buffer);
+    }
+
+    /**
+     * @param increaseWriterIndex 是否把写下标后移组件的可读字节数
+     * @param buffer              组件，可读部分成为组合buf的一部分，之后归组合buf所有
+     * @return this
+     */
+    public CompositeByteBuf addComponent(boolean increaseWriterIndex, ByteBuf buffer) {
+        AssertUtils.checkNotNull(buffer, "Buffer cannot be null");
+        addComponent0(increaseWriterIndex, buffer);
+        consolidateIfNeeded();
+        return this;
+    }
+
+    public CompositeByteBuf addComponents(boolean increaseWriterIndex, ByteBuf... buffers) {
+        AssertUtils.checkNotNull(buffers, "Buffers cannot be null");
+        for (ByteBuf buffer : buffers) {
+            if (Objects.isNull(buffer)) {
+                break;
+            }
+            addComponent0(increaseWriterIndex, buffer);
+        }
+        consolidateIfNeeded();
+        return this;
+    }
+
+    private void addComponent0(boolean increaseWriterIndex, ByteBuf buffer) {
+        boolean added = false;
+        try {
+            ensureAccessible();
+            int length = buffer.readableBytes();
+            if (length == 0) {
+                // 空的组件没有意义，还会让二分查找出现长度为0的区间
+                return;
+            }
+            appendComponent(new Component(buffer, buffer.readerIndex(), capacity(), length));
+            added = true;
+            if (increaseWriterIndex) {
+                writerIndex(writerIndex() + length);
+            }
+        } finally {
+            if (!added) {
+                buffer.release();
+            }
+        }
+    }
+
+    private void appendComponent(Component c) {
+        if (componentCount == components.length) {
+            components = Arrays.copyOf(components, componentCount << 1);
+        }
+        components[componentCount++] = c;
+    }
+
+    private void consolidateIfNeeded() {
+        if (componentCount > maxNumComponents) {
+            consolidate();
+        }
+    }
+
+    /**
+     * 把所有组件拷贝到一个新的buf中
+     *
+     * @return this
+     */
+    public CompositeByteBuf consolidate() {
+        ensureAccessible();
+        int count = componentCount;
+        if (count <= 1) {
+            return this;
+        }
+        int capacity = capacity();
+        ByteBuf consolidated = allocBuffer(capacity);
+        for (int i = 0; i < count; i++) {
+            Component c = components[i];
+            consolidated.writeBytes(c.buf, c.idx(c.offset), c.length());
+            c.free();
+            components[i] = null;
+        }
+        components[0] = new Component(consolidated, 0, 0, capacity);
+        componentCount = 1;
+        lastAccessed = null;
+        return this;
+    }
+
+    /**
+     * @return 组件个数
+     */
+    public int numComponents() {
+        return componentCount;
+    }
+
+    public int maxNumComponents() {
+        return maxNumComponents;
+    }
+
+    /**
+     * @param cIndex 组件的序号
+     * @return 组件原本的buf，它的下标和组合buf的下标无关，不能释放
+     */
+    public ByteBuf component(int cIndex) {
+        checkComponentIndex(cIndex);
+        return components[cIndex].buf;
+    }
+
+    /**
+     * @param offset 组合buf中的下标
+     * @return 包含该下标的组件序号
+     */
+    public int toComponentIndex(int offset) {
+        checkIndex(offset, 1);
+        return toComponentIndex0(offset);
+    }
+
+    private void checkComponentIndex(int cIndex) {
+        ensureAccessible();
+        if (cIndex < 0 || cIndex >= componentCount) {
+            throw new IndexOutOfBoundsException(String.format("cIndex: %d (expected: >= 0 && < numComponents(%d))", cIndex, componentCount));
+        }
+    }
+
+    private int toComponentIndex0(int offset) {
+        int low = 0;
+        int high = componentCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Component c = components[mid];
+            if (offset >= c.endOffset) {
+                low = mid + 1;
+            } else if (offset < c.offset) {
+                high = mid - 1;
+            } else {
+                lastAccessed = c;
+                return mid;
+            }
+        }
+        throw new IllegalStateException("Should not reach here, offset: " + offset);
+    }
+
+    private Component findComponent0(int offset) {
+        Component la = lastAccessed;
+        if (Objects.nonNull(la) && offset >= la.offset && offset < la.endOffset) {
+            return la;
+        }
+        return components[toComponentIndex0(offset)];
+    }
+
+    private ByteBuf allocBuffer(int capacity) {
+        return direct ? alloc.directBuffer(capacity) : alloc.heapBuffer(capacity);
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+        return alloc;
+    }
+
+    @Override
+    public boolean isDirect() {
+        int count = componentCount;
+        if (count == 0) {
+            return direct;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!components[i].buf.isDirect()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int capacity() {
+        int count = componentCount;
+        return count == 0 ? 0 : components[count - 1].endOffset;
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        ensureAccessible();
+        if (newCapacity < 0 || newCapacity > maxCapacity()) {
+            throw new IllegalArgumentException("newCapacity: " + newCapacity + " (expected: 0-" + maxCapacity() + ')');
+        }
+        int oldCapacity = capacity();
+        if (newCapacity > oldCapacity) {
+            // 扩容时追加一个新组件
+            int padding = newCapacity - oldCapacity;
+            appendComponent(new Component(allocBuffer(padding), 0, oldCapacity, padding));
+            consolidateIfNeeded();
+        } else if (newCapacity < oldCapacity) {
+            lastAccessed = null;
+            int i = componentCount - 1;
+            for (; i >= 0; i--) {
+                Component c = components[i];
+                if (newCapacity > c.offset) {
+                    c.endOffset = newCapacity;
+                    break;
+                }
+                c.free();
+                components[i] = null;
+            }
+            componentCount = i + 1;
+            trimIndicesToCapacity(newCapacity);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean hasArray() {
+        return componentCount == 1 && components[0].buf.hasArray();
+    }
+
+    @Override
+    public byte[] array() {
+        if (hasArray()) {
+            return components[0].buf.array();
+        }
+        throw new UnsupportedOperationException("composite buffer");
+    }
+
+    @Override
+    public int arrayOffset() {
+        if (hasArray()) {
+            Component c = components[0];
+            return c.buf.arrayOffset() + c.adjustment;
+        }
+        throw new UnsupportedOperationException("composite buffer");
+    }
+
+    @Override
+    protected byte _getByte(int index) {
+        Component c = findComponent0(index);
+        return c.buf.getByte(c.idx(index));
+    }
+
+    @Override
+    protected short _getShort(int index) {
+        Component c = findComponent0(index);
+        if (index + 2 <= c.endOffset) {
+            return c.buf.getShort(c.idx(index));
+        }
+        // 跨越了两个组件，按大端序拼起来
+        return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
+    }
+
+    @Override
+    protected int _getInt(int index) {
+        Component c = findComponent0(index);
+        if (index + 4 <= c.endOffset) {
+            return c.buf.getInt(c.idx(index));
+        }
+        return (_getShort(index) & 0xffff) << 16 | _getShort(index + 2) & 0xffff;
+    }
+
+    @Override
+    protected long _getLong(int index) {
+        Component c = findComponent0(index);
+        if (index + 8 <= c.endOffset) {
+            return c.buf.getLong(c.idx(index));
+        }
+        return (_getInt(index) & 0xffffffffL) << 32 | _getInt(index + 4) & 0xffffffffL;
+    }
+
+    @Override
+    protected void _setByte(int index, int value) {
+        Component c = findComponent0(index);
+        c.buf.setByte(c.idx(index), value);
+    }
+
+    @Override
+    protected void _setShort(int index, int value) {
+        Component c = findComponent0(index);
+        if (index + 2 <= c.endOffset) {
+            c.buf.setShort(c.idx(index), value);
+        } else {
+            _setByte(index, (byte) (value >>> 8));
+            _setByte(index + 1, (byte) value);
+        }
+    }
+
+    @Override
+    protected void _setInt(int index, int value) {
+        Component c = findComponent0(index);
+        if (index + 4 <= c.endOffset) {
+            c.buf.setInt(c.idx(index), value);
+        } else {
+            _setShort(index, (short) (value >>> 16));
+            _setShort(index + 2, (short) value);
+        }
+    }
+
+    @Override
+    protected void _setLong(int index, long value) {
+        Component c = findComponent0(index);
+        if (index + 8 <= c.endOffset) {
+            c.buf.setLong(c.idx(index), value);
+        } else {
+            _setInt(index, (int) (value >>> 32));
+            _setInt(index + 4, (int) value);
+        }
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkDstIndex(index, length, dstIndex, dst.length);
+        if (length == 0) {
+            return this;
+        }
+        int i = toComponentIndex0(index);
+        while (length > 0) {
+            Component c = components[i];
+            int localLength = Math.min(length, c.endOffset - index);
+            c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
+            index += localLength;
+            dstIndex += localLength;
+            length -= localLength;
+            i++;
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkDstIndex(index, length, dstIndex, dst.capacity());
+        if (length == 0) {
+            return this;
+        }
+        int i = toComponentIndex0(index);
+        while (length > 0) {
+            Component c = components[i];
+            int localLength = Math.min(length, c.endOffset - index);
+            c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
+            index += localLength;
+            dstIndex += localLength;
+            length -= localLength;
+            i++;
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuffer dst) {
+        int limit = dst.limit();
+        int length = dst.remaining();
+        checkIndex(index, length);
+        if (length == 0) {
+            return this;
+        }
+        int i = toComponentIndex0(index);
+        try {
+            while (length > 0) {
+                Component c = components[i];
+                int localLength = Math.min(length, c.endOffset - index);
+                dst.limit(dst.position() + localLength);
+                c.buf.getBytes(c.idx(index), dst);
+                index += localLength;
+                length -= localLength;
+                i++;
+            }
+        } finally {
+            dst.limit(limit);
+        }
+        return this;
+    }
+
+    @Override
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        if (nioBufferCount() == 1) {
+            return out.write(internalNioBuffer(index, length));
+        }
+        return (int) out.write(nioBuffers(index, length));
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkSrcIndex(index, length, srcIndex, src.length);
+        if (length == 0) {
+            return this;
+        }
+        int i = toComponentIndex0(index);
+        while (length > 0) {
+            Component c = components[i];
+            int localLength = Math.min(length, c.endOffset - index);
+            c.buf.setBytes(c.idx(index), src, srcIndex, localLength);
+            index += localLength;
+            srcIndex += localLength;
+            length -= localLength;
+            i++;
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        checkSrcIndex(index, length, srcIndex, src.capacity());
+        if (length == 0) {
+            return this;
+        }
+        int i = toComponentIndex0(index);
+        while (length > 0) {
+            Component c = components[i];
+            int localLength = Math.min(length, c.endOffset - index);
+            c.buf.setBytes(c.idx(index), src, srcIndex, localLength);
+            index += localLength;
+            srcIndex += localLength;
+            length -= localLength;
+            i++;
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuffer src) {
+        int limit = src.limit();
+        int length = src.remaining();
+        checkIndex(index, length);
+        if (length == 0) {
+            return this;
+        }
+        int i = toComponentIndex0(index);
+        try {
+            while (length > 0) {
+                Component c = components[i];
+                int localLength = Math.min(length, c.endOffset - index);
+                src.limit(src.position() + localLength);
+                c.buf.setBytes(c.idx(index), src);
+                index += localLength;
+                length -= localLength;
+                i++;
+            }
+        } finally {
+            src.limit(limit);
+        }
+        return this;
+    }
+
+    @Override
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        if (length == 0) {
+            return in.read(EMPTY_NIO_BUFFER);
+        }
+        int i = toComponentIndex0(index);
+        int readBytes = 0;
+        do {
+            Component c = components[i];
+            int localLength = Math.min(length, c.endOffset - index);
+            int localReadBytes = c.buf.setBytes(c.idx(index), in, localLength);
+            if (localReadBytes < 0) {
+                return readBytes == 0 ? -1 : readBytes;
+            }
+            index += localReadBytes;
+            length -= localReadBytes;
+            readBytes += localReadBytes;
+            if (localReadBytes < localLength) {
+                // 暂时没有更多数据了
+                break;
+            }
+            i++;
+        } while (length > 0);
+        return readBytes;
+    }
+
+    @Override
+    public ByteBuffer nioBuffer(int index, int length) {
+        checkIndex(index, length);
+        if (length == 0) {
+            return EMPTY_NIO_BUFFER.duplicate();
+        }
+        Component c = findComponent0(index);
+        if (index + length <= c.endOffset) {
+            return c.buf.nioBuffer(c.idx(index), length);
+        }
+        // 跨越多个组件，只能拷贝
+        ByteBuffer merged = isDirect() ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        for (ByteBuffer buffer : nioBuffers(index, length)) {
+            merged.put(buffer);
+        }
+        return merged.flip();
+    }
+
+    @Override
+    public ByteBuffer internalNioBuffer(int index, int length) {
+        checkIndex(index, length);
+        if (length == 0) {
+            return EMPTY_NIO_BUFFER;
+        }
+        Component c = findComponent0(index);
+        if (index + length <= c.endOffset) {
+            return c.buf.internalNioBuffer(c.idx(index), length);
+        }
+        throw new UnsupportedOperationException("range spans multiple components, use nioBuffers instead");
+    }
+
+    @Override
+    public int nioBufferCount() {
+        int count = componentCount;
+        if (count == 0) {
+            return 1;
+        }
+        int nioBufferCount = 0;
+        for (int i = 0; i < count; i++) {
+            nioBufferCount += components[i].buf.nioBufferCount();
+        }
+        return nioBufferCount;
+    }
+
+    @Override
+    public ByteBuffer[] nioBuffers(int index, int length) {
+        checkIndex(index, length);
+        if (length == 0) {
+            return new ByteBuffer[]{EMPTY_NIO_BUFFER.duplicate()};
+        }
+        List<ByteBuffer> buffers = new ArrayList<>(componentCount);
+        int i = toComponentIndex0(index);
+        while (length > 0) {
+            Component c = components[i];
+            int localLength = Math.min(length, c.endOffset - index);
+            ByteBuf buf = c.buf;
+            if (buf.nioBufferCount() == 1) {
+                buffers.add(buf.nioBuffer(c.idx(index), localLength));
+            } else {
+                buffers.addAll(Arrays.asList(buf.nioBuffers(c.idx(index), localLength)));
+            }
+            index += localLength;
+            length -= localLength;
+            i++;
+        }
+        return buffers.toArray(new ByteBuffer[0]);
+    }
+
+    /**
+     * 不拷贝数据，直接释放已经读完的组件，读了一部分的组件调整起始位置
+     */
+    @Override
+    public ByteBuf discardReadBytes() {
+        ensureAccessible();
+        int readerIndex = readerIndex();
+        if (readerIndex == 0) {
+            return this;
+        }
+        int writerIndex = writerIndex();
+        lastAccessed = null;
+        int first = readerIndex == capacity() ? componentCount : toComponentIndex0(readerIndex);
+        for (int i = 0; i < first; i++) {
+            components[i].free();
+        }
+        int remaining = componentCount - first;
+        System.arraycopy(components, first, components, 0, remaining);
+        Arrays.fill(components, remaining, componentCount, null);
+        componentCount = remaining;
+        for (int i = 0; i < remaining; i++) {
+            components[i].reposition(-readerIndex);
+        }
+        if (remaining > 0) {
+            components[0].offset = 0;
+        }
+        setIndex0(0, writerIndex - readerIndex);
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        int count = componentCount;
+        for (int i = 0; i < count; i++) {
+            components[i].free();
+            components[i] = null;
+        }
+        componentCount = 0;
+        lastAccessed = null;
+    }
+
+    @Override
+    public String toString() {
+        String result = super.toString();
+        return result.substring(0, result.length() - 1) + ", components: " + componentCount + ')';
+    }
+
+    /**
+     * 组件buf中[adjustment + offset, adjustment + endOffset)这一段对应组合buf中的[offset, endOffset)
+     */
+    private static final class Component {
+
+        private final ByteBuf buf;
+
+        /**
+         * 组合buf的下标加上它就是组件buf的下标
+         */
+        private int adjustment;
+
+        private int offset;
+
+        private int endOffset;
+
+        Component(ByteBuf buf, int srcOffset, int offset, int length) {
+            this.buf = buf;
+            this.adjustment = srcOffset - offset;
+            this.offset = offset;
+            this.endOffset = offset + length;
+        }
+
+        int idx(int index) {
+            return index + adjustment;
+        }
+
+        int length() {
+            return endOffset - offset;
+        }
+
+        /**
+         * 组件在组合buf中整体移动
+         */
+        void reposition(int delta) {
+            offset += delta;
+            endOffset += delta;
+            adjustment -= delta;
+        }
+
+        void free() {
+            buf.release();
+        }
+    }
+}
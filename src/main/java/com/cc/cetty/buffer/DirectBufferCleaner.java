@@ -0,0 +1,60 @@
+package com.cc.cetty.buffer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 主动释放堆外内存，不用等GC触发DirectByteBuffer的cleaner
+ * 通过jdk.unsupported模块里的sun.misc.Unsafe#invokeCleaner实现，不可用时退化为等待GC
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+@Slf4j
+final class DirectBufferCleaner {
+
+    private static final Object UNSAFE;
+
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            // 先试一次，确认可用
+            invokeCleaner.invoke(unsafe, ByteBuffer.allocateDirect(1));
+        } catch (Throwable t) {
+            log.debug("sun.misc.Unsafe#invokeCleaner unavailable, direct buffers will be released by GC", t);
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private DirectBufferCleaner() {
+    }
+
+    /**
+     * @param buffer 直接分配的堆外内存，不能是slice或者duplicate
+     */
+    static void free(ByteBuffer buffer) {
+        if (Objects.isNull(INVOKE_CLEANER) || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (Throwable t) {
+            log.warn("Failed to free a direct buffer.", t);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.cc.cetty.buffer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * 按大端序读写byte数组，多字节的读写通过VarHandle一次完成，不用逐个字节拼
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+final class HeapByteBufUtils {
+
+    private static final VarHandle SHORT_HANDLE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final VarHandle INT_HANDLE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final VarHandle LONG_HANDLE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private HeapByteBufUtils() {
+    }
+
+    static byte getByte(byte[] memory, int index) {
+        return memory[index];
+    }
+
+    static short getShort(byte[] memory, int index) {
+        return (short) SHORT_HANDLE.get(memory, index);
+    }
+
+    static int getInt(byte[] memory, int index) {
+        return (int) INT_HANDLE.get(memory, index);
+    }
+
+    static long getLong(byte[] memory, int index) {
+        return (long) LONG_HANDLE.get(memory, index);
+    }
+
+    static void setByte(byte[] memory, int index, int value) {
+        memory[index] = (byte) value;
+    }
+
+    static void setShort(byte[] memory, int index, int value) {
+        SHORT_HANDLE.set(memory, index, (short) value);
+    }
+
+    static void setInt(byte[] memory, int index, int value) {
+        INT_HANDLE.set(memory, index, value);
+    }
+
+    static void setLong(byte[] memory, int index, long value) {
+        LONG_HANDLE.set(memory, index, value);
+    }
+}
@@ -0,0 +1,22 @@
+package com.cc.cetty.buffer;
+
+/**
+ * 访问已经释放的对象，或者引用计数溢出时抛出
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public class IllegalReferenceCountException extends IllegalStateException {
+
+    public IllegalReferenceCountException(int refCnt) {
+        this("refCnt: " + refCnt);
+    }
+
+    public IllegalReferenceCountException(int refCnt, int increment) {
+        this("refCnt: " + refCnt + ", " + (increment > 0 ? "increment: " + increment : "decrement: " + -increment));
+    }
+
+    public IllegalReferenceCountException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,479 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.metrics.ArenaMetricsSnapshot;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个arena管理若干chunk，多个线程分摊到不同的arena上减少锁竞争
+ * 内存按大小分成四类：
+ * tiny:   (0, 512)，按16字节对齐，由subpage分配
+ * small:  [512, pageSize)，按2的幂对齐，由subpage分配
+ * normal: [pageSize, chunkSize]，按2的幂对齐，由chunk分配连续的page
+ * huge:   大于chunkSize，不池化
+ * 线程缓存没有命中时才会加锁访问arena
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+abstract class PoolArena<T> {
+
+    enum SizeClass {
+        Tiny,
+        Small,
+        Normal
+    }
+
+    static final int NUM_TINY_SUBPAGE_POOLS = 512 >>> 4;
+
+    final PooledByteBufAllocator parent;
+
+    private final int maxOrder;
+
+    final int pageSize;
+
+    final int pageShifts;
+
+    final int chunkSize;
+
+    private final int subpageOverflowMask;
+
+    final int numSmallSubpagePools;
+
+    private final PoolSubpage<T>[] tinySubpagePools;
+
+    private final PoolSubpage<T>[] smallSubpagePools;
+
+    private final PoolChunkList<T> q050;
+
+    private final PoolChunkList<T> q025;
+
+    private final PoolChunkList<T> q000;
+
+    private final PoolChunkList<T> qInit;
+
+    private final PoolChunkList<T> q075;
+
+    private final PoolChunkList<T> q100;
+
+    /**
+     * 绑定到该arena的线程缓存个数，新线程选择线程最少的arena
+     */
+    final AtomicInteger numThreadCaches = new AtomicInteger();
+
+    /**
+     * 池化的chunk占用的内存
+     */
+    private final LongAdder pooledBytes = new LongAdder();
+
+    private final LongAdder hugeBytes = new LongAdder();
+
+    protected PoolArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+        this.parent = parent;
+        this.pageSize = pageSize;
+        this.maxOrder = maxOrder;
+        this.pageShifts = pageShifts;
+        this.chunkSize = chunkSize;
+        subpageOverflowMask = ~(pageSize - 1);
+        tinySubpagePools = newSubpagePoolArray(NUM_TINY_SUBPAGE_POOLS);
+        for (int i = 0; i < tinySubpagePools.length; i++) {
+            tinySubpagePools[i] = new PoolSubpage<>(pageSize);
+        }
+        numSmallSubpagePools = pageShifts - 9;
+        smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
+        for (int i = 0; i < smallSubpagePools.length; i++) {
+            smallSubpagePools[i] = new PoolSubpage<>(pageSize);
+        }
+
+        q100 = new PoolChunkList<>(this, null, 100, Integer.MAX_VALUE, chunkSize);
+        q075 = new PoolChunkList<>(this, q100, 75, 100, chunkSize);
+        q050 = new PoolChunkList<>(this, q075, 50, 100, chunkSize);
+        q025 = new PoolChunkList<>(this, q050, 25, 75, chunkSize);
+        q000 = new PoolChunkList<>(this, q025, 1, 50, chunkSize);
+        qInit = new PoolChunkList<>(this, q000, Integer.MIN_VALUE, 25, chunkSize);
+
+        q100.prevList(q075);
+        q075.prevList(q050);
+        q050.prevList(q025);
+        q025.prevList(q000);
+        // q000中的chunk完全空闲后会被销毁，qInit中的则不会，保证至少留一个chunk
+        q000.prevList(null);
+        qInit.prevList(qInit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private PoolSubpage<T>[] newSubpagePoolArray(int size) {
+        return new PoolSubpage[size];
+    }
+
+    /**
+     * @return 是否是堆外内存的arena
+     */
+    abstract boolean isDirect();
+
+    PooledByteBuf<T> allocate(PoolThreadCache cache, int reqCapacity, int maxCapacity) {
+        PooledByteBuf<T> buf = newByteBuf(maxCapacity);
+        allocate(cache, buf, reqCapacity);
+        return buf;
+    }
+
+    static int tinyIdx(int normCapacity) {
+        return normCapacity >>> 4;
+    }
+
+    static int smallIdx(int normCapacity) {
+        int tableIdx = 0;
+        int i = normCapacity >>> 10;
+        while (i != 0) {
+            i >>>= 1;
+            tableIdx++;
+        }
+        return tableIdx;
+    }
+
+    boolean isTinyOrSmall(int normCapacity) {
+        return (normCapacity & subpageOverflowMask) == 0;
+    }
+
+    static boolean isTiny(int normCapacity) {
+        return (normCapacity & 0xFFFFFE00) == 0;
+    }
+
+    private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
+        final int normCapacity = normalizeCapacity(reqCapacity);
+        if (isTinyOrSmall(normCapacity)) {
+            int tableIdx;
+            PoolSubpage<T>[] table;
+            if (isTiny(normCapacity)) {
+                if (cache.allocateTiny(this, buf, reqCapacity, normCapacity)) {
+                    return;
+                }
+                tableIdx = tinyIdx(normCapacity);
+                table = tinySubpagePools;
+            } else {
+                if (cache.allocateSmall(this, buf, reqCapacity, normCapacity)) {
+                    return;
+                }
+                tableIdx = smallIdx(normCapacity);
+                table = smallSubpagePools;
+            }
+            final PoolSubpage<T> head = table[tableIdx];
+            // 先在已有的subpage中找，只需要锁住这个规格的链表
+            synchronized (head) {
+                final PoolSubpage<T> s = head.next;
+                if (s != head) {
+                    assert s.doNotDestroy && s.elemSize == normCapacity;
+                    long handle = s.allocate();
+                    assert handle >= 0;
+                    s.chunk.initBufWithSubpage(buf, handle, reqCapacity, cache);
+                    return;
+                }
+            }
+            synchronized (this) {
+                allocateNormal(buf, reqCapacity, normCapacity, cache);
+            }
+            return;
+        }
+        if (normCapacity <= chunkSize) {
+            if (cache.allocateNormal(this, buf, reqCapacity, normCapacity)) {
+                return;
+            }
+            synchronized (this) {
+                allocateNormal(buf, reqCapacity, normCapacity, cache);
+            }
+        } else {
+            allocateHuge(buf, reqCapacity);
+        }
+    }
+
+    /**
+     * 按使用率从中间往两边找，都分配不了再创建新的chunk
+     * 调用方需要持有arena的锁
+     */
+    private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int normCapacity, PoolThreadCache cache) {
+        if (q050.allocate(buf, reqCapacity, normCapacity, cache)
+                || q025.allocate(buf, reqCapacity, normCapacity, cache)
+                || q000.allocate(buf, reqCapacity, normCapacity, cache)
+                || qInit.allocate(buf, reqCapacity, normCapacity, cache)
+                || q075.allocate(buf, reqCapacity, normCapacity, cache)) {
+            return;
+        }
+        PoolChunk<T> c = newChunk(pageSize, maxOrder, pageShifts, chunkSize);
+        pooledBytes.add(chunkSize);
+        boolean success = c.allocate(buf, reqCapacity, normCapacity, cache);
+        assert success;
+        qInit.add(c);
+    }
+
+    private void allocateHuge(PooledByteBuf<T> buf, int reqCapacity) {
+        PoolChunk<T> chunk = newUnpooledChunk(reqCapacity);
+        hugeBytes.add(chunk.chunkSize());
+        buf.initUnpooled(chunk, reqCapacity);
+    }
+
+    /**
+     * 释放内存，优先放入线程缓存
+     */
+    void free(PoolChunk<T> chunk, long handle, int normCapacity, PoolThreadCache cache) {
+        if (chunk.unpooled) {
+            hugeBytes.add(-chunk.chunkSize());
+            destroyChunk(chunk);
+            return;
+        }
+        SizeClass sizeClass = sizeClass(normCapacity);
+        if (cache != null && cache.add(this, chunk, handle, normCapacity, sizeClass)) {
+            return;
+        }
+        freeChunk(chunk, handle);
+    }
+
+    private SizeClass sizeClass(int normCapacity) {
+        if (!isTinyOrSmall(normCapacity)) {
+            return SizeClass.Normal;
+        }
+        return isTiny(normCapacity) ? SizeClass.Tiny : SizeClass.Small;
+    }
+
+    /**
+     * 把内存还给chunk，chunk完全空闲时销毁
+     */
+    void freeChunk(PoolChunk<T> chunk, long handle) {
+        final boolean destroyChunk;
+        synchronized (this) {
+            destroyChunk = !chunk.parent.free(chunk, handle);
+        }
+        if (destroyChunk) {
+            // 销毁不需要持有锁
+            pooledBytes.add(-chunkSize);
+            destroyChunk(chunk);
+        }
+    }
+
+    PoolSubpage<T> findSubpagePoolHead(int elemSize) {
+        int tableIdx;
+        PoolSubpage<T>[] table;
+        if (isTiny(elemSize)) {
+            tableIdx = elemSize >>> 4;
+            table = tinySubpagePools;
+        } else {
+            tableIdx = 0;
+            elemSize >>>= 10;
+            while (elemSize != 0) {
+                elemSize >>>= 1;
+                tableIdx++;
+            }
+            table = smallSubpagePools;
+        }
+        return table[tableIdx];
+    }
+
+    /**
+     * tiny按16字节对齐，其余按2的幂对齐，huge不对齐
+     */
+    int normalizeCapacity(int reqCapacity) {
+        if (reqCapacity >= chunkSize) {
+            return reqCapacity;
+        }
+        if (!isTiny(reqCapacity)) {
+            int normalizedCapacity = reqCapacity;
+            normalizedCapacity--;
+            normalizedCapacity |= normalizedCapacity >>> 1;
+            normalizedCapacity |= normalizedCapacity >>> 2;
+            normalizedCapacity |= normalizedCapacity >>> 4;
+            normalizedCapacity |= normalizedCapacity >>> 8;
+            normalizedCapacity |= normalizedCapacity >>> 16;
+            normalizedCapacity++;
+            if (normalizedCapacity < 0) {
+                normalizedCapacity >>>= 1;
+            }
+            return normalizedCapacity;
+        }
+        // 0也按16分配，tiny池的第0个槽位不用
+        if (reqCapacity == 0) {
+            return 16;
+        }
+        if ((reqCapacity & 15) == 0) {
+            return reqCapacity;
+        }
+        return (reqCapacity & ~15) + 16;
+    }
+
+    /**
+     * 扩缩容：重新分配一块内存，把数据拷过去
+     */
+    void reallocate(PooledByteBuf<T> buf, int newCapacity, boolean freeOldMemory) {
+        if (newCapacity < 0 || newCapacity > buf.maxCapacity()) {
+            throw new IllegalArgumentException("newCapacity: " + newCapacity);
+        }
+        int oldCapacity = buf.length;
+        if (oldCapacity == newCapacity) {
+            return;
+        }
+        PoolChunk<T> oldChunk = buf.chunk;
+        long oldHandle = buf.handle;
+        T oldMemory = buf.memory;
+        int oldOffset = buf.offset;
+        int oldMaxLength = buf.maxLength;
+        PoolThreadCache oldCache = buf.cache;
+        int readerIndex = buf.readerIndex();
+        int writerIndex = buf.writerIndex();
+
+        allocate(parent.threadCache(), buf, newCapacity);
+        if (newCapacity > oldCapacity) {
+            memoryCopy(oldMemory, oldOffset, buf.memory, buf.offset, oldCapacity);
+        } else {
+            if (readerIndex < newCapacity) {
+                if (writerIndex > newCapacity) {
+                    writerIndex = newCapacity;
+                }
+                memoryCopy(oldMemory, oldOffset + readerIndex, buf.memory, buf.offset + readerIndex, writerIndex - readerIndex);
+            } else {
+                readerIndex = writerIndex = newCapacity;
+            }
+        }
+        buf.setIndex(readerIndex, writerIndex);
+        if (freeOldMemory) {
+            free(oldChunk, oldHandle, oldMaxLength, oldCache);
+        }
+    }
+
+    /**
+     * @return 池化的chunk和huge内存一共占用的字节数
+     */
+    long usedMemory() {
+        return pooledBytes.sum() + hugeBytes.sum();
+    }
+
+    /**
+     * @return 池化的chunk个数
+     */
+    synchronized int numChunks() {
+        return qInit.size() + q000.size() + q025.size() + q050.size() + q075.size() + q100.size();
+    }
+
+    /**
+     * chunk的使用情况在arena的锁下读，和分配释放互斥
+     *
+     * @return 这个arena的快照
+     */
+    synchronized ArenaMetricsSnapshot metrics() {
+        int[] chunkListSizes = {qInit.size(), q000.size(), q025.size(), q050.size(), q075.size(), q100.size()};
+        long freeBytes = qInit.freeBytes() + q000.freeBytes() + q025.freeBytes()
+                + q050.freeBytes() + q075.freeBytes() + q100.freeBytes();
+        return new ArenaMetricsSnapshot(numThreadCaches.get(), chunkListSizes, pooledBytes.sum(), hugeBytes.sum(), freeBytes);
+    }
+
+    protected abstract PoolChunk<T> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize);
+
+    protected abstract PoolChunk<T> newUnpooledChunk(int capacity);
+
+    protected abstract PooledByteBuf<T> newByteBuf(int maxCapacity);
+
+    protected abstract void memoryCopy(T src, int srcOffset, T dst, int dstOffset, int length);
+
+    protected abstract void destroyChunk(PoolChunk<T> chunk);
+
+    /**
+     * 销毁所有的chunk，只在分配器不再使用时调用
+     */
+    synchronized void destroy() {
+        qInit.destroy();
+        q000.destroy();
+        q025.destroy();
+        q050.destroy();
+        q075.destroy();
+        q100.destroy();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "(threadCaches: " + numThreadCaches.get() + ", "
+                + qInit + ", " + q000 + ", " + q025 + ", " + q050 + ", " + q075 + ", " + q100 + ')';
+    }
+
+    static final class HeapArena extends PoolArena<byte[]> {
+
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        boolean isDirect() {
+            return false;
+        }
+
+        @Override
+        protected PoolChunk<byte[]> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            return new PoolChunk<>(this, new byte[chunkSize], pageSize, maxOrder, pageShifts, chunkSize, 0);
+        }
+
+        @Override
+        protected PoolChunk<byte[]> newUnpooledChunk(int capacity) {
+            return new PoolChunk<>(this, new byte[capacity], capacity, 0);
+        }
+
+        @Override
+        protected PooledByteBuf<byte[]> newByteBuf(int maxCapacity) {
+            return PooledHeapByteBuf.newInstance(maxCapacity);
+        }
+
+        @Override
+        protected void memoryCopy(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+            if (length == 0) {
+                return;
+            }
+            System.arraycopy(src, srcOffset, dst, dstOffset, length);
+        }
+
+        @Override
+        protected void destroyChunk(PoolChunk<byte[]> chunk) {
+            // 交给GC
+        }
+    }
+
+    static final class DirectArena extends PoolArena<ByteBuffer> {
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        boolean isDirect() {
+            return true;
+        }
+
+        @Override
+        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            return new PoolChunk<>(this, ByteBuffer.allocateDirect(chunkSize), pageSize, maxOrder, pageShifts, chunkSize, 0);
+        }
+
+        @Override
+        protected PoolChunk<ByteBuffer> newUnpooledChunk(int capacity) {
+            return new PoolChunk<>(this, ByteBuffer.allocateDirect(capacity), capacity, 0);
+        }
+
+        @Override
+        protected PooledByteBuf<ByteBuffer> newByteBuf(int maxCapacity) {
+            return PooledDirectByteBuf.newInstance(maxCapacity);
+        }
+
+        @Override
+        protected void memoryCopy(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int length) {
+            if (length == 0) {
+                return;
+            }
+            src = src.duplicate();
+            dst = dst.duplicate();
+            src.position(srcOffset).limit(srcOffset + length);
+            dst.position(dstOffset);
+            dst.put(src);
+        }
+
+        @Override
+        protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
+            DirectBufferCleaner.free(chunk.memory);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.cc.cetty.buffer;
+
+/**
+ * 一大块连续内存，默认16MiB，按page切分，用伙伴算法分配
+ * <pre>
+ * 用一棵满二叉树管理chunk中的page，第d层的每个节点管理 chunkSize >>> d 字节
+ * depth=0        1 node (chunkSize)
+ * depth=1        2 nodes (chunkSize/2)
+ * ..
+ * depth=maxOrder 2^maxOrder nodes (pageSize)
+ * </pre>
+ * memoryMap[id]记录节点id下还能分配的最浅的层数：
+ * 等于depth(id)表示整个节点都空闲；大于depth(id)表示部分被分配，只能分配更深层的节点；等于maxOrder + 1表示完全分配
+ * 分配时从根节点往下找第一个值不大于目标层数的节点，释放时把沿途的父节点改回来，都是O(maxOrder)
+ * 小于一个page的内存先分配一个page，再交给PoolSubpage切分
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+final class PoolChunk<T> {
+
+    final PoolArena<T> arena;
+
+    final T memory;
+
+    /**
+     * 超过chunkSize的内存不池化，单独创建一个chunk，释放时直接销毁
+     */
+    final boolean unpooled;
+
+    final int offset;
+
+    private final byte[] memoryMap;
+
+    private final byte[] depthMap;
+
+    private final PoolSubpage<T>[] subpages;
+
+    /**
+     * 用来判断申请的大小是否大于等于一个page
+     */
+    private final int subpageOverflowMask;
+
+    private final int pageSize;
+
+    private final int pageShifts;
+
+    private final int maxOrder;
+
+    private final int chunkSize;
+
+    private final int log2ChunkSize;
+
+    private final int maxSubpageAllocs;
+
+    /**
+     * 完全分配的节点在memoryMap中的值
+     */
+    private final byte unusable;
+
+    int freeBytes;
+
+    PoolChunkList<T> parent;
+
+    PoolChunk<T> prev;
+
+    PoolChunk<T> next;
+
+    @SuppressWarnings("unchecked")
+    PoolChunk(PoolArena<T> arena, T memory, int pageSize, int maxOrder, int pageShifts, int chunkSize, int offset) {
+        unpooled = false;
+        this.arena = arena;
+        this.memory = memory;
+        this.pageSize = pageSize;
+        this.pageShifts = pageShifts;
+        this.maxOrder = maxOrder;
+        this.chunkSize = chunkSize;
+        this.offset = offset;
+        unusable = (byte) (maxOrder + 1);
+        log2ChunkSize = log2(chunkSize);
+        subpageOverflowMask = ~(pageSize - 1);
+        freeBytes = chunkSize;
+
+        assert maxOrder < 30 : "maxOrder should be < 30, but is: " + maxOrder;
+        maxSubpageAllocs = 1 << maxOrder;
+
+        // 下标0不用，根节点是1，节点id的左右孩子是2*id和2*id+1
+        memoryMap = new byte[maxSubpageAllocs << 1];
+        depthMap = new byte[memoryMap.length];
+        int memoryMapIndex = 1;
+        for (int d = 0; d <= maxOrder; ++d) {
+            int depth = 1 << d;
+            for (int p = 0; p < depth; ++p) {
+                memoryMap[memoryMapIndex] = (byte) d;
+                depthMap[memoryMapIndex] = (byte) d;
+                memoryMapIndex++;
+            }
+        }
+        subpages = new PoolSubpage[maxSubpageAllocs];
+    }
+
+    /**
+     * 创建不池化的chunk
+     */
+    PoolChunk(PoolArena<T> arena, T memory, int size, int offset) {
+        unpooled = true;
+        this.arena = arena;
+        this.memory = memory;
+        this.offset = offset;
+        memoryMap = null;
+        depthMap = null;
+        subpages = null;
+        subpageOverflowMask = 0;
+        pageSize = 0;
+        pageShifts = 0;
+        maxOrder = 0;
+        unusable = (byte) (maxOrder + 1);
+        chunkSize = size;
+        log2ChunkSize = log2(chunkSize);
+        maxSubpageAllocs = 0;
+    }
+
+    /**
+     * @return 使用率百分比
+     */
+    int usage() {
+        final int freeBytes = this.freeBytes;
+        if (freeBytes == 0) {
+            return 100;
+        }
+        int freePercentage = (int) (freeBytes * 100L / chunkSize);
+        if (freePercentage == 0) {
+            return 99;
+        }
+        return 100 - freePercentage;
+    }
+
+    /**
+     * 调用方需要持有arena的锁
+     *
+     * @return 是否分配成功
+     */
+    boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int normCapacity, PoolThreadCache threadCache) {
+        final long handle;
+        if ((normCapacity & subpageOverflowMask) != 0) {
+            handle = allocateRun(normCapacity);
+        } else {
+            handle = allocateSubpage(normCapacity);
+        }
+        if (handle < 0) {
+            return false;
+        }
+        initBuf(buf, handle, reqCapacity, threadCache);
+        return true;
+    }
+
+    /**
+     * 分配完节点后更新父节点的值
+     */
+    private void updateParentsAlloc(int id) {
+        while (id > 1) {
+            int parentId = id >>> 1;
+            byte val1 = value(id);
+            byte val2 = value(id ^ 1);
+            byte val = val1 < val2 ? val1 : val2;
+            setValue(parentId, val);
+            id = parentId;
+        }
+    }
+
+    /**
+     * 释放节点后更新父节点的值，两个孩子都完全空闲时父节点也完全空闲
+     */
+    private void updateParentsFree(int id) {
+        int logChild = depth(id) + 1;
+        while (id > 1) {
+            int parentId = id >>> 1;
+            byte val1 = value(id);
+            byte val2 = value(id ^ 1);
+            logChild -= 1;
+            if (val1 == logChild && val2 == logChild) {
+                setValue(parentId, (byte) (logChild - 1));
+            } else {
+                byte val = val1 < val2 ? val1 : val2;
+                setValue(parentId, val);
+            }
+            id = parentId;
+        }
+    }
+
+    /**
+     * 在第d层找一个空闲的节点
+     *
+     * @param d 层数
+     * @return 节点id，-1表示没有
+     */
+    private int allocateNode(int d) {
+        int id = 1;
+        // 第d层节点的id都 >= 2^d，用这个掩码判断是否已经到了第d层
+        int initial = -(1 << d);
+        byte val = value(id);
+        if (val > d) {
+            return -1;
+        }
+        while (val < d || (id & initial) == 0) {
+            id <<= 1;
+            val = value(id);
+            if (val > d) {
+                // 左孩子不够，换成右孩子
+                id ^= 1;
+                val = value(id);
+            }
+        }
+        assert value(id) == d && (id & initial) == 1 << d;
+        setValue(id, unusable);
+        updateParentsAlloc(id);
+        return id;
+    }
+
+    /**
+     * 分配若干个连续的page
+     */
+    private long allocateRun(int normCapacity) {
+        int d = maxOrder - (log2(normCapacity) - pageShifts);
+        int id = allocateNode(d);
+        if (id < 0) {
+            return id;
+        }
+        freeBytes -= runLength(id);
+        return id;
+    }
+
+    /**
+     * 分配一个page交给subpage切分
+     */
+    private long allocateSubpage(int normCapacity) {
+        PoolSubpage<T> head = arena.findSubpagePoolHead(normCapacity);
+        synchronized (head) {
+            int id = allocateNode(maxOrder);
+            if (id < 0) {
+                return id;
+            }
+            freeBytes -= pageSize;
+            int subpageIdx = subpageIdx(id);
+            PoolSubpage<T> subpage = subpages[subpageIdx];
+            if (subpage == null) {
+                subpage = new PoolSubpage<>(head, this, id, runOffset(id), pageSize, normCapacity);
+                subpages[subpageIdx] = subpage;
+            } else {
+                subpage.init(head, normCapacity);
+            }
+            return subpage.allocate();
+        }
+    }
+
+    /**
+     * 释放handle对应的内存，调用方需要持有arena的锁
+     */
+    void free(long handle) {
+        int memoryMapIdx = memoryMapIdx(handle);
+        int bitmapIdx = bitmapIdx(handle);
+        if (bitmapIdx != 0) {
+            PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
+            assert subpage != null && subpage.doNotDestroy;
+            PoolSubpage<T> head = arena.findSubpagePoolHead(subpage.elemSize);
+            synchronized (head) {
+                if (subpage.free(head, bitmapIdx & 0x3FFFFFFF)) {
+                    return;
+                }
+            }
+        }
+        freeBytes += runLength(memoryMapIdx);
+        setValue(memoryMapIdx, depth(memoryMapIdx));
+        updateParentsFree(memoryMapIdx);
+    }
+
+    void initBuf(PooledByteBuf<T> buf, long handle, int reqCapacity, PoolThreadCache threadCache) {
+        int memoryMapIdx = memoryMapIdx(handle);
+        int bitmapIdx = bitmapIdx(handle);
+        if (bitmapIdx == 0) {
+            assert value(memoryMapIdx) == unusable : String.valueOf(value(memoryMapIdx));
+            buf.init(this, handle, runOffset(memoryMapIdx) + offset, reqCapacity, runLength(memoryMapIdx), threadCache);
+        } else {
+            initBufWithSubpage(buf, handle, bitmapIdx, reqCapacity, threadCache);
+        }
+    }
+
+    void initBufWithSubpage(PooledByteBuf<T> buf, long handle, int reqCapacity, PoolThreadCache threadCache) {
+        initBufWithSubpage(buf, handle, bitmapIdx(handle), reqCapacity, threadCache);
+    }
+
+    private void initBufWithSubpage(PooledByteBuf<T> buf, long handle, int bitmapIdx, int reqCapacity, PoolThreadCache threadCache) {
+        assert bitmapIdx != 0;
+        int memoryMapIdx = memoryMapIdx(handle);
+        PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
+        assert subpage.doNotDestroy;
+        assert reqCapacity <= subpage.elemSize;
+        buf.init(this, handle, runOffset(memoryMapIdx) + (bitmapIdx & 0x3FFFFFFF) * subpage.elemSize + offset,
+                reqCapacity, subpage.elemSize, threadCache);
+    }
+
+    private byte value(int id) {
+        return memoryMap[id];
+    }
+
+    private void setValue(int id, byte val) {
+        memoryMap[id] = val;
+    }
+
+    private byte depth(int id) {
+        return depthMap[id];
+    }
+
+    private static int log2(int val) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(val);
+    }
+
+    private int runLength(int id) {
+        return 1 << log2ChunkSize - depth(id);
+    }
+
+    private int runOffset(int id) {
+        // 节点在本层的序号乘以本层节点的大小
+        int shift = id ^ 1 << depth(id);
+        return shift * runLength(id);
+    }
+
+    private int subpageIdx(int memoryMapIdx) {
+        // 去掉最高位就是第maxOrder层的序号
+        return memoryMapIdx ^ maxSubpageAllocs;
+    }
+
+    private static int memoryMapIdx(long handle) {
+        return (int) handle;
+    }
+
+    private static int bitmapIdx(long handle) {
+        return (int) (handle >>> Integer.SIZE);
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Chunk(" + Integer.toHexString(System.identityHashCode(this)) + ": " + usage() + "%, "
+                + (chunkSize - freeBytes) + '/' + chunkSize + ')';
+    }
+}
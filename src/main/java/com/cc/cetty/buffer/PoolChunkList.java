@@ -0,0 +1,170 @@
+package com.cc.cetty.buffer;
+
+/**
+ * 使用率在同一个区间内的chunk组成的链表
+ * 使用率超过上限时移到下一个链表，低于下限时移到上一个链表，都是在arena的锁内完成
+ * 分配时优先从使用率适中的链表中找，让内存尽量集中在少数chunk上，空闲的chunk可以被释放
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+final class PoolChunkList<T> {
+
+    private final PoolArena<T> arena;
+
+    private final PoolChunkList<T> nextList;
+
+    private final int minUsage;
+
+    private final int maxUsage;
+
+    /**
+     * 该链表中的chunk一次最多能分配的大小，超过了就不用遍历
+     */
+    private final int maxCapacity;
+
+    private PoolChunk<T> head;
+
+    private PoolChunkList<T> prevList;
+
+    PoolChunkList(PoolArena<T> arena, PoolChunkList<T> nextList, int minUsage, int maxUsage, int chunkSize) {
+        assert minUsage <= maxUsage;
+        this.arena = arena;
+        this.nextList = nextList;
+        this.minUsage = minUsage;
+        this.maxUsage = maxUsage;
+        maxCapacity = calculateMaxCapacity(minUsage, chunkSize);
+    }
+
+    private static int calculateMaxCapacity(int minUsage, int chunkSize) {
+        minUsage = Math.max(1, minUsage);
+        if (minUsage == 100) {
+            return 0;
+        }
+        return (int) (chunkSize * (100L - minUsage) / 100L);
+    }
+
+    void prevList(PoolChunkList<T> prevList) {
+        assert this.prevList == null;
+        this.prevList = prevList;
+    }
+
+    boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int normCapacity, PoolThreadCache threadCache) {
+        if (normCapacity > maxCapacity) {
+            return false;
+        }
+        for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+            if (cur.allocate(buf, reqCapacity, normCapacity, threadCache)) {
+                if (cur.usage() >= maxUsage) {
+                    remove(cur);
+                    nextList.add(cur);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false表示chunk已经完全空闲，需要销毁
+     */
+    boolean free(PoolChunk<T> chunk, long handle) {
+        chunk.free(handle);
+        if (chunk.usage() < minUsage) {
+            remove(chunk);
+            return move0(chunk);
+        }
+        return true;
+    }
+
+    private boolean move(PoolChunk<T> chunk) {
+        assert chunk.usage() < maxUsage;
+        if (chunk.usage() < minUsage) {
+            return move0(chunk);
+        }
+        add0(chunk);
+        return true;
+    }
+
+    private boolean move0(PoolChunk<T> chunk) {
+        if (prevList == null) {
+            // 已经是第一个链表了，说明chunk完全空闲
+            assert chunk.usage() == 0;
+            return false;
+        }
+        return prevList.move(chunk);
+    }
+
+    void add(PoolChunk<T> chunk) {
+        if (chunk.usage() >= maxUsage) {
+            nextList.add(chunk);
+            return;
+        }
+        add0(chunk);
+    }
+
+    private void add0(PoolChunk<T> chunk) {
+        chunk.parent = this;
+        if (head == null) {
+            head = chunk;
+            chunk.prev = null;
+            chunk.next = null;
+        } else {
+            chunk.prev = null;
+            chunk.next = head;
+            head.prev = chunk;
+            head = chunk;
+        }
+    }
+
+    private void remove(PoolChunk<T> cur) {
+        if (cur == head) {
+            head = cur.next;
+            if (head != null) {
+                head.prev = null;
+            }
+        } else {
+            PoolChunk<T> next = cur.next;
+            cur.prev.next = next;
+            if (next != null) {
+                next.prev = cur.prev;
+            }
+        }
+    }
+
+    /**
+     * @return 链表中chunk的个数
+     */
+    int size() {
+        int size = 0;
+        for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * @return 链表中所有chunk空闲的字节数
+     */
+    long freeBytes() {
+        long freeBytes = 0;
+        for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+            freeBytes += cur.freeBytes;
+        }
+        return freeBytes;
+    }
+
+    void destroy() {
+        PoolChunk<T> chunk = head;
+        while (chunk != null) {
+            arena.destroyChunk(chunk);
+            chunk = chunk.next;
+        }
+        head = null;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkList(" + minUsage + "-" + maxUsage + "%, chunks: " + size() + ')';
+    }
+}
@@ -0,0 +1,186 @@
+package com.cc.cetty.buffer;
+
+/**
+ * 把一个page切成大小相同的小块，用位图记录哪些块已经分配
+ * 相同规格的subpage用双向链表串在arena的subpage池中，链表头是一个不分配内存的哨兵
+ * 所有操作都要持有链表头的锁
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+final class PoolSubpage<T> {
+
+    final PoolChunk<T> chunk;
+
+    /**
+     * 在chunk的二叉树中的节点下标
+     */
+    private final int memoryMapIdx;
+
+    /**
+     * 在chunk中的偏移
+     */
+    private final int runOffset;
+
+    private final int pageSize;
+
+    private final long[] bitmap;
+
+    PoolSubpage<T> prev;
+
+    PoolSubpage<T> next;
+
+    /**
+     * 为false表示该subpage已经从池中移除，不能再分配
+     */
+    boolean doNotDestroy;
+
+    int elemSize;
+
+    private int maxNumElems;
+
+    private int bitmapLength;
+
+    /**
+     * 刚释放的块的下标，下次分配优先使用，-1表示需要扫描位图
+     */
+    private int nextAvail;
+
+    private int numAvail;
+
+    /**
+     * 创建链表头
+     *
+     * @param pageSize page size
+     */
+    PoolSubpage(int pageSize) {
+        chunk = null;
+        memoryMapIdx = -1;
+        runOffset = -1;
+        elemSize = -1;
+        this.pageSize = pageSize;
+        bitmap = null;
+        prev = this;
+        next = this;
+    }
+
+    PoolSubpage(PoolSubpage<T> head, PoolChunk<T> chunk, int memoryMapIdx, int runOffset, int pageSize, int elemSize) {
+        this.chunk = chunk;
+        this.memoryMapIdx = memoryMapIdx;
+        this.runOffset = runOffset;
+        this.pageSize = pageSize;
+        // 最小的块是16字节，一个long记录64个块
+        bitmap = new long[pageSize >>> 10];
+        init(head, elemSize);
+    }
+
+    void init(PoolSubpage<T> head, int elemSize) {
+        doNotDestroy = true;
+        this.elemSize = elemSize;
+        maxNumElems = numAvail = pageSize / elemSize;
+        nextAvail = 0;
+        bitmapLength = maxNumElems >>> 6;
+        if ((maxNumElems & 63) != 0) {
+            bitmapLength++;
+        }
+        for (int i = 0; i < bitmapLength; i++) {
+            bitmap[i] = 0;
+        }
+        addToPool(head);
+    }
+
+    /**
+     * @return 分配的handle，-1表示没有空闲的块
+     */
+    long allocate() {
+        if (numAvail == 0 || !doNotDestroy) {
+            return -1;
+        }
+        final int bitmapIdx = getNextAvail();
+        int q = bitmapIdx >>> 6;
+        int r = bitmapIdx & 63;
+        assert (bitmap[q] >>> r & 1) == 0;
+        bitmap[q] |= 1L << r;
+        if (--numAvail == 0) {
+            // 满了就从池中移除，分配时不用再看它
+            removeFromPool();
+        }
+        return toHandle(bitmapIdx);
+    }
+
+    /**
+     * @return true表示subpage还在使用，false表示所有块都释放了，可以把整个page还给chunk
+     */
+    boolean free(PoolSubpage<T> head, int bitmapIdx) {
+        int q = bitmapIdx >>> 6;
+        int r = bitmapIdx & 63;
+        assert (bitmap[q] >>> r & 1) != 0;
+        bitmap[q] ^= 1L << r;
+        nextAvail = bitmapIdx;
+        if (numAvail++ == 0) {
+            // 从满变成不满，重新放回池中
+            addToPool(head);
+            return true;
+        }
+        if (numAvail != maxNumElems) {
+            return true;
+        }
+        if (prev == next) {
+            // 池中只剩它一个，保留下来，避免反复创建
+            return true;
+        }
+        doNotDestroy = false;
+        removeFromPool();
+        return false;
+    }
+
+    private void addToPool(PoolSubpage<T> head) {
+        assert prev == null && next == null || prev == this && next == this || prev != null && next != null;
+        prev = head;
+        next = head.next;
+        next.prev = this;
+        head.next = this;
+    }
+
+    private void removeFromPool() {
+        prev.next = next;
+        next.prev = prev;
+        next = null;
+        prev = null;
+    }
+
+    private int getNextAvail() {
+        int nextAvail = this.nextAvail;
+        if (nextAvail >= 0) {
+            this.nextAvail = -1;
+            return nextAvail;
+        }
+        return findNextAvail();
+    }
+
+    private int findNextAvail() {
+        for (int i = 0; i < bitmapLength; i++) {
+            long bits = bitmap[i];
+            if (~bits != 0) {
+                int j = Long.numberOfTrailingZeros(~bits);
+                int val = i << 6 | j;
+                if (val < maxNumElems) {
+                    return val;
+                }
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 高位的标志位用来区分handle指向的是subpage还是整个run，因为bitmapIdx可能是0
+     */
+    private long toHandle(int bitmapIdx) {
+        return 0x4000000000000000L | (long) bitmapIdx << 32 | memoryMapIdx;
+    }
+
+    int runOffset() {
+        return runOffset;
+    }
+}
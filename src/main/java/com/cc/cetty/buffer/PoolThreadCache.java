@@ -0,0 +1,379 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.recycler.Recycler;
+import com.cc.cetty.utils.MpscArrayQueue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 线程私有的内存缓存，存放在FastThreadLocal中
+ * 释放的内存先放进分配它的线程的缓存，同一个线程再分配相同规格时直接取出，不需要加锁访问arena
+ * 其他线程释放的内存也放进分配线程的缓存，所以缓存队列是多生产者单消费者的
+ * 每分配freeSweepAllocationThreshold次检查一次，把这段时间没用上的缓存还给arena
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+@Slf4j
+final class PoolThreadCache {
+
+    final PoolArena<byte[]> heapArena;
+
+    final PoolArena<ByteBuffer> directArena;
+
+    private final MemoryRegionCache<byte[]>[] tinySubPageHeapCaches;
+
+    private final MemoryRegionCache<byte[]>[] smallSubPageHeapCaches;
+
+    private final MemoryRegionCache<byte[]>[] normalHeapCaches;
+
+    private final MemoryRegionCache<ByteBuffer>[] tinySubPageDirectCaches;
+
+    private final MemoryRegionCache<ByteBuffer>[] smallSubPageDirectCaches;
+
+    private final MemoryRegionCache<ByteBuffer>[] normalDirectCaches;
+
+    private final int numShiftsNormalHeap;
+
+    private final int numShiftsNormalDirect;
+
+    private final int freeSweepAllocationThreshold;
+
+    private final AtomicBoolean freed = new AtomicBoolean();
+
+    /**
+     * 只在所属线程上修改
+     */
+    private int allocations;
+
+    PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
+                    int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                    int maxCachedBufferCapacity, int freeSweepAllocationThreshold) {
+        this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
+        this.heapArena = heapArena;
+        this.directArena = directArena;
+        if (Objects.nonNull(directArena)) {
+            tinySubPageDirectCaches = createSubPageCaches(tinyCacheSize, PoolArena.NUM_TINY_SUBPAGE_POOLS, PoolArena.SizeClass.Tiny);
+            smallSubPageDirectCaches = createSubPageCaches(smallCacheSize, directArena.numSmallSubpagePools, PoolArena.SizeClass.Small);
+            numShiftsNormalDirect = log2(directArena.pageSize);
+            normalDirectCaches = createNormalCaches(normalCacheSize, maxCachedBufferCapacity, directArena);
+            directArena.numThreadCaches.getAndIncrement();
+        } else {
+            tinySubPageDirectCaches = null;
+            smallSubPageDirectCaches = null;
+            normalDirectCaches = null;
+            numShiftsNormalDirect = -1;
+        }
+        if (Objects.nonNull(heapArena)) {
+            tinySubPageHeapCaches = createSubPageCaches(tinyCacheSize, PoolArena.NUM_TINY_SUBPAGE_POOLS, PoolArena.SizeClass.Tiny);
+            smallSubPageHeapCaches = createSubPageCaches(smallCacheSize, heapArena.numSmallSubpagePools, PoolArena.SizeClass.Small);
+            numShiftsNormalHeap = log2(heapArena.pageSize);
+            normalHeapCaches = createNormalCaches(normalCacheSize, maxCachedBufferCapacity, heapArena);
+            heapArena.numThreadCaches.getAndIncrement();
+        } else {
+            tinySubPageHeapCaches = null;
+            smallSubPageHeapCaches = null;
+            normalHeapCaches = null;
+            numShiftsNormalHeap = -1;
+        }
+        if ((tinySubPageDirectCaches != null || smallSubPageDirectCaches != null || normalDirectCaches != null
+                || tinySubPageHeapCaches != null || smallSubPageHeapCaches != null || normalHeapCaches != null)
+                && freeSweepAllocationThreshold < 1) {
+            throw new IllegalArgumentException("freeSweepAllocationThreshold: " + freeSweepAllocationThreshold + " (expected: > 0)");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MemoryRegionCache<T>[] createSubPageCaches(int cacheSize, int numCaches, PoolArena.SizeClass sizeClass) {
+        if (cacheSize <= 0 || numCaches <= 0) {
+            return null;
+        }
+        MemoryRegionCache<T>[] cache = new MemoryRegionCache[numCaches];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new MemoryRegionCache<>(cacheSize, sizeClass);
+        }
+        return cache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MemoryRegionCache<T>[] createNormalCaches(int cacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
+        if (cacheSize <= 0 || maxCachedBufferCapacity <= 0) {
+            return null;
+        }
+        // 只缓存不超过maxCachedBufferCapacity的normal内存，每个2的幂一个槽位
+        int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
+        int arraySize = Math.max(1, log2(max / area.pageSize) + 1);
+        MemoryRegionCache<T>[] cache = new MemoryRegionCache[arraySize];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new MemoryRegionCache<>(cacheSize, PoolArena.SizeClass.Normal);
+        }
+        return cache;
+    }
+
+    private static int log2(int val) {
+        int res = 0;
+        while (val > 1) {
+            val >>= 1;
+            res++;
+        }
+        return res;
+    }
+
+    boolean allocateTiny(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
+        return allocate(cacheForTiny(area, normCapacity), buf, reqCapacity);
+    }
+
+    boolean allocateSmall(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
+        return allocate(cacheForSmall(area, normCapacity), buf, reqCapacity);
+    }
+
+    boolean allocateNormal(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
+        return allocate(cacheForNormal(area, normCapacity), buf, reqCapacity);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private boolean allocate(MemoryRegionCache<?> cache, PooledByteBuf buf, int reqCapacity) {
+        if (Objects.isNull(cache)) {
+            return false;
+        }
+        boolean allocated = cache.allocate(buf, reqCapacity, this);
+        if (++allocations >= freeSweepAllocationThreshold) {
+            allocations = 0;
+            trim();
+        }
+        return allocated;
+    }
+
+    /**
+     * 把释放的内存放进缓存，可能在任何线程调用
+     * 检查freed和放进队列之间所属线程可能已经执行完free，这时队列里的内存没有人会再取出，放进去之后再检查一次，由当前线程还给arena
+     *
+     * @return 缓存满了或者已经释放时返回false，由调用方还给arena
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    boolean add(PoolArena<?> area, PoolChunk chunk, long handle, int normCapacity, PoolArena.SizeClass sizeClass) {
+        if (freed.get()) {
+            return false;
+        }
+        MemoryRegionCache<?> cache = cache(area, normCapacity, sizeClass);
+        if (Objects.isNull(cache) || !cache.add(chunk, handle)) {
+            return false;
+        }
+        if (freed.get()) {
+            cache.free(Integer.MAX_VALUE);
+        }
+        return true;
+    }
+
+    private MemoryRegionCache<?> cache(PoolArena<?> area, int normCapacity, PoolArena.SizeClass sizeClass) {
+        switch (sizeClass) {
+            case Normal:
+                return cacheForNormal(area, normCapacity);
+            case Small:
+                return cacheForSmall(area, normCapacity);
+            case Tiny:
+                return cacheForTiny(area, normCapacity);
+            default:
+                throw new Error();
+        }
+    }
+
+    /**
+     * 线程退出时调用，把缓存的内存全部还给arena
+     */
+    void free() {
+        if (!freed.compareAndSet(false, true)) {
+            return;
+        }
+        int numFreed = free(tinySubPageDirectCaches) + free(smallSubPageDirectCaches) + free(normalDirectCaches)
+                + free(tinySubPageHeapCaches) + free(smallSubPageHeapCaches) + free(normalHeapCaches);
+        if (numFreed > 0) {
+            log.debug("Freed {} thread-local buffer(s) from thread: {}", numFreed, Thread.currentThread().getName());
+        }
+        if (Objects.nonNull(directArena)) {
+            directArena.numThreadCaches.getAndDecrement();
+        }
+        if (Objects.nonNull(heapArena)) {
+            heapArena.numThreadCaches.getAndDecrement();
+        }
+    }
+
+    private static int free(MemoryRegionCache<?>[] caches) {
+        if (Objects.isNull(caches)) {
+            return 0;
+        }
+        int numFreed = 0;
+        for (MemoryRegionCache<?> c : caches) {
+            numFreed += c.free(Integer.MAX_VALUE);
+        }
+        return numFreed;
+    }
+
+    void trim() {
+        trim(tinySubPageDirectCaches);
+        trim(smallSubPageDirectCaches);
+        trim(normalDirectCaches);
+        trim(tinySubPageHeapCaches);
+        trim(smallSubPageHeapCaches);
+        trim(normalHeapCaches);
+    }
+
+    private static void trim(MemoryRegionCache<?>[] caches) {
+        if (Objects.isNull(caches)) {
+            return;
+        }
+        for (MemoryRegionCache<?> c : caches) {
+            c.trim();
+        }
+    }
+
+    private MemoryRegionCache<?> cacheForTiny(PoolArena<?> area, int normCapacity) {
+        int idx = PoolArena.tinyIdx(normCapacity);
+        if (area.isDirect()) {
+            return cache(tinySubPageDirectCaches, idx);
+        }
+        return cache(tinySubPageHeapCaches, idx);
+    }
+
+    private MemoryRegionCache<?> cacheForSmall(PoolArena<?> area, int normCapacity) {
+        int idx = PoolArena.smallIdx(normCapacity);
+        if (area.isDirect()) {
+            return cache(smallSubPageDirectCaches, idx);
+        }
+        return cache(smallSubPageHeapCaches, idx);
+    }
+
+    private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int normCapacity) {
+        if (area.isDirect()) {
+            int idx = log2(normCapacity >> numShiftsNormalDirect);
+            return cache(normalDirectCaches, idx);
+        }
+        int idx = log2(normCapacity >> numShiftsNormalHeap);
+        return cache(normalHeapCaches, idx);
+    }
+
+    private static <T> MemoryRegionCache<T> cache(MemoryRegionCache<T>[] cache, int idx) {
+        if (Objects.isNull(cache) || idx > cache.length - 1) {
+            return null;
+        }
+        return cache[idx];
+    }
+
+    /**
+     * 同一规格的缓存
+     */
+    private static final class MemoryRegionCache<T> {
+
+        private final int size;
+
+        private final MpscArrayQueue<Entry<T>> queue;
+
+        private final PoolArena.SizeClass sizeClass;
+
+        /**
+         * 两次trim之间从该缓存分配的次数
+         */
+        private int allocations;
+
+        MemoryRegionCache(int size, PoolArena.SizeClass sizeClass) {
+            this.queue = new MpscArrayQueue<>(size);
+            this.size = queue.capacity();
+            this.sizeClass = sizeClass;
+        }
+
+        boolean add(PoolChunk<T> chunk, long handle) {
+            Entry<T> entry = Entry.newInstance(chunk, handle);
+            if (!queue.offer(entry)) {
+                entry.recycle();
+                return false;
+            }
+            return true;
+        }
+
+        boolean allocate(PooledByteBuf<T> buf, int reqCapacity, PoolThreadCache threadCache) {
+            Entry<T> entry = queue.poll();
+            if (Objects.isNull(entry)) {
+                return false;
+            }
+            entry.chunk.initBuf(buf, entry.handle, reqCapacity, threadCache);
+            entry.recycle();
+            ++allocations;
+            return true;
+        }
+
+        /**
+         * 队列只允许一个消费者，释放之后放进来的内存由放入的线程清空，可能和free()同时进行，所以加锁
+         * 释放之前只有所属线程在这里和allocate中消费，锁没有竞争
+         */
+        synchronized int free(int max) {
+            int numFreed = 0;
+            for (; numFreed < max; numFreed++) {
+                Entry<T> entry = queue.poll();
+                if (Objects.isNull(entry)) {
+                    break;
+                }
+                PoolChunk<T> chunk = entry.chunk;
+                long handle = entry.handle;
+                entry.recycle();
+                chunk.arena.freeChunk(chunk, handle);
+            }
+            return numFreed;
+        }
+
+        /**
+         * 这段时间用得少的缓存，把多出来的还给arena
+         */
+        void trim() {
+            int free = size - allocations;
+            allocations = 0;
+            if (free > 0) {
+                free(free);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryRegionCache(" + sizeClass + ", " + queue.size() + '/' + size + ')';
+        }
+    }
+
+    /**
+     * 缓存中的一段内存，通过Recycler复用，放进缓存时不产生新的对象
+     */
+    private static final class Entry<T> {
+
+        private static final Recycler<Entry<?>> RECYCLER = new Recycler<>() {
+            @Override
+            protected Entry<?> newObject(Handle<Entry<?>> handle) {
+                return new Entry<>(handle);
+            }
+        };
+
+        private final Recycler.Handle<Entry<?>> recyclerHandle;
+
+        PoolChunk<T> chunk;
+
+        long handle = -1;
+
+        private Entry(Recycler.Handle<Entry<?>> recyclerHandle) {
+            this.recyclerHandle = recyclerHandle;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Entry<T> newInstance(PoolChunk<T> chunk, long handle) {
+            Entry<T> entry = (Entry<T>) RECYCLER.get();
+            entry.chunk = chunk;
+            entry.handle = handle;
+            return entry;
+        }
+
+        void recycle() {
+            chunk = null;
+            handle = -1;
+            recyclerHandle.recycle(this);
+        }
+    }
+}
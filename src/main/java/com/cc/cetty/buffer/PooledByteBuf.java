@@ -0,0 +1,150 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.recycler.Recycler;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 池化的buf，指向chunk中从offset开始的一段内存
+ * length是当前容量，maxLength是这段内存实际的大小，扩容不超过maxLength时不需要重新分配
+ * buf对象本身也是池化的，释放后回收到Recycler中，下次分配时重新初始化
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
+
+    protected PoolChunk<T> chunk;
+
+    protected long handle;
+
+    protected T memory;
+
+    protected int offset;
+
+    protected int length;
+
+    int maxLength;
+
+    /**
+     * 分配该内存的线程的缓存，释放时优先还给它
+     */
+    PoolThreadCache cache;
+
+    /**
+     * 和channel交互时使用的ByteBuffer，指向整个chunk，避免每次创建
+     */
+    ByteBuffer tmpNioBuf;
+
+    private ByteBufAllocator allocator;
+
+    private final Recycler.Handle<PooledByteBuf<T>> recyclerHandle;
+
+    @SuppressWarnings("unchecked")
+    protected PooledByteBuf(Recycler.Handle<? extends PooledByteBuf<T>> recyclerHandle, int maxCapacity) {
+        super(maxCapacity);
+        this.recyclerHandle = (Recycler.Handle<PooledByteBuf<T>>) recyclerHandle;
+    }
+
+    void init(PoolChunk<T> chunk, long handle, int offset, int length, int maxLength, PoolThreadCache cache) {
+        init0(chunk, handle, offset, length, maxLength, cache);
+    }
+
+    void initUnpooled(PoolChunk<T> chunk, int length) {
+        init0(chunk, 0, chunk.offset, length, length, null);
+    }
+
+    private void init0(PoolChunk<T> chunk, long handle, int offset, int length, int maxLength, PoolThreadCache cache) {
+        assert handle >= 0;
+        assert chunk != null;
+        this.chunk = chunk;
+        memory = chunk.memory;
+        tmpNioBuf = null;
+        allocator = chunk.arena.parent;
+        this.cache = cache;
+        this.handle = handle;
+        this.offset = offset;
+        this.length = length;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * 从Recycler中取出后调用，恢复成新分配的状态
+     */
+    final void reuse(int maxCapacity) {
+        maxCapacity(maxCapacity);
+        resetRefCnt();
+        setIndex0(0, 0);
+    }
+
+    @Override
+    public final int capacity() {
+        return length;
+    }
+
+    @Override
+    public final ByteBuf capacity(int newCapacity) {
+        if (newCapacity == length) {
+            ensureAccessible();
+            return this;
+        }
+        if (newCapacity < 0 || newCapacity > maxCapacity()) {
+            throw new IllegalArgumentException("newCapacity: " + newCapacity + " (expected: 0-" + maxCapacity() + ')');
+        }
+        ensureAccessible();
+        if (!chunk.unpooled) {
+            if (newCapacity > length) {
+                // 实际分配的内存够用，直接调整容量
+                if (newCapacity <= maxLength) {
+                    length = newCapacity;
+                    return this;
+                }
+            } else if (newCapacity > maxLength >>> 1 && (maxLength > 512 || newCapacity > maxLength - 16)) {
+                // 缩容不多时也不重新分配
+                length = newCapacity;
+                trimIndicesToCapacity(newCapacity);
+                return this;
+            }
+        }
+        chunk.arena.reallocate(this, newCapacity, true);
+        return this;
+    }
+
+    @Override
+    public final ByteBufAllocator alloc() {
+        return allocator;
+    }
+
+    protected final int idx(int index) {
+        return offset + index;
+    }
+
+    protected abstract ByteBuffer newInternalNioBuffer(T memory);
+
+    @Override
+    public final ByteBuffer internalNioBuffer(int index, int length) {
+        checkIndex(index, length);
+        ByteBuffer tmp = tmpNioBuf;
+        if (Objects.isNull(tmp)) {
+            tmpNioBuf = tmp = newInternalNioBuffer(memory);
+        }
+        index = idx(index);
+        tmp.clear().position(index).limit(index + length);
+        return tmp;
+    }
+
+    @Override
+    protected final void deallocate() {
+        if (handle >= 0) {
+            final long handle = this.handle;
+            this.handle = -1;
+            memory = null;
+            tmpNioBuf = null;
+            chunk.arena.free(chunk, handle, maxLength, cache);
+            chunk = null;
+            cache = null;
+            recyclerHandle.recycle(this);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.config.CettyConfig;
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.local.FastThreadLocalAccess;
+import com.cc.cetty.metrics.AllocatorMetricsSnapshot;
+import com.cc.cetty.metrics.ArenaMetricsSnapshot;
+import com.cc.cetty.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 池化的分配器，参考jemalloc
+ * 内存分成若干个arena，每个线程绑定到一个arena上，并且在FastThreadLocal中持有自己的缓存
+ * 常见的分配和释放都命中线程缓存，不需要加锁；缓存没有命中时才锁住arena
+ * 内存的组织见PoolArena、PoolChunk和PoolSubpage
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+@Slf4j
+public class PooledByteBufAllocator extends AbstractByteBufAllocator {
+
+    private static final int DEFAULT_PAGE_SIZE = Integer.getInteger("cetty.allocator.pageSize", 8192);
+
+    /**
+     * 8192 << 11 = 16MiB per chunk
+     */
+    private static final int DEFAULT_MAX_ORDER = Integer.getInteger("cetty.allocator.maxOrder", 11);
+
+    private static final int DEFAULT_NUM_HEAP_ARENA;
+
+    private static final int DEFAULT_NUM_DIRECT_ARENA;
+
+    private static final int DEFAULT_TINY_CACHE_SIZE = Integer.getInteger("cetty.allocator.tinyCacheSize", 512);
+
+    private static final int DEFAULT_SMALL_CACHE_SIZE = Integer.getInteger("cetty.allocator.smallCacheSize", 256);
+
+    private static final int DEFAULT_NORMAL_CACHE_SIZE = Integer.getInteger("cetty.allocator.normalCacheSize", 64);
+
+    /**
+     * 线程缓存的normal内存的上限，更大的内存直接还给arena
+     */
+    private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY = Integer.getInteger("cetty.allocator.maxCachedBufferCapacity", 32 * 1024);
+
+    /**
+     * 线程缓存每分配这么多次检查一次，把没用上的缓存还给arena
+     */
+    private static final int DEFAULT_CACHE_TRIM_INTERVAL = Integer.getInteger("cetty.allocator.cacheTrimInterval", 8192);
+
+    /**
+     * 是否所有线程都使用缓存，为false时只有FastThreadLocalThread这类会在退出时清理的线程使用
+     */
+    private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS = Boolean.parseBoolean(System.getProperty("cetty.allocator.useCacheForAllThreads", "true"));
+
+    private static final int MIN_PAGE_SIZE = 4096;
+
+    private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
+
+    /**
+     * 普通线程不会调用FastThreadLocal.removeAll，线程被回收后由cleaner释放它的缓存
+     */
+    private static final Cleaner CACHE_CLEANER = Cleaner.create();
+
+    static {
+        int defaultPageSize = DEFAULT_PAGE_SIZE;
+        int defaultChunkSize = defaultPageSize << DEFAULT_MAX_ORDER;
+        final Runtime runtime = Runtime.getRuntime();
+        // 默认arena个数是cpu核数的两倍，和事件循环的默认线程数一样，保证每个arena的chunk最多占用1/3的内存
+        final int defaultMinNumArena = runtime.availableProcessors() * 2;
+        DEFAULT_NUM_HEAP_ARENA = Math.max(0, Integer.getInteger("cetty.allocator.numHeapArenas",
+                (int) Math.min(defaultMinNumArena, runtime.maxMemory() / defaultChunkSize / 2 / 3)));
+        DEFAULT_NUM_DIRECT_ARENA = Math.max(0, Integer.getInteger("cetty.allocator.numDirectArenas",
+                (int) Math.min(defaultMinNumArena, runtime.maxMemory() / defaultChunkSize / 2 / 3)));
+        log.debug("-Dcetty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
+        log.debug("-Dcetty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
+        log.debug("-Dcetty.allocator.pageSize: {}", DEFAULT_PAGE_SIZE);
+        log.debug("-Dcetty.allocator.maxOrder: {}", DEFAULT_MAX_ORDER);
+        log.debug("-Dcetty.allocator.chunkSize: {}", defaultChunkSize);
+    }
+
+    /**
+     * 默认分配器在类加载时创建，arena个数直接取系统属性，不经过ConfigRepository，CettyConfig的默认值本身就来自这里
+     */
+    public static final PooledByteBufAllocator DEFAULT = new PooledByteBufAllocator(true, DEFAULT_NUM_HEAP_ARENA, DEFAULT_NUM_DIRECT_ARENA,
+            DEFAULT_PAGE_SIZE, DEFAULT_MAX_ORDER);
+
+    static {
+        MetricsRegistry.registerAllocator("default", DEFAULT::metrics);
+    }
+
+    private final PoolArena<byte[]>[] heapArenas;
+
+    private final PoolArena<ByteBuffer>[] directArenas;
+
+    private final int tinyCacheSize;
+
+    private final int smallCacheSize;
+
+    private final int normalCacheSize;
+
+    private final int chunkSize;
+
+    private final boolean useCacheForAllThreads;
+
+    private final PoolThreadLocalCache threadCache;
+
+    /**
+     * @return 默认的heap arena个数
+     */
+    public static int defaultNumHeapArena() {
+        return DEFAULT_NUM_HEAP_ARENA;
+    }
+
+    /**
+     * @return 默认的direct arena个数
+     */
+    public static int defaultNumDirectArena() {
+        return DEFAULT_NUM_DIRECT_ARENA;
+    }
+
+    /**
+     * arena个数取ConfigRepository.DEFAULT当前配置的numHeapArenas和numDirectArenas
+     *
+     * @param preferDirect 是否优先分配直接内存
+     */
+    public PooledByteBufAllocator(boolean preferDirect) {
+        this(preferDirect, ConfigRepository.DEFAULT.current());
+    }
+
+    /**
+     * @param preferDirect 是否优先分配直接内存
+     * @param config       arena个数取自这份配置，已经创建的分配器不会随配置调整
+     */
+    public PooledByteBufAllocator(boolean preferDirect, CettyConfig config) {
+        this(preferDirect, config.numHeapArenas(), config.numDirectArenas(), DEFAULT_PAGE_SIZE, DEFAULT_MAX_ORDER);
+    }
+
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                DEFAULT_TINY_CACHE_SIZE, DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE, DEFAULT_USE_CACHE_FOR_ALL_THREADS);
+    }
+
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize, boolean useCacheForAllThreads) {
+        super(preferDirect);
+        if (nHeapArena < 0 || nDirectArena < 0) {
+            throw new IllegalArgumentException("nHeapArena: " + nHeapArena + ", nDirectArena: " + nDirectArena + " (expected: >= 0)");
+        }
+        this.tinyCacheSize = tinyCacheSize;
+        this.smallCacheSize = smallCacheSize;
+        this.normalCacheSize = normalCacheSize;
+        this.useCacheForAllThreads = useCacheForAllThreads;
+        this.threadCache = new PoolThreadLocalCache();
+        int pageShifts = validateAndCalculatePageShifts(pageSize);
+        this.chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
+
+        heapArenas = newArenaArray(nHeapArena);
+        for (int i = 0; i < nHeapArena; i++) {
+            heapArenas[i] = new PoolArena.HeapArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+        directArenas = newArenaArray(nDirectArena);
+        for (int i = 0; i < nDirectArena; i++) {
+            directArenas[i] = new PoolArena.DirectArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> PoolArena<T>[] newArenaArray(int size) {
+        return size == 0 ? null : new PoolArena[size];
+    }
+
+    private static int validateAndCalculatePageShifts(int pageSize) {
+        if (pageSize < MIN_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize: " + pageSize + " (expected: " + MIN_PAGE_SIZE + ")");
+        }
+        if ((pageSize & pageSize - 1) != 0) {
+            throw new IllegalArgumentException("pageSize: " + pageSize + " (expected: power of 2)");
+        }
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(pageSize);
+    }
+
+    private static int validateAndCalculateChunkSize(int pageSize, int maxOrder) {
+        if (maxOrder > 14) {
+            throw new IllegalArgumentException("maxOrder: " + maxOrder + " (expected: 0-14)");
+        }
+        int chunkSize = pageSize;
+        for (int i = maxOrder; i > 0; i--) {
+            if (chunkSize > MAX_CHUNK_SIZE / 2) {
+                throw new IllegalArgumentException(String.format("pageSize (%d) << maxOrder (%d) must not exceed %d", pageSize, maxOrder, MAX_CHUNK_SIZE));
+            }
+            chunkSize <<= 1;
+        }
+        return chunkSize;
+    }
+
+    @Override
+    protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        PoolThreadCache cache = threadCache.get();
+        PoolArena<byte[]> heapArena = cache.heapArena;
+        if (Objects.nonNull(heapArena)) {
+            return heapArena.allocate(cache, initialCapacity, maxCapacity);
+        }
+        return new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity);
+    }
+
+    @Override
+    protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        PoolThreadCache cache = threadCache.get();
+        PoolArena<ByteBuffer> directArena = cache.directArena;
+        if (Objects.nonNull(directArena)) {
+            return directArena.allocate(cache, initialCapacity, maxCapacity);
+        }
+        return new UnpooledDirectByteBuf(this, initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return Objects.nonNull(directArenas);
+    }
+
+    /**
+     * @return 当前线程的缓存
+     */
+    final PoolThreadCache threadCache() {
+        return threadCache.get();
+    }
+
+    /**
+     * 释放当前线程的缓存，把缓存的内存还给arena
+     */
+    public void freeThreadLocalCache() {
+        threadCache.remove();
+    }
+
+    /**
+     * 把当前线程缓存中这段时间没用上的内存还给arena
+     */
+    public void trimCurrentThreadCache() {
+        PoolThreadCache cache = threadCache.getIfExists();
+        if (Objects.nonNull(cache)) {
+            cache.trim();
+        }
+    }
+
+    public int numHeapArenas() {
+        return Objects.isNull(heapArenas) ? 0 : heapArenas.length;
+    }
+
+    public int numDirectArenas() {
+        return Objects.isNull(directArenas) ? 0 : directArenas.length;
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return 所有heap arena的chunk占用的内存
+     */
+    public long usedHeapMemory() {
+        return usedMemory(heapArenas);
+    }
+
+    /**
+     * @return 所有direct arena的chunk占用的内存
+     */
+    public long usedDirectMemory() {
+        return usedMemory(directArenas);
+    }
+
+    /**
+     * @return 所有arena的快照，可以通过MetricsRegistry.registerAllocator注册
+     */
+    public AllocatorMetricsSnapshot metrics() {
+        return new AllocatorMetricsSnapshot(chunkSize, metrics(heapArenas), metrics(directArenas));
+    }
+
+    private static List<ArenaMetricsSnapshot> metrics(PoolArena<?>[] arenas) {
+        if (Objects.isNull(arenas)) {
+            return Collections.emptyList();
+        }
+        List<ArenaMetricsSnapshot> metrics = new ArrayList<>(arenas.length);
+        for (PoolArena<?> arena : arenas) {
+            metrics.add(arena.metrics());
+        }
+        return metrics;
+    }
+
+    private static long usedMemory(PoolArena<?>[] arenas) {
+        if (Objects.isNull(arenas)) {
+            return 0;
+        }
+        long used = 0;
+        for (PoolArena<?> arena : arenas) {
+            used += arena.usedMemory();
+        }
+        return used;
+    }
+
+    /**
+     * 每个线程第一次分配时创建缓存，选择绑定线程最少的arena
+     * 缓存是persistent的，跟着线程一直保留，普通线程上每个缓存都挂着一个cleaner
+     */
+    private final class PoolThreadLocalCache extends FastThreadLocal<PoolThreadCache> {
+
+        private PoolThreadLocalCache() {
+            super(false, true);
+        }
+
+        @Override
+        protected PoolThreadCache initialValue() {
+            final PoolArena<byte[]> heapArena = leastUsedArena(heapArenas);
+            final PoolArena<ByteBuffer> directArena = leastUsedArena(directArenas);
+            final Thread current = Thread.currentThread();
+            if (!useCacheForAllThreads && !(current instanceof FastThreadLocalAccess)) {
+                // 不缓存，只绑定arena
+                return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0);
+            }
+            PoolThreadCache cache = new PoolThreadCache(heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
+                    DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
+            if (!(current instanceof FastThreadLocalAccess)) {
+                CACHE_CLEANER.register(current, cache::free);
+            }
+            return cache;
+        }
+
+        @Override
+        protected void onRemoval(PoolThreadCache threadCache) {
+            threadCache.free();
+        }
+
+        private <T> PoolArena<T> leastUsedArena(PoolArena<T>[] arenas) {
+            if (Objects.isNull(arenas) || arenas.length == 0) {
+                return null;
+            }
+            PoolArena<T> minArena = arenas[0];
+            for (int i = 1; i < arenas.length; i++) {
+                PoolArena<T> arena = arenas[i];
+                if (arena.numThreadCaches.get() < minArena.numThreadCaches.get()) {
+                    minArena = arena;
+                }
+            }
+            return minArena;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * 只读的内存映射文件，文件内容不用读到用户态的buf里，写socket时内核直接从page cache拷贝
+ * 创建后整个文件都是可读的，释放时主动解除映射，不用等GC
+ * 映射建立之后和FileChannel无关，关闭FileChannel不影响读取
+ *
+ * @author: cc
+ * @date: 2023/12/10
+ **/
+public final class ReadOnlyMappedByteBuf extends AbstractReferenceCountedByteBuf {
+
+    private final ByteBufAllocator alloc;
+
+    private final int capacity;
+
+    private MappedByteBuffer buffer;
+
+    private ByteBuffer tmpNioBuf;
+
+    private ReadOnlyMappedByteBuf(ByteBufAllocator alloc, MappedByteBuffer buffer) {
+        super(buffer.remaining());
+        this.alloc = alloc;
+        this.buffer = buffer;
+        this.capacity = buffer.remaining();
+        setIndex0(0, capacity);
+    }
+
+    /**
+     * @param channel  文件
+     * @param position 映射的起始位置
+     * @param length   映射的长度
+     * @return 映射的buf
+     * @throws IOException 映射失败
+     */
+    public static ReadOnlyMappedByteBuf map(FileChannel channel, long position, int length) throws IOException {
+        AssertUtils.checkNotNull(channel, "Channel cannot be null");
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException(String.format("position: %d, length: %d (expected: >= 0)", position, length));
+        }
+        return new ReadOnlyMappedByteBuf(UnpooledByteBufAllocator.DEFAULT, channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+    }
+
+    /**
+     * 映射整个文件
+     *
+     * @param path 文件路径
+     * @return 映射的buf
+     * @throws IOException 映射失败
+     */
+    public static ReadOnlyMappedByteBuf map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File is too large to map: " + path + " (" + size + " bytes)");
+            }
+            return map(channel, 0, (int) size);
+        }
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+        return alloc;
+    }
+
+    @Override
+    public boolean isDirect() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    public boolean hasArray() {
+        return false;
+    }
+
+    @Override
+    public byte[] array() {
+        throw new UnsupportedOperationException("mapped buffer");
+    }
+
+    @Override
+    public int arrayOffset() {
+        throw new UnsupportedOperationException("mapped buffer");
+    }
+
+    @Override
+    protected byte _getByte(int index) {
+        return buffer.get(index);
+    }
+
+    @Override
+    protected short _getShort(int index) {
+        return buffer.getShort(index);
+    }
+
+    @Override
+    protected int _getInt(int index) {
+        return buffer.getInt(index);
+    }
+
+    @Override
+    protected long _getLong(int index) {
+        return buffer.getLong(index);
+    }
+
+    @Override
+    protected void _setByte(int index, int value) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    protected void _setShort(int index, int value) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    protected void _setInt(int index, int value) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    protected void _setLong(int index, long value) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkDstIndex(index, length, dstIndex, dst.length);
+        ByteBuffer tmp = buffer.duplicate();
+        tmp.position(index).limit(index + length);
+        tmp.get(dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkDstIndex(index, length, dstIndex, dst.capacity());
+        if (dst.hasArray()) {
+            getBytes(index, dst.array(), dst.arrayOffset() + dstIndex, length);
+        } else {
+            dst.setBytes(dstIndex, nioBuffer(index, length));
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuffer dst) {
+        checkIndex(index, dst.remaining());
+        ByteBuffer tmp = buffer.duplicate();
+        tmp.position(index).limit(index + dst.remaining());
+        dst.put(tmp);
+        return this;
+    }
+
+    @Override
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        ensureAccessible();
+        return out.write(internalNioBuffer(index, length));
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuffer src) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    public int setBytes(int index, ScatteringByteChannel in, int length) {
+        throw new ReadOnlyBufferException();
+    }
+
+    @Override
+    public ByteBuffer nioBuffer(int index, int length) {
+        checkIndex(index, length);
+        ByteBuffer tmp = buffer.duplicate();
+        tmp.position(index).limit(index + length);
+        return tmp.slice();
+    }
+
+    @Override
+    public ByteBuffer internalNioBuffer(int index, int length) {
+        checkIndex(index, length);
+        ByteBuffer tmp = tmpNioBuf;
+        if (Objects.isNull(tmp)) {
+            tmpNioBuf = tmp = buffer.duplicate();
+        }
+        tmp.clear().position(index).limit(index + length);
+        return tmp;
+    }
+
+    @Override
+    protected void deallocate() {
+        MappedByteBuffer buffer = this.buffer;
+        if (Objects.isNull(buffer)) {
+            return;
+        }
+        this.buffer = null;
+        this.tmpNioBuf = null;
+        DirectBufferCleaner.free(buffer);
+    }
+}
@@ -0,0 +1,40 @@
+package com.cc.cetty.buffer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 引用计数的工具方法，消息不一定是引用计数的对象
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+@Slf4j
+public final class ReferenceCountUtils {
+
+    private ReferenceCountUtils() {
+    }
+
+    /**
+     * @param msg msg
+     * @return 如果是引用计数的对象，释放一次
+     */
+    public static boolean release(Object msg) {
+        if (msg instanceof ReferenceCounted) {
+            return ((ReferenceCounted) msg).release();
+        }
+        return false;
+    }
+
+    /**
+     * 释放一次，异常只记录日志
+     *
+     * @param msg msg
+     */
+    public static void safeRelease(Object msg) {
+        try {
+            release(msg);
+        } catch (Throwable t) {
+            log.warn("Failed to release a message: {}", msg, t);
+        }
+    }
+}
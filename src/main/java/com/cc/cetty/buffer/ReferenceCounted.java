@@ -0,0 +1,41 @@
+package com.cc.cetty.buffer;
+
+/**
+ * 引用计数的对象，新创建时引用计数为1，减到0时释放资源
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public interface ReferenceCounted {
+
+    /**
+     * @return 当前的引用计数，为0表示已经被释放
+     */
+    int refCnt();
+
+    /**
+     * 引用计数加1
+     *
+     * @return this
+     */
+    ReferenceCounted retain();
+
+    /**
+     * @param increment 增加的引用计数
+     * @return this
+     */
+    ReferenceCounted retain(int increment);
+
+    /**
+     * 引用计数减1
+     *
+     * @return 引用计数是否减到了0，并且资源已经被释放
+     */
+    boolean release();
+
+    /**
+     * @param decrement 减少的引用计数
+     * @return 引用计数是否减到了0，并且资源已经被释放
+     */
+    boolean release(int decrement);
+}
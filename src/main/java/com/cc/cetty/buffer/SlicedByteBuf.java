@@ -0,0 +1,236 @@
+package com.cc.cetty.buffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * 切片，是原buf中一段数据的视图，不拷贝
+ * 没有自己的引用计数，retain和release直接作用在原buf上，创建时retain一次
+ * 对切片再切片时直接切原buf，不会形成视图的链条
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+final class SlicedByteBuf extends AbstractByteBuf {
+
+    private final AbstractByteBuf buffer;
+
+    /**
+     * 切片的0对应原buf中的位置
+     */
+    private final int adjustment;
+
+    private final int length;
+
+    SlicedByteBuf(AbstractByteBuf buffer, int index, int length) {
+        super(length);
+        if (buffer instanceof SlicedByteBuf) {
+            SlicedByteBuf slice = (SlicedByteBuf) buffer;
+            this.buffer = slice.buffer;
+            this.adjustment = slice.adjustment + index;
+        } else {
+            this.buffer = buffer;
+            this.adjustment = index;
+        }
+        this.length = length;
+        setIndex0(0, length);
+        this.buffer.retain();
+    }
+
+    /**
+     * @return 原buf
+     */
+    ByteBuf unwrap() {
+        return buffer;
+    }
+
+    private int idx(int index) {
+        return index + adjustment;
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+        return buffer.alloc();
+    }
+
+    @Override
+    public boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return buffer.isReadOnly();
+    }
+
+    @Override
+    public int capacity() {
+        return length;
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        throw new UnsupportedOperationException("sliced buffer");
+    }
+
+    @Override
+    public boolean hasArray() {
+        return buffer.hasArray();
+    }
+
+    @Override
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    @Override
+    public int arrayOffset() {
+        return idx(buffer.arrayOffset());
+    }
+
+    @Override
+    protected byte _getByte(int index) {
+        return buffer._getByte(idx(index));
+    }
+
+    @Override
+    protected short _getShort(int index) {
+        return buffer._getShort(idx(index));
+    }
+
+    @Override
+    protected int _getInt(int index) {
+        return buffer._getInt(idx(index));
+    }
+
+    @Override
+    protected long _getLong(int index) {
+        return buffer._getLong(idx(index));
+    }
+
+    @Override
+    protected void _setByte(int index, int value) {
+        buffer._setByte(idx(index), value);
+    }
+
+    @Override
+    protected void _setShort(int index, int value) {
+        buffer._setShort(idx(index), value);
+    }
+
+    @Override
+    protected void _setInt(int index, int value) {
+        buffer._setInt(idx(index), value);
+    }
+
+    @Override
+    protected void _setLong(int index, long value) {
+        buffer._setLong(idx(index), value);
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        buffer.getBytes(idx(index), dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        buffer.getBytes(idx(index), dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuffer dst) {
+        checkIndex(index, dst.remaining());
+        buffer.getBytes(idx(index), dst);
+        return this;
+    }
+
+    @Override
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        checkIndex(index, length);
+        return buffer.getBytes(idx(index), out, length);
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        buffer.setBytes(idx(index), src, srcIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        checkIndex(index, length);
+        buffer.setBytes(idx(index), src, srcIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuffer src) {
+        checkIndex(index, src.remaining());
+        buffer.setBytes(idx(index), src);
+        return this;
+    }
+
+    @Override
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        return buffer.setBytes(idx(index), in, length);
+    }
+
+    @Override
+    public ByteBuffer nioBuffer(int index, int length) {
+        checkIndex(index, length);
+        return buffer.nioBuffer(idx(index), length);
+    }
+
+    @Override
+    public ByteBuffer internalNioBuffer(int index, int length) {
+        checkIndex(index, length);
+        return buffer.internalNioBuffer(idx(index), length);
+    }
+
+    @Override
+    public int nioBufferCount() {
+        return buffer.nioBufferCount();
+    }
+
+    @Override
+    public ByteBuffer[] nioBuffers(int index, int length) {
+        checkIndex(index, length);
+        return buffer.nioBuffers(idx(index), length);
+    }
+
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public ByteBuf retain() {
+        buffer.retain();
+        return this;
+    }
+
+    @Override
+    public ByteBuf retain(int increment) {
+        buffer.retain(increment);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return buffer.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return buffer.release(decrement);
+    }
+}
@@ -0,0 +1,66 @@
+package com.cc.cetty.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * 创建非池化buf的工具方法
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public final class Unpooled {
+
+    private static final ByteBufAllocator ALLOC = UnpooledByteBufAllocator.DEFAULT;
+
+    private Unpooled() {
+    }
+
+    public static ByteBuf buffer(int initialCapacity) {
+        return ALLOC.heapBuffer(initialCapacity);
+    }
+
+    public static ByteBuf directBuffer(int initialCapacity) {
+        return ALLOC.directBuffer(initialCapacity);
+    }
+
+    /**
+     * 包装数组，不拷贝
+     *
+     * @param array array
+     * @return buf
+     */
+    public static ByteBuf wrappedBuffer(byte[] array) {
+        return new UnpooledHeapByteBuf(ALLOC, array, array.length);
+    }
+
+    /**
+     * 把多个buf组合成一个，不拷贝，组合buf释放时一起释放
+     *
+     * @param buffers buffers
+     * @return buf
+     */
+    public static ByteBuf wrappedBuffer(ByteBuf... buffers) {
+        if (buffers.length == 1) {
+            return buffers[0];
+        }
+        return ALLOC.compositeBuffer(Math.max(buffers.length, AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS)).addComponents(true, buffers);
+    }
+
+    /**
+     * 拷贝ByteBuffer剩余的数据，不改变它的position
+     *
+     * @param buffer buffer
+     * @return buf
+     */
+    public static ByteBuf copiedBuffer(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        ByteBuf buf = buffer.isDirect() ? ALLOC.directBuffer(length) : ALLOC.heapBuffer(length);
+        buf.writeBytes(buffer.duplicate());
+        return buf;
+    }
+
+    public static ByteBuf copiedBuffer(CharSequence string, Charset charset) {
+        return wrappedBuffer(string.toString().getBytes(charset));
+    }
+}
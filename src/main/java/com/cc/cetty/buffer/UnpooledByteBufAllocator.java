@@ -0,0 +1,31 @@
+package com.cc.cetty.buffer;
+
+/**
+ * 非池化的分配器，每次分配都创建新的内存
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public final class UnpooledByteBufAllocator extends AbstractByteBufAllocator {
+
+    public static final UnpooledByteBufAllocator DEFAULT = new UnpooledByteBufAllocator(true);
+
+    public UnpooledByteBufAllocator(boolean preferDirect) {
+        super(preferDirect);
+    }
+
+    @Override
+    protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        return new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity);
+    }
+
+    @Override
+    protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        return new UnpooledDirectByteBuf(this, initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return false;
+    }
+}
@@ -0,0 +1,227 @@
+package com.cc.cetty.buffer;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Objects;
+
+/**
+ * 非池化的堆内buf，底层是一个byte数组
+ *
+ * @author: cc
+ * @date: 2023/12/01
+ **/
+public class UnpooledHeapByteBuf extends AbstractReferenceCountedByteBuf {
+
+    private final ByteBufAllocator alloc;
+
+    private byte[] array;
+
+    /**
+     * 和channel交互时使用的ByteBuffer，包装整个数组，避免每次创建
+     */
+    private ByteBuffer tmpNioBuf;
+
+    public UnpooledHeapByteBuf(ByteBufAllocator alloc, int initialCapacity, int maxCapacity) {
+        super(maxCapacity);
+        this.alloc = AssertUtils.checkNotNull(alloc, "Alloc cannot be null");
+        this.array = new byte[initialCapacity];
+    }
+
+    /**
+     * 包装已有的数组，数组的全部内容都是可读的
+     *
+     * @param alloc       alloc
+     * @param initialArray 数组
+     * @param maxCapacity 最大容量
+     */
+    public UnpooledHeapByteBuf(ByteBufAllocator alloc, byte[] initialArray, int maxCapacity) {
+        super(maxCapacity);
+        this.alloc = AssertUtils.checkNotNull(alloc, "Alloc cannot be null");
+        this.array = AssertUtils.checkNotNull(initialArray, "Initial array cannot be null");
+        setIndex(0, initialArray.length);
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+        return alloc;
+    }
+
+    @Override
+    public boolean isDirect() {
+        return false;
+    }
+
+    @Override
+    public int capacity() {
+        return array.length;
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        ensureAccessible();
+        if (newCapacity < 0 || newCapacity > maxCapacity()) {
+            throw new IllegalArgumentException("newCapacity: " + newCapacity + " (expected: 0-" + maxCapacity() + ')');
+        }
+        byte[] oldArray = array;
+        int oldCapacity = oldArray.length;
+        if (newCapacity == oldCapacity) {
+            return this;
+        }
+        int bytesToCopy;
+        if (newCapacity > oldCapacity) {
+            bytesToCopy = oldCapacity;
+        } else {
+            trimIndicesToCapacity(newCapacity);
+            bytesToCopy = newCapacity;
+        }
+        byte[] newArray = new byte[newCapacity];
+        System.arraycopy(oldArray, 0, newArray, 0, bytesToCopy);
+        array = newArray;
+        tmpNioBuf = null;
+        return this;
+    }
+
+    @Override
+    public boolean hasArray() {
+        return true;
+    }
+
+    @Override
+    public byte[] array() {
+        ensureAccessible();
+        return array;
+    }
+
+    @Override
+    public int arrayOffset() {
+        return 0;
+    }
+
+    @Override
+    protected byte _getByte(int index) {
+        return HeapByteBufUtils.getByte(array, index);
+    }
+
+    @Override
+    protected short _getShort(int index) {
+        return HeapByteBufUtils.getShort(array, index);
+    }
+
+    @Override
+    protected int _getInt(int index) {
+        return HeapByteBufUtils.getInt(array, index);
+    }
+
+    @Override
+    protected long _getLong(int index) {
+        return HeapByteBufUtils.getLong(array, index);
+    }
+
+    @Override
+    protected void _setByte(int index, int value) {
+        HeapByteBufUtils.setByte(array, index, value);
+    }
+
+    @Override
+    protected void _setShort(int index, int value) {
+        HeapByteBufUtils.setShort(array, index, value);
+    }
+
+    @Override
+    protected void _setInt(int index, int value) {
+        HeapByteBufUtils.setInt(array, index, value);
+    }
+
+    @Override
+    protected void _setLong(int index, long value) {
+        HeapByteBufUtils.setLong(array, index, value);
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkDstIndex(index, length, dstIndex, dst.length);
+        System.arraycopy(array, index, dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkDstIndex(index, length, dstIndex, dst.capacity());
+        dst.setBytes(dstIndex, array, index, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuffer dst) {
+        int length = dst.remaining();
+        checkIndex(index, length);
+        dst.put(array, index, length);
+        return this;
+    }
+
+    @Override
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        ensureAccessible();
+        return out.write(internalNioBuffer(index, length));
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkSrcIndex(index, length, srcIndex, src.length);
+        System.arraycopy(src, srcIndex, array, index, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        checkSrcIndex(index, length, srcIndex, src.capacity());
+        src.getBytes(srcIndex, array, index, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuffer src) {
+        int length = src.remaining();
+        checkIndex(index, length);
+        src.get(array, index, length);
+        return this;
+    }
+
+    @Override
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        ensureAccessible();
+        try {
+            return in.read(internalNioBuffer(index, length));
+        } catch (ClosedChannelException ignored) {
+            return -1;
+        }
+    }
+
+    @Override
+    public ByteBuffer nioBuffer(int index, int length) {
+        checkIndex(index, length);
+        return ByteBuffer.wrap(array, index, length).slice();
+    }
+
+    @Override
+    public ByteBuffer internalNioBuffer(int index, int length) {
+        checkIndex(index, length);
+        ByteBuffer tmp = tmpNioBuf;
+        if (Objects.isNull(tmp)) {
+            tmpNioBuf = tmp = ByteBuffer.wrap(array);
+        }
+        tmp.clear().position(index).limit(index + length);
+        return tmp;
+    }
+
+    @Override
+    protected void deallocate() {
+        array = new byte[0];
+        tmpNioBuf = null;
+    }
+}
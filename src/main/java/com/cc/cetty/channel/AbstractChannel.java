@@ -0,0 +1,553 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.attribute.DefaultAttributeMap;
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ByteBufAllocator;
+import com.cc.cetty.buffer.ReferenceCountUtils;
+import com.cc.cetty.config.CettyConfig;
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.pipeline.ChannelPipeline;
+import com.cc.cetty.pipeline.DefaultChannelPipeline;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NotYetConnectedException;
+import java.util.Objects;
+
+/**
+ * channel的骨架实现
+ * 入站事件从pipeline的头部开始传递，出站操作经过pipeline传到头部后交给Unsafe，在事件循环线程上执行
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+@Slf4j
+public abstract class AbstractChannel extends DefaultAttributeMap implements Channel {
+
+    private final Channel parent;
+
+    private final Unsafe unsafe;
+
+    private final DefaultChannelPipeline pipeline;
+
+    private final CloseFuture closeFuture = new CloseFuture(this);
+
+    private volatile EventLoop eventLoop;
+
+    private volatile boolean registered;
+
+    /**
+     * 为null时使用事件循环的配置快照中的值，配置重新加载后跟着变化
+     */
+    private volatile WriteBufferWaterMark writeBufferWaterMark;
+
+    private volatile RecvByteBufAllocator recvByteBufAllocator;
+
+    protected AbstractChannel(Channel parent) {
+        this.parent = parent;
+        this.unsafe = newUnsafe();
+        this.pipeline = new DefaultChannelPipeline(this);
+    }
+
+    /**
+     * @return 子类自己的unsafe
+     */
+    protected abstract AbstractUnsafe newUnsafe();
+
+    /**
+     * @param loop event loop
+     * @return 是否可以注册到该事件循环
+     */
+    protected abstract boolean isCompatible(EventLoop loop);
+
+    /**
+     * 注册到事件循环
+     *
+     * @throws Exception 注册失败
+     */
+    protected abstract void doRegister() throws Exception;
+
+    /**
+     * @param localAddress 本地地址
+     * @throws Exception 绑定失败
+     */
+    protected abstract void doBind(SocketAddress localAddress) throws Exception;
+
+    /**
+     * 关注读事件
+     *
+     * @throws Exception 失败
+     */
+    protected abstract void doBeginRead() throws Exception;
+
+    /**
+     * @throws Exception 关闭失败
+     */
+    protected abstract void doClose() throws Exception;
+
+    /**
+     * 把待发送队列中已经flush的数据写出去，写不完时由子类负责等待可写后继续
+     *
+     * @param in 待发送队列
+     * @throws Exception 写失败，已经flush的数据都会失败，然后关闭channel
+     */
+    protected abstract void doWrite(ChannelOutboundBuffer in) throws Exception;
+
+    /**
+     * 写入待发送队列之前转换消息，例如把堆内存的数据复制到直接内存，不支持的类型抛出异常
+     * 转换时要释放原来的消息
+     *
+     * @param msg msg
+     * @return 转换后的消息
+     * @throws Exception 不支持的消息
+     */
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        return msg;
+    }
+
+    /**
+     * 从事件循环中注销
+     *
+     * @throws Exception 注销失败
+     */
+    protected void doDeregister() throws Exception {
+        // do something
+    }
+
+    @Override
+    public EventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    @Override
+    public Channel parent() {
+        return parent;
+    }
+
+    @Override
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    @Override
+    public ChannelFuture closeFuture() {
+        return closeFuture;
+    }
+
+    @Override
+    public ChannelPipeline pipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public boolean isWritable() {
+        ChannelOutboundBuffer buf = unsafe.outboundBuffer();
+        return Objects.nonNull(buf) && buf.isWritable();
+    }
+
+    @Override
+    public WriteBufferWaterMark writeBufferWaterMark() {
+        WriteBufferWaterMark waterMark = writeBufferWaterMark;
+        return Objects.nonNull(waterMark) ? waterMark : config().writeBufferWaterMark();
+    }
+
+    @Override
+    public Channel writeBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark) {
+        this.writeBufferWaterMark = AssertUtils.checkNotNull(writeBufferWaterMark, "Write buffer water mark cannot be null");
+        return this;
+    }
+
+    @Override
+    public RecvByteBufAllocator recvByteBufAllocator() {
+        RecvByteBufAllocator allocator = recvByteBufAllocator;
+        return Objects.nonNull(allocator) ? allocator : config().recvByteBufAllocator();
+    }
+
+    /**
+     * @return 注册后是事件循环的配置快照，注册前是当前的全局配置
+     */
+    private CettyConfig config() {
+        EventLoop loop = eventLoop;
+        return Objects.nonNull(loop) ? loop.config() : ConfigRepository.DEFAULT.current();
+    }
+
+    @Override
+    public Channel recvByteBufAllocator(RecvByteBufAllocator allocator) {
+        this.recvByteBufAllocator = AssertUtils.checkNotNull(allocator, "Recv byte buf allocator cannot be null");
+        return this;
+    }
+
+    @Override
+    public Unsafe unsafe() {
+        return unsafe;
+    }
+
+    @Override
+    public ChannelPromise newPromise() {
+        return new DefaultChannelPromise(this);
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+        return ByteBufAllocator.DEFAULT;
+    }
+
+    @Override
+    public ChannelFuture bind(SocketAddress localAddress, ChannelPromise promise) {
+        return pipeline.bind(localAddress, promise);
+    }
+
+    @Override
+    public ChannelFuture connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+        return pipeline.connect(remoteAddress, localAddress, promise);
+    }
+
+    @Override
+    public ChannelFuture close(ChannelPromise promise) {
+        return pipeline.close(promise);
+    }
+
+    @Override
+    public Channel read() {
+        pipeline.read();
+        return this;
+    }
+
+    @Override
+    public ChannelFuture write(Object msg, ChannelPromise promise) {
+        return pipeline.write(msg, promise);
+    }
+
+    @Override
+    public Channel flush() {
+        pipeline.flush();
+        return this;
+    }
+
+    @Override
+    public ChannelFuture writeAndFlush(Object msg, ChannelPromise promise) {
+        return pipeline.writeAndFlush(msg, promise);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(local: " + localAddress() + ", remote: " + remoteAddress() + ')';
+    }
+
+    /**
+     * unsafe的骨架实现
+     */
+    protected abstract class AbstractUnsafe implements Unsafe {
+
+        /**
+         * 关闭时置空，之后的写都会失败
+         */
+        private volatile ChannelOutboundBuffer outboundBuffer = new ChannelOutboundBuffer(AbstractChannel.this);
+
+        /**
+         * 写的过程中promise的监听器可能又会flush，避免重入
+         */
+        private boolean inFlush0;
+
+        private RecvByteBufAllocator.Handle recvHandle;
+
+        /**
+         * 创建recvHandle的分配器，换了分配器时重新创建
+         */
+        private RecvByteBufAllocator recvHandleAllocator;
+
+        @Override
+        public final ChannelOutboundBuffer outboundBuffer() {
+            return outboundBuffer;
+        }
+
+        @Override
+        public final RecvByteBufAllocator.Handle recvBufAllocHandle() {
+            RecvByteBufAllocator allocator = recvByteBufAllocator();
+            if (recvHandleAllocator != allocator) {
+                recvHandle = allocator.newHandle();
+                recvHandleAllocator = allocator;
+            }
+            return recvHandle;
+        }
+
+        @Override
+        public final void register(EventLoop eventLoop, ChannelPromise promise) {
+            AssertUtils.checkNotNull(eventLoop, "Event loop cannot be null");
+            if (isRegistered()) {
+                promise.setFailure(new IllegalStateException("Registered to an event loop already"));
+                return;
+            }
+            if (!isCompatible(eventLoop)) {
+                promise.setFailure(new IllegalStateException("Incompatible event loop type: " + eventLoop.getClass().getName()));
+                return;
+            }
+            AbstractChannel.this.eventLoop = eventLoop;
+            if (eventLoop.inEventLoop()) {
+                register0(promise);
+            } else {
+                try {
+                    eventLoop.execute(() -> register0(promise));
+                } catch (Throwable t) {
+                    log.warn("Force-closing a channel whose registration task was not accepted by an event loop: {}", AbstractChannel.this, t);
+                    closeForcibly();
+                    closeFuture.setClosed();
+                    promise.tryFailure(t);
+                }
+            }
+        }
+
+        private void register0(ChannelPromise promise) {
+            try {
+                if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                    return;
+                }
+                boolean firstRegistration = !registered;
+                doRegister();
+                registered = true;
+                // 注册之前添加的处理器在这里调用handlerAdded，ChannelInitializer在这里初始化pipeline
+                pipeline.invokeHandlerAddedIfNeeded();
+                promise.trySuccess(null);
+                pipeline.fireChannelRegistered();
+                // 服务端接收的连接注册时已经是活跃状态了，头节点收到channelActive后开始读
+                if (isActive() && firstRegistration) {
+                    pipeline.fireChannelActive();
+                }
+            } catch (Throwable t) {
+                closeForcibly();
+                closeFuture.setClosed();
+                promise.tryFailure(t);
+            }
+        }
+
+        @Override
+        public final void bind(SocketAddress localAddress, ChannelPromise promise) {
+            assert eventLoop.inEventLoop();
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+            boolean wasActive = isActive();
+            try {
+                doBind(localAddress);
+            } catch (Throwable t) {
+                promise.tryFailure(t);
+                closeIfClosed();
+                return;
+            }
+            promise.trySuccess(null);
+            if (!wasActive && isActive()) {
+                pipeline.fireChannelActive();
+            }
+        }
+
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            promise.tryFailure(new UnsupportedOperationException());
+        }
+
+        @Override
+        public void finishConnect() {
+            // do something
+        }
+
+        @Override
+        public final void beginRead() {
+            assert eventLoop.inEventLoop();
+            if (!isActive()) {
+                return;
+            }
+            try {
+                doBeginRead();
+            } catch (Exception e) {
+                pipeline.fireExceptionCaught(e);
+                close(newPromise());
+            }
+        }
+
+        @Override
+        public final void write(Object msg, ChannelPromise promise) {
+            assert eventLoop.inEventLoop();
+            ChannelOutboundBuffer outboundBuffer = this.outboundBuffer;
+            if (Objects.isNull(outboundBuffer)) {
+                // 已经关闭了
+                ReferenceCountUtils.safeRelease(msg);
+                promise.tryFailure(new ClosedChannelException());
+                return;
+            }
+            int size;
+            try {
+                msg = filterOutboundMessage(msg);
+                size = pendingSize(msg);
+            } catch (Throwable t) {
+                ReferenceCountUtils.safeRelease(msg);
+                promise.tryFailure(t);
+                return;
+            }
+            outboundBuffer.addMessage(msg, size, promise);
+        }
+
+        /**
+         * @return 消息计入待发送字节数的大小
+         */
+        private int pendingSize(Object msg) {
+            if (msg instanceof ByteBuf) {
+                return ((ByteBuf) msg).readableBytes();
+            }
+            if (msg instanceof FileRegion) {
+                FileRegion region = (FileRegion) msg;
+                return (int) Math.min(Integer.MAX_VALUE, region.count() - region.transferred());
+            }
+            return 0;
+        }
+
+        @Override
+        public final void flush() {
+            assert eventLoop.inEventLoop();
+            ChannelOutboundBuffer outboundBuffer = this.outboundBuffer;
+            if (Objects.isNull(outboundBuffer)) {
+                return;
+            }
+            outboundBuffer.addFlush();
+            flush0();
+        }
+
+        @Override
+        public void forceFlush() {
+            flush0();
+        }
+
+        /**
+         * 把已经flush的数据写出去
+         */
+        protected void flush0() {
+            if (inFlush0) {
+                return;
+            }
+            ChannelOutboundBuffer outboundBuffer = this.outboundBuffer;
+            if (Objects.isNull(outboundBuffer) || outboundBuffer.isEmpty()) {
+                return;
+            }
+            inFlush0 = true;
+            try {
+                if (!isActive()) {
+                    if (isOpen()) {
+                        outboundBuffer.failFlushed(new NotYetConnectedException(), true);
+                    } else {
+                        outboundBuffer.failFlushed(new ClosedChannelException(), false);
+                    }
+                    return;
+                }
+                doWrite(outboundBuffer);
+            } catch (Throwable t) {
+                outboundBuffer.failFlushed(t, true);
+                close(newPromise());
+            } finally {
+                inFlush0 = false;
+            }
+        }
+
+        @Override
+        public void close(ChannelPromise promise) {
+            assert eventLoop.inEventLoop();
+            if (!promise.setUncancellable()) {
+                return;
+            }
+            if (closeFuture.isDone()) {
+                // 已经关闭了
+                promise.trySuccess(null);
+                return;
+            }
+            boolean wasActive = isActive();
+            // 先置空，关闭过程中触发的写直接失败
+            ChannelOutboundBuffer outboundBuffer = this.outboundBuffer;
+            this.outboundBuffer = null;
+            try {
+                doClose();
+                closeFuture.setClosed();
+                promise.trySuccess(null);
+            } catch (Throwable t) {
+                closeFuture.setClosed();
+                promise.tryFailure(t);
+            }
+            if (Objects.nonNull(outboundBuffer)) {
+                ClosedChannelException cause = new ClosedChannelException();
+                outboundBuffer.failFlushed(cause, false);
+                outboundBuffer.close(cause);
+            }
+            try {
+                doDeregister();
+            } catch (Throwable t) {
+                log.warn("Unexpected exception occurred while deregistering a channel.", t);
+            }
+            if (wasActive && !isActive()) {
+                pipeline.fireChannelInactive();
+            }
+            if (registered) {
+                registered = false;
+                pipeline.fireChannelUnregistered();
+            }
+        }
+
+        @Override
+        public final void closeForcibly() {
+            try {
+                doClose();
+            } catch (Exception e) {
+                log.warn("Failed to close a channel.", e);
+            }
+        }
+
+        /**
+         * 如果已经关闭了，走一遍关闭流程，通知channelInactive
+         */
+        protected final void closeIfClosed() {
+            if (!isOpen()) {
+                close(newPromise());
+            }
+        }
+
+        protected final boolean ensureOpen(ChannelPromise promise) {
+            if (isOpen()) {
+                return true;
+            }
+            promise.tryFailure(new ClosedChannelException());
+            return false;
+        }
+    }
+
+    /**
+     * channel关闭时完成，只能由channel内部设置
+     */
+    private static final class CloseFuture extends DefaultChannelPromise {
+
+        CloseFuture(AbstractChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        public ChannelPromise setSuccess(Void result) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public ChannelPromise setFailure(Throwable cause) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public boolean trySuccess(Void result) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public boolean tryFailure(Throwable cause) {
+            throw new IllegalStateException();
+        }
+
+        void setClosed() {
+            super.trySuccess(null);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.cc.cetty.channel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 根据最近的读取情况调整下一次读的buf大小
+ * 读满了就沿着尺寸表往上跳几档，连续两次读到的数据都明显小于当前大小才往下退一档
+ * 空闲的连接占用的内存逐渐缩小到最小值，批量传输的连接很快增长到足够大，减少读的系统调用次数
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public class AdaptiveRecvByteBufAllocator extends DefaultMaxMessagesRecvByteBufAllocator {
+
+    public static final int DEFAULT_MINIMUM = 64;
+
+    public static final int DEFAULT_INITIAL = 2048;
+
+    public static final int DEFAULT_MAXIMUM = 65536;
+
+    /**
+     * 增长时跳的档数
+     */
+    private static final int INDEX_INCREMENT = 4;
+
+    /**
+     * 缩小时退的档数
+     */
+    private static final int INDEX_DECREMENT = 1;
+
+    /**
+     * 512以下每16字节一档，之后每档翻倍
+     */
+    private static final int[] SIZE_TABLE;
+
+    static {
+        List<Integer> sizeTable = new ArrayList<>();
+        for (int i = 16; i < 512; i += 16) {
+            sizeTable.add(i);
+        }
+        for (int i = 512; i > 0; i <<= 1) {
+            sizeTable.add(i);
+        }
+        SIZE_TABLE = new int[sizeTable.size()];
+        for (int i = 0; i < SIZE_TABLE.length; i++) {
+            SIZE_TABLE[i] = sizeTable.get(i);
+        }
+    }
+
+    public static final AdaptiveRecvByteBufAllocator DEFAULT = new AdaptiveRecvByteBufAllocator();
+
+    private final int minIndex;
+
+    private final int maxIndex;
+
+    private final int initialIndex;
+
+    public AdaptiveRecvByteBufAllocator() {
+        this(DEFAULT_MINIMUM, DEFAULT_INITIAL, DEFAULT_MAXIMUM);
+    }
+
+    /**
+     * @param minimum 最小的buf大小
+     * @param initial 第一次读的buf大小
+     * @param maximum 最大的buf大小
+     */
+    public AdaptiveRecvByteBufAllocator(int minimum, int initial, int maximum) {
+        if (minimum <= 0 || initial < minimum || maximum < initial) {
+            throw new IllegalArgumentException(String.format("minimum: %d, initial: %d, maximum: %d (expected: 0 < minimum <= initial <= maximum)", minimum, initial, maximum));
+        }
+        int minIndex = getSizeTableIndex(minimum);
+        this.minIndex = SIZE_TABLE[minIndex] < minimum ? minIndex + 1 : minIndex;
+        int maxIndex = getSizeTableIndex(maximum);
+        this.maxIndex = Math.max(this.minIndex, SIZE_TABLE[maxIndex] > maximum ? maxIndex - 1 : maxIndex);
+        int initialIndex = getSizeTableIndex(initial);
+        this.initialIndex = Math.max(this.minIndex, Math.min(this.maxIndex, initialIndex));
+    }
+
+    /**
+     * @return 不小于size的最小一档，size超过最大一档时返回最后一档
+     */
+    private static int getSizeTableIndex(int size) {
+        int low = 0;
+        int high = SIZE_TABLE.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = SIZE_TABLE[mid];
+            if (value < size) {
+                low = mid + 1;
+            } else if (value > size) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return Math.min(low, SIZE_TABLE.length - 1);
+    }
+
+    @Override
+    public Handle newHandle() {
+        return new HandleImpl(minIndex, maxIndex, initialIndex);
+    }
+
+    @Override
+    public AdaptiveRecvByteBufAllocator maxMessagesPerRead(int maxMessagesPerRead) {
+        super.maxMessagesPerRead(maxMessagesPerRead);
+        return this;
+    }
+
+    private final class HandleImpl extends MaxMessageHandle {
+
+        private final int minIndex;
+
+        private final int maxIndex;
+
+        private int index;
+
+        private int nextReceiveBufferSize;
+
+        /**
+         * 上一次已经偏小了，这次还偏小就缩小
+         */
+        private boolean decreaseNow;
+
+        HandleImpl(int minIndex, int maxIndex, int initialIndex) {
+            this.minIndex = minIndex;
+            this.maxIndex = maxIndex;
+            this.index = initialIndex;
+            this.nextReceiveBufferSize = SIZE_TABLE[initialIndex];
+        }
+
+        @Override
+        public int guess() {
+            return nextReceiveBufferSize;
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            // 读满了马上变大，这次读事件剩下的读就能用大一些的buf
+            if (bytes == attemptedBytesRead()) {
+                record(bytes);
+            }
+            super.lastBytesRead(bytes);
+        }
+
+        @Override
+        public void readComplete() {
+            record(totalBytesRead());
+        }
+
+        private void record(int actualReadBytes) {
+            if (actualReadBytes <= SIZE_TABLE[Math.max(0, index - INDEX_DECREMENT)]) {
+                if (decreaseNow) {
+                    index = Math.max(index - INDEX_DECREMENT, minIndex);
+                    nextReceiveBufferSize = SIZE_TABLE[index];
+                    decreaseNow = false;
+                } else {
+                    decreaseNow = true;
+                }
+            } else {
+                if (actualReadBytes >= nextReceiveBufferSize) {
+                    index = Math.min(index + INDEX_INCREMENT, maxIndex);
+                    nextReceiveBufferSize = SIZE_TABLE[index];
+                }
+                decreaseNow = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.attribute.AttributeMap;
+import com.cc.cetty.buffer.ByteBufAllocator;
+import com.cc.cetty.pipeline.ChannelOutboundInvoker;
+import com.cc.cetty.pipeline.ChannelPipeline;
+
+import java.net.SocketAddress;
+
+/**
+ * 对网络连接的抽象
+ * 所有的I/O操作都是异步的，结果通过ChannelFuture返回，出站操作经过pipeline从尾部传到头部
+ * 真正的I/O操作由Unsafe完成，并且只会在channel所属的事件循环线程上执行
+ * 连接级别的状态（会话、租户、trace等）通过attr挂在channel上
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface Channel extends AttributeMap, ChannelOutboundInvoker {
+
+    /**
+     * @return 注册到的事件循环，没注册时返回null
+     */
+    EventLoop eventLoop();
+
+    /**
+     * @return 父channel，服务端接收的连接的父channel就是服务端channel
+     */
+    Channel parent();
+
+    /**
+     * @return 是否打开
+     */
+    boolean isOpen();
+
+    /**
+     * @return 是否已经注册到事件循环
+     */
+    boolean isRegistered();
+
+    /**
+     * @return 是否处于活跃状态，已经连接或者已经绑定
+     */
+    boolean isActive();
+
+    /**
+     * 待发送的数据超过高水位线时不可写，此时继续写只会让数据在内存中堆积
+     *
+     * @return 是否可写
+     */
+    boolean isWritable();
+
+    /**
+     * @return 写缓冲区的水位线
+     */
+    WriteBufferWaterMark writeBufferWaterMark();
+
+    /**
+     * @param writeBufferWaterMark 写缓冲区的水位线
+     * @return this
+     */
+    Channel writeBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark);
+
+    /**
+     * @return 读socket时使用的分配策略
+     */
+    RecvByteBufAllocator recvByteBufAllocator();
+
+    /**
+     * 下一次读事件开始时生效
+     *
+     * @param allocator 读socket时使用的分配策略
+     * @return this
+     */
+    Channel recvByteBufAllocator(RecvByteBufAllocator allocator);
+
+    /**
+     * @return 本地地址
+     */
+    SocketAddress localAddress();
+
+    /**
+     * @return 远端地址
+     */
+    SocketAddress remoteAddress();
+
+    /**
+     * @return channel关闭时完成的future
+     */
+    ChannelFuture closeFuture();
+
+    /**
+     * @return 处理事件的pipeline
+     */
+    ChannelPipeline pipeline();
+
+    @Override
+    Channel read();
+
+    @Override
+    Channel flush();
+
+    /**
+     * @return 执行真正I/O操作的unsafe，只在channel内部和事件循环中使用
+     */
+    Unsafe unsafe();
+
+    /**
+     * @return 分配读写缓冲区的分配器
+     */
+    ByteBufAllocator alloc();
+
+    /**
+     * 执行真正I/O操作的接口，除了register以外，所有方法都只能在事件循环线程中调用
+     */
+    interface Unsafe {
+
+        /**
+         * 把channel注册到事件循环
+         *
+         * @param eventLoop event loop
+         * @param promise   promise
+         */
+        void register(EventLoop eventLoop, ChannelPromise promise);
+
+        /**
+         * @param localAddress 本地地址
+         * @param promise      promise
+         */
+        void bind(SocketAddress localAddress, ChannelPromise promise);
+
+        /**
+         * @param remoteAddress 远端地址
+         * @param localAddress  本地地址，可以为空
+         * @param promise       promise
+         */
+        void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise);
+
+        /**
+         * 关注读事件
+         */
+        void beginRead();
+
+        /**
+         * 读就绪时由事件循环调用
+         */
+        void read();
+
+        /**
+         * @return 这个channel的读分配Handle，只能在事件循环中使用
+         */
+        RecvByteBufAllocator.Handle recvBufAllocHandle();
+
+        /**
+         * 放入待发送队列
+         *
+         * @param msg     msg
+         * @param promise promise
+         */
+        void write(Object msg, ChannelPromise promise);
+
+        /**
+         * 发送待发送队列中的数据
+         */
+        void flush();
+
+        /**
+         * @return 待发送队列，关闭后返回null
+         */
+        ChannelOutboundBuffer outboundBuffer();
+
+        /**
+         * 写就绪时由事件循环调用，继续发送之前没发完的数据
+         */
+        void forceFlush();
+
+        /**
+         * @param promise promise
+         */
+        void close(ChannelPromise promise);
+
+        /**
+         * 不通知任何事件直接关闭，可以在任何线程调用
+         */
+        void closeForcibly();
+
+        /**
+         * 连接就绪时由事件循环调用
+         */
+        void finishConnect();
+    }
+}
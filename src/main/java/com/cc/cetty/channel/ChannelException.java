@@ -0,0 +1,22 @@
+package com.cc.cetty.channel;
+
+/**
+ * channel相关操作失败时抛出
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public class ChannelException extends RuntimeException {
+
+    public ChannelException(String message) {
+        super(message);
+    }
+
+    public ChannelException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ChannelException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,30 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.Future;
+import com.cc.cetty.async.GenericFutureListener;
+
+/**
+ * channel I/O 操作的结果
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface ChannelFuture extends Future<Void> {
+
+    /**
+     * @return 对应的channel
+     */
+    Channel channel();
+
+    @Override
+    ChannelFuture addListener(GenericFutureListener<? extends Future<? super Void>> listener);
+
+    @Override
+    ChannelFuture removeListener(GenericFutureListener<? extends Future<? super Void>> listener);
+
+    @Override
+    ChannelFuture sync() throws InterruptedException;
+
+    @Override
+    ChannelFuture await() throws InterruptedException;
+}
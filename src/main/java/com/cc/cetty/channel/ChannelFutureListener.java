@@ -0,0 +1,26 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.GenericFutureListener;
+
+/**
+ * ChannelFuture的监听器
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface ChannelFutureListener extends GenericFutureListener<ChannelFuture> {
+
+    /**
+     * 完成后关闭channel
+     */
+    ChannelFutureListener CLOSE = future -> future.channel().close();
+
+    /**
+     * 失败时关闭channel
+     */
+    ChannelFutureListener CLOSE_ON_FAILURE = future -> {
+        if (!future.isSuccess()) {
+            future.channel().close();
+        }
+    };
+}
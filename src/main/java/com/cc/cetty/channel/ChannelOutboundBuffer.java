@@ -0,0 +1,584 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ReferenceCountUtils;
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.metrics.EventLoopMetrics;
+import com.cc.cetty.recycler.Recycler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * channel待发送的数据
+ * write只是把消息追加到链表尾部，flush时把之前写入的消息标记为已刷新，然后尽量用一次gathering write全部发出去
+ * 待发送的字节数超过高水位线时channel变为不可写，业务方应该停止写入，降到低水位线以下时恢复
+ * 除了水位线相关的状态，所有方法都只能在channel的事件循环线程上调用
+ *
+ * <pre>
+ * flushedEntry --> ... --> unflushedEntry --> ... --> tailEntry
+ * |<-- 已经flush，等待写到socket -->|<-- 还没有flush -->|
+ * </pre>
+ *
+ * @author: cc
+ * @date: 2023/12/09
+ **/
+@Slf4j
+public final class ChannelOutboundBuffer {
+
+    /**
+     * 每个entry额外计入的字节数，大致是entry对象本身的大小，避免大量很小的消息绕过水位线
+     */
+    private static final int ENTRY_OVERHEAD = Integer.getInteger("cetty.outboundBufferEntrySizeOverhead", 96);
+
+    /**
+     * gathering write用的ByteBuffer数组，同一个事件循环上的所有channel共用一个，不用每次写都创建
+     */
+    private static final FastThreadLocal<ByteBuffer[]> NIO_BUFFERS = new FastThreadLocal<>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[1024];
+        }
+    };
+
+    private static final AtomicLongFieldUpdater<ChannelOutboundBuffer> TOTAL_PENDING_SIZE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(ChannelOutboundBuffer.class, "totalPendingSize");
+
+    private static final AtomicIntegerFieldUpdater<ChannelOutboundBuffer> UNWRITABLE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ChannelOutboundBuffer.class, "unwritable");
+
+    private final Channel channel;
+
+    /**
+     * 第一个已经flush的entry
+     */
+    private Entry flushedEntry;
+
+    /**
+     * 第一个还没有flush的entry
+     */
+    private Entry unflushedEntry;
+
+    private Entry tailEntry;
+
+    /**
+     * 已经flush但是还没写完的entry个数
+     */
+    private int flushed;
+
+    /**
+     * 最近一次nioBuffers的结果
+     */
+    private int nioBufferCount;
+
+    private long nioBufferSize;
+
+    /**
+     * 让promise失败时会通知用户的监听器，监听器中可能又会写，避免重入
+     */
+    private boolean inFail;
+
+    private volatile long totalPendingSize;
+
+    private volatile int unwritable;
+
+    private volatile Runnable fireChannelWritabilityChangedTask;
+
+    ChannelOutboundBuffer(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 追加一条消息，还不会发送
+     *
+     * @param msg     msg
+     * @param size    消息的字节数
+     * @param promise promise
+     */
+    public void addMessage(Object msg, int size, ChannelPromise promise) {
+        Entry entry = Entry.newInstance(msg, size, promise);
+        if (Objects.isNull(tailEntry)) {
+            flushedEntry = null;
+        } else {
+            tailEntry.next = entry;
+        }
+        tailEntry = entry;
+        if (Objects.isNull(unflushedEntry)) {
+            unflushedEntry = entry;
+        }
+        incrementPendingOutboundBytes(entry.pendingSize, false);
+    }
+
+    /**
+     * 把之前追加的消息都标记为已刷新，已经被取消的消息直接释放
+     */
+    public void addFlush() {
+        Entry entry = unflushedEntry;
+        if (Objects.isNull(entry)) {
+            return;
+        }
+        if (Objects.isNull(flushedEntry)) {
+            flushedEntry = entry;
+        }
+        do {
+            flushed++;
+            if (!entry.promise.setUncancellable()) {
+                // 写操作被取消了，不再发送
+                int pending = entry.cancel();
+                decrementPendingOutboundBytes(pending, false, true);
+            }
+            entry = entry.next;
+        } while (Objects.nonNull(entry));
+        unflushedEntry = null;
+    }
+
+    /**
+     * @return 第一条已经flush的消息，没有时返回null
+     */
+    public Object current() {
+        Entry entry = flushedEntry;
+        return Objects.isNull(entry) ? null : entry.msg;
+    }
+
+    /**
+     * 第一条已经flush的消息写完了，释放它并通知成功
+     *
+     * @return 是否删除了一条消息
+     */
+    public boolean remove() {
+        Entry e = flushedEntry;
+        if (Objects.isNull(e)) {
+            clearNioBuffers();
+            return false;
+        }
+        Object msg = e.msg;
+        ChannelPromise promise = e.promise;
+        int size = e.pendingSize;
+        removeEntry(e);
+        if (!e.cancelled) {
+            ReferenceCountUtils.safeRelease(msg);
+            safeSuccess(promise);
+            decrementPendingOutboundBytes(size, false, true);
+        }
+        e.recycle();
+        return true;
+    }
+
+    /**
+     * 第一条已经flush的消息写失败了，释放它并通知失败
+     *
+     * @param cause 原因
+     * @return 是否删除了一条消息
+     */
+    public boolean remove(Throwable cause) {
+        return remove0(cause, true);
+    }
+
+    private boolean remove0(Throwable cause, boolean notifyWritability) {
+        Entry e = flushedEntry;
+        if (Objects.isNull(e)) {
+            clearNioBuffers();
+            return false;
+        }
+        Object msg = e.msg;
+        ChannelPromise promise = e.promise;
+        int size = e.pendingSize;
+        removeEntry(e);
+        if (!e.cancelled) {
+            ReferenceCountUtils.safeRelease(msg);
+            safeFail(promise, cause);
+            decrementPendingOutboundBytes(size, false, notifyWritability);
+        }
+        e.recycle();
+        return true;
+    }
+
+    private void removeEntry(Entry e) {
+        if (--flushed == 0) {
+            flushedEntry = null;
+            if (e == tailEntry) {
+                tailEntry = null;
+                unflushedEntry = null;
+            }
+        } else {
+            flushedEntry = e.next;
+        }
+    }
+
+    /**
+     * 一次写操作之后调用，删除已经写完的ByteBuf，没写完的那个移动读下标
+     *
+     * @param writtenBytes 写出的字节数
+     */
+    public void removeBytes(long writtenBytes) {
+        for (; ; ) {
+            Entry e = flushedEntry;
+            if (Objects.isNull(e)) {
+                break;
+            }
+            if (e.cancelled) {
+                remove();
+                continue;
+            }
+            if (!(e.msg instanceof ByteBuf)) {
+                assert writtenBytes == 0;
+                break;
+            }
+            ByteBuf buf = (ByteBuf) e.msg;
+            int readerIndex = buf.readerIndex();
+            int readableBytes = buf.writerIndex() - readerIndex;
+            if (readableBytes <= writtenBytes) {
+                writtenBytes -= readableBytes;
+                remove();
+            } else {
+                if (writtenBytes != 0) {
+                    buf.readerIndex(readerIndex + (int) writtenBytes);
+                }
+                break;
+            }
+        }
+        clearNioBuffers();
+    }
+
+    /**
+     * 把开头连续的已flush的ByteBuf转换成ByteBuffer，放到线程共享的数组中
+     * 用的是ByteBuf内部缓存的ByteBuffer，不会创建新对象
+     *
+     * @param maxCount 最多多少个
+     * @param maxBytes 最多多少字节，至少会返回一个
+     * @return 线程共享的数组，只有前nioBufferCount个有效
+     */
+    public ByteBuffer[] nioBuffers(int maxCount, long maxBytes) {
+        assert maxCount > 0;
+        assert maxBytes > 0;
+        long nioBufferSize = 0;
+        int nioBufferCount = 0;
+        ByteBuffer[] nioBuffers = NIO_BUFFERS.get();
+        Entry entry = flushedEntry;
+        while (isFlushedEntry(entry) && (entry.cancelled || entry.msg instanceof ByteBuf)) {
+            if (!entry.cancelled) {
+                ByteBuf buf = (ByteBuf) entry.msg;
+                int readerIndex = buf.readerIndex();
+                int readableBytes = buf.writerIndex() - readerIndex;
+                if (readableBytes > 0) {
+                    if (maxBytes - readableBytes < nioBufferSize && nioBufferCount != 0) {
+                        // 超过一次写的上限了，剩下的下次再写
+                        break;
+                    }
+                    nioBufferSize += readableBytes;
+                    int count = entry.count;
+                    if (count == -1) {
+                        entry.count = count = buf.nioBufferCount();
+                    }
+                    int neededSpace = Math.min(maxCount, nioBufferCount + count);
+                    if (neededSpace > nioBuffers.length) {
+                        nioBuffers = Arrays.copyOf(nioBuffers, Math.max(nioBuffers.length << 1, neededSpace));
+                        NIO_BUFFERS.set(nioBuffers);
+                    }
+                    if (count == 1) {
+                        ByteBuffer nioBuf = entry.buf;
+                        if (Objects.isNull(nioBuf)) {
+                            // 写了一部分之后ByteBuffer的position已经跟着移动了，和读下标一致，可以一直用到写完
+                            entry.buf = nioBuf = buf.internalNioBuffer(readerIndex, readableBytes);
+                        }
+                        nioBuffers[nioBufferCount++] = nioBuf;
+                    } else {
+                        // 组合buf，每个组件一个ByteBuffer
+                        nioBufferCount = nioBuffers(entry, buf, nioBuffers, nioBufferCount, maxCount);
+                    }
+                    if (nioBufferCount >= maxCount) {
+                        break;
+                    }
+                }
+            }
+            entry = entry.next;
+        }
+        this.nioBufferCount = nioBufferCount;
+        this.nioBufferSize = nioBufferSize;
+        return nioBuffers;
+    }
+
+    private static int nioBuffers(Entry entry, ByteBuf buf, ByteBuffer[] nioBuffers, int nioBufferCount, int maxCount) {
+        ByteBuffer[] nioBufs = entry.bufs;
+        if (Objects.isNull(nioBufs)) {
+            entry.bufs = nioBufs = buf.nioBuffers();
+        }
+        for (int i = 0; i < nioBufs.length && nioBufferCount < maxCount; i++) {
+            ByteBuffer nioBuf = nioBufs[i];
+            if (nioBuf.hasRemaining()) {
+                nioBuffers[nioBufferCount++] = nioBuf;
+            }
+        }
+        return nioBufferCount;
+    }
+
+    /**
+     * @return 最近一次nioBuffers返回的ByteBuffer个数
+     */
+    public int nioBufferCount() {
+        return nioBufferCount;
+    }
+
+    /**
+     * @return 最近一次nioBuffers返回的字节数
+     */
+    public long nioBufferSize() {
+        return nioBufferSize;
+    }
+
+    /**
+     * 共享数组中的ByteBuffer引用着已经释放的buf，写完之后清掉
+     */
+    private void clearNioBuffers() {
+        int count = nioBufferCount;
+        if (count > 0) {
+            nioBufferCount = 0;
+            Arrays.fill(NIO_BUFFERS.get(), 0, count, null);
+        }
+    }
+
+    private boolean isFlushedEntry(Entry e) {
+        return Objects.nonNull(e) && e != unflushedEntry;
+    }
+
+    /**
+     * @return 已经flush还没写完的消息个数
+     */
+    public int size() {
+        return flushed;
+    }
+
+    /**
+     * @return 是否没有已经flush的消息
+     */
+    public boolean isEmpty() {
+        return flushed == 0;
+    }
+
+    /**
+     * @return 是否可写，可以在任何线程调用
+     */
+    public boolean isWritable() {
+        return unwritable == 0;
+    }
+
+    /**
+     * @return 待发送的字节数，包括还没flush的，可以在任何线程调用
+     */
+    public long totalPendingWriteBytes() {
+        return totalPendingSize;
+    }
+
+    private void incrementPendingOutboundBytes(long size, boolean invokeLater) {
+        if (size == 0) {
+            return;
+        }
+        long newWriteBufferSize = TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, size);
+        recordPendingOutboundBytes(size);
+        if (newWriteBufferSize > channel.writeBufferWaterMark().high()) {
+            setUnwritable(invokeLater);
+        }
+    }
+
+    private void decrementPendingOutboundBytes(long size, boolean invokeLater, boolean notifyWritability) {
+        if (size == 0) {
+            return;
+        }
+        long newWriteBufferSize = TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -size);
+        recordPendingOutboundBytes(-size);
+        if (notifyWritability && newWriteBufferSize < channel.writeBufferWaterMark().low()) {
+            setWritable(invokeLater);
+        }
+    }
+
+    /**
+     * 待发送字节数只在事件循环线程修改，同步累加到当前事件循环的指标上
+     */
+    private static void recordPendingOutboundBytes(long delta) {
+        EventLoopMetrics metrics = EventLoopMetrics.current();
+        if (Objects.nonNull(metrics)) {
+            metrics.recordPendingOutboundBytes(delta);
+        }
+    }
+
+    private void setWritable(boolean invokeLater) {
+        if (UNWRITABLE_UPDATER.compareAndSet(this, 1, 0)) {
+            fireChannelWritabilityChanged(invokeLater);
+        }
+    }
+
+    private void setUnwritable(boolean invokeLater) {
+        if (UNWRITABLE_UPDATER.compareAndSet(this, 0, 1)) {
+            fireChannelWritabilityChanged(invokeLater);
+        }
+    }
+
+    private void fireChannelWritabilityChanged(boolean invokeLater) {
+        if (invokeLater) {
+            Runnable task = fireChannelWritabilityChangedTask;
+            if (Objects.isNull(task)) {
+                fireChannelWritabilityChangedTask = task = () -> channel.pipeline().fireChannelWritabilityChanged();
+            }
+            channel.eventLoop().execute(task);
+        } else {
+            channel.pipeline().fireChannelWritabilityChanged();
+        }
+    }
+
+    /**
+     * 让所有已经flush的消息失败
+     *
+     * @param cause  原因
+     * @param notify 是否通知可写性的变化，channel关闭时不需要
+     */
+    void failFlushed(Throwable cause, boolean notify) {
+        if (inFail) {
+            return;
+        }
+        try {
+            inFail = true;
+            for (; ; ) {
+                if (!remove0(cause, notify)) {
+                    break;
+                }
+            }
+        } finally {
+            inFail = false;
+        }
+    }
+
+    /**
+     * channel关闭之后调用，让还没flush的消息也失败
+     *
+     * @param cause 原因
+     */
+    void close(Throwable cause) {
+        if (inFail) {
+            channel.eventLoop().execute(() -> close(cause));
+            return;
+        }
+        inFail = true;
+        if (channel.isOpen()) {
+            throw new IllegalStateException("close() must be invoked after the channel is closed.");
+        }
+        if (!isEmpty()) {
+            throw new IllegalStateException("close() must be invoked after all flushed writes are handled.");
+        }
+        try {
+            Entry e = unflushedEntry;
+            while (Objects.nonNull(e)) {
+                TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -e.pendingSize);
+                recordPendingOutboundBytes(-e.pendingSize);
+                if (!e.cancelled) {
+                    ReferenceCountUtils.safeRelease(e.msg);
+                    safeFail(e.promise, cause);
+                }
+                Entry next = e.next;
+                e.recycle();
+                e = next;
+            }
+        } finally {
+            inFail = false;
+        }
+        unflushedEntry = null;
+        tailEntry = null;
+        clearNioBuffers();
+    }
+
+    private static void safeSuccess(ChannelPromise promise) {
+        if (!promise.trySuccess()) {
+            log.warn("Failed to mark a promise as success because it is done already: {}", promise);
+        }
+    }
+
+    private static void safeFail(ChannelPromise promise, Throwable cause) {
+        if (!promise.tryFailure(cause)) {
+            log.warn("Failed to mark a promise as failure because it's done already: {}", promise, cause);
+        }
+    }
+
+    /**
+     * 链表节点，写操作很频繁，所以对象池化
+     */
+    private static final class Entry {
+
+        private static final Recycler<Entry> RECYCLER = new Recycler<>() {
+            @Override
+            protected Entry newObject(Handle<Entry> handle) {
+                return new Entry(handle);
+            }
+        };
+
+        private final Recycler.Handle<Entry> handle;
+
+        private Entry next;
+
+        private Object msg;
+
+        /**
+         * msg内部的ByteBuffer，第一次gathering write时获取
+         */
+        private ByteBuffer buf;
+
+        /**
+         * msg由多个ByteBuffer组成时使用
+         */
+        private ByteBuffer[] bufs;
+
+        /**
+         * msg的ByteBuffer个数，-1表示还没有获取
+         */
+        private int count = -1;
+
+        private ChannelPromise promise;
+
+        private int pendingSize;
+
+        private boolean cancelled;
+
+        private Entry(Recycler.Handle<Entry> handle) {
+            this.handle = handle;
+        }
+
+        static Entry newInstance(Object msg, int size, ChannelPromise promise) {
+            Entry entry = RECYCLER.get();
+            entry.msg = msg;
+            entry.pendingSize = size + ENTRY_OVERHEAD;
+            entry.promise = promise;
+            return entry;
+        }
+
+        /**
+         * @return 需要从待发送字节数中减去的大小
+         */
+        int cancel() {
+            if (cancelled) {
+                return 0;
+            }
+            cancelled = true;
+            int pSize = pendingSize;
+            ReferenceCountUtils.safeRelease(msg);
+            msg = null;
+            buf = null;
+            bufs = null;
+            pendingSize = 0;
+            return pSize;
+        }
+
+        void recycle() {
+            next = null;
+            msg = null;
+            buf = null;
+            bufs = null;
+            count = -1;
+            promise = null;
+            pendingSize = 0;
+            cancelled = false;
+            handle.recycle(this);
+        }
+    }
+}
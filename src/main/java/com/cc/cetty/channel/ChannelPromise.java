@@ -0,0 +1,42 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.Future;
+import com.cc.cetty.async.GenericFutureListener;
+import com.cc.cetty.async.Promise;
+
+/**
+ * 可以设置结果的ChannelFuture
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface ChannelPromise extends ChannelFuture, Promise<Void> {
+
+    /**
+     * @return this
+     */
+    ChannelPromise setSuccess();
+
+    /**
+     * @return 是否设置成功
+     */
+    boolean trySuccess();
+
+    @Override
+    ChannelPromise setSuccess(Void result);
+
+    @Override
+    ChannelPromise setFailure(Throwable cause);
+
+    @Override
+    ChannelPromise addListener(GenericFutureListener<? extends Future<? super Void>> listener);
+
+    @Override
+    ChannelPromise removeListener(GenericFutureListener<? extends Future<? super Void>> listener);
+
+    @Override
+    ChannelPromise sync() throws InterruptedException;
+
+    @Override
+    ChannelPromise await() throws InterruptedException;
+}
@@ -0,0 +1,87 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.DefaultPromise;
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.async.Future;
+import com.cc.cetty.async.GenericFutureListener;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.Objects;
+
+/**
+ * 默认的ChannelPromise，没有指定执行器时由channel所属的事件循环通知监听器
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public class DefaultChannelPromise extends DefaultPromise<Void> implements ChannelPromise {
+
+    private final Channel channel;
+
+    private final EventExecutor executor;
+
+    public DefaultChannelPromise(Channel channel) {
+        this(channel, null);
+    }
+
+    public DefaultChannelPromise(Channel channel, EventExecutor executor) {
+        this.channel = AssertUtils.checkNotNull(channel, "Channel cannot be null");
+        this.executor = executor;
+    }
+
+    @Override
+    protected EventExecutor executor() {
+        return Objects.nonNull(executor) ? executor : channel.eventLoop();
+    }
+
+    @Override
+    public Channel channel() {
+        return channel;
+    }
+
+    @Override
+    public ChannelPromise setSuccess() {
+        return setSuccess(null);
+    }
+
+    @Override
+    public boolean trySuccess() {
+        return trySuccess(null);
+    }
+
+    @Override
+    public ChannelPromise setSuccess(Void result) {
+        super.setSuccess(result);
+        return this;
+    }
+
+    @Override
+    public ChannelPromise setFailure(Throwable cause) {
+        super.setFailure(cause);
+        return this;
+    }
+
+    @Override
+    public ChannelPromise addListener(GenericFutureListener<? extends Future<? super Void>> listener) {
+        super.addListener(listener);
+        return this;
+    }
+
+    @Override
+    public ChannelPromise removeListener(GenericFutureListener<? extends Future<? super Void>> listener) {
+        super.removeListener(listener);
+        return this;
+    }
+
+    @Override
+    public ChannelPromise sync() throws InterruptedException {
+        super.sync();
+        return this;
+    }
+
+    @Override
+    public ChannelPromise await() throws InterruptedException {
+        super.await();
+        return this;
+    }
+}
@@ -0,0 +1,159 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.buffer.AbstractReferenceCounted;
+import com.cc.cetty.buffer.IllegalReferenceCountException;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * 基于FileChannel的FileRegion，释放时关闭文件
+ * 用File创建时直到第一次发送才打开文件，排队等待发送的大量FileRegion不会占用文件描述符
+ *
+ * @author: cc
+ * @date: 2023/12/10
+ **/
+@Slf4j
+public class DefaultFileRegion extends AbstractReferenceCounted implements FileRegion {
+
+    private final File f;
+
+    private final long position;
+
+    private final long count;
+
+    private long transferred;
+
+    private FileChannel file;
+
+    /**
+     * @param file     文件，之后归该FileRegion所有
+     * @param position 起始位置
+     * @param count    字节数
+     */
+    public DefaultFileRegion(FileChannel file, long position, long count) {
+        this.file = AssertUtils.checkNotNull(file, "File cannot be null");
+        this.f = null;
+        this.position = checkZeroOrPositive(position, "position");
+        this.count = checkZeroOrPositive(count, "count");
+    }
+
+    /**
+     * @param f        文件，第一次发送时才打开
+     * @param position 起始位置
+     * @param count    字节数
+     */
+    public DefaultFileRegion(File f, long position, long count) {
+        this.f = AssertUtils.checkNotNull(f, "File cannot be null");
+        this.position = checkZeroOrPositive(position, "position");
+        this.count = checkZeroOrPositive(count, "count");
+    }
+
+    private static long checkZeroOrPositive(long v, String name) {
+        if (v < 0) {
+            throw new IllegalArgumentException(name + ": " + v + " (expected: >= 0)");
+        }
+        return v;
+    }
+
+    /**
+     * @return 文件是否已经打开
+     */
+    public boolean isOpen() {
+        return Objects.nonNull(file);
+    }
+
+    /**
+     * 打开文件，已经打开时什么都不做
+     *
+     * @throws IOException 打开失败
+     */
+    public void open() throws IOException {
+        if (!isOpen() && refCnt() > 0) {
+            file = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+        }
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long transferred() {
+        return transferred;
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        long count = this.count - position;
+        if (count < 0 || position < 0) {
+            throw new IllegalArgumentException("position out of range: " + position + " (expected: 0 - " + (this.count - 1) + ')');
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        if (refCnt() == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
+        open();
+        long written = file.transferTo(this.position + position, count, target);
+        if (written > 0) {
+            transferred += written;
+        } else if (written == 0) {
+            // 文件比预期的短时transferTo一直返回0，不检查的话会一直等OP_WRITE
+            validate(position);
+        }
+        return written;
+    }
+
+    private void validate(long position) throws IOException {
+        long size = file.size();
+        if (this.position + count > size) {
+            throw new IOException("Underlying file size " + size + " smaller than requested count " + count
+                    + " (position: " + this.position + ", transferred: " + position + ')');
+        }
+    }
+
+    @Override
+    protected void deallocate() {
+        FileChannel file = this.file;
+        if (Objects.isNull(file)) {
+            return;
+        }
+        this.file = null;
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.warn("Failed to close a file.", e);
+        }
+    }
+
+    @Override
+    public FileRegion retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public FileRegion retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultFileRegion(position: " + position + ", transferred: " + transferred + ", count: " + count + ')';
+    }
+}
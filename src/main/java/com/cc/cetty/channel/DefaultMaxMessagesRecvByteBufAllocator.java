@@ -0,0 +1,131 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ByteBufAllocator;
+
+/**
+ * 限制一次读事件最多读多少条消息，避免一个繁忙的连接占住事件循环，饿死同一个事件循环上的其他连接
+ * 对于普通的连接，上一次没有把buf读满说明socket中暂时没有数据了，也不再继续读
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public abstract class DefaultMaxMessagesRecvByteBufAllocator implements RecvByteBufAllocator {
+
+    /**
+     * 默认一次读事件最多读的消息数
+     */
+    public static final int DEFAULT_MAX_MESSAGES_PER_READ = Integer.getInteger("cetty.maxMessagesPerRead", 16);
+
+    /**
+     * 服务端channel读的是连接而不是字节，不看读到的字节数
+     */
+    private final boolean ignoreBytesRead;
+
+    private volatile int maxMessagesPerRead;
+
+    protected DefaultMaxMessagesRecvByteBufAllocator() {
+        this(DEFAULT_MAX_MESSAGES_PER_READ, false);
+    }
+
+    protected DefaultMaxMessagesRecvByteBufAllocator(int maxMessagesPerRead, boolean ignoreBytesRead) {
+        this.ignoreBytesRead = ignoreBytesRead;
+        maxMessagesPerRead(maxMessagesPerRead);
+    }
+
+    public int maxMessagesPerRead() {
+        return maxMessagesPerRead;
+    }
+
+    /**
+     * 下一次读事件开始时生效
+     *
+     * @param maxMessagesPerRead 一次读事件最多读的消息数
+     * @return this
+     */
+    public DefaultMaxMessagesRecvByteBufAllocator maxMessagesPerRead(int maxMessagesPerRead) {
+        if (maxMessagesPerRead <= 0) {
+            throw new IllegalArgumentException("maxMessagesPerRead: " + maxMessagesPerRead + " (expected: > 0)");
+        }
+        this.maxMessagesPerRead = maxMessagesPerRead;
+        return this;
+    }
+
+    /**
+     * 负责计数的Handle，子类只需要决定buf的大小
+     */
+    public abstract class MaxMessageHandle implements Handle {
+
+        private int maxMessagePerRead;
+
+        private int totalMessages;
+
+        private int totalBytesRead;
+
+        private int attemptedBytesRead;
+
+        private int lastBytesRead;
+
+        @Override
+        public ByteBuf allocate(ByteBufAllocator alloc) {
+            return alloc.ioBuffer(guess());
+        }
+
+        @Override
+        public void reset() {
+            maxMessagePerRead = maxMessagesPerRead();
+            totalMessages = totalBytesRead = 0;
+        }
+
+        @Override
+        public final void incMessagesRead(int numMessages) {
+            totalMessages += numMessages;
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            lastBytesRead = bytes;
+            if (bytes > 0) {
+                totalBytesRead += bytes;
+                if (totalBytesRead < 0) {
+                    totalBytesRead = Integer.MAX_VALUE;
+                }
+            }
+        }
+
+        @Override
+        public final int lastBytesRead() {
+            return lastBytesRead;
+        }
+
+        @Override
+        public void attemptedBytesRead(int bytes) {
+            attemptedBytesRead = bytes;
+        }
+
+        @Override
+        public final int attemptedBytesRead() {
+            return attemptedBytesRead;
+        }
+
+        @Override
+        public boolean continueReading() {
+            if (totalMessages >= maxMessagePerRead) {
+                return false;
+            }
+            // 上一次把buf读满了，socket中可能还有数据
+            return ignoreBytesRead || (totalBytesRead > 0 && attemptedBytesRead == lastBytesRead);
+        }
+
+        @Override
+        public void readComplete() {
+        }
+
+        /**
+         * @return 这次读事件一共读到的字节数
+         */
+        protected final int totalBytesRead() {
+            return totalBytesRead;
+        }
+    }
+}
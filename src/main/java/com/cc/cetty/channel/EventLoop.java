@@ -0,0 +1,29 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.config.CettyConfig;
+
+/**
+ * 事件循环，处理注册到自己上面的channel的所有I/O事件
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface EventLoop extends EventExecutor, EventLoopGroup {
+
+    @Override
+    EventLoopGroup parent();
+
+    @Override
+    default EventLoop next() {
+        return this;
+    }
+
+    /**
+     * 任何线程都可以调用，在事件循环线程之外调用时，刚发布的配置可能还在任务队列中，看到的是上一份快照
+     * 需要最新配置的地方直接用ConfigRepository.current()
+     *
+     * @return 事件循环当前使用的配置快照
+     */
+    CettyConfig config();
+}
@@ -0,0 +1,23 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.EventExecutorGroup;
+
+/**
+ * 事件循环组，channel注册到其中的一个事件循环上
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface EventLoopGroup extends EventExecutorGroup {
+
+    @Override
+    EventLoop next();
+
+    /**
+     * 把channel注册到选出的事件循环上
+     *
+     * @param channel channel
+     * @return future
+     */
+    ChannelFuture register(Channel channel);
+}
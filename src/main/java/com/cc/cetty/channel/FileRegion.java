@@ -0,0 +1,47 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.buffer.ReferenceCounted;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 文件中的一段，写出时用FileChannel#transferTo直接从page cache发送到socket，不经过用户态
+ * 和ByteBuf一样是引用计数的，写完后由channel释放
+ *
+ * @author: cc
+ * @date: 2023/12/10
+ **/
+public interface FileRegion extends ReferenceCounted {
+
+    /**
+     * @return 这一段在文件中的起始位置
+     */
+    long position();
+
+    /**
+     * @return 已经发送的字节数
+     */
+    long transferred();
+
+    /**
+     * @return 这一段的字节数
+     */
+    long count();
+
+    /**
+     * 把从position开始的剩余部分发送到target
+     *
+     * @param target   目标
+     * @param position 相对于这一段起始位置的偏移，一般就是transferred
+     * @return 实际发送的字节数
+     * @throws IOException I/O异常
+     */
+    long transferTo(WritableByteChannel target, long position) throws IOException;
+
+    @Override
+    FileRegion retain();
+
+    @Override
+    FileRegion retain(int increment);
+}
@@ -0,0 +1,35 @@
+package com.cc.cetty.channel;
+
+/**
+ * 每次读都分配固定大小的buf
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public class FixedRecvByteBufAllocator extends DefaultMaxMessagesRecvByteBufAllocator {
+
+    private final int bufferSize;
+
+    public FixedRecvByteBufAllocator(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize: " + bufferSize + " (expected: > 0)");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Handle newHandle() {
+        return new MaxMessageHandle() {
+            @Override
+            public int guess() {
+                return bufferSize;
+            }
+        };
+    }
+
+    @Override
+    public FixedRecvByteBufAllocator maxMessagesPerRead(int maxMessagesPerRead) {
+        super.maxMessagesPerRead(maxMessagesPerRead);
+        return this;
+    }
+}
@@ -0,0 +1,33 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.MultithreadEventExecutorGroup;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 多线程的事件循环组
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public abstract class MultithreadEventLoopGroup extends MultithreadEventExecutorGroup implements EventLoopGroup {
+
+    /**
+     * 默认的线程数是cpu核数的两倍
+     */
+    protected static final int DEFAULT_EVENT_LOOP_THREADS = Math.max(1, Integer.getInteger("cetty.eventLoopThreads", Runtime.getRuntime().availableProcessors() * 2));
+
+    protected MultithreadEventLoopGroup(int nThreads, Executor executor, Object... args) {
+        super(nThreads == 0 ? DEFAULT_EVENT_LOOP_THREADS : nThreads, executor, args);
+    }
+
+    @Override
+    public EventLoop next() {
+        return (EventLoop) super.next();
+    }
+
+    @Override
+    public ChannelFuture register(Channel channel) {
+        return next().register(channel);
+    }
+}
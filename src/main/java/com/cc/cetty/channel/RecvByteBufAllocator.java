@@ -0,0 +1,76 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ByteBufAllocator;
+
+/**
+ * 决定每次读socket时分配多大的buf，以及一次读事件中读多少次
+ * 每个channel持有一个自己的Handle，根据这个channel的历史读取情况调整
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public interface RecvByteBufAllocator {
+
+    /**
+     * @return 新的Handle，只在channel的事件循环中使用
+     */
+    Handle newHandle();
+
+    /**
+     * 一次读事件的过程：reset，然后循环allocate、读、lastBytesRead、incMessagesRead直到continueReading返回false，最后readComplete
+     */
+    interface Handle {
+
+        /**
+         * @param alloc 分配器
+         * @return 大小是guess的buf
+         */
+        ByteBuf allocate(ByteBufAllocator alloc);
+
+        /**
+         * @return 下一次读预计需要的字节数
+         */
+        int guess();
+
+        /**
+         * 一次读事件开始时调用，清空上一次的计数
+         */
+        void reset();
+
+        /**
+         * @param numMessages 这次读出的消息个数
+         */
+        void incMessagesRead(int numMessages);
+
+        /**
+         * @param bytes 这次实际读到的字节数，小于0表示连接已经关闭
+         */
+        void lastBytesRead(int bytes);
+
+        /**
+         * @return 上一次实际读到的字节数
+         */
+        int lastBytesRead();
+
+        /**
+         * @param bytes 这次尝试读的字节数，一般是buf的可写字节数
+         */
+        void attemptedBytesRead(int bytes);
+
+        /**
+         * @return 这次尝试读的字节数
+         */
+        int attemptedBytesRead();
+
+        /**
+         * @return 是否继续读
+         */
+        boolean continueReading();
+
+        /**
+         * 一次读事件结束时调用
+         */
+        void readComplete();
+    }
+}
@@ -0,0 +1,10 @@
+package com.cc.cetty.channel;
+
+/**
+ * 服务端channel的标记接口，它读到的消息是新接收的channel
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public interface ServerChannel extends Channel {
+}
@@ -0,0 +1,30 @@
+package com.cc.cetty.channel;
+
+/**
+ * 服务端channel用的分配器，读事件接收的是连接，只限制一次接收的连接数
+ *
+ * @author: cc
+ * @date: 2023/12/11
+ **/
+public class ServerChannelRecvByteBufAllocator extends DefaultMaxMessagesRecvByteBufAllocator {
+
+    public ServerChannelRecvByteBufAllocator() {
+        super(DEFAULT_MAX_MESSAGES_PER_READ, true);
+    }
+
+    @Override
+    public Handle newHandle() {
+        return new MaxMessageHandle() {
+            @Override
+            public int guess() {
+                return 128;
+            }
+        };
+    }
+
+    @Override
+    public ServerChannelRecvByteBufAllocator maxMessagesPerRead(int maxMessagesPerRead) {
+        super.maxMessagesPerRead(maxMessagesPerRead);
+        return this;
+    }
+}
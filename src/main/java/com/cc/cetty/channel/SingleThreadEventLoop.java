@@ -0,0 +1,119 @@
+package com.cc.cetty.channel;
+
+import com.cc.cetty.async.SingleThreadEventExecutor;
+import com.cc.cetty.config.CettyConfig;
+import com.cc.cetty.config.ConfigListener;
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 单线程的事件循环
+ * 线程启动时从ConfigRepository取一份配置快照，没有指定时使用ConfigRepository.DEFAULT，配置变化时新快照经过任务队列交给事件循环线程替换
+ * 快照只由事件循环线程写，但是AbstractChannel.config()等会在其他线程读，所以字段是volatile的
+ * 快照本身不可变，读到引用就能看到完整的配置，x86上volatile读和普通读的代价一样
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor implements EventLoop {
+
+    private final ConfigRepository configRepository;
+
+    private final ConfigListener configListener = this::configChanged;
+
+    /**
+     * 只由事件循环线程写，任何线程都可以读
+     */
+    private volatile CettyConfig config;
+
+    protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor) {
+        this(parent, executor, DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor, int maxPendingTasks) {
+        this(parent, executor, maxPendingTasks, ConfigRepository.DEFAULT);
+    }
+
+    protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor, ConfigRepository configRepository) {
+        this(parent, executor, DEFAULT_MAX_PENDING_TASKS, configRepository);
+    }
+
+    /**
+     * @param parent           事件循环组
+     * @param executor         创建线程的执行器
+     * @param maxPendingTasks  任务队列的容量
+     * @param configRepository 配置的来源，同一个组的事件循环一般共用一个
+     */
+    protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor, int maxPendingTasks, ConfigRepository configRepository) {
+        super(parent, executor, maxPendingTasks);
+        this.configRepository = AssertUtils.checkNotNull(configRepository, "Config repository cannot be null");
+        this.config = configRepository.current();
+    }
+
+    @Override
+    public CettyConfig config() {
+        return config;
+    }
+
+    @Override
+    protected void startup() {
+        // 先注册监听器再取快照，两者之间发布的配置也不会错过，重复的由版本号过滤
+        configRepository.addListener(configListener);
+        config = configRepository.current();
+        configApplied(config);
+    }
+
+    @Override
+    protected void cleanup() {
+        configRepository.removeListener(configListener);
+    }
+
+    /**
+     * 新配置发布后调用，可能在任何线程
+     *
+     * @param newConfig 新的配置
+     */
+    private void configChanged(CettyConfig newConfig) {
+        if (isShuttingDown()) {
+            return;
+        }
+        try {
+            execute(() -> applyConfig(newConfig));
+        } catch (RejectedExecutionException ignored) {
+            // 事件循环已经关闭
+        }
+    }
+
+    private void applyConfig(CettyConfig newConfig) {
+        assert inEventLoop();
+        if (newConfig.version() > config.version()) {
+            config = newConfig;
+            configApplied(newConfig);
+        }
+    }
+
+    /**
+     * 事件循环线程上调用，子类把需要的值复制到自己的字段中
+     *
+     * @param config 新的配置快照
+     */
+    protected void configApplied(CettyConfig config) {
+        // do something
+    }
+
+    @Override
+    public EventLoopGroup parent() {
+        return (EventLoopGroup) super.parent();
+    }
+
+    @Override
+    public ChannelFuture register(Channel channel) {
+        AssertUtils.checkNotNull(channel, "Channel cannot be null");
+        ChannelPromise promise = new DefaultChannelPromise(channel, this);
+        channel.unsafe().register(this, promise);
+        return promise;
+    }
+}
@@ -0,0 +1,47 @@
+package com.cc.cetty.channel;
+
+/**
+ * 写缓冲区的高低水位线
+ * 待发送的字节数超过高水位线时channel变为不可写，降到低水位线以下时恢复可写，每次变化都会触发channelWritabilityChanged
+ * 两条线之间留出间隔，避免在一条线附近来回触发
+ *
+ * @author: cc
+ * @date: 2023/12/09
+ **/
+public final class WriteBufferWaterMark {
+
+    private static final int DEFAULT_LOW_WATER_MARK = Integer.getInteger("cetty.writeBufferLowWaterMark", 32 * 1024);
+
+    private static final int DEFAULT_HIGH_WATER_MARK = Integer.getInteger("cetty.writeBufferHighWaterMark", 64 * 1024);
+
+    public static final WriteBufferWaterMark DEFAULT = new WriteBufferWaterMark(DEFAULT_LOW_WATER_MARK, DEFAULT_HIGH_WATER_MARK);
+
+    private final int low;
+
+    private final int high;
+
+    /**
+     * @param low  低水位线
+     * @param high 高水位线，不能小于低水位线
+     */
+    public WriteBufferWaterMark(int low, int high) {
+        if (low < 0 || high < low) {
+            throw new IllegalArgumentException("low: " + low + ", high: " + high + " (expected: 0 <= low <= high)");
+        }
+        this.low = low;
+        this.high = high;
+    }
+
+    public int low() {
+        return low;
+    }
+
+    public int high() {
+        return high;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBufferWaterMark(low: " + low + ", high: " + high + ')';
+    }
+}
@@ -0,0 +1,301 @@
+package com.cc.cetty.channel.epoll;
+
+import com.cc.cetty.channel.AbstractChannel;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.channel.EventLoop;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.util.Objects;
+
+/**
+ * 基于epoll的channel的骨架实现
+ * fd以边沿触发的方式注册到EpollEventLoop的epoll上，flags就是当前关注的事件，变化时用EPOLL_CTL_MOD更新
+ * 边沿触发只在状态变化时通知一次，所以读的时候要读到EAGAIN为止；因为读的次数到了上限而停下时，提交一个任务稍后接着读
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@Slf4j
+public abstract class AbstractEpollChannel extends AbstractChannel {
+
+    protected final LinuxSocket socket;
+
+    /**
+     * 开始读时要关注的事件
+     */
+    private final int readFlags;
+
+    /**
+     * 当前关注的事件，只在事件循环线程修改
+     */
+    private int flags = LinuxSyscalls.EPOLLET;
+
+    /**
+     * 是否已经加入了epoll
+     */
+    private boolean epollRegistered;
+
+    /**
+     * 是否已经提交了继续读的任务
+     */
+    private boolean readContinuationScheduled;
+
+    private final Runnable readContinuation = this::continueReading;
+
+    /**
+     * 正在进行中的连接
+     */
+    private ChannelPromise connectPromise;
+
+    private volatile InetSocketAddress local;
+
+    private volatile InetSocketAddress remote;
+
+    protected AbstractEpollChannel(Channel parent, LinuxSocket socket, int readFlags) {
+        super(parent);
+        this.socket = socket;
+        this.readFlags = readFlags;
+    }
+
+    /**
+     * @return 新的socket
+     */
+    static LinuxSocket newSocket() {
+        try {
+            return LinuxSocket.newStream();
+        } catch (IOException e) {
+            throw new ChannelException("Failed to open a socket.", e);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket.isOpen();
+    }
+
+    @Override
+    public EpollEventLoop eventLoop() {
+        return (EpollEventLoop) super.eventLoop();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        InetSocketAddress address = local;
+        if (Objects.isNull(address)) {
+            address = socket.localAddress();
+            local = address;
+        }
+        return address;
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        InetSocketAddress address = remote;
+        if (Objects.isNull(address)) {
+            address = socket.remoteAddress();
+            remote = address;
+        }
+        return address;
+    }
+
+    int fd() {
+        return socket.intValue();
+    }
+
+    int flags() {
+        return flags;
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof EpollEventLoop;
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        eventLoop().add(this);
+        epollRegistered = true;
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        setFlag(readFlags);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        ChannelPromise promise = connectPromise;
+        if (Objects.nonNull(promise)) {
+            promise.tryFailure(new ClosedChannelException());
+            connectPromise = null;
+        }
+        if (epollRegistered) {
+            // 先从epoll中删掉再关闭fd，否则fd被复用之后事件会交给这个channel
+            epollRegistered = false;
+            eventLoop().remove(this);
+        }
+        socket.close();
+    }
+
+    protected final void setFlag(int flag) throws IOException {
+        if ((flags & flag) != flag) {
+            flags |= flag;
+            modifyEvents();
+        }
+    }
+
+    protected final void clearFlag(int flag) throws IOException {
+        if ((flags & flag) != 0) {
+            flags &= ~flag;
+            modifyEvents();
+        }
+    }
+
+    protected final boolean isFlagSet(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    private void modifyEvents() throws IOException {
+        if (epollRegistered && isOpen()) {
+            eventLoop().modify(this);
+        }
+    }
+
+    /**
+     * 读的次数到了上限，socket里可能还有数据，边沿触发不会再通知，提交任务稍后继续读
+     */
+    protected final void scheduleReadContinuation() {
+        if (!readContinuationScheduled) {
+            readContinuationScheduled = true;
+            eventLoop().execute(readContinuation);
+        }
+    }
+
+    private void continueReading() {
+        readContinuationScheduled = false;
+        if (isOpen() && isFlagSet(readFlags)) {
+            unsafe().read();
+        }
+    }
+
+    /**
+     * 事件循环线程上调用，处理一次就绪事件
+     *
+     * @param events epoll返回的事件
+     */
+    void epollReady(int events) {
+        AbstractEpollUnsafe unsafe = (AbstractEpollUnsafe) unsafe();
+        if ((events & (LinuxSyscalls.EPOLLOUT | LinuxSyscalls.EPOLLERR)) != 0) {
+            if (Objects.nonNull(connectPromise)) {
+                unsafe.finishConnect();
+            } else if (isFlagSet(LinuxSyscalls.EPOLLOUT)) {
+                unsafe.forceFlush();
+            }
+        }
+        // 上面可能已经关闭了，fd随时可能被复用；还没有连接的socket注册之后就会报EPOLLHUP，这时不能读
+        if (isActive() && (events & (LinuxSyscalls.EPOLLIN | LinuxSyscalls.EPOLLERR | LinuxSyscalls.EPOLLHUP | LinuxSyscalls.EPOLLRDHUP)) != 0) {
+            unsafe.read();
+        }
+    }
+
+    /**
+     * 发起连接
+     *
+     * @param remoteAddress 远端地址
+     * @param localAddress  本地地址，可以为空
+     * @return 是否已经连接成功，false表示需要等待EPOLLOUT
+     * @throws Exception 连接失败
+     */
+    protected abstract boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception;
+
+    /**
+     * 完成连接
+     *
+     * @throws Exception 连接失败
+     */
+    protected abstract void doFinishConnect() throws Exception;
+
+    /**
+     * epoll unsafe的骨架实现，处理连接流程
+     */
+    protected abstract class AbstractEpollUnsafe extends AbstractUnsafe {
+
+        @Override
+        public final void forceFlush() {
+            // EPOLLOUT就绪，不用再检查
+            super.flush0();
+        }
+
+        @Override
+        protected final void flush0() {
+            // 已经在等待EPOLLOUT了，socket可写时由forceFlush继续写
+            if (!isFlagSet(LinuxSyscalls.EPOLLOUT)) {
+                super.flush0();
+            }
+        }
+
+        @Override
+        public final void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            assert eventLoop().inEventLoop();
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+            if (Objects.nonNull(connectPromise)) {
+                promise.tryFailure(new ConnectionPendingException());
+                return;
+            }
+            try {
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    // 等待EPOLLOUT就绪后在finishConnect中完成
+                    connectPromise = promise;
+                }
+            } catch (Throwable t) {
+                promise.tryFailure(t);
+                close(newPromise());
+            }
+        }
+
+        @Override
+        public final void finishConnect() {
+            assert eventLoop().inEventLoop();
+            ChannelPromise promise = connectPromise;
+            if (Objects.isNull(promise)) {
+                return;
+            }
+            try {
+                boolean wasActive = isActive();
+                // 连接完成后不再关注EPOLLOUT，之后只有写不完时才关注
+                clearFlag(LinuxSyscalls.EPOLLOUT);
+                doFinishConnect();
+                fulfillConnectPromise(promise, wasActive);
+            } catch (Throwable t) {
+                promise.tryFailure(t);
+                close(newPromise());
+            } finally {
+                connectPromise = null;
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            boolean active = isActive();
+            // 用户可能已经在监听器里关闭了channel
+            boolean promiseSet = promise.trySuccess();
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+            if (!promiseSet) {
+                close(newPromise());
+            }
+        }
+    }
+}
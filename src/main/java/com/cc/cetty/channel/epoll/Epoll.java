@@ -0,0 +1,120 @@
+package com.cc.cetty.channel.epoll;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * epoll传输是否可用
+ * 系统调用通过JDK 21的外部函数接口完成，实现类只在多版本jar的 META-INF/versions/21 下
+ * 需要同时满足：Linux、x86_64或者aarch64、JDK 21并且开启了 --enable-preview，没有设置 -Dcetty.noEpoll=true
+ * 任何一条不满足时isAvailable返回false，调用方应该回退到nio，见 com.cc.cetty.bootstrap.Transport
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@Slf4j
+public final class Epoll {
+
+    private static final String SYSCALLS_CLASS = "com.cc.cetty.channel.epoll.ForeignLinuxSyscalls";
+
+    /**
+     * 可用时不为null
+     */
+    static final LinuxSyscalls SYSCALLS;
+
+    /**
+     * struct epoll_event的大小，x86_64上是packed的，一共12字节；aarch64上按8字节对齐，一共16字节
+     */
+    static final int EVENT_SIZE;
+
+    /**
+     * epoll_event.data在结构体中的偏移
+     */
+    static final int EVENT_DATA_OFFSET;
+
+    /**
+     * 能否创建IPv6的socket，能的话所有socket都是双栈的，IPv4的地址按 ::ffff:a.b.c.d 处理
+     */
+    static final boolean IPV6;
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    static {
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+        boolean x86 = "amd64".equals(arch) || "x86_64".equals(arch);
+        EVENT_SIZE = x86 ? 12 : 16;
+        EVENT_DATA_OFFSET = x86 ? 4 : 8;
+
+        LinuxSyscalls syscalls = null;
+        Throwable cause = null;
+        boolean ipv6 = false;
+        if (Boolean.getBoolean("cetty.noEpoll")) {
+            cause = new UnsupportedOperationException("Epoll disabled by -Dcetty.noEpoll=true");
+        } else if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux")) {
+            cause = new UnsupportedOperationException("Epoll is only supported on Linux");
+        } else if (!x86 && !"aarch64".equals(arch)) {
+            cause = new UnsupportedOperationException("Epoll is not supported on " + arch);
+        } else {
+            try {
+                syscalls = (LinuxSyscalls) Class.forName(SYSCALLS_CLASS, true, Epoll.class.getClassLoader())
+                        .getDeclaredConstructor().newInstance();
+                // seccomp之类的限制可能让epoll不能用，先试一次
+                int fd = NativeIoException.check("epoll_create1", syscalls.epollCreate());
+                syscalls.close(fd);
+                int socket = syscalls.socketStream(true);
+                if (socket >= 0) {
+                    ipv6 = true;
+                    syscalls.close(socket);
+                }
+            } catch (ClassNotFoundException e) {
+                syscalls = null;
+                cause = new UnsupportedOperationException("Epoll requires JDK 21 with --enable-preview and the multi-release classes", e);
+            } catch (Throwable t) {
+                // JDK 21之前是UnsupportedClassVersionError，没有开启预览特性也是
+                syscalls = null;
+                cause = t;
+            }
+        }
+        SYSCALLS = syscalls;
+        IPV6 = ipv6;
+        UNAVAILABILITY_CAUSE = cause;
+        if (Objects.isNull(cause)) {
+            log.debug("Epoll is available, ipv6: {}", ipv6);
+        } else {
+            log.debug("Epoll is unavailable", cause);
+        }
+    }
+
+    private Epoll() {
+    }
+
+    /**
+     * @return epoll传输是否可用
+     */
+    public static boolean isAvailable() {
+        return Objects.isNull(UNAVAILABILITY_CAUSE);
+    }
+
+    /**
+     * 不可用时抛出UnsatisfiedLinkError，原因是unavailabilityCause
+     */
+    public static void ensureAvailability() {
+        if (!isAvailable()) {
+            throw (Error) new UnsatisfiedLinkError("Failed to load the epoll transport").initCause(UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * @return 不可用的原因，可用时为null
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    static String strerror(int errno) {
+        LinuxSyscalls syscalls = SYSCALLS;
+        return Objects.nonNull(syscalls) ? syscalls.strerror(errno) : "errno " + errno;
+    }
+}
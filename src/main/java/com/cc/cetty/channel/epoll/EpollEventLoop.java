@@ -0,0 +1,359 @@
+package com.cc.cetty.channel.epoll;
+
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.channel.EventLoopGroup;
+import com.cc.cetty.channel.SingleThreadEventLoop;
+import com.cc.cetty.config.CettyConfig;
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于epoll的事件循环，和NioEventLoop一样，一个线程同时处理I/O事件和任务队列中的任务，ioRatio决定两者的时间分配
+ * 所有fd都以边沿触发的方式注册，一个就绪事件只通知一次，不需要每次处理完再修改关注的事件
+ * 其他线程提交任务时写eventfd唤醒，和NioEventLoop一样只有线程阻塞在epoll_wait上时才写
+ * 定时任务用timerfd唤醒，epoll_wait一直阻塞，精度是纳秒，也不用在最近的定时任务没有变化时反复计算超时时间
+ * eventfd和timerfd也是边沿触发的，每次写入或者到期都会通知，所以从来不读
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@Slf4j
+public final class EpollEventLoop extends SingleThreadEventLoop {
+
+    private static final int INITIAL_MAX_EVENTS = 64;
+
+    private static final int MAX_EVENTS_LIMIT = 4096;
+
+    /**
+     * 堆内存读写socket时中转用的直接内存大小
+     */
+    private static final int DIRECT_SCRATCH_CAPACITY = 64 * 1024;
+
+    private final int epollFd;
+
+    private final int eventFd;
+
+    private final int timerFd;
+
+    /**
+     * 为false表示线程准备阻塞或者正阻塞在epoll_wait上，提交任务的线程把它改成true并写eventfd
+     * 线程醒着的时候一直是true，这时提交任务不需要唤醒，也就没有一次写eventfd的系统调用
+     */
+    private final AtomicBoolean wakenUp = new AtomicBoolean(true);
+
+    /**
+     * 就绪事件，每个Epoll.EVENT_SIZE字节，一次取满了就扩容
+     */
+    private ByteBuffer events;
+
+    private int maxEvents;
+
+    /**
+     * 按fd下标存放注册的channel，只有事件循环线程读写
+     */
+    private AbstractEpollChannel[] channels = new AbstractEpollChannel[64];
+
+    /**
+     * 编码地址用的直接内存，只有事件循环线程使用
+     */
+    private final ByteBuffer addressScratch = LinuxSocket.newAddressBuffer();
+
+    private ByteBuffer directScratch;
+
+    /**
+     * timerfd当前对应的定时任务截止时间，-1表示没有设置
+     */
+    private long armedDeadlineNanos = -1;
+
+    /**
+     * I/O时间占一轮循环的百分比，只有事件循环线程读写
+     */
+    private int ioRatio;
+
+    EpollEventLoop(EventLoopGroup parent, Executor executor, ConfigRepository configRepository) {
+        super(parent, executor, configRepository);
+        this.ioRatio = config().ioRatio();
+        int epollFd = -1;
+        int eventFd = -1;
+        int timerFd = -1;
+        boolean success = false;
+        try {
+            epollFd = NativeIoException.check("epoll_create1", Epoll.SYSCALLS.epollCreate());
+            eventFd = NativeIoException.check("eventfd", Epoll.SYSCALLS.eventFd());
+            timerFd = NativeIoException.check("timerfd_create", Epoll.SYSCALLS.timerFd());
+            NativeIoException.check("epoll_ctl", Epoll.SYSCALLS.epollCtl(epollFd, LinuxSyscalls.EPOLL_CTL_ADD, eventFd, LinuxSyscalls.EPOLLIN | LinuxSyscalls.EPOLLET));
+            NativeIoException.check("epoll_ctl", Epoll.SYSCALLS.epollCtl(epollFd, LinuxSyscalls.EPOLL_CTL_ADD, timerFd, LinuxSyscalls.EPOLLIN | LinuxSyscalls.EPOLLET));
+            success = true;
+        } catch (IOException e) {
+            throw new ChannelException("Failed to create the epoll file descriptors", e);
+        } finally {
+            if (!success) {
+                closeQuietly(epollFd);
+                closeQuietly(eventFd);
+                closeQuietly(timerFd);
+            }
+        }
+        this.epollFd = epollFd;
+        this.eventFd = eventFd;
+        this.timerFd = timerFd;
+        this.maxEvents = INITIAL_MAX_EVENTS;
+        this.events = newEvents(INITIAL_MAX_EVENTS);
+    }
+
+    private static ByteBuffer newEvents(int maxEvents) {
+        return ByteBuffer.allocateDirect(maxEvents * Epoll.EVENT_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return I/O时间占一轮循环的百分比，在事件循环线程之外调用可能看到旧的值
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * 设置I/O时间占一轮循环的百分比，100表示不限制任务的执行时间
+     * 不在事件循环线程时提交一个任务去修改，之后发布的配置会覆盖这里设置的值
+     *
+     * @param ioRatio 1到100之间
+     */
+    public void setIoRatio(int ioRatio) {
+        AssertUtils.checkInRange(ioRatio, 1, 100, "ioRatio");
+        if (inEventLoop()) {
+            this.ioRatio = ioRatio;
+        } else {
+            execute(() -> this.ioRatio = ioRatio);
+        }
+    }
+
+    @Override
+    protected void configApplied(CettyConfig config) {
+        this.ioRatio = config.ioRatio();
+    }
+
+    /**
+     * @return 编码地址用的直接内存，只能在事件循环线程使用
+     */
+    ByteBuffer addressScratch() {
+        assert inEventLoop();
+        return addressScratch;
+    }
+
+    /**
+     * @return 堆内存读写socket时中转用的直接内存，只能在事件循环线程使用
+     */
+    ByteBuffer directScratch() {
+        assert inEventLoop();
+        if (Objects.isNull(directScratch)) {
+            directScratch = ByteBuffer.allocateDirect(DIRECT_SCRATCH_CAPACITY);
+        }
+        return directScratch.clear();
+    }
+
+    void add(AbstractEpollChannel ch) throws IOException {
+        assert inEventLoop();
+        int fd = ch.fd();
+        NativeIoException.check("epoll_ctl", Epoll.SYSCALLS.epollCtl(epollFd, LinuxSyscalls.EPOLL_CTL_ADD, fd, ch.flags()));
+        if (fd >= channels.length) {
+            channels = Arrays.copyOf(channels, Math.max(channels.length << 1, fd + 1));
+        }
+        channels[fd] = ch;
+    }
+
+    void modify(AbstractEpollChannel ch) throws IOException {
+        assert inEventLoop();
+        NativeIoException.check("epoll_ctl", Epoll.SYSCALLS.epollCtl(epollFd, LinuxSyscalls.EPOLL_CTL_MOD, ch.fd(), ch.flags()));
+    }
+
+    void remove(AbstractEpollChannel ch) {
+        assert inEventLoop();
+        int fd = ch.fd();
+        if (fd < channels.length && channels[fd] == ch) {
+            channels[fd] = null;
+        }
+        // 关闭fd也会把它从epoll中删掉，这里失败了也没有关系
+        Epoll.SYSCALLS.epollCtl(epollFd, LinuxSyscalls.EPOLL_CTL_DEL, fd, 0);
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && wakenUp.compareAndSet(false, true)) {
+            Epoll.SYSCALLS.eventFdWrite(eventFd, 1L);
+        }
+    }
+
+    @Override
+    protected void run() {
+        for (; ; ) {
+            try {
+                int ready = hasTasks() ? epollWaitNow() : epollWait();
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    try {
+                        if (ready > 0) {
+                            final long ioStartTime = System.nanoTime();
+                            try {
+                                processReady(ready);
+                            } finally {
+                                metrics().recordIo(ready, System.nanoTime() - ioStartTime);
+                            }
+                        }
+                    } finally {
+                        runAllTasks();
+                    }
+                } else if (ready > 0) {
+                    final long ioStartTime = System.nanoTime();
+                    try {
+                        processReady(ready);
+                    } finally {
+                        // 按照I/O花费的时间和ioRatio计算这一轮可以执行任务的时间
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        metrics().recordIo(ready, ioTime);
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                } else {
+                    // 没有I/O事件，最少执行一批任务
+                    runAllTasks(0);
+                }
+            } catch (Throwable t) {
+                log.warn("Unexpected exception in the epoll loop.", t);
+                sleepAfterFailure();
+            }
+            if (isShuttingDown()) {
+                closeAll();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 阻塞在epoll_wait上，直到有I/O事件、被eventfd唤醒或者timerfd到期
+     * 进入时把wakenUp置为false，允许其他线程唤醒，返回时再置为true
+     *
+     * @return 就绪事件的数量
+     * @throws IOException epoll_wait失败
+     */
+    private int epollWait() throws IOException {
+        // 先置为false再检查任务队列，和提交任务的线程先入队再检查wakenUp配合，两边至少有一边能看到对方
+        wakenUp.set(false);
+        try {
+            if (hasTasks() || isShuttingDown()) {
+                return epollWaitNow();
+            }
+            long deadlineNanos = nextScheduledTaskDeadlineNanos();
+            if (deadlineNanos != armedDeadlineNanos) {
+                // 最近的定时任务变了才重设timerfd，周期任务和没有定时任务时不会每轮都多一次系统调用
+                long delayNanos = 0;
+                if (deadlineNanos != -1) {
+                    delayNanos = deadlineNanos - scheduleNanoTime();
+                    if (delayNanos <= 0) {
+                        return epollWaitNow();
+                    }
+                }
+                NativeIoException.check("timerfd_settime", Epoll.SYSCALLS.timerFdSetTime(timerFd, delayNanos));
+                armedDeadlineNanos = deadlineNanos;
+            }
+            int ready = epollWait0(-1);
+            metrics().recordSelectWakeup();
+            return ready;
+        } finally {
+            // 提交任务的线程如果在epoll_wait返回之后才写eventfd，下一次epoll_wait会立即返回一次，没有其他影响
+            wakenUp.set(true);
+        }
+    }
+
+    private int epollWaitNow() throws IOException {
+        return epollWait0(0);
+    }
+
+    private int epollWait0(int timeoutMillis) throws IOException {
+        int ready = Epoll.SYSCALLS.epollWait(epollFd, events, maxEvents, timeoutMillis);
+        if (ready == -LinuxSyscalls.EINTR) {
+            return 0;
+        }
+        return NativeIoException.check("epoll_wait", ready);
+    }
+
+    private void processReady(int ready) {
+        ByteBuffer events = this.events;
+        for (int i = 0; i < ready; i++) {
+            int offset = i * Epoll.EVENT_SIZE;
+            int ev = events.getInt(offset);
+            int fd = events.getInt(offset + Epoll.EVENT_DATA_OFFSET);
+            if (fd == eventFd) {
+                continue;
+            }
+            if (fd == timerFd) {
+                // 一次性的定时器，到期之后需要重新设置
+                armedDeadlineNanos = -1;
+                continue;
+            }
+            AbstractEpollChannel ch = fd < channels.length ? channels[fd] : null;
+            if (Objects.isNull(ch)) {
+                // 同一批事件中前面的处理已经把它关闭了
+                continue;
+            }
+            try {
+                ch.epollReady(ev);
+            } catch (Throwable t) {
+                log.warn("Unexpected exception while processing an epoll event of {}", ch, t);
+                ch.unsafe().close(ch.newPromise());
+            }
+        }
+        if (ready == maxEvents && maxEvents < MAX_EVENTS_LIMIT) {
+            // 一次取满了，下一次多取一些
+            maxEvents <<= 1;
+            this.events = newEvents(maxEvents);
+        }
+    }
+
+    private void closeAll() {
+        List<AbstractEpollChannel> open = new ArrayList<>();
+        for (AbstractEpollChannel ch : channels) {
+            if (Objects.nonNull(ch)) {
+                open.add(ch);
+            }
+        }
+        for (AbstractEpollChannel ch : open) {
+            ch.unsafe().close(ch.newPromise());
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        super.cleanup();
+        closeQuietly(timerFd);
+        closeQuietly(eventFd);
+        closeQuietly(epollFd);
+    }
+
+    private static void closeQuietly(int fd) {
+        if (fd >= 0) {
+            int res = Epoll.SYSCALLS.close(fd);
+            if (res < 0) {
+                log.warn("Failed to close a file descriptor: {}", Epoll.strerror(-res));
+            }
+        }
+    }
+
+    private static void sleepAfterFailure() {
+        // 避免连续失败时占满cpu
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
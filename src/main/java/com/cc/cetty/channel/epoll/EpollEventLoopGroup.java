@@ -0,0 +1,70 @@
+package com.cc.cetty.channel.epoll;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.async.ThreadPerTaskExecutor;
+import com.cc.cetty.channel.MultithreadEventLoopGroup;
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.local.DefaultThreadFactory;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 基于epoll的事件循环组，子事件循环是EpollEventLoop
+ * epoll不可用时构造失败，抛出UnsatisfiedLinkError，不确定时先用Epoll.isAvailable判断或者用Transport选择
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+public class EpollEventLoopGroup extends MultithreadEventLoopGroup {
+
+    public EpollEventLoopGroup() {
+        this(0);
+    }
+
+    public EpollEventLoopGroup(int nThreads) {
+        this(nThreads, new DefaultThreadFactory(EpollEventLoopGroup.class));
+    }
+
+    public EpollEventLoopGroup(int nThreads, ThreadFactory threadFactory) {
+        this(nThreads, new ThreadPerTaskExecutor(threadFactory));
+    }
+
+    /**
+     * @param nThreads         线程数，0表示默认值
+     * @param configRepository 这个组的事件循环读取配置的来源
+     */
+    public EpollEventLoopGroup(int nThreads, ConfigRepository configRepository) {
+        this(nThreads, new ThreadPerTaskExecutor(new DefaultThreadFactory(EpollEventLoopGroup.class)), configRepository);
+    }
+
+    public EpollEventLoopGroup(int nThreads, Executor executor) {
+        this(nThreads, executor, ConfigRepository.DEFAULT);
+    }
+
+    public EpollEventLoopGroup(int nThreads, Executor executor, ConfigRepository configRepository) {
+        super(nThreads, ensureAvailability(executor), AssertUtils.checkNotNull(configRepository, "Config repository cannot be null"));
+    }
+
+    private static Executor ensureAvailability(Executor executor) {
+        Epoll.ensureAvailability();
+        return executor;
+    }
+
+    /**
+     * 设置所有子事件循环的ioRatio
+     *
+     * @param ioRatio I/O时间占一轮循环的百分比
+     */
+    public void setIoRatio(int ioRatio) {
+        for (EventExecutor e : this) {
+            ((EpollEventLoop) e).setIoRatio(ioRatio);
+        }
+    }
+
+    @Override
+    protected EventExecutor newChild(Executor executor, Object... args) {
+        return new EpollEventLoop(this, executor, (ConfigRepository) args[0]);
+    }
+}
@@ -0,0 +1,124 @@
+package com.cc.cetty.channel.epoll;
+
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.channel.ChannelOutboundBuffer;
+import com.cc.cetty.channel.RecvByteBufAllocator;
+import com.cc.cetty.channel.ServerChannel;
+import com.cc.cetty.channel.ServerChannelRecvByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 基于epoll的服务端channel，读事件就是接收新的连接
+ * 每接收一个连接，就把对应的EpollSocketChannel作为消息交给pipeline
+ * 边沿触发下要accept到EAGAIN为止，一次接收的连接数到了上限时提交任务稍后继续
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@Slf4j
+public class EpollServerSocketChannel extends AbstractEpollChannel implements ServerChannel {
+
+    private static final int BACKLOG = Integer.getInteger("cetty.serverBacklog", 128);
+
+    private volatile boolean active;
+
+    public EpollServerSocketChannel() {
+        super(null, newSocket(), LinuxSyscalls.EPOLLIN);
+        try {
+            socket.setIntOption(LinuxSyscalls.SOL_SOCKET, LinuxSyscalls.SO_REUSEADDR, 1);
+        } catch (Exception e) {
+            log.debug("Failed to set SO_REUSEADDR on {}", socket, e);
+        }
+        // 一次读事件最多接收的连接数，避免一个服务端channel占住事件循环
+        recvByteBufAllocator(new ServerChannelRecvByteBufAllocator());
+    }
+
+    @Override
+    public boolean isActive() {
+        return active && isOpen();
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return null;
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new EpollServerUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        socket.bind((InetSocketAddress) localAddress, eventLoop().addressScratch());
+        socket.listen(BACKLOG);
+        active = true;
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void doFinishConnect() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) {
+        throw new UnsupportedOperationException();
+    }
+
+    private final class EpollServerUnsafe extends AbstractEpollUnsafe {
+
+        @Override
+        public void read() {
+            assert eventLoop().inEventLoop();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final ByteBuffer address = eventLoop().addressScratch();
+            allocHandle.reset();
+            Throwable exception = null;
+            boolean drained = false;
+            try {
+                do {
+                    int fd = socket.accept(address);
+                    if (fd < 0) {
+                        drained = true;
+                        break;
+                    }
+                    allocHandle.incMessagesRead(1);
+                    LinuxSocket child = new LinuxSocket(fd, socket.isIpv6());
+                    try {
+                        pipeline().fireChannelRead(new EpollSocketChannel(EpollServerSocketChannel.this, child, true));
+                    } catch (ChannelException e) {
+                        log.warn("Failed to create a new channel from an accepted socket.", e);
+                        child.close();
+                    }
+                } while (allocHandle.continueReading());
+            } catch (Throwable t) {
+                exception = t;
+            }
+            allocHandle.readComplete();
+            pipeline().fireChannelReadComplete();
+            if (Objects.nonNull(exception)) {
+                pipeline().fireExceptionCaught(exception);
+                // 服务端socket出错不一定要关闭，只有底层已经关闭时才走关闭流程
+                closeIfClosed();
+            } else if (!drained) {
+                // 边沿触发不会再通知还在排队的连接
+                scheduleReadContinuation();
+            }
+        }
+    }
+}
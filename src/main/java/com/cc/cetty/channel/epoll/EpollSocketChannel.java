@@ -0,0 +1,381 @@
+package com.cc.cetty.channel.epoll;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ByteBufAllocator;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelOutboundBuffer;
+import com.cc.cetty.channel.FileRegion;
+import com.cc.cetty.channel.RecvByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * 基于epoll的客户端channel，服务端接收的连接也是这个类型，行为和NioSocketChannel一致
+ * 读写直接对fd做read、write、writev，写不完时关注EPOLLOUT，写完了再取消
+ * 系统调用只接受直接内存，写出的堆内存在filterOutboundMessage中复制到直接内存，包括含有堆内组件的组合buf
+ * FileRegion没有sendfile，经过JDK的transferTo读到直接内存再写出
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@Slf4j
+public class EpollSocketChannel extends AbstractEpollChannel {
+
+    /**
+     * 一次flush最多写多少次，写不完就让出事件循环，避免一个连接占住事件循环
+     */
+    private static final int WRITE_SPIN_COUNT = 16;
+
+    /**
+     * 写次数减去它之后一定小于0，表示需要等EPOLLOUT
+     */
+    private static final int WRITE_STATUS_SNDBUF_FULL = Integer.MAX_VALUE;
+
+    /**
+     * 一次gathering write最多写多少字节，根据每次实际写出的字节数调整，初始是socket发送缓冲区的两倍
+     */
+    private int maxBytesPerGatheringWrite = Integer.MAX_VALUE;
+
+    private final Runnable flushTask = () -> ((AbstractEpollUnsafe) unsafe()).flush0();
+
+    /**
+     * 给ByteBuf和FileRegion读写用的通道
+     */
+    private final SocketByteChannel byteChannel = new SocketByteChannel();
+
+    private volatile boolean active;
+
+    public EpollSocketChannel() {
+        this(null, newSocket(), false);
+    }
+
+    EpollSocketChannel(Channel parent, LinuxSocket socket, boolean active) {
+        super(parent, socket, LinuxSyscalls.EPOLLIN | LinuxSyscalls.EPOLLRDHUP);
+        this.active = active;
+        try {
+            socket.setIntOption(LinuxSyscalls.IPPROTO_TCP, LinuxSyscalls.TCP_NODELAY, 1);
+            int sendBufferSize = socket.getIntOption(LinuxSyscalls.SOL_SOCKET, LinuxSyscalls.SO_SNDBUF);
+            if (sendBufferSize > 0) {
+                maxBytesPerGatheringWrite = sendBufferSize << 1;
+            }
+        } catch (IOException e) {
+            log.debug("Failed to set TCP_NODELAY on {}", socket, e);
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        return active && isOpen();
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new EpollSocketUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        socket.bind((InetSocketAddress) localAddress, eventLoop().addressScratch());
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (Objects.nonNull(localAddress)) {
+            doBind(localAddress);
+        }
+        boolean connected = socket.connect((InetSocketAddress) remoteAddress, eventLoop().addressScratch());
+        if (connected) {
+            active = true;
+        } else {
+            setFlag(LinuxSyscalls.EPOLLOUT);
+        }
+        return connected;
+    }
+
+    @Override
+    protected void doFinishConnect() throws Exception {
+        socket.finishConnect();
+        active = true;
+    }
+
+    /**
+     * 系统调用只能用直接内存，不是直接内存的都复制一份
+     */
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            if (buf.isDirect()) {
+                return buf;
+            }
+            ByteBuf direct = alloc().directBuffer(buf.readableBytes());
+            try {
+                direct.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+            } catch (Throwable t) {
+                // 原来的buf由调用方释放，这里只释放新分配的
+                direct.release();
+                throw t;
+            }
+            // 复制成功之后原来的buf才归这里释放，失败时交给调用方释放，避免释放两次
+            buf.release();
+            return direct;
+        }
+        if (msg instanceof FileRegion) {
+            return msg;
+        }
+        if (msg instanceof byte[]) {
+            byte[] bytes = (byte[]) msg;
+            ByteBuf direct = alloc().directBuffer(bytes.length);
+            try {
+                return direct.writeBytes(bytes);
+            } catch (Throwable t) {
+                direct.release();
+                throw t;
+            }
+        }
+        if (msg instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) msg;
+            ByteBuf direct = alloc().directBuffer(buffer.remaining());
+            try {
+                return direct.writeBytes(buffer);
+            } catch (Throwable t) {
+                direct.release();
+                throw t;
+            }
+        }
+        throw new UnsupportedOperationException("Unsupported message type: " + msg.getClass().getName());
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        int writeSpinCount = WRITE_SPIN_COUNT;
+        do {
+            if (in.isEmpty()) {
+                // 都写完了
+                clearFlag(LinuxSyscalls.EPOLLOUT);
+                return;
+            }
+            ByteBuffer[] nioBuffers = in.nioBuffers(LinuxSyscalls.IOV_MAX, maxBytesPerGatheringWrite);
+            int nioBufferCount = in.nioBufferCount();
+            switch (nioBufferCount) {
+                case 0:
+                    // 只有空的buf，或者下一条是FileRegion
+                    writeSpinCount -= doWrite0(in);
+                    break;
+                case 1: {
+                    ByteBuffer buffer = nioBuffers[0];
+                    int attemptedBytes = buffer.remaining();
+                    int localWrittenBytes = socket.write(buffer);
+                    if (localWrittenBytes <= 0) {
+                        incompleteWrite(true);
+                        return;
+                    }
+                    eventLoop().metrics().recordBytesWritten(localWrittenBytes);
+                    adjustMaxBytesPerGatheringWrite(attemptedBytes, localWrittenBytes);
+                    in.removeBytes(localWrittenBytes);
+                    writeSpinCount--;
+                    break;
+                }
+                default: {
+                    // 多个buf一次writev写出去
+                    long attemptedBytes = in.nioBufferSize();
+                    long localWrittenBytes = socket.writev(nioBuffers, 0, nioBufferCount);
+                    if (localWrittenBytes <= 0) {
+                        incompleteWrite(true);
+                        return;
+                    }
+                    eventLoop().metrics().recordBytesWritten(localWrittenBytes);
+                    adjustMaxBytesPerGatheringWrite(attemptedBytes, localWrittenBytes);
+                    in.removeBytes(localWrittenBytes);
+                    writeSpinCount--;
+                    break;
+                }
+            }
+        } while (writeSpinCount > 0);
+        incompleteWrite(writeSpinCount < 0);
+    }
+
+    /**
+     * 写第一条不是ByteBuf的消息
+     *
+     * @return 消耗的写次数，WRITE_STATUS_SNDBUF_FULL表示socket发送缓冲区满了，需要等EPOLLOUT
+     */
+    private int doWrite0(ChannelOutboundBuffer in) throws IOException {
+        Object msg = in.current();
+        if (msg instanceof FileRegion) {
+            FileRegion region = (FileRegion) msg;
+            if (region.transferred() >= region.count()) {
+                in.remove();
+                return 0;
+            }
+            long localWrittenBytes = region.transferTo(byteChannel, region.transferred());
+            if (localWrittenBytes > 0) {
+                eventLoop().metrics().recordBytesWritten(localWrittenBytes);
+                if (region.transferred() >= region.count()) {
+                    in.remove();
+                }
+                return 1;
+            }
+            return WRITE_STATUS_SNDBUF_FULL;
+        }
+        // 空的buf直接删掉
+        in.removeBytes(0);
+        return 1;
+    }
+
+    /**
+     * 这次写满了就试着多写一些，只写出一半都不到说明发送缓冲区快满了，少写一些
+     */
+    private void adjustMaxBytesPerGatheringWrite(long attempted, long written) {
+        if (attempted == written) {
+            if (attempted << 1 > maxBytesPerGatheringWrite) {
+                maxBytesPerGatheringWrite = (int) Math.min(Integer.MAX_VALUE, attempted << 1);
+            }
+        } else if (attempted > 4096 && written < attempted >>> 1) {
+            maxBytesPerGatheringWrite = (int) (attempted >>> 1);
+        }
+    }
+
+    /**
+     * @param setEpollOut socket发送缓冲区满了，等待EPOLLOUT；否则只是写的次数用完了，提交一个任务稍后继续写
+     */
+    private void incompleteWrite(boolean setEpollOut) throws IOException {
+        if (setEpollOut) {
+            setFlag(LinuxSyscalls.EPOLLOUT);
+        } else {
+            clearFlag(LinuxSyscalls.EPOLLOUT);
+            eventLoop().execute(flushTask);
+        }
+    }
+
+    private final class EpollSocketUnsafe extends AbstractEpollUnsafe {
+
+        @Override
+        public void read() {
+            assert eventLoop().inEventLoop();
+            final ByteBufAllocator allocator = alloc();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            allocHandle.reset();
+            boolean close = false;
+            boolean drained = false;
+            ByteBuf byteBuf = null;
+            long totalBytesRead = 0;
+            try {
+                do {
+                    byteBuf = allocHandle.allocate(allocator);
+                    allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+                    allocHandle.lastBytesRead(byteBuf.writeBytes(byteChannel, byteBuf.writableBytes()));
+                    if (allocHandle.lastBytesRead() <= 0) {
+                        byteBuf.release();
+                        byteBuf = null;
+                        close = allocHandle.lastBytesRead() < 0;
+                        drained = true;
+                        break;
+                    }
+                    totalBytesRead += allocHandle.lastBytesRead();
+                    allocHandle.incMessagesRead(1);
+                    ByteBuf msg = byteBuf;
+                    byteBuf = null;
+                    pipeline().fireChannelRead(msg);
+                    // 没有读满说明socket中暂时没有数据了，读的次数到了上限也让给其他连接
+                } while (allocHandle.continueReading());
+                allocHandle.readComplete();
+                pipeline().fireChannelReadComplete();
+            } catch (IOException e) {
+                if (Objects.nonNull(byteBuf)) {
+                    byteBuf.release();
+                }
+                allocHandle.readComplete();
+                pipeline().fireChannelReadComplete();
+                pipeline().fireExceptionCaught(e);
+                close = true;
+            }
+            if (totalBytesRead > 0) {
+                eventLoop().metrics().recordBytesRead(totalBytesRead);
+            }
+            if (close) {
+                close(newPromise());
+            } else if (!drained && allocHandle.lastBytesRead() == allocHandle.attemptedBytesRead()) {
+                // 最后一次把buf读满了，边沿触发不会再通知剩下的数据
+                scheduleReadContinuation();
+            }
+        }
+    }
+
+    /**
+     * 把socket包装成jdk的通道，ByteBuf.writeBytes和FileRegion.transferTo用
+     * 直接内存直接读写，堆内存经过事件循环的中转直接内存
+     */
+    private final class SocketByteChannel implements ScatteringByteChannel, WritableByteChannel {
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (dst.isDirect()) {
+                return socket.read(dst);
+            }
+            ByteBuffer scratch = eventLoop().directScratch();
+            scratch.limit(Math.min(scratch.capacity(), dst.remaining()));
+            int n = socket.read(scratch);
+            if (n > 0) {
+                dst.put(scratch.flip());
+            }
+            return n;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                if (!dsts[i].hasRemaining()) {
+                    continue;
+                }
+                int n = read(dsts[i]);
+                if (n <= 0) {
+                    return total > 0 ? total : n;
+                }
+                total += n;
+                if (dsts[i].hasRemaining()) {
+                    break;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts) throws IOException {
+            return read(dsts, 0, dsts.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (src.isDirect()) {
+                return socket.write(src);
+            }
+            ByteBuffer scratch = eventLoop().directScratch();
+            int length = Math.min(scratch.capacity(), src.remaining());
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + length);
+            scratch.put(slice).flip();
+            int n = socket.write(scratch);
+            src.position(src.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return socket.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
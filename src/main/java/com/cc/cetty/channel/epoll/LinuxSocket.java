@@ -0,0 +1,332 @@
+package com.cc.cetty.channel.epoll;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.Objects;
+
+/**
+ * 非阻塞的TCP socket，只是fd和系统调用的简单包装
+ * 除了isOpen和地址相关的方法，其他方法都只在事件循环线程调用
+ * 地址按struct sockaddr的格式编码在直接内存中，事件循环复用同一块，不在事件循环的线程每次新分配
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+final class LinuxSocket {
+
+    /**
+     * sizeof(struct sockaddr_storage)
+     */
+    static final int ADDRESS_CAPACITY = 128;
+
+    private static final int SOCKADDR_IN_SIZE = 16;
+
+    private static final int SOCKADDR_IN6_SIZE = 28;
+
+    private static final byte[] IPV4_MAPPED_PREFIX = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff};
+
+    private final int fd;
+
+    private final boolean ipv6;
+
+    private volatile boolean open = true;
+
+    LinuxSocket(int fd, boolean ipv6) {
+        this.fd = fd;
+        this.ipv6 = ipv6;
+    }
+
+    /**
+     * @return 新的非阻塞TCP socket，可以的话是双栈的
+     * @throws IOException 创建失败
+     */
+    static LinuxSocket newStream() throws IOException {
+        return new LinuxSocket(NativeIoException.check("socket", Epoll.SYSCALLS.socketStream(Epoll.IPV6)), Epoll.IPV6);
+    }
+
+    /**
+     * @return 存放struct sockaddr的直接内存
+     */
+    static ByteBuffer newAddressBuffer() {
+        return ByteBuffer.allocateDirect(ADDRESS_CAPACITY).order(ByteOrder.nativeOrder());
+    }
+
+    int intValue() {
+        return fd;
+    }
+
+    boolean isIpv6() {
+        return ipv6;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    void bind(InetSocketAddress address, ByteBuffer scratch) throws IOException {
+        NativeIoException.check("bind", Epoll.SYSCALLS.bind(fd, encode(address, scratch)));
+    }
+
+    void listen(int backlog) throws IOException {
+        NativeIoException.check("listen", Epoll.SYSCALLS.listen(fd, backlog));
+    }
+
+    /**
+     * @param scratch 接收对端地址，返回后可以用decode取出
+     * @return 新连接的fd，没有等待中的连接时返回-1
+     * @throws IOException 失败
+     */
+    int accept(ByteBuffer scratch) throws IOException {
+        scratch.clear();
+        for (; ; ) {
+            int res = Epoll.SYSCALLS.accept(fd, scratch);
+            if (res >= 0) {
+                return res;
+            }
+            if (res == -LinuxSyscalls.EAGAIN) {
+                return -1;
+            }
+            if (res != -LinuxSyscalls.EINTR) {
+                throw new NativeIoException("accept", -res);
+            }
+        }
+    }
+
+    /**
+     * @return 是否已经连接上，false表示正在连接，可写时调用finishConnect
+     * @throws IOException 连接失败
+     */
+    boolean connect(InetSocketAddress address, ByteBuffer scratch) throws IOException {
+        int res = Epoll.SYSCALLS.connect(fd, encode(address, scratch));
+        if (res >= 0) {
+            return true;
+        }
+        if (res == -LinuxSyscalls.EINPROGRESS || res == -LinuxSyscalls.EINTR) {
+            return false;
+        }
+        throw newConnectException(-res);
+    }
+
+    /**
+     * @throws IOException 连接失败
+     */
+    void finishConnect() throws IOException {
+        int error = NativeIoException.check("getsockopt", Epoll.SYSCALLS.getSockOpt(fd, LinuxSyscalls.SOL_SOCKET, LinuxSyscalls.SO_ERROR));
+        if (error != 0) {
+            throw newConnectException(error);
+        }
+    }
+
+    private static ConnectException newConnectException(int errno) {
+        return new ConnectException("connect(..) failed: " + Epoll.strerror(errno));
+    }
+
+    /**
+     * 和jdk的通道一样，读写之后移动ByteBuffer的position，ChannelOutboundBuffer依赖这一点
+     *
+     * @param dst 读到position到limit之间
+     * @return 读到的字节数，0表示暂时没有数据，-1表示对端关闭
+     * @throws IOException 失败
+     */
+    int read(ByteBuffer dst) throws IOException {
+        for (; ; ) {
+            int res = Epoll.SYSCALLS.read(fd, dst);
+            if (res > 0) {
+                dst.position(dst.position() + res);
+                return res;
+            }
+            if (res == 0) {
+                return -1;
+            }
+            if (res == -LinuxSyscalls.EAGAIN) {
+                return 0;
+            }
+            if (res != -LinuxSyscalls.EINTR) {
+                throw new NativeIoException("read", -res);
+            }
+        }
+    }
+
+    /**
+     * @param src 写出position到limit之间的数据
+     * @return 写出的字节数，0表示发送缓冲区满了
+     * @throws IOException 失败
+     */
+    int write(ByteBuffer src) throws IOException {
+        for (; ; ) {
+            int res = Epoll.SYSCALLS.write(fd, src);
+            if (res >= 0) {
+                src.position(src.position() + res);
+                return res;
+            }
+            if (res == -LinuxSyscalls.EAGAIN) {
+                return 0;
+            }
+            if (res != -LinuxSyscalls.EINTR) {
+                throw new NativeIoException("write", -res);
+            }
+        }
+    }
+
+    /**
+     * @return 写出的字节数，0表示发送缓冲区满了
+     * @throws IOException 失败
+     */
+    long writev(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        for (; ; ) {
+            long res = Epoll.SYSCALLS.writev(fd, srcs, offset, Math.min(length, LinuxSyscalls.IOV_MAX));
+            if (res >= 0) {
+                long remaining = res;
+                for (int i = offset; remaining > 0; i++) {
+                    ByteBuffer src = srcs[i];
+                    int n = (int) Math.min(src.remaining(), remaining);
+                    src.position(src.position() + n);
+                    remaining -= n;
+                }
+                return res;
+            }
+            if (res == -LinuxSyscalls.EAGAIN) {
+                return 0;
+            }
+            if (res != -LinuxSyscalls.EINTR) {
+                throw new NativeIoException("writev", (int) -res);
+            }
+        }
+    }
+
+    void setIntOption(int level, int option, int value) throws IOException {
+        NativeIoException.check("setsockopt", Epoll.SYSCALLS.setSockOpt(fd, level, option, value));
+    }
+
+    int getIntOption(int level, int option) throws IOException {
+        return NativeIoException.check("getsockopt", Epoll.SYSCALLS.getSockOpt(fd, level, option));
+    }
+
+    void shutdownOutput() throws IOException {
+        NativeIoException.check("shutdown", Epoll.SYSCALLS.shutdown(fd, LinuxSyscalls.SHUT_WR));
+    }
+
+    /**
+     * @return 本地地址，没有绑定时为null
+     */
+    InetSocketAddress localAddress() {
+        ByteBuffer scratch = newAddressBuffer();
+        if (!open || Epoll.SYSCALLS.getSockName(fd, scratch) < 0) {
+            return null;
+        }
+        InetSocketAddress address = decode(scratch);
+        return Objects.nonNull(address) && address.getPort() != 0 ? address : null;
+    }
+
+    /**
+     * @return 对端地址，没有连接时为null
+     */
+    InetSocketAddress remoteAddress() {
+        ByteBuffer scratch = newAddressBuffer();
+        if (!open || Epoll.SYSCALLS.getPeerName(fd, scratch) < 0) {
+            return null;
+        }
+        return decode(scratch);
+    }
+
+    void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        NativeIoException.check("close", Epoll.SYSCALLS.close(fd));
+    }
+
+    /**
+     * 按socket的协议族编码，IPv6的socket上IPv4的地址编码成 ::ffff:a.b.c.d，0.0.0.0编码成 ::
+     *
+     * @param address address
+     * @param scratch 编码的位置
+     * @return scratch，position是0，limit是地址的长度
+     * @throws IOException 地址没有解析
+     */
+    private ByteBuffer encode(InetSocketAddress address, ByteBuffer scratch) throws IOException {
+        if (address.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        InetAddress inetAddress = address.getAddress();
+        byte[] bytes = inetAddress.getAddress();
+        scratch.clear();
+        for (int i = 0; i < ADDRESS_CAPACITY; i += 8) {
+            scratch.putLong(i, 0);
+        }
+        scratch.put(2, (byte) (address.getPort() >>> 8));
+        scratch.put(3, (byte) address.getPort());
+        if (!ipv6) {
+            if (bytes.length != 4) {
+                throw new IOException("IPv6 is not available: " + address);
+            }
+            scratch.putShort(0, (short) LinuxSyscalls.AF_INET);
+            scratch.position(4);
+            scratch.put(bytes);
+            scratch.position(0).limit(SOCKADDR_IN_SIZE);
+            return scratch;
+        }
+        scratch.putShort(0, (short) LinuxSyscalls.AF_INET6);
+        scratch.position(8);
+        if (bytes.length == 4) {
+            if (!inetAddress.isAnyLocalAddress()) {
+                scratch.put(IPV4_MAPPED_PREFIX);
+                scratch.put(bytes);
+            }
+        } else {
+            scratch.put(bytes);
+            scratch.putInt(24, ((Inet6Address) inetAddress).getScopeId());
+        }
+        scratch.position(0).limit(SOCKADDR_IN6_SIZE);
+        return scratch;
+    }
+
+    /**
+     * @param scratch 系统调用填好的struct sockaddr
+     * @return 地址，IPv4映射的IPv6地址还原成IPv4的地址，不认识的协议族返回null
+     */
+    static InetSocketAddress decode(ByteBuffer scratch) {
+        int family = scratch.getShort(0) & 0xffff;
+        int port = (scratch.get(2) & 0xff) << 8 | scratch.get(3) & 0xff;
+        try {
+            if (family == LinuxSyscalls.AF_INET) {
+                byte[] bytes = new byte[4];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = scratch.get(4 + i);
+                }
+                return new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+            }
+            if (family == LinuxSyscalls.AF_INET6) {
+                byte[] bytes = new byte[16];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = scratch.get(8 + i);
+                }
+                int scopeId = scratch.getInt(24);
+                // 映射的IPv4地址getByAddress会直接返回Inet4Address
+                InetAddress inetAddress = scopeId == 0 ? InetAddress.getByAddress(bytes) : Inet6Address.getByAddress(null, bytes, scopeId);
+                return new InetSocketAddress(inetAddress, port);
+            }
+        } catch (UnknownHostException e) {
+            // 长度是对的，不会发生
+            throw new IllegalStateException(e);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "LinuxSocket(fd: " + fd + ')';
+    }
+}
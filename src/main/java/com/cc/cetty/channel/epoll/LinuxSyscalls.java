@@ -0,0 +1,153 @@
+package com.cc.cetty.channel.epoll;
+
+import java.nio.ByteBuffer;
+
+/**
+ * epoll传输用到的Linux系统调用，只做参数的转换，不做任何判断
+ * 实现类在 src/main/java21 下，通过JDK 21的外部函数接口调用libc，用JDK 21编译并打包到多版本jar的 META-INF/versions/21 下
+ * 返回值和系统调用一致，失败时返回负的errno
+ * 传入的ByteBuffer都必须是直接内存，读写的范围是position到limit，不会修改position
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+interface LinuxSyscalls {
+
+    int EPOLLIN = 0x001;
+
+    int EPOLLOUT = 0x004;
+
+    int EPOLLERR = 0x008;
+
+    int EPOLLHUP = 0x010;
+
+    int EPOLLRDHUP = 0x2000;
+
+    int EPOLLET = 1 << 31;
+
+    int EPOLL_CTL_ADD = 1;
+
+    int EPOLL_CTL_DEL = 2;
+
+    int EPOLL_CTL_MOD = 3;
+
+    int AF_INET = 2;
+
+    int AF_INET6 = 10;
+
+    int SOL_SOCKET = 1;
+
+    int SO_REUSEADDR = 2;
+
+    int SO_ERROR = 4;
+
+    int SO_SNDBUF = 7;
+
+    int IPPROTO_TCP = 6;
+
+    int TCP_NODELAY = 1;
+
+    int SHUT_WR = 1;
+
+    int EINTR = 4;
+
+    int EAGAIN = 11;
+
+    int EINPROGRESS = 115;
+
+    /**
+     * 一次writev最多的iovec个数
+     */
+    int IOV_MAX = 1024;
+
+    /**
+     * @return epoll_create1(EPOLL_CLOEXEC)
+     */
+    int epollCreate();
+
+    /**
+     * epoll_event.data中存放的就是fd
+     *
+     * @return epoll_ctl(epfd, op, fd, {events, fd})
+     */
+    int epollCtl(int epfd, int op, int fd, int events);
+
+    /**
+     * @param events 存放就绪事件的直接内存，每个事件Epoll.EVENT_SIZE个字节
+     * @return epoll_wait(epfd, events, maxEvents, timeoutMillis)
+     */
+    int epollWait(int epfd, ByteBuffer events, int maxEvents, int timeoutMillis);
+
+    /**
+     * @return eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC)
+     */
+    int eventFd();
+
+    /**
+     * @return 往eventfd写入一个8字节的计数
+     */
+    int eventFdWrite(int fd, long value);
+
+    /**
+     * @return timerfd_create(CLOCK_MONOTONIC, TFD_NONBLOCK | TFD_CLOEXEC)
+     */
+    int timerFd();
+
+    /**
+     * 只触发一次，不重复
+     *
+     * @param delayNanos 多久之后触发，0表示取消
+     * @return timerfd_settime(fd, 0, {0, delayNanos}, NULL)
+     */
+    int timerFdSetTime(int fd, long delayNanos);
+
+    /**
+     * @return socket(ipv6 ? AF_INET6 : AF_INET, SOCK_STREAM | SOCK_NONBLOCK | SOCK_CLOEXEC, 0)
+     */
+    int socketStream(boolean ipv6);
+
+    int bind(int fd, ByteBuffer address);
+
+    int listen(int fd, int backlog);
+
+    /**
+     * @param address 存放对端地址的直接内存，至少128字节
+     * @return accept4(fd, address, &len, SOCK_NONBLOCK | SOCK_CLOEXEC)
+     */
+    int accept(int fd, ByteBuffer address);
+
+    int connect(int fd, ByteBuffer address);
+
+    int getSockName(int fd, ByteBuffer address);
+
+    int getPeerName(int fd, ByteBuffer address);
+
+    /**
+     * @return 选项的值，失败时返回负的errno
+     */
+    int getSockOpt(int fd, int level, int option);
+
+    int setSockOpt(int fd, int level, int option, int value);
+
+    /**
+     * @return 读到的字节数，0表示对端关闭
+     */
+    int read(int fd, ByteBuffer dst);
+
+    int write(int fd, ByteBuffer src);
+
+    /**
+     * @param length 不超过IOV_MAX
+     * @return 写出的字节数
+     */
+    long writev(int fd, ByteBuffer[] srcs, int offset, int length);
+
+    int shutdown(int fd, int how);
+
+    int close(int fd);
+
+    /**
+     * @return errno对应的描述
+     */
+    String strerror(int errno);
+}
@@ -0,0 +1,39 @@
+package com.cc.cetty.channel.epoll;
+
+import java.io.IOException;
+
+/**
+ * 系统调用失败时抛出，带上errno
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+public class NativeIoException extends IOException {
+
+    private final int errno;
+
+    public NativeIoException(String method, int errno) {
+        super(method + "(..) failed: " + Epoll.strerror(errno));
+        this.errno = errno;
+    }
+
+    /**
+     * @return 系统调用返回的errno，是正数
+     */
+    public int errno() {
+        return errno;
+    }
+
+    /**
+     * @param method 系统调用的名字
+     * @param result 系统调用的返回值
+     * @return 返回值为负时抛出
+     * @throws NativeIoException 返回值为负
+     */
+    static int check(String method, int result) throws NativeIoException {
+        if (result < 0) {
+            throw new NativeIoException(method, -result);
+        }
+        return result;
+    }
+}
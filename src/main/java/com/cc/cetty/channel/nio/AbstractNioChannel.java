@@ -0,0 +1,252 @@
+package com.cc.cetty.channel.nio;
+
+import com.cc.cetty.channel.AbstractChannel;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.channel.EventLoop;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.Objects;
+
+/**
+ * 基于java nio的channel的骨架实现
+ * 负责把SelectableChannel注册到NioEventLoop的selector上，并维护感兴趣的事件
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+@Slf4j
+public abstract class AbstractNioChannel extends AbstractChannel {
+
+    private final SelectableChannel ch;
+
+    /**
+     * 开始读时要关注的事件，服务端是OP_ACCEPT，客户端是OP_READ
+     */
+    protected final int readInterestOp;
+
+    /**
+     * 注册到selector上得到的key，selector重建时会被NioEventLoop替换
+     */
+    volatile SelectionKey selectionKey;
+
+    /**
+     * 正在进行中的连接
+     */
+    private ChannelPromise connectPromise;
+
+    protected AbstractNioChannel(Channel parent, SelectableChannel ch, int readInterestOp) {
+        super(parent);
+        this.ch = ch;
+        this.readInterestOp = readInterestOp;
+        try {
+            ch.configureBlocking(false);
+        } catch (IOException e) {
+            try {
+                ch.close();
+            } catch (IOException e2) {
+                log.warn("Failed to close a partially initialized socket.", e2);
+            }
+            throw new ChannelException("Failed to enter non-blocking mode.", e);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return ch.isOpen();
+    }
+
+    @Override
+    public NioEventLoop eventLoop() {
+        return (NioEventLoop) super.eventLoop();
+    }
+
+    @Override
+    public NioUnsafe unsafe() {
+        return (NioUnsafe) super.unsafe();
+    }
+
+    protected SelectableChannel javaChannel() {
+        return ch;
+    }
+
+    protected SelectionKey selectionKey() {
+        assert Objects.nonNull(selectionKey);
+        return selectionKey;
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof NioEventLoop;
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        boolean selected = false;
+        for (; ; ) {
+            try {
+                // 先不关注任何事件，channel激活之后再通过doBeginRead关注读事件
+                selectionKey = javaChannel().register(eventLoop().selector(), 0, this);
+                return;
+            } catch (CancelledKeyException e) {
+                if (selected) {
+                    throw e;
+                }
+                // 之前注销时取消的key还在selector里，select一次把它清理掉再重试
+                eventLoop().selector().selectNow();
+                selected = true;
+            }
+        }
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        SelectionKey key = selectionKey;
+        if (Objects.nonNull(key)) {
+            key.cancel();
+        }
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        final SelectionKey key = selectionKey;
+        if (!key.isValid()) {
+            return;
+        }
+        final int interestOps = key.interestOps();
+        if ((interestOps & readInterestOp) == 0) {
+            key.interestOps(interestOps | readInterestOp);
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        ChannelPromise promise = connectPromise;
+        if (Objects.nonNull(promise)) {
+            promise.tryFailure(new ClosedChannelException());
+            connectPromise = null;
+        }
+        javaChannel().close();
+    }
+
+    /**
+     * 发起连接
+     *
+     * @param remoteAddress 远端地址
+     * @param localAddress  本地地址，可以为空
+     * @return 是否已经连接成功，false表示需要等待OP_CONNECT
+     * @throws Exception 连接失败
+     */
+    protected abstract boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception;
+
+    /**
+     * 完成连接
+     *
+     * @throws Exception 连接失败
+     */
+    protected abstract void doFinishConnect() throws Exception;
+
+    /**
+     * 给NioEventLoop用的unsafe
+     */
+    public interface NioUnsafe extends Unsafe {
+
+        /**
+         * @return 底层的java channel
+         */
+        SelectableChannel ch();
+    }
+
+    /**
+     * nio unsafe的骨架实现，处理连接流程
+     */
+    protected abstract class AbstractNioUnsafe extends AbstractUnsafe implements NioUnsafe {
+
+        @Override
+        public final SelectableChannel ch() {
+            return javaChannel();
+        }
+
+        @Override
+        public final void forceFlush() {
+            // OP_WRITE就绪，不用再检查
+            super.flush0();
+        }
+
+        @Override
+        protected final void flush0() {
+            // 已经在等待OP_WRITE了，socket可写时由forceFlush继续写
+            if (!isFlushPending()) {
+                super.flush0();
+            }
+        }
+
+        private boolean isFlushPending() {
+            SelectionKey key = selectionKey;
+            return Objects.nonNull(key) && key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) != 0;
+        }
+
+        @Override
+        public final void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            assert eventLoop().inEventLoop();
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+            if (Objects.nonNull(connectPromise)) {
+                promise.tryFailure(new ConnectionPendingException());
+                return;
+            }
+            try {
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    // 等待OP_CONNECT就绪后在finishConnect中完成
+                    connectPromise = promise;
+                }
+            } catch (Throwable t) {
+                promise.tryFailure(t);
+                close(newPromise());
+            }
+        }
+
+        @Override
+        public final void finishConnect() {
+            assert eventLoop().inEventLoop();
+            ChannelPromise promise = connectPromise;
+            if (Objects.isNull(promise)) {
+                return;
+            }
+            try {
+                boolean wasActive = isActive();
+                doFinishConnect();
+                fulfillConnectPromise(promise, wasActive);
+            } catch (Throwable t) {
+                promise.tryFailure(t);
+                close(newPromise());
+            } finally {
+                connectPromise = null;
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            boolean active = isActive();
+            // 用户可能已经在监听器里关闭了channel
+            boolean promiseSet = promise.trySuccess();
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+            if (!promiseSet) {
+                close(newPromise());
+            }
+        }
+    }
+}
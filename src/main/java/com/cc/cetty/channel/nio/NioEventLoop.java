@@ -0,0 +1,412 @@
+package com.cc.cetty.channel.nio;
+
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.channel.EventLoopGroup;
+import com.cc.cetty.channel.SingleThreadEventLoop;
+import com.cc.cetty.config.CettyConfig;
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于selector的事件循环
+ * 一个线程同时处理I/O事件和任务队列中的任务，ioRatio决定两者的时间分配
+ * 在可以反射的情况下，selector内部存放就绪key的HashSet会被替换成数组
+ * 如果select在没有事件、没有被唤醒的情况下连续提前返回，认为遇到了epoll空轮询的bug，重建selector
+ * 只有线程阻塞在select上时，其他线程提交任务才会调用selector.wakeup，线程醒着时提交任务不产生系统调用
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+@Slf4j
+public final class NioEventLoop extends SingleThreadEventLoop {
+
+    /**
+     * select连续提前返回多少次后重建selector，小于等于0表示不重建
+     */
+    private static final int SELECTOR_AUTO_REBUILD_THRESHOLD = Integer.getInteger("cetty.selectorAutoRebuildThreshold", 512);
+
+    /**
+     * 是否禁止替换selector内部的HashSet
+     */
+    private static final boolean DISABLE_KEY_SET_OPTIMIZATION = Boolean.getBoolean("cetty.noKeySetOptimization");
+
+    /**
+     * 没有定时任务时，select最多阻塞的时间
+     */
+    private static final long MAX_SELECT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final SelectorProvider provider;
+
+    /**
+     * 为false表示线程准备阻塞或者正阻塞在select上，提交任务的线程把它改成true并唤醒selector
+     * 线程醒着的时候一直是true，这时提交任务不需要唤醒，也就没有一次写eventfd或者pipe的系统调用
+     */
+    private final AtomicBoolean wakenUp = new AtomicBoolean(true);
+
+    private Selector selector;
+
+    /**
+     * 替换成功时不为空
+     */
+    private SelectedSelectionKeySet selectedKeys;
+
+    /**
+     * I/O时间占一轮循环的百分比，只有事件循环线程读写
+     */
+    private int ioRatio;
+
+    NioEventLoop(EventLoopGroup parent, Executor executor, SelectorProvider provider, ConfigRepository configRepository) {
+        super(parent, executor, configRepository);
+        this.provider = AssertUtils.checkNotNull(provider, "Selector provider cannot be null");
+        this.ioRatio = config().ioRatio();
+        openSelector();
+    }
+
+    /**
+     * 打开selector，能反射的话把selectedKeys和publicSelectedKeys替换成数组实现
+     */
+    private void openSelector() {
+        Selector unwrapped;
+        try {
+            unwrapped = provider.openSelector();
+        } catch (IOException e) {
+            throw new ChannelException("Failed to open a new selector", e);
+        }
+        this.selector = unwrapped;
+        this.selectedKeys = null;
+        if (DISABLE_KEY_SET_OPTIMIZATION) {
+            return;
+        }
+        SelectedSelectionKeySet keySet = new SelectedSelectionKeySet();
+        try {
+            Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+            if (!selectorImplClass.isAssignableFrom(unwrapped.getClass())) {
+                return;
+            }
+            Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+            Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+            // jdk9之后需要 --add-opens java.base/sun.nio.ch=ALL-UNNAMED
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+            selectedKeysField.set(unwrapped, keySet);
+            publicSelectedKeysField.set(unwrapped, keySet);
+            this.selectedKeys = keySet;
+            log.debug("Instrumented an optimized java.util.Set into: {}", unwrapped);
+        } catch (Exception | LinkageError e) {
+            log.trace("Failed to instrument an optimized java.util.Set into: {}", unwrapped, e);
+        }
+    }
+
+    /**
+     * @return 当前的selector，重建之后会变化，channel注册时使用
+     */
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * @return I/O时间占一轮循环的百分比，在事件循环线程之外调用可能看到旧的值
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * 设置I/O时间占一轮循环的百分比，100表示不限制任务的执行时间
+     * 不在事件循环线程时提交一个任务去修改，之后发布的配置会覆盖这里设置的值
+     *
+     * @param ioRatio 1到100之间
+     */
+    public void setIoRatio(int ioRatio) {
+        AssertUtils.checkInRange(ioRatio, 1, 100, "ioRatio");
+        if (inEventLoop()) {
+            this.ioRatio = ioRatio;
+        } else {
+            execute(() -> this.ioRatio = ioRatio);
+        }
+    }
+
+    @Override
+    protected void configApplied(CettyConfig config) {
+        this.ioRatio = config.ioRatio();
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && wakenUp.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    protected void run() {
+        for (; ; ) {
+            try {
+                int selected;
+                try {
+                    selected = hasTasks() ? selector.selectNow() : select();
+                } catch (IOException e) {
+                    // selector出了问题，重建一个
+                    log.warn("Selector failed, rebuilding", e);
+                    rebuildSelector0();
+                    continue;
+                }
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    try {
+                        if (selected > 0) {
+                            final long ioStartTime = System.nanoTime();
+                            try {
+                                processSelectedKeys();
+                            } finally {
+                                metrics().recordIo(selected, System.nanoTime() - ioStartTime);
+                            }
+                        }
+                    } finally {
+                        runAllTasks();
+                    }
+                } else if (selected > 0) {
+                    final long ioStartTime = System.nanoTime();
+                    try {
+                        processSelectedKeys();
+                    } finally {
+                        // 按照I/O花费的时间和ioRatio计算这一轮可以执行任务的时间
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        metrics().recordIo(selected, ioTime);
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                } else {
+                    // 没有I/O事件，最少执行一批任务
+                    runAllTasks(0);
+                }
+            } catch (Throwable t) {
+                log.warn("Unexpected exception in the selector loop.", t);
+                sleepAfterFailure();
+            }
+            if (isShuttingDown()) {
+                closeAll();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 阻塞select，直到有I/O事件、被唤醒或者超时
+     * 进入时把wakenUp置为false，允许其他线程唤醒，返回时再置为true
+     *
+     * @return 就绪的key的数量
+     * @throws IOException select失败
+     */
+    private int select() throws IOException {
+        // 先置为false再检查任务队列，和提交任务的线程先入队再检查wakenUp配合，两边至少有一边能看到对方
+        wakenUp.set(false);
+        try {
+            return select0();
+        } finally {
+            // 提交任务的线程如果在select返回之后才调用wakeup，下一次select会立即返回一次，没有其他影响
+            wakenUp.set(true);
+        }
+    }
+
+    /**
+     * 同时检测epoll空轮询，select没有阻塞够时间就返回了0，并且连续出现很多次，就重建selector
+     *
+     * @return 就绪的key的数量
+     * @throws IOException select失败
+     */
+    private int select0() throws IOException {
+        int selectCnt = 0;
+        long currentTimeNanos = System.nanoTime();
+        // 最近的定时任务到期时select返回，由runAllTasks执行
+        long selectDeadlineNanos = currentTimeNanos + nextScheduledTaskDelayNanos(MAX_SELECT_TIMEOUT_NANOS);
+        for (; ; ) {
+            long timeoutMillis = (selectDeadlineNanos - currentTimeNanos + 500_000L) / 1_000_000L;
+            if (timeoutMillis <= 0) {
+                return selector.selectNow();
+            }
+            // 提交任务的线程已经把wakenUp置位了，或者在置位之前队列里已经有任务，都不能再阻塞
+            if (hasTasks() || wakenUp.get() || isShuttingDown()) {
+                return selector.selectNow();
+            }
+            int selected = selector.select(timeoutMillis);
+            selectCnt++;
+            metrics().recordSelectWakeup();
+            if (selected != 0 || wakenUp.get() || hasTasks() || isShuttingDown()) {
+                return selected;
+            }
+            if (Thread.interrupted()) {
+                log.debug("Selector.select() returned prematurely because the I/O thread was interrupted.");
+                return 0;
+            }
+            long time = System.nanoTime();
+            if (time - TimeUnit.MILLISECONDS.toNanos(timeoutMillis) >= currentTimeNanos) {
+                // 阻塞够了时间，是正常的超时
+                selectCnt = 1;
+            } else if (SELECTOR_AUTO_REBUILD_THRESHOLD > 0 && selectCnt >= SELECTOR_AUTO_REBUILD_THRESHOLD) {
+                log.warn("Selector.select() returned prematurely {} times in a row; rebuilding Selector {}.", selectCnt, selector);
+                rebuildSelector0();
+                return selector.selectNow();
+            }
+            currentTimeNanos = time;
+        }
+    }
+
+    /**
+     * 用一个新的selector替换当前的selector，把所有channel重新注册上去
+     * 可以在任何线程调用，真正的重建在事件循环线程执行
+     */
+    public void rebuildSelector() {
+        if (!inEventLoop()) {
+            execute(this::rebuildSelector0);
+            return;
+        }
+        rebuildSelector0();
+    }
+
+    private void rebuildSelector0() {
+        final Selector oldSelector = selector;
+        final SelectedSelectionKeySet oldSelectedKeys = selectedKeys;
+        try {
+            openSelector();
+        } catch (ChannelException e) {
+            log.warn("Failed to create a new Selector.", e);
+            return;
+        }
+        int migrated = 0;
+        for (SelectionKey key : oldSelector.keys()) {
+            Object a = key.attachment();
+            try {
+                if (!key.isValid() || Objects.nonNull(key.channel().keyFor(selector))) {
+                    continue;
+                }
+                int interestOps = key.interestOps();
+                key.cancel();
+                SelectionKey newKey = key.channel().register(selector, interestOps, a);
+                if (a instanceof AbstractNioChannel) {
+                    ((AbstractNioChannel) a).selectionKey = newKey;
+                }
+                migrated++;
+            } catch (Exception e) {
+                log.warn("Failed to re-register a Channel to the new Selector.", e);
+                if (a instanceof AbstractNioChannel) {
+                    AbstractNioChannel ch = (AbstractNioChannel) a;
+                    ch.unsafe().close(ch.newPromise());
+                }
+            }
+        }
+        if (Objects.nonNull(oldSelectedKeys)) {
+            oldSelectedKeys.reset(0);
+        }
+        try {
+            oldSelector.close();
+        } catch (Throwable t) {
+            log.warn("Failed to close the old Selector.", t);
+        }
+        log.info("Migrated {} channel(s) to the new Selector.", migrated);
+    }
+
+    private void processSelectedKeys() {
+        if (Objects.nonNull(selectedKeys)) {
+            processSelectedKeysOptimized();
+        } else {
+            processSelectedKeysPlain(selector.selectedKeys());
+        }
+    }
+
+    private void processSelectedKeysOptimized() {
+        SelectedSelectionKeySet keySet = selectedKeys;
+        for (int i = 0; i < keySet.size; ++i) {
+            final SelectionKey k = keySet.keys[i];
+            // 置空，channel关闭后可以尽早被回收
+            keySet.keys[i] = null;
+            processSelectedKey(k);
+        }
+        keySet.size = 0;
+    }
+
+    private void processSelectedKeysPlain(Set<SelectionKey> selectedKeys) {
+        if (selectedKeys.isEmpty()) {
+            return;
+        }
+        Iterator<SelectionKey> i = selectedKeys.iterator();
+        while (i.hasNext()) {
+            SelectionKey k = i.next();
+            i.remove();
+            processSelectedKey(k);
+        }
+    }
+
+    private void processSelectedKey(SelectionKey k) {
+        AbstractNioChannel ch = (AbstractNioChannel) k.attachment();
+        AbstractNioChannel.NioUnsafe unsafe = ch.unsafe();
+        if (!k.isValid()) {
+            unsafe.close(ch.newPromise());
+            return;
+        }
+        try {
+            int readyOps = k.readyOps();
+            if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
+                // 连接完成后不再关注OP_CONNECT，否则select会一直返回
+                k.interestOps(k.interestOps() & ~SelectionKey.OP_CONNECT);
+                unsafe.finishConnect();
+            }
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                unsafe.forceFlush();
+            }
+            if ((readyOps & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0 || readyOps == 0) {
+                unsafe.read();
+            }
+        } catch (CancelledKeyException ignored) {
+            unsafe.close(ch.newPromise());
+        }
+    }
+
+    private void closeAll() {
+        List<AbstractNioChannel> channels = new ArrayList<>(selector.keys().size());
+        for (SelectionKey k : selector.keys()) {
+            Object a = k.attachment();
+            if (a instanceof AbstractNioChannel) {
+                channels.add((AbstractNioChannel) a);
+            }
+        }
+        for (AbstractNioChannel ch : channels) {
+            ch.unsafe().close(ch.newPromise());
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        super.cleanup();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Failed to close a selector.", e);
+        }
+    }
+
+    private static void sleepAfterFailure() {
+        // 避免连续失败时占满cpu
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.cc.cetty.channel.nio;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.async.ThreadPerTaskExecutor;
+import com.cc.cetty.channel.MultithreadEventLoopGroup;
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.local.DefaultThreadFactory;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 基于selector的事件循环组，子事件循环是NioEventLoop
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+public class NioEventLoopGroup extends MultithreadEventLoopGroup {
+
+    public NioEventLoopGroup() {
+        this(0);
+    }
+
+    public NioEventLoopGroup(int nThreads) {
+        this(nThreads, new DefaultThreadFactory(NioEventLoopGroup.class));
+    }
+
+    public NioEventLoopGroup(int nThreads, ThreadFactory threadFactory) {
+        this(nThreads, new ThreadPerTaskExecutor(threadFactory), SelectorProvider.provider());
+    }
+
+    /**
+     * @param nThreads         线程数，0表示默认值
+     * @param configRepository 这个组的事件循环读取配置的来源
+     */
+    public NioEventLoopGroup(int nThreads, ConfigRepository configRepository) {
+        this(nThreads, new ThreadPerTaskExecutor(new DefaultThreadFactory(NioEventLoopGroup.class)), SelectorProvider.provider(), configRepository);
+    }
+
+    public NioEventLoopGroup(int nThreads, Executor executor, SelectorProvider provider) {
+        this(nThreads, executor, provider, ConfigRepository.DEFAULT);
+    }
+
+    public NioEventLoopGroup(int nThreads, Executor executor, SelectorProvider provider, ConfigRepository configRepository) {
+        super(nThreads, executor, provider, AssertUtils.checkNotNull(configRepository, "Config repository cannot be null"));
+    }
+
+    /**
+     * 设置所有子事件循环的ioRatio
+     *
+     * @param ioRatio I/O时间占一轮循环的百分比
+     */
+    public void setIoRatio(int ioRatio) {
+        for (EventExecutor e : this) {
+            ((NioEventLoop) e).setIoRatio(ioRatio);
+        }
+    }
+
+    /**
+     * 重建所有子事件循环的selector
+     */
+    public void rebuildSelectors() {
+        for (EventExecutor e : this) {
+            ((NioEventLoop) e).rebuildSelector();
+        }
+    }
+
+    @Override
+    protected EventExecutor newChild(Executor executor, Object... args) {
+        return new NioEventLoop(this, executor, (SelectorProvider) args[0], (ConfigRepository) args[1]);
+    }
+}
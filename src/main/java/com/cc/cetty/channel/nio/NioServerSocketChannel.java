@@ -0,0 +1,133 @@
+package com.cc.cetty.channel.nio;
+
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.channel.ChannelOutboundBuffer;
+import com.cc.cetty.channel.RecvByteBufAllocator;
+import com.cc.cetty.channel.ServerChannel;
+import com.cc.cetty.channel.ServerChannelRecvByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Objects;
+
+/**
+ * 服务端channel，读事件就是接收新的连接
+ * 每接收一个连接，就把对应的NioSocketChannel作为消息交给pipeline
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+@Slf4j
+public class NioServerSocketChannel extends AbstractNioChannel implements ServerChannel {
+
+    private static final int BACKLOG = Integer.getInteger("cetty.serverBacklog", 128);
+
+    public NioServerSocketChannel() {
+        this(newSocket());
+    }
+
+    public NioServerSocketChannel(ServerSocketChannel channel) {
+        super(null, channel, SelectionKey.OP_ACCEPT);
+        // 一次读事件最多接收的连接数，避免一个服务端channel占住事件循环
+        recvByteBufAllocator(new ServerChannelRecvByteBufAllocator());
+    }
+
+    private static ServerSocketChannel newSocket() {
+        try {
+            return SelectorProvider.provider().openServerSocketChannel();
+        } catch (IOException e) {
+            throw new ChannelException("Failed to open a server socket.", e);
+        }
+    }
+
+    @Override
+    protected ServerSocketChannel javaChannel() {
+        return (ServerSocketChannel) super.javaChannel();
+    }
+
+    @Override
+    public boolean isActive() {
+        return isOpen() && javaChannel().socket().isBound();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) javaChannel().socket().getLocalSocketAddress();
+    }
+
+    @Override
+    public SocketAddress remoteAddress() {
+        return null;
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new NioMessageUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        javaChannel().bind(localAddress, BACKLOG);
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void doFinishConnect() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) {
+        throw new UnsupportedOperationException();
+    }
+
+    private final class NioMessageUnsafe extends AbstractNioUnsafe {
+
+        @Override
+        public void read() {
+            assert eventLoop().inEventLoop();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            allocHandle.reset();
+            Throwable exception = null;
+            try {
+                do {
+                    SocketChannel ch = javaChannel().accept();
+                    if (Objects.isNull(ch)) {
+                        break;
+                    }
+                    allocHandle.incMessagesRead(1);
+                    try {
+                        pipeline().fireChannelRead(new NioSocketChannel(NioServerSocketChannel.this, ch));
+                    } catch (ChannelException e) {
+                        log.warn("Failed to create a new channel from an accepted socket.", e);
+                        ch.close();
+                    }
+                } while (allocHandle.continueReading());
+            } catch (Throwable t) {
+                exception = t;
+            }
+            allocHandle.readComplete();
+            pipeline().fireChannelReadComplete();
+            if (Objects.nonNull(exception)) {
+                pipeline().fireExceptionCaught(exception);
+                // 服务端socket出错不一定要关闭，只有底层已经关闭时才走关闭流程
+                closeIfClosed();
+            }
+        }
+    }
+}
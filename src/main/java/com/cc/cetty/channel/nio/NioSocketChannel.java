@@ -0,0 +1,357 @@
+package com.cc.cetty.channel.nio;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ByteBufAllocator;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelException;
+import com.cc.cetty.channel.ChannelOutboundBuffer;
+import com.cc.cetty.channel.FileRegion;
+import com.cc.cetty.channel.RecvByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Objects;
+
+/**
+ * 客户端channel，服务端接收的连接也是这个类型
+ * 读到的数据以ByteBuf的形式交给pipeline，处理器负责释放，每次读的buf大小由RecvByteBufAllocator决定
+ * 写出的数据先放入ChannelOutboundBuffer，flush时用gathering write一次写出多个ByteBuf，写完后由channel释放
+ * FileRegion用transferTo发送，文件内容不经过用户态
+ *
+ * @author: cc
+ * @date: 2023/11/29
+ **/
+@Slf4j
+public class NioSocketChannel extends AbstractNioChannel {
+
+    /**
+     * 一次flush最多写多少次，写不完就让出事件循环，避免一个连接占住事件循环
+     */
+    private static final int WRITE_SPIN_COUNT = 16;
+
+    /**
+     * 写次数减去它之后一定小于0，表示需要等OP_WRITE
+     */
+    private static final int WRITE_STATUS_SNDBUF_FULL = Integer.MAX_VALUE;
+
+    /**
+     * 一次gathering write最多多少个ByteBuffer，和系统的IOV_MAX一致
+     */
+    private static final int MAX_GATHERING_BUFFERS = 1024;
+
+    /**
+     * 一次gathering write最多写多少字节，根据每次实际写出的字节数调整，初始是socket发送缓冲区的两倍
+     */
+    private int maxBytesPerGatheringWrite = Integer.MAX_VALUE;
+
+    private final Runnable flushTask = () -> ((AbstractNioUnsafe) unsafe()).flush0();
+
+    public NioSocketChannel() {
+        this(newSocket());
+    }
+
+    public NioSocketChannel(SocketChannel socket) {
+        this(null, socket);
+    }
+
+    public NioSocketChannel(Channel parent, SocketChannel socket) {
+        super(parent, socket, SelectionKey.OP_READ);
+        try {
+            socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            int sendBufferSize = socket.getOption(StandardSocketOptions.SO_SNDBUF);
+            if (sendBufferSize > 0) {
+                maxBytesPerGatheringWrite = sendBufferSize << 1;
+            }
+        } catch (IOException e) {
+            log.debug("Failed to set TCP_NODELAY on {}", socket, e);
+        }
+    }
+
+    private static SocketChannel newSocket() {
+        try {
+            return SelectorProvider.provider().openSocketChannel();
+        } catch (IOException e) {
+            throw new ChannelException("Failed to open a socket.", e);
+        }
+    }
+
+    @Override
+    protected SocketChannel javaChannel() {
+        return (SocketChannel) super.javaChannel();
+    }
+
+    @Override
+    public boolean isActive() {
+        SocketChannel ch = javaChannel();
+        return ch.isOpen() && ch.isConnected();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) javaChannel().socket().getLocalSocketAddress();
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) javaChannel().socket().getRemoteSocketAddress();
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new NioSocketUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        javaChannel().bind(localAddress);
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (Objects.nonNull(localAddress)) {
+            doBind(localAddress);
+        }
+        boolean connected = javaChannel().connect(remoteAddress);
+        if (!connected) {
+            selectionKey().interestOps(selectionKey().interestOps() | SelectionKey.OP_CONNECT);
+        }
+        return connected;
+    }
+
+    @Override
+    protected void doFinishConnect() throws Exception {
+        if (!javaChannel().finishConnect()) {
+            throw new ChannelException("Connection not finished");
+        }
+    }
+
+    /**
+     * 堆内存和数组复制到直接内存，否则jdk写socket时还要再复制一次到它自己的临时直接内存
+     */
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            if (buf.isDirect() || buf.nioBufferCount() > 1) {
+                // 组合buf里的堆内组件由JDK在写的时候拷贝，不用把整个buf拷贝一遍
+                return buf;
+            }
+            ByteBuf direct = alloc().directBuffer(buf.readableBytes());
+            try {
+                direct.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+            } catch (Throwable t) {
+                // 原来的buf由调用方释放，这里只释放新分配的
+                direct.release();
+                throw t;
+            }
+            // 复制成功之后原来的buf才归这里释放，失败时交给调用方释放，避免释放两次
+            buf.release();
+            return direct;
+        }
+        if (msg instanceof FileRegion) {
+            return msg;
+        }
+        if (msg instanceof byte[]) {
+            byte[] bytes = (byte[]) msg;
+            ByteBuf direct = alloc().directBuffer(bytes.length);
+            try {
+                return direct.writeBytes(bytes);
+            } catch (Throwable t) {
+                direct.release();
+                throw t;
+            }
+        }
+        if (msg instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) msg;
+            ByteBuf direct = alloc().directBuffer(buffer.remaining());
+            try {
+                return direct.writeBytes(buffer);
+            } catch (Throwable t) {
+                direct.release();
+                throw t;
+            }
+        }
+        throw new UnsupportedOperationException("Unsupported message type: " + msg.getClass().getName());
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        SocketChannel ch = javaChannel();
+        int writeSpinCount = WRITE_SPIN_COUNT;
+        do {
+            if (in.isEmpty()) {
+                // 都写完了
+                clearOpWrite();
+                return;
+            }
+            ByteBuffer[] nioBuffers = in.nioBuffers(MAX_GATHERING_BUFFERS, maxBytesPerGatheringWrite);
+            int nioBufferCount = in.nioBufferCount();
+            switch (nioBufferCount) {
+                case 0:
+                    // 只有空的buf，或者下一条是FileRegion
+                    writeSpinCount -= doWrite0(in);
+                    break;
+                case 1: {
+                    ByteBuffer buffer = nioBuffers[0];
+                    int attemptedBytes = buffer.remaining();
+                    int localWrittenBytes = ch.write(buffer);
+                    if (localWrittenBytes <= 0) {
+                        incompleteWrite(true);
+                        return;
+                    }
+                    eventLoop().metrics().recordBytesWritten(localWrittenBytes);
+                    adjustMaxBytesPerGatheringWrite(attemptedBytes, localWrittenBytes);
+                    in.removeBytes(localWrittenBytes);
+                    writeSpinCount--;
+                    break;
+                }
+                default: {
+                    // 多个buf一次系统调用写出去
+                    long attemptedBytes = in.nioBufferSize();
+                    long localWrittenBytes = ch.write(nioBuffers, 0, nioBufferCount);
+                    if (localWrittenBytes <= 0) {
+                        incompleteWrite(true);
+                        return;
+                    }
+                    eventLoop().metrics().recordBytesWritten(localWrittenBytes);
+                    adjustMaxBytesPerGatheringWrite(attemptedBytes, localWrittenBytes);
+                    in.removeBytes(localWrittenBytes);
+                    writeSpinCount--;
+                    break;
+                }
+            }
+        } while (writeSpinCount > 0);
+        incompleteWrite(writeSpinCount < 0);
+    }
+
+    /**
+     * 写第一条不是ByteBuf的消息
+     *
+     * @return 消耗的写次数，WRITE_STATUS_SNDBUF_FULL表示socket发送缓冲区满了，需要等OP_WRITE
+     */
+    private int doWrite0(ChannelOutboundBuffer in) throws IOException {
+        Object msg = in.current();
+        if (msg instanceof FileRegion) {
+            FileRegion region = (FileRegion) msg;
+            if (region.transferred() >= region.count()) {
+                in.remove();
+                return 0;
+            }
+            long localWrittenBytes = region.transferTo(javaChannel(), region.transferred());
+            if (localWrittenBytes > 0) {
+                eventLoop().metrics().recordBytesWritten(localWrittenBytes);
+                if (region.transferred() >= region.count()) {
+                    in.remove();
+                }
+                return 1;
+            }
+            return WRITE_STATUS_SNDBUF_FULL;
+        }
+        // 空的buf直接删掉
+        in.removeBytes(0);
+        return 1;
+    }
+
+    /**
+     * 这次写满了就试着多写一些，只写出一半都不到说明发送缓冲区快满了，少写一些
+     */
+    private void adjustMaxBytesPerGatheringWrite(long attempted, long written) {
+        if (attempted == written) {
+            if (attempted << 1 > maxBytesPerGatheringWrite) {
+                maxBytesPerGatheringWrite = (int) Math.min(Integer.MAX_VALUE, attempted << 1);
+            }
+        } else if (attempted > 4096 && written < attempted >>> 1) {
+            maxBytesPerGatheringWrite = (int) (attempted >>> 1);
+        }
+    }
+
+    /**
+     * @param setOpWrite socket发送缓冲区满了，等待OP_WRITE；否则只是写的次数用完了，提交一个任务稍后继续写
+     */
+    private void incompleteWrite(boolean setOpWrite) {
+        if (setOpWrite) {
+            setOpWrite();
+        } else {
+            clearOpWrite();
+            eventLoop().execute(flushTask);
+        }
+    }
+
+    private void setOpWrite() {
+        final SelectionKey key = selectionKey();
+        if (!key.isValid()) {
+            return;
+        }
+        final int interestOps = key.interestOps();
+        if ((interestOps & SelectionKey.OP_WRITE) == 0) {
+            key.interestOps(interestOps | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void clearOpWrite() {
+        final SelectionKey key = selectionKey();
+        if (!key.isValid()) {
+            return;
+        }
+        final int interestOps = key.interestOps();
+        if ((interestOps & SelectionKey.OP_WRITE) != 0) {
+            key.interestOps(interestOps & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    private final class NioSocketUnsafe extends AbstractNioUnsafe {
+
+        @Override
+        public void read() {
+            assert eventLoop().inEventLoop();
+            final ByteBufAllocator allocator = alloc();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            allocHandle.reset();
+            boolean close = false;
+            ByteBuf byteBuf = null;
+            long totalBytesRead = 0;
+            try {
+                do {
+                    byteBuf = allocHandle.allocate(allocator);
+                    allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+                    allocHandle.lastBytesRead(byteBuf.writeBytes(javaChannel(), byteBuf.writableBytes()));
+                    if (allocHandle.lastBytesRead() <= 0) {
+                        byteBuf.release();
+                        byteBuf = null;
+                        close = allocHandle.lastBytesRead() < 0;
+                        break;
+                    }
+                    totalBytesRead += allocHandle.lastBytesRead();
+                    allocHandle.incMessagesRead(1);
+                    ByteBuf msg = byteBuf;
+                    byteBuf = null;
+                    pipeline().fireChannelRead(msg);
+                    // 没有读满说明socket中暂时没有数据了，读的次数到了上限也让给其他连接
+                } while (allocHandle.continueReading());
+                allocHandle.readComplete();
+                pipeline().fireChannelReadComplete();
+            } catch (IOException e) {
+                if (Objects.nonNull(byteBuf)) {
+                    byteBuf.release();
+                }
+                allocHandle.readComplete();
+                pipeline().fireChannelReadComplete();
+                pipeline().fireExceptionCaught(e);
+                close = true;
+            }
+            if (totalBytesRead > 0) {
+                eventLoop().metrics().recordBytesRead(totalBytesRead);
+            }
+            if (close) {
+                close(newPromise());
+            }
+        }
+    }
+}
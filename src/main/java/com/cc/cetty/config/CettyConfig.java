@@ -0,0 +1,230 @@
+package com.cc.cetty.config;
+
+import com.cc.cetty.buffer.PooledByteBufAllocator;
+import com.cc.cetty.channel.AdaptiveRecvByteBufAllocator;
+import com.cc.cetty.channel.DefaultMaxMessagesRecvByteBufAllocator;
+import com.cc.cetty.channel.RecvByteBufAllocator;
+import com.cc.cetty.channel.WriteBufferWaterMark;
+import com.cc.cetty.recycler.Recycler;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * 不可变的配置快照，构造时校验所有的值
+ * 热点路径读的是final字段和构造时创建好的水位线、读分配策略，不查表，也不读系统属性
+ * 默认值来自各个模块已经读好的系统属性，只在类加载时读一次
+ * 对象池容量和arena个数只影响之后用默认参数创建的Recycler和PooledByteBufAllocator，它们读ConfigRepository.DEFAULT的当前配置，
+ * 已经在用的池子不会调整大小；PooledByteBufAllocator.DEFAULT不读配置，静态的对象池只看到类加载时的配置
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+public final class CettyConfig {
+
+    private static final String PROPERTY_PREFIX = "cetty.";
+
+    private static final int DEFAULT_IO_RATIO = Integer.getInteger("cetty.ioRatio", 50);
+
+    private static final CettyConfig DEFAULTS = new Builder(defaultOptions()).build();
+
+    private final long version;
+
+    private final Map<ChannelOption<?>, Object> options;
+
+    private final int ioRatio;
+
+    private final WriteBufferWaterMark writeBufferWaterMark;
+
+    private final RecvByteBufAllocator recvByteBufAllocator;
+
+    private final int maxMessagesPerRead;
+
+    private final int recyclerMaxCapacityPerThread;
+
+    private final int numHeapArenas;
+
+    private final int numDirectArenas;
+
+    private CettyConfig(Builder builder) {
+        this.version = builder.version;
+        this.options = Collections.unmodifiableMap(new LinkedHashMap<>(builder.options));
+        this.ioRatio = AssertUtils.checkInRange(builder.get(ChannelOption.IO_RATIO), 1, 100, ChannelOption.IO_RATIO.name());
+        this.writeBufferWaterMark = new WriteBufferWaterMark(builder.get(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK),
+                builder.get(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK));
+        this.maxMessagesPerRead = AssertUtils.checkPositive(builder.get(ChannelOption.MAX_MESSAGES_PER_READ), ChannelOption.MAX_MESSAGES_PER_READ.name());
+        this.recvByteBufAllocator = new AdaptiveRecvByteBufAllocator(builder.get(ChannelOption.RCVBUF_MINIMUM),
+                builder.get(ChannelOption.RCVBUF_INITIAL), builder.get(ChannelOption.RCVBUF_MAXIMUM)).maxMessagesPerRead(maxMessagesPerRead);
+        this.recyclerMaxCapacityPerThread = AssertUtils.checkInRange(builder.get(ChannelOption.RECYCLER_MAX_CAPACITY_PER_THREAD),
+                0, Integer.MAX_VALUE, ChannelOption.RECYCLER_MAX_CAPACITY_PER_THREAD.name());
+        this.numHeapArenas = AssertUtils.checkInRange(builder.get(ChannelOption.ALLOCATOR_NUM_HEAP_ARENAS),
+                0, Integer.MAX_VALUE, ChannelOption.ALLOCATOR_NUM_HEAP_ARENAS.name());
+        this.numDirectArenas = AssertUtils.checkInRange(builder.get(ChannelOption.ALLOCATOR_NUM_DIRECT_ARENAS),
+                0, Integer.MAX_VALUE, ChannelOption.ALLOCATOR_NUM_DIRECT_ARENAS.name());
+    }
+
+    private static Map<ChannelOption<?>, Object> defaultOptions() {
+        Map<ChannelOption<?>, Object> options = new LinkedHashMap<>();
+        options.put(ChannelOption.IO_RATIO, DEFAULT_IO_RATIO);
+        options.put(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, WriteBufferWaterMark.DEFAULT.low());
+        options.put(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, WriteBufferWaterMark.DEFAULT.high());
+        options.put(ChannelOption.RCVBUF_MINIMUM, AdaptiveRecvByteBufAllocator.DEFAULT_MINIMUM);
+        options.put(ChannelOption.RCVBUF_INITIAL, AdaptiveRecvByteBufAllocator.DEFAULT_INITIAL);
+        options.put(ChannelOption.RCVBUF_MAXIMUM, AdaptiveRecvByteBufAllocator.DEFAULT_MAXIMUM);
+        options.put(ChannelOption.MAX_MESSAGES_PER_READ, DefaultMaxMessagesRecvByteBufAllocator.DEFAULT_MAX_MESSAGES_PER_READ);
+        options.put(ChannelOption.RECYCLER_MAX_CAPACITY_PER_THREAD, Recycler.defaultMaxCapacityPerThread());
+        options.put(ChannelOption.ALLOCATOR_NUM_HEAP_ARENAS, PooledByteBufAllocator.defaultNumHeapArena());
+        options.put(ChannelOption.ALLOCATOR_NUM_DIRECT_ARENAS, PooledByteBufAllocator.defaultNumDirectArena());
+        return options;
+    }
+
+    /**
+     * @return 由系统属性决定的默认配置，版本号为0
+     */
+    public static CettyConfig defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @return 以默认配置为基础的builder
+     */
+    public static Builder builder() {
+        return DEFAULTS.toBuilder();
+    }
+
+    /**
+     * @return 以这份配置为基础的builder
+     */
+    public Builder toBuilder() {
+        return new Builder(options).version(version);
+    }
+
+    /**
+     * @return 版本号，每次发布新配置加一
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * 按键查找，不在热点路径上使用
+     *
+     * @param option option
+     * @param <T>    T
+     * @return 值，没有这个键时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ChannelOption<T> option) {
+        return (T) options.get(option);
+    }
+
+    public int ioRatio() {
+        return ioRatio;
+    }
+
+    public WriteBufferWaterMark writeBufferWaterMark() {
+        return writeBufferWaterMark;
+    }
+
+    /**
+     * @return 所有没有单独设置读分配策略的channel共用的策略，策略本身无状态，状态在每个channel的handle中
+     */
+    public RecvByteBufAllocator recvByteBufAllocator() {
+        return recvByteBufAllocator;
+    }
+
+    public int maxMessagesPerRead() {
+        return maxMessagesPerRead;
+    }
+
+    public int recyclerMaxCapacityPerThread() {
+        return recyclerMaxCapacityPerThread;
+    }
+
+    public int numHeapArenas() {
+        return numHeapArenas;
+    }
+
+    public int numDirectArenas() {
+        return numDirectArenas;
+    }
+
+    @Override
+    public String toString() {
+        return "CettyConfig(version: " + version + ", options: " + options + ')';
+    }
+
+    /**
+     * 配置的builder，build时才校验
+     */
+    public static final class Builder {
+
+        private final Map<ChannelOption<?>, Object> options;
+
+        private long version;
+
+        private Builder(Map<ChannelOption<?>, Object> options) {
+            this.options = new LinkedHashMap<>(options);
+        }
+
+        /**
+         * @param option 必须是ChannelOption中预先定义的键
+         * @param value  value
+         * @param <T>    T
+         * @return this
+         */
+        public <T> Builder option(ChannelOption<T> option, T value) {
+            AssertUtils.checkNotNull(option, "Option cannot be null");
+            AssertUtils.checkNotNull(value, "Value cannot be null");
+            if (!options.containsKey(option)) {
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+            options.put(option, value);
+            return this;
+        }
+
+        /**
+         * 从properties中读取配置，键可以带 cetty. 前缀，不认识的键和格式错误的值都会抛出异常
+         *
+         * @param properties properties
+         * @return this
+         */
+        public Builder load(Properties properties) {
+            AssertUtils.checkNotNull(properties, "Properties cannot be null");
+            for (String key : properties.stringPropertyNames()) {
+                String name = key.startsWith(PROPERTY_PREFIX) ? key.substring(PROPERTY_PREFIX.length()) : key;
+                if (!ChannelOption.exists(name)) {
+                    throw new IllegalArgumentException("Unknown option: " + key);
+                }
+                String value = properties.getProperty(key).trim();
+                try {
+                    option(ChannelOption.<Integer>valueOf(name), Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value of " + key + ": " + value, e);
+                }
+            }
+            return this;
+        }
+
+        Builder version(long version) {
+            this.version = version;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T get(ChannelOption<T> option) {
+            return (T) Objects.requireNonNull(options.get(option), option.name());
+        }
+
+        /**
+         * @return 新的配置，值不合法时抛出IllegalArgumentException
+         */
+        public CettyConfig build() {
+            return new CettyConfig(this);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.cc.cetty.config;
+
+import com.cc.cetty.attribute.AbstractConstant;
+import com.cc.cetty.attribute.ConstantPool;
+
+/**
+ * 可调参数的键，带有值的类型
+ * 名字就是去掉 cetty. 前缀的系统属性名，配置文件中的键也用这个名字
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@SuppressWarnings("UnusedDeclaration")
+public final class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
+
+    private static final ConstantPool<ChannelOption<Object>> POOL = new ConstantPool<ChannelOption<Object>>() {
+        @Override
+        protected ChannelOption<Object> newConstant(int id, String name) {
+            return new ChannelOption<>(id, name);
+        }
+    };
+
+    /**
+     * 事件循环中I/O时间占一轮循环的百分比
+     */
+    public static final ChannelOption<Integer> IO_RATIO = valueOf("ioRatio");
+
+    public static final ChannelOption<Integer> WRITE_BUFFER_LOW_WATER_MARK = valueOf("writeBufferLowWaterMark");
+
+    public static final ChannelOption<Integer> WRITE_BUFFER_HIGH_WATER_MARK = valueOf("writeBufferHighWaterMark");
+
+    /**
+     * 自适应读buf的最小、初始、最大大小
+     */
+    public static final ChannelOption<Integer> RCVBUF_MINIMUM = valueOf("recvBuffer.minimum");
+
+    public static final ChannelOption<Integer> RCVBUF_INITIAL = valueOf("recvBuffer.initial");
+
+    public static final ChannelOption<Integer> RCVBUF_MAXIMUM = valueOf("recvBuffer.maximum");
+
+    public static final ChannelOption<Integer> MAX_MESSAGES_PER_READ = valueOf("maxMessagesPerRead");
+
+    public static final ChannelOption<Integer> RECYCLER_MAX_CAPACITY_PER_THREAD = valueOf("recycler.maxCapacityPerThread");
+
+    public static final ChannelOption<Integer> ALLOCATOR_NUM_HEAP_ARENAS = valueOf("allocator.numHeapArenas");
+
+    public static final ChannelOption<Integer> ALLOCATOR_NUM_DIRECT_ARENAS = valueOf("allocator.numDirectArenas");
+
+    private ChannelOption(int id, String name) {
+        super(id, name);
+    }
+
+    /**
+     * @param name 名字
+     * @param <T>  值的类型
+     * @return 名字对应的键，不存在时创建
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ChannelOption<T> valueOf(String name) {
+        return (ChannelOption<T>) POOL.valueOf(name);
+    }
+
+    /**
+     * @param name 名字
+     * @return 键是否已经存在
+     */
+    public static boolean exists(String name) {
+        return POOL.exists(name);
+    }
+}
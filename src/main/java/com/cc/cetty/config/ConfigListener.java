@@ -0,0 +1,16 @@
+package com.cc.cetty.config;
+
+/**
+ * 配置变化的监听器，在发布新配置的线程上调用，不能阻塞
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@FunctionalInterface
+public interface ConfigListener {
+
+    /**
+     * @param config 新的配置快照
+     */
+    void configChanged(CettyConfig config);
+}
@@ -0,0 +1,161 @@
+package com.cc.cetty.config;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.async.ScheduledFuture;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 保存当前的配置，每次发布新配置版本号加一，并通知监听器
+ * 事件循环启动时从这里取一份快照，之后由监听器把新快照交给事件循环线程替换
+ * 可以定期检查一个本地的properties文件，文件变化后重新加载，不需要重启
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+@Slf4j
+public final class ConfigRepository {
+
+    public static final ConfigRepository DEFAULT = new ConfigRepository(CettyConfig.defaults());
+
+    /**
+     * 文件中只写需要覆盖的配置，没写的回到这份配置的值
+     */
+    private final CettyConfig base;
+
+    private final List<ConfigListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile CettyConfig current;
+
+    public ConfigRepository(CettyConfig base) {
+        this.base = AssertUtils.checkNotNull(base, "Base config cannot be null");
+        this.current = base;
+    }
+
+    /**
+     * @return 当前的配置
+     */
+    public CettyConfig current() {
+        return current;
+    }
+
+    public void addListener(ConfigListener listener) {
+        listeners.add(AssertUtils.checkNotNull(listener, "Listener cannot be null"));
+    }
+
+    public void removeListener(ConfigListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 在当前配置的基础上修改
+     *
+     * @param changes 修改builder
+     * @return 新的配置
+     */
+    public CettyConfig update(Consumer<CettyConfig.Builder> changes) {
+        AssertUtils.checkNotNull(changes, "Changes cannot be null");
+        synchronized (this) {
+            CettyConfig.Builder builder = current.toBuilder();
+            changes.accept(builder);
+            return publish(builder);
+        }
+    }
+
+    /**
+     * 用properties覆盖基础配置，properties中没有的回到基础配置的值
+     *
+     * @param properties properties
+     * @return 新的配置
+     */
+    public CettyConfig reload(Properties properties) {
+        AssertUtils.checkNotNull(properties, "Properties cannot be null");
+        synchronized (this) {
+            return publish(base.toBuilder().load(properties));
+        }
+    }
+
+    /**
+     * 在executor上定期检查文件，修改时间或者大小变化后重新加载
+     * 文件不存在或者内容不合法时保留当前的配置
+     *
+     * @param file     properties文件
+     * @param executor 执行检查的执行器
+     * @param interval 检查间隔
+     * @param unit     unit
+     * @return 取消后停止检查
+     */
+    public ScheduledFuture<?> watch(Path file, EventExecutor executor, long interval, TimeUnit unit) {
+        AssertUtils.checkNotNull(file, "File cannot be null");
+        AssertUtils.checkNotNull(executor, "Executor cannot be null");
+        return executor.scheduleWithFixedDelay(new FileWatcher(file), 0, interval, unit);
+    }
+
+    private CettyConfig publish(CettyConfig.Builder builder) {
+        assert Thread.holdsLock(this);
+        CettyConfig config = builder.version(current.version() + 1).build();
+        current = config;
+        for (ConfigListener listener : listeners) {
+            try {
+                listener.configChanged(config);
+            } catch (Throwable t) {
+                log.warn("An exception was thrown by {}.configChanged()", listener.getClass().getName(), t);
+            }
+        }
+        log.info("Published config: {}", config);
+        return config;
+    }
+
+    private final class FileWatcher implements Runnable {
+
+        private final Path file;
+
+        private FileTime lastModified;
+
+        private long lastSize = -1;
+
+        private FileWatcher(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!Files.isRegularFile(file)) {
+                    return;
+                }
+                FileTime modified = Files.getLastModifiedTime(file);
+                long size = Files.size(file);
+                if (modified.equals(lastModified) && size == lastSize) {
+                    return;
+                }
+                lastModified = modified;
+                lastSize = size;
+                Properties properties = new Properties();
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+                reload(properties);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Failed to reload config from {}, keep version {}", file, current.version(), e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigRepository(current: " + current + ')';
+    }
+}
@@ -0,0 +1,68 @@
+package com.cc.cetty.event;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.recycler.Recycler;
+import com.cc.cetty.utils.AssertUtils;
+
+/**
+ * 和某个channel相关的事件，对象池化
+ * 除了预定义的类型，也可以用EventType.valueOf创建自定义的类型
+ *
+ * @author: cc
+ * @date: 2023/12/18
+ **/
+public final class ChannelEvent extends Event {
+
+    public static final EventType<ChannelEvent> CHANNEL_ACTIVE = EventType.valueOf("channelActive");
+
+    public static final EventType<ChannelEvent> CHANNEL_INACTIVE = EventType.valueOf("channelInactive");
+
+    /**
+     * 由空闲检测发布，EventBus只负责投递
+     */
+    public static final EventType<ChannelEvent> CHANNEL_IDLE = EventType.valueOf("channelIdle");
+
+    private static final Recycler<ChannelEvent> RECYCLER = new Recycler<>() {
+        @Override
+        protected ChannelEvent newObject(Handle<ChannelEvent> handle) {
+            return new ChannelEvent(handle);
+        }
+    };
+
+    private final Recycler.Handle<ChannelEvent> handle;
+
+    private Channel channel;
+
+    private ChannelEvent(Recycler.Handle<ChannelEvent> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * @param type    事件的类型
+     * @param channel channel
+     * @return 从对象池中取出的事件
+     */
+    public static ChannelEvent newInstance(EventType<ChannelEvent> type, Channel channel) {
+        AssertUtils.checkNotNull(type, "Type cannot be null");
+        AssertUtils.checkNotNull(channel, "Channel cannot be null");
+        ChannelEvent event = RECYCLER.get();
+        event.init(type);
+        event.channel = channel;
+        return event;
+    }
+
+    public Channel channel() {
+        return channel;
+    }
+
+    @Override
+    protected void deallocate() {
+        channel = null;
+        handle.recycle(this);
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelEvent(type: " + type() + ", channel: " + channel + ')';
+    }
+}
@@ -0,0 +1,42 @@
+package com.cc.cetty.event;
+
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import com.cc.cetty.utils.AssertUtils;
+
+/**
+ * 把channel的激活和关闭发布到事件总线，然后继续向后传递
+ * 没有状态，所有的channel共用一个实例
+ *
+ * @author: cc
+ * @date: 2023/12/18
+ **/
+@ChannelHandler.Sharable
+public class ChannelEventPublisher extends ChannelInboundHandlerAdapter {
+
+    private final EventBus bus;
+
+    public ChannelEventPublisher(EventBus bus) {
+        this.bus = AssertUtils.checkNotNull(bus, "Bus cannot be null");
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        publish(ChannelEvent.CHANNEL_ACTIVE, ctx);
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        publish(ChannelEvent.CHANNEL_INACTIVE, ctx);
+        ctx.fireChannelInactive();
+    }
+
+    private void publish(EventType<ChannelEvent> type, ChannelHandlerContext ctx) {
+        // 没有订阅者时连事件对象都不取
+        if (bus.hasSubscribers(type)) {
+            bus.publish(ChannelEvent.newInstance(type, ctx.channel()));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cc.cetty.event;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 通过EventBus发布的事件
+ * 事件会被投递到多个事件循环，每个事件循环投递完成后计数减一，减到0时调用deallocate
+ * 子类一般从对象池中取出，在deallocate中清空字段并放回对象池，发布事件不产生新对象
+ * 一个事件只能发布一次，发布之后不能再修改，也不能在订阅者的回调之外持有
+ *
+ * @author: cc
+ * @date: 2023/12/18
+ **/
+public abstract class Event {
+
+    private static final AtomicIntegerFieldUpdater<Event> PENDING_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Event.class, "pending");
+
+    private EventType<?> type;
+
+    /**
+     * 还没有投递完成的事件循环个数
+     */
+    private volatile int pending;
+
+    /**
+     * @return 事件的类型
+     */
+    public final EventType<?> type() {
+        return type;
+    }
+
+    /**
+     * 子类从对象池中取出后调用
+     *
+     * @param type 事件的类型
+     */
+    protected final void init(EventType<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * 发布时调用，一次性设置要投递的事件循环个数，没有订阅者时直接回收
+     *
+     * @param deliveries 要投递的事件循环个数
+     */
+    final void published(int deliveries) {
+        if (pending != 0) {
+            throw new IllegalStateException("Event already published: " + this);
+        }
+        if (deliveries == 0) {
+            free();
+            return;
+        }
+        // 之后入队的操作会发布这次写入，投递的线程一定能看到
+        PENDING_UPDATER.lazySet(this, deliveries);
+    }
+
+    /**
+     * 一个事件循环投递完成后调用，最后一个完成时回收
+     */
+    final void delivered() {
+        if (PENDING_UPDATER.decrementAndGet(this) == 0) {
+            free();
+        }
+    }
+
+    private void free() {
+        type = null;
+        deallocate();
+    }
+
+    /**
+     * 所有事件循环都投递完成后调用，池化的事件在这里清空字段并放回对象池
+     */
+    protected abstract void deallocate();
+}
@@ -0,0 +1,321 @@
+package com.cc.cetty.event;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.utils.AssertUtils;
+import com.cc.cetty.utils.MpscArrayQueue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * 事件总线，每个订阅者固定在订阅时指定的事件循环上被调用
+ * 订阅和取消订阅加锁，替换写时复制的数组；发布不加锁，只读数组，然后把事件放进每个事件循环的无锁队列
+ * 同一个事件循环上的事件攒成一批，只提交一个任务，任务执行时把队列中的事件依次交给这个事件循环上的订阅者
+ * 同一个线程发布的事件，在同一个事件循环上按发布的顺序投递
+ * 事件队列是单消费者的，同一时刻只有抢到调度标记的线程消费，事件循环关闭后也由它丢弃队列中的事件
+ *
+ * @author: cc
+ * @date: 2023/12/18
+ **/
+@Slf4j
+public final class EventBus {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = Math.max(16, Integer.getInteger("cetty.eventBus.queueCapacity", 1024));
+
+    private static final Dispatcher[] EMPTY_DISPATCHERS = new Dispatcher[0];
+
+    private static final EventSubscriber<?>[] EMPTY_SUBSCRIBERS = new EventSubscriber<?>[0];
+
+    private final int queueCapacity;
+
+    /**
+     * 只在加锁时访问
+     */
+    private final Map<EventExecutor, Dispatcher> dispatchers = new IdentityHashMap<>();
+
+    /**
+     * 按事件类型的id索引，每个类型有订阅者的事件循环，写时复制
+     */
+    private volatile Dispatcher[][] dispatchersByType = new Dispatcher[0][];
+
+    public EventBus() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity 每个事件循环的事件队列容量
+     */
+    public EventBus(int queueCapacity) {
+        this.queueCapacity = AssertUtils.checkPositive(queueCapacity, "queueCapacity");
+    }
+
+    /**
+     * @param type       事件的类型
+     * @param executor   调用订阅者的事件循环
+     * @param subscriber 订阅者
+     * @param <E>        事件的类型
+     */
+    public <E extends Event> void subscribe(EventType<E> type, EventExecutor executor, EventSubscriber<? super E> subscriber) {
+        AssertUtils.checkNotNull(type, "Type cannot be null");
+        AssertUtils.checkNotNull(executor, "Executor cannot be null");
+        AssertUtils.checkNotNull(subscriber, "Subscriber cannot be null");
+        synchronized (this) {
+            Dispatcher dispatcher = dispatchers.computeIfAbsent(executor, e -> new Dispatcher(e, queueCapacity));
+            if (dispatcher.add(type.id(), subscriber)) {
+                setDispatchers(type.id(), append(dispatchers(dispatchersByType, type.id()), dispatcher));
+            }
+        }
+    }
+
+    /**
+     * 从所有的事件循环上取消订阅，已经在队列中的事件不会再交给这个订阅者
+     *
+     * @param type       事件的类型
+     * @param subscriber 订阅者
+     * @return 是否订阅过
+     */
+    public boolean unsubscribe(EventType<?> type, EventSubscriber<?> subscriber) {
+        AssertUtils.checkNotNull(type, "Type cannot be null");
+        AssertUtils.checkNotNull(subscriber, "Subscriber cannot be null");
+        synchronized (this) {
+            boolean removed = false;
+            for (Dispatcher dispatcher : dispatchers(dispatchersByType, type.id())) {
+                int remaining = dispatcher.remove(type.id(), subscriber);
+                if (remaining < 0) {
+                    continue;
+                }
+                removed = true;
+                if (remaining == 0) {
+                    setDispatchers(type.id(), without(dispatchers(dispatchersByType, type.id()), dispatcher));
+                }
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * 发布事件，不加锁，也不等待订阅者执行
+     * 发布之后事件归总线所有，投递完成后由总线回收，同一个事件不能发布两次
+     *
+     * @param event 事件
+     * @return 投递到的事件循环个数
+     */
+    public int publish(Event event) {
+        AssertUtils.checkNotNull(event, "Event cannot be null");
+        EventType<?> type = event.type();
+        if (type == null) {
+            throw new IllegalStateException("Event not initialized or recycled already: " + event);
+        }
+        Dispatcher[] targets = dispatchers(dispatchersByType, type.id());
+        event.published(targets.length);
+        for (Dispatcher dispatcher : targets) {
+            dispatcher.enqueue(event);
+        }
+        return targets.length;
+    }
+
+    /**
+     * @param type 事件的类型
+     * @return 是否有订阅者
+     */
+    public boolean hasSubscribers(EventType<?> type) {
+        return dispatchers(dispatchersByType, type.id()).length != 0;
+    }
+
+    private static Dispatcher[] dispatchers(Dispatcher[][] table, int id) {
+        Dispatcher[] targets = id < table.length ? table[id] : null;
+        return targets == null ? EMPTY_DISPATCHERS : targets;
+    }
+
+    private void setDispatchers(int id, Dispatcher[] targets) {
+        assert Thread.holdsLock(this);
+        Dispatcher[][] table = dispatchersByType;
+        table = Arrays.copyOf(table, Math.max(table.length, id + 1));
+        table[id] = targets;
+        dispatchersByType = table;
+    }
+
+    private static <T> T[] append(T[] array, T element) {
+        T[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = element;
+        return result;
+    }
+
+    private static <T> T[] without(T[] array, T element) {
+        int n = 0;
+        T[] result = Arrays.copyOf(array, array.length);
+        for (T e : array) {
+            if (e != element) {
+                result[n++] = e;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    @Override
+    public String toString() {
+        return "EventBus(queueCapacity: " + queueCapacity + ')';
+    }
+
+    /**
+     * 一个事件循环上的订阅者和事件队列
+     */
+    private static final class Dispatcher {
+
+        private static final int NOT_SCHEDULED = 0;
+
+        private static final int SCHEDULED = 1;
+
+        private static final AtomicIntegerFieldUpdater<Dispatcher> SCHEDULED_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Dispatcher.class, "scheduled");
+
+        private final EventExecutor executor;
+
+        private final int queueCapacity;
+
+        private final MpscArrayQueue<Event> queue;
+
+        private final Consumer<Event> deliverer = this::deliver;
+
+        private final Runnable drainTask = this::drain;
+
+        /**
+         * 按事件类型的id索引，这个事件循环上的订阅者，写时复制
+         */
+        private volatile EventSubscriber<?>[][] subscribersByType = new EventSubscriber<?>[0][];
+
+        /**
+         * 是否已经提交了消费队列的任务，只有把它从NOT_SCHEDULED改为SCHEDULED的发布者提交任务
+         */
+        private volatile int scheduled;
+
+        /**
+         * 事件循环拒绝过任务，之后的事件直接丢弃
+         */
+        private volatile boolean closed;
+
+        private Dispatcher(EventExecutor executor, int queueCapacity) {
+            this.executor = executor;
+            this.queueCapacity = queueCapacity;
+            this.queue = new MpscArrayQueue<>(queueCapacity);
+        }
+
+        /**
+         * @return 是否是这个类型的第一个订阅者
+         */
+        private boolean add(int id, EventSubscriber<?> subscriber) {
+            EventSubscriber<?>[][] table = subscribersByType;
+            EventSubscriber<?>[] subscribers = subscribers(table, id);
+            table = Arrays.copyOf(table, Math.max(table.length, id + 1));
+            table[id] = append(subscribers, subscriber);
+            subscribersByType = table;
+            return subscribers.length == 0;
+        }
+
+        /**
+         * @return 剩下的订阅者个数，没有订阅过时返回-1
+         */
+        private int remove(int id, EventSubscriber<?> subscriber) {
+            EventSubscriber<?>[][] table = subscribersByType;
+            EventSubscriber<?>[] subscribers = subscribers(table, id);
+            EventSubscriber<?>[] remaining = without(subscribers, subscriber);
+            if (remaining.length == subscribers.length) {
+                return -1;
+            }
+            table = table.clone();
+            table[id] = remaining;
+            subscribersByType = table;
+            return remaining.length;
+        }
+
+        private static EventSubscriber<?>[] subscribers(EventSubscriber<?>[][] table, int id) {
+            EventSubscriber<?>[] subscribers = id < table.length ? table[id] : null;
+            return subscribers == null ? EMPTY_SUBSCRIBERS : subscribers;
+        }
+
+        private void enqueue(Event event) {
+            if (closed) {
+                event.delivered();
+                return;
+            }
+            if (!queue.offer(event)) {
+                // 队列满了说明订阅者跟不上，退化为一个事件一个任务，这时不再保证顺序
+                try {
+                    executor.execute(() -> deliver(event));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Failed to dispatch event to {}, discard it", executor, e);
+                    event.delivered();
+                }
+                return;
+            }
+            if (scheduled == NOT_SCHEDULED && SCHEDULED_UPDATER.compareAndSet(this, NOT_SCHEDULED, SCHEDULED)) {
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * 只有把scheduled改为SCHEDULED的线程才能调用，它是队列唯一的消费者，直到把标记清除
+         * 事件循环拒绝了任务时，由这个线程丢弃队列中的事件，之后的发布者抢到标记也直接丢弃
+         */
+        private void scheduleDrain() {
+            if (!closed) {
+                try {
+                    executor.execute(drainTask);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    log.warn("Failed to dispatch events to {}, discard them", executor, e);
+                    closed = true;
+                }
+            }
+            // 已经关闭，之后的发布者不会再入队，很快就能清空
+            while (consume(Event::delivered, Integer.MAX_VALUE)) {
+                Thread.onSpinWait();
+            }
+        }
+
+        private void drain() {
+            if (consume(deliverer, queueCapacity)) {
+                // 一批处理不完，重新提交，让出事件循环给其他任务，标记留给下一个任务
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * 持有标记时消费队列，消费完清除标记
+         *
+         * @return 一批没有处理完时返回true，标记仍由调用者持有
+         */
+        private boolean consume(Consumer<Event> consumer, int limit) {
+            for (; ; ) {
+                queue.drain(consumer, limit);
+                if (!queue.isEmpty()) {
+                    return true;
+                }
+                scheduled = NOT_SCHEDULED;
+                // 清除标记之前入队的发布者看到的是SCHEDULED，不会提交任务，这里再检查一次，防止事件留在队列中
+                if (queue.isEmpty() || !SCHEDULED_UPDATER.compareAndSet(this, NOT_SCHEDULED, SCHEDULED)) {
+                    return false;
+                }
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void deliver(Event event) {
+            try {
+                for (EventSubscriber subscriber : subscribers(subscribersByType, event.type().id())) {
+                    try {
+                        subscriber.onEvent(event);
+                    } catch (Throwable t) {
+                        log.warn("An exception was thrown by {}.onEvent()", subscriber.getClass().getName(), t);
+                    }
+                }
+            } finally {
+                event.delivered();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.cc.cetty.event;
+
+/**
+ * 事件的订阅者，总是在订阅时指定的事件循环上被调用
+ * 事件对象是池化的，回调返回后会被回收，不能在回调之外持有
+ *
+ * @author: cc
+ * @date: 2023/12/18
+ **/
+@FunctionalInterface
+public interface EventSubscriber<E extends Event> {
+
+    /**
+     * @param event 事件
+     * @throws Exception 异常会被记录，不影响其他订阅者
+     */
+    void onEvent(E event) throws Exception;
+}
@@ -0,0 +1,65 @@
+package com.cc.cetty.event;
+
+import com.cc.cetty.attribute.AbstractConstant;
+import com.cc.cetty.attribute.ConstantPool;
+
+/**
+ * 事件的类型，带有事件对象的类型
+ * 同名的类型是同一个对象，EventBus按类型的id查找订阅者，不需要计算哈希
+ *
+ * @author: cc
+ * @date: 2023/12/18
+ **/
+@SuppressWarnings("UnusedDeclaration")
+public final class EventType<E extends Event> extends AbstractConstant<EventType<E>> {
+
+    private static final ConstantPool<EventType<Event>> POOL = new ConstantPool<EventType<Event>>() {
+        @Override
+        protected EventType<Event> newConstant(int id, String name) {
+            return new EventType<>(id, name);
+        }
+    };
+
+    private EventType(int id, String name) {
+        super(id, name);
+    }
+
+    /**
+     * @param name 名字
+     * @param <E>  事件的类型
+     * @return 名字对应的类型，不存在时创建
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Event> EventType<E> valueOf(String name) {
+        return (EventType<E>) (EventType<?>) POOL.valueOf(name);
+    }
+
+    /**
+     * @param firstNameComponent  类
+     * @param secondNameComponent 名字
+     * @param <E>                 事件的类型
+     * @return 名字为 类名#secondNameComponent 的类型
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Event> EventType<E> valueOf(Class<?> firstNameComponent, String secondNameComponent) {
+        return (EventType<E>) (EventType<?>) POOL.valueOf(firstNameComponent, secondNameComponent);
+    }
+
+    /**
+     * @param name 名字
+     * @return 类型是否已经存在
+     */
+    public static boolean exists(String name) {
+        return POOL.exists(name);
+    }
+
+    /**
+     * @param name 名字
+     * @param <E>  事件的类型
+     * @return 新的类型，名字已存在时抛出异常
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Event> EventType<E> newInstance(String name) {
+        return (EventType<E>) (EventType<?>) POOL.newInstance(name);
+    }
+}
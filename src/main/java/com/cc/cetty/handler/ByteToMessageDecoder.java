@@ -0,0 +1,384 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.buffer.ByteBufAllocator;
+import com.cc.cetty.buffer.CompositeByteBuf;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 把字节流解码成消息的处理器骨架，子类只需要实现decode
+ * 一次读到的数据不够一帧时先用Cumulator累积起来，等下一次读；解码出来的消息放在池化的列表里，逐个传给下一个处理器
+ * 第一次读到的buf直接作为累积buf，帧在一次读里完整时子类用retainedSlice切出帧，整个过程不拷贝
+ * 累积buf被多次读取后前面会留下已读的字节，读了discardAfterReads次之后丢掉已读部分，避免累积buf一直变大
+ * 有状态，不能共享
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+public abstract class ByteToMessageDecoder extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 把新数据拷贝到累积buf的后面，空间不够时扩容
+     * 得到的是一块连续的内存，解码器按字节读取最快，代价是拷贝
+     */
+    public static final Cumulator MERGE_CUMULATOR = (alloc, cumulation, in) -> {
+        if (!cumulation.isReadable()) {
+            cumulation.release();
+            return in;
+        }
+        try {
+            final int required = in.readableBytes();
+            // 已经有切片引用着累积buf时不能扩容，扩容会移动切片看到的内存
+            if (required > cumulation.maxWritableBytes()
+                    || (required > cumulation.writableBytes() && cumulation.refCnt() > 1)
+                    || cumulation.isReadOnly()) {
+                return expandCumulation(alloc, cumulation, in);
+            }
+            cumulation.writeBytes(in, in.readerIndex(), required);
+            in.readerIndex(in.writerIndex());
+            return cumulation;
+        } finally {
+            in.release();
+        }
+    };
+
+    /**
+     * 把新数据作为组件加到组合buf的后面，不拷贝
+     * 大的帧跨多次读时比合并更省，但组合buf按字节读取要先定位组件，适合帧比较大、解码器按块读取的协议
+     */
+    public static final Cumulator COMPOSITE_CUMULATOR = (alloc, cumulation, in) -> {
+        if (!cumulation.isReadable()) {
+            cumulation.release();
+            return in;
+        }
+        CompositeByteBuf composite;
+        if (cumulation instanceof CompositeByteBuf && cumulation.refCnt() == 1) {
+            composite = (CompositeByteBuf) cumulation;
+            // 组件是追加在容量之后的，写下标之后的空间要先去掉
+            if (composite.writerIndex() != composite.capacity()) {
+                composite.capacity(composite.writerIndex());
+            }
+        } else {
+            composite = alloc.compositeBuffer(Integer.MAX_VALUE).addComponent(true, cumulation);
+        }
+        return composite.addComponent(true, in);
+    };
+
+    private static final int DEFAULT_DISCARD_AFTER_READS = 16;
+
+    private static final byte STATE_INIT = 0;
+
+    private static final byte STATE_CALLING_CHILD_DECODE = 1;
+
+    private static final byte STATE_HANDLER_REMOVED_PENDING = 2;
+
+    private ByteBuf cumulation;
+
+    private Cumulator cumulator = MERGE_CUMULATOR;
+
+    private boolean singleDecode;
+
+    /**
+     * 当前的累积buf是否就是这一次读到的buf
+     */
+    private boolean first;
+
+    /**
+     * decode中删除了自己时，等decode返回再处理，避免累积buf在使用中被释放
+     */
+    private byte decodeState = STATE_INIT;
+
+    private int discardAfterReads = DEFAULT_DISCARD_AFTER_READS;
+
+    private int numReads;
+
+    protected ByteToMessageDecoder() {
+        ensureNotSharable();
+    }
+
+    /**
+     * @param cumulator 累积数据的方式
+     */
+    public void setCumulator(Cumulator cumulator) {
+        this.cumulator = AssertUtils.checkNotNull(cumulator, "Cumulator cannot be null");
+    }
+
+    /**
+     * @param discardAfterReads 累积buf被读了多少次之后丢掉已读的部分
+     */
+    public void setDiscardAfterReads(int discardAfterReads) {
+        if (discardAfterReads <= 0) {
+            throw new IllegalArgumentException("discardAfterReads: " + discardAfterReads + " (expected: > 0)");
+        }
+        this.discardAfterReads = discardAfterReads;
+    }
+
+    /**
+     * @param singleDecode 为true时每次channelRead只解码一条消息，用于协议升级时切换处理器
+     */
+    public void setSingleDecode(boolean singleDecode) {
+        this.singleDecode = singleDecode;
+    }
+
+    public boolean isSingleDecode() {
+        return singleDecode;
+    }
+
+    /**
+     * @return 累积buf中还没有解码的字节数
+     */
+    protected int actualReadableBytes() {
+        return internalBuffer().readableBytes();
+    }
+
+    /**
+     * @return 累积buf，没有时返回null
+     */
+    protected ByteBuf internalBuffer() {
+        return cumulation;
+    }
+
+    @Override
+    public final void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (decodeState == STATE_CALLING_CHILD_DECODE) {
+            decodeState = STATE_HANDLER_REMOVED_PENDING;
+            return;
+        }
+        ByteBuf buf = cumulation;
+        if (Objects.nonNull(buf)) {
+            cumulation = null;
+            numReads = 0;
+            // 还没解码的数据交给下一个处理器
+            if (buf.isReadable()) {
+                ctx.fireChannelRead(buf);
+                ctx.fireChannelReadComplete();
+            } else {
+                buf.release();
+            }
+        }
+        handlerRemoved0(ctx);
+    }
+
+    /**
+     * 子类在handlerRemoved时要做的事情
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        // do nothing
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        CodecOutputList out = CodecOutputList.newInstance();
+        try {
+            first = Objects.isNull(cumulation);
+            cumulation = first ? (ByteBuf) msg : cumulator.cumulate(ctx.alloc(), cumulation, (ByteBuf) msg);
+            callDecode(ctx, cumulation, out);
+        } catch (DecoderException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DecoderException(e);
+        } finally {
+            try {
+                if (Objects.nonNull(cumulation) && !cumulation.isReadable()) {
+                    numReads = 0;
+                    cumulation.release();
+                    cumulation = null;
+                } else if (++numReads >= discardAfterReads) {
+                    numReads = 0;
+                    discardSomeReadBytes();
+                }
+                fireChannelRead(ctx, out, out.size());
+            } finally {
+                out.recycle();
+            }
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        numReads = 0;
+        discardSomeReadBytes();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        CodecOutputList out = CodecOutputList.newInstance();
+        try {
+            if (Objects.nonNull(cumulation)) {
+                callDecode(ctx, cumulation, out);
+                if (!ctx.isRemoved() && Objects.nonNull(cumulation)) {
+                    decodeLast(ctx, cumulation, out);
+                }
+            }
+        } catch (DecoderException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DecoderException(e);
+        } finally {
+            try {
+                if (Objects.nonNull(cumulation)) {
+                    cumulation.release();
+                    cumulation = null;
+                }
+                int size = out.size();
+                fireChannelRead(ctx, out, size);
+                if (size > 0) {
+                    ctx.fireChannelReadComplete();
+                }
+                ctx.fireChannelInactive();
+            } finally {
+                out.recycle();
+            }
+        }
+    }
+
+    /**
+     * 只要还有数据并且解码有进展就一直调用decode
+     *
+     * @param ctx ctx
+     * @param in  累积buf
+     * @param out 解码出的消息
+     */
+    protected void callDecode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        try {
+            while (in.isReadable()) {
+                int outSize = out.size();
+                if (outSize > 0) {
+                    fireChannelRead(ctx, out, outSize);
+                    out.clear();
+                    // 下一个处理器可能删除了这个解码器，之后的数据不能再由它处理
+                    if (ctx.isRemoved()) {
+                        break;
+                    }
+                }
+                int oldInputLength = in.readableBytes();
+                decodeRemovalReentryProtection(ctx, in, out);
+                if (ctx.isRemoved()) {
+                    break;
+                }
+                if (out.isEmpty()) {
+                    if (oldInputLength == in.readableBytes()) {
+                        // 数据不够一帧
+                        break;
+                    }
+                    continue;
+                }
+                if (oldInputLength == in.readableBytes()) {
+                    throw new DecoderException(getClass().getName() + ".decode() did not read anything but decoded a message.");
+                }
+                if (isSingleDecode()) {
+                    break;
+                }
+            }
+        } catch (DecoderException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DecoderException(e);
+        }
+    }
+
+    /**
+     * 解码一次，数据不够一帧时什么都不读，直接返回
+     *
+     * @param ctx ctx
+     * @param in  累积buf
+     * @param out 解码出的消息
+     * @throws Exception 解码失败
+     */
+    protected abstract void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception;
+
+    /**
+     * 连接关闭前最后一次解码，默认和decode一样
+     *
+     * @param ctx ctx
+     * @param in  累积buf
+     * @param out 解码出的消息
+     * @throws Exception 解码失败
+     */
+    protected void decodeLast(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (in.isReadable()) {
+            decodeRemovalReentryProtection(ctx, in, out);
+        }
+    }
+
+    private void decodeRemovalReentryProtection(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        decodeState = STATE_CALLING_CHILD_DECODE;
+        try {
+            decode(ctx, in, out);
+        } finally {
+            boolean removePending = decodeState == STATE_HANDLER_REMOVED_PENDING;
+            decodeState = STATE_INIT;
+            if (removePending) {
+                fireChannelRead(ctx, out, out.size());
+                out.clear();
+                handlerRemoved(ctx);
+            }
+        }
+    }
+
+    /**
+     * 丢掉累积buf中已读的部分，只在已读部分超过一半时做，移动的字节数不会超过丢掉的字节数
+     * 第一次读时累积buf就是收到的buf，已经切出去的帧还引用着它，都不能移动数据
+     */
+    private void discardSomeReadBytes() {
+        ByteBuf buf = cumulation;
+        if (Objects.nonNull(buf) && !first && buf.refCnt() == 1 && buf.readerIndex() >= buf.capacity() >>> 1) {
+            buf.discardReadBytes();
+        }
+    }
+
+    private static void fireChannelRead(ChannelHandlerContext ctx, List<Object> msgs, int numElements) {
+        for (int i = 0; i < numElements; i++) {
+            ctx.fireChannelRead(msgs.get(i));
+        }
+    }
+
+    /**
+     * 累积buf和新数据都不够用时，分配一个更大的buf把两部分拷进去
+     */
+    private static ByteBuf expandCumulation(ByteBufAllocator alloc, ByteBuf oldCumulation, ByteBuf in) {
+        int oldBytes = oldCumulation.readableBytes();
+        int newBytes = in.readableBytes();
+        int totalBytes = oldBytes + newBytes;
+        ByteBuf newCumulation = alloc.buffer(alloc.calculateNewCapacity(totalBytes, Integer.MAX_VALUE));
+        ByteBuf toRelease = newCumulation;
+        try {
+            newCumulation.writeBytes(oldCumulation, oldCumulation.readerIndex(), oldBytes)
+                    .writeBytes(in, in.readerIndex(), newBytes);
+            in.readerIndex(in.writerIndex());
+            toRelease = oldCumulation;
+            return newCumulation;
+        } finally {
+            toRelease.release();
+        }
+    }
+
+    /**
+     * 累积数据的方式
+     */
+    @FunctionalInterface
+    public interface Cumulator {
+
+        /**
+         * 把in追加到cumulation后面，in的所有权交给累积器，用完要释放
+         *
+         * @param alloc      分配器
+         * @param cumulation 之前累积的数据
+         * @param in         新读到的数据
+         * @return 新的累积buf，可能就是cumulation
+         */
+        ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in);
+    }
+}
@@ -0,0 +1,47 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 处理器，被添加到channel的pipeline中处理入站事件和出站操作
+ * 处理器通过ChannelHandlerContext和pipeline中的其他处理器交互
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public interface ChannelHandler {
+
+    /**
+     * 处理器被添加到pipeline之后调用
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void handlerAdded(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * 处理器从pipeline中删除之后调用
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void handlerRemoved(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * 标记处理器可以被添加到多个pipeline中，处理器需要自己保证线程安全
+     * 没有这个注解的处理器只能添加一次
+     */
+    @Inherited
+    @Documented
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Sharable {
+    }
+}
@@ -0,0 +1,78 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * 处理器的骨架实现
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public abstract class ChannelHandlerAdapter implements ChannelHandler {
+
+    /**
+     * 每个线程缓存一份处理器类型是否可以共享，避免每次添加处理器都反射读注解
+     */
+    private static final FastThreadLocal<Map<Class<?>, Boolean>> SHARABLE_CACHE = new FastThreadLocal<>() {
+        @Override
+        protected Map<Class<?>, Boolean> initialValue() {
+            return new WeakHashMap<>(4);
+        }
+    };
+
+    /**
+     * 是否已经被添加到pipeline中
+     */
+    private volatile boolean added;
+
+    /**
+     * @return 是否可以被添加到多个pipeline中
+     */
+    public boolean isSharable() {
+        Class<?> clazz = getClass();
+        Map<Class<?>, Boolean> cache = SHARABLE_CACHE.get();
+        Boolean sharable = cache.get(clazz);
+        if (Objects.isNull(sharable)) {
+            sharable = clazz.isAnnotationPresent(Sharable.class);
+            cache.put(clazz, sharable);
+        }
+        return sharable;
+    }
+
+    /**
+     * 有状态的处理器在构造函数中调用，不允许标注@Sharable
+     */
+    protected void ensureNotSharable() {
+        if (isSharable()) {
+            throw new IllegalStateException("ChannelHandler " + getClass().getName() + " is not allowed to be shared");
+        }
+    }
+
+    /**
+     * 只给pipeline使用，不能共享的处理器只能被添加一次
+     *
+     * @return 是否是第一次被添加
+     */
+    public final boolean markAdded() {
+        if (added) {
+            return false;
+        }
+        added = true;
+        return true;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        // do nothing
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        // do nothing
+    }
+}
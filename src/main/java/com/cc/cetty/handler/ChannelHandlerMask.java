@@ -0,0 +1,170 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * 处理器的事件掩码
+ * 每个处理器类型对应一个掩码，记录它真正处理了哪些事件：适配器中只是往后传递的方法标注了@Skip，子类重写之后注解就没了
+ * 事件在pipeline中传递时根据掩码直接跳到下一个关心该事件的处理器，不用经过每个处理器的空方法
+ * 掩码按类型缓存在FastThreadLocal中，计算只需要反射一次，查询不需要加锁
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public final class ChannelHandlerMask {
+
+    public static final int MASK_EXCEPTION_CAUGHT = 1;
+
+    public static final int MASK_CHANNEL_REGISTERED = 1 << 1;
+
+    public static final int MASK_CHANNEL_UNREGISTERED = 1 << 2;
+
+    public static final int MASK_CHANNEL_ACTIVE = 1 << 3;
+
+    public static final int MASK_CHANNEL_INACTIVE = 1 << 4;
+
+    public static final int MASK_CHANNEL_READ = 1 << 5;
+
+    public static final int MASK_CHANNEL_READ_COMPLETE = 1 << 6;
+
+    public static final int MASK_USER_EVENT_TRIGGERED = 1 << 7;
+
+    public static final int MASK_CHANNEL_WRITABILITY_CHANGED = 1 << 8;
+
+    public static final int MASK_BIND = 1 << 9;
+
+    public static final int MASK_CONNECT = 1 << 10;
+
+    public static final int MASK_CLOSE = 1 << 11;
+
+    public static final int MASK_READ = 1 << 12;
+
+    public static final int MASK_WRITE = 1 << 13;
+
+    public static final int MASK_FLUSH = 1 << 14;
+
+    public static final int MASK_ONLY_INBOUND = MASK_CHANNEL_REGISTERED | MASK_CHANNEL_UNREGISTERED | MASK_CHANNEL_ACTIVE
+            | MASK_CHANNEL_INACTIVE | MASK_CHANNEL_READ | MASK_CHANNEL_READ_COMPLETE | MASK_USER_EVENT_TRIGGERED
+            | MASK_CHANNEL_WRITABILITY_CHANGED;
+
+    public static final int MASK_ALL_INBOUND = MASK_EXCEPTION_CAUGHT | MASK_ONLY_INBOUND;
+
+    public static final int MASK_ONLY_OUTBOUND = MASK_BIND | MASK_CONNECT | MASK_CLOSE | MASK_READ | MASK_WRITE | MASK_FLUSH;
+
+    /**
+     * 出站处理器不处理异常，所以这里和MASK_ONLY_OUTBOUND一样
+     */
+    public static final int MASK_ALL_OUTBOUND = MASK_ONLY_OUTBOUND;
+
+    /**
+     * 弱引用的key，处理器的类被卸载后缓存也会被清理
+     */
+    private static final FastThreadLocal<Map<Class<? extends ChannelHandler>, Integer>> MASKS = new FastThreadLocal<>() {
+        @Override
+        protected Map<Class<? extends ChannelHandler>, Integer> initialValue() {
+            return new WeakHashMap<>(32);
+        }
+    };
+
+    private ChannelHandlerMask() {
+    }
+
+    /**
+     * @param clazz 处理器的类型
+     * @return 处理器的事件掩码
+     */
+    public static int mask(Class<? extends ChannelHandler> clazz) {
+        Map<Class<? extends ChannelHandler>, Integer> cache = MASKS.get();
+        Integer mask = cache.get(clazz);
+        if (Objects.isNull(mask)) {
+            mask = mask0(clazz);
+            cache.put(clazz, mask);
+        }
+        return mask;
+    }
+
+    private static int mask0(Class<? extends ChannelHandler> handlerType) {
+        int mask = 0;
+        if (ChannelInboundHandler.class.isAssignableFrom(handlerType)) {
+            mask |= MASK_ALL_INBOUND;
+            if (isSkippable(handlerType, "channelRegistered", ChannelHandlerContext.class)) {
+                mask &= ~MASK_CHANNEL_REGISTERED;
+            }
+            if (isSkippable(handlerType, "channelUnregistered", ChannelHandlerContext.class)) {
+                mask &= ~MASK_CHANNEL_UNREGISTERED;
+            }
+            if (isSkippable(handlerType, "channelActive", ChannelHandlerContext.class)) {
+                mask &= ~MASK_CHANNEL_ACTIVE;
+            }
+            if (isSkippable(handlerType, "channelInactive", ChannelHandlerContext.class)) {
+                mask &= ~MASK_CHANNEL_INACTIVE;
+            }
+            if (isSkippable(handlerType, "channelRead", ChannelHandlerContext.class, Object.class)) {
+                mask &= ~MASK_CHANNEL_READ;
+            }
+            if (isSkippable(handlerType, "channelReadComplete", ChannelHandlerContext.class)) {
+                mask &= ~MASK_CHANNEL_READ_COMPLETE;
+            }
+            if (isSkippable(handlerType, "userEventTriggered", ChannelHandlerContext.class, Object.class)) {
+                mask &= ~MASK_USER_EVENT_TRIGGERED;
+            }
+            if (isSkippable(handlerType, "channelWritabilityChanged", ChannelHandlerContext.class)) {
+                mask &= ~MASK_CHANNEL_WRITABILITY_CHANGED;
+            }
+            if (isSkippable(handlerType, "exceptionCaught", ChannelHandlerContext.class, Throwable.class)) {
+                mask &= ~MASK_EXCEPTION_CAUGHT;
+            }
+        }
+        if (ChannelOutboundHandler.class.isAssignableFrom(handlerType)) {
+            mask |= MASK_ALL_OUTBOUND;
+            if (isSkippable(handlerType, "bind", ChannelHandlerContext.class, SocketAddress.class, ChannelPromise.class)) {
+                mask &= ~MASK_BIND;
+            }
+            if (isSkippable(handlerType, "connect", ChannelHandlerContext.class, SocketAddress.class, SocketAddress.class, ChannelPromise.class)) {
+                mask &= ~MASK_CONNECT;
+            }
+            if (isSkippable(handlerType, "close", ChannelHandlerContext.class, ChannelPromise.class)) {
+                mask &= ~MASK_CLOSE;
+            }
+            if (isSkippable(handlerType, "read", ChannelHandlerContext.class)) {
+                mask &= ~MASK_READ;
+            }
+            if (isSkippable(handlerType, "write", ChannelHandlerContext.class, Object.class, ChannelPromise.class)) {
+                mask &= ~MASK_WRITE;
+            }
+            if (isSkippable(handlerType, "flush", ChannelHandlerContext.class)) {
+                mask &= ~MASK_FLUSH;
+            }
+        }
+        return mask;
+    }
+
+    private static boolean isSkippable(Class<?> handlerType, String methodName, Class<?>... paramTypes) {
+        try {
+            return handlerType.getMethod(methodName, paramTypes).isAnnotationPresent(Skip.class);
+        } catch (NoSuchMethodException e) {
+            // 接口中的方法一定存在
+            throw new IllegalStateException("Handler method not found: " + handlerType.getName() + '.' + methodName, e);
+        }
+    }
+
+    /**
+     * 标注在适配器中只是把事件往后传递的方法上，子类重写后就会被调用
+     * 注解不会被继承到重写的方法上，所以只有没重写的方法会被跳过
+     */
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Skip {
+    }
+}
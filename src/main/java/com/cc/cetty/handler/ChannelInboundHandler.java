@@ -0,0 +1,89 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+/**
+ * 入站事件的处理器，所有方法都在处理器的执行器上调用
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public interface ChannelInboundHandler extends ChannelHandler {
+
+    /**
+     * channel注册到事件循环
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void channelRegistered(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * channel从事件循环注销
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void channelUnregistered(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * channel变为活跃，可以读写了
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void channelActive(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * channel不再活跃
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void channelInactive(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * 读到了消息
+     * 普通的channel读到的是ByteBuf，服务端channel读到的是新接收的channel
+     * 消息如果是引用计数的，处理器不往后传递时要负责释放
+     *
+     * @param ctx ctx
+     * @param msg msg
+     * @throws Exception 异常
+     */
+    void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception;
+
+    /**
+     * 一轮读结束
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void channelReadComplete(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * 用户自定义的事件
+     *
+     * @param ctx ctx
+     * @param evt 事件
+     * @throws Exception 异常
+     */
+    void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception;
+
+    /**
+     * channel的可写状态变了
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * 处理过程中出现了异常
+     *
+     * @param ctx   ctx
+     * @param cause cause
+     * @throws Exception 异常
+     */
+    void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception;
+}
@@ -0,0 +1,78 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在channel注册之后初始化pipeline的处理器，初始化完成后把自己从pipeline中删除
+ * 一个实例可以给多个channel使用，例如服务端的childHandler
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+@Slf4j
+@ChannelHandler.Sharable
+public abstract class ChannelInitializer<C extends Channel> extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 已经初始化过的ctx，handlerAdded和channelRegistered都可能触发初始化，保证只初始化一次
+     */
+    private final Set<ChannelHandlerContext> initMap = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 初始化channel，一般是往pipeline中添加处理器
+     *
+     * @param ch channel
+     * @throws Exception 异常会被交给exceptionCaught，然后关闭channel
+     */
+    protected abstract void initChannel(C ch) throws Exception;
+
+    @Override
+    public final void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        if (initChannel(ctx)) {
+            // 初始化时添加的处理器也要收到这个事件，所以从头开始传递
+            ctx.pipeline().fireChannelRegistered();
+        } else {
+            ctx.fireChannelRegistered();
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.warn("Failed to initialize a channel. Closing: {}", ctx.channel(), cause);
+        ctx.close();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isRegistered()) {
+            initChannel(ctx);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        initMap.remove(ctx);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean initChannel(ChannelHandlerContext ctx) throws Exception {
+        if (!initMap.add(ctx)) {
+            return false;
+        }
+        try {
+            initChannel((C) ctx.channel());
+        } catch (Throwable cause) {
+            exceptionCaught(ctx, cause);
+        } finally {
+            if (!ctx.isRemoved()) {
+                ctx.pipeline().remove(this);
+            }
+        }
+        return true;
+    }
+}
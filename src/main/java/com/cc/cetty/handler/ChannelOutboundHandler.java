@@ -0,0 +1,65 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.net.SocketAddress;
+
+/**
+ * 出站操作的处理器，操作从pipeline的尾部往头部传递，最后由头部交给channel的unsafe执行
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public interface ChannelOutboundHandler extends ChannelHandler {
+
+    /**
+     * @param ctx          ctx
+     * @param localAddress 本地地址
+     * @param promise      promise
+     * @throws Exception 异常
+     */
+    void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) throws Exception;
+
+    /**
+     * @param ctx           ctx
+     * @param remoteAddress 远端地址
+     * @param localAddress  本地地址，可以为空
+     * @param promise       promise
+     * @throws Exception 异常
+     */
+    void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) throws Exception;
+
+    /**
+     * @param ctx     ctx
+     * @param promise promise
+     * @throws Exception 异常
+     */
+    void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception;
+
+    /**
+     * 开始读，拦截这个操作可以做流量控制
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void read(ChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * 写出消息，消息只是放入待发送的队列中，flush时才真正发送
+     *
+     * @param ctx     ctx
+     * @param msg     msg
+     * @param promise promise
+     * @throws Exception 异常
+     */
+    void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception;
+
+    /**
+     * 把待发送队列中的消息发送出去
+     *
+     * @param ctx ctx
+     * @throws Exception 异常
+     */
+    void flush(ChannelHandlerContext ctx) throws Exception;
+}
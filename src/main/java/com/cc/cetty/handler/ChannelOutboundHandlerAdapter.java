@@ -0,0 +1,53 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.handler.ChannelHandlerMask.Skip;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.net.SocketAddress;
+
+/**
+ * 出站处理器的适配器，默认把操作传递给前一个处理器
+ * 这些方法都标注了@Skip，没有被重写的方法在传递操作时会被直接跳过
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter implements ChannelOutboundHandler {
+
+    @Skip
+    @Override
+    public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) throws Exception {
+        ctx.bind(localAddress, promise);
+    }
+
+    @Skip
+    @Override
+    public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) throws Exception {
+        ctx.connect(remoteAddress, localAddress, promise);
+    }
+
+    @Skip
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        ctx.close(promise);
+    }
+
+    @Skip
+    @Override
+    public void read(ChannelHandlerContext ctx) throws Exception {
+        ctx.read();
+    }
+
+    @Skip
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        ctx.write(msg, promise);
+    }
+
+    @Skip
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        ctx.flush();
+    }
+}
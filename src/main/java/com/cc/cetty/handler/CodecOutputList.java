@@ -0,0 +1,131 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.recycler.Recycler;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * 解码器输出消息用的列表，每次channelRead都要用一个，所以对象池化
+ * 只在事件循环线程上使用，不做并发控制，也不检查下标之外的元素
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+final class CodecOutputList extends AbstractList<Object> implements RandomAccess {
+
+    private static final Recycler<CodecOutputList> RECYCLER = new Recycler<>() {
+        @Override
+        protected CodecOutputList newObject(Handle<CodecOutputList> handle) {
+            return new CodecOutputList(handle);
+        }
+    };
+
+    private final Recycler.Handle<CodecOutputList> handle;
+
+    private Object[] array = new Object[16];
+
+    private int size;
+
+    /**
+     * 列表中的消息是否已经传给了下一个处理器
+     */
+    private boolean inserted;
+
+    private CodecOutputList(Recycler.Handle<CodecOutputList> handle) {
+        this.handle = handle;
+    }
+
+    static CodecOutputList newInstance() {
+        return RECYCLER.get();
+    }
+
+    @Override
+    public Object get(int index) {
+        checkIndex(index);
+        return array[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Object element) {
+        AssertUtils.checkNotNull(element, "Element cannot be null");
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size << 1);
+        }
+        array[size++] = element;
+        inserted = true;
+        return true;
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        AssertUtils.checkNotNull(element, "Element cannot be null");
+        checkIndex(index);
+        Object old = array[index];
+        array[index] = element;
+        return old;
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        AssertUtils.checkNotNull(element, "Element cannot be null");
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size << 1);
+        }
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = element;
+        size++;
+        inserted = true;
+    }
+
+    @Override
+    public Object remove(int index) {
+        checkIndex(index);
+        Object old = array[index];
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(array, index + 1, array, index, moved);
+        }
+        array[--size] = null;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        // 只重置size，下一次add会覆盖，recycle时再清空引用
+        size = 0;
+    }
+
+    /**
+     * @return 从创建到现在是否添加过消息
+     */
+    boolean insertSinceRecycled() {
+        return inserted;
+    }
+
+    /**
+     * 清空引用之后回收
+     */
+    void recycle() {
+        Arrays.fill(array, null);
+        size = 0;
+        inserted = false;
+        handle.recycle(this);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+}
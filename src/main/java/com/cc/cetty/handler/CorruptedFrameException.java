@@ -0,0 +1,14 @@
+package com.cc.cetty.handler;
+
+/**
+ * 帧的内容不合法，例如长度字段是负数
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+public class CorruptedFrameException extends DecoderException {
+
+    public CorruptedFrameException(String message) {
+        super(message);
+    }
+}
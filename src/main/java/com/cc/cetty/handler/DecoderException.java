@@ -0,0 +1,22 @@
+package com.cc.cetty.handler;
+
+/**
+ * 解码失败
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+public class DecoderException extends RuntimeException {
+
+    public DecoderException(String message) {
+        super(message);
+    }
+
+    public DecoderException(Throwable cause) {
+        super(cause);
+    }
+
+    public DecoderException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,55 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按固定长度切帧
+ * <pre>
+ * +---+----+------+----+      +-----+-----+-----+
+ * | A | BC | DEFG | HI |  ->  | ABC | DEF | GHI |
+ * +---+----+------+----+      +-----+-----+-----+
+ * </pre>
+ * 帧是累积buf的切片，不拷贝，下一个处理器用完后要释放
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+public class FixedLengthFrameDecoder extends ByteToMessageDecoder {
+
+    private final int frameLength;
+
+    /**
+     * @param frameLength 帧的长度
+     */
+    public FixedLengthFrameDecoder(int frameLength) {
+        if (frameLength <= 0) {
+            throw new IllegalArgumentException("frameLength: " + frameLength + " (expected: > 0)");
+        }
+        this.frameLength = frameLength;
+    }
+
+    @Override
+    protected final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        Object decoded = decode(ctx, in);
+        if (Objects.nonNull(decoded)) {
+            out.add(decoded);
+        }
+    }
+
+    /**
+     * @param ctx ctx
+     * @param in  累积buf
+     * @return 一帧，数据不够时返回null
+     * @throws Exception 解码失败
+     */
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if (in.readableBytes() < frameLength) {
+            return null;
+        }
+        return in.readRetainedSlice(frameLength);
+    }
+}
@@ -0,0 +1,142 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+/**
+ * 合并flush的处理器，应该放在靠近pipeline头部的位置
+ * 每次flush都是一次系统调用，处理一批请求时每个响应都flush的话，系统调用的次数和响应一样多
+ * 读的过程中的flush先攒着，到channelReadComplete时只flush一次，攒到explicitFlushAfterFlushes次时也会立刻flush，避免数据堆积太久
+ * 不在读的过程中时，默认立刻flush；consolidateWhenNoReadInProgress为true时提交一个任务，同一次事件循环中的flush合并成一次
+ *
+ * @author: cc
+ * @date: 2023/12/09
+ **/
+public class FlushConsolidationHandler extends ChannelDuplexHandler {
+
+    public static final int DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+
+    private final int explicitFlushAfterFlushes;
+
+    private final boolean consolidateWhenNoReadInProgress;
+
+    private Runnable flushTask;
+
+    private boolean flushScheduled;
+
+    private int flushPendingCount;
+
+    private boolean readInProgress;
+
+    public FlushConsolidationHandler() {
+        this(DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, false);
+    }
+
+    public FlushConsolidationHandler(int explicitFlushAfterFlushes) {
+        this(explicitFlushAfterFlushes, false);
+    }
+
+    /**
+     * @param explicitFlushAfterFlushes       攒了多少次flush之后立刻flush
+     * @param consolidateWhenNoReadInProgress 不在读的过程中时是否也合并，会让flush推迟到当前事件循环的任务中
+     */
+    public FlushConsolidationHandler(int explicitFlushAfterFlushes, boolean consolidateWhenNoReadInProgress) {
+        if (explicitFlushAfterFlushes <= 0) {
+            throw new IllegalArgumentException("explicitFlushAfterFlushes: " + explicitFlushAfterFlushes + " (expected: > 0)");
+        }
+        this.explicitFlushAfterFlushes = explicitFlushAfterFlushes;
+        this.consolidateWhenNoReadInProgress = consolidateWhenNoReadInProgress;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.flushTask = () -> {
+            flushScheduled = false;
+            if (flushPendingCount > 0 && !readInProgress) {
+                flushPendingCount = 0;
+                ctx.flush();
+            }
+        };
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (readInProgress) {
+            // channelReadComplete时再flush
+            if (++flushPendingCount == explicitFlushAfterFlushes) {
+                flushNow(ctx);
+            }
+        } else if (consolidateWhenNoReadInProgress) {
+            if (++flushPendingCount == explicitFlushAfterFlushes) {
+                flushNow(ctx);
+            } else {
+                scheduleFlush(ctx);
+            }
+        } else {
+            flushNow(ctx);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        // 关闭之前把攒着的数据发出去
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // 不可写了，攒着的数据要尽快发出去才能降下来
+            flushIfNeeded(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfNeeded(ctx);
+    }
+
+    private void resetReadAndFlushIfNeeded(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        flushIfNeeded(ctx);
+    }
+
+    private void flushIfNeeded(ChannelHandlerContext ctx) {
+        if (flushPendingCount > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        // 已经提交的任务执行时发现没有待flush的就什么都不做
+        flushPendingCount = 0;
+        ctx.flush();
+    }
+
+    private void scheduleFlush(ChannelHandlerContext ctx) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            ctx.executor().execute(flushTask);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按长度字段切帧，长度字段是大端序的无符号整数
+ * <pre>
+ * lengthFieldOffset = 2, lengthFieldLength = 3, lengthAdjustment = 0, initialBytesToStrip = 0
+ *
+ * +--------+--------+----------------+      +--------+--------+----------------+
+ * | Header | Length | Actual Content |  ->  | Header | Length | Actual Content |
+ * | 0xCAFE |  0x0C  | "HELLO, WORLD" |      | 0xCAFE |  0x0C  | "HELLO, WORLD" |
+ * +--------+--------+----------------+      +--------+--------+----------------+
+ * </pre>
+ * 帧长度 = 长度字段的值 + lengthAdjustment + lengthFieldOffset + lengthFieldLength
+ * 长度字段的值包含头部时，lengthAdjustment取负数；initialBytesToStrip是从帧的开头去掉的字节数，例如去掉头部
+ * 读到长度字段之后记住帧长度，帧跨多次读时不再重复解析
+ * 超过maxFrameLength的帧会被丢弃，并抛出TooLongFrameException
+ * 帧是累积buf的切片，不拷贝，下一个处理器用完后要释放
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+public class LengthFieldBasedFrameDecoder extends ByteToMessageDecoder {
+
+    private final int maxFrameLength;
+
+    private final int lengthFieldOffset;
+
+    private final int lengthFieldLength;
+
+    private final int lengthFieldEndOffset;
+
+    private final int lengthAdjustment;
+
+    private final int initialBytesToStrip;
+
+    /**
+     * 为true时一发现超长就抛出异常，否则丢弃完整帧之后再抛出
+     */
+    private final boolean failFast;
+
+    private boolean discardingTooLongFrame;
+
+    private long tooLongFrameLength;
+
+    private long bytesToDiscard;
+
+    /**
+     * 已经解析出来的帧长度，-1表示还没有解析
+     */
+    private int frameLengthInt = -1;
+
+    public LengthFieldBasedFrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength) {
+        this(maxFrameLength, lengthFieldOffset, lengthFieldLength, 0, 0);
+    }
+
+    public LengthFieldBasedFrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength,
+                                        int lengthAdjustment, int initialBytesToStrip) {
+        this(maxFrameLength, lengthFieldOffset, lengthFieldLength, lengthAdjustment, initialBytesToStrip, true);
+    }
+
+    /**
+     * @param maxFrameLength      帧的最大长度
+     * @param lengthFieldOffset   长度字段的偏移量
+     * @param lengthFieldLength   长度字段的字节数，只能是1、2、3、4、8
+     * @param lengthAdjustment    加到长度字段的值上的补偿
+     * @param initialBytesToStrip 从帧的开头去掉的字节数
+     * @param failFast            是否一发现超长就抛出异常
+     */
+    public LengthFieldBasedFrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength,
+                                        int lengthAdjustment, int initialBytesToStrip, boolean failFast) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength: " + maxFrameLength + " (expected: > 0)");
+        }
+        if (lengthFieldOffset < 0) {
+            throw new IllegalArgumentException("lengthFieldOffset: " + lengthFieldOffset + " (expected: >= 0)");
+        }
+        if (initialBytesToStrip < 0) {
+            throw new IllegalArgumentException("initialBytesToStrip: " + initialBytesToStrip + " (expected: >= 0)");
+        }
+        if (lengthFieldLength != 1 && lengthFieldLength != 2 && lengthFieldLength != 3
+                && lengthFieldLength != 4 && lengthFieldLength != 8) {
+            throw new IllegalArgumentException("lengthFieldLength: " + lengthFieldLength + " (expected: 1, 2, 3, 4, or 8)");
+        }
+        if (lengthFieldOffset > maxFrameLength - lengthFieldLength) {
+            throw new IllegalArgumentException("maxFrameLength (" + maxFrameLength + ") must be equal to or greater than "
+                    + "lengthFieldOffset (" + lengthFieldOffset + ") + lengthFieldLength (" + lengthFieldLength + ").");
+        }
+        this.maxFrameLength = maxFrameLength;
+        this.lengthFieldOffset = lengthFieldOffset;
+        this.lengthFieldLength = lengthFieldLength;
+        this.lengthAdjustment = lengthAdjustment;
+        this.lengthFieldEndOffset = lengthFieldOffset + lengthFieldLength;
+        this.initialBytesToStrip = initialBytesToStrip;
+        this.failFast = failFast;
+    }
+
+    @Override
+    protected final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        Object decoded = decode(ctx, in);
+        if (Objects.nonNull(decoded)) {
+            out.add(decoded);
+        }
+    }
+
+    /**
+     * @param ctx ctx
+     * @param in  累积buf
+     * @return 一帧，数据不够或者正在丢弃时返回null
+     * @throws Exception 解码失败
+     */
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if (frameLengthInt == -1) {
+            if (discardingTooLongFrame) {
+                discardingTooLongFrame(in);
+            }
+            if (in.readableBytes() < lengthFieldEndOffset) {
+                return null;
+            }
+            int actualLengthFieldOffset = in.readerIndex() + lengthFieldOffset;
+            long frameLength = getUnadjustedFrameLength(in, actualLengthFieldOffset, lengthFieldLength);
+            if (frameLength < 0) {
+                in.skipBytes(lengthFieldEndOffset);
+                throw new CorruptedFrameException("negative pre-adjustment length field: " + frameLength);
+            }
+            frameLength += lengthAdjustment + lengthFieldEndOffset;
+            if (frameLength < lengthFieldEndOffset) {
+                in.skipBytes(lengthFieldEndOffset);
+                throw new CorruptedFrameException("Adjusted frame length (" + frameLength + ") is less than lengthFieldEndOffset: " + lengthFieldEndOffset);
+            }
+            if (frameLength > maxFrameLength) {
+                exceededFrameLength(in, frameLength);
+                return null;
+            }
+            frameLengthInt = (int) frameLength;
+        }
+        if (in.readableBytes() < frameLengthInt) {
+            return null;
+        }
+        if (initialBytesToStrip > frameLengthInt) {
+            in.skipBytes(frameLengthInt);
+            int frameLength = frameLengthInt;
+            frameLengthInt = -1;
+            throw new CorruptedFrameException("Adjusted frame length (" + frameLength + ") is less than initialBytesToStrip: " + initialBytesToStrip);
+        }
+        in.skipBytes(initialBytesToStrip);
+        int readerIndex = in.readerIndex();
+        int actualFrameLength = frameLengthInt - initialBytesToStrip;
+        ByteBuf frame = extractFrame(ctx, in, readerIndex, actualFrameLength);
+        in.readerIndex(readerIndex + actualFrameLength);
+        frameLengthInt = -1;
+        return frame;
+    }
+
+    /**
+     * 读出长度字段，子类可以覆盖来支持其他编码方式
+     *
+     * @param buf    累积buf
+     * @param offset 长度字段的位置
+     * @param length 长度字段的字节数
+     * @return 长度字段的值
+     */
+    protected long getUnadjustedFrameLength(ByteBuf buf, int offset, int length) {
+        switch (length) {
+            case 1:
+                return buf.getByte(offset) & 0xFF;
+            case 2:
+                return buf.getShort(offset) & 0xFFFF;
+            case 3:
+                return (buf.getByte(offset) & 0xFF) << 16 | buf.getShort(offset + 1) & 0xFFFF;
+            case 4:
+                return buf.getInt(offset) & 0xFFFFFFFFL;
+            case 8:
+                return buf.getLong(offset);
+            default:
+                throw new DecoderException("unsupported lengthFieldLength: " + lengthFieldLength + " (expected: 1, 2, 3, 4, or 8)");
+        }
+    }
+
+    /**
+     * 切出帧，默认是不拷贝的切片，子类可以覆盖成拷贝
+     *
+     * @param ctx    ctx
+     * @param buffer 累积buf
+     * @param index  帧的开始位置
+     * @param length 帧的长度
+     * @return 帧
+     */
+    protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer, int index, int length) {
+        return buffer.retainedSlice(index, length);
+    }
+
+    private void exceededFrameLength(ByteBuf in, long frameLength) {
+        long discard = frameLength - in.readableBytes();
+        tooLongFrameLength = frameLength;
+        if (discard < 0) {
+            // 整个超长帧都在buf里，直接跳过
+            in.skipBytes((int) frameLength);
+        } else {
+            discardingTooLongFrame = true;
+            bytesToDiscard = discard;
+            in.skipBytes(in.readableBytes());
+        }
+        failIfNecessary(true);
+    }
+
+    private void discardingTooLongFrame(ByteBuf in) {
+        long bytesToDiscard = this.bytesToDiscard;
+        int localBytesToDiscard = (int) Math.min(bytesToDiscard, in.readableBytes());
+        in.skipBytes(localBytesToDiscard);
+        bytesToDiscard -= localBytesToDiscard;
+        this.bytesToDiscard = bytesToDiscard;
+        failIfNecessary(false);
+    }
+
+    private void failIfNecessary(boolean firstDetectionOfTooLongFrame) {
+        if (bytesToDiscard == 0) {
+            // 超长帧已经丢完，重置状态
+            long tooLongFrameLength = this.tooLongFrameLength;
+            this.tooLongFrameLength = 0;
+            discardingTooLongFrame = false;
+            if (!failFast || firstDetectionOfTooLongFrame) {
+                fail(tooLongFrameLength);
+            }
+        } else if (failFast && firstDetectionOfTooLongFrame) {
+            fail(tooLongFrameLength);
+        }
+    }
+
+    private void fail(long frameLength) {
+        if (frameLength > 0) {
+            throw new TooLongFrameException("Adjusted frame length exceeds " + maxFrameLength + ": " + frameLength + " - discarded");
+        }
+        throw new TooLongFrameException("Adjusted frame length exceeds " + maxFrameLength + " - discarding");
+    }
+}
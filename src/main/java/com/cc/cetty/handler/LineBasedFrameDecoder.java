@@ -0,0 +1,148 @@
+package com.cc.cetty.handler;
+
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按行切帧，行以\n或者\r\n结尾
+ * 没找到换行符时记住已经找过的位置，下一次读到数据后从这里继续找，长行跨多次读时不会重复扫描
+ * 行超过maxLength时丢弃到下一个换行符为止，并触发TooLongFrameException
+ * 帧是累积buf的切片，不拷贝，下一个处理器用完后要释放
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+public class LineBasedFrameDecoder extends ByteToMessageDecoder {
+
+    private final int maxLength;
+
+    /**
+     * 为true时一发现超长就触发异常，否则丢弃完整行之后再触发
+     */
+    private final boolean failFast;
+
+    private final boolean stripDelimiter;
+
+    /**
+     * 是否正在丢弃超长的行
+     */
+    private boolean discarding;
+
+    private int discardedBytes;
+
+    /**
+     * 上一次找换行符找到的位置，相对于readerIndex
+     */
+    private int offset;
+
+    /**
+     * @param maxLength 行的最大长度，不含换行符
+     */
+    public LineBasedFrameDecoder(int maxLength) {
+        this(maxLength, true, false);
+    }
+
+    /**
+     * @param maxLength      行的最大长度，不含换行符
+     * @param stripDelimiter 帧里是否去掉换行符
+     * @param failFast       是否一发现超长就触发异常
+     */
+    public LineBasedFrameDecoder(int maxLength, boolean stripDelimiter, boolean failFast) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("maxLength: " + maxLength + " (expected: > 0)");
+        }
+        this.maxLength = maxLength;
+        this.failFast = failFast;
+        this.stripDelimiter = stripDelimiter;
+    }
+
+    @Override
+    protected final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        Object decoded = decode(ctx, in);
+        if (Objects.nonNull(decoded)) {
+            out.add(decoded);
+        }
+    }
+
+    /**
+     * @param ctx    ctx
+     * @param buffer 累积buf
+     * @return 一行，数据不够或者正在丢弃时返回null
+     * @throws Exception 解码失败
+     */
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf buffer) throws Exception {
+        final int eol = findEndOfLine(buffer);
+        if (!discarding) {
+            if (eol >= 0) {
+                final int length = eol - buffer.readerIndex();
+                final int delimLength = buffer.getByte(eol) == '\r' ? 2 : 1;
+                if (length > maxLength) {
+                    buffer.readerIndex(eol + delimLength);
+                    fail(ctx, length);
+                    return null;
+                }
+                if (stripDelimiter) {
+                    ByteBuf frame = buffer.readRetainedSlice(length);
+                    buffer.skipBytes(delimLength);
+                    return frame;
+                }
+                return buffer.readRetainedSlice(length + delimLength);
+            }
+            final int length = buffer.readableBytes();
+            if (length > maxLength) {
+                discardedBytes = length;
+                buffer.readerIndex(buffer.writerIndex());
+                discarding = true;
+                offset = 0;
+                if (failFast) {
+                    fail(ctx, "over " + discardedBytes);
+                }
+            }
+            return null;
+        }
+        if (eol >= 0) {
+            final int length = discardedBytes + eol - buffer.readerIndex();
+            final int delimLength = buffer.getByte(eol) == '\r' ? 2 : 1;
+            buffer.readerIndex(eol + delimLength);
+            discardedBytes = 0;
+            discarding = false;
+            if (!failFast) {
+                fail(ctx, length);
+            }
+        } else {
+            discardedBytes += buffer.readableBytes();
+            buffer.readerIndex(buffer.writerIndex());
+            offset = 0;
+        }
+        return null;
+    }
+
+    private void fail(ChannelHandlerContext ctx, int length) {
+        fail(ctx, String.valueOf(length));
+    }
+
+    private void fail(ChannelHandlerContext ctx, String length) {
+        ctx.fireExceptionCaught(new TooLongFrameException("frame length (" + length + ") exceeds the allowed maximum (" + maxLength + ')'));
+    }
+
+    /**
+     * @param buffer 累积buf
+     * @return 行尾的位置，\r\n结尾时是\r的位置，没找到时返回-1
+     */
+    private int findEndOfLine(ByteBuf buffer) {
+        int totalLength = buffer.readableBytes();
+        int i = buffer.indexOf(buffer.readerIndex() + offset, buffer.writerIndex(), (byte) '\n');
+        if (i >= 0) {
+            offset = 0;
+            if (i > buffer.readerIndex() && buffer.getByte(i - 1) == '\r') {
+                i--;
+            }
+        } else {
+            offset = totalLength;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,14 @@
+package com.cc.cetty.handler;
+
+/**
+ * 帧的长度超过了上限
+ *
+ * @author: cc
+ * @date: 2023/12/12
+ **/
+public class TooLongFrameException extends DecoderException {
+
+    public TooLongFrameException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,246 @@
+package com.cc.cetty.loadtest;
+
+import com.cc.cetty.bootstrap.Bootstrap;
+import com.cc.cetty.bootstrap.ServerBootstrap;
+import com.cc.cetty.bootstrap.Transport;
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.EventLoopGroup;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import com.cc.cetty.handler.ChannelInitializer;
+import com.cc.cetty.handler.LengthFieldBasedFrameDecoder;
+import com.cc.cetty.metrics.HistogramSnapshot;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 在本机回环地址上启动服务端和客户端，压测事件循环、buf和pipeline，输出吞吐、延迟分位数和每个消息的分配字节数
+ * echo模式只经过读写路径；rpc模式的请求和响应都是 [长度 4字节][id 8字节][消息体]，多经过一次切帧和一次分配
+ * 用法: ./gradlew run --args="--mode=rpc --connections=64 --depth=8 --size=256 --threads=4 --rate=20000 --transport=epoll"
+ *
+ * @author: cc
+ * @date: 2023/12/19
+ **/
+@Slf4j
+public final class LoadTest {
+
+    static final int LENGTH_FIELD_LENGTH = 4;
+
+    static final int ID_LENGTH = 8;
+
+    private final LoadTestOptions options;
+
+    private final List<LoadTestClientHandler> clients = new CopyOnWriteArrayList<>();
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private volatile boolean measuring;
+
+    private volatile boolean stopped;
+
+    public LoadTest(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (options.rate() == 0) {
+            System.err.println("--rate=0 runs a closed loop, latency percentiles are not corrected for coordinated omission");
+        }
+        System.out.println(new LoadTest(options).run());
+    }
+
+    /**
+     * 预热，测量，然后关闭所有的连接和事件循环
+     *
+     * @return 测量的结果
+     * @throws Exception 连接失败，或者压测中有连接出错
+     */
+    public LoadTestResult run() throws Exception {
+        Transport transport = options.transport();
+        EventLoopGroup boss = transport.newEventLoopGroup(1);
+        EventLoopGroup serverGroup = transport.newEventLoopGroup(options.threads());
+        EventLoopGroup clientGroup = transport.newEventLoopGroup(options.threads());
+        List<Channel> channels = new ArrayList<>();
+        try {
+            Channel server = new ServerBootstrap()
+                    .group(boss, serverGroup)
+                    .channel(transport.serverSocketChannelClass())
+                    .childHandler(serverInitializer())
+                    .bind("127.0.0.1", 0)
+                    .sync()
+                    .channel();
+            channels.add(server);
+            byte[] payload = new byte[options.size()];
+            ThreadLocalRandom.current().nextBytes(payload);
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(clientGroup)
+                    .channel(transport.socketChannelClass())
+                    .handler(clientInitializer(payload));
+            for (int i = 0; i < options.connections(); i++) {
+                channels.add(bootstrap.connect(server.localAddress()).sync().channel());
+            }
+            log.info("Started {} connections, warming up for {}s", options.connections(), options.warmupSeconds());
+            sleep(options.warmupSeconds());
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            measuring = true;
+            sleep(options.durationSeconds());
+            measuring = false;
+            long elapsed = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            stopped = true;
+
+            if (failure.get() != null) {
+                throw new IllegalStateException("Load test failed", failure.get());
+            }
+            HistogramSnapshot latency = HistogramSnapshot.EMPTY;
+            for (LoadTestClientHandler client : clients) {
+                latency = latency.merge(client.histogram().snapshot());
+            }
+            long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+            return new LoadTestResult(options, latency, elapsed, allocated);
+        } finally {
+            stopped = true;
+            for (Channel channel : channels) {
+                channel.close();
+            }
+            clientGroup.shutdownGracefully();
+            serverGroup.shutdownGracefully();
+            boss.shutdownGracefully();
+            clientGroup.awaitTermination(5, TimeUnit.SECONDS);
+            serverGroup.awaitTermination(5, TimeUnit.SECONDS);
+            boss.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    boolean isMeasuring() {
+        return measuring;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    void failed(Throwable cause) {
+        if (!stopped && failure.compareAndSet(null, cause)) {
+            log.warn("Connection failed during load test", cause);
+        }
+    }
+
+    private ChannelHandler serverInitializer() {
+        if (options.mode() == LoadTestOptions.Mode.ECHO) {
+            return new EchoServerHandler();
+        }
+        RpcServerHandler handler = new RpcServerHandler();
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(newFrameDecoder(), handler);
+            }
+        };
+    }
+
+    private ChannelHandler clientInitializer(byte[] payload) {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                LoadTestClientHandler client = new LoadTestClientHandler(LoadTest.this, options, payload);
+                clients.add(client);
+                if (options.mode() == LoadTestOptions.Mode.RPC) {
+                    ch.pipeline().addLast(newFrameDecoder());
+                }
+                ch.pipeline().addLast(client);
+            }
+        };
+    }
+
+    /**
+     * @return 去掉长度字段的切帧器，帧是 [id][消息体]
+     */
+    private LengthFieldBasedFrameDecoder newFrameDecoder() {
+        return new LengthFieldBasedFrameDecoder(LENGTH_FIELD_LENGTH + ID_LENGTH + options.size(),
+                0, LENGTH_FIELD_LENGTH, 0, LENGTH_FIELD_LENGTH);
+    }
+
+    private static void sleep(int seconds) throws InterruptedException {
+        if (seconds > 0) {
+            TimeUnit.SECONDS.sleep(seconds);
+        }
+    }
+
+    /**
+     * @return 当前所有线程累计分配的字节数，JVM不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        // 统计期间退出的线程为-1，不计入
+        return Arrays.stream(threads.getThreadAllocatedBytes(threads.getAllThreadIds())).filter(b -> b > 0).sum();
+    }
+
+    /**
+     * 原样写回读到的字节，一批读完再flush
+     */
+    @ChannelHandler.Sharable
+    private static final class EchoServerHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.write(msg);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+
+    /**
+     * 收到 [id][消息体] 的帧，加上长度字段写回
+     */
+    @ChannelHandler.Sharable
+    private static final class RpcServerHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf frame = (ByteBuf) msg;
+            try {
+                int length = frame.readableBytes();
+                ctx.write(ctx.alloc().directBuffer(LENGTH_FIELD_LENGTH + length).writeInt(length).writeBytes(frame));
+            } finally {
+                frame.release();
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+}
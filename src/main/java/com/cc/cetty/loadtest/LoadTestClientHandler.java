@@ -0,0 +1,199 @@
+package com.cc.cetty.loadtest;
+
+import com.cc.cetty.async.ScheduledFuture;
+import com.cc.cetty.buffer.ByteBuf;
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter;
+import com.cc.cetty.metrics.Histogram;
+import com.cc.cetty.pipeline.ChannelHandlerContext;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测客户端，一个连接一个实例，只在连接的事件循环上执行
+ * 同一个连接上的响应和请求顺序一致，所以发送时间按先进先出放在环形数组中，不需要按id查找
+ * rate为0时收到一个响应就发一个请求，连接上始终有depth个请求在途，测出的是吞吐和服务时间
+ * rate大于0时按固定间隔计算每个请求预定的发送时间，延迟从预定时间开始算
+ * 服务端变慢、窗口占满时请求推迟发出，推迟的时间也算进延迟，不会因为少发了请求而漏掉慢的样本（coordinated omission）
+ * 间隔小于1毫秒时每毫秒检查一次，到期的请求一起发出，所以延迟里最多包含1毫秒的发送等待
+ *
+ * @author: cc
+ * @date: 2023/12/19
+ **/
+final class LoadTestClientHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 按速率发送时检查一次的最小间隔
+     */
+    private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LoadTest test;
+
+    private final LoadTestOptions.Mode mode;
+
+    private final int size;
+
+    private final byte[] payload;
+
+    private final long intervalNanos;
+
+    private final Histogram histogram = new Histogram();
+
+    /**
+     * 在途请求的发送时间或者预定的发送时间
+     */
+    private final long[] sendTimes;
+
+    private int head;
+
+    private int tail;
+
+    private int outstanding;
+
+    /**
+     * echo模式下还没有凑满一个消息的字节数
+     */
+    private int partialBytes;
+
+    private long nextId;
+
+    private long expectedId;
+
+    /**
+     * 下一个请求预定的发送时间
+     */
+    private long nextIntendedTime;
+
+    private ScheduledFuture<?> tickFuture;
+
+    private ChannelHandlerContext ctx;
+
+    LoadTestClientHandler(LoadTest test, LoadTestOptions options, byte[] payload) {
+        this.test = test;
+        this.mode = options.mode();
+        this.size = options.size();
+        this.payload = payload;
+        this.intervalNanos = options.rate() == 0 ? 0 : Math.max(1, TimeUnit.SECONDS.toNanos(1) / options.rate());
+        this.sendTimes = new long[options.depth()];
+    }
+
+    Histogram histogram() {
+        return histogram;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        long now = System.nanoTime();
+        if (intervalNanos == 0) {
+            while (outstanding < sendTimes.length) {
+                send(now);
+            }
+        } else {
+            nextIntendedTime = now;
+            long tick = Math.max(intervalNanos, MIN_TICK_NANOS);
+            tickFuture = ctx.executor().scheduleAtFixedRate(this::sendDue, 0, tick, TimeUnit.NANOSECONDS);
+        }
+        ctx.flush();
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (Objects.nonNull(tickFuture)) {
+            tickFuture.cancel(false);
+        }
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        ByteBuf buf = (ByteBuf) msg;
+        try {
+            if (mode == LoadTestOptions.Mode.ECHO) {
+                partialBytes += buf.readableBytes();
+                while (partialBytes >= size) {
+                    partialBytes -= size;
+                    complete();
+                }
+            } else {
+                long id = buf.readLong();
+                if (id != expectedId) {
+                    throw new IllegalStateException("Unexpected response id: " + id + " (expected: " + expectedId + ")");
+                }
+                expectedId++;
+                complete();
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        ctx.flush();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        test.failed(cause);
+        ctx.close();
+    }
+
+    private void complete() {
+        long now = System.nanoTime();
+        long sendTime = sendTimes[head];
+        head = head + 1 == sendTimes.length ? 0 : head + 1;
+        outstanding--;
+        if (test.isMeasuring()) {
+            histogram.record(now - sendTime);
+        }
+        if (test.isStopped()) {
+            return;
+        }
+        // 窗口空出来了，补发下一个请求，一起在channelReadComplete中flush
+        if (intervalNanos == 0) {
+            send(now);
+        } else {
+            writeDue(now);
+        }
+    }
+
+    private void sendDue() {
+        if (!test.isStopped() && writeDue(System.nanoTime()) > 0) {
+            ctx.flush();
+        }
+    }
+
+    /**
+     * 发出所有预定时间已到的请求，窗口满了就先不发，预定时间不变
+     *
+     * @return 发出的请求数
+     */
+    private int writeDue(long now) {
+        int written = 0;
+        while (outstanding < sendTimes.length && nextIntendedTime - now <= 0) {
+            send(nextIntendedTime);
+            nextIntendedTime += intervalNanos;
+            written++;
+        }
+        return written;
+    }
+
+    private void send(long sendTime) {
+        sendTimes[tail] = sendTime;
+        tail = tail + 1 == sendTimes.length ? 0 : tail + 1;
+        outstanding++;
+        ByteBuf buf;
+        if (mode == LoadTestOptions.Mode.ECHO) {
+            buf = ctx.alloc().directBuffer(size).writeBytes(payload);
+        } else {
+            buf = ctx.alloc().directBuffer(LoadTest.LENGTH_FIELD_LENGTH + LoadTest.ID_LENGTH + size)
+                    .writeInt(LoadTest.ID_LENGTH + size)
+                    .writeLong(nextId++)
+                    .writeBytes(payload);
+        }
+        ctx.write(buf);
+    }
+}
@@ -0,0 +1,199 @@
+package com.cc.cetty.loadtest;
+
+import com.cc.cetty.bootstrap.Transport;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.Locale;
+
+/**
+ * 压测参数，命令行格式为 --name=value，没有给出的参数使用默认值
+ * <pre>
+ * --mode=echo|rpc      echo原样返回字节流；rpc按长度字段切帧，响应带上请求的id
+ * --connections=16     连接数
+ * --depth=16           每个连接同时在途的请求数
+ * --size=128           每个消息的字节数，rpc模式不包含长度字段和id
+ * --threads=2          服务端和客户端各自的事件循环线程数
+ * --rate=1000          每个连接每秒发出的请求数，按预定的发送时间开环发送，延迟从预定时间开始算
+ *                      0表示收到响应就发下一个，这时只测吞吐，延迟分位数没有修正coordinated omission
+ * --warmup=5           预热秒数，不计入结果
+ * --duration=10        测量秒数
+ * --transport=auto     auto|nio|epoll，auto在epoll可用时用epoll，否则用nio
+ * </pre>
+ *
+ * @author: cc
+ * @date: 2023/12/19
+ **/
+public final class LoadTestOptions {
+
+    /**
+     * 压测的协议
+     */
+    public enum Mode {
+        ECHO, RPC
+    }
+
+    private Mode mode = Mode.ECHO;
+
+    private int connections = 16;
+
+    private int depth = 16;
+
+    private int size = 128;
+
+    private int threads = 2;
+
+    private int rate = 1000;
+
+    private int warmupSeconds = 5;
+
+    private int durationSeconds = 10;
+
+    private Transport transport = Transport.preferred();
+
+    /**
+     * @param args 命令行参数
+     * @return 参数，名字不认识或者值不合法时抛出IllegalArgumentException
+     */
+    public static LoadTestOptions parse(String... args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Invalid argument: " + arg + " (expected: --name=value)");
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1).trim();
+            try {
+                switch (name) {
+                    case "mode":
+                        options.mode(Mode.valueOf(value.toUpperCase()));
+                        break;
+                    case "connections":
+                        options.connections(Integer.parseInt(value));
+                        break;
+                    case "depth":
+                        options.depth(Integer.parseInt(value));
+                        break;
+                    case "size":
+                        options.size(Integer.parseInt(value));
+                        break;
+                    case "threads":
+                        options.threads(Integer.parseInt(value));
+                        break;
+                    case "rate":
+                        options.rate(Integer.parseInt(value));
+                        break;
+                    case "warmup":
+                        options.warmupSeconds(Integer.parseInt(value));
+                        break;
+                    case "duration":
+                        options.durationSeconds(Integer.parseInt(value));
+                        break;
+                    case "transport":
+                        options.transport("auto".equalsIgnoreCase(value) ? Transport.preferred() : Transport.valueOf(value.toUpperCase(Locale.ROOT)));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + name + ": " + value, e);
+            }
+        }
+        return options;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public LoadTestOptions mode(Mode mode) {
+        this.mode = AssertUtils.checkNotNull(mode, "Mode cannot be null");
+        return this;
+    }
+
+    public int connections() {
+        return connections;
+    }
+
+    public LoadTestOptions connections(int connections) {
+        this.connections = AssertUtils.checkPositive(connections, "connections");
+        return this;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public LoadTestOptions depth(int depth) {
+        this.depth = AssertUtils.checkPositive(depth, "depth");
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LoadTestOptions size(int size) {
+        this.size = AssertUtils.checkPositive(size, "size");
+        return this;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public LoadTestOptions threads(int threads) {
+        this.threads = AssertUtils.checkPositive(threads, "threads");
+        return this;
+    }
+
+    public int rate() {
+        return rate;
+    }
+
+    public LoadTestOptions rate(int rate) {
+        this.rate = AssertUtils.checkInRange(rate, 0, Integer.MAX_VALUE, "rate");
+        return this;
+    }
+
+    public int warmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public LoadTestOptions warmupSeconds(int warmupSeconds) {
+        this.warmupSeconds = AssertUtils.checkInRange(warmupSeconds, 0, Integer.MAX_VALUE, "warmup");
+        return this;
+    }
+
+    public int durationSeconds() {
+        return durationSeconds;
+    }
+
+    public LoadTestOptions durationSeconds(int durationSeconds) {
+        this.durationSeconds = AssertUtils.checkPositive(durationSeconds, "duration");
+        return this;
+    }
+
+    public Transport transport() {
+        return transport;
+    }
+
+    /**
+     * @param transport 服务端和客户端使用的传输层，必须可用
+     * @return this
+     */
+    public LoadTestOptions transport(Transport transport) {
+        AssertUtils.checkNotNull(transport, "Transport cannot be null");
+        if (!transport.isAvailable()) {
+            throw new IllegalArgumentException("Transport " + transport + " is not available");
+        }
+        this.transport = transport;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadTestOptions(mode: " + mode + ", connections: " + connections + ", depth: " + depth + ", size: " + size
+                + ", threads: " + threads + ", rate: " + rate + ", warmup: " + warmupSeconds + "s, duration: " + durationSeconds + "s, transport: " + transport + ")";
+    }
+}
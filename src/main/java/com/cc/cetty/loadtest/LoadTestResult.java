@@ -0,0 +1,92 @@
+package com.cc.cetty.loadtest;
+
+import com.cc.cetty.metrics.HistogramSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次压测的结果，延迟的单位是纳秒
+ *
+ * @author: cc
+ * @date: 2023/12/19
+ **/
+public final class LoadTestResult {
+
+    private final LoadTestOptions options;
+
+    private final HistogramSnapshot latency;
+
+    private final long elapsedNanos;
+
+    /**
+     * 测量期间所有线程分配的字节数，JVM不支持统计时为-1
+     */
+    private final long allocatedBytes;
+
+    LoadTestResult(LoadTestOptions options, HistogramSnapshot latency, long elapsedNanos, long allocatedBytes) {
+        this.options = options;
+        this.latency = latency;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public LoadTestOptions options() {
+        return options;
+    }
+
+    /**
+     * @return 测量期间完成的请求的延迟
+     */
+    public HistogramSnapshot latency() {
+        return latency;
+    }
+
+    public long messages() {
+        return latency.count();
+    }
+
+    public double messagesPerSecond() {
+        return latency.count() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return 单向的消息体吞吐，不包含长度字段和id
+     */
+    public double megabytesPerSecond() {
+        return messagesPerSecond() * options.size() / (1024 * 1024);
+    }
+
+    /**
+     * @return 每个消息分配的字节数，包括客户端、服务端和JVM自己的线程，JVM不支持统计时为-1
+     */
+    public long allocatedBytesPerMessage() {
+        if (allocatedBytes < 0) {
+            return -1;
+        }
+        return latency.count() == 0 ? 0 : allocatedBytes / latency.count();
+    }
+
+    /**
+     * @return 延迟是否从预定的发送时间开始算
+     */
+    public boolean coordinatedOmissionCorrected() {
+        return options.rate() > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%n"
+                        + "  throughput: %.0f msg/s, %.2f MiB/s%n"
+                        + "  latency(us): p50 %.1f, p99 %.1f, p999 %.1f, max %.1f, mean %.1f (%s)%n"
+                        + "  allocation: %s B/msg",
+                options, messagesPerSecond(), megabytesPerSecond(),
+                micros(latency.valueAtPercentile(50)), micros(latency.valueAtPercentile(99)),
+                micros(latency.valueAtPercentile(99.9)), micros(latency.max()), latency.mean() / 1000,
+                coordinatedOmissionCorrected() ? "from intended send time" : "closed loop, NOT corrected for coordinated omission",
+                allocatedBytes < 0 ? "n/a" : String.valueOf(allocatedBytesPerMessage()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.cc.cetty.local;
+
+import java.lang.ref.Cleaner;
+
+/**
+ * 基本类型的fast thread local
+ * 和FastThreadLocal一样在创建时就确定了下标，只是值存放在InternalThreadLocalMap的基本类型数组中
+ * 这样set的时候就不用装箱，热点路径上的自增不会产生任何对象
+ * 值跟随InternalThreadLocalMap一起在removeAll中被清除
+ *
+ * @author: cc
+ * @date: 2023/11/22
+ **/
+abstract class AbstractPrimitiveFastThreadLocal {
+
+    /**
+     * 和FastThreadLocal的index一样，由InternalThreadLocalMap统一分配
+     */
+    protected final int index;
+
+    /**
+     * 在cleaner中的注册，destroy时主动触发，忘记destroy的话被GC后归还下标
+     */
+    private final Cleaner.Cleanable cleanable;
+
+    AbstractPrimitiveFastThreadLocal() {
+        int i = InternalThreadLocalMap.nextVariableIndex();
+        index = i;
+        // lambda中不能引用this
+        cleanable = FastThreadLocal.cleaner.register(this, () -> InternalThreadLocalMap.releaseVariableIndex(i));
+    }
+
+    /**
+     * 销毁thread local，删除当前线程的值并归还下标，销毁之后不能再使用
+     */
+    public final void destroy() {
+        remove();
+        cleanable.clean();
+    }
+
+    /**
+     * @return thread local 是否有值
+     */
+    public final boolean isSet() {
+        return InternalThreadLocalMap.getMap().isPrimitiveVariableSet(index);
+    }
+
+    /**
+     * 移除 thread local，下次get会重新调用initialValue
+     */
+    public final void remove() {
+        InternalThreadLocalMap.getMap().removePrimitiveVariable(index);
+    }
+}
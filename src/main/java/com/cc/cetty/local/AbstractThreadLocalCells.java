@@ -0,0 +1,151 @@
+package com.cc.cetty.local;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 每个线程一个单元的统计工具的基类
+ * 线程第一次写的时候创建自己的单元，放在InternalThreadLocalMap里，之后只有这个线程写，不需要CAS
+ * 所有存活线程的单元登记在slots中，读的时候遍历汇总
+ * 线程退出时FastThreadLocalRunnable调用removeAll，onRemoval把单元的最终值并入已退出线程的总和
+ * 普通线程不会调用removeAll，线程被回收后由cleaner做同样的事
+ * 单元的写不会让出载体，所以虚拟线程在载体模式下共享载体线程的单元，这时cleaner挂在载体线程上
+ * <p>
+ * 登记和注销只在线程第一次写和退出时发生，加锁修改；虚拟线程可能有上百万个，所以登记和注销都是O(1)的：
+ * 数组满了翻倍，注销时用最后一个单元填上空位。读不加锁，遍历时正好有线程注销可能少算或多算一个单元
+ *
+ * @author: cc
+ * @date: 2023/12/14
+ **/
+abstract class AbstractThreadLocalCells<C> {
+
+    @SuppressWarnings("unchecked")
+    private volatile Slot<C>[] slots = new Slot[8];
+
+    /**
+     * 先写数组再写size，读的时候先读size再读数组，能保证看到的size个槽位都已经写好
+     */
+    private volatile int size;
+
+    /**
+     * persistent，线程池包装的任务结束时不注销，否则每个任务都会新建一个单元、多挂一个cleaner
+     */
+    private final FastThreadLocal<Slot<C>> cells = new FastThreadLocal<>(true, true) {
+        @Override
+        protected Slot<C> initialValue() {
+            Slot<C> slot = register(newCell());
+            Thread owner = InternalThreadLocalMap.currentCarrierThread();
+            if (!(owner instanceof FastThreadLocalAccess)) {
+                FastThreadLocal.cleaner.register(owner, () -> retire0(slot));
+            }
+            return slot;
+        }
+
+        @Override
+        protected void onRemoval(Slot<C> slot) {
+            retire0(slot);
+        }
+    };
+
+    /**
+     * @return 当前线程的单元，第一次调用时创建
+     */
+    protected final C cell() {
+        return cells.get().cell;
+    }
+
+    /**
+     * @return 存活线程的单元，只读的视图
+     */
+    protected final List<C> liveCells() {
+        int size = this.size;
+        Slot<C>[] slots = this.slots;
+        int length = Math.min(size, slots.length);
+        return new AbstractList<>() {
+            @Override
+            public C get(int index) {
+                Slot<C> slot = slots[index];
+                // 和注销并发时槽位可能已经被清空
+                return Objects.isNull(slot) ? null : slot.cell;
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
+    }
+
+    /**
+     * @return 写过并且还没有退出的线程数
+     */
+    public final int liveThreads() {
+        return size;
+    }
+
+    private synchronized Slot<C> register(C cell) {
+        Slot<C>[] slots = this.slots;
+        int size = this.size;
+        if (size == slots.length) {
+            this.slots = slots = Arrays.copyOf(slots, size << 1);
+        }
+        Slot<C> slot = new Slot<>(cell, size);
+        slots[size] = slot;
+        this.size = size + 1;
+        return slot;
+    }
+
+    /**
+     * removeAll和cleaner可能先后到来，只有注销成功的那一次会合并
+     */
+    private void retire0(Slot<C> slot) {
+        if (unregister(slot)) {
+            retire(slot.cell);
+        }
+    }
+
+    private synchronized boolean unregister(Slot<C> slot) {
+        int index = slot.index;
+        if (index < 0) {
+            return false;
+        }
+        Slot<C>[] slots = this.slots;
+        int last = size - 1;
+        Slot<C> moved = slots[last];
+        slots[index] = moved;
+        moved.index = index;
+        slots[last] = null;
+        slot.index = -1;
+        size = last;
+        return true;
+    }
+
+    /**
+     * @return 新的单元
+     */
+    protected abstract C newCell();
+
+    /**
+     * 把已退出线程的单元合并到总和中，合并后单元不会再被写
+     *
+     * @param cell 单元
+     */
+    protected abstract void retire(C cell);
+
+    /**
+     * 单元和它在slots中的位置，位置只在持有锁时读写，-1表示已经注销
+     */
+    private static final class Slot<C> {
+
+        private final C cell;
+
+        private int index;
+
+        private Slot(C cell, int index) {
+            this.cell = cell;
+            this.index = index;
+        }
+    }
+}
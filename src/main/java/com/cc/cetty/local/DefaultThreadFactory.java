@@ -0,0 +1,99 @@
+package com.cc.cetty.local;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 创建FastThreadLocalThread的线程工厂
+ * 线程名为 poolName-poolId-threadId
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public class DefaultThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger poolId = new AtomicInteger();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private final String prefix;
+
+    private final boolean daemon;
+
+    private final int priority;
+
+    private final ThreadGroup threadGroup;
+
+    public DefaultThreadFactory(Class<?> poolType) {
+        this(poolType, false, Thread.NORM_PRIORITY);
+    }
+
+    public DefaultThreadFactory(String poolName) {
+        this(poolName, false, Thread.NORM_PRIORITY);
+    }
+
+    public DefaultThreadFactory(Class<?> poolType, boolean daemon, int priority) {
+        this(toPoolName(poolType), daemon, priority);
+    }
+
+    public DefaultThreadFactory(String poolName, boolean daemon, int priority) {
+        this(poolName, daemon, priority, null);
+    }
+
+    public DefaultThreadFactory(String poolName, boolean daemon, int priority, ThreadGroup threadGroup) {
+        AssertUtils.checkNotBlank(poolName, "Pool name cannot be blank");
+        assert priority >= Thread.MIN_PRIORITY && priority <= Thread.MAX_PRIORITY : "Priority out of range: " + priority;
+        this.prefix = poolName + '-' + poolId.incrementAndGet() + '-';
+        this.daemon = daemon;
+        this.priority = priority;
+        this.threadGroup = threadGroup;
+    }
+
+    /**
+     * 把类名转成线程池的名字，例如 DefaultEventExecutor -> defaultEventExecutor
+     *
+     * @param poolType pool type
+     * @return pool name
+     */
+    public static String toPoolName(Class<?> poolType) {
+        AssertUtils.checkNotNull(poolType, "Pool type cannot be null");
+        String poolName = poolType.getSimpleName();
+        switch (poolName.length()) {
+            case 0:
+                return "unknown";
+            case 1:
+                return poolName.toLowerCase();
+            default:
+                if (Character.isUpperCase(poolName.charAt(0)) && Character.isLowerCase(poolName.charAt(1))) {
+                    return Character.toLowerCase(poolName.charAt(0)) + poolName.substring(1);
+                } else {
+                    return poolName;
+                }
+        }
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread t = newThread(r, prefix + nextId.incrementAndGet());
+        if (t.isDaemon() != daemon) {
+            t.setDaemon(daemon);
+        }
+        if (t.getPriority() != priority) {
+            t.setPriority(priority);
+        }
+        return t;
+    }
+
+    /**
+     * 子类可以重写该方法创建自己的线程
+     *
+     * @param r    runnable
+     * @param name thread name
+     * @return FastThreadLocalThread
+     */
+    protected Thread newThread(Runnable r, String name) {
+        return new FastThreadLocalThread(threadGroup, r, name);
+    }
+}
@@ -2,10 +2,10 @@ package com.cc.cetty.local;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collections;
-import java.util.IdentityHashMap;
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * Netty的数组下标是创建thread local时就确定的
@@ -18,14 +18,21 @@ import java.util.Set;
 public class FastThreadLocal<V> {
 
     /**
-     * 在这个下标存放一个set集合，记录所有thread local，用来remove, 这里应该固定为0
+     * 全局的 下标 -> fastThreadLocal 登记表，removeAll的时候通过下标找到对应的fastThreadLocal
+     * 只有创建和销毁fastThreadLocal的时候才会写，所以写的时候加锁，扩容时复制一份新数组
+     * 这里用弱引用，不然登记表会让fastThreadLocal永远无法被回收
      */
-    private static final int variablesToRemoveIndex = InternalThreadLocalMap.nextVariableIndex();
+    @SuppressWarnings("unchecked")
+    private static volatile WeakReference<FastThreadLocal<?>>[] registry = new WeakReference[32];
+
+    /**
+     * 用户忘记调用destroy时的兜底，fastThreadLocal被GC后由cleaner归还下标
+     */
+    static final Cleaner cleaner = Cleaner.create();
 
     /**
      * 还记得FastThreadLocalRunnable这个类吗？removeAll方法就会在该类的run方法中被调用
      */
-    @SuppressWarnings("unchecked")
     public static void removeAll() {
         // 得到存储数据的InternalThreadLocalMap
         InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
@@ -33,26 +40,96 @@ public class FastThreadLocal<V> {
             return;
         }
         try {
-            // 这里设计的很有意思，先通过fastThreadLocal的下标索引variablesToRemoveIndex，也就是0
-            // 从存储数据的InternalThreadLocalMap中得到存储的value
-            // 然后做了什么呢？
-            // 判断value是否为空，不为空则把该value强转为一个set集合，再把集合转换成一个fastThreadLocal数组，遍历该数组
-            // 然后通过fastThreadLocal删除threadLocalMap中存储的数据。
-            // 这里可以看到，其实该线程引用到的每一个fastThreadLocal会组成set集合，然后被放到threadLocalMap数组的0号位置
-            Object v = threadLocalMap.getIndexedVariable(variablesToRemoveIndex);
-            if (Objects.nonNull(v) && v != InternalThreadLocalMap.UNSET) {
-                Set<FastThreadLocal<?>> variablesToRemove = (Set<FastThreadLocal<?>>) v;
-                FastThreadLocal<?>[] variablesToRemoveArray = variablesToRemove.toArray(new FastThreadLocal[0]);
-                for (FastThreadLocal<?> tlv : variablesToRemoveArray) {
-                    tlv.remove(threadLocalMap);
-                }
-            }
+            removeAll(threadLocalMap);
         } finally {
             // 这一步是为了删除InternalThreadLocalMap或者是SlowThreadLocalMap
             InternalThreadLocalMap.removeMap();
         }
     }
 
+    /**
+     * 删除当前线程上所有非persistent的fastThreadLocal的值，和removeAll一样会调用onRemoval，但是保留map和它的数组
+     * 线程池的线程在两个任务之间调用，只清理上一个任务设置过的下标，下一个任务不需要重新创建map、重新扩容
+     */
+    public static void clearAll() {
+        InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+        if (Objects.isNull(threadLocalMap)) {
+            return;
+        }
+        try {
+            WeakReference<FastThreadLocal<?>>[] lookup = registry;
+            for (int i = threadLocalMap.nextIndexedVariable(0); i >= 0; i = threadLocalMap.nextIndexedVariable(i + 1)) {
+                removeUnlessPersistent(threadLocalMap, lookup, i);
+            }
+        } finally {
+            threadLocalMap.clearPrimitiveVariables();
+            threadLocalMap.setFutureListenerStackDepth(0);
+        }
+    }
+
+    /**
+     * 只删除snapshot之后新设置的非persistent的值，和clearAll一样会调用onRemoval
+     * 快照之前就有的值原样保留，比如事件循环的metrics
+     * 内存池的线程缓存、recycler的stack、计数器的单元是persistent的，任务里第一次创建也保留，
+     * 否则每个任务都要重新创建，每次还会在线程上多挂一个cleaner，线程池的线程不退出，这些cleaner和它们引用的缓存就一直留着
+     *
+     * @param threadLocalMap    当前线程的map
+     * @param indexedSnapshot   threadLocalMap.indexedVariablesSnapshot()
+     * @param primitiveSnapshot threadLocalMap.primitiveVariablesSnapshot()
+     */
+    static void clearSince(InternalThreadLocalMap threadLocalMap, long[] indexedSnapshot, long[] primitiveSnapshot) {
+        try {
+            WeakReference<FastThreadLocal<?>>[] lookup = registry;
+            for (int i = threadLocalMap.nextIndexedVariableSince(indexedSnapshot, 0); i >= 0;
+                 i = threadLocalMap.nextIndexedVariableSince(indexedSnapshot, i + 1)) {
+                removeUnlessPersistent(threadLocalMap, lookup, i);
+            }
+        } finally {
+            threadLocalMap.clearPrimitiveVariablesSince(primitiveSnapshot);
+        }
+    }
+
+    /**
+     * map中用一个位图记录了哪些下标设置了值
+     * 这里只遍历被置位的下标，通过登记表找到对应的fastThreadLocal，再删除threadLocalMap中存储的数据
+     *
+     * @param threadLocalMap thread local map
+     */
+    private static void removeAll(InternalThreadLocalMap threadLocalMap) {
+        WeakReference<FastThreadLocal<?>>[] lookup = registry;
+        for (int i = threadLocalMap.nextIndexedVariable(0); i >= 0; i = threadLocalMap.nextIndexedVariable(i + 1)) {
+            remove(threadLocalMap, lookup, i);
+        }
+    }
+
+    /**
+     * 和remove一样，但是保留persistent的fastThreadLocal的值
+     */
+    private static void removeUnlessPersistent(InternalThreadLocalMap threadLocalMap, WeakReference<FastThreadLocal<?>>[] lookup, int index) {
+        FastThreadLocal<?> tlv = lookup(lookup, index);
+        if (Objects.isNull(tlv) || !tlv.persistent) {
+            remove(threadLocalMap, lookup, index);
+        }
+    }
+
+    private static FastThreadLocal<?> lookup(WeakReference<FastThreadLocal<?>>[] lookup, int index) {
+        WeakReference<FastThreadLocal<?>> ref = index < lookup.length ? lookup[index] : null;
+        return Objects.nonNull(ref) ? ref.get() : null;
+    }
+
+    /**
+     * 通过登记表找到下标对应的fastThreadLocal，删除它在threadLocalMap中的值
+     */
+    private static void remove(InternalThreadLocalMap threadLocalMap, WeakReference<FastThreadLocal<?>>[] lookup, int index) {
+        FastThreadLocal<?> tlv = lookup(lookup, index);
+        if (Objects.nonNull(tlv)) {
+            tlv.remove(threadLocalMap);
+        } else {
+            // fastThreadLocal已经被回收，下标还没有归还，直接清掉
+            threadLocalMap.removeIndexedVariable(index);
+        }
+    }
+
     /**
      * 得到 threadLocalMap 数组存储的元素个数
      *
@@ -68,45 +145,49 @@ public class FastThreadLocal<V> {
     }
 
     /**
-     * 该方法是把该线程引用的fastThreadLocal组成一个set集合，然后放到threadLocalMap数组的0号位置
+     * 把fastThreadLocal登记到全局的登记表中
      *
-     * @param threadLocalMap thread local map
-     * @param variable       value
+     * @param variable fast thread local
      */
-    @SuppressWarnings("unchecked")
-    private static void recordVariablesToRemoveSet(InternalThreadLocalMap threadLocalMap, FastThreadLocal<?> variable) {
-        // 首先得到 threadLocalMap数组0号位置的对象
-        Object v = threadLocalMap.getIndexedVariable(variablesToRemoveIndex);
-        // 定义一个set集合
-        Set<FastThreadLocal<?>> valueToRemove;
-        if (v == InternalThreadLocalMap.UNSET || Objects.isNull(v)) {
-            // 如果threadLocalMap的0号位置存储的数据为null，那就创建一个set集合
-            valueToRemove = Collections.newSetFromMap(new IdentityHashMap<>());
-            // 把InternalThreadLocalMap数组的0号位置设置成set集合
-            threadLocalMap.setIndexedVariable(variablesToRemoveIndex, valueToRemove);
-        } else {
-            // 如果数组的0号位置不为null，就说明已经有set集合了，直接获得即可
-            valueToRemove = (Set<FastThreadLocal<?>>) v;
+    private static synchronized void register(FastThreadLocal<?> variable) {
+        WeakReference<FastThreadLocal<?>>[] lookup = registry;
+        int index = variable.index;
+        if (index >= lookup.length) {
+            lookup = Arrays.copyOf(lookup, Math.max(lookup.length << 1, index + 1));
         }
-        // 把 fastThreadLocal 添加到set集合中
-        valueToRemove.add(variable);
+        lookup[index] = new WeakReference<>(variable);
+        registry = lookup;
     }
 
     /**
-     * 删除set集合中的某一个 fast thread local 对象
+     * 从登记表中删除，并归还下标
      *
-     * @param threadLocalMap thread local map
-     * @param variable       value
+     * @param index index
      */
-    @SuppressWarnings("unchecked")
-    private static void removeVariablesFromRemoveSet(InternalThreadLocalMap threadLocalMap, FastThreadLocal<?> variable) {
-        // 根据0下标获得set集合
-        Object v = threadLocalMap.getIndexedVariable(variablesToRemoveIndex);
-        if (v == InternalThreadLocalMap.UNSET || Objects.isNull(v)) {
-            return;
+    private static synchronized void unregister(int index) {
+        WeakReference<FastThreadLocal<?>>[] lookup = registry;
+        if (index < lookup.length) {
+            lookup[index] = null;
+        }
+        registry = lookup;
+        InternalThreadLocalMap.releaseVariableIndex(index);
+    }
+
+    /**
+     * 归还下标的动作，不能持有fastThreadLocal本身，否则cleaner永远等不到它被回收
+     */
+    private static final class IndexReleaser implements Runnable {
+
+        private final int index;
+
+        private IndexReleaser(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            unregister(index);
         }
-        Set<FastThreadLocal<?>> variablesToRemove = (Set<FastThreadLocal<?>>) v;
-        variablesToRemove.remove(variable);
     }
 
     /**
@@ -114,11 +195,56 @@ public class FastThreadLocal<V> {
      */
     private final int index;
 
+    /**
+     * 在cleaner中的注册，destroy时主动触发
+     */
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * 为true时虚拟线程在载体模式下使用载体线程的map，见InternalThreadLocalMap
+     */
+    private final boolean carrierSafe;
+
+    /**
+     * 为true时值和线程同生命周期，clearAll和FastThreadLocalExecutors包装的任务结束时都不清理，只有removeAll会清理
+     */
+    private final boolean persistent;
+
     /**
      * FastThreadLocal构造器，创建的那一刻，threadLocal在map中的下标就已经确定了
      */
     public FastThreadLocal() {
+        this(false);
+    }
+
+    /**
+     * @param carrierSafe 值是否可以被同一个载体线程上的虚拟线程共享，只有拿到值之后用完之前不会让出载体的才能设为true
+     */
+    public FastThreadLocal(boolean carrierSafe) {
+        this(carrierSafe, false);
+    }
+
+    /**
+     * @param carrierSafe 值是否可以被同一个载体线程上的虚拟线程共享
+     * @param persistent  值是否跟着线程一直保留，线程缓存这类创建时会在线程上挂cleaner的值要设为true
+     */
+    public FastThreadLocal(boolean carrierSafe, boolean persistent) {
+        this.carrierSafe = carrierSafe;
+        this.persistent = persistent;
         index = InternalThreadLocalMap.nextVariableIndex();
+        register(this);
+        cleanable = cleaner.register(this, new IndexReleaser(index));
+    }
+
+    /**
+     * 销毁fastThreadLocal，删除当前线程的值并归还下标，归还的下标会被新创建的fastThreadLocal复用
+     * 其他线程上残留的值会在这些线程下次获取map或写入时被清理
+     * 销毁之后不能再使用该fastThreadLocal，重复调用没有影响
+     * 调用前要确保其他线程已经不再使用它，和其他线程上的get、set并发时，那些线程可能读到null或者刚写进去的值被清掉
+     */
+    public final void destroy() {
+        remove();
+        cleanable.clean();
     }
 
     /**
@@ -130,7 +256,7 @@ public class FastThreadLocal<V> {
     @SuppressWarnings("unchecked")
     public final V get() {
         // 得到存储数据的map
-        InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+        InternalThreadLocalMap threadLocalMap = map();
         Object v = threadLocalMap.getIndexedVariable(index);
         // 如果不为未设定状态就返回
         if (v != InternalThreadLocalMap.UNSET) {
@@ -148,7 +274,7 @@ public class FastThreadLocal<V> {
      */
     @SuppressWarnings("unchecked")
     public final V getIfExists() {
-        InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+        InternalThreadLocalMap threadLocalMap = map();
         if (Objects.nonNull(threadLocalMap)) {
             Object v = threadLocalMap.getIndexedVariable(index);
             if (v != InternalThreadLocalMap.UNSET) {
@@ -175,9 +301,8 @@ public class FastThreadLocal<V> {
         } catch (Exception e) {
             log.error("Init thread local value fail, Error:", e);
         }
-        // 把创建好的对象存储到map中
+        // 把创建好的对象存储到map中，map会在位图中记录该下标
         threadLocalMap.setIndexedVariable(index, v);
-        recordVariablesToRemoveSet(threadLocalMap, this);
         return v;
     }
 
@@ -190,7 +315,7 @@ public class FastThreadLocal<V> {
         // 如果该value不是未定义状态就可以直接存放
         if (value != InternalThreadLocalMap.UNSET) {
             // 得到该线程私有的 thread local map
-            InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+            InternalThreadLocalMap threadLocalMap = map();
             // 把值设置进去
             setKnownNotUnset(threadLocalMap, value);
         } else {
@@ -205,18 +330,15 @@ public class FastThreadLocal<V> {
      * @param value          value
      */
     private void setKnownNotUnset(InternalThreadLocalMap threadLocalMap, V value) {
-        // 设置value到本地map中
-        if (threadLocalMap.setIndexedVariable(index, value)) {
-            // 把fastThreadLocal对象放到本地map的0号位置的set中
-            recordVariablesToRemoveSet(threadLocalMap, this);
-        }
+        // 设置value到本地map中，map会在位图中记录该下标
+        threadLocalMap.setIndexedVariable(index, value);
     }
 
     /**
      * @return thread local 是否有值
      */
     public final boolean isSet() {
-        return isSet(InternalThreadLocalMap.getMap());
+        return isSet(map());
     }
 
     /**
@@ -231,7 +353,14 @@ public class FastThreadLocal<V> {
      * 移除 thread local
      */
     public final void remove() {
-        remove(InternalThreadLocalMap.getMap());
+        remove(map());
+    }
+
+    /**
+     * @return 当前线程使用的map
+     */
+    private InternalThreadLocalMap map() {
+        return carrierSafe ? InternalThreadLocalMap.getCarrierMap() : InternalThreadLocalMap.getMap();
     }
 
     /**
@@ -242,10 +371,8 @@ public class FastThreadLocal<V> {
         if (Objects.isNull(threadLocalMap)) {
             return;
         }
-        // 用fastThreadLocal的下标从map中得到存储的数据
+        // 用fastThreadLocal的下标从map中得到存储的数据，同时清除位图中的记录
         Object v = threadLocalMap.removeIndexedVariable(index);
-        // 从map 0号位置的set中删除 fastThreadLocal对象
-        removeVariablesFromRemoveSet(threadLocalMap, this);
         if (v != InternalThreadLocalMap.UNSET) {
             try {
                 // 该方法可以由用户自己实现，可以对value做一些处理
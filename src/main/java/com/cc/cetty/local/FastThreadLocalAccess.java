@@ -0,0 +1,21 @@
+package com.cc.cetty.local;
+
+/**
+ * 能直接持有InternalThreadLocalMap的线程，fastThreadLocal在这些线程上不需要经过原生ThreadLocal
+ * 实现类要保证线程退出前调用FastThreadLocal.removeAll
+ *
+ * @author: cc
+ * @date: 2023/12/15
+ **/
+public interface FastThreadLocalAccess {
+
+    /**
+     * @return 线程的map，还没有创建时为null
+     */
+    InternalThreadLocalMap threadLocalMap();
+
+    /**
+     * @param threadLocalMap 线程的map
+     */
+    void setThreadLocalMap(InternalThreadLocalMap threadLocalMap);
+}
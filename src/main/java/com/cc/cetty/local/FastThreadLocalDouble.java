@@ -0,0 +1,52 @@
+package com.cc.cetty.local;
+
+/**
+ * double类型的fast thread local，读写都不会装箱
+ * 值通过doubleToRawLongBits存放在基本类型数组中
+ *
+ * @author: cc
+ * @date: 2023/11/22
+ **/
+public class FastThreadLocalDouble extends AbstractPrimitiveFastThreadLocal {
+
+    /**
+     * @return value
+     */
+    public final double get() {
+        return get(InternalThreadLocalMap.getMap());
+    }
+
+    /**
+     * @param value value
+     */
+    public final void set(double value) {
+        InternalThreadLocalMap.getMap().setPrimitiveVariable(index, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * @param delta 增量
+     * @return 增加后的值
+     */
+    public final double addAndGet(double delta) {
+        InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+        double v = get(threadLocalMap) + delta;
+        threadLocalMap.setPrimitiveVariable(index, Double.doubleToRawLongBits(v));
+        return v;
+    }
+
+    private double get(InternalThreadLocalMap threadLocalMap) {
+        if (threadLocalMap.isPrimitiveVariableSet(index)) {
+            return Double.longBitsToDouble(threadLocalMap.getPrimitiveVariable(index));
+        }
+        double v = initialValue();
+        threadLocalMap.setPrimitiveVariable(index, Double.doubleToRawLongBits(v));
+        return v;
+    }
+
+    /**
+     * 该方法就是要被用户重写的初始化方法
+     */
+    protected double initialValue() {
+        return 0;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cc.cetty.local;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把任意的Executor包装成能正确清理fastThreadLocal的Executor
+ * 线程池的线程在任务之间不会退出，FastThreadLocalRunnable在线程退出时才调用removeAll，上一个任务设置的值会留给下一个任务
+ * 包装后每个任务执行前记下map的位图，执行完只清理任务新设置的下标，map和数组留给下一个任务复用
+ * 任务开始前就有的值不动，拒绝策略是CallerRunsPolicy或者executor直接在当前线程执行时，任务可能跑在事件循环上，
+ * 事件循环的metrics不能被清掉；在提交任务的线程上执行时不是线程池的工作线程，干脆不清理
+ * persistent的值即使是任务里第一次设置的也保留，比如内存池的线程缓存和计数器的单元，它们跟着线程，由线程的cleaner回收
+ * 想让线程本身也走快路径，创建线程池时用DefaultThreadFactory或者FastThreadLocalForkJoinWorkerThreadFactory
+ *
+ * @author: cc
+ * @date: 2023/12/15
+ **/
+public final class FastThreadLocalExecutors {
+
+    private FastThreadLocalExecutors() {
+    }
+
+    /**
+     * @param executor executor
+     * @return 每个任务执行完都清理fastThreadLocal的executor
+     */
+    public static Executor wrap(Executor executor) {
+        AssertUtils.checkNotNull(executor, "Executor cannot be null");
+        if (executor instanceof ExecutorService) {
+            return wrap((ExecutorService) executor);
+        }
+        return executor instanceof WrappedExecutor ? executor : new WrappedExecutor(executor);
+    }
+
+    /**
+     * submit、invokeAll等方法最终都会调用execute，所以只需要包装execute
+     *
+     * @param executor executor service
+     * @return 每个任务执行完都清理fastThreadLocal的executor service
+     */
+    public static ExecutorService wrap(ExecutorService executor) {
+        AssertUtils.checkNotNull(executor, "Executor cannot be null");
+        return executor instanceof WrappedExecutorService ? executor : new WrappedExecutorService(executor);
+    }
+
+    /**
+     * ForkJoinPool的工作线程会在空闲时退出，退出时调用removeAll
+     *
+     * @param parallelism 并行度
+     * @return 工作线程是FastThreadLocalForkJoinWorkerThread的ForkJoinPool
+     */
+    public static ForkJoinPool newForkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism, new FastThreadLocalForkJoinWorkerThreadFactory(ForkJoinPool.class), null, false);
+    }
+
+    /**
+     * @param task task
+     * @return 执行完清理fastThreadLocal的任务
+     */
+    public static Runnable wrapTask(Runnable task) {
+        AssertUtils.checkNotNull(task, "Task cannot be null");
+        return task instanceof ClearingTask ? task : new ClearingTask(task, null);
+    }
+
+    /**
+     * @param task task
+     * @return 执行完清理fastThreadLocal的任务，在当前线程上执行时不清理
+     */
+    private static Runnable wrapSubmittedTask(Runnable task) {
+        AssertUtils.checkNotNull(task, "Task cannot be null");
+        return task instanceof ClearingTask ? task : new ClearingTask(task, Thread.currentThread());
+    }
+
+    private static final class ClearingTask implements Runnable {
+
+        private final Runnable task;
+
+        /**
+         * 提交任务的线程，任务在这个线程上执行说明没有交给工作线程，为null时总是清理
+         */
+        private final Thread submitter;
+
+        private ClearingTask(Runnable task, Thread submitter) {
+            this.task = task;
+            this.submitter = submitter;
+        }
+
+        @Override
+        public void run() {
+            if (Thread.currentThread() == submitter) {
+                task.run();
+                return;
+            }
+            InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+            long[] indexedSnapshot = threadLocalMap.indexedVariablesSnapshot();
+            long[] primitiveSnapshot = threadLocalMap.primitiveVariablesSnapshot();
+            try {
+                task.run();
+            } finally {
+                FastThreadLocal.clearSince(threadLocalMap, indexedSnapshot, primitiveSnapshot);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    private static final class WrappedExecutor implements Executor {
+
+        private final Executor executor;
+
+        private WrappedExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(wrapSubmittedTask(command));
+        }
+    }
+
+    private static final class WrappedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService executor;
+
+        private WrappedExecutorService(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(wrapSubmittedTask(command));
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.cc.cetty.local;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * ForkJoinPool的工作线程不能继承FastThreadLocalThread，这里直接持有map，fastThreadLocal同样走快路径
+ * 线程退出时在onTermination中调用removeAll
+ *
+ * @author: cc
+ * @date: 2023/12/15
+ **/
+public class FastThreadLocalForkJoinWorkerThread extends ForkJoinWorkerThread implements FastThreadLocalAccess {
+
+    private InternalThreadLocalMap threadLocalMap;
+
+    protected FastThreadLocalForkJoinWorkerThread(ForkJoinPool pool) {
+        super(pool);
+    }
+
+    @Override
+    public final InternalThreadLocalMap threadLocalMap() {
+        return threadLocalMap;
+    }
+
+    @Override
+    public final void setThreadLocalMap(InternalThreadLocalMap threadLocalMap) {
+        this.threadLocalMap = threadLocalMap;
+    }
+
+    @Override
+    protected void onTermination(Throwable exception) {
+        try {
+            FastThreadLocal.removeAll();
+        } finally {
+            super.onTermination(exception);
+        }
+    }
+}
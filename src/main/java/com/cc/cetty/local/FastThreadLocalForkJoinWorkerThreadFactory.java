@@ -0,0 +1,49 @@
+package com.cc.cetty.local;
+
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 创建FastThreadLocalForkJoinWorkerThread的线程工厂，用法和DefaultThreadFactory一样
+ * 线程名为 poolName-poolId-threadId
+ *
+ * @author: cc
+ * @date: 2023/12/15
+ **/
+public class FastThreadLocalForkJoinWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+    private static final AtomicInteger poolId = new AtomicInteger();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private final String prefix;
+
+    public FastThreadLocalForkJoinWorkerThreadFactory(Class<?> poolType) {
+        this(DefaultThreadFactory.toPoolName(poolType));
+    }
+
+    public FastThreadLocalForkJoinWorkerThreadFactory(String poolName) {
+        AssertUtils.checkNotBlank(poolName, "Pool name cannot be blank");
+        this.prefix = poolName + '-' + poolId.incrementAndGet() + '-';
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = newThread0(pool);
+        thread.setName(prefix + nextId.incrementAndGet());
+        return thread;
+    }
+
+    /**
+     * 子类可以重写该方法创建自己的线程
+     *
+     * @param pool pool
+     * @return FastThreadLocalForkJoinWorkerThread
+     */
+    protected ForkJoinWorkerThread newThread0(ForkJoinPool pool) {
+        return new FastThreadLocalForkJoinWorkerThread(pool);
+    }
+}
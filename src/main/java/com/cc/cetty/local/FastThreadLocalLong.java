@@ -0,0 +1,60 @@
+package com.cc.cetty.local;
+
+/**
+ * long类型的fast thread local，读写都不会装箱
+ *
+ * @author: cc
+ * @date: 2023/11/22
+ **/
+public class FastThreadLocalLong extends AbstractPrimitiveFastThreadLocal {
+
+    /**
+     * @return value
+     */
+    public final long get() {
+        return get(InternalThreadLocalMap.getMap());
+    }
+
+    /**
+     * @param value value
+     */
+    public final void set(long value) {
+        InternalThreadLocalMap.getMap().setPrimitiveVariable(index, value);
+    }
+
+    /**
+     * 自增1
+     *
+     * @return 自增后的值
+     */
+    public final long increment() {
+        return addAndGet(1);
+    }
+
+    /**
+     * @param delta 增量
+     * @return 增加后的值
+     */
+    public final long addAndGet(long delta) {
+        InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getMap();
+        long v = get(threadLocalMap) + delta;
+        threadLocalMap.setPrimitiveVariable(index, v);
+        return v;
+    }
+
+    private long get(InternalThreadLocalMap threadLocalMap) {
+        if (threadLocalMap.isPrimitiveVariableSet(index)) {
+            return threadLocalMap.getPrimitiveVariable(index);
+        }
+        long v = initialValue();
+        threadLocalMap.setPrimitiveVariable(index, v);
+        return v;
+    }
+
+    /**
+     * 该方法就是要被用户重写的初始化方法
+     */
+    protected long initialValue() {
+        return 0;
+    }
+}
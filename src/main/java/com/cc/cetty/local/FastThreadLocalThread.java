@@ -8,7 +8,7 @@ package com.cc.cetty.local;
  * @author: cc
  * @date: 2023/11/06
  **/
-public class FastThreadLocalThread extends Thread {
+public class FastThreadLocalThread extends Thread implements FastThreadLocalAccess {
 
     private InternalThreadLocalMap threadLocalMap;
 
@@ -43,10 +43,12 @@ public class FastThreadLocalThread extends Thread {
         super(group, FastThreadLocalRunnable.wrap(target), name, stackSize);
     }
 
+    @Override
     public final InternalThreadLocalMap threadLocalMap() {
         return threadLocalMap;
     }
 
+    @Override
     public final void setThreadLocalMap(InternalThreadLocalMap threadLocalMap) {
         this.threadLocalMap = threadLocalMap;
     }
@@ -2,14 +2,25 @@ package com.cc.cetty.local;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 该类虽然名为map
  * 实际上是一个数组
  * 这个数组配合fastThreadLocal使用
+ * <p>
+ * 虚拟线程（JDK 21）不是FastThreadLocalThread，走原生ThreadLocal的慢路径，每个虚拟线程各有一个map
+ * 为了让大量虚拟线程不至于每个都背着一张完整的数组：
+ * 1. 虚拟线程的map默认从空数组开始，第一次设置值时按下标分配，通过 -Dcetty.threadLocalMap.virtualThreadInitialCapacity 调整
+ * 2. -Dcetty.threadLocalMap.virtualThreadMode=carrier 时，声明为carrierSafe的fastThreadLocal在虚拟线程上使用载体线程的map，
+ * 同一个载体上的虚拟线程共享一份值，只适合用完之前不会让出载体的值，例如计数器的单元
+ * 这个模式要通过反射调用Thread.currentCarrierThread，需要 --add-opens java.base/java.lang=ALL-UNNAMED，否则退回默认模式
  *
  * @author: cc
  * @date: 2023/11/06
@@ -22,17 +33,127 @@ public final class InternalThreadLocalMap {
      */
     private static final ThreadLocal<InternalThreadLocalMap> slowThreadLocalMap = new ThreadLocal<>();
 
+    /**
+     * 数组初始的容量，数组缩容时也不会小于这个值
+     */
+    private static final int INDEXED_VARIABLE_TABLE_INITIAL_SIZE = 32;
+
+    /**
+     * 虚拟线程的map数组初始的容量，0表示第一次设置值时才按下标分配
+     */
+    private static final int VIRTUAL_THREAD_INITIAL_CAPACITY =
+            Math.max(0, Integer.getInteger("cetty.threadLocalMap.virtualThreadInitialCapacity", 0));
+
+    private static final Object[] EMPTY_INDEXED_VARIABLES = {};
+
+    private static final long[] EMPTY_BITMAP = {};
+
+    /**
+     * Thread.isVirtual，JDK 21之前为null
+     */
+    private static final MethodHandle IS_VIRTUAL;
+
+    /**
+     * Thread.currentCarrierThread，没有开启载体模式或者无法访问时为null
+     */
+    private static final MethodHandle CURRENT_CARRIER_THREAD;
+
+    /**
+     * 载体线程的map，载体线程的个数和虚拟线程调度器的并行度差不多，线性查找就够了
+     * 只在新的载体第一次使用时加锁复制，顺便清理已经被回收的载体
+     */
+    private static volatile CarrierMap[] carrierMaps = new CarrierMap[0];
+
     /**
      * FastThreadLocal的索引，每个FastThreadLocal都会有一个索引，也就是要存放到数组的下标位置
-     * 该索引在FastThreadLocal创建的时候就初始化好了，是原子递增的
+     * 该索引在FastThreadLocal创建的时候就初始化好了，优先复用被回收的下标，没有可复用的才递增
+     * 只在持有类锁时修改，也就是说 nextIndex - 1 就是当前存活的最大下标
+     */
+    private static volatile int nextIndex;
+
+    /**
+     * 被回收、可以复用的下标，只在持有类锁时访问
+     */
+    private static final BitSet freeIndices = new BitSet();
+
+    /**
+     * 每回收一个下标就加一
+     * 线程的map发现这个值和自己记录的不一样，就说明有下标被回收了，要把这些下标上残留的值清掉
      */
-    private static final AtomicInteger nextIndex = new AtomicInteger();
+    private static volatile long reclaimSequence;
+
+    /**
+     * 记录每个下标最近一次被回收时的reclaimSequence
+     * map清理残留值时，只清理回收序号比自己记录的大的下标
+     */
+    private static volatile long[] reclaimedAt = new long[INDEXED_VARIABLE_TABLE_INITIAL_SIZE];
 
     /**
      * 未定义的一个对象，起这个名字是因为，一旦线程私有的map中删掉了一个value，那空出来的位置就会被该对象赋值
      */
     public static final Object UNSET = new Object();
 
+    static {
+        MethodHandle isVirtual = null;
+        MethodHandle currentCarrierThread = null;
+        try {
+            isVirtual = MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (Throwable ignore) {
+            // JDK 21之前没有虚拟线程
+        }
+        String mode = System.getProperty("cetty.threadLocalMap.virtualThreadMode", "thread");
+        if (Objects.nonNull(isVirtual) && "carrier".equalsIgnoreCase(mode)) {
+            try {
+                currentCarrierThread = MethodHandles.privateLookupIn(Thread.class, MethodHandles.lookup())
+                        .findStatic(Thread.class, "currentCarrierThread", MethodType.methodType(Thread.class));
+            } catch (Throwable t) {
+                log.warn("Thread.currentCarrierThread is not accessible, fallback to virtualThreadMode=thread. "
+                        + "Add --add-opens java.base/java.lang=ALL-UNNAMED to enable carrier mode.", t);
+            }
+        }
+        IS_VIRTUAL = isVirtual;
+        CURRENT_CARRIER_THREAD = currentCarrierThread;
+        log.debug("-Dcetty.threadLocalMap.virtualThreadMode: {}", Objects.nonNull(CURRENT_CARRIER_THREAD) ? "carrier" : "thread");
+        log.debug("-Dcetty.threadLocalMap.virtualThreadInitialCapacity: {}", VIRTUAL_THREAD_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param thread thread
+     * @return 是否是虚拟线程
+     */
+    public static boolean isVirtualThread(Thread thread) {
+        if (Objects.isNull(IS_VIRTUAL)) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 是否开启了载体模式
+     */
+    public static boolean isCarrierMode() {
+        return Objects.nonNull(CURRENT_CARRIER_THREAD);
+    }
+
+    /**
+     * @return 开启了载体模式并且当前是虚拟线程时返回载体线程，否则返回当前线程
+     */
+    public static Thread currentCarrierThread() {
+        Thread thread = Thread.currentThread();
+        if (Objects.nonNull(CURRENT_CARRIER_THREAD) && !(thread instanceof FastThreadLocalAccess) && isVirtualThread(thread)) {
+            try {
+                return (Thread) CURRENT_CARRIER_THREAD.invokeExact();
+            } catch (Throwable t) {
+                return thread;
+            }
+        }
+        return thread;
+    }
+
     /**
      * 获取InternalThreadLocalMap
      *
@@ -43,9 +164,9 @@ public final class InternalThreadLocalMap {
         Thread thread = Thread.currentThread();
         // 判断该线程是否为fast体系的线程
         // 只有被包装过的线程配合InternalThreadLocalMap才能发挥出高性能
-        if (thread instanceof FastThreadLocalThread) {
+        if (thread instanceof FastThreadLocalAccess) {
             // 返回InternalThreadLocalMap
-            return fastGetMap((FastThreadLocalThread) thread);
+            return fastGetMap((FastThreadLocalAccess) thread);
         } else {
             return slowGetMap();
         }
@@ -57,14 +178,75 @@ public final class InternalThreadLocalMap {
      * @param thread thread
      * @return thread local map
      */
-    private static InternalThreadLocalMap fastGetMap(FastThreadLocalThread thread) {
+    private static InternalThreadLocalMap fastGetMap(FastThreadLocalAccess thread) {
         InternalThreadLocalMap threadLocalMap = thread.threadLocalMap();
         if (Objects.isNull(threadLocalMap)) {
-            thread.setThreadLocalMap(threadLocalMap = new InternalThreadLocalMap());
+            thread.setThreadLocalMap(threadLocalMap = new InternalThreadLocalMap(INDEXED_VARIABLE_TABLE_INITIAL_SIZE));
+        } else if (threadLocalMap.expungedSequence != reclaimSequence) {
+            threadLocalMap.expungeReclaimedVariables();
         }
         return threadLocalMap;
     }
 
+    /**
+     * 获取carrierSafe的fastThreadLocal使用的map
+     * 开启了载体模式并且当前是虚拟线程时返回载体线程的map，否则和getMap一样
+     *
+     * @return thread local map
+     */
+    public static InternalThreadLocalMap getCarrierMap() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof FastThreadLocalAccess) {
+            return fastGetMap((FastThreadLocalAccess) thread);
+        }
+        Thread carrier = currentCarrierThread();
+        if (carrier == thread) {
+            return slowGetMap();
+        }
+        if (carrier instanceof FastThreadLocalAccess) {
+            return fastGetMap((FastThreadLocalAccess) carrier);
+        }
+        return carrierGetMap(carrier);
+    }
+
+    /**
+     * 同一时刻一个载体上只运行一个虚拟线程，只要取到map之后不让出载体，就不会有两个线程同时访问这个map
+     *
+     * @param carrier 载体线程
+     * @return 载体线程的map
+     */
+    private static InternalThreadLocalMap carrierGetMap(Thread carrier) {
+        InternalThreadLocalMap result = null;
+        for (CarrierMap carrierMap : carrierMaps) {
+            if (carrierMap.carrier.get() == carrier) {
+                result = carrierMap.map;
+                break;
+            }
+        }
+        if (Objects.isNull(result)) {
+            result = newCarrierMap(carrier);
+        } else if (result.expungedSequence != reclaimSequence) {
+            result.expungeReclaimedVariables();
+        }
+        return result;
+    }
+
+    private static synchronized InternalThreadLocalMap newCarrierMap(Thread carrier) {
+        CarrierMap[] old = carrierMaps;
+        CarrierMap[] maps = new CarrierMap[old.length + 1];
+        int size = 0;
+        for (CarrierMap carrierMap : old) {
+            // 已经被回收的载体不再保留
+            if (Objects.nonNull(carrierMap.carrier.get())) {
+                maps[size++] = carrierMap;
+            }
+        }
+        InternalThreadLocalMap map = new InternalThreadLocalMap(INDEXED_VARIABLE_TABLE_INITIAL_SIZE);
+        maps[size++] = new CarrierMap(carrier, map);
+        carrierMaps = Arrays.copyOf(maps, size);
+        return map;
+    }
+
     /**
      * 获取Java原生的本地map
      *
@@ -73,7 +255,11 @@ public final class InternalThreadLocalMap {
     private static InternalThreadLocalMap slowGetMap() {
         InternalThreadLocalMap result = slowThreadLocalMap.get();
         if (Objects.isNull(result)) {
-            slowThreadLocalMap.set(result = new InternalThreadLocalMap());
+            int initialCapacity = isVirtualThread(Thread.currentThread())
+                    ? VIRTUAL_THREAD_INITIAL_CAPACITY : INDEXED_VARIABLE_TABLE_INITIAL_SIZE;
+            slowThreadLocalMap.set(result = new InternalThreadLocalMap(initialCapacity));
+        } else if (result.expungedSequence != reclaimSequence) {
+            result.expungeReclaimedVariables();
         }
         return result;
     }
@@ -83,8 +269,8 @@ public final class InternalThreadLocalMap {
      */
     public static void removeMap() {
         Thread thread = Thread.currentThread();
-        if (thread instanceof FastThreadLocalThread) {
-            ((FastThreadLocalThread) thread).setThreadLocalMap(null);
+        if (thread instanceof FastThreadLocalAccess) {
+            ((FastThreadLocalAccess) thread).setThreadLocalMap(null);
         } else {
             slowThreadLocalMap.remove();
         }
@@ -95,24 +281,152 @@ public final class InternalThreadLocalMap {
      *
      * @return next index
      */
-    public static int nextVariableIndex() {
-        int index = nextIndex.getAndIncrement();
-        if (index < 0) {
-            nextIndex.decrementAndGet();
+    public static synchronized int nextVariableIndex() {
+        // 优先复用最小的空闲下标，这样数组能保持紧凑
+        int index = freeIndices.nextSetBit(0);
+        if (index >= 0) {
+            freeIndices.clear(index);
+            return index;
+        }
+        index = nextIndex;
+        if (index == Integer.MAX_VALUE) {
             throw new IllegalStateException("too many thread-local indexed variables");
         }
+        nextIndex = index + 1;
         return index;
     }
 
+    /**
+     * 回收fastThreadLocal的下标，回收后的下标会被新创建的fastThreadLocal复用
+     * 其他线程的map里这个下标上可能还残留着旧值，这里不能直接去改别的线程的数组
+     * 所以只是记录一下回收序号，各个线程下次获取map时自己清理
+     *
+     * @param index index
+     */
+    public static synchronized void releaseVariableIndex(int index) {
+        long[] lookup = reclaimedAt;
+        if (index >= lookup.length) {
+            lookup = Arrays.copyOf(lookup, Math.max(lookup.length << 1, index + 1));
+        }
+        // 先写回收序号，再发布reclaimSequence，这样读到新序号的线程一定能看到reclaimedAt的变化
+        long sequence = reclaimSequence + 1;
+        lookup[index] = sequence;
+        reclaimedAt = lookup;
+        reclaimSequence = sequence;
+
+        if (index == nextIndex - 1) {
+            // 回收的是最大的下标，nextIndex直接回退，顺便把末尾连续的空闲下标也收回来
+            int next = index;
+            while (next > 0 && freeIndices.get(next - 1)) {
+                freeIndices.clear(--next);
+            }
+            nextIndex = next;
+        } else {
+            freeIndices.set(index);
+        }
+    }
+
     /**
      * 初始化数组，该数组就是在map中存储数据用的
+     *
+     * @param capacity 容量
+     * @return 用UNSET填充的数组，容量为0时返回共享的空数组
      */
-    private static Object[] newIndexedVariableTable() {
-        Object[] array = new Object[32];
+    private static Object[] newIndexedVariableTable(int capacity) {
+        if (capacity == 0) {
+            return EMPTY_INDEXED_VARIABLES;
+        }
+        Object[] array = new Object[capacity];
         Arrays.fill(array, UNSET);
         return array;
     }
 
+    /**
+     * 以index为基准，做位运算，得到一个能放下index的2的幂次方的容量
+     *
+     * @param index index
+     * @return capacity
+     */
+    private static int capacityFor(int index) {
+        int capacity = index;
+        capacity |= capacity >>> 1;
+        capacity |= capacity >>> 2;
+        capacity |= capacity >>> 4;
+        capacity |= capacity >>> 8;
+        capacity |= capacity >>> 16;
+        return capacity + 1;
+    }
+
+    /**
+     * 从fromIndex开始，在位图中找到下一个被置位的下标，用法和BitSet.nextSetBit一样
+     *
+     * @param set       位图
+     * @param fromIndex 起始下标
+     * @return 下一个被置位的下标，没有返回-1
+     */
+    private static int nextSetBit(long[] set, int fromIndex) {
+        int wordIndex = fromIndex >>> 6;
+        if (Objects.isNull(set) || wordIndex >= set.length) {
+            return -1;
+        }
+        // 去掉fromIndex之前的位
+        long word = set[wordIndex] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == set.length) {
+                return -1;
+            }
+            word = set[wordIndex];
+        }
+    }
+
+    /**
+     * 和nextSetBit一样，但是跳过snapshot中已经被置位的下标
+     * 位图缩容后可能比snapshot短，扩容后可能比snapshot长，超出snapshot的部分都算新设置的
+     *
+     * @param set       位图
+     * @param snapshot  之前的位图拷贝
+     * @param fromIndex 起始下标
+     * @return 下一个新被置位的下标，没有返回-1
+     */
+    private static int nextNewBit(long[] set, long[] snapshot, int fromIndex) {
+        int wordIndex = fromIndex >>> 6;
+        if (Objects.isNull(set) || wordIndex >= set.length) {
+            return -1;
+        }
+        long word = newBits(set, snapshot, wordIndex) & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == set.length) {
+                return -1;
+            }
+            word = newBits(set, snapshot, wordIndex);
+        }
+    }
+
+    private static long newBits(long[] set, long[] snapshot, int wordIndex) {
+        return wordIndex < snapshot.length ? set[wordIndex] & ~snapshot[wordIndex] : set[wordIndex];
+    }
+
+    /**
+     * @param set 位图
+     * @return 位图的拷贝，全为0时返回共享的空数组
+     */
+    private static long[] snapshot(long[] set) {
+        if (Objects.nonNull(set)) {
+            for (long bits : set) {
+                if (bits != 0) {
+                    return set.clone();
+                }
+            }
+        }
+        return EMPTY_BITMAP;
+    }
+
     /**
      * 真正存放数据的数组
      * 就是InternalThreadLocalMap存储数据的容器数组
@@ -122,8 +436,44 @@ public final class InternalThreadLocalMap {
      */
     private Object[] indexedVariables;
 
-    private InternalThreadLocalMap() {
-        this.indexedVariables = newIndexedVariableTable();
+    /**
+     * indexedVariables中哪些下标设置了值，一个long记录64个下标
+     * 设置和删除时只需要一次位运算，removeAll时只需要遍历被置位的下标
+     */
+    private long[] indexedVariablesSet;
+
+    /**
+     * 存放基本类型的数组，和indexedVariables共用同一套下标
+     * int、long、double都按long存放，double通过doubleToRawLongBits转换
+     * 大部分线程用不到，所以用到的时候才创建
+     */
+    private long[] primitiveVariables;
+
+    /**
+     * primitiveVariables中哪些下标设置了值，一个long记录64个下标
+     */
+    private long[] primitiveVariablesSet;
+
+    /**
+     * 该map已经处理过的回收序号，新建的map不会有残留值，直接取当前的序号
+     */
+    private long expungedSequence;
+
+    /**
+     * 当前线程上promise嵌套通知监听器的深度，超过上限就改为提交任务，避免栈溢出
+     */
+    private int futureListenerStackDepth;
+
+    /**
+     * 数组缩容时不会小于这个值
+     */
+    private final int minCapacity;
+
+    private InternalThreadLocalMap(int initialCapacity) {
+        this.expungedSequence = reclaimSequence;
+        this.minCapacity = initialCapacity;
+        this.indexedVariables = newIndexedVariableTable(initialCapacity);
+        this.indexedVariablesSet = initialCapacity == 0 ? EMPTY_BITMAP : new long[(initialCapacity + 63) >>> 6];
     }
 
     /**
@@ -131,14 +481,110 @@ public final class InternalThreadLocalMap {
      */
     public int size() {
         int count = 0;
-        for (Object o : indexedVariables) {
-            if (o != UNSET) {
-                count++;
+        for (long bits : indexedVariablesSet) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * 从fromIndex开始，找到下一个设置了值的下标，用法和BitSet.nextSetBit一样
+     *
+     * @param fromIndex 起始下标
+     * @return 下一个设置了值的下标，没有返回-1
+     */
+    public int nextIndexedVariable(int fromIndex) {
+        return nextSetBit(indexedVariablesSet, fromIndex);
+    }
+
+    /**
+     * 从fromIndex开始，找到下一个在snapshot之后新设置了值的下标
+     *
+     * @param snapshot  indexedVariablesSnapshot返回的位图
+     * @param fromIndex 起始下标
+     * @return 下一个新设置了值的下标，没有返回-1
+     */
+    public int nextIndexedVariableSince(long[] snapshot, int fromIndex) {
+        return nextNewBit(indexedVariablesSet, snapshot, fromIndex);
+    }
+
+    /**
+     * @return 当前哪些下标设置了值，一个都没有时返回共享的空数组，不分配
+     */
+    public long[] indexedVariablesSnapshot() {
+        return snapshot(indexedVariablesSet);
+    }
+
+    /**
+     * @return 基本类型数组当前哪些下标设置了值，一个都没有时返回共享的空数组，不分配
+     */
+    public long[] primitiveVariablesSnapshot() {
+        return snapshot(primitiveVariablesSet);
+    }
+
+    /**
+     * @return promise嵌套通知监听器的深度
+     */
+    public int futureListenerStackDepth() {
+        return futureListenerStackDepth;
+    }
+
+    /**
+     * @param futureListenerStackDepth promise嵌套通知监听器的深度
+     */
+    public void setFutureListenerStackDepth(int futureListenerStackDepth) {
+        this.futureListenerStackDepth = futureListenerStackDepth;
+    }
+
+    /**
+     * @return 数组当前的容量
+     */
+    public int capacity() {
+        return indexedVariables.length;
+    }
+
+    /**
+     * 清理被回收的下标上残留的值，只在持有该map的线程上调用
+     * 清理完之后，如果存活的最大下标降了下来，顺便把数组缩容
+     */
+    private void expungeReclaimedVariables() {
+        // 先读序号，再读reclaimedAt
+        long sequence = reclaimSequence;
+        long[] reclaimed = reclaimedAt;
+        long expunged = expungedSequence;
+        for (int i = nextSetBit(indexedVariablesSet, 0); i >= 0; i = nextSetBit(indexedVariablesSet, i + 1)) {
+            if (i < reclaimed.length && reclaimed[i] > expunged) {
+                // 原来的fastThreadLocal已经被回收了，不再调用onRemoval
+                removeIndexedVariable(i);
             }
         }
-        // 保留第一个元素用来保存threadLocal的列表
-        // 后续移除全部元素时使用
-        return count - 1;
+        for (int i = nextSetBit(primitiveVariablesSet, 0); i >= 0; i = nextSetBit(primitiveVariablesSet, i + 1)) {
+            if (i < reclaimed.length && reclaimed[i] > expunged) {
+                removePrimitiveVariable(i);
+            }
+        }
+        expungedSequence = sequence;
+        shrinkIfNecessary();
+    }
+
+    /**
+     * 存活的最大下标不到容量的四分之一时缩容，留一些余量避免反复扩缩
+     * 被回收的下标上的值已经在expungeReclaimedVariables中清理了，超出新容量的位置不会再有值
+     */
+    private void shrinkIfNecessary() {
+        int highest = nextIndex;
+        int capacity = indexedVariables.length;
+        if (capacity <= minCapacity || highest > capacity >>> 2) {
+            return;
+        }
+        int newCapacity = Math.max(minCapacity, capacityFor(Math.max(highest - 1, 0)));
+        int bitmapLength = (newCapacity + 63) >>> 6;
+        indexedVariables = Arrays.copyOf(indexedVariables, newCapacity);
+        indexedVariablesSet = Arrays.copyOf(indexedVariablesSet, bitmapLength);
+        if (Objects.nonNull(primitiveVariables) && primitiveVariables.length > newCapacity) {
+            primitiveVariables = Arrays.copyOf(primitiveVariables, newCapacity);
+            primitiveVariablesSet = Arrays.copyOf(primitiveVariablesSet, bitmapLength);
+        }
     }
 
     /**
@@ -154,14 +600,32 @@ public final class InternalThreadLocalMap {
      */
     public boolean setIndexedVariable(int index, Object value) {
         Object[] lookup = indexedVariables;
+        boolean newlySet;
         if (index < lookup.length) {
             Object oldValue = lookup[index];
             lookup[index] = value;
-            return oldValue == UNSET;
+            newlySet = oldValue == UNSET;
+            if (newlySet) {
+                // 在位图中记录该下标
+                indexedVariablesSet[index >>> 6] |= 1L << index;
+            }
         } else {
             // 数组扩容
             expandIndexedVariableTableAndSet(index, value);
-            return true;
+            newlySet = true;
+        }
+        expungeIfReclaimedAfterWrite();
+        return newlySet;
+    }
+
+    /**
+     * 获取map时清理过残留值，但拿到map之后、写入之前，原来的fastThreadLocal可能在别的线程上被销毁，下标又被新的fastThreadLocal复用
+     * 这时写进去的是旧fastThreadLocal的值，新的fastThreadLocal会读到它，所以写完再看一次回收序号，变了就再清理一遍
+     * 序号在写入之后读，销毁晚于这次读的话，下次获取map时一定能看到新序号
+     */
+    private void expungeIfReclaimedAfterWrite() {
+        if (expungedSequence != reclaimSequence) {
+            expungeReclaimedVariables();
         }
     }
 
@@ -180,19 +644,16 @@ public final class InternalThreadLocalMap {
     private void expandIndexedVariableTableAndSet(int index, Object value) {
         Object[] oldArray = indexedVariables;
         final int oldCapacity = oldArray.length;
-        int newCapacity = index;
-        newCapacity |= newCapacity >>> 1;
-        newCapacity |= newCapacity >>> 2;
-        newCapacity |= newCapacity >>> 4;
-        newCapacity |= newCapacity >>> 8;
-        newCapacity |= newCapacity >>> 16;
-        newCapacity++;
+        int newCapacity = capacityFor(index);
         // 扩容数组，把旧的数据拷贝新数组中
         Object[] newArray = Arrays.copyOf(oldArray, newCapacity);
         // 新数组扩容的那部分用UNSET赋值
         Arrays.fill(newArray, oldCapacity, newArray.length, UNSET);
         // 新数组的index下标的位置赋值为value
         newArray[index] = value;
+        // 位图跟着扩容
+        indexedVariablesSet = Arrays.copyOf(indexedVariablesSet, (newCapacity + 63) >>> 6);
+        indexedVariablesSet[index >>> 6] |= 1L << index;
         // 旧数组替换成新数组
         indexedVariables = newArray;
     }
@@ -208,6 +669,8 @@ public final class InternalThreadLocalMap {
         if (index < lookup.length) {
             Object v = lookup[index];
             lookup[index] = UNSET;
+            // 清除位图中的记录
+            indexedVariablesSet[index >>> 6] &= ~(1L << index);
             return v;
         } else {
             return UNSET;
@@ -219,7 +682,120 @@ public final class InternalThreadLocalMap {
      * @return 是否设置了值
      */
     public boolean isIndexedVariableSet(int index) {
-        Object[] lookup = indexedVariables;
-        return index < lookup.length && lookup[index] != UNSET;
+        long[] set = indexedVariablesSet;
+        return (index >>> 6) < set.length && (set[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 取出基本类型数组内某个下标位置的元素，没有设置过返回0
+     *
+     * @param index index
+     * @return value
+     */
+    public long getPrimitiveVariable(int index) {
+        long[] lookup = primitiveVariables;
+        return Objects.nonNull(lookup) && index < lookup.length ? lookup[index] : 0;
+    }
+
+    /**
+     * 设置基本类型数组内某个下标位置的元素
+     *
+     * @param index index
+     * @param value value
+     * @return 之前是否未设置
+     */
+    public boolean setPrimitiveVariable(int index, long value) {
+        long[] lookup = primitiveVariables;
+        if (Objects.isNull(lookup) || index >= lookup.length) {
+            lookup = expandPrimitiveVariableTable(index);
+        }
+        lookup[index] = value;
+        long[] set = primitiveVariablesSet;
+        long mask = 1L << index;
+        long old = set[index >>> 6];
+        set[index >>> 6] = old | mask;
+        expungeIfReclaimedAfterWrite();
+        return (old & mask) == 0;
+    }
+
+    /**
+     * 删除基本类型数组某个位置的元素
+     *
+     * @param index index
+     * @return 之前是否设置了值
+     */
+    public boolean removePrimitiveVariable(int index) {
+        if (!isPrimitiveVariableSet(index)) {
+            return false;
+        }
+        primitiveVariables[index] = 0;
+        primitiveVariablesSet[index >>> 6] &= ~(1L << index);
+        return true;
+    }
+
+    /**
+     * 清空基本类型数组中设置过的值，数组保留，只遍历位图中被置位的下标
+     */
+    public void clearPrimitiveVariables() {
+        long[] set = primitiveVariablesSet;
+        if (Objects.isNull(set)) {
+            return;
+        }
+        for (int i = nextSetBit(set, 0); i >= 0; i = nextSetBit(set, i + 1)) {
+            primitiveVariables[i] = 0;
+        }
+        Arrays.fill(set, 0);
+    }
+
+    /**
+     * 只清空snapshot之后新设置的基本类型的值，之前就有的值原样保留
+     *
+     * @param snapshot primitiveVariablesSnapshot返回的位图
+     */
+    public void clearPrimitiveVariablesSince(long[] snapshot) {
+        long[] set = primitiveVariablesSet;
+        for (int i = nextNewBit(set, snapshot, 0); i >= 0; i = nextNewBit(set, snapshot, i + 1)) {
+            primitiveVariables[i] = 0;
+            set[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * @param index index
+     * @return 基本类型数组某个位置是否设置了值
+     */
+    public boolean isPrimitiveVariableSet(int index) {
+        long[] set = primitiveVariablesSet;
+        return Objects.nonNull(set) && (index >>> 6) < set.length && (set[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 基本类型数组的扩容，容量的计算方式和expandIndexedVariableTableAndSet一样，最小为minCapacity
+     *
+     * @param index index
+     * @return 扩容后的数组
+     */
+    private long[] expandPrimitiveVariableTable(int index) {
+        int newCapacity = capacityFor(Math.max(index, minCapacity - 1));
+        long[] newArray = Objects.isNull(primitiveVariables) ? new long[newCapacity] : Arrays.copyOf(primitiveVariables, newCapacity);
+        int bitmapLength = (newCapacity + 63) >>> 6;
+        primitiveVariablesSet = Objects.isNull(primitiveVariablesSet) ? new long[bitmapLength] : Arrays.copyOf(primitiveVariablesSet, bitmapLength);
+        primitiveVariables = newArray;
+        return newArray;
+    }
+
+    /**
+     * 载体线程和它的map，弱引用载体，载体退出后可以被回收
+     */
+    private static final class CarrierMap {
+
+        private final WeakReference<Thread> carrier;
+
+        private final InternalThreadLocalMap map;
+
+        private CarrierMap(Thread carrier, InternalThreadLocalMap map) {
+            this.carrier = new WeakReference<>(carrier);
+            this.map = map;
+        }
     }
 }
@@ -0,0 +1,71 @@
+package com.cc.cetty.local;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 每个线程写自己单元的计数器，类似LongAdder，但不需要CAS
+ * LongAdder只有发生竞争时才分出cell，并且cell按线程的hash共享；这里每个线程一开始就有独占的单元
+ * 写只有一次读加一次lazySet，读要遍历所有存活线程的单元，适合写多读少的统计
+ * 读到的是近似值，线程退出的那一刻可能少算或多算这个线程的值
+ *
+ * @author: cc
+ * @date: 2023/12/14
+ **/
+public final class ThreadLocalCounter extends AbstractThreadLocalCells<AtomicLongArray> {
+
+    /**
+     * 值前后各填充128字节，不同线程的单元不会落在同一个缓存行上
+     */
+    private static final int PADDING = 16;
+
+    private static final int VALUE = PADDING;
+
+    private final AtomicLong retired = new AtomicLong();
+
+    public void increment() {
+        add(1);
+    }
+
+    public void decrement() {
+        add(-1);
+    }
+
+    /**
+     * @param delta 增量，可以是负数
+     */
+    public void add(long delta) {
+        AtomicLongArray cell = cell();
+        // 只有当前线程写，lazySet保证读线程最终能看到
+        cell.lazySet(VALUE, cell.get(VALUE) + delta);
+    }
+
+    /**
+     * @return 已退出线程的总和加上所有存活线程的当前值
+     */
+    public long sum() {
+        long sum = retired.get();
+        for (AtomicLongArray cell : liveCells()) {
+            if (Objects.nonNull(cell)) {
+                sum += cell.get(VALUE);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    protected AtomicLongArray newCell() {
+        return new AtomicLongArray(PADDING + 1 + PADDING);
+    }
+
+    @Override
+    protected void retire(AtomicLongArray cell) {
+        retired.addAndGet(cell.get(VALUE));
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
@@ -0,0 +1,56 @@
+package com.cc.cetty.local;
+
+import com.cc.cetty.metrics.Histogram;
+import com.cc.cetty.metrics.HistogramSnapshot;
+
+import java.util.Objects;
+
+/**
+ * 每个线程写自己的Histogram，读的时候把所有线程的快照合并
+ * 桶的划分和精度见Histogram
+ *
+ * @author: cc
+ * @date: 2023/12/14
+ **/
+public final class ThreadLocalHistogram extends AbstractThreadLocalCells<Histogram> {
+
+    /**
+     * 已退出线程的快照合并在一起，只在线程退出时更新
+     */
+    private volatile HistogramSnapshot retired = HistogramSnapshot.EMPTY;
+
+    /**
+     * @param value 非负数
+     */
+    public void record(long value) {
+        cell().record(value);
+    }
+
+    /**
+     * @return 已退出线程和所有存活线程合并后的快照
+     */
+    public HistogramSnapshot snapshot() {
+        HistogramSnapshot snapshot = retired;
+        for (Histogram cell : liveCells()) {
+            if (Objects.nonNull(cell)) {
+                snapshot = snapshot.merge(cell.snapshot());
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    protected Histogram newCell() {
+        return new Histogram();
+    }
+
+    @Override
+    protected synchronized void retire(Histogram cell) {
+        retired = retired.merge(cell.snapshot());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
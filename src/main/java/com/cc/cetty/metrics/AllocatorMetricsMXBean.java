@@ -0,0 +1,28 @@
+package com.cc.cetty.metrics;
+
+/**
+ * 分配器在JMX中暴露的指标，每次读取时重新生成快照
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public interface AllocatorMetricsMXBean {
+
+    int getChunkSize();
+
+    int getNumHeapArenas();
+
+    int getNumDirectArenas();
+
+    long getUsedHeapMemory();
+
+    long getUsedDirectMemory();
+
+    long getAllocatedHeapBytes();
+
+    long getAllocatedDirectBytes();
+
+    int getNumChunks();
+
+    int getNumThreadCaches();
+}
@@ -0,0 +1,75 @@
+package com.cc.cetty.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 池化分配器某一时刻的快照，不可变
+ * 每个arena是分别加锁读的，arena之间不保证是同一时刻的值
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public final class AllocatorMetricsSnapshot {
+
+    private final int chunkSize;
+
+    private final List<ArenaMetricsSnapshot> heapArenas;
+
+    private final List<ArenaMetricsSnapshot> directArenas;
+
+    public AllocatorMetricsSnapshot(int chunkSize, List<ArenaMetricsSnapshot> heapArenas, List<ArenaMetricsSnapshot> directArenas) {
+        this.chunkSize = chunkSize;
+        this.heapArenas = Collections.unmodifiableList(heapArenas);
+        this.directArenas = Collections.unmodifiableList(directArenas);
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public List<ArenaMetricsSnapshot> heapArenas() {
+        return heapArenas;
+    }
+
+    public List<ArenaMetricsSnapshot> directArenas() {
+        return directArenas;
+    }
+
+    public long usedHeapMemory() {
+        return usedBytes(heapArenas);
+    }
+
+    public long usedDirectMemory() {
+        return usedBytes(directArenas);
+    }
+
+    public long allocatedHeapBytes() {
+        return allocatedBytes(heapArenas);
+    }
+
+    public long allocatedDirectBytes() {
+        return allocatedBytes(directArenas);
+    }
+
+    private static long usedBytes(List<ArenaMetricsSnapshot> arenas) {
+        long used = 0;
+        for (ArenaMetricsSnapshot arena : arenas) {
+            used += arena.usedBytes();
+        }
+        return used;
+    }
+
+    private static long allocatedBytes(List<ArenaMetricsSnapshot> arenas) {
+        long allocated = 0;
+        for (ArenaMetricsSnapshot arena : arenas) {
+            allocated += arena.allocatedBytes();
+        }
+        return allocated;
+    }
+
+    @Override
+    public String toString() {
+        return "AllocatorMetricsSnapshot(chunkSize: " + chunkSize + ", heapArenas: " + heapArenas + ", directArenas: " + directArenas + ')';
+    }
+}
@@ -0,0 +1,97 @@
+package com.cc.cetty.metrics;
+
+import java.util.Arrays;
+
+/**
+ * 池化分配器中一个arena某一时刻的快照，不可变
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public final class ArenaMetricsSnapshot {
+
+    /**
+     * chunkListSizes中各链表的名字，按使用率从低到高
+     */
+    public static final String[] CHUNK_LISTS = {"qInit", "q000", "q025", "q050", "q075", "q100"};
+
+    private final int numThreadCaches;
+
+    private final int[] chunkListSizes;
+
+    private final long pooledBytes;
+
+    private final long hugeBytes;
+
+    private final long freeBytes;
+
+    /**
+     * @param numThreadCaches 绑定到这个arena的线程数
+     * @param chunkListSizes  各chunk链表中chunk的个数，顺序和CHUNK_LISTS一样
+     * @param pooledBytes     池化的chunk占用的字节数
+     * @param hugeBytes       不池化的大块内存占用的字节数
+     * @param freeBytes       池化的chunk中空闲的字节数
+     */
+    public ArenaMetricsSnapshot(int numThreadCaches, int[] chunkListSizes, long pooledBytes, long hugeBytes, long freeBytes) {
+        if (chunkListSizes.length != CHUNK_LISTS.length) {
+            throw new IllegalArgumentException("chunkListSizes.length: " + chunkListSizes.length + " (expected: " + CHUNK_LISTS.length + ")");
+        }
+        this.numThreadCaches = numThreadCaches;
+        this.chunkListSizes = chunkListSizes.clone();
+        this.pooledBytes = pooledBytes;
+        this.hugeBytes = hugeBytes;
+        this.freeBytes = freeBytes;
+    }
+
+    public int numThreadCaches() {
+        return numThreadCaches;
+    }
+
+    public int numChunks() {
+        int numChunks = 0;
+        for (int size : chunkListSizes) {
+            numChunks += size;
+        }
+        return numChunks;
+    }
+
+    /**
+     * @param index CHUNK_LISTS中的下标
+     * @return 这个链表中chunk的个数
+     */
+    public int chunkListSize(int index) {
+        return chunkListSizes[index];
+    }
+
+    public long pooledBytes() {
+        return pooledBytes;
+    }
+
+    public long hugeBytes() {
+        return hugeBytes;
+    }
+
+    public long freeBytes() {
+        return freeBytes;
+    }
+
+    /**
+     * @return 池化的chunk中已经分配出去的字节数，包括线程缓存持有的部分
+     */
+    public long allocatedBytes() {
+        return pooledBytes - freeBytes;
+    }
+
+    /**
+     * @return 这个arena一共占用的字节数
+     */
+    public long usedBytes() {
+        return pooledBytes + hugeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Arena(threadCaches: " + numThreadCaches + ", chunkLists: " + Arrays.toString(chunkListSizes)
+                + ", pooledBytes: " + pooledBytes + ", freeBytes: " + freeBytes + ", hugeBytes: " + hugeBytes + ')';
+    }
+}
@@ -0,0 +1,281 @@
+package com.cc.cetty.metrics;
+
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.utils.AssertUtils;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+/**
+ * 一个事件循环的指标，是事件循环线程私有的计数单元
+ * 事件循环线程启动时通过FastThreadLocal绑定到线程上，之后只有这个线程写，不需要CAS，也不会和其他核抢缓存行
+ * channel等不知道自己在哪个事件循环里的代码通过current()取到当前线程的单元
+ * 读的时候才把各项汇总成快照，可以在任何线程读，拿到的是近似值
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public final class EventLoopMetrics implements EventLoopMetricsMXBean {
+
+    /**
+     * 通过 -Dcetty.metrics.enabled=false 关闭所有事件循环的统计
+     */
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("cetty.metrics.enabled", "true"));
+
+    /**
+     * 平均每多少个任务抽一个统计排队延迟和执行时间，抽中的任务要多创建一个包装对象，小于等于0表示不统计
+     */
+    static final int TASK_SAMPLE_RATE = Integer.getInteger("cetty.metrics.taskSampleRate", 16);
+
+    private static final FastThreadLocal<EventLoopMetrics> CURRENT = new FastThreadLocal<>();
+
+    /**
+     * 计数器前后各填充128字节，不和其他对象共享缓存行
+     */
+    private static final int PADDING = 16;
+
+    private static final int TASKS_EXECUTED = PADDING;
+
+    private static final int TASK_TIME = PADDING + 1;
+
+    private static final int IO_TIME = PADDING + 2;
+
+    private static final int SELECT_WAKEUPS = PADDING + 3;
+
+    private static final int IO_EVENTS = PADDING + 4;
+
+    private static final int BYTES_READ = PADDING + 5;
+
+    private static final int BYTES_WRITTEN = PADDING + 6;
+
+    private static final int PENDING_OUTBOUND_BYTES = PADDING + 7;
+
+    private static final int COUNTERS = 8;
+
+    private final AtomicLongArray counters = new AtomicLongArray(PADDING + COUNTERS + PADDING);
+
+    private final Histogram taskQueueLatency = new Histogram();
+
+    private final Histogram taskRunTime = new Histogram();
+
+    private final IntSupplier pendingTasks;
+
+    private volatile String name = "unbound";
+
+    /**
+     * @param pendingTasks 读取任务队列长度，读指标时才调用
+     */
+    public EventLoopMetrics(IntSupplier pendingTasks) {
+        this.pendingTasks = AssertUtils.checkNotNull(pendingTasks, "PendingTasks cannot be null");
+    }
+
+    /**
+     * @return 当前线程绑定的单元，不是事件循环线程或者关闭了统计时返回null
+     */
+    public static EventLoopMetrics current() {
+        return ENABLED ? CURRENT.getIfExists() : null;
+    }
+
+    /**
+     * 在事件循环线程启动时调用，绑定到当前线程并注册到MetricsRegistry
+     *
+     * @param name 事件循环的名字，一般是线程名
+     */
+    public void bind(String name) {
+        this.name = AssertUtils.checkNotNull(name, "Name cannot be null");
+        if (ENABLED) {
+            CURRENT.set(this);
+            MetricsRegistry.register(this);
+        }
+    }
+
+    /**
+     * 在事件循环线程退出前调用
+     */
+    public void unbind() {
+        if (ENABLED) {
+            MetricsRegistry.deregister(this);
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 提交任务时调用，按抽样率把任务包装成会统计排队延迟和执行时间的任务，可以在任何线程调用
+     *
+     * @param task 任务
+     * @return 包装后的任务，没抽中时返回原任务
+     */
+    public Runnable sample(Runnable task) {
+        if (ENABLED && TASK_SAMPLE_RATE > 0 && ThreadLocalRandom.current().nextInt(TASK_SAMPLE_RATE) == 0) {
+            return new SampledTask(this, task, System.nanoTime());
+        }
+        return task;
+    }
+
+    // 以下的record方法只能在绑定的线程调用
+
+    public void recordTasks(int count, long nanos) {
+        add(TASKS_EXECUTED, count);
+        add(TASK_TIME, nanos);
+    }
+
+    public void recordIo(int events, long nanos) {
+        add(IO_EVENTS, events);
+        add(IO_TIME, nanos);
+    }
+
+    public void recordSelectWakeup() {
+        add(SELECT_WAKEUPS, 1);
+    }
+
+    public void recordBytesRead(long bytes) {
+        add(BYTES_READ, bytes);
+    }
+
+    public void recordBytesWritten(long bytes) {
+        add(BYTES_WRITTEN, bytes);
+    }
+
+    /**
+     * @param delta 待发送字节数的变化，可以是负数
+     */
+    public void recordPendingOutboundBytes(long delta) {
+        add(PENDING_OUTBOUND_BYTES, delta);
+    }
+
+    void recordTaskLatency(long queueNanos, long runNanos) {
+        taskQueueLatency.record(queueNanos);
+        taskRunTime.record(runNanos);
+    }
+
+    private void add(int index, long delta) {
+        // 单写者，读出来加完用lazySet发布就够了
+        counters.lazySet(index, counters.get(index) + delta);
+    }
+
+    /**
+     * @return 当前指标的快照
+     */
+    public EventLoopMetricsSnapshot snapshot() {
+        return new EventLoopMetricsSnapshot(name, pendingTasks.getAsInt(),
+                counters.get(TASKS_EXECUTED), counters.get(TASK_TIME), counters.get(IO_TIME),
+                counters.get(SELECT_WAKEUPS), counters.get(IO_EVENTS),
+                counters.get(BYTES_READ), counters.get(BYTES_WRITTEN), counters.get(PENDING_OUTBOUND_BYTES),
+                taskQueueLatency.snapshot(), taskRunTime.snapshot());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getPendingTasks() {
+        return pendingTasks.getAsInt();
+    }
+
+    @Override
+    public long getTasksExecuted() {
+        return counters.get(TASKS_EXECUTED);
+    }
+
+    @Override
+    public long getTaskTimeNanos() {
+        return counters.get(TASK_TIME);
+    }
+
+    @Override
+    public long getIoTimeNanos() {
+        return counters.get(IO_TIME);
+    }
+
+    @Override
+    public double getIoTimePercent() {
+        return EventLoopMetricsSnapshot.ioTimePercent(getIoTimeNanos(), getTaskTimeNanos());
+    }
+
+    @Override
+    public long getSelectWakeups() {
+        return counters.get(SELECT_WAKEUPS);
+    }
+
+    @Override
+    public long getIoEvents() {
+        return counters.get(IO_EVENTS);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return counters.get(BYTES_READ);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return counters.get(BYTES_WRITTEN);
+    }
+
+    @Override
+    public long getPendingOutboundBytes() {
+        return counters.get(PENDING_OUTBOUND_BYTES);
+    }
+
+    @Override
+    public long getTaskQueueLatencyP50Nanos() {
+        return taskQueueLatency.snapshot().valueAtPercentile(50);
+    }
+
+    @Override
+    public long getTaskQueueLatencyP99Nanos() {
+        return taskQueueLatency.snapshot().valueAtPercentile(99);
+    }
+
+    @Override
+    public long getTaskQueueLatencyMaxNanos() {
+        return taskQueueLatency.snapshot().max();
+    }
+
+    @Override
+    public long getTaskRunTimeP99Nanos() {
+        return taskRunTime.snapshot().valueAtPercentile(99);
+    }
+
+    @Override
+    public String toString() {
+        return "EventLoopMetrics(" + name + ')';
+    }
+
+    /**
+     * 被抽中的任务，记下提交的时间，执行时统计排队延迟和执行时间
+     */
+    private static final class SampledTask implements Runnable {
+
+        private final EventLoopMetrics metrics;
+
+        private final Runnable task;
+
+        private final long submitNanos;
+
+        SampledTask(EventLoopMetrics metrics, Runnable task, long submitNanos) {
+            this.metrics = metrics;
+            this.task = task;
+            this.submitNanos = submitNanos;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                metrics.recordTaskLatency(start - submitNanos, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toString(task);
+        }
+    }
+}
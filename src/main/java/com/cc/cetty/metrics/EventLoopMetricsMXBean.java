@@ -0,0 +1,43 @@
+package com.cc.cetty.metrics;
+
+/**
+ * 事件循环在JMX中暴露的指标，每次读取时从事件循环的计数单元中取值
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public interface EventLoopMetricsMXBean {
+
+    String getName();
+
+    int getPendingTasks();
+
+    long getTasksExecuted();
+
+    long getTaskTimeNanos();
+
+    long getIoTimeNanos();
+
+    /**
+     * @return I/O时间占I/O和任务总时间的百分比
+     */
+    double getIoTimePercent();
+
+    long getSelectWakeups();
+
+    long getIoEvents();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getPendingOutboundBytes();
+
+    long getTaskQueueLatencyP50Nanos();
+
+    long getTaskQueueLatencyP99Nanos();
+
+    long getTaskQueueLatencyMaxNanos();
+
+    long getTaskRunTimeP99Nanos();
+}
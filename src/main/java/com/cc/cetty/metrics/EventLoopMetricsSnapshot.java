@@ -0,0 +1,145 @@
+package com.cc.cetty.metrics;
+
+/**
+ * 事件循环指标某一时刻的快照，不可变
+ * 各项是分别读出来的，彼此之间不保证是同一时刻的值
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public final class EventLoopMetricsSnapshot {
+
+    private final String name;
+
+    private final int pendingTasks;
+
+    private final long tasksExecuted;
+
+    private final long taskTimeNanos;
+
+    private final long ioTimeNanos;
+
+    private final long selectWakeups;
+
+    private final long ioEvents;
+
+    private final long bytesRead;
+
+    private final long bytesWritten;
+
+    private final long pendingOutboundBytes;
+
+    private final HistogramSnapshot taskQueueLatency;
+
+    private final HistogramSnapshot taskRunTime;
+
+    EventLoopMetricsSnapshot(String name, int pendingTasks, long tasksExecuted, long taskTimeNanos, long ioTimeNanos,
+                             long selectWakeups, long ioEvents, long bytesRead, long bytesWritten,
+                             long pendingOutboundBytes, HistogramSnapshot taskQueueLatency, HistogramSnapshot taskRunTime) {
+        this.name = name;
+        this.pendingTasks = pendingTasks;
+        this.tasksExecuted = tasksExecuted;
+        this.taskTimeNanos = taskTimeNanos;
+        this.ioTimeNanos = ioTimeNanos;
+        this.selectWakeups = selectWakeups;
+        this.ioEvents = ioEvents;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.pendingOutboundBytes = pendingOutboundBytes;
+        this.taskQueueLatency = taskQueueLatency;
+        this.taskRunTime = taskRunTime;
+    }
+
+    static double ioTimePercent(long ioTimeNanos, long taskTimeNanos) {
+        long total = ioTimeNanos + taskTimeNanos;
+        return total == 0 ? 0 : ioTimeNanos * 100.0 / total;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return 任务队列的长度
+     */
+    public int pendingTasks() {
+        return pendingTasks;
+    }
+
+    public long tasksExecuted() {
+        return tasksExecuted;
+    }
+
+    public long taskTimeNanos() {
+        return taskTimeNanos;
+    }
+
+    public long ioTimeNanos() {
+        return ioTimeNanos;
+    }
+
+    /**
+     * @return I/O时间占I/O和任务总时间的百分比
+     */
+    public double ioTimePercent() {
+        return ioTimePercent(ioTimeNanos, taskTimeNanos);
+    }
+
+    /**
+     * @return select返回的次数，包括超时和被唤醒
+     */
+    public long selectWakeups() {
+        return selectWakeups;
+    }
+
+    /**
+     * @return 处理的就绪key的数量
+     */
+    public long ioEvents() {
+        return ioEvents;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return 这个事件循环上所有channel出站缓冲区里待发送的字节数
+     */
+    public long pendingOutboundBytes() {
+        return pendingOutboundBytes;
+    }
+
+    /**
+     * @return 抽样任务从提交到开始执行的时间，单位纳秒
+     */
+    public HistogramSnapshot taskQueueLatency() {
+        return taskQueueLatency;
+    }
+
+    /**
+     * @return 抽样任务的执行时间，单位纳秒
+     */
+    public HistogramSnapshot taskRunTime() {
+        return taskRunTime;
+    }
+
+    @Override
+    public String toString() {
+        return "EventLoopMetricsSnapshot(" + name
+                + ", pendingTasks: " + pendingTasks
+                + ", tasksExecuted: " + tasksExecuted
+                + ", ioTimePercent: " + String.format("%.1f", ioTimePercent())
+                + ", selectWakeups: " + selectWakeups
+                + ", ioEvents: " + ioEvents
+                + ", bytesRead: " + bytesRead
+                + ", bytesWritten: " + bytesWritten
+                + ", pendingOutboundBytes: " + pendingOutboundBytes
+                + ", taskQueueLatency: " + taskQueueLatency
+                + ", taskRunTime: " + taskRunTime + ')';
+    }
+}
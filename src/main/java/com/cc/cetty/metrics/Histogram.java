@@ -0,0 +1,91 @@
+package com.cc.cetty.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 只有一个线程写的直方图，其他线程随时可以读
+ * 桶按对数分段，每个2的幂次区间再线性分成8个桶，任意数值的相对误差不超过12.5%，整个long的范围只要488个桶
+ * 写线程用lazySet发布，不需要CAS也不需要内存屏障；读线程拿到的是某个时刻附近的近似值，count由各个桶加起来，和桶总是一致的
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public final class Histogram {
+
+    /**
+     * 每个2的幂次区间分成 1 << SUB_BUCKET_BITS 个桶
+     */
+    static final int SUB_BUCKET_BITS = 3;
+
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private static final int SUM_INDEX = BUCKET_COUNT;
+
+    private static final int MAX_INDEX = BUCKET_COUNT + 1;
+
+    /**
+     * 桶，最后两个位置放sum和max
+     */
+    private final AtomicLongArray values = new AtomicLongArray(BUCKET_COUNT + 2);
+
+    /**
+     * 记录一个值，只能由写线程调用
+     *
+     * @param value 非负数，负数按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = bucketIndex(value);
+        values.lazySet(index, values.get(index) + 1);
+        values.lazySet(SUM_INDEX, values.get(SUM_INDEX) + value);
+        if (value > values.get(MAX_INDEX)) {
+            values.lazySet(MAX_INDEX, value);
+        }
+    }
+
+    /**
+     * @return 当前的快照，可以在任何线程调用
+     */
+    public HistogramSnapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = values.get(i);
+            buckets[i] = c;
+            count += c;
+        }
+        return new HistogramSnapshot(buckets, count, values.get(SUM_INDEX), values.get(MAX_INDEX));
+    }
+
+    /**
+     * @param value 非负数
+     * @return 值所在的桶
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + mantissa;
+    }
+
+    /**
+     * @param index 桶
+     * @return 桶中的最大值
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1));
+        long next = (mantissa + 1) << shift;
+        // 最后一个桶的上界超出long的范围
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+}
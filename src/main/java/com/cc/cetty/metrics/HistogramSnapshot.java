@@ -0,0 +1,88 @@
+package com.cc.cetty.metrics;
+
+import com.cc.cetty.utils.AssertUtils;
+
+/**
+ * 直方图某一时刻的快照，不可变
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public final class HistogramSnapshot {
+
+    public static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[Histogram.BUCKET_COUNT], 0, 0, 0);
+
+    private final long[] buckets;
+
+    private final long count;
+
+    private final long sum;
+
+    private final long max;
+
+    HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+        this.buckets = buckets;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long sum() {
+        return sum;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile 0到100之间
+     * @return 不小于percentile%的记录值的最小桶上界，不会超过max
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0 <= percentile <= 100)");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(Histogram.bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 合并两个快照，例如把所有事件循环的直方图加起来
+     *
+     * @param other 另一个快照
+     * @return 新的快照
+     */
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        AssertUtils.checkNotNull(other, "Other cannot be null");
+        long[] merged = new long[buckets.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = buckets[i] + other.buckets[i];
+        }
+        return new HistogramSnapshot(merged, count + other.count, sum + other.sum, Math.max(max, other.max));
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram(count: " + count + ", mean: " + (long) mean() + ", p50: " + valueAtPercentile(50)
+                + ", p99: " + valueAtPercentile(99) + ", p999: " + valueAtPercentile(99.9) + ", max: " + max + ')';
+    }
+}
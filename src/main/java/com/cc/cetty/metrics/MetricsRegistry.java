@@ -0,0 +1,234 @@
+package com.cc.cetty.metrics;
+
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Supplier;
+
+/**
+ * 全局的指标注册表，事件循环线程启动时注册自己，退出时注销
+ * 分配器注册的是生成快照的方法，只有读的时候才去遍历arena
+ * 通过 -Dcetty.metrics.jmx=true 或者调用enableJmx()把所有指标注册到平台MBeanServer
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+@Slf4j
+public final class MetricsRegistry {
+
+    private static final String DOMAIN = "com.cc.cetty";
+
+    private static final Set<EventLoopMetrics> EVENT_LOOPS = new CopyOnWriteArraySet<>();
+
+    private static final Map<String, Supplier<AllocatorMetricsSnapshot>> ALLOCATORS = new ConcurrentHashMap<>();
+
+    private static volatile boolean jmxEnabled;
+
+    static {
+        if (Boolean.getBoolean("cetty.metrics.jmx")) {
+            enableJmx();
+        }
+    }
+
+    private MetricsRegistry() {
+    }
+
+    static void register(EventLoopMetrics metrics) {
+        EVENT_LOOPS.add(metrics);
+        if (jmxEnabled) {
+            registerMBean(eventLoopName(metrics), metrics);
+        }
+    }
+
+    static void deregister(EventLoopMetrics metrics) {
+        if (EVENT_LOOPS.remove(metrics) && jmxEnabled) {
+            unregisterMBean(eventLoopName(metrics));
+        }
+    }
+
+    /**
+     * 注册一个分配器，同名的会被替换
+     *
+     * @param name     名字
+     * @param snapshot 生成快照的方法
+     */
+    public static void registerAllocator(String name, Supplier<AllocatorMetricsSnapshot> snapshot) {
+        AssertUtils.checkNotBlank(name, "Name cannot be blank");
+        AssertUtils.checkNotNull(snapshot, "Snapshot cannot be null");
+        ALLOCATORS.put(name, snapshot);
+        if (jmxEnabled) {
+            ObjectName objectName = allocatorName(name);
+            unregisterMBean(objectName);
+            registerMBean(objectName, new AllocatorMetrics(snapshot));
+        }
+    }
+
+    public static void deregisterAllocator(String name) {
+        if (Objects.nonNull(ALLOCATORS.remove(name)) && jmxEnabled) {
+            unregisterMBean(allocatorName(name));
+        }
+    }
+
+    /**
+     * @return 当前存活的事件循环的指标
+     */
+    public static List<EventLoopMetrics> eventLoops() {
+        return new ArrayList<>(EVENT_LOOPS);
+    }
+
+    /**
+     * @return 所有注册的事件循环和分配器的快照
+     */
+    public static MetricsSnapshot snapshot() {
+        List<EventLoopMetricsSnapshot> eventLoops = new ArrayList<>(EVENT_LOOPS.size());
+        for (EventLoopMetrics metrics : EVENT_LOOPS) {
+            eventLoops.add(metrics.snapshot());
+        }
+        Map<String, AllocatorMetricsSnapshot> allocators = new LinkedHashMap<>();
+        ALLOCATORS.forEach((name, snapshot) -> allocators.put(name, snapshot.get()));
+        return new MetricsSnapshot(eventLoops, allocators);
+    }
+
+    /**
+     * 把已经注册的和之后注册的指标都注册到平台MBeanServer
+     */
+    public static synchronized void enableJmx() {
+        if (jmxEnabled) {
+            return;
+        }
+        jmxEnabled = true;
+        for (EventLoopMetrics metrics : EVENT_LOOPS) {
+            registerMBean(eventLoopName(metrics), metrics);
+        }
+        ALLOCATORS.forEach((name, snapshot) -> registerMBean(allocatorName(name), new AllocatorMetrics(snapshot)));
+    }
+
+    public static boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    static ObjectName eventLoopName(EventLoopMetrics metrics) {
+        return objectName("EventLoop", metrics.getName());
+    }
+
+    static ObjectName allocatorName(String name) {
+        return objectName("Allocator", name);
+    }
+
+    private static ObjectName objectName(String type, String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("name: " + name, e);
+        }
+    }
+
+    private static void registerMBean(ObjectName name, Object bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (Exception e) {
+            log.warn("Register mbean {} fail, Error:", name, e);
+        }
+    }
+
+    private static void unregisterMBean(ObjectName name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            log.warn("Unregister mbean {} fail, Error:", name, e);
+        }
+    }
+
+    /**
+     * 把分配器的快照适配成MXBean
+     */
+    private static final class AllocatorMetrics implements AllocatorMetricsMXBean {
+
+        private final Supplier<AllocatorMetricsSnapshot> snapshot;
+
+        AllocatorMetrics(Supplier<AllocatorMetricsSnapshot> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public int getChunkSize() {
+            return snapshot.get().chunkSize();
+        }
+
+        @Override
+        public int getNumHeapArenas() {
+            return snapshot.get().heapArenas().size();
+        }
+
+        @Override
+        public int getNumDirectArenas() {
+            return snapshot.get().directArenas().size();
+        }
+
+        @Override
+        public long getUsedHeapMemory() {
+            return snapshot.get().usedHeapMemory();
+        }
+
+        @Override
+        public long getUsedDirectMemory() {
+            return snapshot.get().usedDirectMemory();
+        }
+
+        @Override
+        public long getAllocatedHeapBytes() {
+            return snapshot.get().allocatedHeapBytes();
+        }
+
+        @Override
+        public long getAllocatedDirectBytes() {
+            return snapshot.get().allocatedDirectBytes();
+        }
+
+        @Override
+        public int getNumChunks() {
+            AllocatorMetricsSnapshot s = snapshot.get();
+            int numChunks = 0;
+            for (ArenaMetricsSnapshot arena : s.heapArenas()) {
+                numChunks += arena.numChunks();
+            }
+            for (ArenaMetricsSnapshot arena : s.directArenas()) {
+                numChunks += arena.numChunks();
+            }
+            return numChunks;
+        }
+
+        @Override
+        public int getNumThreadCaches() {
+            // 每个线程缓存同时挂在一个堆arena和一个直接内存arena上，相加会重复计数
+            // 其中一种arena个数为0时线程缓存只挂在另一种上，所以取两边的较大值
+            AllocatorMetricsSnapshot s = snapshot.get();
+            int heapThreadCaches = 0;
+            for (ArenaMetricsSnapshot arena : s.heapArenas()) {
+                heapThreadCaches += arena.numThreadCaches();
+            }
+            int directThreadCaches = 0;
+            for (ArenaMetricsSnapshot arena : s.directArenas()) {
+                directThreadCaches += arena.numThreadCaches();
+            }
+            return Math.max(heapThreadCaches, directThreadCaches);
+        }
+    }
+}
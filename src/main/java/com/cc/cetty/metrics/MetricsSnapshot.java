@@ -0,0 +1,50 @@
+package com.cc.cetty.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 所有注册的事件循环和分配器某一时刻的快照，不可变
+ *
+ * @author: cc
+ * @date: 2023/12/13
+ **/
+public final class MetricsSnapshot {
+
+    private final List<EventLoopMetricsSnapshot> eventLoops;
+
+    private final Map<String, AllocatorMetricsSnapshot> allocators;
+
+    MetricsSnapshot(List<EventLoopMetricsSnapshot> eventLoops, Map<String, AllocatorMetricsSnapshot> allocators) {
+        this.eventLoops = Collections.unmodifiableList(eventLoops);
+        this.allocators = Collections.unmodifiableMap(allocators);
+    }
+
+    public List<EventLoopMetricsSnapshot> eventLoops() {
+        return eventLoops;
+    }
+
+    /**
+     * @return 分配器的名字到快照
+     */
+    public Map<String, AllocatorMetricsSnapshot> allocators() {
+        return allocators;
+    }
+
+    /**
+     * @return 所有事件循环的任务排队延迟合在一起
+     */
+    public HistogramSnapshot taskQueueLatency() {
+        HistogramSnapshot merged = HistogramSnapshot.EMPTY;
+        for (EventLoopMetricsSnapshot eventLoop : eventLoops) {
+            merged = merged.merge(eventLoop.taskQueueLatency());
+        }
+        return merged;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot(eventLoops: " + eventLoops + ", allocators: " + allocators + ')';
+    }
+}
@@ -0,0 +1,805 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.attribute.Attribute;
+import com.cc.cetty.attribute.AttributeKey;
+import com.cc.cetty.buffer.ByteBufAllocator;
+import com.cc.cetty.buffer.ReferenceCountUtils;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelFuture;
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelHandlerMask;
+import com.cc.cetty.handler.ChannelInboundHandler;
+import com.cc.cetty.handler.ChannelOutboundHandler;
+import com.cc.cetty.recycler.Recycler;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.SocketAddress;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static com.cc.cetty.handler.ChannelHandlerMask.*;
+
+/**
+ * ctx的骨架实现，pipeline双向链表的节点
+ * 事件传递时根据处理器的掩码跳过不关心该事件的处理器
+ * 处理器方法总是在ctx自己的执行器上调用，如果当前线程不是该执行器，把调用提交给它
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+@Slf4j
+abstract class AbstractChannelHandlerContext implements ChannelHandlerContext {
+
+    /**
+     * 刚创建
+     */
+    private static final int INIT = 0;
+
+    /**
+     * 已经加入链表，但是handlerAdded还没被调用
+     */
+    private static final int ADD_PENDING = 1;
+
+    /**
+     * handlerAdded已经被调用
+     */
+    private static final int ADD_COMPLETE = 2;
+
+    /**
+     * handlerRemoved已经被调用
+     */
+    private static final int REMOVE_COMPLETE = 3;
+
+    private static final AtomicIntegerFieldUpdater<AbstractChannelHandlerContext> HANDLER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractChannelHandlerContext.class, "handlerState");
+
+    volatile AbstractChannelHandlerContext next;
+
+    volatile AbstractChannelHandlerContext prev;
+
+    private final DefaultChannelPipeline pipeline;
+
+    private final String name;
+
+    /**
+     * 处理器关心的事件
+     */
+    private final int executionMask;
+
+    /**
+     * 添加处理器时指定的执行器，为空时使用channel的事件循环
+     */
+    private final EventExecutor childExecutor;
+
+    private volatile int handlerState = INIT;
+
+    /**
+     * 跨线程传递read和flush时复用的任务，它们没有参数
+     */
+    private Runnable invokeReadTask;
+
+    private Runnable invokeFlushTask;
+
+    AbstractChannelHandlerContext(DefaultChannelPipeline pipeline, EventExecutor executor, String name, Class<? extends ChannelHandler> handlerClass) {
+        this.pipeline = pipeline;
+        this.name = AssertUtils.checkNotNull(name, "Name cannot be null");
+        this.childExecutor = executor;
+        this.executionMask = ChannelHandlerMask.mask(handlerClass);
+    }
+
+    @Override
+    public Channel channel() {
+        return pipeline.channel();
+    }
+
+    @Override
+    public ChannelPipeline pipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+        return channel().alloc();
+    }
+
+    @Override
+    public <T> Attribute<T> attr(AttributeKey<T> key) {
+        return channel().attr(key);
+    }
+
+    @Override
+    public <T> boolean hasAttr(AttributeKey<T> key) {
+        return channel().hasAttr(key);
+    }
+
+    @Override
+    public EventExecutor executor() {
+        return Objects.isNull(childExecutor) ? channel().eventLoop() : childExecutor;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean isRemoved() {
+        return handlerState == REMOVE_COMPLETE;
+    }
+
+    @Override
+    public ChannelPromise newPromise() {
+        return channel().newPromise();
+    }
+
+    // ---------------------------------- 入站事件 ----------------------------------
+
+    @Override
+    public ChannelHandlerContext fireChannelRegistered() {
+        invokeChannelRegistered(findContextInbound(MASK_CHANNEL_REGISTERED));
+        return this;
+    }
+
+    static void invokeChannelRegistered(AbstractChannelHandlerContext next) {
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeChannelRegistered();
+        } else {
+            executor.execute(next::invokeChannelRegistered);
+        }
+    }
+
+    private void invokeChannelRegistered() {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).channelRegistered(this);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireChannelRegistered();
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireChannelUnregistered() {
+        invokeChannelUnregistered(findContextInbound(MASK_CHANNEL_UNREGISTERED));
+        return this;
+    }
+
+    static void invokeChannelUnregistered(AbstractChannelHandlerContext next) {
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeChannelUnregistered();
+        } else {
+            executor.execute(next::invokeChannelUnregistered);
+        }
+    }
+
+    private void invokeChannelUnregistered() {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).channelUnregistered(this);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireChannelUnregistered();
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireChannelActive() {
+        invokeChannelActive(findContextInbound(MASK_CHANNEL_ACTIVE));
+        return this;
+    }
+
+    static void invokeChannelActive(AbstractChannelHandlerContext next) {
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeChannelActive();
+        } else {
+            executor.execute(next::invokeChannelActive);
+        }
+    }
+
+    private void invokeChannelActive() {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).channelActive(this);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireChannelActive();
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireChannelInactive() {
+        invokeChannelInactive(findContextInbound(MASK_CHANNEL_INACTIVE));
+        return this;
+    }
+
+    static void invokeChannelInactive(AbstractChannelHandlerContext next) {
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeChannelInactive();
+        } else {
+            executor.execute(next::invokeChannelInactive);
+        }
+    }
+
+    private void invokeChannelInactive() {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).channelInactive(this);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireChannelInactive();
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireChannelRead(Object msg) {
+        invokeChannelRead(findContextInbound(MASK_CHANNEL_READ), msg);
+        return this;
+    }
+
+    static void invokeChannelRead(AbstractChannelHandlerContext next, Object msg) {
+        AssertUtils.checkNotNull(msg, "Message cannot be null");
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeChannelRead(msg);
+        } else {
+            executor.execute(() -> next.invokeChannelRead(msg));
+        }
+    }
+
+    private void invokeChannelRead(Object msg) {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).channelRead(this, msg);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireChannelReadComplete() {
+        invokeChannelReadComplete(findContextInbound(MASK_CHANNEL_READ_COMPLETE));
+        return this;
+    }
+
+    static void invokeChannelReadComplete(AbstractChannelHandlerContext next) {
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeChannelReadComplete();
+        } else {
+            executor.execute(next::invokeChannelReadComplete);
+        }
+    }
+
+    private void invokeChannelReadComplete() {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).channelReadComplete(this);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireChannelReadComplete();
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireUserEventTriggered(Object event) {
+        invokeUserEventTriggered(findContextInbound(MASK_USER_EVENT_TRIGGERED), event);
+        return this;
+    }
+
+    static void invokeUserEventTriggered(AbstractChannelHandlerContext next, Object event) {
+        AssertUtils.checkNotNull(event, "Event cannot be null");
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeUserEventTriggered(event);
+        } else {
+            executor.execute(() -> next.invokeUserEventTriggered(event));
+        }
+    }
+
+    private void invokeUserEventTriggered(Object event) {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).userEventTriggered(this, event);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireUserEventTriggered(event);
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireChannelWritabilityChanged() {
+        invokeChannelWritabilityChanged(findContextInbound(MASK_CHANNEL_WRITABILITY_CHANGED));
+        return this;
+    }
+
+    static void invokeChannelWritabilityChanged(AbstractChannelHandlerContext next) {
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeChannelWritabilityChanged();
+        } else {
+            executor.execute(next::invokeChannelWritabilityChanged);
+        }
+    }
+
+    private void invokeChannelWritabilityChanged() {
+        if (invokeHandler()) {
+            try {
+                ((ChannelInboundHandler) handler()).channelWritabilityChanged(this);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            fireChannelWritabilityChanged();
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext fireExceptionCaught(Throwable cause) {
+        invokeExceptionCaught(findContextInbound(MASK_EXCEPTION_CAUGHT), cause);
+        return this;
+    }
+
+    static void invokeExceptionCaught(AbstractChannelHandlerContext next, Throwable cause) {
+        AssertUtils.checkNotNull(cause, "Cause cannot be null");
+        EventExecutor executor = next.executor();
+        if (executor.inEventLoop()) {
+            next.invokeExceptionCaught(cause);
+        } else {
+            try {
+                executor.execute(() -> next.invokeExceptionCaught(cause));
+            } catch (Throwable t) {
+                log.warn("Failed to submit an exceptionCaught() event.", t);
+                log.warn("The exceptionCaught() event that was failed to submit was:", cause);
+            }
+        }
+    }
+
+    /**
+     * 处理器抛出的异常交给同一个处理器的exceptionCaught，exceptionCaught自己抛出的异常只记录日志，避免死循环
+     * 出站处理器不处理异常，直接往后传递
+     */
+    private void invokeExceptionCaught(Throwable cause) {
+        if (invokeHandler() && handler() instanceof ChannelInboundHandler) {
+            try {
+                ((ChannelInboundHandler) handler()).exceptionCaught(this, cause);
+            } catch (Throwable error) {
+                log.warn("An exception was thrown by a user handler's exceptionCaught() method while handling the following exception:", cause);
+                log.warn("The exceptionCaught() method threw:", error);
+            }
+        } else {
+            fireExceptionCaught(cause);
+        }
+    }
+
+    // ---------------------------------- 出站操作 ----------------------------------
+
+    @Override
+    public ChannelFuture bind(SocketAddress localAddress, ChannelPromise promise) {
+        AssertUtils.checkNotNull(localAddress, "Local address cannot be null");
+        if (isNotValidPromise(promise)) {
+            return promise;
+        }
+        AbstractChannelHandlerContext next = findContextOutbound(MASK_BIND);
+        EventExecutor executor = next.executor();
+        if (Objects.nonNull(executor) && executor.inEventLoop()) {
+            next.invokeBind(localAddress, promise);
+        } else {
+            safeExecute(executor, () -> next.invokeBind(localAddress, promise), promise);
+        }
+        return promise;
+    }
+
+    private void invokeBind(SocketAddress localAddress, ChannelPromise promise) {
+        if (invokeHandler()) {
+            try {
+                ((ChannelOutboundHandler) handler()).bind(this, localAddress, promise);
+            } catch (Throwable t) {
+                notifyOutboundHandlerException(t, promise);
+            }
+        } else {
+            bind(localAddress, promise);
+        }
+    }
+
+    @Override
+    public ChannelFuture connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+        AssertUtils.checkNotNull(remoteAddress, "Remote address cannot be null");
+        if (isNotValidPromise(promise)) {
+            return promise;
+        }
+        AbstractChannelHandlerContext next = findContextOutbound(MASK_CONNECT);
+        EventExecutor executor = next.executor();
+        if (Objects.nonNull(executor) && executor.inEventLoop()) {
+            next.invokeConnect(remoteAddress, localAddress, promise);
+        } else {
+            safeExecute(executor, () -> next.invokeConnect(remoteAddress, localAddress, promise), promise);
+        }
+        return promise;
+    }
+
+    private void invokeConnect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+        if (invokeHandler()) {
+            try {
+                ((ChannelOutboundHandler) handler()).connect(this, remoteAddress, localAddress, promise);
+            } catch (Throwable t) {
+                notifyOutboundHandlerException(t, promise);
+            }
+        } else {
+            connect(remoteAddress, localAddress, promise);
+        }
+    }
+
+    @Override
+    public ChannelFuture close(ChannelPromise promise) {
+        if (isNotValidPromise(promise)) {
+            return promise;
+        }
+        AbstractChannelHandlerContext next = findContextOutbound(MASK_CLOSE);
+        EventExecutor executor = next.executor();
+        if (Objects.nonNull(executor) && executor.inEventLoop()) {
+            next.invokeClose(promise);
+        } else {
+            safeExecute(executor, () -> next.invokeClose(promise), promise);
+        }
+        return promise;
+    }
+
+    private void invokeClose(ChannelPromise promise) {
+        if (invokeHandler()) {
+            try {
+                ((ChannelOutboundHandler) handler()).close(this, promise);
+            } catch (Throwable t) {
+                notifyOutboundHandlerException(t, promise);
+            }
+        } else {
+            close(promise);
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext read() {
+        AbstractChannelHandlerContext next = findContextOutbound(MASK_READ);
+        EventExecutor executor = next.executor();
+        if (Objects.nonNull(executor) && executor.inEventLoop()) {
+            next.invokeRead();
+        } else {
+            Runnable task = next.invokeReadTask;
+            if (Objects.isNull(task)) {
+                next.invokeReadTask = task = next::invokeRead;
+            }
+            safeExecute(executor, task, null);
+        }
+        return this;
+    }
+
+    private void invokeRead() {
+        if (invokeHandler()) {
+            try {
+                ((ChannelOutboundHandler) handler()).read(this);
+            } catch (Throwable t) {
+                invokeExceptionCaught(t);
+            }
+        } else {
+            read();
+        }
+    }
+
+    @Override
+    public ChannelFuture write(Object msg, ChannelPromise promise) {
+        write(msg, false, promise);
+        return promise;
+    }
+
+    private void invokeWrite(Object msg, ChannelPromise promise) {
+        if (invokeHandler()) {
+            invokeWrite0(msg, promise);
+        } else {
+            write(msg, promise);
+        }
+    }
+
+    private void invokeWrite0(Object msg, ChannelPromise promise) {
+        try {
+            ((ChannelOutboundHandler) handler()).write(this, msg, promise);
+        } catch (Throwable t) {
+            notifyOutboundHandlerException(t, promise);
+        }
+    }
+
+    @Override
+    public ChannelHandlerContext flush() {
+        AbstractChannelHandlerContext next = findContextOutbound(MASK_FLUSH);
+        EventExecutor executor = next.executor();
+        if (Objects.nonNull(executor) && executor.inEventLoop()) {
+            next.invokeFlush();
+        } else {
+            Runnable task = next.invokeFlushTask;
+            if (Objects.isNull(task)) {
+                next.invokeFlushTask = task = next::invokeFlush;
+            }
+            safeExecute(executor, task, null);
+        }
+        return this;
+    }
+
+    private void invokeFlush() {
+        if (invokeHandler()) {
+            invokeFlush0();
+        } else {
+            flush();
+        }
+    }
+
+    private void invokeFlush0() {
+        try {
+            ((ChannelOutboundHandler) handler()).flush(this);
+        } catch (Throwable t) {
+            invokeExceptionCaught(t);
+        }
+    }
+
+    @Override
+    public ChannelFuture writeAndFlush(Object msg, ChannelPromise promise) {
+        write(msg, true, promise);
+        return promise;
+    }
+
+    private void invokeWriteAndFlush(Object msg, ChannelPromise promise) {
+        if (invokeHandler()) {
+            invokeWrite0(msg, promise);
+            invokeFlush0();
+        } else {
+            writeAndFlush(msg, promise);
+        }
+    }
+
+    private void write(Object msg, boolean flush, ChannelPromise promise) {
+        AssertUtils.checkNotNull(msg, "Message cannot be null");
+        try {
+            if (isNotValidPromise(promise)) {
+                ReferenceCountUtils.safeRelease(msg);
+                return;
+            }
+        } catch (RuntimeException e) {
+            ReferenceCountUtils.safeRelease(msg);
+            throw e;
+        }
+        AbstractChannelHandlerContext next = findContextOutbound(flush ? (MASK_WRITE | MASK_FLUSH) : MASK_WRITE);
+        EventExecutor executor = next.executor();
+        if (Objects.nonNull(executor) && executor.inEventLoop()) {
+            if (flush) {
+                next.invokeWriteAndFlush(msg, promise);
+            } else {
+                next.invokeWrite(msg, promise);
+            }
+        } else {
+            WriteTask task = WriteTask.newInstance(next, msg, promise, flush);
+            if (!safeExecute(executor, task, promise)) {
+                task.cancel();
+            }
+        }
+    }
+
+    // ---------------------------------- 处理器状态 ----------------------------------
+
+    /**
+     * @return handlerAdded是否已经被调用，没被调用时处理器还没准备好，事件直接往后传递
+     */
+    private boolean invokeHandler() {
+        return handlerState == ADD_COMPLETE;
+    }
+
+    final void setAddPending() {
+        HANDLER_STATE_UPDATER.compareAndSet(this, INIT, ADD_PENDING);
+    }
+
+    final void setRemoved() {
+        handlerState = REMOVE_COMPLETE;
+    }
+
+    /**
+     * @return 是否设置成功，已经被删除时返回false
+     */
+    final boolean setAddComplete() {
+        for (; ; ) {
+            int oldState = handlerState;
+            if (oldState == REMOVE_COMPLETE) {
+                return false;
+            }
+            if (HANDLER_STATE_UPDATER.compareAndSet(this, oldState, ADD_COMPLETE)) {
+                return true;
+            }
+        }
+    }
+
+    final void callHandlerAdded() throws Exception {
+        if (setAddComplete()) {
+            handler().handlerAdded(this);
+        }
+    }
+
+    final void callHandlerRemoved() throws Exception {
+        try {
+            if (handlerState == ADD_COMPLETE) {
+                handler().handlerRemoved(this);
+            }
+        } finally {
+            setRemoved();
+        }
+    }
+
+    // ---------------------------------- 查找 ----------------------------------
+
+    private AbstractChannelHandlerContext findContextInbound(int mask) {
+        AbstractChannelHandlerContext ctx = this;
+        EventExecutor currentExecutor = executor();
+        do {
+            ctx = ctx.next;
+        } while (skipContext(ctx, currentExecutor, mask, MASK_ONLY_INBOUND));
+        return ctx;
+    }
+
+    private AbstractChannelHandlerContext findContextOutbound(int mask) {
+        AbstractChannelHandlerContext ctx = this;
+        EventExecutor currentExecutor = executor();
+        do {
+            ctx = ctx.prev;
+        } while (skipContext(ctx, currentExecutor, mask, MASK_ONLY_OUTBOUND));
+        return ctx;
+    }
+
+    /**
+     * 不关心同方向任何事件的处理器总是可以跳过
+     * 在其他执行器上的处理器只要关心同方向的某个事件就不能跳过，事件要经过它的执行器中转，否则同一个channel的事件在它那里会乱序
+     * 头尾节点关心所有事件，所以查找一定会结束
+     *
+     * @param ctx             ctx
+     * @param currentExecutor 当前ctx的执行器
+     * @param mask            事件
+     * @param onlyMask        同方向的所有事件
+     * @return 是否跳过
+     */
+    private static boolean skipContext(AbstractChannelHandlerContext ctx, EventExecutor currentExecutor, int mask, int onlyMask) {
+        return (ctx.executionMask & (onlyMask | mask)) == 0
+                || (ctx.executor() == currentExecutor && (ctx.executionMask & mask) == 0);
+    }
+
+    // ---------------------------------- 工具 ----------------------------------
+
+    private boolean isNotValidPromise(ChannelPromise promise) {
+        AssertUtils.checkNotNull(promise, "Promise cannot be null");
+        if (promise.isDone()) {
+            // 已经取消的promise直接忽略
+            if (promise.isCancelled()) {
+                return true;
+            }
+            throw new IllegalArgumentException("Promise already completed: " + promise);
+        }
+        if (promise.channel() != channel()) {
+            throw new IllegalArgumentException("Promise channel does not match: " + promise.channel() + " (expected: " + channel() + ')');
+        }
+        return false;
+    }
+
+    private static void notifyOutboundHandlerException(Throwable cause, ChannelPromise promise) {
+        if (!promise.tryFailure(cause)) {
+            log.warn("Failed to mark a promise as failure because it has completed already: {}", promise, cause);
+        }
+    }
+
+    /**
+     * @param executor 执行器，channel还没注册时为空
+     * @param task     task
+     * @param promise  提交失败时通知的promise，可以为空
+     * @return 是否提交成功
+     */
+    private static boolean safeExecute(EventExecutor executor, Runnable task, ChannelPromise promise) {
+        try {
+            if (Objects.isNull(executor)) {
+                throw new IllegalStateException("Channel not registered to an event loop");
+            }
+            executor.execute(task);
+            return true;
+        } catch (Throwable cause) {
+            if (Objects.nonNull(promise)) {
+                promise.tryFailure(cause);
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '(' + name + ", " + channel() + ')';
+    }
+
+    /**
+     * 跨线程写出时提交给执行器的任务，业务线程写出很频繁，所以对象池化
+     * 任务在调用线程创建，在事件循环中回收，走的是回收器的跨线程队列
+     */
+    private static final class WriteTask implements Runnable {
+
+        private static final Recycler<WriteTask> RECYCLER = new Recycler<>() {
+            @Override
+            protected WriteTask newObject(Handle<WriteTask> handle) {
+                return new WriteTask(handle);
+            }
+        };
+
+        private final Recycler.Handle<WriteTask> handle;
+
+        private AbstractChannelHandlerContext ctx;
+
+        private Object msg;
+
+        private ChannelPromise promise;
+
+        private boolean flush;
+
+        private WriteTask(Recycler.Handle<WriteTask> handle) {
+            this.handle = handle;
+        }
+
+        static WriteTask newInstance(AbstractChannelHandlerContext ctx, Object msg, ChannelPromise promise, boolean flush) {
+            WriteTask task = RECYCLER.get();
+            task.ctx = ctx;
+            task.msg = msg;
+            task.promise = promise;
+            task.flush = flush;
+            return task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (flush) {
+                    ctx.invokeWriteAndFlush(msg, promise);
+                } else {
+                    ctx.invokeWrite(msg, promise);
+                }
+            } finally {
+                recycle();
+            }
+        }
+
+        /**
+         * 提交失败时释放消息
+         */
+        void cancel() {
+            try {
+                ReferenceCountUtils.safeRelease(msg);
+            } finally {
+                recycle();
+            }
+        }
+
+        private void recycle() {
+            ctx = null;
+            msg = null;
+            promise = null;
+            handle.recycle(this);
+        }
+    }
+}
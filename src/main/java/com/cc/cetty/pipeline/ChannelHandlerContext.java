@@ -0,0 +1,87 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.attribute.AttributeMap;
+import com.cc.cetty.buffer.ByteBufAllocator;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.handler.ChannelHandler;
+
+/**
+ * 处理器在pipeline中的上下文，是pipeline双向链表的节点
+ * 通过ctx触发的入站事件从下一个处理器开始传递，出站操作从前一个处理器开始传递
+ * 每个ctx有自己的执行器，添加处理器时没有指定执行器组的话就是channel所属的事件循环
+ * ctx上的属性就是channel的属性，同一个连接上的处理器看到的是同一份
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public interface ChannelHandlerContext extends AttributeMap, ChannelInboundInvoker, ChannelOutboundInvoker {
+
+    /**
+     * @return channel
+     */
+    Channel channel();
+
+    /**
+     * @return 执行处理器方法的执行器
+     */
+    EventExecutor executor();
+
+    /**
+     * @return 处理器在pipeline中的名字
+     */
+    String name();
+
+    /**
+     * @return 处理器
+     */
+    ChannelHandler handler();
+
+    /**
+     * @return 处理器是否已经从pipeline中删除
+     */
+    boolean isRemoved();
+
+    /**
+     * @return 所属的pipeline
+     */
+    ChannelPipeline pipeline();
+
+    /**
+     * @return channel的分配器
+     */
+    ByteBufAllocator alloc();
+
+    @Override
+    ChannelHandlerContext fireChannelRegistered();
+
+    @Override
+    ChannelHandlerContext fireChannelUnregistered();
+
+    @Override
+    ChannelHandlerContext fireChannelActive();
+
+    @Override
+    ChannelHandlerContext fireChannelInactive();
+
+    @Override
+    ChannelHandlerContext fireChannelRead(Object msg);
+
+    @Override
+    ChannelHandlerContext fireChannelReadComplete();
+
+    @Override
+    ChannelHandlerContext fireUserEventTriggered(Object event);
+
+    @Override
+    ChannelHandlerContext fireChannelWritabilityChanged();
+
+    @Override
+    ChannelHandlerContext fireExceptionCaught(Throwable cause);
+
+    @Override
+    ChannelHandlerContext read();
+
+    @Override
+    ChannelHandlerContext flush();
+}
@@ -0,0 +1,58 @@
+package com.cc.cetty.pipeline;
+
+/**
+ * 触发入站事件，事件从pipeline的头部往尾部传递
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public interface ChannelInboundInvoker {
+
+    /**
+     * @return this
+     */
+    ChannelInboundInvoker fireChannelRegistered();
+
+    /**
+     * @return this
+     */
+    ChannelInboundInvoker fireChannelUnregistered();
+
+    /**
+     * @return this
+     */
+    ChannelInboundInvoker fireChannelActive();
+
+    /**
+     * @return this
+     */
+    ChannelInboundInvoker fireChannelInactive();
+
+    /**
+     * @param msg msg
+     * @return this
+     */
+    ChannelInboundInvoker fireChannelRead(Object msg);
+
+    /**
+     * @return this
+     */
+    ChannelInboundInvoker fireChannelReadComplete();
+
+    /**
+     * @param event 事件
+     * @return this
+     */
+    ChannelInboundInvoker fireUserEventTriggered(Object event);
+
+    /**
+     * @return this
+     */
+    ChannelInboundInvoker fireChannelWritabilityChanged();
+
+    /**
+     * @param cause cause
+     * @return this
+     */
+    ChannelInboundInvoker fireExceptionCaught(Throwable cause);
+}
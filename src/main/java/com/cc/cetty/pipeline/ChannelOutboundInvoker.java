@@ -0,0 +1,113 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.channel.ChannelFuture;
+import com.cc.cetty.channel.ChannelPromise;
+
+import java.net.SocketAddress;
+
+/**
+ * 发起出站操作，操作从pipeline的尾部往头部传递，最后由channel的unsafe执行
+ * 所有操作都是异步的，结果通过ChannelFuture返回
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public interface ChannelOutboundInvoker {
+
+    /**
+     * @param localAddress 本地地址
+     * @return future
+     */
+    default ChannelFuture bind(SocketAddress localAddress) {
+        return bind(localAddress, newPromise());
+    }
+
+    /**
+     * @param localAddress 本地地址
+     * @param promise      promise
+     * @return promise
+     */
+    ChannelFuture bind(SocketAddress localAddress, ChannelPromise promise);
+
+    /**
+     * @param remoteAddress 远端地址
+     * @return future
+     */
+    default ChannelFuture connect(SocketAddress remoteAddress) {
+        return connect(remoteAddress, null, newPromise());
+    }
+
+    /**
+     * @param remoteAddress 远端地址
+     * @param localAddress  本地地址，可以为空
+     * @param promise       promise
+     * @return promise
+     */
+    ChannelFuture connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise);
+
+    /**
+     * @return future
+     */
+    default ChannelFuture close() {
+        return close(newPromise());
+    }
+
+    /**
+     * @param promise promise
+     * @return promise
+     */
+    ChannelFuture close(ChannelPromise promise);
+
+    /**
+     * 请求开始读，读到的数据通过channelRead事件传递
+     *
+     * @return this
+     */
+    ChannelOutboundInvoker read();
+
+    /**
+     * 写出数据，数据只是放入待发送的队列中，flush时才真正发送
+     *
+     * @param msg msg
+     * @return future
+     */
+    default ChannelFuture write(Object msg) {
+        return write(msg, newPromise());
+    }
+
+    /**
+     * @param msg     msg
+     * @param promise promise
+     * @return promise
+     */
+    ChannelFuture write(Object msg, ChannelPromise promise);
+
+    /**
+     * 把待发送队列中的数据发送出去
+     *
+     * @return this
+     */
+    ChannelOutboundInvoker flush();
+
+    /**
+     * 写出数据并立刻发送
+     *
+     * @param msg msg
+     * @return future
+     */
+    default ChannelFuture writeAndFlush(Object msg) {
+        return writeAndFlush(msg, newPromise());
+    }
+
+    /**
+     * @param msg     msg
+     * @param promise promise
+     * @return promise
+     */
+    ChannelFuture writeAndFlush(Object msg, ChannelPromise promise);
+
+    /**
+     * @return 新的promise
+     */
+    ChannelPromise newPromise();
+}
@@ -0,0 +1,172 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.async.EventExecutorGroup;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.handler.ChannelHandler;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 处理器组成的双向链表，头尾各有一个固定的节点
+ * 入站事件从头部往尾部传递，出站操作从尾部往头部传递，最后由头部交给channel的unsafe
+ * 添加和删除处理器是线程安全的，可以在任何线程调用
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public interface ChannelPipeline extends ChannelInboundInvoker, ChannelOutboundInvoker, Iterable<Map.Entry<String, ChannelHandler>> {
+
+    /**
+     * @param name    名字，为空时自动生成
+     * @param handler handler
+     * @return this
+     */
+    ChannelPipeline addFirst(String name, ChannelHandler handler);
+
+    /**
+     * @param group   执行处理器方法的执行器组，为空时使用channel的事件循环
+     * @param name    名字，为空时自动生成
+     * @param handler handler
+     * @return this
+     */
+    ChannelPipeline addFirst(EventExecutorGroup group, String name, ChannelHandler handler);
+
+    /**
+     * @param name    名字，为空时自动生成
+     * @param handler handler
+     * @return this
+     */
+    ChannelPipeline addLast(String name, ChannelHandler handler);
+
+    /**
+     * @param group   执行处理器方法的执行器组，为空时使用channel的事件循环
+     * @param name    名字，为空时自动生成
+     * @param handler handler
+     * @return this
+     */
+    ChannelPipeline addLast(EventExecutorGroup group, String name, ChannelHandler handler);
+
+    /**
+     * @param baseName 已有处理器的名字
+     * @param name     名字，为空时自动生成
+     * @param handler  handler
+     * @return this
+     */
+    ChannelPipeline addBefore(String baseName, String name, ChannelHandler handler);
+
+    /**
+     * @param baseName 已有处理器的名字
+     * @param name     名字，为空时自动生成
+     * @param handler  handler
+     * @return this
+     */
+    ChannelPipeline addAfter(String baseName, String name, ChannelHandler handler);
+
+    /**
+     * 按顺序添加到尾部，名字自动生成
+     *
+     * @param handlers handlers
+     * @return this
+     */
+    ChannelPipeline addLast(ChannelHandler... handlers);
+
+    /**
+     * 按顺序添加到尾部，名字自动生成
+     *
+     * @param group    执行处理器方法的执行器组，为空时使用channel的事件循环
+     * @param handlers handlers
+     * @return this
+     */
+    ChannelPipeline addLast(EventExecutorGroup group, ChannelHandler... handlers);
+
+    /**
+     * @param handler handler
+     * @return this
+     * @throws java.util.NoSuchElementException 处理器不存在
+     */
+    ChannelPipeline remove(ChannelHandler handler);
+
+    /**
+     * @param name name
+     * @return 被删除的处理器
+     * @throws java.util.NoSuchElementException 处理器不存在
+     */
+    ChannelHandler remove(String name);
+
+    /**
+     * @param name name
+     * @return 处理器，不存在时返回null
+     */
+    ChannelHandler get(String name);
+
+    /**
+     * @return 第一个处理器，没有处理器时返回null
+     */
+    ChannelHandler first();
+
+    /**
+     * @return 最后一个处理器，没有处理器时返回null
+     */
+    ChannelHandler last();
+
+    /**
+     * @param handler handler
+     * @return 处理器的ctx，不存在时返回null
+     */
+    ChannelHandlerContext context(ChannelHandler handler);
+
+    /**
+     * @param name name
+     * @return 处理器的ctx，不存在时返回null
+     */
+    ChannelHandlerContext context(String name);
+
+    /**
+     * @return 按顺序排列的处理器名字
+     */
+    List<String> names();
+
+    /**
+     * @return 按顺序排列的 名字 -> 处理器
+     */
+    Map<String, ChannelHandler> toMap();
+
+    /**
+     * @return channel
+     */
+    Channel channel();
+
+    @Override
+    ChannelPipeline fireChannelRegistered();
+
+    @Override
+    ChannelPipeline fireChannelUnregistered();
+
+    @Override
+    ChannelPipeline fireChannelActive();
+
+    @Override
+    ChannelPipeline fireChannelInactive();
+
+    @Override
+    ChannelPipeline fireChannelRead(Object msg);
+
+    @Override
+    ChannelPipeline fireChannelReadComplete();
+
+    @Override
+    ChannelPipeline fireUserEventTriggered(Object event);
+
+    @Override
+    ChannelPipeline fireChannelWritabilityChanged();
+
+    @Override
+    ChannelPipeline fireExceptionCaught(Throwable cause);
+
+    @Override
+    ChannelPipeline read();
+
+    @Override
+    ChannelPipeline flush();
+}
@@ -0,0 +1,20 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.channel.ChannelException;
+
+/**
+ * pipeline操作失败，或者处理器的handlerAdded、handlerRemoved抛出了异常
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+public class ChannelPipelineException extends ChannelException {
+
+    public ChannelPipelineException(String message) {
+        super(message);
+    }
+
+    public ChannelPipelineException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
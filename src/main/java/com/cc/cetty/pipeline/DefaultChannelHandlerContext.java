@@ -0,0 +1,25 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.handler.ChannelHandler;
+
+/**
+ * 普通处理器的ctx
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+final class DefaultChannelHandlerContext extends AbstractChannelHandlerContext {
+
+    private final ChannelHandler handler;
+
+    DefaultChannelHandlerContext(DefaultChannelPipeline pipeline, EventExecutor executor, String name, ChannelHandler handler) {
+        super(pipeline, executor, name, handler.getClass());
+        this.handler = handler;
+    }
+
+    @Override
+    public ChannelHandler handler() {
+        return handler;
+    }
+}
@@ -0,0 +1,854 @@
+package com.cc.cetty.pipeline;
+
+import com.cc.cetty.async.EventExecutor;
+import com.cc.cetty.async.EventExecutorGroup;
+import com.cc.cetty.buffer.ReferenceCountUtils;
+import com.cc.cetty.channel.Channel;
+import com.cc.cetty.channel.ChannelFuture;
+import com.cc.cetty.channel.ChannelPromise;
+import com.cc.cetty.handler.ChannelHandler;
+import com.cc.cetty.handler.ChannelHandlerAdapter;
+import com.cc.cetty.handler.ChannelInboundHandler;
+import com.cc.cetty.handler.ChannelOutboundHandler;
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.SocketAddress;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * pipeline的默认实现
+ * 链表的修改用pipeline自己加锁，事件传递不加锁，只读volatile的next和prev
+ * channel注册之前添加的处理器，handlerAdded会在注册时按添加顺序调用
+ *
+ * @author: cc
+ * @date: 2023/12/08
+ **/
+@Slf4j
+public class DefaultChannelPipeline implements ChannelPipeline {
+
+    /**
+     * 每个线程缓存一份处理器类型对应的默认名字前缀
+     */
+    private static final FastThreadLocal<Map<Class<?>, String>> NAME_CACHES = new FastThreadLocal<>() {
+        @Override
+        protected Map<Class<?>, String> initialValue() {
+            return new WeakHashMap<>();
+        }
+    };
+
+    private static final String HEAD_NAME = generateName0(HeadContext.class);
+
+    private static final String TAIL_NAME = generateName0(TailContext.class);
+
+    private final Channel channel;
+
+    final AbstractChannelHandlerContext head;
+
+    final AbstractChannelHandlerContext tail;
+
+    /**
+     * 同一个执行器组固定使用其中的一个执行器，保证同一个channel的事件在组里是有序的
+     */
+    private Map<EventExecutorGroup, EventExecutor> childExecutors;
+
+    /**
+     * 注册之前添加和删除的处理器，注册之后按顺序调用handlerAdded和handlerRemoved
+     */
+    private PendingHandlerCallback pendingHandlerCallbackHead;
+
+    /**
+     * channel是否已经注册过，注册之后不再改变
+     */
+    private boolean registered;
+
+    private boolean firstRegistration = true;
+
+    public DefaultChannelPipeline(Channel channel) {
+        this.channel = AssertUtils.checkNotNull(channel, "Channel cannot be null");
+        this.tail = new TailContext(this);
+        this.head = new HeadContext(this);
+        head.next = tail;
+        tail.prev = head;
+        head.setAddComplete();
+        tail.setAddComplete();
+    }
+
+    @Override
+    public final Channel channel() {
+        return channel;
+    }
+
+    // ---------------------------------- 添加和删除 ----------------------------------
+
+    @Override
+    public final ChannelPipeline addFirst(String name, ChannelHandler handler) {
+        return addFirst(null, name, handler);
+    }
+
+    @Override
+    public final ChannelPipeline addFirst(EventExecutorGroup group, String name, ChannelHandler handler) {
+        AbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            checkMultiplicity(handler);
+            newCtx = newContext(group, filterName(name, handler), handler);
+            AbstractChannelHandlerContext nextCtx = head.next;
+            newCtx.prev = head;
+            newCtx.next = nextCtx;
+            head.next = newCtx;
+            nextCtx.prev = newCtx;
+            if (!callHandlerAddedLater(newCtx)) {
+                return this;
+            }
+        }
+        callHandlerAdded0(newCtx);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline addLast(String name, ChannelHandler handler) {
+        return addLast(null, name, handler);
+    }
+
+    @Override
+    public final ChannelPipeline addLast(EventExecutorGroup group, String name, ChannelHandler handler) {
+        AbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            checkMultiplicity(handler);
+            newCtx = newContext(group, filterName(name, handler), handler);
+            AbstractChannelHandlerContext prev = tail.prev;
+            newCtx.prev = prev;
+            newCtx.next = tail;
+            prev.next = newCtx;
+            tail.prev = newCtx;
+            if (!callHandlerAddedLater(newCtx)) {
+                return this;
+            }
+        }
+        callHandlerAdded0(newCtx);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline addBefore(String baseName, String name, ChannelHandler handler) {
+        AbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            checkMultiplicity(handler);
+            AbstractChannelHandlerContext ctx = getContextOrDie(baseName);
+            newCtx = newContext(null, filterName(name, handler), handler);
+            newCtx.prev = ctx.prev;
+            newCtx.next = ctx;
+            ctx.prev.next = newCtx;
+            ctx.prev = newCtx;
+            if (!callHandlerAddedLater(newCtx)) {
+                return this;
+            }
+        }
+        callHandlerAdded0(newCtx);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline addAfter(String baseName, String name, ChannelHandler handler) {
+        AbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            checkMultiplicity(handler);
+            AbstractChannelHandlerContext ctx = getContextOrDie(baseName);
+            newCtx = newContext(null, filterName(name, handler), handler);
+            newCtx.prev = ctx;
+            newCtx.next = ctx.next;
+            ctx.next.prev = newCtx;
+            ctx.next = newCtx;
+            if (!callHandlerAddedLater(newCtx)) {
+                return this;
+            }
+        }
+        callHandlerAdded0(newCtx);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline addLast(ChannelHandler... handlers) {
+        return addLast(null, handlers);
+    }
+
+    @Override
+    public final ChannelPipeline addLast(EventExecutorGroup group, ChannelHandler... handlers) {
+        AssertUtils.checkNotNull(handlers, "Handlers cannot be null");
+        for (ChannelHandler h : handlers) {
+            if (Objects.isNull(h)) {
+                break;
+            }
+            addLast(group, null, h);
+        }
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline remove(ChannelHandler handler) {
+        remove(getContextOrDie(handler));
+        return this;
+    }
+
+    @Override
+    public final ChannelHandler remove(String name) {
+        return remove(getContextOrDie(name)).handler();
+    }
+
+    private AbstractChannelHandlerContext remove(AbstractChannelHandlerContext ctx) {
+        assert ctx != head && ctx != tail;
+        synchronized (this) {
+            atomicRemoveFromHandlerList(ctx);
+            if (!registered) {
+                callHandlerCallbackLater(ctx, false);
+                return ctx;
+            }
+            EventExecutor executor = ctx.executor();
+            if (!executor.inEventLoop()) {
+                executor.execute(() -> callHandlerRemoved0(ctx));
+                return ctx;
+            }
+        }
+        callHandlerRemoved0(ctx);
+        return ctx;
+    }
+
+    /**
+     * 从链表中摘除，ctx自己的next和prev不变，正在它上面传递的事件还能继续往后走
+     */
+    private synchronized void atomicRemoveFromHandlerList(AbstractChannelHandlerContext ctx) {
+        AbstractChannelHandlerContext prev = ctx.prev;
+        AbstractChannelHandlerContext next = ctx.next;
+        prev.next = next;
+        next.prev = prev;
+    }
+
+    /**
+     * 需要持有锁
+     *
+     * @param newCtx 刚加入链表的ctx
+     * @return 是否需要在当前线程立刻调用handlerAdded
+     */
+    private boolean callHandlerAddedLater(AbstractChannelHandlerContext newCtx) {
+        if (!registered) {
+            // 还没注册，不知道执行器，注册之后再调用
+            newCtx.setAddPending();
+            callHandlerCallbackLater(newCtx, true);
+            return false;
+        }
+        EventExecutor executor = newCtx.executor();
+        if (!executor.inEventLoop()) {
+            newCtx.setAddPending();
+            executor.execute(() -> callHandlerAdded0(newCtx));
+            return false;
+        }
+        return true;
+    }
+
+    private void callHandlerCallbackLater(AbstractChannelHandlerContext ctx, boolean added) {
+        assert !registered;
+        PendingHandlerCallback task = added ? new PendingHandlerAddedTask(ctx) : new PendingHandlerRemovedTask(ctx);
+        PendingHandlerCallback pending = pendingHandlerCallbackHead;
+        if (Objects.isNull(pending)) {
+            pendingHandlerCallbackHead = task;
+        } else {
+            while (Objects.nonNull(pending.next)) {
+                pending = pending.next;
+            }
+            pending.next = task;
+        }
+    }
+
+    private void callHandlerAdded0(AbstractChannelHandlerContext ctx) {
+        try {
+            ctx.callHandlerAdded();
+        } catch (Throwable t) {
+            boolean removed = false;
+            try {
+                atomicRemoveFromHandlerList(ctx);
+                ctx.callHandlerRemoved();
+                removed = true;
+            } catch (Throwable t2) {
+                log.warn("Failed to remove a handler: {}", ctx.name(), t2);
+            }
+            String suffix = removed ? "removed." : "also failed to remove.";
+            fireExceptionCaught(new ChannelPipelineException(ctx.handler().getClass().getName() + ".handlerAdded() has thrown an exception; " + suffix, t));
+        }
+    }
+
+    private void callHandlerRemoved0(AbstractChannelHandlerContext ctx) {
+        try {
+            ctx.callHandlerRemoved();
+        } catch (Throwable t) {
+            fireExceptionCaught(new ChannelPipelineException(ctx.handler().getClass().getName() + ".handlerRemoved() has thrown an exception.", t));
+        }
+    }
+
+    /**
+     * channel第一次注册到事件循环后调用，只给channel使用
+     * 注册之前添加的处理器在这里调用handlerAdded，要在注册的promise完成之前调用，这样用户在listener中就能看到初始化好的pipeline
+     */
+    public final void invokeHandlerAddedIfNeeded() {
+        assert channel.eventLoop().inEventLoop();
+        if (firstRegistration) {
+            firstRegistration = false;
+            callHandlerAddedForAllHandlers();
+        }
+    }
+
+    private void callHandlerAddedForAllHandlers() {
+        PendingHandlerCallback pending;
+        synchronized (this) {
+            assert !registered;
+            registered = true;
+            pending = this.pendingHandlerCallbackHead;
+            this.pendingHandlerCallbackHead = null;
+        }
+        // 回调不能持有锁，handlerAdded中可能会在其他线程修改pipeline
+        while (Objects.nonNull(pending)) {
+            pending.execute();
+            pending = pending.next;
+        }
+    }
+
+    /**
+     * channel关闭并注销后删除所有处理器，让它们有机会释放资源
+     */
+    private void destroy() {
+        AbstractChannelHandlerContext ctx = tail.prev;
+        while (ctx != head) {
+            AbstractChannelHandlerContext prev = ctx.prev;
+            atomicRemoveFromHandlerList(ctx);
+            EventExecutor executor = ctx.executor();
+            if (executor.inEventLoop()) {
+                callHandlerRemoved0(ctx);
+            } else {
+                AbstractChannelHandlerContext removed = ctx;
+                executor.execute(() -> callHandlerRemoved0(removed));
+            }
+            ctx = prev;
+        }
+    }
+
+    private static void checkMultiplicity(ChannelHandler handler) {
+        AssertUtils.checkNotNull(handler, "Handler cannot be null");
+        if (handler instanceof ChannelHandlerAdapter) {
+            ChannelHandlerAdapter h = (ChannelHandlerAdapter) handler;
+            if (!h.isSharable() && !h.markAdded()) {
+                throw new ChannelPipelineException(h.getClass().getName() + " is not a @Sharable handler, so can't be added or removed multiple times.");
+            }
+        }
+    }
+
+    private AbstractChannelHandlerContext newContext(EventExecutorGroup group, String name, ChannelHandler handler) {
+        return new DefaultChannelHandlerContext(this, childExecutor(group), name, handler);
+    }
+
+    /**
+     * 需要持有锁
+     */
+    private EventExecutor childExecutor(EventExecutorGroup group) {
+        if (Objects.isNull(group)) {
+            return null;
+        }
+        Map<EventExecutorGroup, EventExecutor> childExecutors = this.childExecutors;
+        if (Objects.isNull(childExecutors)) {
+            childExecutors = this.childExecutors = new IdentityHashMap<>(4);
+        }
+        EventExecutor childExecutor = childExecutors.get(group);
+        if (Objects.isNull(childExecutor)) {
+            childExecutor = group.next();
+            childExecutors.put(group, childExecutor);
+        }
+        return childExecutor;
+    }
+
+    // ---------------------------------- 名字 ----------------------------------
+
+    private String filterName(String name, ChannelHandler handler) {
+        if (Objects.isNull(name)) {
+            return generateName(handler);
+        }
+        if (Objects.nonNull(context0(name))) {
+            throw new IllegalArgumentException("Duplicate handler name: " + name);
+        }
+        return name;
+    }
+
+    private String generateName(ChannelHandler handler) {
+        Map<Class<?>, String> cache = NAME_CACHES.get();
+        Class<?> handlerType = handler.getClass();
+        String name = cache.get(handlerType);
+        if (Objects.isNull(name)) {
+            name = generateName0(handlerType);
+            cache.put(handlerType, name);
+        }
+        if (Objects.nonNull(context0(name))) {
+            // 同一个类型的处理器添加了多次，换一个序号
+            String baseName = name.substring(0, name.length() - 1);
+            for (int i = 1; ; i++) {
+                String newName = baseName + i;
+                if (Objects.isNull(context0(newName))) {
+                    name = newName;
+                    break;
+                }
+            }
+        }
+        return name;
+    }
+
+    private static String generateName0(Class<?> handlerType) {
+        String simpleName = handlerType.getSimpleName();
+        if (simpleName.isEmpty()) {
+            // 匿名类没有简单名字，用去掉包名的类名
+            String className = handlerType.getName();
+            simpleName = className.substring(className.lastIndexOf('.') + 1);
+        }
+        return simpleName + "#0";
+    }
+
+    // ---------------------------------- 查询 ----------------------------------
+
+    @Override
+    public final ChannelHandler get(String name) {
+        ChannelHandlerContext ctx = context(name);
+        return Objects.isNull(ctx) ? null : ctx.handler();
+    }
+
+    @Override
+    public final ChannelHandler first() {
+        AbstractChannelHandlerContext first = head.next;
+        return first == tail ? null : first.handler();
+    }
+
+    @Override
+    public final ChannelHandler last() {
+        AbstractChannelHandlerContext last = tail.prev;
+        return last == head ? null : last.handler();
+    }
+
+    @Override
+    public final ChannelHandlerContext context(ChannelHandler handler) {
+        AssertUtils.checkNotNull(handler, "Handler cannot be null");
+        for (AbstractChannelHandlerContext ctx = head.next; ctx != tail; ctx = ctx.next) {
+            if (ctx.handler() == handler) {
+                return ctx;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public final ChannelHandlerContext context(String name) {
+        return context0(AssertUtils.checkNotNull(name, "Name cannot be null"));
+    }
+
+    private AbstractChannelHandlerContext context0(String name) {
+        for (AbstractChannelHandlerContext ctx = head.next; ctx != tail; ctx = ctx.next) {
+            if (ctx.name().equals(name)) {
+                return ctx;
+            }
+        }
+        return null;
+    }
+
+    private AbstractChannelHandlerContext getContextOrDie(String name) {
+        AbstractChannelHandlerContext ctx = (AbstractChannelHandlerContext) context(name);
+        if (Objects.isNull(ctx)) {
+            throw new NoSuchElementException(name);
+        }
+        return ctx;
+    }
+
+    private AbstractChannelHandlerContext getContextOrDie(ChannelHandler handler) {
+        AbstractChannelHandlerContext ctx = (AbstractChannelHandlerContext) context(handler);
+        if (Objects.isNull(ctx)) {
+            throw new NoSuchElementException(handler.getClass().getName());
+        }
+        return ctx;
+    }
+
+    @Override
+    public final List<String> names() {
+        List<String> list = new ArrayList<>();
+        for (AbstractChannelHandlerContext ctx = head.next; ctx != tail; ctx = ctx.next) {
+            list.add(ctx.name());
+        }
+        return list;
+    }
+
+    @Override
+    public final Map<String, ChannelHandler> toMap() {
+        Map<String, ChannelHandler> map = new LinkedHashMap<>();
+        for (AbstractChannelHandlerContext ctx = head.next; ctx != tail; ctx = ctx.next) {
+            map.put(ctx.name(), ctx.handler());
+        }
+        return map;
+    }
+
+    @Override
+    public final Iterator<Map.Entry<String, ChannelHandler>> iterator() {
+        return toMap().entrySet().iterator();
+    }
+
+    // ---------------------------------- 入站事件从头部开始 ----------------------------------
+
+    @Override
+    public final ChannelPipeline fireChannelRegistered() {
+        AbstractChannelHandlerContext.invokeChannelRegistered(head);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireChannelUnregistered() {
+        AbstractChannelHandlerContext.invokeChannelUnregistered(head);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireChannelActive() {
+        AbstractChannelHandlerContext.invokeChannelActive(head);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireChannelInactive() {
+        AbstractChannelHandlerContext.invokeChannelInactive(head);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireChannelRead(Object msg) {
+        AbstractChannelHandlerContext.invokeChannelRead(head, msg);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireChannelReadComplete() {
+        AbstractChannelHandlerContext.invokeChannelReadComplete(head);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireUserEventTriggered(Object event) {
+        AbstractChannelHandlerContext.invokeUserEventTriggered(head, event);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireChannelWritabilityChanged() {
+        AbstractChannelHandlerContext.invokeChannelWritabilityChanged(head);
+        return this;
+    }
+
+    @Override
+    public final ChannelPipeline fireExceptionCaught(Throwable cause) {
+        AbstractChannelHandlerContext.invokeExceptionCaught(head, cause);
+        return this;
+    }
+
+    // ---------------------------------- 出站操作从尾部开始 ----------------------------------
+
+    @Override
+    public final ChannelFuture bind(SocketAddress localAddress, ChannelPromise promise) {
+        return tail.bind(localAddress, promise);
+    }
+
+    @Override
+    public final ChannelFuture connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+        return tail.connect(remoteAddress, localAddress, promise);
+    }
+
+    @Override
+    public final ChannelFuture close(ChannelPromise promise) {
+        return tail.close(promise);
+    }
+
+    @Override
+    public final ChannelPipeline read() {
+        tail.read();
+        return this;
+    }
+
+    @Override
+    public final ChannelFuture write(Object msg, ChannelPromise promise) {
+        return tail.write(msg, promise);
+    }
+
+    @Override
+    public final ChannelPipeline flush() {
+        tail.flush();
+        return this;
+    }
+
+    @Override
+    public final ChannelFuture writeAndFlush(Object msg, ChannelPromise promise) {
+        return tail.writeAndFlush(msg, promise);
+    }
+
+    @Override
+    public final ChannelPromise newPromise() {
+        return channel.newPromise();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + names();
+    }
+
+    /**
+     * 尾节点，处理没人处理的消息和异常
+     */
+    private static final class TailContext extends AbstractChannelHandlerContext implements ChannelInboundHandler {
+
+        TailContext(DefaultChannelPipeline pipeline) {
+            super(pipeline, null, TAIL_NAME, TailContext.class);
+        }
+
+        @Override
+        public ChannelHandler handler() {
+            return this;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void channelRegistered(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void channelUnregistered(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                log.debug("Discarded inbound message {} that reached at the tail of the pipeline. Please check your pipeline configuration.", msg);
+            } finally {
+                ReferenceCountUtils.safeRelease(msg);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            ReferenceCountUtils.safeRelease(evt);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("An exceptionCaught() event was fired, and it reached at the tail of the pipeline. " +
+                    "It usually means the last handler in the pipeline did not handle the exception.", cause);
+        }
+    }
+
+    /**
+     * 头节点，出站操作在这里交给unsafe，入站事件从这里开始传递
+     */
+    private final class HeadContext extends AbstractChannelHandlerContext implements ChannelOutboundHandler, ChannelInboundHandler {
+
+        HeadContext(DefaultChannelPipeline pipeline) {
+            super(pipeline, null, HEAD_NAME, HeadContext.class);
+        }
+
+        @Override
+        public ChannelHandler handler() {
+            return this;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) {
+            channel.unsafe().bind(localAddress, promise);
+        }
+
+        @Override
+        public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            channel.unsafe().connect(remoteAddress, localAddress, promise);
+        }
+
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+            channel.unsafe().close(promise);
+        }
+
+        @Override
+        public void read(ChannelHandlerContext ctx) {
+            channel.unsafe().beginRead();
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            channel.unsafe().write(msg, promise);
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            channel.unsafe().flush();
+        }
+
+        @Override
+        public void channelRegistered(ChannelHandlerContext ctx) {
+            ctx.fireChannelRegistered();
+        }
+
+        @Override
+        public void channelUnregistered(ChannelHandlerContext ctx) {
+            ctx.fireChannelUnregistered();
+            if (!channel.isOpen()) {
+                destroy();
+            }
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ctx.fireChannelActive();
+            // 连接建立之后自动开始读
+            channel.read();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.fireChannelReadComplete();
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            ctx.fireUserEventTriggered(evt);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.fireExceptionCaught(cause);
+        }
+    }
+
+    /**
+     * 注册之前添加或删除处理器时保存的回调
+     */
+    private abstract static class PendingHandlerCallback implements Runnable {
+
+        final AbstractChannelHandlerContext ctx;
+
+        PendingHandlerCallback next;
+
+        PendingHandlerCallback(AbstractChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        /**
+         * 在ctx的执行器上执行回调
+         */
+        abstract void execute();
+    }
+
+    private final class PendingHandlerAddedTask extends PendingHandlerCallback {
+
+        PendingHandlerAddedTask(AbstractChannelHandlerContext ctx) {
+            super(ctx);
+        }
+
+        @Override
+        public void run() {
+            callHandlerAdded0(ctx);
+        }
+
+        @Override
+        void execute() {
+            EventExecutor executor = ctx.executor();
+            if (executor.inEventLoop()) {
+                callHandlerAdded0(ctx);
+            } else {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    log.warn("Can't invoke handlerAdded() as the EventExecutor {} rejected it, removing handler {}.", executor, ctx.name(), e);
+                    atomicRemoveFromHandlerList(ctx);
+                    ctx.setRemoved();
+                }
+            }
+        }
+    }
+
+    private final class PendingHandlerRemovedTask extends PendingHandlerCallback {
+
+        PendingHandlerRemovedTask(AbstractChannelHandlerContext ctx) {
+            super(ctx);
+        }
+
+        @Override
+        public void run() {
+            callHandlerRemoved0(ctx);
+        }
+
+        @Override
+        void execute() {
+            EventExecutor executor = ctx.executor();
+            if (executor.inEventLoop()) {
+                callHandlerRemoved0(ctx);
+            } else {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    log.warn("Can't invoke handlerRemoved() as the EventExecutor {} rejected it, removing handler {}.", executor, ctx.name(), e);
+                    ctx.setRemoved();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.cc.cetty.recycler;
+
+import com.cc.cetty.config.ConfigRepository;
+import com.cc.cetty.local.FastThreadLocal;
+import com.cc.cetty.local.FastThreadLocalInt;
+import com.cc.cetty.utils.MpscArrayQueue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 轻量级的对象池
+ * 每个线程在FastThreadLocal中持有一个有界的栈，同一个线程上的获取和回收只操作这个栈，不需要任何同步
+ * 在其他线程上回收的对象放进所属栈的跨线程队列，这是一个多生产者单消费者的无锁队列
+ * 所属线程的栈空了之后再把跨线程队列中的对象转移到栈里
+ * 从来没有被回收过的对象按照比例丢弃，生产和消费不平衡时池子也不会无限增长
+ *
+ * @author: cc
+ * @date: 2023/12/04
+ **/
+@Slf4j
+public abstract class Recycler<T> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Handle NOOP_HANDLE = object -> {
+        // 不池化，什么都不做
+    };
+
+    private static final int DEFAULT_MAX_CAPACITY_PER_THREAD = Math.max(0, Integer.getInteger("cetty.recycler.maxCapacityPerThread", 4096));
+
+    /**
+     * 栈的初始容量，不超过每个recycler自己的maxCapacityPerThread，之后按需翻倍直到maxCapacityPerThread
+     * 不能跟着默认容量取，否则默认容量设成0时，显式传了容量的recycler也会拿到空数组
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * 同一个线程上回收时，新对象每ratio个保留一个
+     */
+    private static final int DEFAULT_RATIO = Math.max(0, Integer.getInteger("cetty.recycler.ratio", 8));
+
+    /**
+     * 每个栈的跨线程队列的容量
+     */
+    private static final int DEFAULT_MAX_CROSS_THREAD_CAPACITY = Math.max(0, Integer.getInteger("cetty.recycler.maxCrossThreadCapacity",
+            DEFAULT_MAX_CAPACITY_PER_THREAD / 2));
+
+    /**
+     * 跨线程回收时，新对象每crossThreadRatio个保留一个
+     */
+    private static final int DEFAULT_CROSS_THREAD_RATIO = Math.max(0, Integer.getInteger("cetty.recycler.crossThreadRatio", DEFAULT_RATIO));
+
+    /**
+     * 跨线程回收的计数放在回收线程自己的thread local中，多个线程回收到同一个栈时不会竞争同一个计数器
+     */
+    private static final FastThreadLocalInt CROSS_THREAD_RECYCLE_COUNT = new FastThreadLocalInt();
+
+    static {
+        log.debug("-Dcetty.recycler.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
+        log.debug("-Dcetty.recycler.ratio: {}", DEFAULT_RATIO);
+        log.debug("-Dcetty.recycler.maxCrossThreadCapacity: {}", DEFAULT_MAX_CROSS_THREAD_CAPACITY);
+        log.debug("-Dcetty.recycler.crossThreadRatio: {}", DEFAULT_CROSS_THREAD_RATIO);
+    }
+
+    private final int maxCapacityPerThread;
+
+    private final int interval;
+
+    private final int maxCrossThreadCapacity;
+
+    private final int crossThreadInterval;
+
+    private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<>(false, true) {
+        @Override
+        protected Stack<T> initialValue() {
+            return new Stack<>(Recycler.this, Thread.currentThread());
+        }
+
+        @Override
+        protected void onRemoval(Stack<T> stack) {
+            // 线程退出或者主动删除后，其他线程不再往这个栈回收
+            stack.threadRef.clear();
+        }
+    };
+
+    /**
+     * @return 由 -Dcetty.recycler.maxCapacityPerThread 决定的默认容量
+     */
+    public static int defaultMaxCapacityPerThread() {
+        return DEFAULT_MAX_CAPACITY_PER_THREAD;
+    }
+
+    /**
+     * 容量取ConfigRepository.DEFAULT当前配置的recyclerMaxCapacityPerThread，没有改过时就是 -Dcetty.recycler.maxCapacityPerThread
+     * 对象池一般是静态字段，在类加载时创建，之后发布的配置只影响之后创建的对象池
+     */
+    protected Recycler() {
+        this(ConfigRepository.DEFAULT.current().recyclerMaxCapacityPerThread());
+    }
+
+    protected Recycler(int maxCapacityPerThread) {
+        this(maxCapacityPerThread, DEFAULT_RATIO, Math.min(maxCapacityPerThread, DEFAULT_MAX_CROSS_THREAD_CAPACITY), DEFAULT_CROSS_THREAD_RATIO);
+    }
+
+    /**
+     * @param maxCapacityPerThread   每个线程最多缓存的对象个数，0表示不池化
+     * @param ratio                  同一个线程回收时，新对象每ratio个保留一个，0表示全部保留
+     * @param maxCrossThreadCapacity 每个线程的跨线程队列的容量，0表示其他线程回收的对象全部丢弃
+     * @param crossThreadRatio       跨线程回收时，新对象每crossThreadRatio个保留一个，0表示全部保留
+     */
+    protected Recycler(int maxCapacityPerThread, int ratio, int maxCrossThreadCapacity, int crossThreadRatio) {
+        if (maxCapacityPerThread < 0 || ratio < 0 || maxCrossThreadCapacity < 0 || crossThreadRatio < 0) {
+            throw new IllegalArgumentException("maxCapacityPerThread: " + maxCapacityPerThread + ", ratio: " + ratio
+                    + ", maxCrossThreadCapacity: " + maxCrossThreadCapacity + ", crossThreadRatio: " + crossThreadRatio + " (expected: >= 0)");
+        }
+        this.maxCapacityPerThread = maxCapacityPerThread;
+        this.interval = ratio;
+        this.maxCrossThreadCapacity = maxCrossThreadCapacity;
+        this.crossThreadInterval = crossThreadRatio;
+    }
+
+    /**
+     * 从当前线程的池子中取出一个对象，池子空了就创建一个新的
+     *
+     * @return object
+     */
+    @SuppressWarnings("unchecked")
+    public final T get() {
+        if (maxCapacityPerThread == 0) {
+            return newObject((Handle<T>) NOOP_HANDLE);
+        }
+        Stack<T> stack = threadLocal.get();
+        DefaultHandle<T> handle = stack.pop();
+        if (Objects.isNull(handle)) {
+            handle = new DefaultHandle<>(stack);
+            handle.value = newObject(handle);
+        }
+        return handle.value;
+    }
+
+    /**
+     * 创建新的对象，对象需要持有handle，用完之后通过handle回收
+     *
+     * @param handle handle
+     * @return object
+     */
+    protected abstract T newObject(Handle<T> handle);
+
+    /**
+     * @return 当前线程的栈中缓存的对象个数，不包括跨线程队列中的
+     */
+    final int threadLocalSize() {
+        Stack<T> stack = threadLocal.getIfExists();
+        return Objects.isNull(stack) ? 0 : stack.size;
+    }
+
+    /**
+     * @return 当前线程的栈的容量
+     */
+    final int threadLocalCapacity() {
+        return threadLocal.get().elements.length;
+    }
+
+    /**
+     * 对象通过handle回收到创建它的线程的池子中
+     */
+    public interface Handle<T> {
+
+        /**
+         * 回收对象，回收之后不能再使用
+         *
+         * @param object 和handle绑定的对象
+         */
+        void recycle(T object);
+    }
+
+    private static final class DefaultHandle<T> implements Handle<T> {
+
+        private static final int STATE_CLAIMED = 0;
+
+        private static final int STATE_AVAILABLE = 1;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<DefaultHandle> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(DefaultHandle.class, "state");
+
+        private final Stack<T> stack;
+
+        private volatile int state;
+
+        /**
+         * 被回收过的对象不再参与丢弃比例的计算
+         */
+        private boolean hasBeenRecycled;
+
+        private T value;
+
+        DefaultHandle(Stack<T> stack) {
+            this.stack = stack;
+        }
+
+        @Override
+        public void recycle(T object) {
+            if (object != value) {
+                throw new IllegalArgumentException("object does not belong to handle");
+            }
+            // 重复回收会让同一个对象被两个使用者拿到，这里直接报错
+            if (!STATE_UPDATER.compareAndSet(this, STATE_CLAIMED, STATE_AVAILABLE)) {
+                throw new IllegalStateException("recycled already");
+            }
+            stack.push(this);
+        }
+
+        void toClaimed() {
+            assert state == STATE_AVAILABLE;
+            STATE_UPDATER.lazySet(this, STATE_CLAIMED);
+        }
+    }
+
+    /**
+     * 线程私有的栈，只有所属线程会调用pop和pushNow
+     */
+    private static final class Stack<T> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Stack, MpscArrayQueue> QUEUE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(Stack.class, MpscArrayQueue.class, "crossThreadQueue");
+
+        private final Recycler<T> parent;
+
+        /**
+         * 弱引用，对象比线程活得久时不会让线程无法被回收；线程没了之后跨线程回收的对象直接丢弃
+         */
+        private final WeakReference<Thread> threadRef;
+
+        private DefaultHandle<T>[] elements;
+
+        private int size;
+
+        /**
+         * 同一个线程上回收新对象的计数
+         */
+        private int handleRecycleCount;
+
+        /**
+         * 第一次有其他线程回收时才创建
+         */
+        private volatile MpscArrayQueue<DefaultHandle<T>> crossThreadQueue;
+
+        @SuppressWarnings("unchecked")
+        Stack(Recycler<T> parent, Thread thread) {
+            this.parent = parent;
+            this.threadRef = new WeakReference<>(thread);
+            this.elements = new DefaultHandle[Math.min(INITIAL_CAPACITY, parent.maxCapacityPerThread)];
+        }
+
+        DefaultHandle<T> pop() {
+            if (size == 0 && !scavenge()) {
+                return null;
+            }
+            int size = this.size - 1;
+            DefaultHandle<T> ret = elements[size];
+            elements[size] = null;
+            this.size = size;
+            ret.toClaimed();
+            return ret;
+        }
+
+        /**
+         * 把其他线程回收的对象转移到栈里
+         *
+         * @return 是否转移了对象
+         */
+        private boolean scavenge() {
+            MpscArrayQueue<DefaultHandle<T>> queue = crossThreadQueue;
+            if (Objects.isNull(queue)) {
+                return false;
+            }
+            int limit = parent.maxCapacityPerThread - size;
+            for (int i = 0; i < limit; i++) {
+                DefaultHandle<T> handle = queue.poll();
+                if (Objects.isNull(handle)) {
+                    break;
+                }
+                pushToElements(handle);
+            }
+            return size > 0;
+        }
+
+        void push(DefaultHandle<T> handle) {
+            Thread current = Thread.currentThread();
+            if (threadRef.get() == current) {
+                pushNow(handle);
+            } else {
+                pushLater(handle);
+            }
+        }
+
+        private void pushNow(DefaultHandle<T> handle) {
+            if (size >= parent.maxCapacityPerThread || dropHandle(handle)) {
+                return;
+            }
+            pushToElements(handle);
+        }
+
+        private void pushToElements(DefaultHandle<T> handle) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, Math.min(Math.max(1, size << 1), parent.maxCapacityPerThread));
+            }
+            elements[size++] = handle;
+        }
+
+        private boolean dropHandle(DefaultHandle<T> handle) {
+            if (!handle.hasBeenRecycled) {
+                if (handleRecycleCount < parent.interval) {
+                    handleRecycleCount++;
+                    return true;
+                }
+                handleRecycleCount = 0;
+                handle.hasBeenRecycled = true;
+            }
+            return false;
+        }
+
+        /**
+         * 在其他线程上回收，放进跨线程队列，队列满了就丢弃
+         */
+        private void pushLater(DefaultHandle<T> handle) {
+            if (parent.maxCrossThreadCapacity == 0 || Objects.isNull(threadRef.get()) || dropHandleCrossThread(handle)) {
+                return;
+            }
+            MpscArrayQueue<DefaultHandle<T>> queue = crossThreadQueue;
+            if (Objects.isNull(queue)) {
+                queue = newCrossThreadQueue();
+            }
+            queue.offer(handle);
+        }
+
+        private boolean dropHandleCrossThread(DefaultHandle<T> handle) {
+            if (!handle.hasBeenRecycled) {
+                int count = CROSS_THREAD_RECYCLE_COUNT.get();
+                if (count < parent.crossThreadInterval) {
+                    CROSS_THREAD_RECYCLE_COUNT.set(count + 1);
+                    return true;
+                }
+                CROSS_THREAD_RECYCLE_COUNT.set(0);
+                handle.hasBeenRecycled = true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private MpscArrayQueue<DefaultHandle<T>> newCrossThreadQueue() {
+            MpscArrayQueue<DefaultHandle<T>> queue = new MpscArrayQueue<>(parent.maxCrossThreadCapacity);
+            if (QUEUE_UPDATER.compareAndSet(this, null, queue)) {
+                return queue;
+            }
+            // 其他线程先创建了
+            return crossThreadQueue;
+        }
+    }
+}
@@ -0,0 +1,617 @@
+package com.cc.cetty.timer;
+
+import com.cc.cetty.local.DefaultThreadFactory;
+import com.cc.cetty.local.FastThreadLocalRunnable;
+import com.cc.cetty.utils.AssertUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 时间轮定时器
+ * 时间轮是一个环形数组，每个槽位是一个双向链表，指针每隔tickDuration前进一格，执行当前槽位中到期的任务
+ * 超过一圈的任务记录剩余的圈数，指针每经过一次圈数减一
+ * 提交和取消都是O(1)的：其他线程只把timeout放进无锁的多生产者单消费者队列，由定时器线程统一放进槽位或者从槽位中删除
+ * 代价是精度，任务最多晚一个tickDuration执行，适合连接的空闲和读写超时这类大量、经常被取消、对精度不敏感的场景
+ *
+ * @author: cc
+ * @date: 2023/12/06
+ **/
+@Slf4j
+public class HashedWheelTimer implements Timer {
+
+    private static final int WORKER_STATE_INIT = 0;
+
+    private static final int WORKER_STATE_STARTED = 1;
+
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+
+    private static final long MILLISECOND_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 每个tick最多从队列中转移的timeout个数，避免一次提交太多把定时器线程卡住
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private static final AtomicIntegerFieldUpdater<HashedWheelTimer> WORKER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.class, "workerState");
+
+    private final Worker worker = new Worker();
+
+    private final Thread workerThread;
+
+    private volatile int workerState = WORKER_STATE_INIT;
+
+    private final long tickDuration;
+
+    private final HashedWheelBucket[] wheel;
+
+    private final int mask;
+
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+
+    /**
+     * 新提交的timeout
+     */
+    private final TimeoutQueue timeouts = new TimeoutQueue(HashedWheelTimeout.NEXT_PENDING_UPDATER);
+
+    /**
+     * 被取消的timeout
+     */
+    private final TimeoutQueue cancelledTimeouts = new TimeoutQueue(HashedWheelTimeout.NEXT_CANCELLED_UPDATER);
+
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+
+    private final long maxPendingTimeouts;
+
+    /**
+     * 定时器线程启动的时间，所有deadline都是相对它的
+     */
+    private volatile long startTime;
+
+    public HashedWheelTimer() {
+        this(new DefaultThreadFactory(HashedWheelTimer.class, true, Thread.NORM_PRIORITY));
+    }
+
+    public HashedWheelTimer(long tickDuration, TimeUnit unit) {
+        this(new DefaultThreadFactory(HashedWheelTimer.class, true, Thread.NORM_PRIORITY), tickDuration, unit);
+    }
+
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this(new DefaultThreadFactory(HashedWheelTimer.class, true, Thread.NORM_PRIORITY), tickDuration, unit, ticksPerWheel);
+    }
+
+    public HashedWheelTimer(ThreadFactory threadFactory) {
+        this(threadFactory, 100, TimeUnit.MILLISECONDS);
+    }
+
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+        this(threadFactory, tickDuration, unit, 512);
+    }
+
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this(threadFactory, tickDuration, unit, ticksPerWheel, -1);
+    }
+
+    /**
+     * @param threadFactory      创建定时器线程的工厂，默认的DefaultThreadFactory创建的是FastThreadLocalThread
+     * @param tickDuration       指针前进一格的时间
+     * @param unit               时间单位
+     * @param ticksPerWheel      时间轮的槽位数，会向上取到2的幂次方
+     * @param maxPendingTimeouts 等待中的timeout个数上限，达到上限后拒绝新的timeout，小于等于0表示不限制
+     */
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel, long maxPendingTimeouts) {
+        AssertUtils.checkNotNull(threadFactory, "Thread factory cannot be null");
+        AssertUtils.checkNotNull(unit, "Time unit cannot be null");
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel must be in (0, 2^30]: " + ticksPerWheel);
+        }
+        wheel = createWheel(ticksPerWheel);
+        mask = wheel.length - 1;
+
+        long duration = unit.toNanos(tickDuration);
+        // 防止deadline计算溢出
+        if (duration >= Long.MAX_VALUE / wheel.length) {
+            throw new IllegalArgumentException(String.format("tickDuration: %d (expected: 0 < tickDuration in nanos < %d", tickDuration, Long.MAX_VALUE / wheel.length));
+        }
+        if (duration < MILLISECOND_NANOS) {
+            log.warn("Configured tickDuration {} smaller than {}, using 1ms.", tickDuration, MILLISECOND_NANOS);
+            this.tickDuration = MILLISECOND_NANOS;
+        } else {
+            this.tickDuration = duration;
+        }
+        // 定时器线程退出时清理它的FastThreadLocal
+        workerThread = threadFactory.newThread(FastThreadLocalRunnable.wrap(worker));
+        this.maxPendingTimeouts = maxPendingTimeouts;
+    }
+
+    private static HashedWheelBucket[] createWheel(int ticksPerWheel) {
+        int normalized = ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        HashedWheelBucket[] wheel = new HashedWheelBucket[normalized];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new HashedWheelBucket();
+        }
+        return wheel;
+    }
+
+    /**
+     * 启动定时器线程，第一次提交任务时会自动调用
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_STATE_INIT:
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+        // 等待定时器线程初始化startTime
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // 一定要等到startTime初始化
+            }
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(HashedWheelTimer.class.getSimpleName() + ".stop() cannot be called from " + TimerTask.class.getSimpleName());
+        }
+        if (!WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // 还没有启动过
+            WORKER_STATE_UPDATER.getAndSet(this, WORKER_STATE_SHUTDOWN);
+            return Collections.emptySet();
+        }
+        boolean interrupted = false;
+        while (workerThread.isAlive()) {
+            workerThread.interrupt();
+            try {
+                workerThread.join(100);
+            } catch (InterruptedException ignored) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return worker.unprocessedTimeouts();
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        AssertUtils.checkNotNull(task, "Task cannot be null");
+        AssertUtils.checkNotNull(unit, "Time unit cannot be null");
+        long pendingTimeoutsCount = pendingTimeouts.incrementAndGet();
+        if (maxPendingTimeouts > 0 && pendingTimeoutsCount > maxPendingTimeouts) {
+            pendingTimeouts.decrementAndGet();
+            throw new RejectedExecutionException("Number of pending timeouts (" + pendingTimeoutsCount
+                    + ") is greater than or equal to maximum allowed pending timeouts (" + maxPendingTimeouts + ")");
+        }
+        try {
+            start();
+        } catch (IllegalStateException e) {
+            pendingTimeouts.decrementAndGet();
+            throw e;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        // delay很大时防止溢出
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        HashedWheelTimeout timeout = new HashedWheelTimeout(this, task, deadline);
+        timeouts.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return 还没有到期也没有被取消的timeout个数
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * 定时器线程，每个tick先处理取消，再把新的timeout放进槽位，最后执行当前槽位中到期的任务
+     */
+    private final class Worker implements Runnable {
+
+        private final Set<Timeout> unprocessedTimeouts = new HashSet<>();
+
+        private long tick;
+
+        @Override
+        public void run() {
+            startTime = System.nanoTime();
+            if (startTime == 0) {
+                // 0表示还没有初始化
+                startTime = 1;
+            }
+            startTimeInitialized.countDown();
+
+            do {
+                final long deadline = waitForNextTick();
+                if (deadline > 0) {
+                    int idx = (int) (tick & mask);
+                    processCancelledTasks();
+                    HashedWheelBucket bucket = wheel[idx];
+                    transferTimeoutsToBuckets();
+                    bucket.expireTimeouts(deadline);
+                    tick++;
+                }
+            } while (WORKER_STATE_UPDATER.get(HashedWheelTimer.this) == WORKER_STATE_STARTED);
+
+            // 停止后把剩下的timeout交给stop的调用方
+            for (HashedWheelBucket bucket : wheel) {
+                bucket.clearTimeouts(unprocessedTimeouts);
+            }
+            for (; ; ) {
+                HashedWheelTimeout timeout = timeouts.poll();
+                if (Objects.isNull(timeout)) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+            processCancelledTasks();
+        }
+
+        private void transferTimeoutsToBuckets() {
+            for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+                HashedWheelTimeout timeout = timeouts.poll();
+                if (Objects.isNull(timeout)) {
+                    break;
+                }
+                if (timeout.state() == HashedWheelTimeout.ST_CANCELLED) {
+                    // 取消队列中也有它，由processCancelledTasks处理计数
+                    continue;
+                }
+                long calculated = timeout.deadline / tickDuration;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                // 已经过期的timeout放到当前槽位，马上执行
+                final long ticks = Math.max(calculated, tick);
+                int stopIndex = (int) (ticks & mask);
+                wheel[stopIndex].addTimeout(timeout);
+            }
+        }
+
+        private void processCancelledTasks() {
+            for (; ; ) {
+                HashedWheelTimeout timeout = cancelledTimeouts.poll();
+                if (Objects.isNull(timeout)) {
+                    break;
+                }
+                try {
+                    timeout.remove();
+                } catch (Throwable t) {
+                    log.warn("An exception was thrown while process a cancellation task", t);
+                }
+            }
+        }
+
+        /**
+         * 睡到下一个tick
+         *
+         * @return 当前相对startTime的时间，定时器停止时返回Long.MIN_VALUE
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+            for (; ; ) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+                if (sleepTimeMs <= 0) {
+                    if (currentTime == Long.MIN_VALUE) {
+                        return -Long.MAX_VALUE;
+                    }
+                    return currentTime;
+                }
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (WORKER_STATE_UPDATER.get(HashedWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        Set<Timeout> unprocessedTimeouts() {
+            return Collections.unmodifiableSet(unprocessedTimeouts);
+        }
+    }
+
+    private static final class HashedWheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+
+        private static final int ST_CANCELLED = 1;
+
+        private static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<HashedWheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimeout.class, "state");
+
+        static final AtomicReferenceFieldUpdater<HashedWheelTimeout, HashedWheelTimeout> NEXT_PENDING_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(HashedWheelTimeout.class, HashedWheelTimeout.class, "nextPending");
+
+        static final AtomicReferenceFieldUpdater<HashedWheelTimeout, HashedWheelTimeout> NEXT_CANCELLED_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(HashedWheelTimeout.class, HashedWheelTimeout.class, "nextCancelled");
+
+        private final HashedWheelTimer timer;
+
+        private final TimerTask task;
+
+        /**
+         * 相对startTime的到期时间
+         */
+        private final long deadline;
+
+        private volatile int state = ST_INIT;
+
+        /**
+         * 剩余的圈数，只在定时器线程上访问
+         */
+        long remainingRounds;
+
+        /**
+         * 槽位中的双向链表，只在定时器线程上访问
+         */
+        HashedWheelTimeout next;
+
+        HashedWheelTimeout prev;
+
+        HashedWheelBucket bucket;
+
+        /**
+         * 两个队列各用一个链接字段，同一个timeout可能同时在两个队列中
+         */
+        private volatile HashedWheelTimeout nextPending;
+
+        private volatile HashedWheelTimeout nextCancelled;
+
+        HashedWheelTimeout(HashedWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // 只标记状态并放进取消队列，由定时器线程从槽位中删除
+            timer.cancelledTimeouts.offer(this);
+            return true;
+        }
+
+        /**
+         * 在定时器线程上调用
+         */
+        void remove() {
+            HashedWheelBucket bucket = this.bucket;
+            if (Objects.nonNull(bucket)) {
+                bucket.remove(this);
+            } else {
+                // 还没有放进槽位
+                timer.pendingTimeouts.decrementAndGet();
+            }
+        }
+
+        int state() {
+            return state;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state() == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state() == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                log.warn("An exception was thrown by {}.", TimerTask.class.getSimpleName(), t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+            StringBuilder buf = new StringBuilder(192).append(getClass().getSimpleName()).append('(').append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining).append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining).append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+            return buf.append(", task: ").append(task).append(')').toString();
+        }
+    }
+
+    /**
+     * 时间轮的一个槽位，只在定时器线程上访问
+     */
+    private static final class HashedWheelBucket {
+
+        private HashedWheelTimeout head;
+
+        private HashedWheelTimeout tail;
+
+        void addTimeout(HashedWheelTimeout timeout) {
+            assert timeout.bucket == null;
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * 执行到期的timeout，没到期的圈数减一
+         */
+        void expireTimeouts(long deadline) {
+            HashedWheelTimeout timeout = head;
+            while (timeout != null) {
+                HashedWheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    next = remove(timeout);
+                    if (timeout.deadline <= deadline) {
+                        timeout.expire();
+                    } else {
+                        // 放错了槽位，不应该发生
+                        throw new IllegalStateException(String.format("timeout.deadline (%d) > deadline (%d)", timeout.deadline, deadline));
+                    }
+                } else if (timeout.isCancelled()) {
+                    next = remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        HashedWheelTimeout remove(HashedWheelTimeout timeout) {
+            HashedWheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            timeout.timer.pendingTimeouts.decrementAndGet();
+            return next;
+        }
+
+        void clearTimeouts(Set<Timeout> set) {
+            for (; ; ) {
+                HashedWheelTimeout timeout = pollTimeout();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.isExpired() || timeout.isCancelled()) {
+                    continue;
+                }
+                set.add(timeout);
+            }
+        }
+
+        private HashedWheelTimeout pollTimeout() {
+            HashedWheelTimeout head = this.head;
+            if (head == null) {
+                return null;
+            }
+            HashedWheelTimeout next = head.next;
+            if (next == null) {
+                tail = this.head = null;
+            } else {
+                this.head = next;
+                next.prev = null;
+            }
+            head.next = null;
+            head.prev = null;
+            head.bucket = null;
+            return head;
+        }
+    }
+
+    /**
+     * 无界的多生产者单消费者队列，直接用timeout中的字段做链接，入队不需要创建节点
+     * 生产者用getAndSet抢占队尾，然后把前一个节点链接到自己，整个过程不会失败重试
+     * 消费者只有定时器线程，head是最后一个被取出的节点，它的下一个节点才是队首
+     * 生产者抢到队尾但还没有链接时，消费者会暂时看到队列为空，下一个tick再取
+     */
+    private static final class TimeoutQueue {
+
+        private final AtomicReferenceFieldUpdater<HashedWheelTimeout, HashedWheelTimeout> nextUpdater;
+
+        private final AtomicReference<HashedWheelTimeout> tail;
+
+        private HashedWheelTimeout head;
+
+        TimeoutQueue(AtomicReferenceFieldUpdater<HashedWheelTimeout, HashedWheelTimeout> nextUpdater) {
+            this.nextUpdater = nextUpdater;
+            HashedWheelTimeout stub = new HashedWheelTimeout(null, null, 0);
+            this.head = stub;
+            this.tail = new AtomicReference<>(stub);
+        }
+
+        void offer(HashedWheelTimeout timeout) {
+            HashedWheelTimeout prev = tail.getAndSet(timeout);
+            nextUpdater.lazySet(prev, timeout);
+        }
+
+        HashedWheelTimeout poll() {
+            HashedWheelTimeout next = nextUpdater.get(head);
+            if (Objects.isNull(next)) {
+                return null;
+            }
+            // 断开旧的head，不让已经取出的节点串成一条链
+            nextUpdater.lazySet(head, null);
+            head = next;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.cc.cetty.timer;
+
+/**
+ * 提交定时任务后返回的句柄
+ *
+ * @author: cc
+ * @date: 2023/12/06
+ **/
+public interface Timeout {
+
+    /**
+     * @return 创建该timeout的定时器
+     */
+    Timer timer();
+
+    /**
+     * @return 定时任务
+     */
+    TimerTask task();
+
+    /**
+     * @return 任务是否已经到期执行
+     */
+    boolean isExpired();
+
+    /**
+     * @return 任务是否已经被取消
+     */
+    boolean isCancelled();
+
+    /**
+     * 取消任务，已经到期或者已经取消的任务不能再取消
+     *
+     * @return 是否取消成功
+     */
+    boolean cancel();
+}
@@ -0,0 +1,32 @@
+package com.cc.cetty.timer;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时器，在定时器自己的线程上执行到期的任务
+ *
+ * @author: cc
+ * @date: 2023/12/06
+ **/
+public interface Timer {
+
+    /**
+     * 提交一个定时任务
+     *
+     * @param task  task
+     * @param delay 延迟时间
+     * @param unit  时间单位
+     * @return timeout
+     * @throws IllegalStateException                           定时器已经停止
+     * @throws java.util.concurrent.RejectedExecutionException 等待中的任务数超过上限
+     */
+    Timeout newTimeout(TimerTask task, long delay, TimeUnit unit);
+
+    /**
+     * 停止定时器，取消所有还没有执行的任务
+     *
+     * @return 还没有执行的任务
+     */
+    Set<Timeout> stop();
+}
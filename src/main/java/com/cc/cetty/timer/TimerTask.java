@@ -0,0 +1,19 @@
+package com.cc.cetty.timer;
+
+/**
+ * 定时任务
+ *
+ * @author: cc
+ * @date: 2023/12/06
+ **/
+@FunctionalInterface
+public interface TimerTask {
+
+    /**
+     * 到期后在定时器的线程上执行，不要在这里做耗时的操作
+     *
+     * @param timeout 任务对应的timeout
+     * @throws Exception 异常会被定时器捕获并打印
+     */
+    void run(Timeout timeout) throws Exception;
+}
@@ -19,10 +19,8 @@ public class AssertUtils {
      * @return v
      */
     public static <V> V checkNotNull(V v, String message) {
-        if (StringUtils.isBlank(message)) {
-            message = v.getClass().getSimpleName() + " cannot be null";
-        }
-        assert Objects.nonNull(v) : message;
+        // 信息只在断言失败时才拼接，热点路径上不产生对象
+        assert Objects.nonNull(v) : StringUtils.isBlank(message) ? "Value cannot be null" : message;
         return v;
     }
 
@@ -59,5 +57,34 @@ public class AssertUtils {
         assert v >= 0 : "Value must be zero or positive";
         return v;
     }
-}
 
+    /**
+     * 检查大于零，配置这类外部输入在关闭断言时也要检查，所以直接抛出异常
+     *
+     * @param v    v
+     * @param name 名字
+     * @return v
+     */
+    public static int checkPositive(int v, String name) {
+        if (v <= 0) {
+            throw new IllegalArgumentException(name + ": " + v + " (expected: > 0)");
+        }
+        return v;
+    }
+
+    /**
+     * 检查在[min, max]之间，配置这类外部输入在关闭断言时也要检查，所以直接抛出异常
+     *
+     * @param v    v
+     * @param min  最小值
+     * @param max  最大值
+     * @param name 名字
+     * @return v
+     */
+    public static int checkInRange(int v, int min, int max, String name) {
+        if (v < min || v > max) {
+            throw new IllegalArgumentException(name + ": " + v + " (expected: " + min + " <= " + name + " <= " + max + ")");
+        }
+        return v;
+    }
+}
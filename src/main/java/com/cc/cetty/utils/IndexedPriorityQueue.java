@@ -0,0 +1,185 @@
+package com.cc.cetty.utils;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 基于数组的二叉小顶堆，元素自己记录在堆中的下标
+ * 删除任意元素时不需要遍历查找，直接用下标定位，复杂度为O(log n)
+ * 一个元素同一时间只能在一个队列中，不是线程安全的，只能由一个线程使用
+ *
+ * @author: cc
+ * @date: 2023/12/16
+ **/
+public final class IndexedPriorityQueue<T extends IndexedPriorityQueue.Node & Comparable<? super T>> {
+
+    /**
+     * 不在队列中的元素的下标
+     */
+    public static final int INDEX_NOT_IN_QUEUE = -1;
+
+    private T[] queue;
+
+    private int size;
+
+    /**
+     * @param initialCapacity 初始容量
+     */
+    @SuppressWarnings("unchecked")
+    public IndexedPriorityQueue(int initialCapacity) {
+        this.queue = (T[]) new Node[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * @return 元素个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return 最小的元素，为空时返回null
+     */
+    public T peek() {
+        return size == 0 ? null : queue[0];
+    }
+
+    /**
+     * @param node 不能已经在队列中
+     */
+    public void offer(T node) {
+        AssertUtils.checkNotNull(node, "Node cannot be null");
+        if (node.heapIndex() != INDEX_NOT_IN_QUEUE) {
+            throw new IllegalArgumentException("Node already in a queue: " + node);
+        }
+        if (size >= queue.length) {
+            // 小的时候翻倍，大了之后每次扩容一半
+            queue = Arrays.copyOf(queue, queue.length + (queue.length < 64 ? queue.length + 2 : queue.length >>> 1));
+        }
+        siftUp(size++, node);
+    }
+
+    /**
+     * @return 取出最小的元素，为空时返回null
+     */
+    public T poll() {
+        if (size == 0) {
+            return null;
+        }
+        T result = queue[0];
+        result.heapIndex(INDEX_NOT_IN_QUEUE);
+        T last = queue[--size];
+        queue[size] = null;
+        if (size != 0) {
+            siftDown(0, last);
+        }
+        return result;
+    }
+
+    /**
+     * 根据元素记录的下标删除
+     *
+     * @param node node
+     * @return 元素是否在这个队列中
+     */
+    public boolean remove(T node) {
+        int i = node.heapIndex();
+        if (i < 0 || i >= size || queue[i] != node) {
+            return false;
+        }
+        node.heapIndex(INDEX_NOT_IN_QUEUE);
+        T last = queue[--size];
+        queue[size] = null;
+        if (size == 0 || last == node) {
+            return true;
+        }
+        // 最后一个元素填到空位上，可能比父节点小，也可能比子节点大
+        siftDown(i, last);
+        if (queue[i] == last) {
+            siftUp(i, last);
+        }
+        return true;
+    }
+
+    /**
+     * 按数组顺序取出所有元素，队列清空
+     *
+     * @param consumer consumer
+     */
+    @SuppressWarnings("unchecked")
+    public void drain(Consumer<? super T> consumer) {
+        T[] nodes = queue;
+        int n = size;
+        queue = (T[]) new Node[Math.min(nodes.length, 16)];
+        size = 0;
+        for (int i = 0; i < n; i++) {
+            T node = nodes[i];
+            node.heapIndex(INDEX_NOT_IN_QUEUE);
+            consumer.accept(node);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedPriorityQueue(size: " + size + ", head: " + (size == 0 ? null : Objects.toString(queue[0])) + ')';
+    }
+
+    private void siftUp(int k, T node) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            T p = queue[parent];
+            if (node.compareTo(p) >= 0) {
+                break;
+            }
+            queue[k] = p;
+            p.heapIndex(k);
+            k = parent;
+        }
+        queue[k] = node;
+        node.heapIndex(k);
+    }
+
+    private void siftDown(int k, T node) {
+        int half = size >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            T c = queue[child];
+            int right = child + 1;
+            if (right < size && c.compareTo(queue[right]) > 0) {
+                c = queue[child = right];
+            }
+            if (node.compareTo(c) <= 0) {
+                break;
+            }
+            queue[k] = c;
+            c.heapIndex(k);
+            k = child;
+        }
+        queue[k] = node;
+        node.heapIndex(k);
+    }
+
+    /**
+     * 队列中的元素，由元素自己保存在堆数组中的下标
+     */
+    public interface Node {
+
+        /**
+         * @return 在堆数组中的下标，不在队列中时为INDEX_NOT_IN_QUEUE
+         */
+        int heapIndex();
+
+        /**
+         * @param index 在堆数组中的下标
+         */
+        void heapIndex(int index);
+    }
+}
@@ -0,0 +1,147 @@
+package com.cc.cetty.utils;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界的多生产者单消费者队列
+ * 每个槽位有一个序号，生产者通过CAS抢占生产下标，写入元素后再发布序号
+ * 消费者只有一个，不需要CAS，看到序号就可以取走元素
+ * 只有一个线程可以调用poll、drain等消费方法
+ *
+ * @author: cc
+ * @date: 2023/11/24
+ **/
+public final class MpscArrayQueue<E> extends AbstractQueue<E> {
+
+    private final int mask;
+
+    private final E[] buffer;
+
+    /**
+     * 槽位的序号
+     * 序号等于生产下标时，生产者可以写入；序号等于消费下标 + 1时，消费者可以读取
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * 生产下标，和消费下标分开存放，避免生产者和消费者抢同一个缓存行
+     */
+    private final AtomicLong producerIndex = new AtomicLong();
+
+    private volatile long consumerIndex;
+
+    /**
+     * @param capacity 容量，会向上取到2的幂次方
+     */
+    @SuppressWarnings("unchecked")
+    public MpscArrayQueue(int capacity) {
+        assert capacity > 0 : "Capacity must be positive";
+        int actualCapacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = actualCapacity - 1;
+        this.buffer = (E[]) new Object[actualCapacity];
+        this.sequences = new AtomicLongArray(actualCapacity);
+        for (int i = 0; i < actualCapacity; i++) {
+            sequences.lazySet(i, i);
+        }
+    }
+
+    /**
+     * @return 队列的容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        AssertUtils.checkNotNull(e);
+        for (; ; ) {
+            long index = producerIndex.get();
+            int offset = (int) index & mask;
+            long diff = sequences.get(offset) - index;
+            if (diff == 0) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    buffer[offset] = e;
+                    // 这里用volatile写而不是lazySet，保证后面读消费者是否在睡眠时不会被重排到前面
+                    sequences.set(offset, index + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // 消费者还没有取走这一圈的元素，队列满了
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        long index = consumerIndex;
+        int offset = (int) index & mask;
+        if (sequences.get(offset) != index + 1) {
+            // 队列为空，或者生产者抢到了下标还没有写完
+            return null;
+        }
+        E e = buffer[offset];
+        buffer[offset] = null;
+        // 把槽位交还给下一圈的生产者
+        sequences.lazySet(offset, index + mask + 1);
+        consumerIndex = index + 1;
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long index = consumerIndex;
+        int offset = (int) index & mask;
+        return sequences.get(offset) == index + 1 ? buffer[offset] : null;
+    }
+
+    /**
+     * 批量消费，最多取出limit个元素交给consumer
+     *
+     * @param consumer consumer
+     * @param limit    最多消费的个数
+     * @return 实际消费的个数
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int count = 0;
+        long index = consumerIndex;
+        for (; count < limit; count++, index++) {
+            int offset = (int) index & mask;
+            if (sequences.get(offset) != index + 1) {
+                break;
+            }
+            E e = buffer[offset];
+            buffer[offset] = null;
+            sequences.lazySet(offset, index + mask + 1);
+            // 先更新消费下标再执行，consumer里抛异常也不会重复消费
+            consumerIndex = index + 1;
+            consumer.accept(e);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        // 两个下标不是同时读取的，结果只是一个近似值
+        long size = producerIndex.get() - consumerIndex;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex;
+    }
+
+    /**
+     * 元素只能由消费者按顺序取出，不支持遍历，也就不支持从中间删除
+     */
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,410 @@
+package com.cc.cetty.channel.epoll;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * 通过JDK 21的外部函数接口直接调用libc，只在JDK 21上编译，放在多版本jar的 META-INF/versions/21 下
+ * 每个调用都带上errno的捕获，失败时返回负的errno，和LinuxSyscalls约定的一致
+ * 系统调用需要的结构体放在线程私有的直接内存里，不在调用时分配
+ * 外部函数接口在JDK 21还是预览特性，编译和运行都要加 --enable-preview，运行时再加 --enable-native-access=ALL-UNNAMED 可以去掉警告
+ *
+ * @author: cc
+ * @date: 2023/12/17
+ **/
+final class ForeignLinuxSyscalls implements LinuxSyscalls {
+
+    private static final int CLOEXEC = 0x80000;
+
+    private static final int NONBLOCK = 0x800;
+
+    private static final int SOCK_STREAM = 1;
+
+    private static final int CLOCK_MONOTONIC = 1;
+
+    private static final int IPPROTO_IPV6 = 41;
+
+    private static final int IPV6_V6ONLY = 26;
+
+    /**
+     * struct iovec {void *iov_base; size_t iov_len;}
+     */
+    private static final int IOVEC_SIZE = 16;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final Linker LINKER = Linker.nativeLinker();
+
+    private static final StructLayout CAPTURE_LAYOUT = Linker.Option.captureStateLayout();
+
+    private static final VarHandle ERRNO = CAPTURE_LAYOUT.varHandle(MemoryLayout.PathElement.groupElement("errno"));
+
+    private static final MethodHandle EPOLL_CREATE1 = downcall("epoll_create1", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle EPOLL_CTL = downcall("epoll_ctl", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS));
+
+    private static final MethodHandle EPOLL_WAIT = downcall("epoll_wait", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle EVENTFD = downcall("eventfd", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle TIMERFD_CREATE = downcall("timerfd_create", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle TIMERFD_SETTIME = downcall("timerfd_settime", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS));
+
+    private static final MethodHandle SOCKET = downcall("socket", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle BIND = downcall("bind", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT));
+
+    private static final MethodHandle LISTEN = downcall("listen", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle ACCEPT4 = downcall("accept4", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, JAVA_INT));
+
+    private static final MethodHandle CONNECT = downcall("connect", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT));
+
+    private static final MethodHandle GETSOCKNAME = downcall("getsockname", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, ADDRESS));
+
+    private static final MethodHandle GETPEERNAME = downcall("getpeername", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, ADDRESS));
+
+    private static final MethodHandle GETSOCKOPT = downcall("getsockopt", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS));
+
+    private static final MethodHandle SETSOCKOPT = downcall("setsockopt", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT));
+
+    private static final MethodHandle READ = downcall("read", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+
+    private static final MethodHandle WRITE = downcall("write", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+
+    private static final MethodHandle WRITEV = downcall("writev", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT));
+
+    private static final MethodHandle SHUTDOWN = downcall("shutdown", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle CLOSE = downcall("close", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+
+    private static final MethodHandle STRERROR = LINKER.downcallHandle(
+            LINKER.defaultLookup().find("strerror").orElseThrow(), FunctionDescriptor.of(ADDRESS, JAVA_INT));
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * 由Epoll反射创建
+     */
+    public ForeignLinuxSyscalls() {
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor) {
+        MemorySegment symbol = LINKER.defaultLookup().find(name)
+                .orElseThrow(() -> new UnsatisfiedLinkError("Symbol not found: " + name));
+        return LINKER.downcallHandle(symbol, descriptor, Linker.Option.captureCallState("errno"));
+    }
+
+    @Override
+    public int epollCreate() {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) EPOLL_CREATE1.invokeExact(errno, CLOEXEC), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int epollCtl(int epfd, int op, int fd, int events) {
+        Scratch scratch = SCRATCH.get();
+        MemorySegment event = scratch.value;
+        event.fill((byte) 0);
+        event.set(JAVA_INT, 0, events);
+        event.set(JAVA_INT, Epoll.EVENT_DATA_OFFSET, fd);
+        try {
+            return result((int) EPOLL_CTL.invokeExact(scratch.errno, epfd, op, fd, event), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int epollWait(int epfd, ByteBuffer events, int maxEvents, int timeoutMillis) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) EPOLL_WAIT.invokeExact(errno, epfd, MemorySegment.ofBuffer(events), maxEvents, timeoutMillis), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int eventFd() {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) EVENTFD.invokeExact(errno, 0, NONBLOCK | CLOEXEC), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int eventFdWrite(int fd, long value) {
+        Scratch scratch = SCRATCH.get();
+        scratch.value.set(JAVA_LONG, 0, value);
+        try {
+            return (int) result((long) WRITE.invokeExact(scratch.errno, fd, scratch.value, 8L), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int timerFd() {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) TIMERFD_CREATE.invokeExact(errno, CLOCK_MONOTONIC, NONBLOCK | CLOEXEC), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int timerFdSetTime(int fd, long delayNanos) {
+        Scratch scratch = SCRATCH.get();
+        // struct itimerspec {struct timespec it_interval; struct timespec it_value;}，it_value全是0表示取消
+        MemorySegment spec = scratch.value;
+        spec.fill((byte) 0);
+        if (delayNanos > 0) {
+            spec.set(JAVA_LONG, 16, delayNanos / NANOS_PER_SECOND);
+            spec.set(JAVA_LONG, 24, delayNanos % NANOS_PER_SECOND);
+        }
+        try {
+            return result((int) TIMERFD_SETTIME.invokeExact(scratch.errno, fd, 0, spec, MemorySegment.NULL), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int socketStream(boolean ipv6) {
+        Scratch scratch = SCRATCH.get();
+        try {
+            int fd = result((int) SOCKET.invokeExact(scratch.errno, ipv6 ? AF_INET6 : AF_INET, SOCK_STREAM | NONBLOCK | CLOEXEC, 0), scratch.errno);
+            if (fd >= 0 && ipv6) {
+                // 双栈，有的系统默认只接受IPv6
+                int res = setSockOpt(fd, IPPROTO_IPV6, IPV6_V6ONLY, 0);
+                if (res < 0) {
+                    close(fd);
+                    return res;
+                }
+            }
+            return fd;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int bind(int fd, ByteBuffer address) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) BIND.invokeExact(errno, fd, MemorySegment.ofBuffer(address), address.remaining()), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int listen(int fd, int backlog) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) LISTEN.invokeExact(errno, fd, backlog), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int accept(int fd, ByteBuffer address) {
+        Scratch scratch = SCRATCH.get();
+        scratch.length.set(JAVA_INT, 0, address.remaining());
+        try {
+            return result((int) ACCEPT4.invokeExact(scratch.errno, fd, MemorySegment.ofBuffer(address), scratch.length, NONBLOCK | CLOEXEC), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int connect(int fd, ByteBuffer address) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) CONNECT.invokeExact(errno, fd, MemorySegment.ofBuffer(address), address.remaining()), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int getSockName(int fd, ByteBuffer address) {
+        Scratch scratch = SCRATCH.get();
+        scratch.length.set(JAVA_INT, 0, address.remaining());
+        try {
+            return result((int) GETSOCKNAME.invokeExact(scratch.errno, fd, MemorySegment.ofBuffer(address), scratch.length), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int getPeerName(int fd, ByteBuffer address) {
+        Scratch scratch = SCRATCH.get();
+        scratch.length.set(JAVA_INT, 0, address.remaining());
+        try {
+            return result((int) GETPEERNAME.invokeExact(scratch.errno, fd, MemorySegment.ofBuffer(address), scratch.length), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int getSockOpt(int fd, int level, int option) {
+        Scratch scratch = SCRATCH.get();
+        scratch.value.set(JAVA_INT, 0, 0);
+        scratch.length.set(JAVA_INT, 0, Integer.BYTES);
+        try {
+            int res = result((int) GETSOCKOPT.invokeExact(scratch.errno, fd, level, option, scratch.value, scratch.length), scratch.errno);
+            return res < 0 ? res : scratch.value.get(JAVA_INT, 0);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int setSockOpt(int fd, int level, int option, int value) {
+        Scratch scratch = SCRATCH.get();
+        scratch.value.set(JAVA_INT, 0, value);
+        try {
+            return result((int) SETSOCKOPT.invokeExact(scratch.errno, fd, level, option, scratch.value, Integer.BYTES), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int read(int fd, ByteBuffer dst) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return (int) result((long) READ.invokeExact(errno, fd, MemorySegment.ofBuffer(dst), (long) dst.remaining()), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int write(int fd, ByteBuffer src) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return (int) result((long) WRITE.invokeExact(errno, fd, MemorySegment.ofBuffer(src), (long) src.remaining()), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public long writev(int fd, ByteBuffer[] srcs, int offset, int length) {
+        Scratch scratch = SCRATCH.get();
+        MemorySegment iovecs = scratch.iovecs();
+        for (int i = 0; i < length; i++) {
+            ByteBuffer src = srcs[offset + i];
+            // srcs引用着这些直接内存，调用结束之前不会被回收
+            iovecs.set(JAVA_LONG, (long) i * IOVEC_SIZE, MemorySegment.ofBuffer(src).address());
+            iovecs.set(JAVA_LONG, (long) i * IOVEC_SIZE + 8, src.remaining());
+        }
+        try {
+            return result((long) WRITEV.invokeExact(scratch.errno, fd, iovecs, length), scratch.errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int shutdown(int fd, int how) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) SHUTDOWN.invokeExact(errno, fd, how), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int close(int fd) {
+        MemorySegment errno = SCRATCH.get().errno;
+        try {
+            return result((int) CLOSE.invokeExact(errno, fd), errno);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public String strerror(int errno) {
+        try {
+            MemorySegment message = (MemorySegment) STRERROR.invokeExact(errno);
+            return message.reinterpret(Integer.MAX_VALUE).getUtf8String(0) + " (errno " + errno + ")";
+        } catch (Throwable t) {
+            return "errno " + errno;
+        }
+    }
+
+    private static int result(int res, MemorySegment errno) {
+        return res < 0 ? -(int) ERRNO.get(errno) : res;
+    }
+
+    private static long result(long res, MemorySegment errno) {
+        return res < 0 ? -(int) ERRNO.get(errno) : res;
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * 线程私有的结构体，跟着线程一起被回收
+     */
+    private static final class Scratch {
+
+        private final Arena arena = Arena.ofAuto();
+
+        private final MemorySegment errno = arena.allocate(CAPTURE_LAYOUT);
+
+        /**
+         * epoll_event、itimerspec、eventfd的计数和socket选项共用
+         */
+        private final MemorySegment value = arena.allocate(32, 8);
+
+        private final MemorySegment length = arena.allocate(ValueLayout.JAVA_INT);
+
+        private MemorySegment iovecs;
+
+        private MemorySegment iovecs() {
+            if (Objects.isNull(iovecs)) {
+                iovecs = arena.allocate((long) IOV_MAX * IOVEC_SIZE, 8);
+            }
+            return iovecs;
+        }
+    }
+}
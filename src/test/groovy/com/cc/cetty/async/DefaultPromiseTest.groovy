@@ -0,0 +1,196 @@
+package com.cc.cetty.async
+
+import com.cc.cetty.local.InternalThreadLocalMap
+import spock.lang.Specification
+
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author cc
+ * @date 2023/11/27
+ */
+class DefaultPromiseTest extends Specification {
+
+    DefaultEventExecutor executor = new DefaultEventExecutor()
+
+    def cleanup() {
+        executor.shutdownGracefully()
+    }
+
+    def "test listener runs on executor"() {
+        given:
+        Promise<String> promise = executor.newPromise()
+        CountDownLatch latch = new CountDownLatch(1)
+        boolean inEventLoop = false
+        String value = null
+
+        when:
+        promise.addListener({ Future<String> f ->
+            inEventLoop = executor.inEventLoop()
+            value = f.getNow()
+            latch.countDown()
+        } as FutureListener<String>)
+        promise.setSuccess("done")
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        inEventLoop
+        value == "done"
+        promise.isSuccess()
+        promise.get() == "done"
+    }
+
+    def "test listener added after completion"() {
+        given:
+        Promise<String> promise = executor.newPromise()
+        promise.setSuccess("done")
+        CountDownLatch latch = new CountDownLatch(1)
+
+        when:
+        promise.addListener({ latch.countDown() } as FutureListener<String>)
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        !promise.trySuccess("again")
+    }
+
+    def "test listeners added on the loop after completion run after earlier listeners"() {
+        given:
+        Promise<String> promise = executor.newPromise()
+        List<String> order = []
+        CountDownLatch blocker = new CountDownLatch(1)
+        CountDownLatch done = new CountDownLatch(3)
+        executor.execute { blocker.await() }
+        promise.addListener({ order << "A"; done.countDown() } as FutureListener<String>)
+        promise.addListener({ order << "B"; done.countDown() } as FutureListener<String>)
+        // 执行器线程在完成之后才添加C，这时A和B的通知还没有执行
+        executor.execute {
+            promise.addListener({ order << "C"; done.countDown() } as FutureListener<String>)
+        }
+
+        when:
+        promise.setSuccess("done")
+        blocker.countDown()
+
+        then:
+        done.await(5, TimeUnit.SECONDS)
+        order == ["A", "B", "C"]
+    }
+
+    def "test timed out waiters are unlinked"() {
+        given:
+        Promise<String> promise = executor.newPromise()
+        def field = DefaultPromise.getDeclaredField("waiters")
+        field.setAccessible(true)
+
+        when:
+        for (int i = 0; i < 100; i++) {
+            assert !promise.await(1, TimeUnit.MILLISECONDS)
+        }
+
+        then:
+        field.get(promise) == null
+
+        when:
+        Thread.start { Thread.sleep(50); promise.setSuccess("done") }
+
+        then:
+        promise.await(5, TimeUnit.SECONDS)
+        promise.getNow() == "done"
+    }
+
+    def "test deep chain is bounded by stack depth"() {
+        given:
+        int chainLength = 100
+        List<Promise<Integer>> promises = (0..chainLength).collect { executor.<Integer> newPromise() }
+        int maxDepth = 0
+        for (int i = 0; i < chainLength; i++) {
+            Promise<Integer> next = promises[i + 1]
+            promises[i].addListener({ Future<Integer> f ->
+                maxDepth = Math.max(maxDepth, InternalThreadLocalMap.getMap().futureListenerStackDepth())
+                next.setSuccess(f.getNow() + 1)
+            } as FutureListener<Integer>)
+        }
+
+        when:
+        // 在执行器线程上完成，监听器会内联执行
+        executor.execute { promises[0].setSuccess(0) }
+
+        then:
+        promises[chainLength].get(5, TimeUnit.SECONDS) == chainLength
+        maxDepth <= 8
+    }
+
+    def "test failure and cancel"() {
+        given:
+        Promise<String> failed = executor.newPromise()
+        Promise<String> cancelled = executor.newPromise()
+        Promise<String> uncancellable = executor.newPromise()
+
+        when:
+        failed.setFailure(new IllegalArgumentException("bad"))
+        cancelled.cancel(false)
+        uncancellable.setUncancellable()
+
+        then:
+        !failed.isSuccess()
+        failed.cause() instanceof IllegalArgumentException
+        cancelled.isCancelled()
+        !uncancellable.cancel(false)
+        !uncancellable.isDone()
+
+        when:
+        failed.get()
+
+        then:
+        ExecutionException e = thrown()
+        e.cause instanceof IllegalArgumentException
+
+        when:
+        cancelled.get()
+
+        then:
+        thrown(CancellationException)
+    }
+
+    def "test concurrent listeners notified once"() {
+        given:
+        Promise<String> promise = executor.newPromise()
+        AtomicInteger notified = new AtomicInteger()
+        int threads = 4
+        int perThread = 1000
+        CountDownLatch start = new CountDownLatch(1)
+        List<Thread> adders = (0..<threads).collect {
+            Thread.start {
+                start.await()
+                for (int i = 0; i < perThread; i++) {
+                    promise.addListener({ notified.incrementAndGet() } as FutureListener<String>)
+                }
+            }
+        }
+
+        when:
+        start.countDown()
+        promise.trySuccess("done")
+        adders.each { it.join() }
+        Promise<String> last = executor.newPromise()
+        executor.execute { last.setSuccess("flushed") }
+        last.sync()
+        long deadline = System.currentTimeMillis() + 5000
+        while (notified.get() < threads * perThread && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+
+        then:
+        notified.get() == threads * perThread
+    }
+
+    def "test submit"() {
+        expect:
+        executor.submit({ 1 + 1 }).get(5, TimeUnit.SECONDS) == 2
+    }
+}
@@ -0,0 +1,295 @@
+package com.cc.cetty.async
+
+import com.cc.cetty.local.FastThreadLocal
+import com.cc.cetty.local.FastThreadLocalThread
+import com.cc.cetty.utils.IndexedPriorityQueue
+import com.cc.cetty.utils.MpscArrayQueue
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author cc
+ * @date 2023/11/24
+ */
+class EventExecutorGroupTest extends Specification {
+
+    def "test mpsc queue with multiple producers"() {
+        given:
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(1024)
+        int producers = 4
+        int perProducer = 10000
+        List<Thread> threads = (0..<producers).collect { p ->
+            Thread.start {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(p * perProducer + i)) {
+                        Thread.yield()
+                    }
+                }
+            }
+        }
+
+        when:
+        Set<Integer> received = new HashSet<>()
+        while (received.size() < producers * perProducer) {
+            if (queue.drain({ received.add(it) }, 64) == 0) {
+                Thread.yield()
+            }
+        }
+        threads.each { it.join() }
+
+        then:
+        received.size() == producers * perProducer
+        queue.isEmpty()
+        queue.poll() == null
+    }
+
+    def "test bounded queue rejects"() {
+        given:
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(3)
+
+        expect:
+        queue.capacity() == 4
+        (0..<4).every { queue.offer(it) }
+        !queue.offer(4)
+        queue.poll() == 0
+        queue.offer(4)
+        queue.size() == 4
+    }
+
+    def "test executor runs tasks on fast thread local thread"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(2)
+        EventExecutor executor = group.next()
+        CountDownLatch latch = new CountDownLatch(1000)
+        AtomicInteger order = new AtomicInteger()
+        boolean ordered = true
+        boolean inEventLoop = true
+        Thread executorThread = null
+
+        when:
+        for (int i = 0; i < 1000; i++) {
+            int expected = i
+            executor.execute {
+                ordered &= order.getAndIncrement() == expected
+                inEventLoop &= executor.inEventLoop()
+                executorThread = Thread.currentThread()
+                latch.countDown()
+            }
+        }
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        ordered
+        inEventLoop
+        executorThread instanceof FastThreadLocalThread
+        !executor.inEventLoop()
+
+        cleanup:
+        group.shutdownGracefully()
+    }
+
+    def "test chooser round robin"() {
+        given:
+        DefaultEventExecutorGroup powerOfTwo = new DefaultEventExecutorGroup(4)
+        DefaultEventExecutorGroup generic = new DefaultEventExecutorGroup(3)
+
+        expect:
+        (0..<8).collect { powerOfTwo.next() } == (powerOfTwo.toList() * 2)
+        (0..<6).collect { generic.next() } == (generic.toList() * 2)
+
+        cleanup:
+        powerOfTwo.shutdownGracefully()
+        generic.shutdownGracefully()
+    }
+
+    def "test shutdown removes thread locals"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        List<String> removed = Collections.synchronizedList([])
+        FastThreadLocal<String> local = new FastThreadLocal<String>() {
+            @Override
+            protected void onRemoval(String value) throws Exception {
+                removed.add(value)
+            }
+        }
+
+        when:
+        group.execute { local.set("value") }
+        group.shutdownGracefully()
+        boolean terminated = group.awaitTermination(5, TimeUnit.SECONDS)
+        group.execute {}
+
+        then:
+        thrown(RejectedExecutionException)
+        terminated
+        group.isTerminated()
+        removed == ["value"]
+
+        cleanup:
+        local.destroy()
+    }
+
+    def "test tasks accepted while shutting down are all run"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        EventExecutor executor = group.next()
+        AtomicInteger accepted = new AtomicInteger()
+        AtomicInteger ran = new AtomicInteger()
+        CountDownLatch started = new CountDownLatch(4)
+        List<Thread> producers = (0..<4).collect {
+            Thread.start {
+                started.countDown()
+                try {
+                    for (; ;) {
+                        executor.execute { ran.incrementAndGet() }
+                        accepted.incrementAndGet()
+                    }
+                } catch (RejectedExecutionException ignored) {
+                    // 关闭之后拒绝
+                }
+            }
+        }
+
+        when:
+        started.await()
+        Thread.sleep(20)
+        group.shutdownGracefully()
+        producers*.join()
+
+        then:
+        group.awaitTermination(5, TimeUnit.SECONDS)
+        ran.get() == accepted.get()
+    }
+
+    def "test tasks accepted before the thread starts are run when shutting down"() {
+        given:
+        int rounds = 200
+        AtomicInteger accepted = new AtomicInteger()
+        AtomicInteger ran = new AtomicInteger()
+
+        when:
+        for (int i = 0; i < rounds; i++) {
+            DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+            EventExecutor executor = group.next()
+            Thread producer = Thread.start {
+                try {
+                    executor.execute { ran.incrementAndGet() }
+                    accepted.incrementAndGet()
+                } catch (RejectedExecutionException ignored) {
+                    // 关闭之后拒绝
+                }
+            }
+            group.shutdownGracefully()
+            producer.join()
+            assert group.awaitTermination(5, TimeUnit.SECONDS)
+        }
+
+        then:
+        ran.get() == accepted.get()
+    }
+
+    def "test indexed priority queue removes by index"() {
+        given:
+        Random random = new Random(1)
+        IndexedPriorityQueue<HeapNode> queue = new IndexedPriorityQueue<>(1)
+        List<HeapNode> nodes = (0..<1000).collect { new HeapNode(random.nextInt(100)) }
+        nodes.each { queue.offer(it) }
+        Collections.shuffle(nodes, random)
+
+        when:
+        boolean removed = nodes.subList(0, 500).every { queue.remove(it) }
+        List<Integer> polled = []
+        HeapNode node
+        while ((node = queue.poll()) != null) {
+            polled.add(node.value)
+        }
+
+        then:
+        removed
+        polled == nodes.subList(500, 1000)*.value.sort()
+        nodes.every { it.heapIndex() == IndexedPriorityQueue.INDEX_NOT_IN_QUEUE }
+        !queue.remove(nodes[0])
+    }
+
+    def "test scheduled tasks run in deadline order and cancel removes them"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        EventExecutor executor = group.next()
+        List<Integer> order = Collections.synchronizedList([])
+        CountDownLatch latch = new CountDownLatch(3)
+
+        when:
+        executor.schedule({ order.add(3); latch.countDown() }, 300, TimeUnit.MILLISECONDS)
+        executor.schedule({ order.add(1); latch.countDown() }, 100, TimeUnit.MILLISECONDS)
+        executor.schedule({ order.add(2); latch.countDown() }, 200, TimeUnit.MILLISECONDS)
+        ScheduledFuture<?> cancelled = executor.schedule({ order.add(0) }, 150, TimeUnit.MILLISECONDS)
+        boolean cancel = cancelled.cancel(false)
+        ScheduledFuture<String> callable = executor.schedule({ "done" } as Callable<String>, 10, TimeUnit.MILLISECONDS)
+
+        then:
+        cancel
+        latch.await(5, TimeUnit.SECONDS)
+        order == [1, 2, 3]
+        callable.get() == "done"
+        cancelled.isCancelled()
+
+        cleanup:
+        group.shutdownGracefully()
+    }
+
+    def "test periodic tasks stop after cancel and pending tasks are cancelled on shutdown"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        AtomicInteger rate = new AtomicInteger()
+        AtomicInteger delay = new AtomicInteger()
+
+        when:
+        ScheduledFuture<?> fixedRate = group.scheduleAtFixedRate({ rate.incrementAndGet() }, 0, 10, TimeUnit.MILLISECONDS)
+        ScheduledFuture<?> fixedDelay = group.scheduleWithFixedDelay({ delay.incrementAndGet() }, 0, 10, TimeUnit.MILLISECONDS)
+        Thread.sleep(200)
+        fixedRate.cancel(false)
+        fixedDelay.cancel(false)
+        int stopped = rate.get()
+        Thread.sleep(50)
+        ScheduledFuture<?> pending = group.schedule({}, 1, TimeUnit.HOURS)
+        group.shutdownGracefully()
+
+        then:
+        stopped >= 5
+        delay.get() >= 5
+        rate.get() == stopped
+        group.awaitTermination(5, TimeUnit.SECONDS)
+        pending.isCancelled()
+    }
+
+    static class HeapNode implements IndexedPriorityQueue.Node, Comparable<HeapNode> {
+
+        final int value
+
+        int index = IndexedPriorityQueue.INDEX_NOT_IN_QUEUE
+
+        HeapNode(int value) {
+            this.value = value
+        }
+
+        @Override
+        int heapIndex() {
+            return index
+        }
+
+        @Override
+        void heapIndex(int index) {
+            this.index = index
+        }
+
+        @Override
+        int compareTo(HeapNode o) {
+            return Integer.compare(value, o.value)
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.cc.cetty.attribute
+
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/12/11
+ */
+class AttributeMapTest extends Specification {
+
+    def "test attribute keys are interned"() {
+        when:
+        AttributeKey<String> a = AttributeKey.valueOf("test.interned")
+        AttributeKey<String> b = AttributeKey.valueOf("test.interned")
+        AttributeKey<String> c = AttributeKey.valueOf(AttributeMapTest, "interned")
+
+        then:
+        a.is(b)
+        !a.is(c)
+        c.name() == AttributeMapTest.name + "#interned"
+        AttributeKey.exists("test.interned")
+        a.id() < c.id()
+
+        when:
+        AttributeKey.newInstance("test.interned")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "test get set and remove"() {
+        given:
+        DefaultAttributeMap map = new DefaultAttributeMap()
+        AttributeKey<String> key = AttributeKey.valueOf("test.session")
+
+        expect:
+        !map.hasAttr(key)
+
+        when:
+        Attribute<String> attr = map.attr(key)
+
+        then:
+        map.hasAttr(key)
+        attr.is(map.attr(key))
+        attr.key().is(key)
+        attr.get() == null
+        attr.setIfAbsent("s1") == null
+        attr.setIfAbsent("s2") == "s1"
+        attr.compareAndSet("s1", "s3")
+        !attr.compareAndSet("s1", "s4")
+        attr.getAndSet("s5") == "s3"
+
+        when:
+        String removed = attr.getAndRemove()
+
+        then:
+        removed == "s5"
+        !map.hasAttr(key)
+        attr.get() == null
+
+        when:
+        Attribute<String> again = map.attr(key)
+
+        then:
+        !again.is(attr)
+        again.get() == null
+    }
+
+    def "test attributes stay sorted by key id"() {
+        given:
+        DefaultAttributeMap map = new DefaultAttributeMap()
+        List<AttributeKey<Integer>> keys = (0..<32).collect { AttributeKey.<Integer> valueOf("test.sorted." + it) }
+
+        when:
+        // 乱序插入，再删掉一部分
+        keys.reverse().each { map.attr(it).set(it.id()) }
+        keys.findAll { it.id() % 3 == 0 }.each { map.attr(it).remove() }
+
+        then:
+        keys.every { key ->
+            boolean kept = key.id() % 3 != 0
+            map.hasAttr(key) == kept && (!kept || map.attr(key).get() == key.id())
+        }
+    }
+
+    def "test concurrent attr returns the same attribute"() {
+        given:
+        DefaultAttributeMap map = new DefaultAttributeMap()
+        List<AttributeKey<Object>> keys = (0..<16).collect { AttributeKey.valueOf("test.concurrent." + it) }
+        int threads = 4
+        def pool = Executors.newFixedThreadPool(threads)
+        def start = new CountDownLatch(1)
+        Map<AttributeKey<Object>, Set<Attribute<Object>>> seen = new ConcurrentHashMap<>()
+
+        when:
+        def futures = (0..<threads).collect {
+            pool.submit {
+                start.await()
+                keys.each { key ->
+                    seen.computeIfAbsent(key, { ConcurrentHashMap.newKeySet() }).add(map.attr(key))
+                }
+            }
+        }
+        start.countDown()
+        futures.each { it.get(10, TimeUnit.SECONDS) }
+
+        then:
+        keys.every { seen[it].size() == 1 && map.hasAttr(it) }
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    def "test handler contexts share the channel attributes"() {
+        given:
+        NioSocketChannel channel = new NioSocketChannel()
+        def first = new ChannelInboundHandlerAdapter()
+        def second = new ChannelInboundHandlerAdapter()
+        channel.pipeline().addLast(first, second)
+        AttributeKey<String> tenant = AttributeKey.valueOf("test.tenant")
+
+        when:
+        channel.pipeline().context(first).attr(tenant).set("t1")
+
+        then:
+        channel.attr(tenant).get() == "t1"
+        channel.pipeline().context(second).attr(tenant).get() == "t1"
+        channel.pipeline().context(second).hasAttr(tenant)
+
+        cleanup:
+        channel.unsafe().closeForcibly()
+    }
+}
@@ -0,0 +1,120 @@
+package com.cc.cetty.bootstrap
+
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.channel.Channel
+import com.cc.cetty.channel.nio.NioEventLoop
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioServerSocketChannel
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.handler.ChannelHandler
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/11/29
+ */
+class EchoTest extends Specification {
+
+    @ChannelHandler.Sharable
+    static class EchoHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.write(msg)
+        }
+
+        @Override
+        void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush()
+        }
+    }
+
+    NioEventLoopGroup boss = new NioEventLoopGroup(1)
+
+    NioEventLoopGroup worker = new NioEventLoopGroup(2)
+
+    def cleanup() {
+        boss.shutdownGracefully()
+        worker.shutdownGracefully()
+        boss.awaitTermination(5, TimeUnit.SECONDS)
+        worker.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    private Channel bindEchoServer() {
+        def future = new ServerBootstrap()
+                .group(boss, worker)
+                .channel(NioServerSocketChannel)
+                .childHandler(new EchoHandler())
+                .bind("127.0.0.1", 0)
+        future.sync()
+        return future.channel()
+    }
+
+    private String echo(Channel server, String text) {
+        StringBuilder received = new StringBuilder()
+        CountDownLatch latch = new CountDownLatch(1)
+        ChannelHandler client = new ChannelInboundHandlerAdapter() {
+            @Override
+            void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ByteBuf buf = (ByteBuf) msg
+                received.append(buf.toString(StandardCharsets.UTF_8))
+                buf.release()
+                if (received.length() >= text.length()) {
+                    latch.countDown()
+                }
+            }
+        }
+        def connect = new Bootstrap()
+                .group(worker)
+                .channel(NioSocketChannel)
+                .handler(client)
+                .connect(server.localAddress())
+        connect.sync()
+        connect.channel().writeAndFlush(text.getBytes(StandardCharsets.UTF_8)).sync()
+        assert latch.await(5, TimeUnit.SECONDS)
+        connect.channel().close().sync()
+        return received.toString()
+    }
+
+    def "test echo over loopback"() {
+        given:
+        Channel server = bindEchoServer()
+        // 大于一次读的缓冲区，会分多次读写
+        String text = "cetty" * 2000
+
+        expect:
+        server.isActive()
+        echo(server, "hello") == "hello"
+        echo(server, text) == text
+
+        cleanup:
+        server.close().sync()
+    }
+
+    def "test rebuild selector keeps channels"() {
+        given:
+        Channel server = bindEchoServer()
+
+        when:
+        boss.rebuildSelectors()
+        worker.rebuildSelectors()
+
+        then:
+        echo(server, "before rebuild") == "before rebuild"
+
+        when:
+        ((NioEventLoop) server.eventLoop()).rebuildSelector()
+
+        then:
+        echo(server, "after rebuild") == "after rebuild"
+
+        cleanup:
+        server.close().sync()
+    }
+}
@@ -0,0 +1,211 @@
+package com.cc.cetty.buffer
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.ReadOnlyBufferException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+/**
+ * @author cc
+ * @date 2023/12/10
+ */
+class CompositeByteBufTest extends Specification {
+
+    ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT
+
+    private ByteBuf direct(String s) {
+        return alloc.directBuffer(16).writeBytes(s.getBytes(StandardCharsets.UTF_8))
+    }
+
+    private ByteBuf heap(String s) {
+        return alloc.heapBuffer(16).writeBytes(s.getBytes(StandardCharsets.UTF_8))
+    }
+
+    def "test components are viewed as one buffer"() {
+        given:
+        def header = alloc.heapBuffer(8).writeShort(0x0102).writeByte(0x03)
+        def body = alloc.directBuffer(8).writeByte(0x04).writeBytes("cetty".getBytes(StandardCharsets.UTF_8))
+        // 只有可读部分属于组合buf
+        header.readerIndex(1)
+
+        when:
+        CompositeByteBuf buf = alloc.compositeBuffer().addComponents(true, header, body)
+
+        then:
+        buf.numComponents() == 2
+        buf.capacity() == 8
+        buf.readableBytes() == 8
+        !buf.isDirect()
+        buf.nioBufferCount() == 2
+        // 跨越两个组件的读
+        buf.getShort(1) == 0x0304
+        buf.getInt(0) == 0x02030463
+        buf.readByte() == 0x02
+        buf.readShort() == 0x0304
+        buf.toString(StandardCharsets.UTF_8) == "cetty"
+
+        when:
+        def nioBuffers = buf.nioBuffers(0, 8)
+        def merged = buf.nioBuffer(0, 8)
+        byte[] bytes = new byte[8]
+        buf.getBytes(0, bytes, 0, 8)
+
+        then:
+        nioBuffers*.remaining() == [2, 6]
+        merged.remaining() == 8
+        merged.get(7) == (byte) 'y'
+        bytes == ([2, 3, 4] + ("cetty".getBytes(StandardCharsets.UTF_8) as List)) as byte[]
+
+        when:
+        // 组合buf和组件共享内存
+        buf.setByte(3, (int) ('C' as char))
+        buf.setShort(1, 0x0a0b)
+
+        then:
+        body.getByte(1) == (byte) 'C'
+        header.getByte(2) == 0x0a
+        body.getByte(0) == 0x0b
+
+        when:
+        buf.release()
+
+        then:
+        header.refCnt() == 0
+        body.refCnt() == 0
+    }
+
+    def "test write grows by appending components"() {
+        given:
+        CompositeByteBuf buf = alloc.compositeBuffer().addComponent(true, direct("abc"))
+
+        when:
+        buf.writeLong(0x0102030405060708L)
+        buf.writeInt(42)
+
+        then:
+        buf.numComponents() > 1
+        buf.readableBytes() == 15
+        buf.getLong(3) == 0x0102030405060708L
+        buf.getInt(11) == 42
+
+        when:
+        buf.capacity(5)
+
+        then:
+        buf.capacity() == 5
+        buf.writerIndex() == 5
+        buf.toString(StandardCharsets.UTF_8).startsWith("abc")
+
+        cleanup:
+        buf.release()
+    }
+
+    def "test discard read bytes releases read components"() {
+        given:
+        def a = direct("hello")
+        def b = heap(" ")
+        def c = direct("world")
+        CompositeByteBuf buf = alloc.compositeBuffer().addComponents(true, a, b, c)
+
+        when:
+        buf.skipBytes(7)
+        buf.discardReadBytes()
+
+        then:
+        a.refCnt() == 0
+        b.refCnt() == 0
+        c.refCnt() == 1
+        buf.numComponents() == 1
+        buf.readerIndex() == 0
+        buf.capacity() == 4
+        buf.toString(StandardCharsets.UTF_8) == "orld"
+        buf.getByte(0) == (byte) 'o'
+
+        when:
+        buf.writerIndex(4).readerIndex(4)
+        buf.discardReadBytes()
+
+        then:
+        c.refCnt() == 0
+        buf.numComponents() == 0
+        buf.capacity() == 0
+
+        cleanup:
+        buf.release()
+    }
+
+    def "test consolidate when too many components"() {
+        given:
+        CompositeByteBuf buf = alloc.compositeBuffer(4)
+        def parts = (0..<5).collect { direct("p" + it) }
+
+        when:
+        parts.each { buf.addComponent(true, it) }
+
+        then:
+        buf.numComponents() == 1
+        parts.every { it.refCnt() == 0 }
+        buf.toString(StandardCharsets.UTF_8) == "p0p1p2p3p4"
+
+        cleanup:
+        buf.release()
+    }
+
+    def "test empty components are released"() {
+        given:
+        def empty = direct("")
+
+        when:
+        def buf = Unpooled.wrappedBuffer(empty, heap("a"))
+
+        then:
+        empty.refCnt() == 0
+        ((CompositeByteBuf) buf).numComponents() == 1
+        buf.readableBytes() == 1
+
+        cleanup:
+        buf.release()
+    }
+
+    def "test mapped buffer is read only"() {
+        given:
+        def file = Files.createTempFile("cetty", ".txt")
+        Files.write(file, "mapped file".getBytes(StandardCharsets.UTF_8))
+
+        when:
+        def buf = ReadOnlyMappedByteBuf.map(file)
+
+        then:
+        buf.isReadOnly()
+        buf.isDirect()
+        buf.readableBytes() == 11
+        buf.toString(StandardCharsets.UTF_8) == "mapped file"
+        buf.nioBuffer().isReadOnly()
+
+        when:
+        buf.setByte(0, 1)
+
+        then:
+        thrown(ReadOnlyBufferException)
+
+        when:
+        buf.writeByte(1)
+
+        then:
+        thrown(ReadOnlyBufferException)
+
+        when:
+        // 映射的buf也可以作为组合buf的组件
+        def composite = Unpooled.wrappedBuffer(heap("header:"), buf)
+
+        then:
+        composite.toString(StandardCharsets.UTF_8) == "header:mapped file"
+        composite.release()
+        buf.refCnt() == 0
+
+        cleanup:
+        Files.deleteIfExists(file)
+    }
+}
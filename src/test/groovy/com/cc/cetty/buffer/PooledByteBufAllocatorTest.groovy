@@ -0,0 +1,297 @@
+package com.cc.cetty.buffer
+
+import com.cc.cetty.local.FastThreadLocalThread
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CountDownLatch
+
+/**
+ * @author cc
+ * @date 2023/12/01
+ */
+class PooledByteBufAllocatorTest extends Specification {
+
+    def "test read and write"() {
+        given:
+        ByteBuf buf = direct ? alloc.directBuffer(16) : alloc.heapBuffer(16)
+
+        when:
+        buf.writeByte(1).writeShort(2).writeInt(3).writeLong(4L)
+        buf.writeBytes("cetty".getBytes(StandardCharsets.UTF_8))
+
+        then:
+        buf.isDirect() == direct
+        buf.readableBytes() == 20
+        buf.capacity() >= 20
+        buf.getInt(3) == 3
+        buf.readByte() == 1
+        buf.readShort() == 2
+        buf.readInt() == 3
+        buf.readLong() == 4L
+        buf.toString(StandardCharsets.UTF_8) == "cetty"
+
+        when:
+        buf.discardReadBytes()
+
+        then:
+        buf.readerIndex() == 0
+        buf.toString(StandardCharsets.UTF_8) == "cetty"
+        buf.release()
+
+        where:
+        alloc                                      | direct
+        new PooledByteBufAllocator(true)           | true
+        new PooledByteBufAllocator(true)           | false
+        new UnpooledByteBufAllocator(true)         | true
+        new UnpooledByteBufAllocator(true)         | false
+    }
+
+    def "test retained slice shares memory and reference count"() {
+        given:
+        ByteBuf buf = direct ? alloc.directBuffer(16) : alloc.heapBuffer(16)
+        buf.writeBytes("hello, cetty".getBytes(StandardCharsets.UTF_8))
+
+        when:
+        buf.skipBytes(7)
+        ByteBuf slice = buf.readRetainedSlice(5)
+        ByteBuf inner = slice.retainedSlice(1, 3)
+
+        then:
+        buf.readerIndex() == 12
+        slice.toString(StandardCharsets.UTF_8) == "cetty"
+        inner.toString(StandardCharsets.UTF_8) == "ett"
+        slice.isDirect() == direct
+        slice.capacity() == 5
+        buf.refCnt() == 3
+        buf.indexOf(0, 12, (byte) ',') == 5
+        slice.indexOf(0, 5, (byte) 't') == 2
+        slice.indexOf(3, 5, (byte) 'e') == -1
+
+        when:
+        inner.setByte(0, (int) 'E')
+        slice.writerIndex(0)
+        slice.writeByte((int) 'C')
+
+        then:
+        buf.toString(7, 5, StandardCharsets.UTF_8) == "CEtty"
+
+        when:
+        slice.capacity(6)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        buf.release()
+        slice.release()
+
+        then:
+        inner.refCnt() == 1
+        inner.release()
+        buf.refCnt() == 0
+
+        where:
+        alloc                              | direct
+        new PooledByteBufAllocator(true)   | true
+        new PooledByteBufAllocator(true)   | false
+        new UnpooledByteBufAllocator(true) | true
+        new UnpooledByteBufAllocator(true) | false
+    }
+
+    def "test released buffer cannot be accessed"() {
+        given:
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(64)
+        buf.writeLong(1L)
+
+        expect:
+        buf.retain().refCnt() == 2
+        !buf.release()
+        buf.release()
+        buf.refCnt() == 0
+
+        when:
+        buf.readLong()
+
+        then:
+        thrown(IllegalReferenceCountException)
+
+        when:
+        buf.release()
+
+        then:
+        thrown(IllegalReferenceCountException)
+    }
+
+    def "test thread cache reuses memory"() {
+        given:
+        PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 1, 1, 8192, 11)
+
+        when:
+        PooledByteBuf<?> first = (PooledByteBuf<?>) alloc.directBuffer(size)
+        def memory = first.memory
+        int offset = first.offset
+        first.release()
+        PooledByteBuf<?> second = (PooledByteBuf<?>) alloc.directBuffer(size)
+
+        then:
+        second.memory.is(memory)
+        second.offset == offset
+
+        cleanup:
+        second.release()
+        alloc.freeThreadLocalCache()
+
+        where:
+        size << [100, 1024, 16 * 1024]
+    }
+
+    def "test buffer object is recycled"() {
+        given:
+        PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 1, 1, 8192, 11)
+        def seen = [] as Set
+
+        when:
+        // 新对象按比例丢弃，多分配几次之后同一个buf对象会被反复使用
+        for (int i = 0; i < 32; i++) {
+            ByteBuf buf = alloc.directBuffer(64, 128 + i)
+            assert buf.refCnt() == 1
+            assert buf.readerIndex() == 0 && buf.writerIndex() == 0
+            assert buf.maxCapacity() == 128 + i
+            buf.writeLong(i)
+            seen << System.identityHashCode(buf)
+            buf.release()
+        }
+
+        then:
+        seen.size() < 32
+
+        cleanup:
+        alloc.freeThreadLocalCache()
+    }
+
+    def "test release from another thread returns memory to the allocating thread"() {
+        given:
+        PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 2, 2, 8192, 11)
+        PooledByteBuf<?> buf = (PooledByteBuf<?>) alloc.heapBuffer(256)
+        int offset = buf.offset
+
+        when:
+        Thread t = new FastThreadLocalThread({ buf.release() })
+        t.start()
+        t.join()
+        PooledByteBuf<?> again = (PooledByteBuf<?>) alloc.heapBuffer(256)
+
+        then:
+        again.offset == offset
+
+        cleanup:
+        again.release()
+        alloc.freeThreadLocalCache()
+    }
+
+    def "test releases racing with freeing the cache return all memory"() {
+        given:
+        PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 1, 1, 8192, 11)
+        // subpage池头部的page会一直留在arena里，先在同一个线程上跑一轮作为基准
+        (0..<64).collect { alloc.directBuffer(256) }.each { it.release() }
+        alloc.freeThreadLocalCache()
+        long baseline = alloc.metrics().directArenas()[0].allocatedBytes()
+
+        when:
+        // 其他线程释放时，分配线程正在清空自己的缓存，放进去的内存不能留在已经释放的缓存里
+        200.times {
+            List<ByteBuf> bufs = (0..<64).collect { alloc.directBuffer(256) }
+            CountDownLatch half = new CountDownLatch(bufs.size() / 2 as int)
+            Thread releaser = new Thread({
+                bufs.each {
+                    it.release()
+                    half.countDown()
+                }
+            })
+            releaser.start()
+            half.await()
+            alloc.freeThreadLocalCache()
+            releaser.join()
+        }
+        alloc.freeThreadLocalCache()
+
+        then:
+        alloc.metrics().directArenas()[0].allocatedBytes() == baseline
+    }
+
+    def "test capacity grows and keeps data"() {
+        given:
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(16)
+
+        when:
+        for (int i = 0; i < 10000; i++) {
+            buf.writeInt(i)
+        }
+
+        then:
+        buf.capacity() >= 40000
+        (0..<10000).every { buf.readInt() == it }
+
+        cleanup:
+        buf.release()
+    }
+
+    def "test huge buffer is not pooled"() {
+        given:
+        PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 1, 1, 8192, 4)
+        long before = alloc.usedDirectMemory()
+
+        when:
+        ByteBuf buf = alloc.directBuffer(alloc.chunkSize() * 2)
+
+        then:
+        alloc.usedDirectMemory() - before == alloc.chunkSize() * 2
+
+        when:
+        buf.release()
+
+        then:
+        alloc.usedDirectMemory() == before
+    }
+
+    def "test allocations never overlap"() {
+        given:
+        // 一个arena、不用线程缓存，chunk也很小，强制走subpage、run和新建chunk的各种路径
+        PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 1, 1, 8192, 4, 0, 0, 0, false)
+        Random random = new Random(42)
+        List<ByteBuf> bufs = []
+
+        when:
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 500; i++) {
+                int size = [random.nextInt(512), 512 << random.nextInt(4), 8192 << random.nextInt(4)][random.nextInt(3)]
+                ByteBuf buf = round % 2 == 0 ? alloc.directBuffer(size) : alloc.heapBuffer(size)
+                buf.writeZero(size)
+                buf.setZero(0, 0)
+                for (int j = 0; j < size; j++) {
+                    buf.setByte(j, bufs.size())
+                }
+                bufs << buf
+            }
+            // 释放一半，再分配时会复用
+            Collections.shuffle(bufs, random)
+            int half = bufs.size().intdiv(2)
+            bufs.subList(0, half).each { it.release() }
+            bufs = new ArrayList<>(bufs.subList(half, bufs.size()))
+            bufs.eachWithIndex { ByteBuf buf, int idx ->
+                for (int j = 0; j < buf.capacity(); j++) {
+                    buf.setByte(j, idx)
+                }
+            }
+        }
+
+        then:
+        bufs.withIndex().every { ByteBuf buf, int idx ->
+            (0..<buf.capacity()).every { buf.getByte(it) == (byte) idx }
+        }
+
+        cleanup:
+        bufs.each { it.release() }
+    }
+}
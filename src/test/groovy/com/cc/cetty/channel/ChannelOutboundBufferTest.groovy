@@ -0,0 +1,335 @@
+package com.cc.cetty.channel
+
+import com.cc.cetty.bootstrap.Bootstrap
+import com.cc.cetty.bootstrap.ServerBootstrap
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.buffer.PooledByteBufAllocator
+import com.cc.cetty.buffer.ReadOnlyMappedByteBuf
+import com.cc.cetty.buffer.ReferenceCounted
+import com.cc.cetty.buffer.Unpooled
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioServerSocketChannel
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.handler.ChannelHandler
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Specification
+
+import java.nio.channels.ClosedChannelException
+import java.nio.channels.NotYetConnectedException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/12/09
+ */
+class ChannelOutboundBufferTest extends Specification {
+
+    NioEventLoopGroup group = new NioEventLoopGroup(1)
+
+    def cleanup() {
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    private static ByteBuf newBuf(String s) {
+        return PooledByteBufAllocator.DEFAULT.directBuffer(16).writeBytes(s.getBytes(StandardCharsets.UTF_8))
+    }
+
+    def "test gathering buffers and partial write"() {
+        given:
+        def channel = new NioSocketChannel()
+        def buffer = new ChannelOutboundBuffer(channel)
+        def bufs = ["hello", "", "cetty", "world"].collect { newBuf(it) }
+        def promises = bufs.collect { channel.newPromise() }
+
+        when:
+        bufs.eachWithIndex { buf, i -> buffer.addMessage(buf, buf.readableBytes(), promises[i]) }
+
+        then:
+        // 还没flush
+        buffer.isEmpty()
+        buffer.nioBuffers(1024, Long.MAX_VALUE)
+        buffer.nioBufferCount() == 0
+        buffer.totalPendingWriteBytes() > 15
+
+        when:
+        buffer.addFlush()
+        def nioBuffers = buffer.nioBuffers(1024, Long.MAX_VALUE)
+
+        then:
+        buffer.size() == 4
+        // 空的buf不需要写
+        buffer.nioBufferCount() == 3
+        buffer.nioBufferSize() == 15
+        nioBuffers[0].remaining() == 5
+
+        when:
+        buffer.nioBuffers(2, Long.MAX_VALUE)
+
+        then:
+        buffer.nioBufferCount() == 2
+
+        when:
+        // 至少返回一个，超过上限的留到下次
+        buffer.nioBuffers(1024, 8)
+
+        then:
+        buffer.nioBufferCount() == 1
+
+        when:
+        // 写完了前两个，第三个写了一部分
+        buffer.removeBytes(8)
+
+        then:
+        promises[0].isSuccess()
+        promises[1].isSuccess()
+        !promises[2].isDone()
+        bufs[0].refCnt() == 0
+        buffer.size() == 2
+        ((ByteBuf) buffer.current()).toString(StandardCharsets.UTF_8) == "ty"
+
+        when:
+        buffer.removeBytes(7)
+
+        then:
+        promises.every { it.isSuccess() }
+        bufs.every { it.refCnt() == 0 }
+        buffer.isEmpty()
+        buffer.current() == null
+        buffer.totalPendingWriteBytes() == 0
+    }
+
+    def "test cancelled write is not sent"() {
+        given:
+        def channel = new NioSocketChannel()
+        def buffer = new ChannelOutboundBuffer(channel)
+        def buf = newBuf("cancelled")
+        def promise = channel.newPromise()
+        buffer.addMessage(buf, buf.readableBytes(), promise)
+
+        when:
+        promise.cancel(false)
+        buffer.addFlush()
+        buffer.nioBuffers(1024, Long.MAX_VALUE)
+
+        then:
+        buffer.nioBufferCount() == 0
+        buf.refCnt() == 0
+        buffer.totalPendingWriteBytes() == 0
+
+        when:
+        buffer.removeBytes(0)
+
+        then:
+        buffer.isEmpty()
+    }
+
+    def "test water marks"() {
+        given:
+        def channel = new NioSocketChannel()
+        def changes = new CopyOnWriteArrayList<Boolean>()
+        channel.writeBufferWaterMark(new WriteBufferWaterMark(100, 150))
+        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                changes << ctx.channel().isWritable()
+            }
+        })
+        group.register(channel).sync()
+
+        expect:
+        channel.isWritable()
+
+        when:
+        // 每条消息还要算上entry本身的开销
+        def first = channel.write(newBuf("a"))
+        def second = channel.write(newBuf("b"))
+        channel.eventLoop().submit({ null } as Callable).sync()
+
+        then:
+        !channel.isWritable()
+        changes == [false]
+
+        when:
+        // 没有连接，flush的数据都会失败，待发送的字节数降下来
+        channel.flush()
+        channel.eventLoop().submit({ null } as Callable).sync()
+
+        then:
+        first.cause() instanceof NotYetConnectedException
+        second.cause() instanceof NotYetConnectedException
+        channel.isWritable()
+        changes == [false, true]
+
+        when:
+        def third = channel.write(newBuf("c"))
+        channel.close().sync()
+
+        then:
+        third.cause() instanceof ClosedChannelException
+        !channel.isWritable()
+
+        when:
+        def afterClose = channel.writeAndFlush(newBuf("d"))
+        afterClose.await()
+
+        then:
+        afterClose.cause() instanceof ClosedChannelException
+    }
+
+    def "test many small writes in one flush"() {
+        given:
+        int count = 5000
+        def received = new StringBuilder()
+        def latch = new CountDownLatch(1)
+        def expected = (0..<count).collect { String.format("%05d", it) }.join()
+        def server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    boolean isSharable() {
+                        return true
+                    }
+
+                    @Override
+                    void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf buf = (ByteBuf) msg
+                        synchronized (received) {
+                            received.append(buf.toString(StandardCharsets.UTF_8))
+                            if (received.length() == expected.length()) {
+                                latch.countDown()
+                            }
+                        }
+                        buf.release()
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel()
+        def client = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(server.localAddress()).sync().channel()
+
+        when:
+        def futures = (0..<count).collect { client.write(newBuf(String.format("%05d", it))) }
+        client.flush()
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        received.toString() == expected
+        futures.every { it.sync().isSuccess() }
+        client.unsafe().outboundBuffer().isEmpty()
+
+        cleanup:
+        client?.close()?.sync()
+        server?.close()?.sync()
+    }
+
+    def "test zero copy messages are sent unchanged"() {
+        given:
+        def content = new byte[1024 * 1024 + 7]
+        new Random(42).nextBytes(content)
+        def file = Files.createTempFile("cetty", ".bin")
+        Files.write(file, content)
+        def header = "HEADER".getBytes(StandardCharsets.UTF_8)
+        def received = new ByteArrayOutputStream()
+        def latch = new CountDownLatch(1)
+        def messages = [
+                fileRegion: { new DefaultFileRegion(file.toFile(), 0, content.length) },
+                mapped    : { ReadOnlyMappedByteBuf.map(file) },
+                composite : { Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(header), ReadOnlyMappedByteBuf.map(file)) }
+        ]
+        def expected = content
+        if (kind == "composite") {
+            expected = new byte[header.length + content.length]
+            System.arraycopy(header, 0, expected, 0, header.length)
+            System.arraycopy(content, 0, expected, header.length, content.length)
+        }
+        def server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    boolean isSharable() {
+                        return true
+                    }
+
+                    @Override
+                    void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf buf = (ByteBuf) msg
+                        synchronized (received) {
+                            byte[] bytes = new byte[buf.readableBytes()]
+                            buf.readBytes(bytes)
+                            received.write(bytes)
+                            if (received.size() == expected.length) {
+                                latch.countDown()
+                            }
+                        }
+                        buf.release()
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel()
+        def client = (NioSocketChannel) new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(server.localAddress()).sync().channel()
+        ReferenceCounted message = messages[kind].call()
+
+        expect:
+        // 不会被拷贝成新的buf
+        client.filterOutboundMessage(message).is(message)
+
+        when:
+        def future = client.writeAndFlush(message).sync()
+
+        then:
+        future.isSuccess()
+        latch.await(5, TimeUnit.SECONDS)
+        received.toByteArray() == expected
+        message.refCnt() == 0
+
+        cleanup:
+        client?.close()?.sync()
+        server?.close()?.sync()
+        Files.deleteIfExists(file)
+
+        where:
+        kind << ["fileRegion", "mapped", "composite"]
+    }
+
+    def "test file region shorter than the file"() {
+        given:
+        def file = Files.createTempFile("cetty", ".bin")
+        Files.write(file, "0123456789".getBytes(StandardCharsets.UTF_8))
+        def region = new DefaultFileRegion(file.toFile(), 2, 20)
+        def sink = java.nio.channels.Channels.newChannel(new ByteArrayOutputStream())
+
+        expect:
+        !region.isOpen()
+        region.transferTo(sink, 0) == 8
+        region.transferred() == 8
+
+        when:
+        region.transferTo(sink, region.transferred())
+
+        then:
+        thrown(IOException)
+
+        when:
+        region.release()
+
+        then:
+        !region.isOpen()
+
+        cleanup:
+        Files.deleteIfExists(file)
+    }
+}
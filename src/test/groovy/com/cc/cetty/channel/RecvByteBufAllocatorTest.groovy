@@ -0,0 +1,236 @@
+package com.cc.cetty.channel
+
+import com.cc.cetty.bootstrap.Bootstrap
+import com.cc.cetty.bootstrap.ServerBootstrap
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.buffer.PooledByteBufAllocator
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioServerSocketChannel
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author cc
+ * @date 2023/12/11
+ */
+class RecvByteBufAllocatorTest extends Specification {
+
+    /**
+     * 模拟一次读事件，每次读到bytes中的一个值
+     */
+    private static void read(RecvByteBufAllocator.Handle handle, int... bytes) {
+        handle.reset()
+        for (int b : bytes) {
+            handle.attemptedBytesRead(handle.guess())
+            handle.lastBytesRead(Math.min(b, handle.guess()))
+            handle.incMessagesRead(1)
+        }
+        handle.readComplete()
+    }
+
+    def "test adaptive grows on full reads"() {
+        given:
+        def handle = new AdaptiveRecvByteBufAllocator(64, 1024, 65536).newHandle()
+
+        expect:
+        handle.guess() == 1024
+
+        when:
+        // 读满了马上增长，同一次读事件中的下一次读就用更大的buf
+        handle.reset()
+        handle.attemptedBytesRead(1024)
+        handle.lastBytesRead(1024)
+
+        then:
+        handle.guess() == 16384
+
+        when:
+        read(handle, 100000)
+
+        then:
+        handle.guess() == 65536
+
+        when:
+        read(handle, 100000)
+
+        then:
+        // 不超过最大值
+        handle.guess() == 65536
+    }
+
+    def "test adaptive shrinks after two small reads"() {
+        given:
+        def handle = new AdaptiveRecvByteBufAllocator(64, 2048, 65536).newHandle()
+
+        when:
+        read(handle, 100)
+
+        then:
+        handle.guess() == 2048
+
+        when:
+        read(handle, 100)
+
+        then:
+        handle.guess() == 1024
+
+        when:
+        // 中间有一次不算小的读，重新计数
+        read(handle, 100)
+        read(handle, 800)
+        read(handle, 100)
+
+        then:
+        handle.guess() == 1024
+
+        when:
+        60.times { read(handle, 1) }
+
+        then:
+        // 不低于最小值
+        handle.guess() == 64
+    }
+
+    def "test continue reading"() {
+        given:
+        def allocator = new AdaptiveRecvByteBufAllocator().maxMessagesPerRead(4)
+        def handle = allocator.newHandle()
+        handle.reset()
+
+        when:
+        int reads = 0
+        while (true) {
+            handle.attemptedBytesRead(handle.guess())
+            handle.lastBytesRead(handle.guess())
+            handle.incMessagesRead(1)
+            reads++
+            if (!handle.continueReading()) {
+                break
+            }
+        }
+
+        then:
+        reads == 4
+
+        when:
+        handle.reset()
+        handle.attemptedBytesRead(handle.guess())
+        handle.lastBytesRead(10)
+        handle.incMessagesRead(1)
+
+        then:
+        // 没读满说明暂时没有数据了
+        !handle.continueReading()
+
+        when:
+        def fixed = new FixedRecvByteBufAllocator(100).newHandle()
+        fixed.reset()
+        def buf = fixed.allocate(PooledByteBufAllocator.DEFAULT)
+
+        then:
+        fixed.guess() == 100
+        buf.writableBytes() == 100
+
+        cleanup:
+        buf?.release()
+    }
+
+    def "test server channel reads are capped"() {
+        given:
+        def handle = new ServerChannelRecvByteBufAllocator().maxMessagesPerRead(2).newHandle()
+        handle.reset()
+
+        when:
+        handle.incMessagesRead(1)
+
+        then:
+        // 不看读到的字节数
+        handle.continueReading()
+
+        when:
+        handle.incMessagesRead(1)
+
+        then:
+        !handle.continueReading()
+    }
+
+    def "test buffer size follows the traffic"() {
+        given:
+        def group = new NioEventLoopGroup(1)
+        def sizes = new CopyOnWriteArrayList<Integer>()
+        def childRef = new CopyOnWriteArrayList<Channel>()
+        def received = new AtomicInteger()
+        int total = 4 * 1024 * 1024
+        def latch = new CountDownLatch(1)
+        def server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    boolean isSharable() {
+                        return true
+                    }
+
+                    @Override
+                    void channelActive(ChannelHandlerContext ctx) {
+                        childRef << ctx.channel()
+                        ctx.fireChannelActive()
+                    }
+
+                    @Override
+                    void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf buf = (ByteBuf) msg
+                        sizes << buf.capacity()
+                        if (received.addAndGet(buf.readableBytes()) == total) {
+                            latch.countDown()
+                        }
+                        buf.release()
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel()
+        def client = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(server.localAddress()).sync().channel()
+
+        when:
+        client.writeAndFlush(PooledByteBufAllocator.DEFAULT.directBuffer(total).writeZero(total)).sync()
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        sizes.first() == AdaptiveRecvByteBufAllocator.DEFAULT_INITIAL
+        sizes.max() == AdaptiveRecvByteBufAllocator.DEFAULT_MAXIMUM
+
+        when:
+        // 批量传输结束之后只有很小的消息，buf大小逐渐缩小
+        def child = childRef.first()
+        sizes.clear()
+        80.times {
+            received.set(0)
+            latch = new CountDownLatch(1)
+            total = 10
+            client.writeAndFlush(PooledByteBufAllocator.DEFAULT.directBuffer(10).writeZero(10)).sync()
+            assert latch.await(5, TimeUnit.SECONDS)
+        }
+        int guess = child.eventLoop().submit({ child.unsafe().recvBufAllocHandle().guess() } as Callable).sync().getNow()
+
+        then:
+        sizes.last() < AdaptiveRecvByteBufAllocator.DEFAULT_MAXIMUM
+        guess == AdaptiveRecvByteBufAllocator.DEFAULT_MINIMUM
+
+        cleanup:
+        client?.close()?.sync()
+        server?.close()?.sync()
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+}
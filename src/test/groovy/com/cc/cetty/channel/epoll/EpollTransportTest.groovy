@@ -0,0 +1,158 @@
+package com.cc.cetty.channel.epoll
+
+import com.cc.cetty.bootstrap.Bootstrap
+import com.cc.cetty.bootstrap.ServerBootstrap
+import com.cc.cetty.bootstrap.Transport
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.channel.Channel
+import com.cc.cetty.channel.EventLoop
+import com.cc.cetty.handler.ChannelHandler
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * epoll 只在 Linux、JDK 21 并开启 --enable-preview 时可用，这些用例通过 gradle epollTest 运行
+ * 平时的 test 任务只检查回退到 nio
+ *
+ * @author cc
+ * @date 2023/12/17
+ */
+class EpollTransportTest extends Specification {
+
+    @ChannelHandler.Sharable
+    static class EchoHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.write(msg)
+        }
+
+        @Override
+        void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush()
+        }
+    }
+
+    EpollEventLoopGroup boss
+
+    EpollEventLoopGroup worker
+
+    def setup() {
+        if (Epoll.isAvailable()) {
+            boss = new EpollEventLoopGroup(1)
+            worker = new EpollEventLoopGroup(2)
+        }
+    }
+
+    def cleanup() {
+        if (boss != null) {
+            boss.shutdownGracefully()
+            worker.shutdownGracefully()
+            boss.awaitTermination(5, TimeUnit.SECONDS)
+            worker.awaitTermination(5, TimeUnit.SECONDS)
+        }
+    }
+
+    private Channel bindEchoServer(String host) {
+        def future = new ServerBootstrap()
+                .group(boss, worker)
+                .channel(EpollServerSocketChannel)
+                .childHandler(new EchoHandler())
+                .bind(host, 0)
+        future.sync()
+        return future.channel()
+    }
+
+    private String echo(String host, Channel server, String text) {
+        StringBuilder received = new StringBuilder()
+        CountDownLatch latch = new CountDownLatch(1)
+        ChannelHandler client = new ChannelInboundHandlerAdapter() {
+            @Override
+            void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ByteBuf buf = (ByteBuf) msg
+                received.append(buf.toString(StandardCharsets.UTF_8))
+                buf.release()
+                if (received.length() >= text.length()) {
+                    latch.countDown()
+                }
+            }
+        }
+        def connect = new Bootstrap()
+                .group(worker)
+                .channel(EpollSocketChannel)
+                .handler(client)
+                .connect(new InetSocketAddress(host, server.localAddress().port))
+        connect.sync()
+        connect.channel().writeAndFlush(text.getBytes(StandardCharsets.UTF_8)).sync()
+        assert latch.await(10, TimeUnit.SECONDS)
+        connect.channel().close().sync()
+        return received.toString()
+    }
+
+    def "test fall back to nio when epoll is unavailable"() {
+        expect:
+        Transport.NIO.isAvailable()
+        Epoll.isAvailable() || Epoll.unavailabilityCause() != null
+        Epoll.isAvailable() || Transport.preferred() == Transport.NIO
+    }
+
+    @Requires({ Epoll.isAvailable() })
+    def "test echo over loopback"() {
+        given:
+        Channel server = bindEchoServer(host)
+        // 大于socket缓冲区，边沿触发下要读写到EAGAIN，并等EPOLLOUT继续写
+        String text = "cetty" * (1 << 20)
+
+        expect:
+        server.isActive()
+        echo(host, server, "hello") == "hello"
+        echo(host, server, text) == text
+
+        cleanup:
+        server.close().sync()
+
+        where:
+        host << ["127.0.0.1", "::1"]
+    }
+
+    @Requires({ Epoll.isAvailable() })
+    def "test connect refused"() {
+        when:
+        def connect = new Bootstrap()
+                .group(worker)
+                .channel(EpollSocketChannel)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(new InetSocketAddress("127.0.0.1", 1))
+
+        then:
+        connect.await(5, TimeUnit.SECONDS)
+        !connect.isSuccess()
+        connect.cause() instanceof ConnectException
+    }
+
+    @Requires({ Epoll.isAvailable() })
+    def "test scheduled tasks wake the loop through timerfd"() {
+        given:
+        EventLoop loop = worker.next()
+        CountDownLatch cancelled = new CountDownLatch(1)
+        CountDownLatch latch = new CountDownLatch(1)
+
+        when:
+        // 先挂一个远的任务再取消，timerfd要改成更近的截止时间
+        def far = loop.schedule({ cancelled.countDown() }, 1, TimeUnit.SECONDS)
+        far.cancel(false)
+        long start = System.nanoTime()
+        loop.schedule({ latch.countDown() }, 20, TimeUnit.MILLISECONDS)
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 20
+        !cancelled.await(1200, TimeUnit.MILLISECONDS)
+    }
+}
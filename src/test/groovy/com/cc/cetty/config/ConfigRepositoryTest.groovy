@@ -0,0 +1,158 @@
+package com.cc.cetty.config
+
+import com.cc.cetty.async.DefaultEventExecutor
+import com.cc.cetty.async.ScheduledFuture
+import com.cc.cetty.buffer.PooledByteBufAllocator
+import com.cc.cetty.channel.nio.NioEventLoop
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioSocketChannel
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/12/17
+ */
+class ConfigRepositoryTest extends Specification {
+
+    def "test builder validates and loads properties"() {
+        given:
+        Properties properties = new Properties()
+        properties.setProperty("cetty.ioRatio", "70")
+        properties.setProperty("writeBufferHighWaterMark", " 131072 ")
+
+        when:
+        CettyConfig config = CettyConfig.builder().load(properties).build()
+
+        then:
+        config.ioRatio() == 70
+        config.get(ChannelOption.IO_RATIO) == 70
+        config.writeBufferWaterMark().high() == 131072
+        config.writeBufferWaterMark().low() == CettyConfig.defaults().writeBufferWaterMark().low()
+
+        when:
+        CettyConfig.builder().option(ChannelOption.IO_RATIO, 0).build()
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        Properties unknown = new Properties()
+        unknown.setProperty("cetty.noSuchOption", "1")
+        CettyConfig.builder().load(unknown)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "test reload bumps version and keeps the current config on bad input"() {
+        given:
+        ConfigRepository repository = new ConfigRepository(CettyConfig.defaults())
+        List<CettyConfig> published = []
+        repository.addListener { published << it }
+        Properties bad = new Properties()
+        bad.setProperty("ioRatio", "abc")
+
+        when:
+        repository.update { it.option(ChannelOption.IO_RATIO, 80) }
+        Properties properties = new Properties()
+        properties.setProperty("maxMessagesPerRead", "4")
+        CettyConfig reloaded = repository.reload(properties)
+        repository.reload(bad)
+
+        then:
+        thrown(IllegalArgumentException)
+        published*.version() == [1L, 2L]
+        repository.current().is(reloaded)
+        // 文件中没写的回到基础配置
+        reloaded.ioRatio() == CettyConfig.defaults().ioRatio()
+        reloaded.maxMessagesPerRead() == 4
+    }
+
+    def "test watch reloads a changed file"() {
+        given:
+        ConfigRepository repository = new ConfigRepository(CettyConfig.defaults())
+        Path file = Files.createTempFile("cetty", ".properties")
+        DefaultEventExecutor executor = new DefaultEventExecutor()
+
+        when:
+        Files.writeString(file, "ioRatio=30\n")
+        ScheduledFuture<?> watch = repository.watch(file, executor, 10, TimeUnit.MILLISECONDS)
+        long deadline = System.currentTimeMillis() + 5000
+        while (repository.current().ioRatio() != 30 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+
+        then:
+        repository.current().ioRatio() == 30
+        repository.current().version() == 1
+
+        cleanup:
+        watch?.cancel(false)
+        executor.shutdownGracefully()
+        Files.deleteIfExists(file)
+    }
+
+    def "test event loop and channels follow the published config"() {
+        given:
+        NioEventLoopGroup group = new NioEventLoopGroup(1)
+        NioEventLoop loop = (NioEventLoop) group.next()
+        NioSocketChannel channel = new NioSocketChannel()
+        group.register(channel).sync()
+
+        when:
+        CettyConfig config = ConfigRepository.DEFAULT.update {
+            it.option(ChannelOption.IO_RATIO, 80).option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 256 * 1024)
+        }
+        // 新快照经过任务队列交给事件循环，排在它后面的任务一定能看到
+        List result = loop.submit({ [loop.config(), loop.getIoRatio()] } as Callable).get()
+
+        then:
+        result[0].is(config)
+        result[1] == 80
+        channel.writeBufferWaterMark().high() == 256 * 1024
+
+        cleanup:
+        ConfigRepository.DEFAULT.reload(new Properties())
+        channel.close().sync()
+        group.shutdownGracefully()
+    }
+
+    def "test event loop group reads its own repository"() {
+        given:
+        ConfigRepository repository = new ConfigRepository(CettyConfig.defaults())
+        NioEventLoopGroup group = new NioEventLoopGroup(1, repository)
+        NioEventLoop loop = (NioEventLoop) group.next()
+
+        when:
+        CettyConfig config = repository.update { it.option(ChannelOption.IO_RATIO, 70) }
+        List result = loop.submit({ [loop.config(), loop.getIoRatio()] } as Callable).get()
+
+        then:
+        result[0].is(config)
+        result[1] == 70
+        !ConfigRepository.DEFAULT.current().is(config)
+
+        cleanup:
+        group.shutdownGracefully()
+    }
+
+    def "test allocator takes arena counts from the config"() {
+        given:
+        CettyConfig config = CettyConfig.builder()
+                .option(ChannelOption.ALLOCATOR_NUM_HEAP_ARENAS, 1)
+                .option(ChannelOption.ALLOCATOR_NUM_DIRECT_ARENAS, 3)
+                .build()
+
+        when:
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, config)
+
+        then:
+        allocator.numHeapArenas() == 1
+        allocator.numDirectArenas() == 3
+    }
+}
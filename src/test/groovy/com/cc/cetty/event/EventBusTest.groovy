@@ -0,0 +1,157 @@
+package com.cc.cetty.event
+
+import com.cc.cetty.async.DefaultEventExecutorGroup
+import com.cc.cetty.async.EventExecutor
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author cc
+ * @date 2023/12/18
+ */
+class EventBusTest extends Specification {
+
+    static final EventType<CountingEvent> TICK = EventType.valueOf(EventBusTest, "tick")
+
+    def "test subscribers run on their own loop in publish order and events are recycled"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(2)
+        EventExecutor first = group.next()
+        EventExecutor second = group.next()
+        EventBus bus = new EventBus(64)
+        AtomicInteger freed = new AtomicInteger()
+        List<Integer> received = new CopyOnWriteArrayList<>()
+        AtomicInteger secondCount = new AtomicInteger()
+        AtomicInteger wrongThread = new AtomicInteger()
+        bus.subscribe(TICK, first, { CountingEvent e ->
+            if (!first.inEventLoop()) {
+                wrongThread.incrementAndGet()
+            }
+            received << e.seq
+        } as EventSubscriber<CountingEvent>)
+        bus.subscribe(TICK, second, { CountingEvent e ->
+            if (!second.inEventLoop()) {
+                wrongThread.incrementAndGet()
+            }
+            secondCount.incrementAndGet()
+        } as EventSubscriber<CountingEvent>)
+
+        when:
+        for (int i = 0; i < 1000; i++) {
+            assert bus.publish(new CountingEvent(TICK, i, freed)) == 2
+        }
+        long deadline = System.currentTimeMillis() + 5000
+        while (freed.get() < 1000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+
+        then:
+        freed.get() == 1000
+        received == (0..<1000).toList()
+        secondCount.get() == 1000
+        wrongThread.get() == 0
+
+        cleanup:
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def "test unsubscribe and events without subscribers"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        EventBus bus = new EventBus()
+        AtomicInteger freed = new AtomicInteger()
+        EventSubscriber<CountingEvent> subscriber = { } as EventSubscriber<CountingEvent>
+
+        expect:
+        !bus.hasSubscribers(TICK)
+        bus.publish(new CountingEvent(TICK, 0, freed)) == 0
+        freed.get() == 1
+
+        when:
+        bus.subscribe(TICK, group.next(), subscriber)
+
+        then:
+        bus.hasSubscribers(TICK)
+        bus.unsubscribe(TICK, subscriber)
+        !bus.unsubscribe(TICK, subscriber)
+        !bus.hasSubscribers(TICK)
+
+        when:
+        CountingEvent event = new CountingEvent(TICK, 0, freed)
+        bus.publish(event)
+        bus.publish(event)
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def "test events for a terminated loop are discarded"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        EventBus bus = new EventBus()
+        AtomicInteger freed = new AtomicInteger()
+        AtomicInteger delivered = new AtomicInteger()
+        bus.subscribe(TICK, group.next(), { delivered.incrementAndGet() } as EventSubscriber<CountingEvent>)
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+
+        when:
+        bus.publish(new CountingEvent(TICK, 0, freed))
+
+        then:
+        freed.get() == 1
+        delivered.get() == 0
+    }
+
+    def "test events racing with shutdown are released exactly once"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        EventBus bus = new EventBus(16)
+        AtomicInteger freed = new AtomicInteger()
+        AtomicInteger delivered = new AtomicInteger()
+        bus.subscribe(TICK, group.next(), { delivered.incrementAndGet() } as EventSubscriber<CountingEvent>)
+        List<Thread> publishers = (0..<4).collect {
+            Thread.start {
+                for (int i = 0; i < 2000; i++) {
+                    bus.publish(new CountingEvent(TICK, i, freed))
+                }
+            }
+        }
+
+        when:
+        group.shutdownGracefully()
+        publishers*.join()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+
+        then:
+        // 多个线程同时消费时会重复投递、重复回收，计数会超过发布的个数
+        freed.get() == 8000
+        delivered.get() <= 8000
+    }
+
+    static final class CountingEvent extends Event {
+
+        final int seq
+
+        final AtomicInteger freed
+
+        CountingEvent(EventType<CountingEvent> type, int seq, AtomicInteger freed) {
+            init(type)
+            this.seq = seq
+            this.freed = freed
+        }
+
+        @Override
+        protected void deallocate() {
+            freed.incrementAndGet()
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.cc.cetty.handler
+
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.buffer.Unpooled
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/12/12
+ */
+class ByteToMessageDecoderTest extends Specification {
+
+    /**
+     * 放在解码器后面，记录解码出的帧
+     */
+    static class Collector extends ChannelInboundHandlerAdapter {
+
+        List<ByteBuf> frames = []
+
+        List<Object> others = []
+
+        @Override
+        void channelRead(ChannelHandlerContext ctx, Object msg) {
+            msg instanceof ByteBuf ? frames << (ByteBuf) msg : others << msg
+        }
+
+        /**
+         * @return 帧的内容，同时释放帧
+         */
+        List<String> drain() {
+            List<String> result = frames.collect { it.toString(StandardCharsets.US_ASCII) }
+            frames.each { it.release() }
+            frames.clear()
+            return result
+        }
+    }
+
+    NioEventLoopGroup group = new NioEventLoopGroup(1)
+
+    NioSocketChannel channel = new NioSocketChannel()
+
+    Collector collector = new Collector()
+
+    def cleanup() {
+        channel.unsafe().closeForcibly()
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    private void inLoop(Closure closure) {
+        channel.eventLoop().submit({ closure.call(); null } as Callable).sync()
+    }
+
+    private void init(ByteToMessageDecoder decoder) {
+        channel.pipeline().addLast(decoder, collector)
+        group.register(channel).sync()
+    }
+
+    private static ByteBuf frames(String... contents) {
+        ByteBuf buf = Unpooled.buffer(64)
+        contents.each {
+            buf.writeInt(it.length())
+            buf.writeBytes(it.getBytes(StandardCharsets.US_ASCII))
+        }
+        return buf
+    }
+
+    def "test frames within one read share the read buffer"() {
+        given:
+        init(new LengthFieldBasedFrameDecoder(1024, 0, 4, 0, 4))
+        ByteBuf read = frames("hello", "cetty")
+
+        when:
+        inLoop { channel.pipeline().fireChannelRead(read) }
+
+        then:
+        collector.frames.size() == 2
+        // 累积buf已经释放，只剩两个切片的引用
+        read.refCnt() == 2
+        collector.frames.every { it.refCnt() == 2 }
+
+        when:
+        collector.frames[0].setByte(0, (int) 'J')
+
+        then:
+        read.getByte(4) == (byte) 'J'
+        collector.drain() == ["Jello", "cetty"]
+        read.refCnt() == 0
+    }
+
+    def "test frames split across reads"() {
+        given:
+        ByteToMessageDecoder decoder = new LengthFieldBasedFrameDecoder(1024, 0, 4, 0, 4)
+        decoder.setCumulator(cumulator)
+        init(decoder)
+        ByteBuf all = frames("first", "second frame", "3")
+        List<ByteBuf> reads = []
+        while (all.isReadable()) {
+            int length = Math.min(chunk, all.readableBytes())
+            reads << Unpooled.buffer(length).writeBytes(all, all.readerIndex(), length)
+            all.skipBytes(length)
+        }
+        all.release()
+
+        when:
+        inLoop { reads.each { channel.pipeline().fireChannelRead(it) } }
+
+        then:
+        collector.drain() == ["first", "second frame", "3"]
+        reads.every { it.refCnt() == 0 }
+        decoder.internalBuffer() == null
+
+        where:
+        cumulator                                | chunk
+        ByteToMessageDecoder.MERGE_CUMULATOR     | 1
+        ByteToMessageDecoder.MERGE_CUMULATOR     | 7
+        ByteToMessageDecoder.COMPOSITE_CUMULATOR | 1
+        ByteToMessageDecoder.COMPOSITE_CUMULATOR | 7
+    }
+
+    def "test read bytes are discarded after threshold"() {
+        given:
+        ByteToMessageDecoder decoder = new FixedLengthFrameDecoder(4)
+        decoder.setDiscardAfterReads(2)
+        init(decoder)
+
+        when:
+        inLoop {
+            channel.pipeline().fireChannelRead(Unpooled.buffer(8).writeBytes("abcdef".getBytes(StandardCharsets.US_ASCII)))
+            collector.drain()
+            channel.pipeline().fireChannelRead(Unpooled.buffer(1).writeBytes("g".getBytes(StandardCharsets.US_ASCII)))
+        }
+
+        then:
+        // 第二次读合并进了同一个buf，读满两次后已读的abcd被丢掉
+        decoder.internalBuffer().readerIndex() == 0
+        decoder.internalBuffer().toString(StandardCharsets.US_ASCII) == "efg"
+    }
+
+    def "test read bytes are kept while frames reference them"() {
+        given:
+        ByteToMessageDecoder decoder = new FixedLengthFrameDecoder(4)
+        decoder.setDiscardAfterReads(1)
+        init(decoder)
+
+        when:
+        inLoop {
+            channel.pipeline().fireChannelRead(Unpooled.buffer(8).writeBytes("abcdef".getBytes(StandardCharsets.US_ASCII)))
+            channel.pipeline().fireChannelRead(Unpooled.buffer(1).writeBytes("g".getBytes(StandardCharsets.US_ASCII)))
+            channel.pipeline().fireChannelReadComplete()
+        }
+
+        then:
+        decoder.internalBuffer().readerIndex() == 4
+        collector.drain() == ["abcd"]
+    }
+
+    def "test remaining bytes are passed on when removed"() {
+        given:
+        ByteToMessageDecoder decoder = new FixedLengthFrameDecoder(4)
+        init(decoder)
+
+        when:
+        inLoop {
+            channel.pipeline().fireChannelRead(Unpooled.buffer(16).writeBytes("abcdef".getBytes(StandardCharsets.US_ASCII)))
+            channel.pipeline().remove(decoder)
+        }
+
+        then:
+        collector.drain() == ["abcd", "ef"]
+    }
+
+    def "test non buffer messages pass through"() {
+        given:
+        init(new FixedLengthFrameDecoder(4))
+
+        when:
+        inLoop { channel.pipeline().fireChannelRead("message") }
+
+        then:
+        collector.others == ["message"]
+    }
+}
@@ -0,0 +1,128 @@
+package com.cc.cetty.handler
+
+import com.cc.cetty.channel.ChannelPromise
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/12/09
+ */
+class FlushConsolidationHandlerTest extends Specification {
+
+    /**
+     * 放在最前面，记录真正到达channel的write和flush
+     */
+    static class Sink extends ChannelOutboundHandlerAdapter {
+
+        int writes
+
+        int flushes
+
+        @Override
+        void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            writes++
+            promise.setSuccess()
+        }
+
+        @Override
+        void flush(ChannelHandlerContext ctx) {
+            flushes++
+        }
+    }
+
+    /**
+     * 每读到一条消息就回复一次并flush
+     */
+    static class Responder extends ChannelInboundHandlerAdapter {
+
+        @Override
+        void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.writeAndFlush(msg)
+        }
+    }
+
+    NioEventLoopGroup group = new NioEventLoopGroup(1)
+
+    NioSocketChannel channel = new NioSocketChannel()
+
+    Sink sink = new Sink()
+
+    def cleanup() {
+        channel.unsafe().closeForcibly()
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    private void inLoop(Closure closure) {
+        channel.eventLoop().submit({ closure.call(); null } as Callable).sync()
+    }
+
+    private void init(FlushConsolidationHandler handler) {
+        channel.pipeline().addLast(sink, handler, new Responder())
+        group.register(channel).sync()
+    }
+
+    def "test flushes during read are merged"() {
+        given:
+        init(new FlushConsolidationHandler(explicitFlushAfterFlushes))
+
+        when:
+        inLoop {
+            reads.times { channel.pipeline().fireChannelRead(it) }
+            assert sink.flushes == expectedBeforeComplete
+            channel.pipeline().fireChannelReadComplete()
+        }
+
+        then:
+        sink.writes == reads
+        sink.flushes == expectedFlushes
+
+        where:
+        explicitFlushAfterFlushes | reads | expectedBeforeComplete | expectedFlushes
+        256                       | 10    | 0                      | 1
+        3                         | 7     | 2                      | 3
+        3                         | 6     | 2                      | 2
+    }
+
+    def "test flush outside of read"() {
+        given:
+        init(new FlushConsolidationHandler(256, consolidate))
+
+        when:
+        inLoop {
+            5.times { channel.writeAndFlush(it) }
+        }
+        // 合并的flush在之后的任务中执行
+        inLoop {}
+
+        then:
+        sink.writes == 5
+        sink.flushes == expectedFlushes
+
+        where:
+        consolidate | expectedFlushes
+        false       | 5
+        true        | 1
+    }
+
+    def "test pending flush on close and remove"() {
+        given:
+        def handler = new FlushConsolidationHandler()
+        init(handler)
+
+        when:
+        inLoop {
+            channel.pipeline().fireChannelRead("a")
+            channel.pipeline().remove(handler)
+        }
+
+        then:
+        sink.flushes == 1
+    }
+}
@@ -0,0 +1,177 @@
+package com.cc.cetty.handler
+
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.buffer.Unpooled
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/12/12
+ */
+class FrameDecoderTest extends Specification {
+
+    /**
+     * 放在解码器后面，记录帧的内容和异常
+     */
+    static class Collector extends ChannelInboundHandlerAdapter {
+
+        List<String> frames = []
+
+        List<Throwable> errors = []
+
+        @Override
+        void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf frame = (ByteBuf) msg
+            frames << frame.toString(StandardCharsets.ISO_8859_1)
+            frame.release()
+        }
+
+        @Override
+        void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            errors << cause
+        }
+    }
+
+    NioEventLoopGroup group = new NioEventLoopGroup(1)
+
+    NioSocketChannel channel = new NioSocketChannel()
+
+    Collector collector = new Collector()
+
+    def cleanup() {
+        channel.unsafe().closeForcibly()
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    private void init(ByteToMessageDecoder decoder) {
+        channel.pipeline().addLast(decoder, collector)
+        group.register(channel).sync()
+    }
+
+    /**
+     * 每个参数作为一次读
+     */
+    private void read(Object... reads) {
+        channel.eventLoop().submit({
+            reads.each {
+                byte[] bytes = it instanceof String ? ((String) it).getBytes(StandardCharsets.ISO_8859_1) : (byte[]) it
+                channel.pipeline().fireChannelRead(Unpooled.buffer(bytes.length).writeBytes(bytes))
+            }
+            channel.pipeline().fireChannelReadComplete()
+            null
+        } as Callable).sync()
+    }
+
+    /**
+     * 数字按字节，字符串按字符
+     */
+    private static byte[] bytes(Object... values) {
+        return values.collect { it instanceof String ? (byte) ((String) it).charAt(0) : (byte) (int) it } as byte[]
+    }
+
+    def "test length field decoder"() {
+        given:
+        init(new LengthFieldBasedFrameDecoder(64, offset, length, adjustment, strip))
+
+        when:
+        read(bytes(input as Object[]))
+
+        then:
+        collector.frames == [new String(bytes(output as Object[]), StandardCharsets.ISO_8859_1)]
+
+        where:
+        offset | length | adjustment | strip | input                                 | output
+        0      | 2      | 0          | 0     | [0, 3, 'a', 'b', 'c']                 | [0, 3, 'a', 'b', 'c']
+        0      | 2      | 0          | 2     | [0, 3, 'a', 'b', 'c']                 | ['a', 'b', 'c']
+        0      | 2      | -2         | 0     | [0, 5, 'a', 'b', 'c']                 | [0, 5, 'a', 'b', 'c']
+        2      | 3      | 0          | 0     | [0xCA, 0xFE, 0, 0, 2, 'a', 'b']       | [0xCA, 0xFE, 0, 0, 2, 'a', 'b']
+        0      | 3      | 2          | 5     | [0, 0, 2, 0xCA, 0xFE, 'a', 'b']       | ['a', 'b']
+        1      | 1      | 1          | 3     | [0xCA, 2, 0xFE, 'a', 'b']             | ['a', 'b']
+        0      | 1      | 0          | 1     | [1, 'x']                              | ['x']
+        0      | 8      | 0          | 8     | [0, 0, 0, 0, 0, 0, 0, 1, 'y']         | ['y']
+    }
+
+    def "test length field decoder discards too long frames"() {
+        given:
+        init(new LengthFieldBasedFrameDecoder(8, 0, 1, 0, 1, failFast))
+
+        when:
+        // 不快速失败时，异常在丢弃完的那次解码中抛出，后面的数据等下一次读再解码
+        read(bytes(10, 1, 2, 3), bytes(4, 5, 6, 7, 8, 9), bytes(10, 2, 'o', 'k'), bytes(2, 'o', 'k'))
+
+        then:
+        collector.frames == ["ok", "ok"]
+        collector.errors.size() == 1
+        collector.errors[0] instanceof TooLongFrameException
+        collector.errors[0].message.contains("exceeds 8: 11")
+
+        where:
+        failFast << [true, false]
+    }
+
+    def "test length field decoder rejects invalid arguments"() {
+        when:
+        new LengthFieldBasedFrameDecoder(64, 0, 5)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        new LengthFieldBasedFrameDecoder(4, 2, 4)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "test line decoder"() {
+        given:
+        init(new LineBasedFrameDecoder(16, strip, false))
+
+        when:
+        read("first\r", "\nsec", "ond\nthi", "rd\r\n")
+
+        then:
+        collector.frames == expected
+
+        where:
+        strip | expected
+        true  | ["first", "second", "third"]
+        false | ["first\r\n", "second\n", "third\r\n"]
+    }
+
+    def "test line decoder discards too long lines"() {
+        given:
+        init(new LineBasedFrameDecoder(4, true, failFast))
+
+        when:
+        read("0123", "456", "78\nok\n")
+
+        then:
+        collector.frames == ["ok"]
+        collector.errors.size() == 1
+        collector.errors[0] instanceof TooLongFrameException
+        collector.errors[0].message.contains(failFast ? "over 7" : "(9)")
+
+        where:
+        failFast << [true, false]
+    }
+
+    def "test fixed length decoder"() {
+        given:
+        init(new FixedLengthFrameDecoder(3))
+
+        when:
+        read("A", "BC", "DEFG", "HI", "J")
+
+        then:
+        collector.frames == ["ABC", "DEF", "GHI"]
+    }
+}
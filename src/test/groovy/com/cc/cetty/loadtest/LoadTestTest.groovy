@@ -0,0 +1,68 @@
+package com.cc.cetty.loadtest
+
+import com.cc.cetty.bootstrap.Transport
+import spock.lang.Specification
+
+/**
+ * @author cc
+ * @date 2023/12/19
+ */
+class LoadTestTest extends Specification {
+
+    def "test parse options"() {
+        when:
+        LoadTestOptions options = LoadTestOptions.parse("--mode=rpc", "--connections=4", "--depth=2", "--size=64", "--rate=100")
+
+        then:
+        options.mode() == LoadTestOptions.Mode.RPC
+        options.connections() == 4
+        options.depth() == 2
+        options.size() == 64
+        options.rate() == 100
+        options.threads() == 2
+        LoadTestOptions.parse().rate() == 1000
+        LoadTestOptions.parse().transport() == Transport.preferred()
+        LoadTestOptions.parse("--transport=nio").transport() == Transport.NIO
+
+        when:
+        LoadTestOptions.parse("--depth=0")
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        LoadTestOptions.parse("--noSuchOption=1")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "test load test over loopback"() {
+        given:
+        LoadTestOptions options = new LoadTestOptions()
+                .mode(mode)
+                .connections(2)
+                .depth(4)
+                .size(100)
+                .threads(1)
+                .rate(rate)
+                .warmupSeconds(0)
+                .durationSeconds(1)
+
+        when:
+        LoadTestResult result = new LoadTest(options).run()
+
+        then:
+        result.messages() > 0
+        result.messagesPerSecond() > 0
+        result.latency().valueAtPercentile(50) <= result.latency().valueAtPercentile(99)
+        result.coordinatedOmissionCorrected() == (rate > 0)
+
+        where:
+        mode                      | rate
+        LoadTestOptions.Mode.ECHO | 0
+        LoadTestOptions.Mode.RPC  | 0
+        LoadTestOptions.Mode.ECHO | 1000
+        LoadTestOptions.Mode.RPC  | 1000
+    }
+}
@@ -0,0 +1,188 @@
+package com.cc.cetty.local
+
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.buffer.PooledByteBufAllocator
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 任务之间保留map和只清理设置过的下标的收益见 src/jmh 下的 FastThreadLocalExecutorBenchmark
+ *
+ * @author cc
+ * @date 2023/12/15
+ */
+class FastThreadLocalExecutorsTest extends Specification {
+
+    def "test wrapped executor clears values between tasks and keeps the map"() {
+        given:
+        AtomicInteger removed = new AtomicInteger()
+        FastThreadLocal<String> local = new FastThreadLocal<String>() {
+            @Override
+            protected void onRemoval(String value) throws Exception {
+                removed.incrementAndGet()
+            }
+        }
+        FastThreadLocalInt primitive = new FastThreadLocalInt()
+        ExecutorService executor = FastThreadLocalExecutors.wrap(Executors.newSingleThreadExecutor())
+
+        when:
+        InternalThreadLocalMap first = executor.submit({
+            local.set("first")
+            primitive.set(42)
+            InternalThreadLocalMap.getMap()
+        } as Callable).get()
+        List second = executor.submit({
+            [InternalThreadLocalMap.getMap(), local.getIfExists(), primitive.isSet(), FastThreadLocal.size()]
+        } as Callable).get()
+
+        then:
+        removed.get() == 1
+        second[0].is(first)
+        second[1] == null
+        !second[2]
+        second[3] == 0
+
+        cleanup:
+        executor.shutdown()
+        local.destroy()
+        primitive.destroy()
+    }
+
+    def "test wrapped executor keeps values set before the task"() {
+        given:
+        AtomicInteger removed = new AtomicInteger()
+        FastThreadLocal<String> before = new FastThreadLocal<String>() {
+            @Override
+            protected void onRemoval(String value) throws Exception {
+                removed.incrementAndGet()
+            }
+        }
+        FastThreadLocal<String> during = new FastThreadLocal<>()
+        FastThreadLocalInt primitive = new FastThreadLocalInt()
+        ExecutorService raw = Executors.newSingleThreadExecutor()
+        ExecutorService executor = FastThreadLocalExecutors.wrap(raw)
+
+        when:
+        raw.submit({ before.set("worker") } as Runnable).get()
+        executor.submit({
+            before.get()
+            during.set("task")
+            primitive.set(1)
+        } as Runnable).get()
+        List values = raw.submit({
+            [before.getIfExists(), during.getIfExists(), primitive.isSet()]
+        } as Callable).get()
+
+        then:
+        removed.get() == 0
+        values == ["worker", null, false]
+
+        cleanup:
+        raw.shutdown()
+        before.destroy()
+        during.destroy()
+        primitive.destroy()
+    }
+
+    def "test wrapped executor does not clear on the submitting thread"() {
+        given:
+        FastThreadLocal<String> local = new FastThreadLocal<>()
+        Executor direct = FastThreadLocalExecutors.wrap({ Runnable r -> r.run() } as Executor)
+        local.set("caller")
+
+        when:
+        direct.execute({ local.set("task") })
+
+        then:
+        local.getIfExists() == "task"
+
+        cleanup:
+        local.remove()
+        local.destroy()
+    }
+
+    def "test wrapped executor keeps thread caches and counter cells across tasks"() {
+        given:
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true)
+        ThreadLocalCounter counter = new ThreadLocalCounter()
+        ExecutorService executor = FastThreadLocalExecutors.wrap(Executors.newSingleThreadExecutor())
+        int tasks = 2000
+
+        when:
+        // 线程缓存和计数器的单元是persistent的，每个任务都拿到同一个对象，不会每次重新创建、重新挂cleaner
+        Set<Object> caches = Collections.newSetFromMap(new IdentityHashMap<>())
+        Set<Object> cells = Collections.newSetFromMap(new IdentityHashMap<>())
+        tasks.times {
+            List used = executor.submit({
+                ByteBuf buf = allocator.directBuffer(16)
+                buf.release()
+                counter.increment()
+                [allocator.threadCache.get(), counter.cell()]
+            } as Callable).get()
+            caches.add(used[0])
+            cells.add(used[1])
+        }
+
+        then:
+        caches.size() == 1
+        cells.size() == 1
+        allocator.metrics().directArenas().sum { it.numThreadCaches() } == 1
+        counter.liveThreads() == 1
+        counter.sum() == tasks
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test wrap is idempotent"() {
+        given:
+        ExecutorService executor = Executors.newSingleThreadExecutor()
+        Runnable task = {}
+
+        expect:
+        Runnable wrappedTask = FastThreadLocalExecutors.wrapTask(task)
+        FastThreadLocalExecutors.wrapTask(wrappedTask).is(wrappedTask)
+        ExecutorService wrapped = FastThreadLocalExecutors.wrap(executor)
+        FastThreadLocalExecutors.wrap(wrapped).is(wrapped)
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test fork join worker uses fast path and cleans up on termination"() {
+        given:
+        AtomicInteger removed = new AtomicInteger()
+        FastThreadLocal<Thread> local = new FastThreadLocal<Thread>() {
+            @Override
+            protected void onRemoval(Thread value) throws Exception {
+                removed.incrementAndGet()
+            }
+        }
+        ForkJoinPool pool = FastThreadLocalExecutors.newForkJoinPool(2)
+
+        when:
+        Thread worker = pool.submit({
+            local.set(Thread.currentThread())
+            Thread.currentThread()
+        } as Callable).get()
+        pool.shutdown()
+        pool.awaitTermination(10, TimeUnit.SECONDS)
+        worker.join(10000)
+
+        then:
+        worker instanceof FastThreadLocalForkJoinWorkerThread
+        worker.name.startsWith("forkJoinPool-")
+        ((FastThreadLocalAccess) worker).threadLocalMap() == null
+        removed.get() == 1
+
+        cleanup:
+        local.destroy()
+    }
+}
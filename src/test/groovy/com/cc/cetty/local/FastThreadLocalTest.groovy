@@ -3,8 +3,12 @@ package com.cc.cetty.local
 import groovy.util.logging.Slf4j
 import spock.lang.Specification
 
+import java.util.concurrent.CountDownLatch
+
 
 /**
+ * 性能对比见 src/jmh 下的基准测试，这里只校验功能
+ *
  * @author cc
  * @date 2023/11/20
  */
@@ -15,34 +19,186 @@ class FastThreadLocalTest extends Specification {
         given:
         FastThreadLocal<Integer> fastThreadLocal = new FastThreadLocal<>()
         ThreadLocal<Integer> threadLocal = new ThreadLocal<>()
+        int fastRes = 0
+        int slowRes = 0
+        boolean fastMap = false
 
         when:
-        long fastRes = System.currentTimeMillis()
-        Thread fastThread = FastThreadLocalThread.start(() -> {
+        Thread fastThread = new FastThreadLocalThread({
             fastThreadLocal.set(0)
             while (fastThreadLocal.get() < 10000) {
                 fastThreadLocal.set(fastThreadLocal.get() + 1)
             }
-            fastRes = System.currentTimeMillis() - fastRes
+            fastRes = fastThreadLocal.get()
+            fastMap = ((FastThreadLocalThread) Thread.currentThread()).threadLocalMap() != null
         })
+        fastThread.start()
 
-        long slowRes = System.currentTimeMillis()
-        Thread slowThread = Thread.start(() -> {
+        Thread slowThread = Thread.start {
             threadLocal.set(0)
             while (threadLocal.get() < 10000) {
                 threadLocal.set(threadLocal.get() + 1)
             }
-            slowRes = System.currentTimeMillis() - slowRes
-        })
+            slowRes = threadLocal.get()
+        }
 
         and:
         fastThread.join()
         slowThread.join()
 
-        log.info("Fast thread local cost : {} ms", fastRes)
-        log.info("Slow thread local cost : {} ms", slowRes)
+        then:
+        fastRes == 10000
+        slowRes == 10000
+        fastMap
+        fastThreadLocal.getIfExists() == null
+    }
+
+    def "test remove all"() {
+        given:
+        // 同一个测试线程上其他用例可能留下了thread local，比如分配器的线程缓存
+        FastThreadLocal.removeAll()
+        FastThreadLocal<String> first = new FastThreadLocal<>()
+        FastThreadLocal<String> second = new FastThreadLocal<String>() {
+            @Override
+            protected String initialValue() throws Exception {
+                return "init"
+            }
+        }
+        List<String> removed = []
+        FastThreadLocal<String> third = new FastThreadLocal<String>() {
+            @Override
+            protected void onRemoval(String value) throws Exception {
+                removed.add(value)
+            }
+        }
+
+        when:
+        first.set("first")
+        String init = second.get()
+        third.set("third")
+        int size = FastThreadLocal.size()
+        FastThreadLocal.removeAll()
+
+        then:
+        init == "init"
+        size == 3
+        removed == ["third"]
+        !first.isSet()
+        !second.isSet()
+    }
+
+    def "test primitive fast thread local"() {
+        given:
+        FastThreadLocalInt intLocal = new FastThreadLocalInt()
+        FastThreadLocalLong longLocal = new FastThreadLocalLong() {
+            @Override
+            protected long initialValue() {
+                return 100L
+            }
+        }
+        FastThreadLocalDouble doubleLocal = new FastThreadLocalDouble()
+        int intRes = 0
+        long longRes = 0
+        double doubleRes = 0
+
+        when:
+        Thread thread = new FastThreadLocalThread({
+            while (intLocal.get() < 10000) {
+                intLocal.increment()
+            }
+            intRes = intLocal.get()
+            longRes = longLocal.addAndGet(Integer.MAX_VALUE)
+            doubleLocal.set(0.5d)
+            doubleRes = doubleLocal.addAndGet(0.25d)
+        })
+        thread.start()
+        thread.join()
+
+        and:
+        intLocal.set(7)
+        boolean setBeforeRemoveAll = intLocal.isSet()
+        FastThreadLocal.removeAll()
+
+        then:
+        intRes == 10000
+        longRes == 100L + Integer.MAX_VALUE
+        doubleRes == 0.75d
+        setBeforeRemoveAll
+        !intLocal.isSet()
+        intLocal.get() == 0
+        !longLocal.isSet()
+    }
+
+    def "test destroy and reuse index"() {
+        given:
+        FastThreadLocal<String> old = new FastThreadLocal<>()
+        CountDownLatch oldSet = new CountDownLatch(1)
+        CountDownLatch reused = new CountDownLatch(1)
+        String seen = "not run"
+        Thread thread = new FastThreadLocalThread({
+            old.set("stale")
+            oldSet.countDown()
+            reused.await()
+            seen = reusedLocal.get()
+        })
+
+        when:
+        thread.start()
+        oldSet.await()
+        int oldIndex = old.index
+        old.destroy()
+        // cleaner可能也归还了更小的下标，总是优先复用最小的空闲下标
+        List<FastThreadLocal<String>> others = []
+        reusedLocal = new FastThreadLocal<>()
+        while (reusedLocal.index < oldIndex) {
+            others.add(reusedLocal)
+            reusedLocal = new FastThreadLocal<>()
+        }
+        reused.countDown()
+        thread.join()
 
         then:
-        fastRes > slowRes
+        reusedLocal.index == oldIndex
+        seen == null
+
+        cleanup:
+        reusedLocal.destroy()
+        others.each { it.destroy() }
     }
+
+    def "test write after destroy on another thread does not leak into reused index"() {
+        given:
+        FastThreadLocal<String> old = new FastThreadLocal<>()
+        int oldIndex = old.index
+        // 先拿到map，正要写入时old在别的线程上被销毁
+        InternalThreadLocalMap map = InternalThreadLocalMap.getMap()
+        Thread destroyer = new Thread({ old.destroy() })
+
+        when:
+        destroyer.start()
+        destroyer.join()
+        map.setIndexedVariable(oldIndex, "stale")
+
+        then:
+        !map.isIndexedVariableSet(oldIndex)
+        map.getIndexedVariable(oldIndex) == InternalThreadLocalMap.UNSET
+    }
+
+    def "test shrink after destroy"() {
+        given:
+        List<FastThreadLocal<Integer>> locals = (0..<300).collect { new FastThreadLocal<Integer>() }
+
+        when:
+        locals.each { it.set(1) }
+        int expanded = InternalThreadLocalMap.getMap().capacity()
+        locals.each { it.destroy() }
+        int shrunk = InternalThreadLocalMap.getMap().capacity()
+
+        then:
+        expanded >= 300
+        shrunk < expanded
+        FastThreadLocal.size() == 0
+    }
+
+    FastThreadLocal<String> reusedLocal
 }
@@ -0,0 +1,116 @@
+package com.cc.cetty.local
+
+import com.cc.cetty.metrics.HistogramSnapshot
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+/**
+ * 和 LongAdder、AtomicLong 的性能对比见 src/jmh 下的 ThreadLocalCounterBenchmark
+ *
+ * @author cc
+ * @date 2023/12/14
+ */
+class ThreadLocalCounterTest extends Specification {
+
+    def "test counter keeps values of exited threads"() {
+        given:
+        ThreadLocalCounter counter = new ThreadLocalCounter()
+        int threads = 8
+        int perThread = 10000
+
+        when:
+        List<Thread> workers = (0..<threads).collect {
+            new FastThreadLocalThread({
+                perThread.times { counter.increment() }
+                counter.add(-10)
+            })
+        }
+        workers*.start()
+        workers*.join()
+
+        then:
+        counter.sum() == threads * (perThread - 10)
+        // 线程退出时已经把值并入总和
+        counter.liveThreads() == 0
+    }
+
+    def "test counter sums live threads"() {
+        given:
+        ThreadLocalCounter counter = new ThreadLocalCounter()
+        CountDownLatch written = new CountDownLatch(2)
+        CountDownLatch exit = new CountDownLatch(1)
+        Closure task = {
+            counter.add(5)
+            written.countDown()
+            exit.await()
+        }
+
+        when:
+        Thread fast = new FastThreadLocalThread(task)
+        Thread slow = new Thread(task)
+        fast.start()
+        slow.start()
+        written.await()
+        counter.add(1)
+
+        then:
+        counter.sum() == 11
+        counter.liveThreads() == 3
+
+        when:
+        exit.countDown()
+        fast.join()
+        slow.join()
+        FastThreadLocal.removeAll()
+
+        then:
+        counter.sum() == 11
+        // 普通线程不会调用removeAll，要等线程被回收后cleaner合并
+        counter.liveThreads() == 1
+    }
+
+    def "test removeAll after cleaner does not count twice"() {
+        given:
+        ThreadLocalCounter counter = new ThreadLocalCounter()
+
+        when:
+        Thread thread = new Thread({
+            counter.add(7)
+            FastThreadLocal.removeAll()
+            counter.add(3)
+            FastThreadLocal.removeAll()
+        })
+        thread.start()
+        thread.join()
+
+        then:
+        counter.sum() == 10
+        counter.liveThreads() == 0
+    }
+
+    def "test histogram merges threads"() {
+        given:
+        ThreadLocalHistogram histogram = new ThreadLocalHistogram()
+
+        when:
+        List<Thread> workers = (0..<4).collect { int t ->
+            new FastThreadLocalThread({
+                (1..1000).each { histogram.record(t * 1000 + it) }
+            })
+        }
+        workers*.start()
+        workers*.join()
+        histogram.record(0)
+        HistogramSnapshot snapshot = histogram.snapshot()
+
+        then:
+        snapshot.count() == 4001
+        snapshot.max() == 4000
+        Math.abs(snapshot.valueAtPercentile(50) - 2000) <= 2000 / 8
+        histogram.liveThreads() == 1
+
+        cleanup:
+        FastThreadLocal.removeAll()
+    }
+}
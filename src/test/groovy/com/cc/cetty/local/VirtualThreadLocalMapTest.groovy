@@ -0,0 +1,119 @@
+package com.cc.cetty.local
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+/**
+ * 虚拟线程的用例在 JDK 21 之前跳过，载体模式的用例通过 gradle virtualThreadTest 运行
+ * 每个虚拟线程占用的内存见 src/jmh 下的 VirtualThreadMemoryBenchmark
+ *
+ * @author cc
+ * @date 2023/12/14
+ */
+class VirtualThreadLocalMapTest extends Specification {
+
+    static boolean virtualThreadsAvailable() {
+        return Runtime.version().feature() >= 21
+    }
+
+    /**
+     * 项目按 JDK 11 编译，通过 groovy 的动态调用创建虚拟线程
+     */
+    static Thread startVirtualThread(Runnable task) {
+        return Thread.ofVirtual().start(task)
+    }
+
+    def "test platform threads use their own map"() {
+        given:
+        FastThreadLocal<String> local = new FastThreadLocal<>(true)
+        String other = null
+
+        when:
+        local.set("main")
+        Thread thread = new Thread({ other = local.get() })
+        thread.start()
+        thread.join()
+
+        then:
+        !InternalThreadLocalMap.isVirtualThread(Thread.currentThread())
+        InternalThreadLocalMap.currentCarrierThread() == Thread.currentThread()
+        InternalThreadLocalMap.getCarrierMap().is(InternalThreadLocalMap.getMap())
+        local.get() == "main"
+        other == null
+
+        cleanup:
+        local.destroy()
+    }
+
+    @Requires({ VirtualThreadLocalMapTest.virtualThreadsAvailable() })
+    def "test virtual thread map starts empty"() {
+        given:
+        FastThreadLocal<String> local = new FastThreadLocal<>()
+        int capacityBefore = -1
+        int capacityAfter = -1
+        boolean virtual = false
+
+        when:
+        Thread thread = startVirtualThread {
+            virtual = InternalThreadLocalMap.isVirtualThread(Thread.currentThread())
+            capacityBefore = InternalThreadLocalMap.getMap().capacity()
+            local.set("virtual")
+            capacityAfter = InternalThreadLocalMap.getMap().capacity()
+        }
+        thread.join()
+
+        then:
+        virtual
+        capacityBefore == 0
+        // 按下标分配，不会一次分配整张表
+        capacityAfter > local.@index
+        capacityAfter <= Math.max(1, Integer.highestOneBit(local.@index) << 1)
+
+        cleanup:
+        local.destroy()
+    }
+
+    @Requires({ VirtualThreadLocalMapTest.virtualThreadsAvailable() && InternalThreadLocalMap.isCarrierMode() })
+    def "test carrier safe locals are shared by virtual threads on the same carrier"() {
+        given:
+        ThreadLocalCounter counter = new ThreadLocalCounter()
+        FastThreadLocal<Thread> carrierSafe = new FastThreadLocal<Thread>(true) {
+            @Override
+            protected Thread initialValue() {
+                return InternalThreadLocalMap.currentCarrierThread()
+            }
+        }
+        FastThreadLocal<Thread> perThread = new FastThreadLocal<Thread>() {
+            @Override
+            protected Thread initialValue() {
+                return Thread.currentThread()
+            }
+        }
+        int threads = 1000
+        CountDownLatch done = new CountDownLatch(threads)
+        Set<Thread> carriers = Collections.synchronizedSet(new HashSet<>())
+        Set<Thread> owners = Collections.synchronizedSet(new HashSet<>())
+
+        when:
+        threads.times {
+            startVirtualThread {
+                counter.increment()
+                assert carrierSafe.get() == InternalThreadLocalMap.currentCarrierThread()
+                carriers << carrierSafe.get()
+                owners << perThread.get()
+                done.countDown()
+            }
+        }
+        done.await()
+
+        then:
+        counter.sum() == threads
+        // 每个载体一个单元，而不是每个虚拟线程一个
+        counter.liveThreads() == carriers.size()
+        // 调度器在载体被钉住时会临时补充载体，这里只要求远少于虚拟线程数
+        carriers.size() < threads / 10
+        owners.size() == threads
+    }
+}
@@ -0,0 +1,222 @@
+package com.cc.cetty.metrics
+
+import com.cc.cetty.async.DefaultEventExecutorGroup
+import com.cc.cetty.bootstrap.Bootstrap
+import com.cc.cetty.bootstrap.EchoTest
+import com.cc.cetty.bootstrap.ServerBootstrap
+import com.cc.cetty.buffer.ByteBuf
+import com.cc.cetty.buffer.PooledByteBufAllocator
+import com.cc.cetty.channel.Channel
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioServerSocketChannel
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter
+import com.cc.cetty.pipeline.ChannelHandlerContext
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.lang.management.ManagementFactory
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author cc
+ * @date 2023/12/13
+ */
+class MetricsTest extends Specification {
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    def "test histogram bucket bounds"() {
+        expect:
+        (0L..<100_000L).step(7).every { long v ->
+            int index = Histogram.bucketIndex(v)
+            long upper = Histogram.bucketUpperBound(index)
+            // 相对误差不超过1/8
+            v <= upper && (v < 8 ? upper == v : upper - v <= (v >>> 3))
+        }
+        Histogram.bucketIndex(Long.MAX_VALUE) == Histogram.BUCKET_COUNT - 1
+        Histogram.bucketUpperBound(Histogram.BUCKET_COUNT - 1) == Long.MAX_VALUE
+    }
+
+    def "test histogram percentiles and merge"() {
+        given:
+        Histogram first = new Histogram()
+        Histogram second = new Histogram()
+        (1..1000).each { first.record(it) }
+        (1001..2000).each { second.record(it) }
+
+        when:
+        HistogramSnapshot snapshot = first.snapshot()
+        HistogramSnapshot merged = snapshot.merge(second.snapshot())
+
+        then:
+        snapshot.count() == 1000
+        snapshot.max() == 1000
+        snapshot.mean() == 500.5d
+        Math.abs(snapshot.valueAtPercentile(50) - 500) <= 500 / 8
+        Math.abs(snapshot.valueAtPercentile(99) - 990) <= 990 / 8
+        snapshot.valueAtPercentile(100) == 1000
+        merged.count() == 2000
+        merged.max() == 2000
+        Math.abs(merged.valueAtPercentile(50) - 1000) <= 1000 / 8
+        HistogramSnapshot.EMPTY.valueAtPercentile(99) == 0
+    }
+
+    def "test executor metrics registered while running"() {
+        given:
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        CountDownLatch latch = new CountDownLatch(1000)
+
+        when:
+        1000.times { group.next().execute { latch.countDown() } }
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        conditions.eventually {
+            EventLoopMetricsSnapshot snapshot = group.metrics()[0]
+            assert snapshot.tasksExecuted() == 1000
+            assert snapshot.pendingTasks() == 0
+            // 抽样的任务记录了排队延迟
+            assert snapshot.taskQueueLatency().count() > 0
+            assert snapshot.taskRunTime().count() == snapshot.taskQueueLatency().count()
+            assert MetricsRegistry.snapshot().eventLoops()*.name().contains(snapshot.name())
+        }
+
+        when:
+        String name = group.metrics()[0].name()
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+
+        then:
+        !MetricsRegistry.snapshot().eventLoops()*.name().contains(name)
+        EventLoopMetrics.current() == null
+    }
+
+    def "test event loop io metrics over loopback"() {
+        given:
+        NioEventLoopGroup boss = new NioEventLoopGroup(1)
+        NioEventLoopGroup worker = new NioEventLoopGroup(2)
+        Channel server = new ServerBootstrap()
+                .group(boss, worker)
+                .channel(NioServerSocketChannel)
+                .childHandler(new EchoTest.EchoHandler())
+                .bind("127.0.0.1", 0).sync().channel()
+        String text = "cetty" * 2000
+        StringBuilder received = new StringBuilder()
+        CountDownLatch latch = new CountDownLatch(1)
+        Channel client = new Bootstrap()
+                .group(worker)
+                .channel(NioSocketChannel)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf buf = (ByteBuf) msg
+                        received.append(buf.toString(StandardCharsets.UTF_8))
+                        buf.release()
+                        if (received.length() >= text.length()) {
+                            latch.countDown()
+                        }
+                    }
+                })
+                .connect(server.localAddress()).sync().channel()
+
+        when:
+        client.writeAndFlush(text.getBytes(StandardCharsets.UTF_8)).sync()
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        conditions.eventually {
+            List<EventLoopMetricsSnapshot> metrics = worker.metrics()
+            // 客户端和服务端各读写一遍
+            assert metrics.sum { it.bytesRead() } == 2 * text.length()
+            assert metrics.sum { it.bytesWritten() } == 2 * text.length()
+            assert metrics.sum { it.pendingOutboundBytes() } == 0
+            assert metrics.sum { it.ioEvents() } > 0
+            assert metrics.sum { it.ioTimeNanos() } > 0
+            assert metrics.sum { it.tasksExecuted() } > 0
+        }
+        boss.metrics()[0].ioEvents() > 0
+
+        cleanup:
+        client?.close()?.sync()
+        server?.close()?.sync()
+        boss.shutdownGracefully()
+        worker.shutdownGracefully()
+        boss.awaitTermination(5, TimeUnit.SECONDS)
+        worker.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def "test allocator arena metrics"() {
+        given:
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11)
+
+        when:
+        ByteBuf buf = allocator.directBuffer(64 * 1024)
+        AllocatorMetricsSnapshot snapshot = allocator.metrics()
+
+        then:
+        snapshot.chunkSize() == allocator.chunkSize()
+        snapshot.heapArenas().size() == 1
+        snapshot.directArenas().size() == 1
+        snapshot.directArenas()[0].numChunks() == 1
+        snapshot.directArenas()[0].numThreadCaches() == 1
+        snapshot.allocatedDirectBytes() >= 64 * 1024
+        snapshot.usedDirectMemory() == allocator.usedDirectMemory()
+
+        when:
+        buf.release()
+        allocator.freeThreadLocalCache()
+
+        then:
+        allocator.metrics().allocatedDirectBytes() == 0
+    }
+
+    def "test allocator mbean counts thread caches of direct only allocators"() {
+        given:
+        def server = ManagementFactory.getPlatformMBeanServer()
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11)
+
+        when:
+        allocator.directBuffer(64).release()
+        MetricsRegistry.enableJmx()
+        MetricsRegistry.registerAllocator("directOnly", { allocator.metrics() })
+
+        then:
+        server.getAttribute(MetricsRegistry.allocatorName("directOnly"), "NumThreadCaches") == 1
+
+        cleanup:
+        MetricsRegistry.deregisterAllocator("directOnly")
+        allocator.freeThreadLocalCache()
+    }
+
+    def "test jmx registration"() {
+        given:
+        def server = ManagementFactory.getPlatformMBeanServer()
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1)
+        CountDownLatch latch = new CountDownLatch(1)
+        PooledByteBufAllocator.DEFAULT.chunkSize()
+
+        when:
+        MetricsRegistry.enableJmx()
+        group.next().execute { latch.countDown() }
+        latch.await(5, TimeUnit.SECONDS)
+        EventLoopMetrics metrics = MetricsRegistry.eventLoops().find { it.getName() == group.metrics()[0].name() }
+
+        then:
+        MetricsRegistry.isJmxEnabled()
+        server.isRegistered(MetricsRegistry.allocatorName("default"))
+        server.getAttribute(MetricsRegistry.allocatorName("default"), "ChunkSize") == PooledByteBufAllocator.DEFAULT.chunkSize()
+        conditions.eventually {
+            assert server.getAttribute(MetricsRegistry.eventLoopName(metrics), "TasksExecuted") == 1L
+        }
+
+        when:
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+
+        then:
+        !server.isRegistered(MetricsRegistry.eventLoopName(metrics))
+    }
+}
@@ -0,0 +1,404 @@
+package com.cc.cetty.pipeline
+
+import com.cc.cetty.async.DefaultEventExecutorGroup
+import com.cc.cetty.channel.Channel
+import com.cc.cetty.channel.ChannelPromise
+import com.cc.cetty.channel.nio.NioEventLoopGroup
+import com.cc.cetty.channel.nio.NioSocketChannel
+import com.cc.cetty.handler.ChannelDuplexHandler
+import com.cc.cetty.handler.ChannelHandler
+import com.cc.cetty.handler.ChannelHandlerMask
+import com.cc.cetty.handler.ChannelInboundHandlerAdapter
+import com.cc.cetty.handler.ChannelInitializer
+import com.cc.cetty.handler.ChannelOutboundHandlerAdapter
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static com.cc.cetty.handler.ChannelHandlerMask.*
+
+/**
+ * @author cc
+ * @date 2023/12/08
+ */
+class ChannelPipelineTest extends Specification {
+
+    static class InboundRecorder extends ChannelInboundHandlerAdapter {
+
+        final String id
+
+        final List<String> events
+
+        InboundRecorder(String id, List<String> events) {
+            this.id = id
+            this.events = events
+        }
+
+        @Override
+        void channelRead(ChannelHandlerContext ctx, Object msg) {
+            events << id + ":" + msg
+            ctx.fireChannelRead(msg)
+        }
+    }
+
+    static class OutboundRecorder extends ChannelOutboundHandlerAdapter {
+
+        final String id
+
+        final List<String> events
+
+        OutboundRecorder(String id, List<String> events) {
+            this.id = id
+            this.events = events
+        }
+
+        @Override
+        void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            events << id + ":" + msg
+            ctx.write(msg, promise)
+        }
+    }
+
+    /**
+     * 放在最前面，代替没有连接的channel完成写操作
+     */
+    static class WriteSink extends ChannelOutboundHandlerAdapter {
+
+        final List<Object> written = new CopyOnWriteArrayList<>()
+
+        final List<Thread> threads = new CopyOnWriteArrayList<>()
+
+        int flushes
+
+        @Override
+        void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            written << msg
+            threads << Thread.currentThread()
+            promise.setSuccess()
+        }
+
+        @Override
+        void flush(ChannelHandlerContext ctx) {
+            flushes++
+        }
+    }
+
+    @ChannelHandler.Sharable
+    static class SharableHandler extends ChannelInboundHandlerAdapter {
+    }
+
+    NioEventLoopGroup group = new NioEventLoopGroup(1)
+
+    Channel channel = new NioSocketChannel()
+
+    def cleanup() {
+        channel.unsafe().closeForcibly()
+        group.shutdownGracefully()
+        group.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    /**
+     * 等事件循环把之前提交的任务都执行完
+     */
+    private void drain(Channel ch = channel) {
+        ch.eventLoop().submit({ null } as Callable).sync()
+    }
+
+    def "test handler mask"() {
+        expect:
+        ChannelHandlerMask.mask(InboundRecorder) == MASK_CHANNEL_READ
+        ChannelHandlerMask.mask(OutboundRecorder) == MASK_WRITE
+        ChannelHandlerMask.mask(WriteSink) == (MASK_WRITE | MASK_FLUSH)
+        ChannelHandlerMask.mask(ChannelInboundHandlerAdapter) == 0
+        ChannelHandlerMask.mask(ChannelDuplexHandler) == 0
+        ChannelHandlerMask.mask(SharableHandler) == 0
+        // 同一个线程第二次查询走缓存
+        ChannelHandlerMask.mask(InboundRecorder) == MASK_CHANNEL_READ
+    }
+
+    def "test inbound and outbound order"() {
+        given:
+        def events = new CopyOnWriteArrayList<String>()
+        def sink = new WriteSink()
+        channel.pipeline().addLast(sink,
+                new InboundRecorder("in1", events),
+                new OutboundRecorder("out1", events),
+                new SharableHandler(),
+                new InboundRecorder("in2", events),
+                new OutboundRecorder("out2", events))
+        group.register(channel).sync()
+
+        when:
+        channel.pipeline().fireChannelRead("a")
+        def future = channel.writeAndFlush("b")
+        future.sync()
+        drain()
+
+        then:
+        events == ["in1:a", "in2:a", "out2:b", "out1:b"]
+        sink.written == ["b"]
+        sink.flushes == 1
+        future.isSuccess()
+    }
+
+    def "test ctx events start from the next handler"() {
+        given:
+        def events = new CopyOnWriteArrayList<String>()
+        def sink = new WriteSink()
+        channel.pipeline().addLast("sink", sink)
+        channel.pipeline().addLast("out", new OutboundRecorder("out", events))
+        channel.pipeline().addLast("in1", new InboundRecorder("in1", events))
+        channel.pipeline().addLast("in2", new InboundRecorder("in2", events))
+        group.register(channel).sync()
+
+        when:
+        channel.eventLoop().submit({
+            def ctx = channel.pipeline().context("in1")
+            ctx.fireChannelRead("a")
+            // 从in1往前找出站处理器，经过out
+            ctx.write("b")
+            channel.pipeline().context("out").write("c")
+            null
+        } as Callable).sync()
+
+        then:
+        events == ["in2:a", "out:b"]
+        sink.written == ["b", "c"]
+    }
+
+    def "test add and remove before and after registration"() {
+        given:
+        def added = new CopyOnWriteArrayList<String>()
+        def removed = new CopyOnWriteArrayList<String>()
+        def newHandler = { String name ->
+            new ChannelInboundHandlerAdapter() {
+                @Override
+                void handlerAdded(ChannelHandlerContext ctx) {
+                    assert ctx.executor().inEventLoop()
+                    added << ctx.name()
+                }
+
+                @Override
+                void handlerRemoved(ChannelHandlerContext ctx) {
+                    removed << ctx.name()
+                }
+            }
+        }
+        def pipeline = channel.pipeline()
+
+        when:
+        pipeline.addLast("b", newHandler("b"))
+        pipeline.addFirst("a", newHandler("a"))
+        pipeline.addLast("d", newHandler("d"))
+        pipeline.addBefore("d", "c", newHandler("c"))
+
+        then:
+        pipeline.names() == ["a", "b", "c", "d"]
+        added.isEmpty()
+
+        when:
+        group.register(channel).sync()
+
+        then:
+        // 注册的promise完成之前已经调用过handlerAdded
+        added == ["b", "a", "d", "c"]
+
+        when:
+        pipeline.remove("b")
+        pipeline.addAfter("d", "e", newHandler("e"))
+        drain()
+
+        then:
+        removed == ["b"]
+        added.last() == "e"
+        pipeline.names() == ["a", "c", "d", "e"]
+        pipeline.context("b") == null
+        pipeline.first().is(pipeline.get("a"))
+        pipeline.last().is(pipeline.get("e"))
+
+        when:
+        pipeline.remove("missing")
+
+        then:
+        thrown(NoSuchElementException)
+    }
+
+    def "test handler names"() {
+        given:
+        def pipeline = channel.pipeline()
+
+        when:
+        pipeline.addLast(new SharableHandler(), new SharableHandler())
+        pipeline.addLast("x", new SharableHandler())
+
+        then:
+        pipeline.names() == ["SharableHandler#0", "SharableHandler#1", "x"]
+
+        when:
+        pipeline.addLast("x", new SharableHandler())
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "test sharable"() {
+        given:
+        def sharable = new SharableHandler()
+        def notSharable = new InboundRecorder("in", [])
+        def other = new NioSocketChannel()
+
+        when:
+        channel.pipeline().addLast(sharable, notSharable)
+        other.pipeline().addLast(sharable)
+
+        then:
+        sharable.isSharable()
+        !notSharable.isSharable()
+        noExceptionThrown()
+
+        when:
+        other.pipeline().addLast(notSharable)
+
+        then:
+        thrown(ChannelPipelineException)
+
+        cleanup:
+        other.unsafe().closeForcibly()
+    }
+
+    def "test handler on executor group"() {
+        given:
+        def executorGroup = new DefaultEventExecutorGroup(2)
+        def threads = new CopyOnWriteArrayList<Thread>()
+        def latch = new CountDownLatch(1)
+        def sink = new WriteSink()
+        def offloaded = new ChannelInboundHandlerAdapter() {
+            @Override
+            void channelRead(ChannelHandlerContext ctx, Object msg) {
+                threads << Thread.currentThread()
+                // 在业务线程写出，会被转回事件循环
+                ctx.writeAndFlush(msg)
+                ctx.fireChannelRead(msg)
+            }
+        }
+        def last = new ChannelInboundHandlerAdapter() {
+            @Override
+            void channelRead(ChannelHandlerContext ctx, Object msg) {
+                threads << Thread.currentThread()
+                latch.countDown()
+            }
+        }
+        channel.pipeline().addLast(sink)
+        channel.pipeline().addLast(executorGroup, "offloaded", offloaded)
+        channel.pipeline().addLast(executorGroup, "other", new SharableHandler())
+        channel.pipeline().addLast("last", last)
+        group.register(channel).sync()
+
+        when:
+        channel.pipeline().fireChannelRead("a")
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        !channel.eventLoop().inEventLoop(threads[0])
+        channel.eventLoop().inEventLoop(threads[1])
+        // 同一个执行器组固定使用同一个执行器
+        channel.pipeline().context("offloaded").executor().is(channel.pipeline().context("other").executor())
+
+        when:
+        drain()
+
+        then:
+        sink.written == ["a"]
+        channel.eventLoop().inEventLoop(sink.threads[0])
+        sink.flushes == 1
+
+        cleanup:
+        executorGroup.shutdownGracefully()
+        executorGroup.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def "test write from other thread"() {
+        given:
+        def sink = new WriteSink()
+        channel.pipeline().addLast(sink)
+        group.register(channel).sync()
+
+        when:
+        def futures = (0..<1000).collect { channel.write(it) }
+        channel.flush()
+        futures*.sync()
+        drain()
+
+        then:
+        sink.written == (0..<1000).toList()
+        sink.threads.every { channel.eventLoop().inEventLoop(it) }
+        sink.flushes == 1
+    }
+
+    def "test write before registration fails"() {
+        when:
+        def future = channel.write("a")
+
+        then:
+        future.isDone()
+        future.cause() instanceof IllegalStateException
+    }
+
+    def "test exception caught"() {
+        given:
+        def caught = []
+        def error = new IllegalStateException("boom")
+        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            void channelRead(ChannelHandlerContext ctx, Object msg) {
+                throw error
+            }
+        })
+        channel.pipeline().addLast(new ChannelOutboundHandlerAdapter())
+        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                caught << cause
+            }
+        })
+        group.register(channel).sync()
+
+        when:
+        channel.pipeline().fireChannelRead("a")
+        drain()
+
+        then:
+        caught == [error]
+    }
+
+    def "test channel initializer"() {
+        given:
+        def events = new CopyOnWriteArrayList<String>()
+        def registered = new CountDownLatch(1)
+        channel.pipeline().addLast(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast("in", new InboundRecorder("in", events))
+                ch.pipeline().addLast("registered", new ChannelInboundHandlerAdapter() {
+                    @Override
+                    void channelRegistered(ChannelHandlerContext ctx) {
+                        registered.countDown()
+                    }
+                })
+            }
+        })
+
+        when:
+        group.register(channel).sync()
+        channel.pipeline().fireChannelRead("a")
+        drain()
+
+        then:
+        channel.pipeline().names() == ["in", "registered"]
+        registered.await(5, TimeUnit.SECONDS)
+        events == ["in:a"]
+    }
+}
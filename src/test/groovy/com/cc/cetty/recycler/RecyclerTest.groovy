@@ -0,0 +1,201 @@
+package com.cc.cetty.recycler
+
+import com.cc.cetty.local.FastThreadLocalThread
+import spock.lang.Specification
+
+/**
+ * @author cc
+ * @date 2023/12/04
+ */
+class RecyclerTest extends Specification {
+
+    static class Item {
+
+        final Recycler.Handle<Item> handle
+
+        Item(Recycler.Handle<Item> handle) {
+            this.handle = handle
+        }
+
+        void recycle() {
+            handle.recycle(this)
+        }
+    }
+
+    static Recycler<Item> newRecycler(int maxCapacity, int ratio = 0, int maxCrossThreadCapacity = maxCapacity, int crossThreadRatio = 0) {
+        return new Recycler<Item>(maxCapacity, ratio, maxCrossThreadCapacity, crossThreadRatio) {
+            @Override
+            protected Item newObject(Recycler.Handle<Item> handle) {
+                return new Item(handle)
+            }
+        }
+    }
+
+    def "test recycle on same thread"() {
+        given:
+        def recycler = newRecycler(16)
+        def item = recycler.get()
+
+        when:
+        item.recycle()
+
+        then:
+        recycler.threadLocalSize() == 1
+        recycler.get().is(item)
+        recycler.threadLocalSize() == 0
+    }
+
+    def "test recycle twice"() {
+        given:
+        def recycler = newRecycler(16)
+        def item = recycler.get()
+        item.recycle()
+
+        when:
+        item.recycle()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "test recycle with wrong handle"() {
+        given:
+        def recycler = newRecycler(16)
+        def a = recycler.get()
+        def b = recycler.get()
+
+        when:
+        a.handle.recycle(b)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "test max capacity"() {
+        given:
+        def recycler = newRecycler(4)
+        def items = (0..<10).collect { recycler.get() }
+
+        when:
+        items.each { it.recycle() }
+
+        then:
+        recycler.threadLocalSize() == 4
+        recycler.threadLocalCapacity() == 4
+    }
+
+    def "test disabled"() {
+        given:
+        def recycler = newRecycler(0)
+        def item = recycler.get()
+
+        when:
+        item.recycle()
+
+        then:
+        !recycler.get().is(item)
+    }
+
+    def "test drop ratio"() {
+        given:
+        def recycler = newRecycler(64, 3)
+        def items = (0..<16).collect { recycler.get() }
+
+        when:
+        items.each { it.recycle() }
+
+        then:
+        // 新对象每4个保留一个
+        recycler.threadLocalSize() == 4
+
+        when:
+        def reused = (0..<4).collect { recycler.get() }
+        reused.each { it.recycle() }
+
+        then:
+        // 回收过的对象不再被丢弃
+        recycler.threadLocalSize() == 4
+    }
+
+    def "test recycle on other thread"() {
+        given:
+        def recycler = newRecycler(16)
+        def items = (0..<8).collect { recycler.get() }
+
+        when:
+        def t = new FastThreadLocalThread({ items.each { it.recycle() } })
+        t.start()
+        t.join()
+
+        then:
+        recycler.threadLocalSize() == 0
+
+        when:
+        def reused = (0..<8).collect { recycler.get() }
+
+        then:
+        // 跨线程队列中的对象在栈空了之后转移回来
+        reused as Set == items as Set
+        recycler.threadLocalSize() == 0
+    }
+
+    def "test cross thread capacity and ratio"() {
+        given:
+        def recycler = newRecycler(64, 0, capacity, ratio)
+        def items = (0..<32).collect { recycler.get() }
+
+        when:
+        def t = new FastThreadLocalThread({ items.each { it.recycle() } })
+        t.start()
+        t.join()
+        def reused = (0..<32).collect { recycler.get() }
+
+        then:
+        reused.count { r -> items.any { it.is(r) } } == expected
+
+        where:
+        capacity | ratio | expected
+        8        | 0     | 8
+        64       | 3     | 8
+        0        | 0     | 0
+    }
+
+    def "test recycle after owner thread exit"() {
+        given:
+        def recycler = newRecycler(16)
+        def item = null
+        def t = new FastThreadLocalThread({ item = recycler.get() })
+        t.start()
+        t.join()
+
+        when:
+        // 所属线程已经退出，回收的对象被丢弃，不会报错
+        item.recycle()
+
+        then:
+        noExceptionThrown()
+        recycler.threadLocalSize() == 0
+    }
+
+    def "test concurrent cross thread recycle"() {
+        given:
+        def recycler = newRecycler(4096)
+        def items = (0..<4000).collect { recycler.get() }
+        def threads = (0..<4).collect { i ->
+            new FastThreadLocalThread({
+                for (int j = i; j < items.size(); j += 4) {
+                    items[j].recycle()
+                }
+            })
+        }
+
+        when:
+        threads*.start()
+        threads*.join()
+        def reused = (0..<4000).collect { recycler.get() }
+
+        then:
+        // 每个对象最多被取回一次
+        reused.toSet().size() == 4000
+    }
+}
@@ -0,0 +1,202 @@
+package com.cc.cetty.timer
+
+import com.cc.cetty.local.FastThreadLocalThread
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author cc
+ * @date 2023/12/06
+ */
+class HashedWheelTimerTest extends Specification {
+
+    def "test timeout expires after delay"() {
+        given:
+        def timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8)
+        def latch = new CountDownLatch(1)
+        Thread runner = null
+        long start = System.nanoTime()
+
+        when:
+        def timeout = timer.newTimeout({ t -> runner = Thread.currentThread(); latch.countDown() }, 50, TimeUnit.MILLISECONDS)
+
+        then:
+        latch.await(2, TimeUnit.SECONDS)
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50
+        timeout.isExpired()
+        !timeout.cancel()
+        runner instanceof FastThreadLocalThread
+        timer.pendingTimeouts() == 0
+
+        cleanup:
+        timer.stop()
+    }
+
+    def "test timeouts spanning several rounds"() {
+        given:
+        // 4个槽位，每圈40ms，后面的timeout要转好几圈
+        def timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 4)
+        def order = Collections.synchronizedList([])
+        def latch = new CountDownLatch(4)
+
+        when:
+        [170, 30, 110, 60].each { delay ->
+            timer.newTimeout({ t -> order << delay; latch.countDown() }, delay, TimeUnit.MILLISECONDS)
+        }
+
+        then:
+        latch.await(2, TimeUnit.SECONDS)
+        order == [30, 60, 110, 170]
+
+        cleanup:
+        timer.stop()
+    }
+
+    def "test cancel"() {
+        given:
+        def timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8)
+        def counter = new AtomicInteger()
+        def timeouts = (0..<1000).collect { timer.newTimeout({ t -> counter.incrementAndGet() }, 100, TimeUnit.MILLISECONDS) }
+
+        when:
+        timeouts.each { assert it.cancel() }
+
+        then:
+        timeouts.every { it.isCancelled() && !it.cancel() }
+
+        when:
+        Thread.sleep(300)
+
+        then:
+        counter.get() == 0
+        timer.pendingTimeouts() == 0
+
+        cleanup:
+        timer.stop()
+    }
+
+    def "test max pending timeouts"() {
+        given:
+        def timer = new HashedWheelTimer({ r -> new Thread(r) } as ThreadFactory, 10, TimeUnit.MILLISECONDS, 8, 2)
+        timer.newTimeout({ t -> }, 1, TimeUnit.HOURS)
+        def second = timer.newTimeout({ t -> }, 1, TimeUnit.HOURS)
+
+        when:
+        timer.newTimeout({ t -> }, 1, TimeUnit.HOURS)
+
+        then:
+        thrown(RejectedExecutionException)
+
+        when:
+        second.cancel()
+        Thread.sleep(100)
+        timer.newTimeout({ t -> }, 1, TimeUnit.HOURS)
+
+        then:
+        noExceptionThrown()
+        timer.pendingTimeouts() == 2
+
+        cleanup:
+        timer.stop()
+    }
+
+    def "test task exception does not stop the timer"() {
+        given:
+        def timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8)
+        def latch = new CountDownLatch(1)
+
+        when:
+        timer.newTimeout({ t -> throw new IllegalStateException("boom") }, 10, TimeUnit.MILLISECONDS)
+        timer.newTimeout({ t -> latch.countDown() }, 50, TimeUnit.MILLISECONDS)
+
+        then:
+        latch.await(2, TimeUnit.SECONDS)
+
+        cleanup:
+        timer.stop()
+    }
+
+    def "test stop returns unprocessed timeouts"() {
+        given:
+        def timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8)
+        def a = timer.newTimeout({ t -> }, 1, TimeUnit.HOURS)
+        def b = timer.newTimeout({ t -> }, 1, TimeUnit.HOURS)
+        def c = timer.newTimeout({ t -> }, 1, TimeUnit.HOURS)
+        c.cancel()
+        Thread.sleep(50)
+
+        when:
+        def unprocessed = timer.stop()
+
+        then:
+        unprocessed == [a, b] as Set
+
+        when:
+        timer.newTimeout({ t -> }, 1, TimeUnit.SECONDS)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "test stop from timer task"() {
+        given:
+        def timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8)
+        def error = null
+        def latch = new CountDownLatch(1)
+
+        when:
+        timer.newTimeout({ t ->
+            try {
+                t.timer().stop()
+            } catch (IllegalStateException e) {
+                error = e
+            }
+            latch.countDown()
+        }, 10, TimeUnit.MILLISECONDS)
+
+        then:
+        latch.await(2, TimeUnit.SECONDS)
+        error instanceof IllegalStateException
+
+        cleanup:
+        timer.stop()
+    }
+
+    def "test concurrent schedule and cancel"() {
+        given:
+        def timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64)
+        def fired = new AtomicInteger()
+        int perThread = 20000
+        def threads = (0..<4).collect {
+            new Thread({
+                for (int i = 0; i < perThread; i++) {
+                    def t = timer.newTimeout({ x -> fired.incrementAndGet() }, 20, TimeUnit.MILLISECONDS)
+                    if (i % 2 == 0) {
+                        t.cancel()
+                    }
+                }
+            })
+        }
+
+        when:
+        threads*.start()
+        threads*.join()
+        long deadline = System.currentTimeMillis() + 5000
+        while (fired.get() < 2 * perThread && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        Thread.sleep(50)
+
+        then:
+        fired.get() == 2 * perThread
+        timer.pendingTimeouts() == 0
+
+        cleanup:
+        timer.stop()
+    }
+}